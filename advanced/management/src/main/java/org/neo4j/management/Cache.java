@@ -42,6 +42,9 @@ public interface Cache
     @Description( "The number of times a cache query did not return a result" )
     long getMissCount();
 
+    @Description( "The number of entities evicted from the cache to make room for others" )
+    long getEvictionCount();
+
     @Description( value = "Clears the Neo4j caches", impact = MBeanOperationInfo.ACTION )
     void clear();
 }
@@ -97,5 +97,11 @@ public class CacheBean extends ManagementBeanProvider
         {
             return cache.missCount();
         }
+
+        @Override
+        public long getEvictionCount()
+        {
+            return cache.evictionCount();
+        }
     }
 }
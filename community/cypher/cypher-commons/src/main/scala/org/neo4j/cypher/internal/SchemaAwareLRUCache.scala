@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal
+
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import org.neo4j.kernel.api.SchemaChangeAware
+
+/**
+ * LRU cache to keep in kernel schema state. Rather than being dropped wholesale whenever an index or a constraint
+ * changes, it only evicts the entries that depend on the label and property key of the changed index or constraint.
+ *
+ * A value created while the schema changes may have been created against the schema before the change, without
+ * being in the cache yet for the change to evict it. Such values are handed back without being cached, which is
+ * decided by the schema generation they were created in.
+ */
+class SchemaAwareLRUCache[K, V](cacheSize: Int, dependsOnSchema: (V, Int, Int) => Boolean)
+  extends LRUCache[K, V](cacheSize) with SchemaChangeAware {
+
+  // held for reading while inserting, and for writing while evicting, so that no insert misses an eviction
+  private val lock = new ReentrantReadWriteLock()
+  @volatile private var generation = 0L
+
+  override def getOrElseUpdate(key: K, f: => V): V = getOrElseUpdateByKey(key, _ => f)
+
+  override def getOrElseUpdateByKey(key: K, f: K => V): V = {
+    val value = inner.get(key)
+
+    if (value == null) {
+      val createdInGeneration = generation
+      val createdValue = f(key)
+      lock.readLock().lock()
+      try {
+        if (createdInGeneration != generation) {
+          createdValue
+        } else {
+          val previousValue = inner.putIfAbsent(key, createdValue)
+          if (previousValue == null) createdValue else previousValue
+        }
+      } finally {
+        lock.readLock().unlock()
+      }
+    } else {
+      value
+    }
+  }
+
+  def schemaChanged(labelId: Int, propertyKeyId: Int) {
+    lock.writeLock().lock()
+    try {
+      generation += 1
+      val values = inner.values().iterator()
+      while (values.hasNext) {
+        if (dependsOnSchema(values.next(), labelId, propertyKeyId))
+          values.remove()
+      }
+    } finally {
+      lock.writeLock().unlock()
+    }
+  }
+}
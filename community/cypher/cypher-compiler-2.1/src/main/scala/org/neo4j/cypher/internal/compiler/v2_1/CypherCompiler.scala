@@ -26,7 +26,7 @@ import org.neo4j.cypher.SyntaxException
 import org.neo4j.cypher.internal.compiler.v2_1.ast.Statement
 import org.neo4j.cypher.internal.compiler.v2_1.ast.convert.StatementConverters._
 import org.neo4j.cypher.internal.compiler.v2_1.commands.AbstractQuery
-import org.neo4j.cypher.internal.LRUCache
+import org.neo4j.cypher.internal.{SchemaAwareLRUCache, LRUCache}
 import org.neo4j.cypher.internal.compiler.v2_1.planner.PlanningMonitor
 import org.neo4j.graphdb.GraphDatabaseService
 import org.neo4j.cypher.internal.compiler.v2_1.planner.Planner
@@ -61,7 +61,9 @@ trait AstCacheMonitor extends CypherCacheMonitor[Statement, CacheAccessor[Statem
 object CypherCompilerFactory {
   val monitorTag = "cypher2.1"
 
-  def newInstance(graph: GraphDatabaseService, queryCacheSize: Int, kernelMonitors: KernelMonitors): CypherCompiler = {
+  def newInstance(graph: GraphDatabaseService, queryCacheSize: Int, kernelMonitors: KernelMonitors,
+                  executionBatchSize: Int = 0, sortBufferSize: Int = 0,
+                  aggregationBufferSize: Int = 0, statisticsDivergenceThreshold: Double = 1.0): CypherCompiler = {
       val monitors = new Monitors(kernelMonitors)
       val parser = new CypherParser(monitors.newMonitor[ParserMonitor](monitorTag))
       val checker = new SemanticChecker(monitors.newMonitor[SemanticCheckMonitor](monitorTag))
@@ -71,8 +73,10 @@ object CypherCompilerFactory {
       val metricsFactory = CachedMetricsFactory(SimpleMetricsFactory)
       val planner = new Planner(monitors, metricsFactory, planningMonitor)
       val pipeBuilder = new LegacyVsNewPipeBuilder(new LegacyPipeBuilder(monitors), planner, planBuilderMonitor)
-      val execPlanBuilder = new ExecutionPlanBuilder(graph, pipeBuilder)
-      val planCacheFactory = () => new LRUCache[ast.Statement, ExecutionPlan](queryCacheSize)
+      val execPlanBuilder = new ExecutionPlanBuilder(graph, pipeBuilder, executionBatchSize, sortBufferSize,
+        aggregationBufferSize, statisticsDivergenceThreshold)
+      val planCacheFactory = () => new SchemaAwareLRUCache[ast.Statement, ExecutionPlan](queryCacheSize,
+        (plan, labelId, propertyKeyId) => plan.fingerprint.dependsOnSchema(labelId, propertyKeyId))
       val cacheMonitor = monitors.newMonitor[AstCacheMonitor](monitorTag)
       val cache = new MonitoringCacheAccessor[ast.Statement, ExecutionPlan](cacheMonitor)
 
@@ -89,22 +93,53 @@ case class CypherCompiler(parser: CypherParser,
                           cacheMonitor: CypherCacheFlushingMonitor[CacheAccessor[ast.Statement, ExecutionPlan]],
                           monitors: Monitors) {
 
-  def prepare(queryText: String, context: PlanContext): (ExecutionPlan, Map[String, Any]) = {
-    val (parsedQuery, extractedParams) = prepareParsedQuery(queryText, context)
+  /**
+   * Cached plans are planned again once the statistics they were costed with have drifted too far.
+   *
+   * @return the plan, the parameters extracted from literals in the query, the offsets in the query text of
+   *         those literals, mapped to the names of the parameters they were extracted into, and the names of the
+   *         parameters extracted from literals that are also part of a column name. Literals of the latter kind
+   *         are left out of the offsets: a query with another value there would have other column names.
+   */
+  def prepare(queryText: String, context: PlanContext): (ExecutionPlan, Map[String, Any], Map[Int, String], Set[String]) = {
+    val (parsedQuery, extractedParams, columnNames) = prepareParsedQuery(queryText, context)
     val cache = provideCache(cacheAccessor, cacheMonitor, context)
+    cache.get(parsedQuery.statement) match {
+      case Some(stale) if stale.fingerprint.isStale(context.statistics) => cache.remove(parsedQuery.statement, stale)
+      case _                                                            =>
+    }
     val plan = cacheAccessor.getOrElseUpdate(cache)(parsedQuery.statement, {
       executionPlanBuilder.build(context, parsedQuery)
     })
-    (plan, extractedParams)
+    val offsets = extractedLiteralOffsets(parsedQuery.statement, extractedParams)
+    val (inColumnNames, liftable) = offsets.partition {
+      case (offset, _) => columnNames.exists { case (start, end) => offset >= start && offset < end }
+    }
+    (plan, extractedParams, liftable, inColumnNames.values.toSet)
   }
 
-  private def prepareParsedQuery(queryText: String, context: PlanContext): (ParsedQuery, Map[String, Any]) = {
+  private def extractedLiteralOffsets(statement: Statement, extractedParams: Map[String, Any]): Map[Int, String] =
+    statement.treeFold(Map.empty[Int, String]) {
+      case p: ast.Parameter if extractedParams.contains(p.name) =>
+        (acc, children) => children(acc + (p.position.offset -> p.name))
+    }
+
+  /**
+   * Where in the query text the unaliased projections are, whose text becomes the name of their column. Found in
+   * the statement as parsed, since rewriting gives them aliases.
+   */
+  private def columnNameRanges(statement: Statement): Seq[(Int, Int)] =
+    statement.treeFold(Seq.empty[(Int, Int)]) {
+      case item: ast.UnaliasedReturnItem if item.alias.isEmpty =>
+        (acc, children) => children(acc :+ (item.position.offset -> (item.position.offset + item.inputText.length)))
+    }
+
+  private def prepareParsedQuery(queryText: String, context: PlanContext): (ParsedQuery, Map[String, Any], Seq[(Int, Int)]) = {
     val parsedStatement = parser.parse(queryText)
-    semanticChecker.check(queryText, parsedStatement)
-    val (rewrittenStatement, extractedParams) = astRewriter.rewrite(queryText, parsedStatement)
     val table = semanticChecker.check(queryText, parsedStatement)
+    val (rewrittenStatement, extractedParams) = astRewriter.rewrite(queryText, parsedStatement)
     val query: AbstractQuery = rewrittenStatement.asQuery.setQueryText(queryText)
-    (ParsedQuery(rewrittenStatement, query, table, queryText), extractedParams)
+    (ParsedQuery(rewrittenStatement, query, table, queryText), extractedParams, columnNameRanges(parsedStatement))
   }
 
   private def provideCache(cacheAccessor: CacheAccessor[Statement, ExecutionPlan],
@@ -20,7 +20,7 @@
 package org.neo4j.cypher.internal.compiler.v2_1
 
 import mutation.UpdateAction
-import pipes.MutableMaps
+import pipes.{Slot, SlottedRow, MutableMaps}
 import collection.{immutable, Iterator}
 import collection.mutable.{Queue, Map => MutableMap}
 
@@ -58,22 +58,45 @@ case class ExecutionContext(m: MutableMap[String, Any] = MutableMaps.empty,
   override def toMap[T, U](implicit ev: (String, Any) <:< (T, U)): immutable.Map[T, U] = m.toMap(ev)
 
   def newWith(newEntries: Seq[(String, Any)]) =
-    createWithNewMap(MutableMaps.create(this.m) ++= newEntries)
+    createWithNewMap(copyOfMap ++= newEntries)
 
   def newWith(newEntries: scala.collection.Map[String, Any]) =
-    createWithNewMap(MutableMaps.create(this.m) ++= newEntries)
+    createWithNewMap(copyOfMap ++= newEntries)
 
-  def newFrom(newEntries: Seq[(String, Any)]) =
-    createWithNewMap(MutableMaps.create(newEntries: _*))
+  def newFrom(newEntries: Seq[(String, Any)]) = m match {
+    case row: SlottedRow => createWithNewMap(row.empty ++= newEntries)
+    case _               => createWithNewMap(MutableMaps.create(newEntries: _*))
+  }
 
-  def newFrom(newEntries: scala.collection.Map[String, Any]) =
-    createWithNewMap(MutableMaps.create(newEntries))
+  def newFrom(newEntries: scala.collection.Map[String, Any]) = m match {
+    case row: SlottedRow => createWithNewMap(row.empty ++= newEntries)
+    case _               => createWithNewMap(MutableMaps.create(newEntries))
+  }
 
   def newWith(newEntry: (String, Any)) =
-    createWithNewMap(MutableMaps.create(this.m) += newEntry)
+    createWithNewMap(copyOfMap += newEntry)
+
+  def newWithSlot(slot: Slot, value: Any): ExecutionContext = {
+    val context = createWithNewMap(copyOfMap)
+    slot.set(context, value)
+    context
+  }
+
+  def newWithSlots(slot1: Slot, value1: Any, slot2: Slot, value2: Any): ExecutionContext = {
+    val context = createWithNewMap(copyOfMap)
+    slot1.set(context, value1)
+    slot2.set(context, value2)
+    context
+  }
 
   override def clone(): ExecutionContext = newFrom(m)
 
+  // Rows laid out in slots by the planner stay that way when copied
+  private def copyOfMap: MutableMap[String, Any] = m match {
+    case row: SlottedRow => row.clone()
+    case _               => MutableMaps.create(this.m)
+  }
+
   protected def createWithNewMap(newMap: MutableMap[String, Any]) = {
     copy(m = newMap)
   }
@@ -62,8 +62,11 @@ class PipeExecutionResult(val result: ClosingIterator,
   }
 
   def javaIterator: ResourceIterator[java.util.Map[String, Any]] = {
+    // copy each row straight into a java map, rather than building a scala map and wrapping it
     val inner = this.map(m => {
-      m.map(kv => kv._1 -> makeValueJavaCompatible(kv._2)).asJava
+      val row = new util.HashMap[String, Any](((m.size + 1) * 4) / 3)
+      m.foreach(kv => row.put(kv._1, makeValueJavaCompatible(kv._2)))
+      row: util.Map[String, Any]
     }).toIterator.asJava
 
     wrapInResourceIterator(inner)
@@ -21,14 +21,11 @@ package org.neo4j.cypher.internal.compiler.v2_1.commands.expressions
 
 import org.neo4j.cypher.internal.compiler.v2_1._
 import commands.{SingleNode, Pattern, PathExtractor, ShortestPath}
-import pipes.QueryState
+import pipes.{BidirectionalShortestPaths, QueryState}
 import symbols._
 import org.neo4j.cypher.SyntaxException
-import org.neo4j.graphalgo.GraphAlgoFactory
-import org.neo4j.graphdb.{Path, DynamicRelationshipType, Node, Expander}
-import org.neo4j.kernel.Traversal
+import org.neo4j.graphdb.{Path, Node, Direction}
 import collection.Map
-import scala.collection.JavaConverters._
 
 case class ShortestPathExpression(ast: ShortestPath) extends Expression with PathExtractor {
   val pathPattern:Seq[Pattern] = Seq(ast)
@@ -41,7 +38,7 @@ case class ShortestPathExpression(ast: ShortestPath) extends Expression with Pat
     }
   }
 
-  private def getMatches(m: Map[String, Any]): Any = {
+  private def getMatches(m: Map[String, Any])(implicit state: QueryState): Any = {
     val start = getEndPoint(m, ast.left)
     val end = getEndPoint(m, ast.right)
     shortestPathStrategy.findResult(start, end)
@@ -59,18 +56,10 @@ case class ShortestPathExpression(ast: ShortestPath) extends Expression with Pat
 
   def rewrite(f: (Expression) => Expression): Expression = f(ShortestPathExpression(ast.rewrite(f)))
 
-  private lazy val expander: Expander = if (ast.relTypes.isEmpty) {
-    Traversal.expanderForAllTypes(ast.dir)
-  } else {
-    ast.relTypes.foldLeft(Traversal.emptyExpander()) {
-      case (e, t) => e.add(DynamicRelationshipType.withName(t), ast.dir)
-    }
-  }
-
   val shortestPathStrategy = if (ast.single)
-    new SingleShortestPathStrategy(expander, ast.maxDepth.getOrElse(15))
+    new SingleShortestPathStrategy(ast.dir, ast.relTypes, ast.maxDepth.getOrElse(15))
   else
-    new AllShortestPathsStrategy(expander, ast.maxDepth.getOrElse(15))
+    new AllShortestPathsStrategy(ast.dir, ast.relTypes, ast.maxDepth.getOrElse(15))
 
   def calculateType(symbols: SymbolTable) =  shortestPathStrategy.typ
 
@@ -78,24 +67,33 @@ case class ShortestPathExpression(ast: ShortestPath) extends Expression with Pat
 }
 
 trait ShortestPathStrategy {
-  def findResult(start: Node, end: Node): Any
+  def findResult(start: Node, end: Node)(implicit state: QueryState): Any
   def typ: CypherType
 }
 
-class SingleShortestPathStrategy(expander: Expander, depth: Int) extends ShortestPathStrategy {
-  private val finder = GraphAlgoFactory.shortestPath(expander, depth)
+abstract class BidirectionalShortestPathStrategy(dir: Direction, relTypes: Seq[String], depth: Int, findAll: Boolean)
+  extends ShortestPathStrategy {
+
+  protected def findPaths(start: Node, end: Node)(implicit state: QueryState): Seq[Path] = {
+    val typeIds = relTypes.flatMap(state.query.getOptRelTypeId)
+    // None of the requested types exist yet, so only a path without relationships can be found
+    val maxDepth = if (relTypes.nonEmpty && typeIds.isEmpty) 0 else depth
+    new BidirectionalShortestPaths(state.query, dir, typeIds, maxDepth, findAll).find(start.getId, end.getId)
+  }
+}
+
+class SingleShortestPathStrategy(dir: Direction, relTypes: Seq[String], depth: Int)
+  extends BidirectionalShortestPathStrategy(dir, relTypes, depth, findAll = false) {
 
-  def findResult(start: Node, end: Node): Path = finder.findSinglePath(start, end)
+  def findResult(start: Node, end: Node)(implicit state: QueryState): Path = findPaths(start, end).headOption.orNull
 
   def typ = CTPath
 }
 
-class AllShortestPathsStrategy(expander: Expander, depth: Int) extends ShortestPathStrategy {
-  private val finder = GraphAlgoFactory.shortestPath(expander, depth)
+class AllShortestPathsStrategy(dir: Direction, relTypes: Seq[String], depth: Int)
+  extends BidirectionalShortestPathStrategy(dir, relTypes, depth, findAll = true) {
 
-  def findResult(start: Node, end: Node): Stream[Path] = {
-    finder.findAllPaths(start, end).asScala.toStream
-  }
+  def findResult(start: Node, end: Node)(implicit state: QueryState): Stream[Path] = findPaths(start, end).toStream
 
   def typ = CTCollection(CTPath)
 }
@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.commands.expressions
+
+import org.neo4j.cypher.internal.compiler.v2_1._
+import pipes.{SlotLayout, SlottedRow, QueryState}
+
+/**
+ * An identifier that knows where its value lives in rows laid out by the planner, and reads it from there
+ * without looking the name up. Rows laid out differently are read by name, like any identifier.
+ */
+class SlottedIdentifier(entityName: String, slots: SlotLayout) extends Identifier(entityName) {
+  private val index = slots.slotIndex(entityName)
+
+  override def apply(ctx: ExecutionContext)(implicit state: QueryState): Any = ctx.m match {
+    case row: SlottedRow if index >= 0 && (row.slots eq slots) =>
+      val value = row.valueAt(index)
+      if (value.asInstanceOf[AnyRef] eq SlottedRow.Unset) super.apply(ctx) else value
+
+    case _ =>
+      super.apply(ctx)
+  }
+}
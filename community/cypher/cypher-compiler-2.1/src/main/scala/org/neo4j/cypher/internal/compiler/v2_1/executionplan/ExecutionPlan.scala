@@ -25,5 +25,6 @@ import org.neo4j.cypher.ExecutionResult
 abstract class ExecutionPlan {
   def execute(queryContext: QueryContext, params: Map[String, Any]):ExecutionResult
   def profile(queryContext: QueryContext, params: Map[String, Any]):ExecutionResult
+  def fingerprint: PlanFingerprint
 }
 
@@ -27,7 +27,7 @@ import profiler.Profiler
 import org.neo4j.cypher.{CypherException, PeriodicCommitInOpenTransactionException}
 import org.neo4j.graphdb.GraphDatabaseService
 import org.neo4j.cypher.internal.compiler.v2_1.ast.Statement
-import org.neo4j.cypher.internal.compiler.v2_1.spi.{UpdateCountingQueryContext, CSVResources, PlanContext}
+import org.neo4j.cypher.internal.compiler.v2_1.spi.{InstrumentedPlanContext, UpdateCountingQueryContext, CSVResources, PlanContext}
 import org.neo4j.cypher.internal.compiler.v2_1.commands.PeriodicCommitQuery
 import org.neo4j.cypher.internal.compiler.v2_1.commands.Union
 import org.neo4j.cypher.internal.compiler.v2_1.symbols.SymbolTable
@@ -38,7 +38,8 @@ import org.neo4j.cypher.internal.compiler.v2_1.planner.CantHandleQueryException
 
 case class PipeInfo(pipe: Pipe,
                     updating: Boolean,
-                    periodicCommit: Option[PeriodicCommitInfo] = None)
+                    periodicCommit: Option[PeriodicCommitInfo] = None,
+                    rowSlots: Option[SlotLayout] = None)
 
 case class PeriodicCommitInfo(size: Option[Long]) {
   def batchRowCount = size.getOrElse(/* defaultSize */ 1000L)
@@ -54,20 +55,29 @@ trait PipeBuilder {
 }
 
 class ExecutionPlanBuilder(graph: GraphDatabaseService,
-                           pipeBuilder: PipeBuilder) extends PatternGraphBuilder {
+                           pipeBuilder: PipeBuilder,
+                           executionBatchSize: Int = 0,
+                           sortBufferSize: Int = 0,
+                           aggregationBufferSize: Int = 0,
+                           statisticsDivergenceThreshold: Double = 1.0) extends PatternGraphBuilder {
 
   def build(planContext: PlanContext, inputQuery: ParsedQuery): ExecutionPlan = {
     val abstractQuery = inputQuery.abstractQuery
 
-    val PipeInfo(pipe, isUpdating, periodicCommitInfo) = pipeBuilder.producePlan(inputQuery, planContext)
+    val instrumentedContext = new InstrumentedPlanContext(planContext)
+    val PipeInfo(pipe, isUpdating, periodicCommitInfo, rowSlots) = pipeBuilder.producePlan(inputQuery, instrumentedContext)
+    val planFingerprint = PlanFingerprint(inputQuery.statement, planContext, instrumentedContext.statistics.snapshot,
+      statisticsDivergenceThreshold)
 
     val columns = getQueryResultColumns(abstractQuery, pipe.symbols)
-    val func = getExecutionPlanFunction(pipe, columns, periodicCommitInfo, isUpdating, abstractQuery.getQueryText)
+    val func = getExecutionPlanFunction(pipe, columns, periodicCommitInfo, isUpdating, rowSlots, abstractQuery.getQueryText)
 
     new ExecutionPlan {
       def execute(queryContext: QueryContext, params: Map[String, Any]) = func(queryContext, params, false)
 
       def profile(queryContext: QueryContext, params: Map[String, Any]) = func(new UpdateCountingQueryContext(queryContext), params, true)
+
+      def fingerprint = planFingerprint
     }
   }
 
@@ -98,6 +108,7 @@ class ExecutionPlanBuilder(graph: GraphDatabaseService,
                                        columns: List[String],
                                        periodicCommit: Option[PeriodicCommitInfo],
                                        updating: Boolean,
+                                       rowSlots: Option[SlotLayout],
                                        queryId: AnyRef) =
     (queryContext: QueryContext, params: Map[String, Any], profile: Boolean) => {
 
@@ -110,9 +121,14 @@ class ExecutionPlanBuilder(graph: GraphDatabaseService,
       }
 
       builder.transformQueryContext(new UpdateCountingQueryContext(_))
+      builder.setRowSlots(rowSlots)
+      builder.setSortBufferSize(sortBufferSize)
+      builder.setAggregationBufferSize(aggregationBufferSize)
 
       if (profile)
         builder.setPipeDecorator(new Profiler())
+      else
+        builder.setBatchSize(executionBatchSize)
 
       builder.runWithQueryState(graph, queryId, params) {
         state =>
@@ -136,6 +152,10 @@ class ExecutionWorkflowBuilder(initialQueryContext: QueryContext) {
   private val queryContextBuilder: MappingBuilder[QueryContext] = new EagerMappingBuilder(initialQueryContext)
   private var pipeDecorator: PipeDecorator = NullPipeDecorator
   private var exceptionDecorator: CypherException => CypherException = identity
+  private var batchSize = 0
+  private var sortBufferSize = 0
+  private var aggregationBufferSize = 0
+  private var rowSlots: Option[SlotLayout] = None
 
   def transformQueryContext(f: QueryContext => QueryContext) {
     queryContextBuilder += f
@@ -151,6 +171,22 @@ class ExecutionWorkflowBuilder(initialQueryContext: QueryContext) {
     pipeDecorator = newDecorator
   }
 
+  def setBatchSize(newBatchSize: Int) {
+    batchSize = newBatchSize
+  }
+
+  def setSortBufferSize(newSortBufferSize: Int) {
+    sortBufferSize = newSortBufferSize
+  }
+
+  def setAggregationBufferSize(newAggregationBufferSize: Int) {
+    aggregationBufferSize = newAggregationBufferSize
+  }
+
+  def setRowSlots(newRowSlots: Option[SlotLayout]) {
+    rowSlots = newRowSlots
+  }
+
   def setExceptionDecorator(newDecorator: CypherException => CypherException) {
     exceptionDecorator = newDecorator
   }
@@ -163,7 +199,9 @@ class ExecutionWorkflowBuilder(initialQueryContext: QueryContext) {
 
   def runWithQueryState[T](graph: GraphDatabaseService, queryId: AnyRef, params: Map[String, Any])(f: QueryState => T) = {
     taskCloser.addTask(queryContext.close)
-    val state = new QueryState(graph, queryContext, externalResource, params, pipeDecorator, queryId = queryId)
+    val state = new QueryState(graph, queryContext, externalResource, params, pipeDecorator, queryId = queryId,
+      batchSize = batchSize, sortBufferSize = sortBufferSize,
+      aggregationBufferSize = aggregationBufferSize, rowSlots = rowSlots)
     try {
       try {
         f(state)
@@ -22,6 +22,7 @@ package org.neo4j.cypher.internal.compiler.v2_1.executionplan
 import org.neo4j.cypher.internal.compiler.v2_1.pipes.ExternalResource
 import org.neo4j.cypher.internal.compiler.v2_1.spi.QueryContext
 import java.net.URL
+import java.io.File
 import org.neo4j.cypher.{CypherException, LoadCsvStatusWrapCypherException}
 
 class LoadCsvPeriodicCommitObserver(batchRowCount: Long, resources: ExternalResource, queryContext: QueryContext)
@@ -41,6 +42,8 @@ class LoadCsvPeriodicCommitObserver(batchRowCount: Long, resources: ExternalReso
     }
   }
 
+  def createTempFile(prefix: String): File = resources.createTempFile(prefix)
+
   private def onNext() {
     updateCounter += 1
     updateCounter.resetIfPastLimit(batchRowCount)(commitAndRestartTx())
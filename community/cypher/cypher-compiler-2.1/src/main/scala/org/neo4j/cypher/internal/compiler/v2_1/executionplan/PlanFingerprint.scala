@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.executionplan
+
+import org.neo4j.cypher.internal.compiler.v2_1.ast
+import org.neo4j.cypher.internal.compiler.v2_1.ast.Statement
+import org.neo4j.cypher.internal.compiler.v2_1.spi.{TokenContext, GraphStatistics, GraphStatisticsSnapshot}
+
+/**
+ * What a plan was planned against: the labels and property keys it refers to, so that plan caches only need to evict
+ * it when an index or a constraint on one of those changes, and the statistics it was costed with, so that it can be
+ * planned again once the data has changed too much.
+ */
+case class PlanFingerprint(labelIds: Set[Int],
+                           propertyKeyIds: Set[Int],
+                           resolvedAllTokens: Boolean,
+                           statistics: GraphStatisticsSnapshot,
+                           divergenceThreshold: Double) {
+
+  /**
+   * Plans referring to labels or property keys that did not exist when planning could depend on any index or
+   * constraint created since.
+   */
+  def dependsOnSchema(labelId: Int, propertyKeyId: Int): Boolean =
+    !resolvedAllTokens || labelIds.contains(labelId) || propertyKeyIds.contains(propertyKeyId)
+
+  def isStale(current: GraphStatistics): Boolean = statistics.diverges(current, divergenceThreshold)
+}
+
+object PlanFingerprint {
+  def apply(statement: Statement, tokens: TokenContext, statistics: GraphStatisticsSnapshot,
+            divergenceThreshold: Double): PlanFingerprint = {
+    val (labelNames, propertyKeyNames) = statement.treeFold((Set.empty[String], Set.empty[String])) {
+      case label: ast.LabelName =>
+        (acc, children) => children((acc._1 + label.name, acc._2))
+      case propertyKey: ast.PropertyKeyName =>
+        (acc, children) => children((acc._1, acc._2 + propertyKey.name))
+      case hint: ast.UsingIndexHint =>
+        (acc, children) => children((acc._1, acc._2 + hint.property.name))
+    }
+    val labelIds = labelNames.map(tokens.getOptLabelId)
+    val propertyKeyIds = propertyKeyNames.map(tokens.getOptPropertyKeyId)
+    PlanFingerprint(labelIds.flatten, propertyKeyIds.flatten,
+      resolvedAllTokens = labelIds.forall(_.isDefined) && propertyKeyIds.forall(_.isDefined),
+      statistics, divergenceThreshold)
+  }
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.helpers
+
+/*
+A regular expression of literal characters followed by .* matches a subset of the strings starting with those
+characters, since . does not match line terminators
+ */
+object LiteralPrefixPattern {
+  private val pattern = """([^.\\\[\](){}*+?^$|]+)\.\*""".r
+
+  def unapply(regex: String): Option[String] = regex match {
+    case pattern(prefix) => Some(prefix)
+    case _               => None
+  }
+}
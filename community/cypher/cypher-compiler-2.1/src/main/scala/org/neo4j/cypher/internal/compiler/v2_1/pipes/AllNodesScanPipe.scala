@@ -21,11 +21,17 @@ package org.neo4j.cypher.internal.compiler.v2_1.pipes
 
 import org.neo4j.cypher.internal.compiler.v2_1.{PlanDescriptionImpl, symbols, ExecutionContext}
 import symbols._
+import batched.BatchedPipe
 
-case class AllNodesScanPipe(ident: String)(implicit pipeMonitor: PipeMonitor) extends Pipe {
+case class AllNodesScanPipe(ident: String, rowSlots: SlotLayout = SlotLayout.empty)(implicit pipeMonitor: PipeMonitor) extends Pipe with BatchedPipe {
+  private val identSlot = rowSlots.slot(ident)
 
   protected def internalCreateResults(state: QueryState): Iterator[ExecutionContext] =
-    state.query.nodeOps.all.map(n => ExecutionContext.from(ident -> n))
+    state.query.nodeOps.all.map(n => state.newExecutionContext(identSlot, n))
+
+  lazy val slots = SlotLayout(symbols)
+
+  def createBatches(state: QueryState) = BatchedPipe.nodeBatches(state.query.nodeOps.all, slots, state)
 
   def exists(predicate: Pipe => Boolean): Boolean = predicate(this)
 
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.pipes
+
+import org.neo4j.cypher.internal.PathImpl
+import org.neo4j.cypher.internal.compiler.v2_1.spi.QueryContext
+import org.neo4j.collection.primitive.{PrimitiveLongSet, PrimitiveLongObjectMap, Primitive}
+import org.neo4j.graphdb.{Path, PropertyContainer, Direction}
+import org.neo4j.kernel.api.RelationshipVisitor
+
+/**
+ * Finds the shortest paths between two nodes with a breadth first search from both ends at once, always growing the
+ * side with the smaller frontier by one level. Visited nodes are kept in primitive maps keyed by node id, and nodes and
+ * relationships are only loaded for the paths that are returned.
+ *
+ * When looking for all shortest paths, every relationship that reaches a node on the level it was first found on is
+ * remembered, so that all paths through the nodes where the two searches meet can be reconstructed.
+ */
+class BidirectionalShortestPaths(query: QueryContext, dir: Direction, types: Seq[Int], maxDepth: Int, findAll: Boolean) {
+
+  def find(start: Long, end: Long): Seq[Path] = {
+    if (start == end)
+      return Seq(PathImpl(query.nodeOps.getById(start)))
+
+    val fromStart = new Side(start, dir)
+    val fromEnd = new Side(end, dir.reverse())
+    try {
+      var meetings: PrimitiveLongSet = null
+      while ((meetings == null || meetings.isEmpty) &&
+             fromStart.depth + fromEnd.depth < maxDepth &&
+             !fromStart.frontier.isEmpty && !fromEnd.frontier.isEmpty) {
+        if (meetings != null)
+          meetings.close()
+        meetings =
+          if (fromStart.frontier.size() <= fromEnd.frontier.size()) expand(fromStart, fromEnd)
+          else expand(fromEnd, fromStart)
+      }
+
+      if (meetings == null) Seq.empty else try {
+        paths(meetings, fromStart, fromEnd)
+      } finally {
+        meetings.close()
+      }
+    } finally {
+      fromStart.close()
+      fromEnd.close()
+    }
+  }
+
+  private def expand(side: Side, other: Side): PrimitiveLongSet = {
+    val depth = side.depth + 1
+    val next = Primitive.longSet()
+    val meetings = Primitive.longSet()
+    val nodes = side.frontier.iterator()
+    while (nodes.hasNext && (findAll || meetings.isEmpty)) {
+      val node = nodes.next()
+      val relationships = query.getRelationshipIdsFor(node, side.direction, types)
+      while (relationships.hasNext && (findAll || meetings.isEmpty)) {
+        val relationship = relationships.next()
+        val neighbour = otherNode(relationship, node)
+        val visit = side.visited.get(neighbour)
+        if (visit == null) {
+          side.visited.put(neighbour, new Visit(depth, new Predecessor(relationship, node, null)))
+          next.add(neighbour)
+          if (other.visited.containsKey(neighbour))
+            meetings.add(neighbour)
+        } else if (findAll && visit.depth == depth) {
+          visit.predecessors = new Predecessor(relationship, node, visit.predecessors)
+        }
+      }
+    }
+    side.frontier.close()
+    side.frontier = next
+    side.depth = depth
+    meetings
+  }
+
+  private def otherNode(relationship: Long, node: Long): Long = {
+    query.relationshipVisit(relationship, endPoints)
+    if (endPoints.startNode == node) endPoints.endNode else endPoints.startNode
+  }
+
+  private def paths(meetings: PrimitiveLongSet, fromStart: Side, fromEnd: Side): Seq[Path] = {
+    val result = Seq.newBuilder[Path]
+    val nodes = meetings.iterator()
+    while (nodes.hasNext) {
+      val meeting = nodes.next()
+      for (toStart <- walks(fromStart, meeting);
+           toEnd <- walks(fromEnd, meeting)) {
+        result += path(toStart.reverse ++ toEnd.tail)
+      }
+    }
+    result.result()
+  }
+
+  // Walks back from the node to the origin of the search, as alternating node and relationship ids
+  private def walks(side: Side, node: Long): Seq[List[Long]] = {
+    var predecessor = side.visited.get(node).predecessors
+    if (predecessor == null) {
+      Seq(List(node))
+    } else {
+      val result = Seq.newBuilder[List[Long]]
+      while (predecessor != null) {
+        val relationship = predecessor.relationship
+        result ++= walks(side, predecessor.node).map(walk => node :: relationship :: walk)
+        predecessor = if (findAll) predecessor.next else null
+      }
+      result.result()
+    }
+  }
+
+  private def path(entities: List[Long]): Path = PathImpl(entities.zipWithIndex.map {
+    case (id, index) if index % 2 == 0 => query.nodeOps.getById(id): PropertyContainer
+    case (id, _)                       => query.relationshipOps.getById(id): PropertyContainer
+  }: _*)
+
+  private val endPoints = new EndPoints
+
+  private class EndPoints extends RelationshipVisitor {
+    var startNode: Long = -1
+    var endNode: Long = -1
+
+    def visit(relId: Long, startNode: Long, endNode: Long, `type`: Int) {
+      this.startNode = startNode
+      this.endNode = endNode
+    }
+  }
+
+  private class Side(origin: Long, val direction: Direction) extends AutoCloseable {
+    val visited: PrimitiveLongObjectMap[Visit] = Primitive.longObjectMap()
+    var frontier: PrimitiveLongSet = Primitive.longSet()
+    var depth = 0
+
+    visited.put(origin, new Visit(0, null))
+    frontier.add(origin)
+
+    def close() {
+      visited.close()
+      frontier.close()
+    }
+  }
+
+  private class Visit(val depth: Int, var predecessors: Predecessor)
+
+  private class Predecessor(val relationship: Long, val node: Long, val next: Predecessor)
+}
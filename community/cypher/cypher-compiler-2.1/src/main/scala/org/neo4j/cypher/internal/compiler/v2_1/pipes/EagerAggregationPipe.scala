@@ -19,18 +19,18 @@
  */
 package org.neo4j.cypher.internal.compiler.v2_1.pipes
 
-import aggregation.AggregationFunction
+import aggregation.{AggregationGroup, AggregationTable}
 import org.neo4j.cypher.internal.compiler.v2_1._
 import commands.expressions.{Expression, AggregationExpression}
 import data.SimpleVal
 import symbols._
-import collection.mutable.{Map => MutableMap}
+import batched.{BatchIterator, RowBatch, BatchRowMap, BatchedPipe}
 
 // Eager aggregation means that this pipe will eagerly load the whole resulting sub graphs before starting
 // to emit aggregated results.
 // Cypher is lazy until it can't - this pipe will eagerly load the full match
 class EagerAggregationPipe(source: Pipe, val keyExpressions: Map[String, Expression], aggregations: Map[String, AggregationExpression])
-                          (implicit pipeMonitor: PipeMonitor) extends PipeWithSource(source, pipeMonitor) {
+                          (implicit pipeMonitor: PipeMonitor) extends PipeWithSource(source, pipeMonitor) with BatchedPipe {
   def oldKeyExpressions: Seq[Expression] = keyExpressions.values.toSeq
 
   val symbols: SymbolTable = createSymbols()
@@ -46,46 +46,91 @@ class EagerAggregationPipe(source: Pipe, val keyExpressions: Map[String, Express
     SymbolTable(keyIdentifiers ++ aggrIdentifiers)
   }
 
+  private val keyNames: Seq[String] = keyExpressions.keys.toSeq
+  private val (aggregationNames, aggregationExpressions) = aggregations.toSeq.unzip
+
+  // grouping on a single node or relationship can use the entity id as the key
+  private lazy val keysAreEntities = keyExpressions.values.forall {
+    exp =>
+      val typ = exp.getType(source.symbols)
+      typ == CTNode || typ == CTRelationship
+  }
+
+  private def newTable(state: QueryState) =
+    AggregationTable(keyNames, keysAreEntities, aggregationExpressions, state.aggregationBufferSize)(state)
+
   protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState) = {
     // This is the temporary storage used while the aggregation is going on
-    val result = MutableMap[NiceHasher, (ExecutionContext, Seq[AggregationFunction])]()
-    val keyNames: Seq[String] = keyExpressions.map(_._1).toSeq
-    val aggregationNames: Seq[String] = aggregations.map(_._1).toSeq
+    val table = newTable(state)
 
-    def createResults(key: NiceHasher, aggregator: scala.Seq[AggregationFunction], ctx: ExecutionContext): ExecutionContext = {
+    def createResults(group: AggregationGroup): ExecutionContext = {
       val newMap = MutableMaps.empty
 
       //add key values
-      (keyNames zip key.original).foreach(newMap += _)
+      (keyNames zip group.keyValues).foreach(newMap += _)
 
       //add aggregated values
-      (aggregationNames zip aggregator.map(_.result)).foreach(newMap += _)
+      (aggregationNames zip group.functions.map(_.result)).foreach(newMap += _)
 
-      ctx.newFrom(newMap)
+      group.ctx.newFrom(newMap)
     }
 
     def createEmptyResult(params:Map[String,Any]): Iterator[ExecutionContext] = {
       val newMap = MutableMaps.empty
-      val aggregationNamesAndFunctions = aggregationNames zip aggregations.map(_._2.createAggregationFunction.result)
+      val aggregationNamesAndFunctions = aggregationNames zip aggregationExpressions.map(_.createAggregationFunction.result)
 
       aggregationNamesAndFunctions.toMap
         .foreach { case (name, zeroValue) => newMap += name -> zeroValue  }
       Iterator.single(ExecutionContext(newMap))
     }
 
-    input.foreach(ctx => {
-      val groupValues: NiceHasher = new NiceHasher(keyNames.map(ctx))
-      val aggregateFunctions: Seq[AggregationFunction] = aggregations.map(_._2.createAggregationFunction).toSeq
-      val (_, functions) = result.getOrElseUpdate(groupValues, (ctx, aggregateFunctions))
-      functions.foreach(func => func(ctx)(state))
-    })
+    input.foreach(table.aggregate)
 
-    if (result.isEmpty && keyNames.isEmpty) {
+    if (table.size == 0 && keyNames.isEmpty) {
       createEmptyResult(state.params)
     } else {
-      result.map {
-        case (key, (ctx, aggregator)) => createResults(key, aggregator, ctx)
-      }.toIterator
+      table.groups.map(createResults)
+    }
+  }
+
+  lazy val slots = SlotLayout(symbols)
+
+  def createBatches(state: QueryState) = {
+    val table = newTable(state)
+    val row = new BatchRowMap(state)
+
+    sourceBatches(source, state).foreach {
+      batch =>
+        var i = 0
+        while (i < batch.size) {
+          table.aggregate(row.moveTo(batch, i))
+          i += 1
+        }
+    }
+
+    // Without grouping keys there is always one row, holding the aggregates of nothing at all
+    val groups =
+      if (table.size == 0 && keyNames.isEmpty)
+        Iterator.single(new AggregationGroup(Seq.empty, null, aggregationExpressions.map(_.createAggregationFunction).toArray))
+      else
+        table.groups
+    val out = new RowBatch(slots, state.batchSize)
+
+    new BatchIterator {
+      protected def fetchNext(): RowBatch = {
+        out.clear()
+        while (!out.isFull && groups.hasNext) {
+          val group = groups.next()
+          val outRow = out.addRow()
+          (keyNames zip group.keyValues).foreach {
+            case (name, value) => out.setValue(outRow, name, value)
+          }
+          (aggregationNames zip group.functions).foreach {
+            case (name, function) => out.setValue(outRow, name, function.result)
+          }
+        }
+        if (out.isEmpty) null else out
+      }
     }
   }
 
@@ -23,9 +23,15 @@ import org.neo4j.cypher.internal.compiler.v2_1.symbols._
 import org.neo4j.cypher.internal.compiler.v2_1.ExecutionContext
 import org.neo4j.cypher.InternalException
 import org.neo4j.graphdb.{Relationship, Direction, Node}
+import org.neo4j.cypher.internal.compiler.v2_1.pipes.batched.{BatchIterator, RowBatch, BatchedPipe}
+
+case class ExpandPipe(source: Pipe, from: String, relName: String, to: String, dir: Direction, types: Seq[String],
+                      rowSlots: SlotLayout = SlotLayout.empty)
+                     (implicit pipeMonitor: PipeMonitor) extends PipeWithSource(source, pipeMonitor) with BatchedPipe {
+  private val fromSlot = rowSlots.slot(from)
+  private val relSlot = rowSlots.slot(relName)
+  private val toSlot = rowSlots.slot(to)
 
-case class ExpandPipe(source: Pipe, from: String, relName: String, to: String, dir: Direction, types: Seq[String])
-                     (implicit pipeMonitor: PipeMonitor) extends PipeWithSource(source, pipeMonitor) {
   protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState): Iterator[ExecutionContext] = {
     input.flatMap {
       row =>
@@ -34,7 +40,7 @@ case class ExpandPipe(source: Pipe, from: String, relName: String, to: String, d
           case n: Node =>
             val relationships: Iterator[Relationship] = state.query.getRelationshipsFor(n, dir, types)
             relationships.map {
-              case r => row.newWith(Seq(relName -> r, to -> r.getOtherNode(n)))
+              case r => row.newWithSlots(relSlot, r, toSlot, r.getOtherNode(n))
             }
 
           case value => throw new InternalException(s"Expected to find a node at $from but found $value instead")
@@ -42,8 +48,53 @@ case class ExpandPipe(source: Pipe, from: String, relName: String, to: String, d
     }
   }
 
+  lazy val slots = sourceSlots(source).add(relName, CTRelationship).add(to, CTNode)
+
+  def createBatches(state: QueryState) = {
+    val input = sourceBatches(source, state)
+    val relOffset = slots.longOffset(relName)
+    val toOffset = slots.longOffset(to)
+    val out = new RowBatch(slots, state.batchSize)
+
+    new BatchIterator {
+      private var batch: RowBatch = null
+      private var row = -1
+      private var fromNode: Node = null
+      private var relationships: Iterator[Relationship] = Iterator.empty
+
+      protected def fetchNext(): RowBatch = {
+        out.clear()
+        while (!out.isFull && nextInputRowWithRelationships()) {
+          val r = relationships.next()
+          val outRow = out.addRow(batch, row)
+          out.setEntity(outRow, relOffset, r)
+          out.setEntity(outRow, toOffset, r.getOtherNode(fromNode))
+        }
+        if (out.isEmpty) null else out
+      }
+
+      private def nextInputRowWithRelationships(): Boolean = {
+        while (!relationships.hasNext) {
+          row += 1
+          while (batch == null || row >= batch.size) {
+            if (!input.hasNext)
+              return false
+            batch = input.next()
+            row = 0
+          }
+          fromNode = batch.getValue(row, from, state) match {
+            case n: Node => n
+            case value   => throw new InternalException(s"Expected to find a node at $from but found $value instead")
+          }
+          relationships = state.query.getRelationshipsFor(fromNode, dir, types)
+        }
+        true
+      }
+    }
+  }
+
   def getFromNode(row: ExecutionContext): Any =
-    row.getOrElse(from, throw new InternalException(s"Expected to find a node at $from but found nothing"))
+    fromSlot.get(row).getOrElse(throw new InternalException(s"Expected to find a node at $from but found nothing"))
 
   def executionPlanDescription =
     source.executionPlanDescription.
@@ -20,7 +20,13 @@
 package org.neo4j.cypher.internal.compiler.v2_1.pipes
 
 import java.net.URL
+import java.io.File
 
 trait ExternalResource {
   def getCsvIterator(url: URL, fieldTerminator: Option[String] = None): Iterator[Array[String]]
+
+  /**
+   * A new, empty temporary file that is removed again when the query finishes.
+   */
+  def createTempFile(prefix: String): File
 }
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.pipes
+
+import org.neo4j.cypher.internal.compiler.v2_1._
+import java.io._
+import java.util.{PriorityQueue, Arrays, Comparator}
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * Sorts rows on precomputed sort keys, keeping at most `bufferSize` of them on the heap. Every time the buffer
+ * fills up it is sorted and written to a temporary file as a run, and the runs are merged lazily while the result
+ * is read. Equal rows keep their input order.
+ *
+ * A buffer size of zero keeps the whole sort in memory, and so does meeting a row that can't be written to disk,
+ * paths for instance, from that row on.
+ */
+class ExternalSort(ordering: Ordering[Array[Any]], bufferSize: Int)(implicit state: QueryState) {
+  import ExternalSort._
+
+  private val entryOrdering = new Comparator[SortEntry] {
+    def compare(a: SortEntry, b: SortEntry) = ordering.compare(a.keys, b.keys)
+  }
+  private val codec = new SpillCodec
+  private val runs = new ArrayBuffer[Run]
+  private var spilling = bufferSize > 0
+  private var entries = new Array[SortEntry](if (spilling) math.min(bufferSize, 1024) else 16)
+  private var size = 0
+
+  def add(keys: Array[Any], row: ExecutionContext) {
+    if (size == entries.length)
+      entries = Arrays.copyOf(entries, size * 2)
+    entries(size) = SortEntry(keys, row)
+    size += 1
+    if (spilling && size >= bufferSize)
+      spill()
+  }
+
+  def result(): Iterator[ExecutionContext] = {
+    Arrays.sort(entries, 0, size, entryOrdering)
+    val inMemory = entries.iterator.take(size)
+    if (runs.isEmpty)
+      inMemory.map(_.row)
+    else
+      merge(runs.map(_.reader) :+ inMemory)
+  }
+
+  private def spill() {
+    Arrays.sort(entries, 0, size, entryOrdering)
+    val file = state.resources.createTempFile("cypher-sort")
+    val out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))
+    try {
+      out.writeInt(size)
+      var i = 0
+      while (i < size) {
+        writeEntry(out, entries(i))
+        i += 1
+      }
+    } catch {
+      case _: CannotSpillException =>
+        spilling = false
+    } finally {
+      out.close()
+    }
+
+    if (spilling) {
+      runs += Run(file)
+      Arrays.fill(entries.asInstanceOf[Array[AnyRef]], 0, size, null)
+      size = 0
+    } else {
+      file.delete()
+    }
+  }
+
+  private def merge(sources: Seq[Iterator[SortEntry]]): Iterator[ExecutionContext] = new Iterator[ExecutionContext] {
+    private val heads = new PriorityQueue[Head](sources.size, new Comparator[Head] {
+      def compare(a: Head, b: Head) = {
+        val result = ordering.compare(a.entry.keys, b.entry.keys)
+        if (result != 0) result else a.run - b.run
+      }
+    })
+
+    for ((source, run) <- sources.zipWithIndex) {
+      val head = new Head(run, source)
+      if (head.advance())
+        heads.add(head)
+    }
+
+    def hasNext = !heads.isEmpty
+
+    def next() = {
+      if (!hasNext) Iterator.empty.next()
+      val head = heads.poll()
+      val row = head.entry.row
+      if (head.advance())
+        heads.add(head)
+      row
+    }
+  }
+
+  private case class Run(file: File) {
+    def reader: Iterator[SortEntry] = new Iterator[SortEntry] {
+      private val in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))
+      private var remaining = in.readInt()
+      closeIfDone()
+
+      def hasNext = remaining > 0
+
+      def next() = {
+        if (!hasNext) Iterator.empty.next()
+        val entry = readEntry(in)
+        remaining -= 1
+        closeIfDone()
+        entry
+      }
+
+      private def closeIfDone() {
+        if (remaining == 0) {
+          in.close()
+          file.delete()
+        }
+      }
+    }
+  }
+
+  private class Head(val run: Int, source: Iterator[SortEntry]) {
+    var entry: SortEntry = null
+
+    def advance(): Boolean = {
+      val more = source.hasNext
+      entry = if (more) source.next() else null
+      more
+    }
+  }
+
+  private def writeEntry(out: DataOutput, entry: SortEntry) {
+    out.writeInt(entry.keys.length)
+    entry.keys.foreach(codec.writeValue(out, _))
+    codec.writeRow(out, entry.row)
+  }
+
+  private def readEntry(in: DataInput): SortEntry = {
+    val keys = new Array[Any](in.readInt())
+    var i = 0
+    while (i < keys.length) {
+      keys(i) = codec.readValue(in)
+      i += 1
+    }
+    SortEntry(keys, codec.readRow(in))
+  }
+}
+
+object ExternalSort {
+  private case class SortEntry(keys: Array[Any], row: ExecutionContext)
+}
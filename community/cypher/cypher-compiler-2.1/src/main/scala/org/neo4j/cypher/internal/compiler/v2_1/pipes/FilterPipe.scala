@@ -22,14 +22,45 @@ package org.neo4j.cypher.internal.compiler.v2_1.pipes
 import org.neo4j.cypher.internal.compiler.v2_1._
 import commands.Predicate
 import data.SimpleVal
+import batched.{BatchIterator, RowBatch, BatchRowMap, BatchedPipe}
 
 case class FilterPipe(source: Pipe, predicate: Predicate)
-                     (implicit pipeMonitor: PipeMonitor) extends PipeWithSource(source, pipeMonitor) {
+                     (implicit pipeMonitor: PipeMonitor) extends PipeWithSource(source, pipeMonitor) with BatchedPipe {
   val symbols = source.symbols
 
   protected def internalCreateResults(input: Iterator[ExecutionContext],state: QueryState) =
     input.filter(ctx => predicate.isTrue(ctx)(state))
 
+  lazy val slots = sourceSlots(source)
+
+  // Rows are filtered in place, moving the rows kept to the front of the batch they came in
+  def createBatches(state: QueryState) = {
+    val input = sourceBatches(source, state)
+    val row = new BatchRowMap(state)
+
+    new BatchIterator {
+      protected def fetchNext(): RowBatch = {
+        while (input.hasNext) {
+          val batch = input.next()
+          var kept = 0
+          var i = 0
+          while (i < batch.size) {
+            if (predicate.isTrue(row.moveTo(batch, i))(state)) {
+              if (kept != i)
+                batch.moveRow(i, kept)
+              kept += 1
+            }
+            i += 1
+          }
+          batch.truncate(kept)
+          if (kept > 0)
+            return batch
+        }
+        null
+      }
+    }
+  }
+
   def executionPlanDescription =
     source.executionPlanDescription.andThen(this, "Filter", "pred" -> SimpleVal.fromStr(predicate))
 }
@@ -23,10 +23,20 @@ import org.neo4j.cypher.internal.compiler.v2_1._
 import org.neo4j.cypher.internal.compiler.v2_1.symbols._
 import org.neo4j.cypher.internal.compiler.v2_1.LabelId
 import org.neo4j.cypher.internal.compiler.v2_1.symbols.SymbolTable
+import org.neo4j.cypher.internal.compiler.v2_1.pipes.batched.BatchedPipe
+import org.neo4j.graphdb.Node
 
-case class NodeByLabelScanPipe(ident: String, label: Either[String, LabelId])(implicit pipeMonitor: PipeMonitor) extends Pipe {
+case class NodeByLabelScanPipe(ident: String, label: Either[String, LabelId], rowSlots: SlotLayout = SlotLayout.empty)(implicit pipeMonitor: PipeMonitor) extends Pipe with BatchedPipe {
+  private val identSlot = rowSlots.slot(ident)
 
-  protected def internalCreateResults(state: QueryState): Iterator[ExecutionContext] = {
+  protected def internalCreateResults(state: QueryState): Iterator[ExecutionContext] =
+    nodes(state).map(n => state.newExecutionContext(identSlot, n))
+
+  lazy val slots = SlotLayout(symbols)
+
+  def createBatches(state: QueryState) = BatchedPipe.nodeBatches(nodes(state), slots, state)
+
+  private def nodes(state: QueryState): Iterator[Node] = {
     val optLabelId = label match {
       case Left(str)      => state.query.getOptLabelId(str).map(LabelId)
       case Right(labelId) => Some(labelId)
@@ -34,8 +44,7 @@ case class NodeByLabelScanPipe(ident: String, label: Either[String, LabelId])(im
 
     optLabelId match {
       case Some(labelId) =>
-        val nodes = state.query.getNodesByLabel(labelId.id)
-        nodes.map(n => ExecutionContext.from(ident -> n))
+        state.query.getNodesByLabel(labelId.id)
       case None =>
         Iterator.empty
     }
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.pipes
+
+import org.neo4j.cypher.internal.compiler.v2_1._
+import org.neo4j.cypher.internal.compiler.v2_1.symbols.CTNode
+import org.neo4j.cypher.internal.compiler.v2_1.commands.expressions.Expression
+import org.neo4j.cypher.internal.compiler.v2_1.symbols.SymbolTable
+import org.neo4j.cypher.internal.compiler.v2_1.helpers.LiteralPrefixPattern
+import org.neo4j.kernel.api.index.{IndexSeek, IndexDescriptor}
+
+/*
+Which values of the indexed property to seek. The bounds are evaluated once per query; when they evaluate to
+values the index can't range over (nulls, or a mix of numbers and strings) no nodes match, just like no nodes
+would pass the comparisons they were planned from.
+ */
+sealed trait IndexSeekRange {
+  def indexSeek(state: QueryState): Option[IndexSeek]
+}
+
+case class RangeSeekBound(expr: Expression, inclusive: Boolean)
+
+case class ValueRange(lower: Option[RangeSeekBound], upper: Option[RangeSeekBound]) extends IndexSeekRange {
+  def indexSeek(state: QueryState): Option[IndexSeek] = {
+    val lowerValue = lower.map(bound => bound.expr(ExecutionContext.empty)(state))
+    val upperValue = upper.map(bound => bound.expr(ExecutionContext.empty)(state))
+    val includeLower = lower.exists(_.inclusive)
+    val includeUpper = upper.exists(_.inclusive)
+    val values = lowerValue.toSeq ++ upperValue
+
+    if (values.forall(_.isInstanceOf[Number]))
+      Some(IndexSeek.numberRange(
+        lowerValue.map(_.asInstanceOf[Number]).orNull, includeLower,
+        upperValue.map(_.asInstanceOf[Number]).orNull, includeUpper))
+    else if (values.forall(isString))
+      Some(IndexSeek.stringRange(
+        lowerValue.map(_.toString).orNull, includeLower,
+        upperValue.map(_.toString).orNull, includeUpper))
+    else
+      None
+  }
+
+  private def isString(value: Any) = value.isInstanceOf[String] || value.isInstanceOf[Char]
+}
+
+/*
+Only strings can match a regular expression. Without a literal prefix to narrow the seek down, all of them might.
+ */
+case class RegexPrefixRange(regex: Expression) extends IndexSeekRange {
+  def indexSeek(state: QueryState): Option[IndexSeek] = regex(ExecutionContext.empty)(state) match {
+    case LiteralPrefixPattern(prefix) => Some(IndexSeek.stringPrefix(prefix))
+    case _: String                    => Some(IndexSeek.stringRange(null, false, null, false))
+    case _                            => None
+  }
+}
+
+case class NodeIndexRangeSeekPipe(ident: String, label: Either[String, LabelId], propertyKey: Either[String, PropertyKeyId],
+                                  range: IndexSeekRange, rowSlots: SlotLayout = SlotLayout.empty)
+                                 (implicit pipeMonitor: PipeMonitor) extends Pipe {
+  private val identSlot = rowSlots.slot(ident)
+
+  protected def internalCreateResults(state: QueryState): Iterator[ExecutionContext] = {
+    val optLabelId = label match {
+      case Left(str)      => state.query.getOptLabelId(str).map(LabelId)
+      case Right(labelId) => Some(labelId)
+    }
+
+    val optPropertyKeyId = propertyKey match {
+      case Left(str)      => state.query.getOptPropertyKeyId(str).map(PropertyKeyId)
+      case Right(propertyKeyId) => Some(propertyKeyId)
+    }
+
+    (optLabelId, optPropertyKeyId, range.indexSeek(state)) match {
+      case (Some(labelId), Some(propertyKeyId), Some(seek)) =>
+        val descriptor = new IndexDescriptor(labelId.id, propertyKeyId.id)
+        state.query.rangeIndexSearch(descriptor, seek).map(node => state.newExecutionContext(identSlot, node))
+      case _ => Iterator.empty
+    }
+  }
+
+  def exists(predicate: Pipe => Boolean): Boolean = predicate(this)
+
+  def executionPlanDescription = new PlanDescriptionImpl(this, "NodeIndexRangeSeek", Seq.empty, Seq(
+    "ident" -> ident,
+    "label" -> label,
+    "propertyKey"-> propertyKey))
+
+  def symbols: SymbolTable = new SymbolTable(Map(ident -> CTNode))
+
+  override def monitor = pipeMonitor
+}
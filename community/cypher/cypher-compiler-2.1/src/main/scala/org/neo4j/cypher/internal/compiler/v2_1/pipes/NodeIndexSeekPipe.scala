@@ -25,7 +25,8 @@ import org.neo4j.cypher.internal.compiler.v2_1.commands.expressions.Expression
 import org.neo4j.kernel.api.index.IndexDescriptor
 import org.neo4j.cypher.internal.compiler.v2_1.symbols.SymbolTable
 
-case class NodeIndexSeekPipe(ident: String, label: Either[String, LabelId], propertyKey: Either[String, PropertyKeyId], valueExpr: Expression)(implicit pipeMonitor: PipeMonitor) extends Pipe {
+case class NodeIndexSeekPipe(ident: String, label: Either[String, LabelId], propertyKey: Either[String, PropertyKeyId], valueExpr: Expression, rowSlots: SlotLayout = SlotLayout.empty)(implicit pipeMonitor: PipeMonitor) extends Pipe {
+  private val identSlot = rowSlots.slot(ident)
 
   protected def internalCreateResults(state: QueryState): Iterator[ExecutionContext] = {
     val optLabelId = label match {
@@ -43,7 +44,7 @@ case class NodeIndexSeekPipe(ident: String, label: Either[String, LabelId], prop
         val descriptor = new IndexDescriptor(labelId.id, propertyKeyId.id)
         val value = valueExpr(ExecutionContext.empty)(state)
         val iterator = state.query.exactIndexSearch(descriptor, value)
-        iterator.map(node => ExecutionContext.from(ident -> node))
+        iterator.map(node => state.newExecutionContext(identSlot, node))
       }
       case _ => Iterator.empty
     }
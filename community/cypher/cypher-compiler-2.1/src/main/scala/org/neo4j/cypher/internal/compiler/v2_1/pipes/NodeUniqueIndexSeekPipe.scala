@@ -28,7 +28,9 @@ import org.neo4j.cypher.internal.compiler.v2_1.symbols.SymbolTable
 case class NodeUniqueIndexSeekPipe(ident: String,
                                    label: Either[String, LabelId],
                                    propertyKey: Either[String, PropertyKeyId],
-                                   valueExpr: Expression)(implicit pipeMonitor: PipeMonitor) extends Pipe {
+                                   valueExpr: Expression,
+                                   rowSlots: SlotLayout = SlotLayout.empty)(implicit pipeMonitor: PipeMonitor) extends Pipe {
+  private val identSlot = rowSlots.slot(ident)
 
   protected def internalCreateResults(state: QueryState): Iterator[ExecutionContext] = {
     val optLabelId = label match {
@@ -46,7 +48,7 @@ case class NodeUniqueIndexSeekPipe(ident: String,
         val descriptor = new IndexDescriptor(labelId.id, propertyKeyId.id)
         val value = valueExpr(ExecutionContext.empty)(state)
         state.query.exactUniqueIndexSearch(descriptor, value) match {
-          case Some(node) => Iterator(ExecutionContext.from(ident -> node))
+          case Some(node) => Iterator(state.newExecutionContext(identSlot, node))
           case _          => Iterator.empty
         }
       }
@@ -25,10 +25,12 @@ import org.neo4j.cypher.InternalException
 import org.neo4j.graphdb.{Relationship, Direction, Node}
 import org.neo4j.cypher.internal.compiler.v2_1.commands.Predicate
 
-case class OptionalExpandPipe(source: Pipe, from: String, relName: String, to: String, dir: Direction, types: Seq[String], predicate: Predicate)
+case class OptionalExpandPipe(source: Pipe, from: String, relName: String, to: String, dir: Direction, types: Seq[String], predicate: Predicate,
+                              rowSlots: SlotLayout = SlotLayout.empty)
                      (implicit pipeMonitor: PipeMonitor) extends PipeWithSource(source, pipeMonitor) {
-  val nulls: ExecutionContext =
-    ExecutionContext.empty.newWith(Seq(relName -> null, to -> null))
+  private val fromSlot = rowSlots.slot(from)
+  private val relSlot = rowSlots.slot(relName)
+  private val toSlot = rowSlots.slot(to)
 
   protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState): Iterator[ExecutionContext] = {
 
@@ -41,13 +43,13 @@ case class OptionalExpandPipe(source: Pipe, from: String, relName: String, to: S
           case n: Node =>
             val relationships: Iterator[Relationship] = state.query.getRelationshipsFor(n, dir, types)
             val contextWithRelationships: Iterator[ExecutionContext] = relationships.map {
-              case r => row.newWith(Seq(relName -> r, to -> r.getOtherNode(n)))
+              case r => row.newWithSlots(relSlot, r, toSlot, r.getOtherNode(n))
             }.filter(ctx => predicate.isTrue(ctx))
 
             if (contextWithRelationships.hasNext) {
               contextWithRelationships
             } else {
-              Iterator(row ++ nulls)
+              Iterator(row.newWithSlots(relSlot, null, toSlot, null))
             }
 
           case value => throw new InternalException(s"Expected to find a node at $from but found $value instead")
@@ -56,7 +58,7 @@ case class OptionalExpandPipe(source: Pipe, from: String, relName: String, to: S
   }
 
   def getFromNode(row: ExecutionContext): Any =
-    row.getOrElse(from, throw new InternalException(s"Expected to find a node at $from but found nothing"))
+    fromSlot.get(row).getOrElse(throw new InternalException(s"Expected to find a node at $from but found nothing"))
 
   def executionPlanDescription =
     source.executionPlanDescription.
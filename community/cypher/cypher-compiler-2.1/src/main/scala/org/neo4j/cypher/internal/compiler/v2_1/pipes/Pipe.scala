@@ -83,7 +83,7 @@ trait Pipe {
 case class NullPipe(symbols: SymbolTable = SymbolTable())
                    (implicit val monitor: PipeMonitor) extends Pipe {
   def internalCreateResults(state: QueryState) =
-    Iterator(state.initialContext getOrElse ExecutionContext.empty)
+    Iterator(state.initialContext getOrElse state.newExecutionContext())
 
   def exists(pred: Pipe => Boolean) = pred(this)
 
@@ -23,9 +23,10 @@ import org.neo4j.cypher.internal.compiler.v2_1.commands.expressions.Expression
 import org.neo4j.cypher.internal.compiler.v2_1.symbols.SymbolTable
 import org.neo4j.cypher.internal.compiler.v2_1.ExecutionContext
 import org.neo4j.cypher.internal.compiler.v2_1.data.SimpleVal
+import org.neo4j.cypher.internal.compiler.v2_1.pipes.batched.{RowBatch, BatchRowMap, BatchedPipe}
 
-case class ProjectionNewPipe(source: Pipe, expressions: Map[String, Expression])
-                            (implicit pipeMonitor: PipeMonitor) extends PipeWithSource(source, pipeMonitor) {
+case class ProjectionNewPipe(source: Pipe, expressions: Map[String, Expression], rowSlots: SlotLayout = SlotLayout.empty)
+                            (implicit pipeMonitor: PipeMonitor) extends PipeWithSource(source, pipeMonitor) with BatchedPipe {
   val symbols: SymbolTable = {
     val newIdentifiers = expressions.map {
       case (name, expression) => name -> expression.getType(source.symbols)
@@ -34,18 +35,46 @@ case class ProjectionNewPipe(source: Pipe, expressions: Map[String, Expression])
     source.symbols.add(newIdentifiers)
   }
 
+  private val slottedExpressions = expressions.toSeq.map {
+    case (name, expression) => rowSlots.slot(name) -> expression
+  }
+
   protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState) =
     input.map {
       original =>
-        val projection = ExecutionContext.empty
-        expressions.foreach {
-          case (name, expression) =>
-            projection += name -> expression(original)(state)
+        val projection = state.newExecutionContext()
+        slottedExpressions.foreach {
+          case (slot, expression) =>
+            slot.set(projection, expression(original)(state))
         }
 
         projection
     }
 
+  lazy val slots = SlotLayout.empty.add(symbols.identifiers.filterKeys(expressions.contains))
+
+  def createBatches(state: QueryState) = {
+    val row = new BatchRowMap(state)
+    val projections = expressions.toSeq
+    val out = new RowBatch(slots, state.batchSize)
+
+    sourceBatches(source, state).map {
+      batch =>
+        out.clear()
+        var i = 0
+        while (i < batch.size) {
+          val original = row.moveTo(batch, i)
+          val outRow = out.addRow()
+          projections.foreach {
+            case (name, expression) =>
+              out.setValue(outRow, name, expression(original)(state))
+          }
+          i += 1
+        }
+        out
+    }
+  }
+
   override def executionPlanDescription =
     source.executionPlanDescription
       .andThen(this, "Projection",
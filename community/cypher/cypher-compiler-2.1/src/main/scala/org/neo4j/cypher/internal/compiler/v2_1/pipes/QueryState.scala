@@ -33,9 +33,31 @@ case class QueryState(db: GraphDatabaseService,
                       decorator: PipeDecorator,
                       timeReader: TimeReader = new TimeReader,
                       var initialContext: Option[ExecutionContext] = None,
-                      queryId: AnyRef = UUID.randomUUID().toString) {
+                      queryId: AnyRef = UUID.randomUUID().toString,
+                      batchSize: Int = 0,
+                      sortBufferSize: Int = 0,
+                      aggregationBufferSize: Int = 0,
+                      rowSlots: Option[SlotLayout] = None) {
   def readTimeStamp(): Long = timeReader.getTime
 
+  /**
+   * A new row, laid out in the slots the planner picked when there are any.
+   */
+  def newExecutionContext(entries: (String, Any)*): ExecutionContext = {
+    val context = rowSlots match {
+      case Some(slots) => ExecutionContext(new SlottedRow(slots))
+      case None        => ExecutionContext.empty
+    }
+    entries.foreach(context += _)
+    context
+  }
+
+  def newExecutionContext(slot: Slot, value: Any): ExecutionContext = {
+    val context = newExecutionContext()
+    slot.set(context, value)
+    context
+  }
+
   def graphDatabaseAPI: GraphDatabaseAPI = db match {
     case i: GraphDatabaseAPI => i
     case _                   => throw new IllegalStateException("Graph database does not implement GraphDatabaseAPI")
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.pipes
+
+import org.neo4j.cypher.internal.compiler.v2_1.symbols._
+import org.neo4j.cypher.internal.compiler.v2_1.ExecutionContext
+
+object SlotLayout {
+  val empty = SlotLayout()
+
+  def apply(symbols: SymbolTable): SlotLayout = empty.add(symbols.identifiers)
+}
+
+/**
+ * Decides where every identifier of a row lives in a SlottedRow or a RowBatch. Nodes and relationships get long
+ * slots, everything else a reference slot. Adding identifiers never moves the existing ones, so a layout built by
+ * adding to another one can copy the rows of the other one slot for slot.
+ *
+ * A RowBatch keeps nodes and relationships as long ids in its long slots. A SlottedRow keeps all of its values,
+ * nodes and relationships included, as they are in one Array[AnyRef], long slots first, at the index given by
+ * [[slotIndex]]. Slots of identifiers not in the row hold SlottedRow.Unset, which tells them apart from
+ * identifiers that are in the row with a null value.
+ */
+case class SlotLayout(longs: Seq[(String, CypherType)] = Vector.empty, refs: Seq[String] = Vector.empty) {
+  val names: IndexedSeq[String] = (longs.map(_._1) ++ refs).toIndexedSeq
+
+  private val longOffsets: Map[String, Int] = longs.map(_._1).zipWithIndex.toMap
+  private val refOffsets: Map[String, Int] = refs.zipWithIndex.toMap
+  private val relationshipSlots: Array[Boolean] = longs.map(_._2 == CTRelationship).toArray
+  private val slotIndexes: Map[String, Int] = names.zipWithIndex.toMap
+
+  def numberOfLongs: Int = longs.size
+
+  def numberOfRefs: Int = refs.size
+
+  def numberOfSlots: Int = names.size
+
+  def contains(name: String): Boolean = longOffsets.contains(name) || refOffsets.contains(name)
+
+  def longOffset(name: String): Int = longOffsets.getOrElse(name, -1)
+
+  def refOffset(name: String): Int = refOffsets.getOrElse(name, -1)
+
+  def slotIndex(name: String): Int = slotIndexes.getOrElse(name, -1)
+
+  /**
+   * Looks up where an identifier lives once, for pipes and expressions to read and write it by index.
+   */
+  def slot(name: String): Slot = new Slot(name, this, slotIndex(name))
+
+  def isRelationship(longOffset: Int): Boolean = relationshipSlots(longOffset)
+
+  def add(name: String, typ: CypherType): SlotLayout =
+    if (contains(name))
+      this
+    else if (typ == CTNode || typ == CTRelationship)
+      copy(longs = longs :+ (name -> typ))
+    else
+      copy(refs = refs :+ name)
+
+  def add(identifiers: collection.Map[String, CypherType]): SlotLayout =
+    identifiers.toSeq.sortBy(_._1).foldLeft(this) {
+      case (layout, (name, typ)) => layout.add(name, typ)
+    }
+
+  def startsWith(other: SlotLayout): Boolean = longs.startsWith(other.longs) && refs.startsWith(other.refs)
+}
+
+/**
+ * Where one identifier lives in the rows of a layout, looked up when the plan is built. Rows laid out by another
+ * layout, or not laid out at all, are read and written by name.
+ */
+final class Slot(val name: String, layout: SlotLayout, index: Int) {
+  def get(ctx: ExecutionContext): Option[Any] = ctx.m match {
+    case row: SlottedRow if index >= 0 && (row.slots eq layout) =>
+      val value = row.valueAt(index)
+      if (value.asInstanceOf[AnyRef] eq SlottedRow.Unset) None else Some(value)
+
+    case _ =>
+      ctx.get(name)
+  }
+
+  def set(ctx: ExecutionContext, value: Any) {
+    ctx.m match {
+      case row: SlottedRow if index >= 0 && (row.slots eq layout) => row.setValueAt(index, value)
+      case _                                                      => ctx += name -> value
+    }
+  }
+}
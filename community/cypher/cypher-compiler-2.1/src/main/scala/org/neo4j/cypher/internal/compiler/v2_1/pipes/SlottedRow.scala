@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.pipes
+
+import java.util.Arrays
+import collection.mutable.{Map => MutableMap}
+
+object SlottedRow {
+  /**
+   * What a slot holds when the identifier isn't in the row at all, as opposed to being in it with null.
+   */
+  object Unset
+
+  private def unset(size: Int) = {
+    val slotValues = new Array[AnyRef](size)
+    Arrays.fill(slotValues, Unset)
+    slotValues
+  }
+}
+
+/**
+ * A row whose identifiers live in slots assigned when the query was planned, instead of in a hash map of its
+ * own. Copying a row is copying an array. The pipes and identifiers of the plan read and write the slots by
+ * index, see [[org.neo4j.cypher.internal.compiler.v2_1.pipes.Slot]]; anything reading or writing by name looks
+ * the slot up in the layout. Identifiers the planner didn't know about are kept in a map on the side.
+ */
+final class SlottedRow private(val slots: SlotLayout,
+                               private val slotValues: Array[AnyRef],
+                               private var others: MutableMap[String, Any]) extends MutableMap[String, Any] {
+  import SlottedRow._
+
+  def this(slots: SlotLayout) = this(slots, SlottedRow.unset(slots.numberOfSlots), null)
+
+  /**
+   * The value in a slot, or Unset.
+   */
+  def valueAt(index: Int): Any = slotValues(index)
+
+  def setValueAt(index: Int, value: Any) {
+    slotValues(index) = value.asInstanceOf[AnyRef]
+  }
+
+  def get(key: String): Option[Any] = {
+    val index = slots.slotIndex(key)
+    if (index >= 0) {
+      val value = slotValues(index)
+      if (value eq Unset) None else Some(value)
+    } else {
+      if (others == null) None else others.get(key)
+    }
+  }
+
+  def iterator: Iterator[(String, Any)] = {
+    val fromSlots = slots.names.iterator.zipWithIndex.collect {
+      case (name, i) if slotValues(i) ne Unset => name -> slotValues(i)
+    }
+    val fromOthers = if (others == null) Iterator.empty else others.iterator
+    fromSlots ++ fromOthers
+  }
+
+  def +=(kv: (String, Any)) = {
+    val (key, value) = kv
+    val index = slots.slotIndex(key)
+    if (index >= 0) {
+      slotValues(index) = value.asInstanceOf[AnyRef]
+    } else {
+      if (others == null)
+        others = MutableMaps.empty
+      others += kv
+    }
+    this
+  }
+
+  def -=(key: String) = {
+    val index = slots.slotIndex(key)
+    if (index >= 0)
+      slotValues(index) = Unset
+    else if (others != null)
+      others -= key
+    this
+  }
+
+  override def ++=(xs: TraversableOnce[(String, Any)]): this.type = xs match {
+    case other: SlottedRow if other.slots eq slots =>
+      var i = 0
+      while (i < slotValues.length) {
+        if (other.slotValues(i) ne Unset)
+          slotValues(i) = other.slotValues(i)
+        i += 1
+      }
+      if (other.others != null)
+        other.others.foreach(this += _)
+      this
+
+    case _ =>
+      super.++=(xs)
+  }
+
+  override def empty = new SlottedRow(slots)
+
+  override def clone() =
+    new SlottedRow(slots, slotValues.clone(), if (others == null) null else others.clone())
+}
@@ -21,34 +21,38 @@ package org.neo4j.cypher.internal.compiler.v2_1.pipes
 
 import org.neo4j.cypher.internal.compiler.v2_1._
 import commands.SortItem
-import symbols._
 import scala.math.signum
 
 case class SortPipe(source: Pipe, sortDescription: List[SortItem])
-              (implicit pipeMonitor: PipeMonitor) extends PipeWithSource(source, pipeMonitor) with ExecutionContextComparer {
+              (implicit pipeMonitor: PipeMonitor) extends PipeWithSource(source, pipeMonitor) with Comparer {
+  private val sortItems = sortDescription.toArray
+
   def symbols = source.symbols
 
-  protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState) =
-    input.toList.
-      sortWith((a, b) => compareBy(a, b, sortDescription)(state)).iterator
+  protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState) = {
+    implicit val s = state
+    val sort = new ExternalSort(new SortKeyOrdering(sortItems, this), state.sortBufferSize)
+    input.foreach(row => sort.add(sortItems.map(_(row)), row))
+    sort.result()
+  }
 
   override def executionPlanDescription = source.executionPlanDescription.andThen(this, "Sort", "descr" -> sortDescription)
 
   override def isLazy = false
 }
 
-trait ExecutionContextComparer extends Comparer {
-  def compareBy(a: ExecutionContext, b: ExecutionContext, order: Seq[SortItem])(implicit qtx: QueryState): Boolean = order match {
-    case Nil => false
-    case head :: tail => {
-      val aVal = head(a)
-      val bVal = head(b)
-      signum(compare(aVal, bVal)) match {
-        case 1 => !head.ascending
-        case -1 => head.ascending
-        case 0 => compareBy(a, b, tail)
-      }
+/**
+ * Orders the sort keys computed for two rows, one key per sort item.
+ */
+class SortKeyOrdering(sortItems: Array[SortItem], comparer: Comparer)(implicit qtx: QueryState) extends Ordering[Array[Any]] {
+  override def compare(a: Array[Any], b: Array[Any]): Int = {
+    var i = 0
+    while (i < sortItems.length) {
+      val res = signum(comparer.compare(a(i), b(i)))
+      if (res != 0)
+        return if (sortItems(i).ascending) res else -res
+      i += 1
     }
+    0
   }
-
 }
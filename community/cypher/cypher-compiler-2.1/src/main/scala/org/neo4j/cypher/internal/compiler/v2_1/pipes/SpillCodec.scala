@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.pipes
+
+import org.neo4j.cypher.internal.compiler.v2_1._
+import org.neo4j.graphdb.{Relationship, Node}
+import java.io.{DataInput, DataOutput}
+
+/**
+ * Writes rows, and the values in them, to temporary files and reads them back. Nodes and relationships are written
+ * by id and looked up again when read. Only scalars, strings, lists and maps of those can be written, anything
+ * else, paths for instance, fails with a [[CannotSpillException]].
+ */
+class SpillCodec(implicit state: QueryState) {
+  import SpillCodec._
+
+  def writeRow(out: DataOutput, row: ExecutionContext) {
+    if (row.mutationCommands.nonEmpty)
+      throw new CannotSpillException
+    out.writeInt(row.size)
+    row.foreach {
+      case (key, value) =>
+        writeString(out, key)
+        writeValue(out, value)
+    }
+  }
+
+  def readRow(in: DataInput): ExecutionContext = {
+    val row = state.newExecutionContext()
+    var columns = in.readInt()
+    while (columns > 0) {
+      row += readString(in) -> readValue(in)
+      columns -= 1
+    }
+    row
+  }
+
+  def writeValue(out: DataOutput, value: Any) {
+    value match {
+      case null            => out.writeByte(NULL)
+      case x: Boolean      => out.writeByte(if (x) TRUE else FALSE)
+      case x: Long         => out.writeByte(LONG); out.writeLong(x)
+      case x: Int          => out.writeByte(INT); out.writeInt(x)
+      case x: Short        => out.writeByte(SHORT); out.writeShort(x)
+      case x: Byte         => out.writeByte(BYTE); out.writeByte(x)
+      case x: Double       => out.writeByte(DOUBLE); out.writeDouble(x)
+      case x: Float        => out.writeByte(FLOAT); out.writeFloat(x)
+      case x: Char         => out.writeByte(CHAR); out.writeChar(x)
+      case x: String       => out.writeByte(STRING); writeString(out, x)
+      case x: Node         => out.writeByte(NODE); out.writeLong(x.getId)
+      case x: Relationship => out.writeByte(RELATIONSHIP); out.writeLong(x.getId)
+      case x: Seq[_] =>
+        out.writeByte(SEQ)
+        out.writeInt(x.size)
+        x.foreach(writeValue(out, _))
+      case x: collection.Map[_, _] if x.keys.forall(_.isInstanceOf[String]) =>
+        out.writeByte(MAP)
+        out.writeInt(x.size)
+        x.foreach {
+          case (key, v) =>
+            writeString(out, key.asInstanceOf[String])
+            writeValue(out, v)
+        }
+      case _ =>
+        throw new CannotSpillException
+    }
+  }
+
+  def readValue(in: DataInput): Any = in.readByte() match {
+    case NULL         => null
+    case TRUE         => true
+    case FALSE        => false
+    case LONG         => in.readLong()
+    case INT          => in.readInt()
+    case SHORT        => in.readShort()
+    case BYTE         => in.readByte()
+    case DOUBLE       => in.readDouble()
+    case FLOAT        => in.readFloat()
+    case CHAR         => in.readChar()
+    case STRING       => readString(in)
+    case NODE         => state.query.nodeOps.getById(in.readLong())
+    case RELATIONSHIP => state.query.relationshipOps.getById(in.readLong())
+    case SEQ          => List.fill(in.readInt())(readValue(in))
+    case MAP          => Map(List.fill(in.readInt())(readString(in) -> readValue(in)): _*)
+  }
+
+  private def writeString(out: DataOutput, value: String) {
+    val bytes = value.getBytes(UTF8)
+    out.writeInt(bytes.length)
+    out.write(bytes)
+  }
+
+  private def readString(in: DataInput): String = {
+    val bytes = new Array[Byte](in.readInt())
+    in.readFully(bytes)
+    new String(bytes, UTF8)
+  }
+}
+
+class CannotSpillException extends RuntimeException
+
+object SpillCodec {
+  private val UTF8 = "UTF-8"
+
+  private final val NULL: Byte = 0
+  private final val TRUE: Byte = 1
+  private final val FALSE: Byte = 2
+  private final val LONG: Byte = 3
+  private final val INT: Byte = 4
+  private final val SHORT: Byte = 5
+  private final val BYTE: Byte = 6
+  private final val DOUBLE: Byte = 7
+  private final val FLOAT: Byte = 8
+  private final val CHAR: Byte = 9
+  private final val STRING: Byte = 10
+  private final val NODE: Byte = 11
+  private final val RELATIONSHIP: Byte = 12
+  private final val SEQ: Byte = 13
+  private final val MAP: Byte = 14
+}
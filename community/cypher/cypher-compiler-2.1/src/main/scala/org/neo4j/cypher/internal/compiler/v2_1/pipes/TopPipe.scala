@@ -24,45 +24,29 @@ import commands.SortItem
 import commands.expressions.Expression
 import data.SimpleVal
 
-import symbols._
-import scala.math._
-import java.util.Comparator
+import java.util.{Arrays, Comparator, PriorityQueue}
 
 /*
  * TopPipe is used when a query does a ORDER BY ... LIMIT query. Instead of ordering the whole result set and then
- * returning the matching top results, we only keep the top results in heap, which allows us to release memory earlier
+ * returning the matching top results, we only keep the top results in heap, which allows us to release memory earlier.
+ * The rows kept are held in a bounded max-heap, so each new row costs at most one comparison against the current
+ * worst row and a logarithmic number of comparisons to replace it.
  */
 class TopPipe(source: Pipe, sortDescription: List[SortItem], countExpression: Expression)
              (implicit pipeMonitor: PipeMonitor) extends PipeWithSource(source, pipeMonitor) with Comparer {
 
   val sortItems = sortDescription.toArray
-  val sortItemsCount = sortItems.size
 
-  type SortDataWithContext = (Array[Any],ExecutionContext)
+  // the sequence number breaks ties, so that equal rows come out in the order they came in
+  private case class TopEntry(keys: Array[Any], seq: Long, ctx: ExecutionContext)
 
-  class LessThanComparator(comparer: Comparer)(implicit qtx : QueryState) extends Ordering[SortDataWithContext] {
-    override def compare(a: SortDataWithContext, b: SortDataWithContext): Int = {
-      val v1 = a._1
-      val v2 = b._1
-      var i = 0
-      while (i < sortItemsCount) {
-        val res = signum(comparer.compare(v1(i), v2(i)))
-        if (res != 0) {
-          val sortItem = sortItems(i)
-          return if (sortItem.ascending) res else -res
-        }
-        i += 1
-      }
-      0
+  private class TopEntryComparator(keyOrdering: Ordering[Array[Any]]) extends Comparator[TopEntry] {
+    def compare(a: TopEntry, b: TopEntry): Int = {
+      val res = keyOrdering.compare(a.keys, b.keys)
+      if (res != 0) res else java.lang.Long.compare(a.seq, b.seq)
     }
   }
 
-  def binarySearch(array: Array[SortDataWithContext], comparator: Comparator[SortDataWithContext])(key: SortDataWithContext) = {
-    java.util.Arrays.binarySearch(array.asInstanceOf[Array[SortDataWithContext]],key, comparator)
-  }
-
-  def arrayEntry(ctx : ExecutionContext)(implicit qtx : QueryState) : SortDataWithContext = (sortItems.map(_(ctx)),ctx)
-
   protected def internalCreateResults(input:Iterator[ExecutionContext], state: QueryState): Iterator[ExecutionContext] = {
     implicit val s = state
     if (input.isEmpty)
@@ -70,39 +54,32 @@ class TopPipe(source: Pipe, sortDescription: List[SortItem], countExpression: Ex
     else if (sortDescription.isEmpty)
       input
     else {
-
-      val lessThan = new LessThanComparator(this)
-
       val first = input.next()
       val count = countExpression(first).asInstanceOf[Number].intValue()
-      var result = new Array[SortDataWithContext](count)
-      result(0) = arrayEntry(first)
-      var last : Int = 0
-
-      while ( last < count - 1 && input.hasNext ) {
-        last += 1
-        result(last) = arrayEntry(input.next())
+      if (count <= 0)
+        return Iterator.empty
+
+      val lessThan = new TopEntryComparator(new SortKeyOrdering(sortItems, this))
+      val heap = new PriorityQueue[TopEntry](math.min(count, 1024), java.util.Collections.reverseOrder(lessThan))
+      var seq = 0L
+
+      def offer(ctx: ExecutionContext) {
+        val entry = TopEntry(sortItems.map(_(ctx)), seq, ctx)
+        seq += 1
+        if (heap.size < count)
+          heap.add(entry)
+        else if (lessThan.compare(entry, heap.peek()) < 0) {
+          heap.poll()
+          heap.add(entry)
+        }
       }
 
-      if (input.isEmpty) {
-        result.slice(0,last + 1).sorted(lessThan).iterator.map(_._2)
-      } else {
-        result = result.sorted(lessThan)
+      offer(first)
+      input.foreach(offer)
 
-        val search = binarySearch(result, lessThan) _
-        input.foreach {
-          ctx =>
-            val next = arrayEntry(ctx)
-            if (lessThan.compare(next, result(last)) < 0) {
-              val idx = - search(next) - 1
-              if (idx >= 0 && idx < count) {
-                Array.copy(result, idx, result, idx + 1, count - idx - 1)
-                result(idx) = next
-              }
-            }
-        }
-        result.toIterator.map(_._2)
-      }
+      val result = heap.toArray(new Array[TopEntry](heap.size))
+      Arrays.sort(result, lessThan)
+      result.iterator.map(_.ctx)
     }
   }
 
@@ -21,47 +21,191 @@ package org.neo4j.cypher.internal.compiler.v2_1.pipes
 
 import org.neo4j.graphdb.{Relationship, Node, Direction}
 import org.neo4j.cypher.internal.compiler.v2_1.ExecutionContext
+import org.neo4j.cypher.internal.compiler.v2_1.commands.Predicate
 import org.neo4j.cypher.InternalException
 import org.neo4j.cypher.internal.compiler.v2_1.symbols._
+import org.neo4j.collection.primitive.{PrimitiveLongObjectMap, Primitive}
 import scala.collection.mutable
 
+/**
+ * Expands variable length relationships depth first. Only the current path is kept: the relationships on it are
+ * tracked in a primitive set for relationship uniqueness, and the relationship list of a path is only built when a
+ * row is produced. Relationship predicates are evaluated on every hop, with the relationship bound to the given
+ * identifier, so branches that fail them are never expanded.
+ *
+ * With distinctEndpoints set, every reachable end node is produced once and the relationships are not bound. For
+ * patterns with a minimum length of at most one this is a breadth first search that visits every node once.
+ */
 case class VarLengthExpandPipe(source: Pipe, fromName: String, relName: String, toName: String, dir: Direction,
-                               types: Seq[String], min: Int, max: Option[Int])(implicit pipeMonitor: PipeMonitor)
+                               types: Seq[String], min: Int, max: Option[Int],
+                               relationshipPredicates: Seq[(String, Predicate)] = Seq.empty,
+                               distinctEndpoints: Boolean = false)(implicit pipeMonitor: PipeMonitor)
   extends PipeWithSource(source, pipeMonitor) {
 
-  private def varLengthExpand(node: Node, state: QueryState, maxDepth: Option[Int]): Iterator[(Node, Seq[Relationship])] = {
-    val stack = new mutable.Stack[(Node, Seq[Relationship])]
-    stack.push((node, Seq.empty))
+  private val minDepth = min
+  private val maxDepth = max.getOrElse(Int.MaxValue)
 
+  private def depthFirst(start: Node, accepts: Relationship => Boolean, state: QueryState): Iterator[(Node, Seq[Relationship])] =
     new Iterator[(Node, Seq[Relationship])] {
+      private val onPath = Primitive.longSet()
+      private val nodes = mutable.ArrayBuffer(start)
+      private val rels = mutable.ArrayBuffer.empty[Relationship]
+      // the relationships still to follow from every node on the path, taken from the end
+      private val candidates = mutable.ArrayBuffer.empty[mutable.ArrayBuffer[Relationship]]
+      private var done = false
+      private var nextPath: (Node, Seq[Relationship]) = if (minDepth == 0) (start, Seq.empty) else null
+
+      def hasNext: Boolean = {
+        if (nextPath == null && !done)
+          nextPath = fetchNext()
+        nextPath != null
+      }
+
       def next(): (Node, Seq[Relationship]) = {
-        val (node, rels) = stack.pop()
-        if (rels.length < maxDepth.getOrElse(Int.MaxValue)) {
-          val relationships: Iterator[Relationship] = state.query.getRelationshipsFor(node, dir, types)
-          relationships.foreach { rel =>
-            val otherNode = rel.getOtherNode(node)
-            if (!rels.contains(rel)) {
-              stack.push((otherNode, rels :+ rel))
+        if (!hasNext)
+          Iterator.empty.next()
+        val path = nextPath
+        nextPath = null
+        path
+      }
+
+      private def fetchNext(): (Node, Seq[Relationship]) = {
+        while (true) {
+          if (candidates.size < nodes.size)
+            candidates += candidatesFrom(nodes.last)
+
+          val current = candidates.last
+          if (current.nonEmpty) {
+            val rel = current.remove(current.size - 1)
+            onPath.add(rel.getId)
+            rels += rel
+            nodes += rel.getOtherNode(nodes.last)
+            if (rels.size >= minDepth)
+              return (nodes.last, rels.toList)
+          } else {
+            candidates.remove(candidates.size - 1)
+            if (rels.isEmpty) {
+              done = true
+              onPath.close()
+              return null
             }
+            onPath.remove(rels.remove(rels.size - 1).getId)
+            nodes.remove(nodes.size - 1)
           }
         }
-        (node, rels)
+        null
       }
 
-      def hasNext: Boolean = stack.nonEmpty
+      private def candidatesFrom(node: Node): mutable.ArrayBuffer[Relationship] = {
+        val result = mutable.ArrayBuffer.empty[Relationship]
+        if (rels.size < maxDepth)
+          state.query.getRelationshipsFor(node, dir, types).foreach {
+            rel => if (!onPath.contains(rel.getId) && accepts(rel)) result += rel
+          }
+        result
+      }
+    }
+
+  /*
+  Nodes other than the start node are end points exactly when their breadth first depth is within the maximum, since
+  a shortest path never repeats a relationship. The start node is an end point of a longer path only if it lies on a
+  cycle that is short enough. Following directed relationships that is any relationship back to it. Following both
+  directions, every node remembers the first relationship of the path it was found through, and a cycle is closed by
+  a relationship back to the start node that is not the one the node was reached through, or by a relationship
+  between two nodes that were reached through different first relationships.
+   */
+  private def breadthFirst(start: Node, accepts: Relationship => Boolean, state: QueryState): Iterator[Node] =
+    new Iterator[Node] {
+      private val reached: PrimitiveLongObjectMap[Reached] = Primitive.longObjectMap()
+      private val found = mutable.Queue.empty[Node]
+      private var frontier = mutable.ArrayBuffer(start)
+      private var depth = 0
+      private var startFound = minDepth == 0
+
+      reached.put(start.getId, new Reached(0, -1))
+      if (startFound)
+        found += start
+
+      def hasNext: Boolean = {
+        while (found.isEmpty && depth < maxDepth && frontier.nonEmpty)
+          expandFrontier()
+        found.nonEmpty
+      }
+
+      def next(): Node = {
+        if (!hasNext)
+          Iterator.empty.next()
+        found.dequeue()
+      }
+
+      private def expandFrontier() {
+        depth += 1
+        val nextFrontier = mutable.ArrayBuffer.empty[Node]
+        frontier.foreach {
+          node =>
+            val from = reached.get(node.getId)
+            state.query.getRelationshipsFor(node, dir, types).foreach {
+              rel => if (accepts(rel)) {
+                val other = rel.getOtherNode(node)
+                if (other.getId == start.getId) {
+                  if (dir != Direction.BOTH || rel.getId != from.firstRelationship)
+                    foundStart()
+                } else reached.get(other.getId) match {
+                  case null =>
+                    val first = if (from.depth == 0) rel.getId else from.firstRelationship
+                    reached.put(other.getId, new Reached(depth, first))
+                    nextFrontier += other
+                    found += other
+                  case to =>
+                    if (dir == Direction.BOTH && to.firstRelationship != from.firstRelationship &&
+                        from.depth + to.depth + 1 <= maxDepth)
+                      foundStart()
+                }
+              }
+            }
+        }
+        frontier = nextFrontier
+      }
+
+      private def foundStart() {
+        if (!startFound) {
+          startFound = true
+          found += start
+        }
+      }
+    }
+
+  private def distinctEndNodes(start: Node, accepts: Relationship => Boolean, state: QueryState): Iterator[Node] =
+    if (min <= 1)
+      breadthFirst(start, accepts, state)
+    else {
+      val seen = Primitive.longSet()
+      depthFirst(start, accepts, state).map(_._1).filter(node => seen.add(node.getId))
+    }
+
+  private def relationshipFilter(row: ExecutionContext, state: QueryState): Relationship => Boolean =
+    if (relationshipPredicates.isEmpty)
+      _ => true
+    else {
+      val hopRow = row.newWith(relationshipPredicates.map { case (name, _) => name -> null })
+      rel => relationshipPredicates.forall {
+        case (name, predicate) =>
+          hopRow += name -> rel
+          predicate.isTrue(hopRow)(state)
+      }
     }
-  }
 
   protected def internalCreateResults(input: Iterator[ExecutionContext], state: QueryState): Iterator[ExecutionContext] = {
     input.flatMap {
       row => {
         val fromNode: Any = getFromNode(row)
         fromNode match {
+          case n: Node if distinctEndpoints =>
+            distinctEndNodes(n, relationshipFilter(row, state), state).map(node => row.newWith(toName -> node))
+
           case n: Node =>
-            val paths = varLengthExpand(n, state, max)
-            paths.collect {
-              case (node, rels) if rels.length >= min =>
-                row.newWith(Seq(relName -> rels, toName -> node))
+            depthFirst(n, relationshipFilter(row, state), state).map {
+              case (node, rels) => row.newWith(Seq(relName -> rels, toName -> node))
             }
 
           case value => throw new InternalException(s"Expected to find a node at $fromName but found $value instead")
@@ -76,5 +220,9 @@ case class VarLengthExpandPipe(source: Pipe, fromName: String, relName: String,
   def executionPlanDescription = source.executionPlanDescription.
       andThen(this, "Var length expand", "from" -> fromName, "to" -> toName, "relName" -> relName, "min" -> min, "max" -> max)
 
-  def symbols = source.symbols.add(toName, CTNode).add(relName, CTRelationship)
+  def symbols =
+    if (distinctEndpoints) source.symbols.add(toName, CTNode)
+    else source.symbols.add(toName, CTNode).add(relName, CTRelationship)
 }
+
+private class Reached(val depth: Int, val firstRelationship: Long)
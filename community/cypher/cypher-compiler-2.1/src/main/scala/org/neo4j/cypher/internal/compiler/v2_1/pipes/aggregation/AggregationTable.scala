@@ -0,0 +1,259 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.pipes.aggregation
+
+import org.neo4j.cypher.internal.compiler.v2_1._
+import commands.expressions.AggregationExpression
+import pipes.{CannotSpillException, SpillCodec, NiceHasher, QueryState}
+import org.neo4j.collection.primitive.{PrimitiveLongObjectVisitor, Primitive}
+import org.neo4j.graphdb.{Relationship, Node}
+import java.io._
+import collection.mutable.{ArrayBuffer, Map => MutableMap}
+
+/**
+ * The groups of an eager aggregation, built up one input row at a time.
+ *
+ * At most `bufferSize` groups are kept on the heap. Past that, rows that don't belong to a group that is already in
+ * memory are written to one of a number of partition files, picked by the hash of their grouping key, and each
+ * partition is aggregated on its own once the groups in memory have been read. A buffer size of zero keeps all
+ * groups in memory, and so does meeting a row that can't be written to disk, from that row on.
+ */
+abstract class AggregationTable(aggregations: Array[AggregationExpression], bufferSize: Int, depth: Int)
+                               (implicit state: QueryState) {
+  import AggregationTable._
+
+  private var spilling = bufferSize > 0
+  private var partitions: Array[Partition] = null
+  private lazy val codec = new SpillCodec
+  private lazy val rowBuffer = new ByteArrayOutputStream()
+
+  def aggregate(ctx: ExecutionContext)
+
+  /**
+   * All groups, in no particular order. Spilled partitions are only aggregated as the groups are read.
+   */
+  def groups: Iterator[AggregationGroup] =
+    if (partitions == null)
+      inMemory
+    else
+      inMemory ++ partitions.iterator.filter(_ != null).flatMap(_.groups)
+
+  def size: Int
+
+  protected def inMemory: Iterator[AggregationGroup]
+
+  protected def newTable(bufferSize: Int, depth: Int): AggregationTable
+
+  protected def newGroup(keyValues: Seq[Any], ctx: ExecutionContext): AggregationGroup = {
+    val functions = new Array[AggregationFunction](aggregations.length)
+    var i = 0
+    while (i < functions.length) {
+      functions(i) = aggregations(i).createAggregationFunction
+      i += 1
+    }
+    new AggregationGroup(keyValues, ctx, functions)
+  }
+
+  /**
+   * Writes a row that starts a new group to disk, when there is no room left for new groups. Returns false when the
+   * row was not written, and a group has to be found or created for it in memory.
+   */
+  protected def spilled(ctx: ExecutionContext, keyHash: Int): Boolean = {
+    if (!spilling || size < bufferSize)
+      return false
+
+    rowBuffer.reset()
+    try {
+      codec.writeRow(new DataOutputStream(rowBuffer), ctx)
+    } catch {
+      case _: CannotSpillException =>
+        stopSpilling()
+        return false
+    }
+
+    if (partitions == null)
+      partitions = new Array[Partition](FANOUT)
+    val index = partitionOf(keyHash)
+    if (partitions(index) == null)
+      partitions(index) = new Partition
+    partitions(index).write(rowBuffer)
+    true
+  }
+
+  private def stopSpilling() {
+    spilling = false
+    if (partitions != null) {
+      val spilled = partitions
+      partitions = null
+      spilled.filter(_ != null).foreach(_.rows.foreach(aggregate))
+    }
+  }
+
+  private def partitionOf(keyHash: Int): Int = {
+    var h = keyHash
+    h ^= h >>> 16
+    h *= 0x85ebca6b
+    h ^= h >>> 13
+    h *= 0xc2b2ae35
+    h ^= h >>> 16
+    (h >>> (depth * FANOUT_BITS)) & (FANOUT - 1)
+  }
+
+  private class Partition {
+    private val file = state.resources.createTempFile("cypher-aggregation")
+    private val out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))
+    private var count = 0
+
+    def write(row: ByteArrayOutputStream) {
+      row.writeTo(out)
+      count += 1
+    }
+
+    def rows: Iterator[ExecutionContext] = {
+      out.close()
+      val in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))
+      var remaining = count
+      new Iterator[ExecutionContext] {
+        if (remaining == 0) done()
+
+        def hasNext = remaining > 0
+
+        def next() = {
+          if (!hasNext) Iterator.empty.next()
+          val row = codec.readRow(in)
+          remaining -= 1
+          if (remaining == 0) done()
+          row
+        }
+
+        private def done() {
+          in.close()
+          file.delete()
+        }
+      }
+    }
+
+    def groups: Iterator[AggregationGroup] = {
+      val table = newTable(if (depth + 1 < MAX_DEPTH) bufferSize else 0, depth + 1)
+      rows.foreach(table.aggregate)
+      table.groups
+    }
+  }
+}
+
+object AggregationTable {
+  private final val FANOUT_BITS = 4
+  private final val FANOUT = 1 << FANOUT_BITS
+  private final val MAX_DEPTH = 32 / FANOUT_BITS
+
+  def apply(keyNames: Seq[String], keysAreEntities: Boolean, aggregations: Seq[AggregationExpression],
+            bufferSize: Int)(implicit state: QueryState): AggregationTable =
+    if (keyNames.size == 1 && keysAreEntities)
+      new EntityKeyedTable(keyNames.head, aggregations.toArray, bufferSize, 0)
+    else
+      new HashedTable(keyNames.toArray, aggregations.toArray, bufferSize, 0)
+}
+
+/**
+ * An aggregation group: the grouping key values, the first row of the group and the functions aggregating it.
+ */
+final class AggregationGroup(val keyValues: Seq[Any], val ctx: ExecutionContext,
+                             val functions: Array[AggregationFunction]) {
+  def apply(row: ExecutionContext)(implicit state: QueryState) {
+    var i = 0
+    while (i < functions.length) {
+      functions(i)(row)
+      i += 1
+    }
+  }
+}
+
+/**
+ * Groups on any number of keys of any type, by hashing their values.
+ */
+class HashedTable(keyNames: Array[String], aggregations: Array[AggregationExpression], bufferSize: Int, depth: Int)
+                 (implicit state: QueryState) extends AggregationTable(aggregations, bufferSize, depth) {
+  private val table = MutableMap[NiceHasher, AggregationGroup]()
+
+  def aggregate(ctx: ExecutionContext) {
+    val key = new NiceHasher(keyNames.map(ctx))
+    var group = table.getOrElse(key, null)
+    if (group == null) {
+      if (spilled(ctx, key.hashCode()))
+        return
+      group = table.getOrElseUpdate(key, newGroup(key.original, ctx))
+    }
+    group(ctx)
+  }
+
+  def size = table.size
+
+  protected def inMemory = table.valuesIterator
+
+  protected def newTable(bufferSize: Int, depth: Int) = new HashedTable(keyNames, aggregations, bufferSize, depth)
+}
+
+/**
+ * Groups on a single node or relationship key, straight on the entity id. Any other key value, null for instance,
+ * is grouped by a [[HashedTable]] on the side.
+ */
+class EntityKeyedTable(keyName: String, aggregations: Array[AggregationExpression], bufferSize: Int, depth: Int)
+                      (implicit state: QueryState) extends AggregationTable(aggregations, bufferSize, depth) {
+  private val table = Primitive.longObjectMap[AggregationGroup]()
+  private var others: HashedTable = null
+
+  def aggregate(ctx: ExecutionContext) {
+    val id = ctx(keyName) match {
+      case n: Node         => n.getId
+      case r: Relationship => r.getId
+      case _ =>
+        if (others == null)
+          others = new HashedTable(Array(keyName), aggregations, bufferSize, depth)
+        others.aggregate(ctx)
+        return
+    }
+
+    var group = table.get(id)
+    if (group == null) {
+      if (spilled(ctx, (id ^ (id >>> 32)).toInt))
+        return
+      group = table.get(id)
+      if (group == null) {
+        group = newGroup(Seq(ctx(keyName)), ctx)
+        table.put(id, group)
+      }
+    }
+    group(ctx)
+  }
+
+  def size = table.size() + (if (others == null) 0 else others.size)
+
+  protected def inMemory = {
+    val groups = new ArrayBuffer[AggregationGroup](table.size())
+    table.visitEntries(new PrimitiveLongObjectVisitor[AggregationGroup] {
+      def visited(key: Long, value: AggregationGroup) {
+        groups += value
+      }
+    })
+    if (others == null) groups.iterator else groups.iterator ++ others.groups
+  }
+
+  protected def newTable(bufferSize: Int, depth: Int) = new EntityKeyedTable(keyName, aggregations, bufferSize, depth)
+}
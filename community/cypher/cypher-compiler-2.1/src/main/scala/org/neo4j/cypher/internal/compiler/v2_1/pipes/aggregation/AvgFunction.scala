@@ -32,18 +32,19 @@ class AvgFunction(val value: Expression)
   def name = "AVG"
 
   private var count: Int = 0
-  private var sofar: Any = 0
+  private val sofar = new NumericAccumulator
 
   def result =
     if (count > 0)
-      divide(sofar, count.toDouble)
+      divide(sofar.value, count.toDouble)
     else
       null
 
   def apply(data: ExecutionContext)(implicit state: QueryState) {
-    actOnNumber(value(data), (number) => {
+    val number = numberOrNull(value(data))
+    if (number != null) {
       count += 1
-      sofar = plus(sofar, number)
-    })
+      sofar.add(number)
+    }
   }
 }
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.pipes.aggregation
+
+import org.neo4j.cypher.internal.helpers.TypeSafeMathSupport
+
+/**
+ * Adds numbers up the way repeated [[TypeSafeMathSupport.plus]] does, widening the sum from int to long, float and
+ * double as values of those types come along, but in primitive fields rather than by boxing a new number for every
+ * value added. Numbers of other types than the java primitive wrappers are handed to `plus` as they are.
+ */
+final class NumericAccumulator extends TypeSafeMathSupport {
+  import NumericAccumulator._
+
+  private var kind = INT
+  private var integral: Long = 0      // the sum while it is an int or a long
+  private var floating: Double = 0.0  // the sum while it is a float or a double
+  private var boxed: Any = null       // the sum once another kind of number came along
+
+  def add(number: Number) {
+    number match {
+      case _: java.lang.Integer | _: java.lang.Short | _: java.lang.Byte => addIntegral(number.longValue(), INT)
+      case _: java.lang.Long                                           => addIntegral(number.longValue(), LONG)
+      case _: java.lang.Float                                          => addFloating(number.floatValue(), FLOAT)
+      case _: java.lang.Double                                         => addFloating(number.doubleValue(), DOUBLE)
+      case _ =>
+        boxed = plus(value, number)
+        kind = BOXED
+    }
+  }
+
+  def value: Any = kind match {
+    case INT    => integral.toInt
+    case LONG   => integral
+    case FLOAT  => floating.toFloat
+    case DOUBLE => floating
+    case BOXED  => boxed
+  }
+
+  private def addIntegral(x: Long, xKind: Int) {
+    kind match {
+      case INT | LONG =>
+        kind = math.max(kind, xKind)
+        integral = if (kind == INT) (integral + x).toInt else integral + x
+      case FLOAT =>
+        floating = floating.toFloat + x.toFloat
+      case DOUBLE =>
+        floating = floating + x.toDouble
+      case BOXED =>
+        boxed = plus(boxed, if (xKind == INT) x.toInt else x)
+    }
+  }
+
+  private def addFloating(x: Double, xKind: Int) {
+    kind match {
+      case INT | LONG =>
+        floating = if (xKind == FLOAT) integral.toFloat + x.toFloat else integral.toDouble + x
+        kind = xKind
+      case FLOAT =>
+        floating = if (xKind == FLOAT) floating.toFloat + x.toFloat else floating.toFloat.toDouble + x
+        kind = xKind
+      case DOUBLE =>
+        floating = floating + x
+      case BOXED =>
+        boxed = plus(boxed, if (xKind == FLOAT) x.toFloat else x)
+    }
+  }
+}
+
+object NumericAccumulator {
+  // in order of widening, except for BOXED
+  private final val INT = 0
+  private final val LONG = 1
+  private final val FLOAT = 2
+  private final val DOUBLE = 3
+  private final val BOXED = 4
+}
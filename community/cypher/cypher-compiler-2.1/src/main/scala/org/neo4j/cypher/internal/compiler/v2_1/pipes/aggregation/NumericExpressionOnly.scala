@@ -28,11 +28,15 @@ trait NumericExpressionOnly {
   def value: Expression
 
   def actOnNumber[U](obj: Any, f: Number => U) {
-    obj match {
-      case null =>
-      case number: Number => f(number)
-      case _ =>
-        throw new CypherTypeException("%s(%s) can only handle numerical values, or null.".format(name, value))
-    }
+    val number = numberOrNull(obj)
+    if (number != null)
+      f(number)
+  }
+
+  def numberOrNull(obj: Any): Number = obj match {
+    case null => null
+    case number: Number => number
+    case _ =>
+      throw new CypherTypeException("%s(%s) can only handle numerical values, or null.".format(name, value))
   }
 }
@@ -22,20 +22,20 @@ package org.neo4j.cypher.internal.compiler.v2_1.pipes.aggregation
 import org.neo4j.cypher.internal.compiler.v2_1._
 import commands.expressions.Expression
 import pipes.QueryState
-import org.neo4j.cypher.internal.helpers._
 
 class SumFunction(val value: Expression)
   extends AggregationFunction
-  with TypeSafeMathSupport
   with NumericExpressionOnly {
 
   def name = "SUM"
 
-  var result: Any = 0
+  private val sum = new NumericAccumulator
+
+  def result: Any = sum.value
 
   def apply(data: ExecutionContext)(implicit state: QueryState) {
-    actOnNumber(value(data), (number) => {
-      result = plus(result, number)
-    })
+    val number = numberOrNull(value(data))
+    if (number != null)
+      sum.add(number)
   }
 }
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.pipes.batched
+
+import org.neo4j.cypher.internal.compiler.v2_1.ExecutionContext
+import org.neo4j.cypher.internal.compiler.v2_1.pipes.{MutableMaps, QueryState}
+import collection.mutable.{Map => MutableMap, Set => MutableSet}
+
+/**
+ * Shows one row of a RowBatch as the map predicates and expressions expect to evaluate against. The same map
+ * is moved from row to row instead of building a map per row. Values written to it are kept aside until it
+ * moves to the next row, they never end up in the batch. So are removals: identifiers removed from the map
+ * are hidden from it until then, the batch keeps them.
+ */
+class BatchRowMap(state: QueryState) extends MutableMap[String, Any] {
+  private var batch: RowBatch = null
+  private var row = 0
+  private val written = MutableMaps.empty
+  private val removed = MutableSet.empty[String]
+
+  /**
+   * An ExecutionContext reading from this map, following it from row to row.
+   */
+  val context = ExecutionContext(this)
+
+  def moveTo(batch: RowBatch, row: Int): ExecutionContext = {
+    this.batch = batch
+    this.row = row
+    if (written.nonEmpty)
+      written.clear()
+    if (removed.nonEmpty)
+      removed.clear()
+    context
+  }
+
+  def get(key: String): Option[Any] =
+    if (written.nonEmpty && written.contains(key))
+      written.get(key)
+    else if (batch.layout.contains(key) && (removed.isEmpty || !removed.contains(key)))
+      Some(batch.getValue(row, key, state))
+    else
+      None
+
+  def iterator: Iterator[(String, Any)] = {
+    val fromBatch = batch.layout.names.filterNot(name => written.contains(name) || removed.contains(name)).map(name => name -> batch.getValue(row, name, state))
+    fromBatch.iterator ++ written.iterator
+  }
+
+  def +=(kv: (String, Any)) = {
+    written += kv
+    if (removed.nonEmpty)
+      removed -= kv._1
+    this
+  }
+
+  def -=(key: String) = {
+    written -= key
+    if (batch.layout.contains(key))
+      removed += key
+    this
+  }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.pipes.batched
+
+import org.neo4j.cypher.internal.compiler.v2_1.ExecutionContext
+import org.neo4j.cypher.internal.compiler.v2_1.pipes.{SlotLayout, QueryState, Pipe}
+import org.neo4j.cypher.InternalException
+import org.neo4j.graphdb.Node
+
+/**
+ * A pipe that, besides producing rows one at a time, can hand its results over as batches of rows laid out in
+ * slots. Batches are only used when the query state asks for them, and when every pipe below this one can
+ * produce batches as well; otherwise the pipe works on rows as usual.
+ *
+ * A batch handed out is only valid until the next call to hasNext or next on the iterator that returned it,
+ * producers are free to refill the same batch over and over.
+ */
+trait BatchedPipe extends Pipe {
+  def slots: SlotLayout
+
+  def createBatches(state: QueryState): Iterator[RowBatch]
+
+  lazy val batchable: Boolean = sources.forall {
+    case source: BatchedPipe => source.batchable
+    case _                   => false
+  }
+
+  override def createResults(state: QueryState): Iterator[ExecutionContext] =
+    if (state.batchSize > 0 && batchable)
+      BatchedPipe.toRows(createBatches(state), state)
+    else
+      super.createResults(state)
+
+  protected def sourceSlots(source: Pipe): SlotLayout = source match {
+    case batched: BatchedPipe => batched.slots
+    case _                    => SlotLayout(source.symbols)
+  }
+
+  protected def sourceBatches(source: Pipe, state: QueryState): Iterator[RowBatch] = source match {
+    case batched: BatchedPipe => batched.createBatches(state)
+    case _                    => throw new InternalException(s"Expected $source to produce batches")
+  }
+}
+
+object BatchedPipe {
+  /**
+   * Turns the rows of the batches back into execution contexts, for the pipes and clients working on rows.
+   */
+  def toRows(batches: Iterator[RowBatch], state: QueryState): Iterator[ExecutionContext] =
+    new Iterator[ExecutionContext] {
+      private var batch: RowBatch = null
+      private var row = 0
+
+      def hasNext: Boolean = {
+        while ((batch == null || row == batch.size) && batches.hasNext) {
+          batch = batches.next()
+          row = 0
+        }
+        batch != null && row < batch.size
+      }
+
+      def next(): ExecutionContext = {
+        if (!hasNext)
+          Iterator.empty.next()
+
+        val context = state.newExecutionContext()
+        batch.layout.names.foreach(name => context += name -> batch.getValue(row, name, state))
+        row += 1
+        context
+      }
+    }
+
+  /**
+   * Puts nodes into batches with a single slot.
+   */
+  def nodeBatches(nodes: Iterator[Node], layout: SlotLayout, state: QueryState): Iterator[RowBatch] =
+    new BatchIterator {
+      private val batch = new RowBatch(layout, state.batchSize)
+
+      protected def fetchNext(): RowBatch = {
+        batch.clear()
+        while (!batch.isFull && nodes.hasNext)
+          batch.setEntity(batch.addRow(), 0, nodes.next())
+        if (batch.isEmpty) null else batch
+      }
+    }
+}
+
+/**
+ * An iterator of batches that fetches one batch ahead of time.
+ */
+abstract class BatchIterator extends Iterator[RowBatch] {
+  private var fetched = false
+  private var nextBatch: RowBatch = null
+
+  /**
+   * Produces the next batch, or null when there are no more.
+   */
+  protected def fetchNext(): RowBatch
+
+  def hasNext: Boolean = {
+    if (!fetched) {
+      nextBatch = fetchNext()
+      fetched = true
+    }
+    nextBatch != null
+  }
+
+  def next(): RowBatch = {
+    if (!hasNext)
+      Iterator.empty.next()
+    fetched = false
+    nextBatch
+  }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.pipes.batched
+
+import org.neo4j.cypher.internal.compiler.v2_1.pipes.{SlotLayout, QueryState}
+import org.neo4j.cypher.InternalException
+import org.neo4j.graphdb.{Relationship, Node, PropertyContainer}
+import java.util.Arrays
+
+object RowBatch {
+  /**
+   * The id kept in a long slot holding null.
+   */
+  val NULL: Long = -1
+}
+
+/**
+ * A fixed number of rows, stored one after the other in arrays laid out by a SlotLayout. Long slots keep the
+ * id of a node or relationship, and next to it the entity itself when the producer already had it, so that
+ * reading the row back does not have to look the entity up again.
+ */
+final class RowBatch(val layout: SlotLayout, val capacity: Int) {
+  import RowBatch.NULL
+
+  private val longWidth = layout.numberOfLongs
+  private val refWidth = layout.numberOfRefs
+  private val ids = new Array[Long](capacity * longWidth)
+  private val entities = new Array[AnyRef](capacity * longWidth)
+  private val refs = new Array[AnyRef](capacity * refWidth)
+  private var rows = 0
+
+  def size: Int = rows
+
+  def isEmpty: Boolean = rows == 0
+
+  def isFull: Boolean = rows == capacity
+
+  def clear() {
+    truncate(0)
+  }
+
+  /**
+   * Drops every row from the given one on.
+   */
+  def truncate(newSize: Int) {
+    Arrays.fill(entities, newSize * longWidth, rows * longWidth, null)
+    Arrays.fill(refs, newSize * refWidth, rows * refWidth, null)
+    rows = newSize
+  }
+
+  /**
+   * Appends a row with every slot set to null, and returns its index.
+   */
+  def addRow(): Int = {
+    if (isFull)
+      throw new InternalException(s"Can't add more than $capacity rows to a batch")
+    val row = rows
+    Arrays.fill(ids, row * longWidth, (row + 1) * longWidth, NULL)
+    rows += 1
+    row
+  }
+
+  /**
+   * Appends a copy of a row of another batch, whose layout this batch's layout starts with. Slots not known
+   * by the other batch are set to null.
+   */
+  def addRow(source: RowBatch, sourceRow: Int): Int = {
+    val row = addRow()
+    System.arraycopy(source.ids, sourceRow * source.longWidth, ids, row * longWidth, source.longWidth)
+    System.arraycopy(source.entities, sourceRow * source.longWidth, entities, row * longWidth, source.longWidth)
+    System.arraycopy(source.refs, sourceRow * source.refWidth, refs, row * refWidth, source.refWidth)
+    row
+  }
+
+  /**
+   * Overwrites a row with another row of this batch.
+   */
+  def moveRow(from: Int, to: Int) {
+    System.arraycopy(ids, from * longWidth, ids, to * longWidth, longWidth)
+    System.arraycopy(entities, from * longWidth, entities, to * longWidth, longWidth)
+    System.arraycopy(refs, from * refWidth, refs, to * refWidth, refWidth)
+  }
+
+  def getId(row: Int, offset: Int): Long = ids(row * longWidth + offset)
+
+  def setId(row: Int, offset: Int, id: Long) {
+    ids(row * longWidth + offset) = id
+    entities(row * longWidth + offset) = null
+  }
+
+  def getEntity(row: Int, offset: Int, state: QueryState): PropertyContainer = {
+    val index = row * longWidth + offset
+    val entity = entities(index)
+    if (entity != null) {
+      entity.asInstanceOf[PropertyContainer]
+    } else {
+      val id = ids(index)
+      if (id == NULL) {
+        null
+      } else {
+        val loaded =
+          if (layout.isRelationship(offset)) state.query.relationshipOps.getById(id)
+          else state.query.nodeOps.getById(id)
+        entities(index) = loaded
+        loaded
+      }
+    }
+  }
+
+  def setEntity(row: Int, offset: Int, entity: PropertyContainer) {
+    val index = row * longWidth + offset
+    ids(index) = entity match {
+      case null            => NULL
+      case n: Node         => n.getId
+      case r: Relationship => r.getId
+    }
+    entities(index) = entity
+  }
+
+  def getRef(row: Int, offset: Int): Any = refs(row * refWidth + offset)
+
+  def setRef(row: Int, offset: Int, value: Any) {
+    refs(row * refWidth + offset) = value.asInstanceOf[AnyRef]
+  }
+
+  /**
+   * Reads the named slot, whichever kind of slot it is.
+   */
+  def getValue(row: Int, name: String, state: QueryState): Any = {
+    val longOffset = layout.longOffset(name)
+    if (longOffset >= 0)
+      getEntity(row, longOffset, state)
+    else
+      getRef(row, layout.refOffset(name))
+  }
+
+  /**
+   * Writes the named slot, whichever kind of slot it is.
+   */
+  def setValue(row: Int, name: String, value: Any) {
+    val longOffset = layout.longOffset(name)
+    if (longOffset >= 0)
+      value match {
+        case entity: PropertyContainer => setEntity(row, longOffset, entity)
+        case null                      => setEntity(row, longOffset, null)
+        case other                     =>
+          throw new InternalException(s"Expected to find a node or relationship at $name but found $other instead")
+      }
+    else
+      setRef(row, layout.refOffset(name), value)
+  }
+}
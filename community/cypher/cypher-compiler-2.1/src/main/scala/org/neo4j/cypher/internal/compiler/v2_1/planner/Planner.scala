@@ -30,11 +30,14 @@ import org.neo4j.cypher.internal.compiler.v2_1.planner.logical.plans.LogicalPlan
 import org.neo4j.cypher.internal.compiler.v2_1.ast.rewriters._
 
 /* This class is responsible for taking a query from an AST object to a runnable object.  */
-case class Planner(monitors: Monitors, metricsFactory: MetricsFactory, monitor: PlanningMonitor) extends PipeBuilder {
+case class Planner(monitors: Monitors,
+                   metricsFactory: MetricsFactory,
+                   monitor: PlanningMonitor,
+                   strategyConfiguration: PlanningStrategyConfiguration = PlanningStrategyConfiguration.default) extends PipeBuilder {
   val tokenResolver = new SimpleTokenResolver()
   val queryGraphBuilder = new SimpleQueryGraphBuilder
   val executionPlanBuilder = new PipeExecutionPlanBuilder(monitors)
-  val strategy = new GreedyPlanningStrategy()
+  val strategy = PlanningStrategy(strategyConfiguration)
 
   def producePlan(inputQuery: ParsedQuery, planContext: PlanContext): PipeInfo =
     producePlan(inputQuery.statement, inputQuery.semanticTable, inputQuery.queryText)(planContext)
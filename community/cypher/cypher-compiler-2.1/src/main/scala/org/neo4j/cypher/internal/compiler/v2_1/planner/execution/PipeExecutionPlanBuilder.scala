@@ -22,66 +22,134 @@ package org.neo4j.cypher.internal.compiler.v2_1.planner.execution
 import org.neo4j.cypher.internal.compiler.v2_1.ast.convert.ExpressionConverters._
 import org.neo4j.cypher.internal.compiler.v2_1.ast.convert.OtherConverters._
 import org.neo4j.cypher.internal.compiler.v2_1.pipes._
-import org.neo4j.cypher.internal.compiler.v2_1.ast.Expression
 import org.neo4j.cypher.internal.compiler.v2_1.planner.logical.plans._
 import org.neo4j.cypher.internal.compiler.v2_1.Monitors
+import org.neo4j.cypher.internal.compiler.v2_1.symbols._
 import org.neo4j.cypher.internal.compiler.v2_1.executionplan.PipeInfo
 import org.neo4j.cypher.internal.compiler.v2_1.planner.CantHandleQueryException
-import org.neo4j.cypher.internal.compiler.v2_1.commands.True
+import org.neo4j.cypher.internal.compiler.v2_1.commands.{AllInCollection, Predicate, True}
+import org.neo4j.cypher.internal.compiler.v2_1.commands.expressions.{Expression => CommandExpression, SlottedIdentifier, Identifier}
 
 class PipeExecutionPlanBuilder(monitors: Monitors) {
 
   def build(plan: LogicalPlan): PipeInfo = {
     val updating = false
 
+    // Every identifier of the plan gets a fixed slot in the rows before any pipe is built, so that pipes and
+    // identifiers look their slots up once and read and write rows by index from then on.
+    val slots = SlotLayout.empty.add(introducedIdentifiers(plan))
+
+    val topLevelPipe = new PipeTreeBuilder(slots).buildPipe(plan)
+
+    PipeInfo(topLevelPipe, updating, None, Some(slots))
+  }
+
+  private def introducedIdentifiers(plan: LogicalPlan): Map[String, CypherType] = {
+    val introduced: Map[String, CypherType] = plan match {
+      case Projection(_, expressions) =>
+        expressions.keys.map(_ -> CTAny).toMap
+
+      case AllNodesScan(IdName(id))                            => Map(id -> CTNode)
+      case NodeByLabelScan(IdName(id), _)                      => Map(id -> CTNode)
+      case NodeByIdSeek(IdName(id), _)                         => Map(id -> CTNode)
+      case NodeIndexSeek(IdName(id), _, _, _)                  => Map(id -> CTNode)
+      case NodeIndexUniqueSeek(IdName(id), _, _, _)            => Map(id -> CTNode)
+      case NodeIndexRangeSeek(IdName(id), _, _, _, _)          => Map(id -> CTNode)
+      case NodeIndexPrefixSeek(IdName(id), _, _, _)            => Map(id -> CTNode)
+
+      case DirectedRelationshipByIdSeek(IdName(id), _, IdName(fromNode), IdName(toNode)) =>
+        Map(id -> CTRelationship, fromNode -> CTNode, toNode -> CTNode)
+
+      case UndirectedRelationshipByIdSeek(IdName(id), _, IdName(fromNode), IdName(toNode)) =>
+        Map(id -> CTRelationship, fromNode -> CTNode, toNode -> CTNode)
+
+      case Expand(_, _, _, _, IdName(toName), IdName(relName), SimplePatternLength) =>
+        Map(toName -> CTNode, relName -> CTRelationship)
+
+      case Expand(_, _, _, _, IdName(toName), IdName(relName), _: VarPatternLength) =>
+        Map(toName -> CTNode, relName -> CTCollection(CTRelationship))
+
+      case OptionalExpand(_, _, _, _, IdName(toName), IdName(relName), _, _) =>
+        Map(toName -> CTNode, relName -> CTRelationship)
+
+      case _ =>
+        Map.empty
+    }
+
+    // Identifiers keep the type they had where they were first introduced
+    (plan.lhs ++ plan.rhs).foldLeft(introduced) {
+      case (identifiers, child) => identifiers ++ introducedIdentifiers(child)
+    }
+  }
+
+  private class PipeTreeBuilder(slots: SlotLayout) {
+
     def buildPipe(plan: LogicalPlan): Pipe = {
       implicit val monitor = monitors.newMonitor[PipeMonitor]()
       plan match {
         case Projection(left, expressions) =>
-          ProjectionNewPipe(buildPipe(left), toLegacyExpressions(expressions))
+          ProjectionNewPipe(buildPipe(left), expressions.map { case (name, e) => name -> slotted(e.asCommandExpression) }, slots)
 
         case SingleRow(_) =>
           NullPipe()
 
         case AllNodesScan(IdName(id)) =>
-          AllNodesScanPipe(id)
+          AllNodesScanPipe(id, slots)
 
         case NodeByLabelScan(IdName(id), label) =>
-          NodeByLabelScanPipe(id, label)
+          NodeByLabelScanPipe(id, label, slots)
 
         case NodeByIdSeek(IdName(id), nodeIdExpr) =>
-          NodeByIdSeekPipe(id, nodeIdExpr.map(_.asCommandExpression))
+          NodeByIdSeekPipe(id, nodeIdExpr.map(e => slotted(e.asCommandExpression)))
 
         case DirectedRelationshipByIdSeek(IdName(id), relIdExpr, IdName(fromNode), IdName(toNode)) =>
-          DirectedRelationshipByIdSeekPipe(id, relIdExpr.map(_.asCommandExpression), toNode, fromNode)
+          DirectedRelationshipByIdSeekPipe(id, relIdExpr.map(e => slotted(e.asCommandExpression)), toNode, fromNode)
 
         case UndirectedRelationshipByIdSeek(IdName(id), relIdExpr, IdName(fromNode), IdName(toNode)) =>
-          UndirectedRelationshipByIdSeekPipe(id, relIdExpr.map(_.asCommandExpression), toNode, fromNode)
+          UndirectedRelationshipByIdSeekPipe(id, relIdExpr.map(e => slotted(e.asCommandExpression)), toNode, fromNode)
 
         case NodeIndexSeek(IdName(id), labelId, propertyKeyId, valueExpr) =>
-          NodeIndexSeekPipe(id, Right(labelId), Right(propertyKeyId), valueExpr.asCommandExpression)
+          NodeIndexSeekPipe(id, Right(labelId), Right(propertyKeyId), slotted(valueExpr.asCommandExpression), slots)
 
         case NodeIndexUniqueSeek(IdName(id), labelId, propertyKeyId, valueExpr) =>
-          NodeUniqueIndexSeekPipe(id, Right(labelId), Right(propertyKeyId), valueExpr.asCommandExpression)
+          NodeUniqueIndexSeekPipe(id, Right(labelId), Right(propertyKeyId), slotted(valueExpr.asCommandExpression), slots)
+
+        case NodeIndexRangeSeek(IdName(id), labelId, propertyKeyId, lower, upper) =>
+          def bound(b: RangeBound) = RangeSeekBound(slotted(b.expr.asCommandExpression), b.inclusive)
+          NodeIndexRangeSeekPipe(id, Right(labelId), Right(propertyKeyId), ValueRange(lower.map(bound), upper.map(bound)), slots)
+
+        case NodeIndexPrefixSeek(IdName(id), labelId, propertyKeyId, regex) =>
+          NodeIndexRangeSeekPipe(id, Right(labelId), Right(propertyKeyId), RegexPrefixRange(slotted(regex.asCommandExpression)), slots)
+
+        case Selection(predicates, Expand(left, IdName(fromName), dir, types, IdName(toName), IdName(relName), VarPatternLength(min, max)), _)
+          if predicates.exists(e => relationshipPredicate(relName, toName)(e.asCommandPredicate).nonEmpty) =>
+          val commandPredicates = predicates.map(_.asCommandPredicate)
+          val relationshipPredicates = commandPredicates.flatMap(relationshipPredicate(relName, toName)(_)).map {
+            case (name, predicate) => name -> slotted(predicate)
+          }
+          val remaining = commandPredicates.filter(relationshipPredicate(relName, toName)(_).isEmpty)
+          val expand = VarLengthExpandPipe(buildPipe(left), fromName, relName, toName, dir, types.map(_.name), min, max, relationshipPredicates)
+          if (remaining.isEmpty) expand
+          else FilterPipe(expand, remaining.map(slotted).reduce(_ ++ _))
 
         case Selection(predicates, left, _) =>
-          FilterPipe(buildPipe(left), predicates.map(_.asCommandPredicate).reduce(_ ++ _))
+          FilterPipe(buildPipe(left), predicates.map(e => slotted(e.asCommandPredicate)).reduce(_ ++ _))
 
         case CartesianProduct(left, right) =>
           CartesianProductPipe(buildPipe(left), buildPipe(right))
 
         case Expand(left, IdName(fromName), dir, types, IdName(toName), IdName(relName), SimplePatternLength) =>
-          ExpandPipe(buildPipe(left), fromName, relName, toName, dir, types.map(_.name))
+          ExpandPipe(buildPipe(left), fromName, relName, toName, dir, types.map(_.name), slots)
 
         case Expand(left, IdName(fromName), dir, types, IdName(toName), IdName(relName), VarPatternLength(min, max)) =>
           VarLengthExpandPipe(buildPipe(left), fromName, relName, toName, dir, types.map(_.name), min, max)
 
         case OptionalExpand(left, IdName(fromName), dir, types, IdName(toName), IdName(relName), SimplePatternLength, predicates) =>
           val predicate = predicates
-            .map(_.asCommandPredicate)
+            .map(e => slotted(e.asCommandPredicate))
             .reduceOption(_ ++ _)
             .getOrElse(True())
-          OptionalExpandPipe(buildPipe(left), fromName, relName, toName, dir, types.map(_.name), predicate)
+          OptionalExpandPipe(buildPipe(left), fromName, relName, toName, dir, types.map(_.name), predicate, slots)
 
         case NodeHashJoin(node, left, right) =>
           NodeHashJoinPipe(node.name, buildPipe(left), buildPipe(right))
@@ -99,20 +167,38 @@ class PipeExecutionPlanBuilder(monitors: Monitors) {
           SemiApplyPipe(buildPipe(outer), buildPipe(inner))
 
         case apply@SelectOrSemiApply(outer, inner, predicate) =>
-          SelectOrSemiApplyPipe(buildPipe(outer), buildPipe(inner), predicate.asCommandPredicate)
+          SelectOrSemiApplyPipe(buildPipe(outer), buildPipe(inner), slotted(predicate.asCommandPredicate))
 
         case Sort(left, sortItems) =>
-          SortPipe(buildPipe(left), sortItems.map(_.asCommandSortItem).toList)
+          val legacySortItems = sortItems.map(_.asCommandSortItem)
+          SortPipe(buildPipe(left), legacySortItems.map(item => item.copy(expression = slotted(item.expression))).toList)
 
         case _ =>
           throw new CantHandleQueryException
       }
     }
 
-    val topLevelPipe = buildPipe(plan)
+    /*
+    ALL(x IN r WHERE ...) over the relationships of a var length expand holds exactly when it holds for every hop, so
+    as long as the inner predicate does not look at the path or its end node, the expand can check it on every hop
+    and never follow a relationship that fails it.
+     */
+    private def relationshipPredicate(relName: String, toName: String): Predicate => Option[(String, Predicate)] = {
+      case AllInCollection(Identifier(`relName`), name, inner)
+        if !(inner.symbolTableDependencies - name).exists(id => id == relName || id == toName) => Some(name -> inner)
+      case _ => None
+    }
 
-    PipeInfo(topLevelPipe, updating, None)
-  }
+    private def slotted(expression: CommandExpression): CommandExpression =
+      expression.rewrite(slottedIdentifiers)
+
+    private def slotted(predicate: Predicate): Predicate =
+      predicate.rewriteAsPredicate(slottedIdentifiers)
 
-  def toLegacyExpressions(expressions: Map[String, Expression]) = expressions.mapValues(_.asCommandExpression)
+    private val slottedIdentifiers: CommandExpression => CommandExpression = {
+      case identifier: SlottedIdentifier            => identifier
+      case Identifier(name) if slots.contains(name) => new SlottedIdentifier(name, slots)
+      case expression                               => expression
+    }
+  }
 }
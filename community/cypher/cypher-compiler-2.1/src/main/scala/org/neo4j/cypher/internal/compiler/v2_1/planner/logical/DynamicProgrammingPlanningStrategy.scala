@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.planner.logical
+
+import org.neo4j.cypher.internal.compiler.v2_1.planner.logical.steps._
+import org.neo4j.cypher.internal.compiler.v2_1.planner.logical.plans.{IdName, LogicalPlan}
+
+import org.neo4j.cypher.internal.helpers.Converge.iterateUntilConverged
+
+/*
+Orders the expands and joins of every connected component of the pattern by dynamic programming: starting from the
+best leaf plans, each round expands and joins the plans found in the previous round and keeps, for every set of covered
+identifiers, only the cheapest plan seen. Once the time budget is spent, or for components too large to enumerate,
+whatever has been found so far is completed greedily, which makes this an iterative dynamic programming (IDP) search. */
+class DynamicProgrammingPlanningStrategy(config: PlanningStrategyConfiguration = PlanningStrategyConfiguration.dynamicProgramming,
+                                         settings: DynamicProgrammingJoinOrdering = DynamicProgrammingJoinOrdering())
+  extends PlanningStrategy {
+
+  type SolvedPlans = Map[Set[IdName], LogicalPlan]
+
+  def plan(implicit context: LogicalPlanContext): LogicalPlan = {
+
+    val select = config.applySelections.asFunctionInContext
+    val pickBest = config.pickBestCandidate.asFunctionInContext
+
+    def generateLeafPlanTable() = {
+      val leafPlanCandidateLists = config.leafPlanners.candidateLists(context.queryGraph)
+      val leafPlanCandidateListsWithSelections = leafPlanCandidateLists.map(_.map(select))
+      val bestLeafPlans: Iterable[LogicalPlan] = leafPlanCandidateListsWithSelections.flatMap(pickBest(_))
+      bestLeafPlans.foldLeft(PlanTable.empty)(_ + _)
+    }
+
+    def findBestPlan(planGenerator: CandidateGenerator[PlanTable]) =
+      (planTable: PlanTable) => pickBest(planGenerator(planTable).map(select)).map(planTable + _).getOrElse(planTable)
+
+    val leaves = generateLeafPlanTable()
+    val deadline = System.currentTimeMillis() + settings.timeBudgetMillis
+    val components = connectedComponents(leaves.plans)
+    val solved = components.flatMap(component => solveComponent(component, leaves.plans, deadline))
+    val afterDynamicProgramming = largestCheapestFirst(solved).foldLeft(PlanTable.empty)(_ + _)
+    val afterExpandOrJoin = iterateUntilConverged(findBestPlan(expandsOrJoins))(afterDynamicProgramming)
+    val afterOptionalApplies = iterateUntilConverged(findBestPlan(optionalMatches))(afterExpandOrJoin)
+    val afterCartesianProduct = iterateUntilConverged(findBestPlan(cartesianProduct))(afterOptionalApplies)
+    val bestPlan = projectUncovered(order(afterCartesianProduct.uniquePlan))
+
+    verifyBestPlan(bestPlan)
+  }
+
+  /*
+  Groups the identifiers covered by the leaf plans into the parts of the pattern that are connected by relationships;
+  no expand or join can ever cross from one such component into another.
+   */
+  private def connectedComponents(leaves: Seq[LogicalPlan])(implicit context: LogicalPlanContext): Seq[Set[IdName]] = {
+    val connections = leaves.map(_.coveredIds) ++ context.queryGraph.patternRelationships.map(rel => Set(rel.left, rel.right))
+    connections.foldLeft(Seq.empty[Set[IdName]]) {
+      case (components, ids) =>
+        val (connected, disconnected) = components.partition(component => (component & ids).nonEmpty)
+        disconnected :+ connected.foldLeft(ids)(_ ++ _)
+    }
+  }
+
+  private def solveComponent(component: Set[IdName], allLeaves: Seq[LogicalPlan], deadline: Long)
+                            (implicit context: LogicalPlanContext): Seq[LogicalPlan] = {
+    val leaves = allLeaves.filter(leaf => (leaf.coveredIds & component).nonEmpty)
+    val relationships = context.queryGraph.patternRelationships.count(rel => component(rel.left))
+
+    if (relationships > settings.maxRelationships) {
+      leaves
+    } else {
+      val leafTable: SolvedPlans = leaves.map(leaf => leaf.coveredIds -> leaf).toMap
+      val (solved, _) = iterateUntilConverged(enumerate(leafTable, deadline))(leafTable -> leaves)
+      solved.values.toSeq
+    }
+  }
+
+  /*
+  One round of enumeration: every plan found in the previous round is expanded along each unsolved relationship and
+  joined with every plan in the table. A candidate only enters the table if it is cheaper than what is already known
+  for the identifiers it covers, and the candidates that entered become the next round's input.
+   */
+  private def enumerate(leafTable: SolvedPlans, deadline: Long)(implicit context: LogicalPlanContext) =
+    (state: (SolvedPlans, Seq[LogicalPlan])) => state match {
+      case (table, Seq()) =>
+        state
+
+      case (table, _) if System.currentTimeMillis() > deadline =>
+        table -> Seq.empty
+
+      case (table, previousRound) =>
+        val select = config.applySelections.asFunctionInContext
+        val expansions = expand(PlanTable(previousRound.map(plan => plan.coveredIds -> plan).toMap))
+        val joins = for {
+          planA <- previousRound
+          planB <- table.values.toSeq if planA != planB
+        } yield join(PlanTable(Map(planA.coveredIds -> planA, planB.coveredIds -> planB)))
+
+        val candidates = joins.foldLeft(expansions)(_ ++ _).map(select).plans
+        val improved = candidates.foldLeft(Map.empty: SolvedPlans) {
+          case (acc, candidate) if isCheapest(candidate, table) && isCheapest(candidate, acc) =>
+            acc + (candidate.coveredIds -> candidate)
+          case (acc, _) =>
+            acc
+        }
+
+        val newTable = prune(table ++ improved, leafTable)
+        newTable -> improved.values.filter(plan => newTable.get(plan.coveredIds) == Some(plan)).toSeq
+    }
+
+  private def isCheapest(plan: LogicalPlan, table: SolvedPlans)(implicit context: LogicalPlanContext) =
+    table.get(plan.coveredIds).forall(known => context.cost(plan) < context.cost(known))
+
+  /*
+  Bounds the table by keeping the plans that cover the most of the component, cheapest first. Leaf plans are always
+  kept so that joins on the pattern nodes remain possible.
+   */
+  private def prune(table: SolvedPlans, leafTable: SolvedPlans)(implicit context: LogicalPlanContext): SolvedPlans =
+    if (table.size <= settings.maxTableSize) {
+      table
+    } else {
+      val (leaves, composite) = table.partition { case (ids, _) => leafTable.contains(ids) }
+      val kept = largestCheapestFirst(composite.values.toSeq).take(settings.maxTableSize)
+      leaves ++ kept.map(plan => plan.coveredIds -> plan)
+    }
+
+  private def largestCheapestFirst(plans: Seq[LogicalPlan])(implicit context: LogicalPlanContext) =
+    plans.sortBy(plan => (-plan.coveredIds.size, context.cost(plan)))
+}
@@ -30,6 +30,7 @@ object GuessingEstimation {
   val PREDICATE_SELECTIVITY: Double = 0.2
   val INDEX_SEEK_SELECTIVITY: Double = 0.08
   val UNIQUE_INDEX_SEEK_SELECTIVITY: Double = 0.05
+  val INDEX_RANGE_SEEK_SELECTIVITY: Double = 0.1
   val DEFAULT_EXPAND_RELATIONSHIP_DEGREE: Double = 2.0
 }
 
@@ -56,6 +57,12 @@ class StatisticsBackedCardinalityModel(statistics: GraphStatistics,
     case NodeIndexUniqueSeek(_, _, _, _) =>
       statistics.nodesCardinality * UNIQUE_INDEX_SEEK_SELECTIVITY
 
+    case NodeIndexRangeSeek(_, _, _, _, _) =>
+      statistics.nodesCardinality * INDEX_RANGE_SEEK_SELECTIVITY
+
+    case NodeIndexPrefixSeek(_, _, _, _) =>
+      statistics.nodesCardinality * INDEX_RANGE_SEEK_SELECTIVITY
+
     case NodeHashJoin(_, left, right) =>
       math.min(cardinality(left), cardinality(right))
 
@@ -25,3 +25,11 @@ import org.neo4j.cypher.internal.compiler.v2_1.planner.logical.steps._
 trait PlanningStrategy {
   def plan(implicit context: LogicalPlanContext): LogicalPlan
 }
+
+object PlanningStrategy {
+  def apply(config: PlanningStrategyConfiguration = PlanningStrategyConfiguration.default): PlanningStrategy =
+    config.joinOrdering match {
+      case GreedyJoinOrdering                       => new GreedyPlanningStrategy(config)
+      case settings: DynamicProgrammingJoinOrdering => new DynamicProgrammingPlanningStrategy(config, settings)
+    }
+}
@@ -24,7 +24,8 @@ import org.neo4j.cypher.internal.compiler.v2_1.planner.logical.steps._
 case class PlanningStrategyConfiguration(
   leafPlanners: LeafPlannerList,
   applySelections: PlanTransformer,
-  pickBestCandidate: CandidateSelector
+  pickBestCandidate: CandidateSelector,
+  joinOrdering: JoinOrdering = GreedyJoinOrdering
 )
 
 object PlanningStrategyConfiguration {
@@ -44,6 +45,9 @@ object PlanningStrategyConfiguration {
       // MATCH n WHERE n.prop = {val} RETURN n
       indexSeekLeafPlanner,
 
+      // MATCH n WHERE n.prop > {val} RETURN n
+      indexRangeSeekLeafPlanner,
+
       // MATCH (n:Person) RETURN n
       labelScanLeafPlanner,
 
@@ -51,6 +55,19 @@ object PlanningStrategyConfiguration {
       allNodesLeafPlanner
     )
   )
+
+  val dynamicProgramming = default.copy(joinOrdering = DynamicProgrammingJoinOrdering())
 }
 
+/*
+Decides how expands and joins over the pattern are ordered. Greedy ordering picks the cheapest next step until the
+pattern is covered; dynamic programming keeps the cheapest plan for every solved part of each connected component and
+grows those instead, bounded by the size of that table and a time budget. Components with more pattern relationships
+than `maxRelationships` are always ordered greedily. */
+sealed trait JoinOrdering
+
+case object GreedyJoinOrdering extends JoinOrdering
 
+final case class DynamicProgrammingJoinOrdering(maxTableSize: Int = 256,
+                                                timeBudgetMillis: Long = 100,
+                                                maxRelationships: Int = 16) extends JoinOrdering
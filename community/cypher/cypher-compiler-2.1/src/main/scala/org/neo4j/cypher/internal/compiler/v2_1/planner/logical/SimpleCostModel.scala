@@ -47,6 +47,12 @@ class SimpleCostModel(cardinality: CardinalityModel) extends CostModel {
     case _: NodeIndexUniqueSeek =>
       cardinality(plan) * INDEX_OVERHEAD_COST_PER_ROW
 
+    case _: NodeIndexRangeSeek =>
+      cardinality(plan) * INDEX_OVERHEAD_COST_PER_ROW
+
+    case _: NodeIndexPrefixSeek =>
+      cardinality(plan) * INDEX_OVERHEAD_COST_PER_ROW
+
     case _: NodeByLabelScan =>
       cardinality(plan) * LABEL_INDEX_OVERHEAD_COST_PER_ROW
 
@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.planner.logical.plans
+
+import org.neo4j.cypher.internal.compiler.v2_1.{PropertyKeyId, LabelId}
+import org.neo4j.cypher.internal.compiler.v2_1.ast.Expression
+import org.neo4j.cypher.internal.compiler.v2_1.planner.QueryGraph
+
+/*
+Seeks the strings starting with the literal prefix of a regular expression, and all strings when it doesn't have one
+ */
+case class NodeIndexPrefixSeek(idName: IdName, label: LabelId, propertyKeyId: PropertyKeyId, regex: Expression)
+                              (val solvedPredicates: Seq[Expression] = Seq.empty) extends LogicalLeafPlan {
+  val solved = QueryGraph.empty.addPatternNode(idName).add(solvedPredicates)
+}
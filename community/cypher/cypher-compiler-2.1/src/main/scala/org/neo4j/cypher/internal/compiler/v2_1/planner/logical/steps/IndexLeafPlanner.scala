@@ -23,8 +23,9 @@ import org.neo4j.cypher.internal.compiler.v2_1.ast._
 import org.neo4j.cypher.internal.compiler.v2_1.{PropertyKeyId, LabelId}
 import org.neo4j.kernel.api.index.IndexDescriptor
 import org.neo4j.cypher.internal.compiler.v2_1.planner.logical.{LeafPlanner, CandidateList, LogicalPlanContext}
-import org.neo4j.cypher.internal.compiler.v2_1.planner.logical.plans.{NodeIndexUniqueSeek, NodeIndexSeek, IdName, LogicalPlan}
+import org.neo4j.cypher.internal.compiler.v2_1.planner.logical.plans._
 import org.neo4j.cypher.internal.compiler.v2_1.planner.QueryGraph
+import org.neo4j.cypher.internal.compiler.v2_1.helpers.LiteralPrefixPattern
 
 abstract class IndexLeafPlanner extends LeafPlanner {
   def apply(qg: QueryGraph)(implicit context: LogicalPlanContext) = {
@@ -73,3 +74,65 @@ object indexSeekLeafPlanner extends IndexLeafPlanner {
   protected def findIndexesForLabel(labelId: Int)(implicit context: LogicalPlanContext): Iterator[IndexDescriptor] =
     context.planContext.indexesGetForLabel(labelId)
 }
+
+object indexRangeSeekLeafPlanner extends LeafPlanner {
+  def apply(qg: QueryGraph)(implicit context: LogicalPlanContext) = {
+    val predicates: Seq[Expression] = qg.selections.flatPredicates
+    val labelPredicateMap = qg.selections.labelPredicates
+
+    def plansFor(idName: IdName, propertyKey: PropertyKeyName)
+                (constructPlan: (LabelId, PropertyKeyId, HasLabels) => LogicalPlan): Seq[LogicalPlan] =
+      for (propertyKeyId <- propertyKey.id.toSeq;
+           labelPredicate <- labelPredicateMap.getOrElse(idName, Set.empty).toSeq;
+           label <- labelPredicate.labels;
+           labelId <- label.id if hasIndex(labelId.id, propertyKeyId.id))
+      yield constructPlan(labelId, propertyKeyId, labelPredicate)
+
+    // n.prop > lower AND n.prop < upper, using at most one bound of each kind
+    val boundsByProperty = predicates.collect {
+      case predicate@PropertyBound(Identifier(name), propertyKey, bound) => (IdName(name), propertyKey, bound, predicate)
+    }.groupBy { case (idName, propertyKey, _, _) => (idName, propertyKey.name) }
+
+    val rangePlans = boundsByProperty.values.flatMap { bounds =>
+      val (idName, propertyKey, _, _) = bounds.head
+      val lower = bounds.collectFirst { case (_, _, Left(bound), predicate) => (bound, predicate) }
+      val upper = bounds.collectFirst { case (_, _, Right(bound), predicate) => (bound, predicate) }
+      val solved = lower.map(_._2).toSeq ++ upper.map(_._2)
+      plansFor(idName, propertyKey) { (labelId, propertyKeyId, labelPredicate) =>
+        NodeIndexRangeSeek(idName, labelId, propertyKeyId, lower.map(_._1), upper.map(_._1))(solved :+ labelPredicate)
+      }
+    }
+
+    // n.prop =~ 'prefix.*' - the regular expression is still applied on top of the seek
+    val prefixPlans = predicates.collect {
+      case RegexMatch(Property(Identifier(name), propertyKey), regex@(StringLiteral(LiteralPrefixPattern(_)) | Parameter(_))) =>
+        plansFor(IdName(name), propertyKey) { (labelId, propertyKeyId, labelPredicate) =>
+          NodeIndexPrefixSeek(IdName(name), labelId, propertyKeyId, regex)(Seq(labelPredicate))
+        }
+    }.flatten
+
+    CandidateList((rangePlans ++ prefixPlans).toSeq)
+  }
+
+  private def hasIndex(labelId: Int, propertyKeyId: Int)(implicit context: LogicalPlanContext) =
+    (context.planContext.indexesGetForLabel(labelId) ++ context.planContext.uniqueIndexesGetForLabel(labelId))
+      .exists(_.getPropertyKeyId == propertyKeyId)
+
+  /*
+  Left is a lower bound, Right is an upper bound, whichever side of the comparison the property is on
+   */
+  private object PropertyBound {
+    def unapply(predicate: Expression): Option[(Expression, PropertyKeyName, Either[RangeBound, RangeBound])] =
+      predicate match {
+        case GreaterThan(Property(id, key), ConstantExpression(value))        => Some((id, key, Left(RangeBound(value, inclusive = false))))
+        case GreaterThanOrEqual(Property(id, key), ConstantExpression(value)) => Some((id, key, Left(RangeBound(value, inclusive = true))))
+        case LessThan(Property(id, key), ConstantExpression(value))           => Some((id, key, Right(RangeBound(value, inclusive = false))))
+        case LessThanOrEqual(Property(id, key), ConstantExpression(value))    => Some((id, key, Right(RangeBound(value, inclusive = true))))
+        case LessThan(ConstantExpression(value), Property(id, key))           => Some((id, key, Left(RangeBound(value, inclusive = false))))
+        case LessThanOrEqual(ConstantExpression(value), Property(id, key))    => Some((id, key, Left(RangeBound(value, inclusive = true))))
+        case GreaterThan(ConstantExpression(value), Property(id, key))        => Some((id, key, Right(RangeBound(value, inclusive = false))))
+        case GreaterThanOrEqual(ConstantExpression(value), Property(id, key)) => Some((id, key, Right(RangeBound(value, inclusive = true))))
+        case _                                                                => None
+      }
+  }
+}
@@ -26,6 +26,8 @@ import org.neo4j.cypher.internal.compiler.v2_1.spi.{DelegatingOperations, Operat
 import org.neo4j.cypher.ProfilerStatisticsNotReadyException
 import org.neo4j.graphdb.{PropertyContainer, Direction, Relationship, Node}
 import collection.mutable
+import org.neo4j.kernel.api.RelationshipVisitor
+import org.neo4j.collection.primitive.PrimitiveLongIterator
 
 class Profiler extends PipeDecorator {
 
@@ -140,6 +142,23 @@ class ProfilingQueryContext(val inner: QueryContext, val p: Pipe) extends Delega
       rel
     }
 
+  override def getRelationshipIdsFor(node: Long, dir: Direction, types: Seq[Int]): PrimitiveLongIterator = {
+    val relationships = inner.getRelationshipIdsFor(node, dir, types)
+    new PrimitiveLongIterator {
+      def hasNext = relationships.hasNext
+
+      def next() = {
+        increment()
+        relationships.next()
+      }
+    }
+  }
+
+  override def relationshipVisit(relationshipId: Long, visitor: RelationshipVisitor) {
+    increment()
+    inner.relationshipVisit(relationshipId, visitor)
+  }
+
   override def nodeOps: Operations[Node] = new ProfilerOperations(inner.nodeOps)
 
   override def relationshipOps: Operations[Relationship] = new ProfilerOperations(inner.relationshipOps)
@@ -55,6 +55,12 @@ class CSVResources(cleaner: TaskCloser) extends ExternalResource {
     }
   }
 
+  def createTempFile(prefix: String): File = {
+    val file = File.createTempFile(prefix, ".tmp")
+    cleaner.addTask(_ => file.delete())
+    file
+  }
+
   private def openStream(url: URL, connectionTimeout: Int = 2000, readTimeout: Int = 10 * 60 * 1000): InputStream = {
     try {
       if (url.getProtocol.startsWith("http"))
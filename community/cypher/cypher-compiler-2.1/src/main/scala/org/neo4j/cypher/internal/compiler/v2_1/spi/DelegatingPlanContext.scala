@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.spi
+
+class DelegatingPlanContext(inner: PlanContext) extends PlanContext {
+
+  def indexesGetForLabel(labelId: Int) = inner.indexesGetForLabel(labelId)
+
+  def uniqueIndexesGetForLabel(labelId: Int) = inner.uniqueIndexesGetForLabel(labelId)
+
+  def getIndexRule(labelName: String, propertyKey: String) = inner.getIndexRule(labelName, propertyKey)
+
+  def getUniqueIndexRule(labelName: String, propertyKey: String) = inner.getUniqueIndexRule(labelName, propertyKey)
+
+  def getUniquenessConstraint(labelName: String, propertyKey: String) =
+    inner.getUniquenessConstraint(labelName, propertyKey)
+
+  def checkNodeIndex(idxName: String) {
+    inner.checkNodeIndex(idxName)
+  }
+
+  def checkRelIndex(idxName: String) {
+    inner.checkRelIndex(idxName)
+  }
+
+  def getOrCreateFromSchemaState[T](key: Any, f: => T): T = inner.getOrCreateFromSchemaState(key, f)
+
+  def statistics: GraphStatistics = inner.statistics
+
+  def getLabelName(id: Int) = inner.getLabelName(id)
+
+  def getOptLabelId(labelName: String) = inner.getOptLabelId(labelName)
+
+  def getLabelId(labelName: String) = inner.getLabelId(labelName)
+
+  def getPropertyKeyName(id: Int) = inner.getPropertyKeyName(id)
+
+  def getOptPropertyKeyId(propertyKeyName: String) = inner.getOptPropertyKeyId(propertyKeyName)
+
+  def getPropertyKeyId(propertyKeyName: String) = inner.getPropertyKeyId(propertyKeyName)
+
+  def getRelTypeName(id: Int) = inner.getRelTypeName(id)
+
+  def getOptRelTypeId(relType: String) = inner.getOptRelTypeId(relType)
+
+  def getRelTypeId(relType: String) = inner.getRelTypeId(relType)
+}
+
+/**
+ * Plan context recording the statistics the plan is costed with.
+ */
+class InstrumentedPlanContext(inner: PlanContext) extends DelegatingPlanContext(inner) {
+  override lazy val statistics = new InstrumentedGraphStatistics(inner.statistics)
+}
@@ -20,9 +20,10 @@
 package org.neo4j.cypher.internal.compiler.v2_1.spi
 
 import org.neo4j.graphdb.{PropertyContainer, Direction, Node}
-import org.neo4j.kernel.api.index.IndexDescriptor
+import org.neo4j.kernel.api.index.{IndexSeek, IndexDescriptor}
 import org.neo4j.kernel.InternalAbstractGraphDatabase
 import org.neo4j.graphdb.factory.GraphDatabaseSettings
+import org.neo4j.kernel.api.RelationshipVisitor
 
 
 class DelegatingQueryContext(inner: QueryContext) extends QueryContext {
@@ -55,6 +56,12 @@ class DelegatingQueryContext(inner: QueryContext) extends QueryContext {
 
   def getRelationshipsFor(node: Node, dir: Direction, types: Seq[String]) = inner.getRelationshipsFor(node, dir, types)
 
+  def getRelationshipIdsFor(node: Long, dir: Direction, types: Seq[Int]) = inner.getRelationshipIdsFor(node, dir, types)
+
+  def relationshipVisit(relationshipId: Long, visitor: RelationshipVisitor) {
+    inner.relationshipVisit(relationshipId, visitor)
+  }
+
   def nodeOps = inner.nodeOps
 
   def relationshipOps = inner.relationshipOps
@@ -77,6 +84,8 @@ class DelegatingQueryContext(inner: QueryContext) extends QueryContext {
 
   def exactIndexSearch(index: IndexDescriptor, value: Any): Iterator[Node] = inner.exactIndexSearch(index, value)
 
+  def rangeIndexSearch(index: IndexDescriptor, seek: IndexSeek): Iterator[Node] = inner.rangeIndexSearch(index, seek)
+
   def getNodesByLabel(id: Int): Iterator[Node] = inner.getNodesByLabel(id)
 
   def upgrade(context: QueryContext): LockingQueryContext = inner.upgrade(context)
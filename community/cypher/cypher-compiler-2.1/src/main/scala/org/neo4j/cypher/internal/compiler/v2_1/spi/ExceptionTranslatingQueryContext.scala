@@ -23,8 +23,9 @@ import org.neo4j.graphdb.{PropertyContainer, Direction, Relationship, Node}
 import org.neo4j.kernel.api.exceptions.KernelException
 import org.neo4j.cypher.CypherExecutionException
 import org.neo4j.cypher.internal.compiler.v2_1.spi
-import org.neo4j.kernel.api.index.IndexDescriptor
-import org.neo4j.kernel.api.TokenNameLookup
+import org.neo4j.kernel.api.index.{IndexSeek, IndexDescriptor}
+import org.neo4j.kernel.api.{RelationshipVisitor, TokenNameLookup}
+import org.neo4j.collection.primitive.PrimitiveLongIterator
 
 class ExceptionTranslatingQueryContext(inner: QueryContext) extends DelegatingQueryContext(inner) {
   override def setLabelsOnNode(node: Long, labelIds: Iterator[Int]): Int =
@@ -58,6 +59,13 @@ class ExceptionTranslatingQueryContext(inner: QueryContext) extends DelegatingQu
   override def getRelationshipsFor(node: Node, dir: Direction, types: Seq[String]): Iterator[Relationship] =
     translateException(super.getRelationshipsFor(node, dir, types))
 
+  override def getRelationshipIdsFor(node: Long, dir: Direction, types: Seq[Int]): PrimitiveLongIterator =
+    translateException(super.getRelationshipIdsFor(node, dir, types))
+
+  override def relationshipVisit(relationshipId: Long, visitor: RelationshipVisitor) {
+    translateException(super.relationshipVisit(relationshipId, visitor))
+  }
+
   override def nodeOps: Operations[Node] =
     new ExceptionTranslatingOperations[Node](super.nodeOps)
 
@@ -88,6 +96,9 @@ class ExceptionTranslatingQueryContext(inner: QueryContext) extends DelegatingQu
   override def exactIndexSearch(index: IndexDescriptor, value: Any): Iterator[Node] =
     translateException(super.exactIndexSearch(index, value))
 
+  override def rangeIndexSearch(index: IndexDescriptor, seek: IndexSeek): Iterator[Node] =
+    translateException(super.rangeIndexSearch(index, seek))
+
   override def getNodesByLabel(id: Int): Iterator[Node] =
     translateException(super.getNodesByLabel(id))
 
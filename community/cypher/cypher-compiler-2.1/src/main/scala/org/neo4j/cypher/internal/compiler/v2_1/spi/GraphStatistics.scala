@@ -21,6 +21,7 @@ package org.neo4j.cypher.internal.compiler.v2_1.spi
 
 import org.neo4j.cypher.internal.compiler.v2_1.{RelTypeId, LabelId}
 import org.neo4j.graphdb.Direction
+import org.neo4j.kernel.api.heuristics.DegreeDistribution
 
 trait GraphStatistics {
   def nodesCardinality: Double
@@ -29,4 +30,6 @@ trait GraphStatistics {
   def relationshipsWithTypeSelectivity(relTypeId: RelTypeId): Double
   def degreeByRelationshipTypeAndDirection(relTypeId: RelTypeId, direction: Direction): Double
   def degreeByLabelRelationshipTypeAndDirection(labelId: LabelId, relTypeId: RelTypeId, direction: Direction): Double
+  def degreeDistributionByRelationshipTypeAndDirection(relTypeId: RelTypeId, direction: Direction): DegreeDistribution
+  def degreeDistributionByLabelRelationshipTypeAndDirection(labelId: LabelId, relTypeId: RelTypeId, direction: Direction): DegreeDistribution
 }
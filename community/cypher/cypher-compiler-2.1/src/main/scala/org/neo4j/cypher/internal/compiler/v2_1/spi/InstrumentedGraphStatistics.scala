@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.spi
+
+import org.neo4j.cypher.internal.compiler.v2_1.{RelTypeId, LabelId}
+import org.neo4j.graphdb.Direction
+import scala.collection.mutable
+
+sealed trait StatisticsKey {
+  def apply(statistics: GraphStatistics): Double
+}
+
+case object NodesCardinality extends StatisticsKey {
+  def apply(statistics: GraphStatistics) = statistics.nodesCardinality
+}
+
+case class NodesWithLabelCardinality(labelId: LabelId) extends StatisticsKey {
+  def apply(statistics: GraphStatistics) = statistics.nodesWithLabelCardinality(labelId)
+}
+
+case class NodesWithLabelSelectivity(labelId: LabelId) extends StatisticsKey {
+  def apply(statistics: GraphStatistics) = statistics.nodesWithLabelSelectivity(labelId)
+}
+
+case class RelationshipsWithTypeSelectivity(relTypeId: RelTypeId) extends StatisticsKey {
+  def apply(statistics: GraphStatistics) = statistics.relationshipsWithTypeSelectivity(relTypeId)
+}
+
+case class DegreeByRelationshipTypeAndDirection(relTypeId: RelTypeId, direction: Direction) extends StatisticsKey {
+  def apply(statistics: GraphStatistics) = statistics.degreeByRelationshipTypeAndDirection(relTypeId, direction)
+}
+
+case class DegreeByLabelRelationshipTypeAndDirection(labelId: LabelId, relTypeId: RelTypeId, direction: Direction)
+  extends StatisticsKey {
+  def apply(statistics: GraphStatistics) =
+    statistics.degreeByLabelRelationshipTypeAndDirection(labelId, relTypeId, direction)
+}
+
+/**
+ * The statistics values a plan was costed with.
+ */
+case class GraphStatisticsSnapshot(values: Map[StatisticsKey, Double] = Map.empty) {
+
+  /**
+   * @return true if any of the values has changed in the given statistics by more than the threshold, relative to
+   *         the larger of the old and the new value.
+   */
+  def diverges(statistics: GraphStatistics, threshold: Double): Boolean = values.exists {
+    case (key, value) => GraphStatisticsSnapshot.divergence(value, key(statistics)) > threshold
+  }
+}
+
+object GraphStatisticsSnapshot {
+  def divergence(before: Double, after: Double): Double = {
+    val largest = math.max(math.abs(before), math.abs(after))
+    if (largest == 0) 0 else math.abs(before - after) / largest
+  }
+}
+
+/**
+ * Records every value read from the wrapped statistics, so that a plan can be given the snapshot it was costed with.
+ * Degree distributions are not recorded.
+ */
+class InstrumentedGraphStatistics(inner: GraphStatistics) extends GraphStatistics {
+
+  private val recorded = mutable.Map.empty[StatisticsKey, Double]
+
+  def snapshot: GraphStatisticsSnapshot = synchronized { GraphStatisticsSnapshot(recorded.toMap) }
+
+  private def record(key: StatisticsKey): Double = synchronized { recorded.getOrElseUpdate(key, key(inner)) }
+
+  def nodesCardinality =
+    record(NodesCardinality)
+
+  def nodesWithLabelCardinality(labelId: LabelId) =
+    record(NodesWithLabelCardinality(labelId))
+
+  def nodesWithLabelSelectivity(labelId: LabelId) =
+    record(NodesWithLabelSelectivity(labelId))
+
+  def relationshipsWithTypeSelectivity(relTypeId: RelTypeId) =
+    record(RelationshipsWithTypeSelectivity(relTypeId))
+
+  def degreeByRelationshipTypeAndDirection(relTypeId: RelTypeId, direction: Direction) =
+    record(DegreeByRelationshipTypeAndDirection(relTypeId, direction))
+
+  def degreeByLabelRelationshipTypeAndDirection(labelId: LabelId, relTypeId: RelTypeId, direction: Direction) =
+    record(DegreeByLabelRelationshipTypeAndDirection(labelId, relTypeId, direction))
+
+  def degreeDistributionByRelationshipTypeAndDirection(relTypeId: RelTypeId, direction: Direction) =
+    inner.degreeDistributionByRelationshipTypeAndDirection(relTypeId, direction)
+
+  def degreeDistributionByLabelRelationshipTypeAndDirection(labelId: LabelId, relTypeId: RelTypeId, direction: Direction) =
+    inner.degreeDistributionByLabelRelationshipTypeAndDirection(labelId, relTypeId, direction)
+}
@@ -22,8 +22,10 @@ package org.neo4j.cypher.internal.compiler.v2_1.spi
 
 import org.neo4j.graphdb._
 import org.neo4j.kernel.api.constraints.UniquenessConstraint
-import org.neo4j.kernel.api.index.IndexDescriptor
+import org.neo4j.kernel.api.index.{IndexSeek, IndexDescriptor}
 import org.neo4j.cypher.QueryStatistics
+import org.neo4j.kernel.api.RelationshipVisitor
+import org.neo4j.collection.primitive.PrimitiveLongIterator
 
 /*
  * Developer note: This is an attempt at an internal graph database API, which defines a clean cut between
@@ -48,6 +50,11 @@ trait QueryContext extends TokenContext {
 
   def getRelationshipsFor(node: Node, dir: Direction, types: Seq[String]): Iterator[Relationship]
 
+  // Relationships of any type are returned when no type ids are given
+  def getRelationshipIdsFor(node: Long, dir: Direction, types: Seq[Int]): PrimitiveLongIterator
+
+  def relationshipVisit(relationshipId: Long, visitor: RelationshipVisitor)
+
   def getOrCreateLabelId(labelName: String): Int
 
   def getLabelsForNode(node: Long): Iterator[Int]
@@ -72,6 +79,8 @@ trait QueryContext extends TokenContext {
 
   def exactIndexSearch(index: IndexDescriptor, value: Any): Iterator[Node]
 
+  def rangeIndexSearch(index: IndexDescriptor, seek: IndexSeek): Iterator[Node]
+
   def exactUniqueIndexSearch(index: IndexDescriptor, value: Any): Option[Node]
 
   def getNodesByLabel(id: Int): Iterator[Node]
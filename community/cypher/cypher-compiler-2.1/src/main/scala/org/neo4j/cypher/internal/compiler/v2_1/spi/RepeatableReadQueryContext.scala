@@ -20,7 +20,9 @@
 package org.neo4j.cypher.internal.compiler.v2_1.spi
 
 import org.neo4j.graphdb.{PropertyContainer, Relationship, Direction, Node}
-import org.neo4j.kernel.api.index.IndexDescriptor
+import org.neo4j.kernel.api.index.{IndexSeek, IndexDescriptor}
+import org.neo4j.kernel.api.RelationshipVisitor
+import org.neo4j.collection.primitive.PrimitiveLongIterator
 
 
 trait Locker {
@@ -36,6 +38,16 @@ class RepeatableReadQueryContext(inner: QueryContext, locker: Locker) extends De
     lockAll(inner.getRelationshipsFor(node, dir, types))
   }
 
+  override def getRelationshipIdsFor(node: Long, dir: Direction, types: Seq[Int]): PrimitiveLongIterator = {
+    lockNode(node)
+    inner.getRelationshipIdsFor(node, dir, types)
+  }
+
+  override def relationshipVisit(relationshipId: Long, visitor: RelationshipVisitor) {
+    locker.acquireLock(inner.relationshipOps.getById(relationshipId))
+    inner.relationshipVisit(relationshipId, visitor)
+  }
+
   override def getLabelsForNode(node: Long): Iterator[Int] = {
     lockNode(node)
     inner.getLabelsForNode(node)
@@ -49,6 +61,9 @@ class RepeatableReadQueryContext(inner: QueryContext, locker: Locker) extends De
   override def exactIndexSearch(index: IndexDescriptor, value: Any): Iterator[Node] =
     lockAll(inner.exactIndexSearch(index, value))
 
+  override def rangeIndexSearch(index: IndexDescriptor, seek: IndexSeek): Iterator[Node] =
+    lockAll(inner.rangeIndexSearch(index, seek))
+
   override def getNodesByLabel(id: Int): Iterator[Node] = lockAll(inner.getNodesByLabel(id))
 
   val nodeOpsValue = new RepeatableReadOperations[Node](inner.nodeOps)
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.executionplan
+
+import org.neo4j.cypher.internal.commons.CypherFunSuite
+import org.neo4j.cypher.internal.compiler.v2_1.LabelId
+import org.neo4j.cypher.internal.compiler.v2_1.parser.{ParserMonitor, CypherParser}
+import org.neo4j.cypher.internal.compiler.v2_1.spi._
+import org.mockito.Mockito._
+
+class PlanFingerprintTest extends CypherFunSuite {
+
+  val parser = new CypherParser(mock[ParserMonitor])
+
+  test("depends on the labels and property keys referred to") {
+    val tokens = mock[TokenContext]
+    when(tokens.getOptLabelId("Person")).thenReturn(Some(1))
+    when(tokens.getOptPropertyKeyId("name")).thenReturn(Some(2))
+
+    val fingerprint = fingerprintOf("MATCH (n:Person) WHERE n.name = 'Bob' RETURN n", tokens)
+
+    fingerprint.dependsOnSchema(1, 3) should equal(true)
+    fingerprint.dependsOnSchema(3, 2) should equal(true)
+    fingerprint.dependsOnSchema(3, 3) should equal(false)
+  }
+
+  test("depends on property keys in index hints") {
+    val tokens = mock[TokenContext]
+    when(tokens.getOptLabelId("Person")).thenReturn(Some(1))
+    when(tokens.getOptPropertyKeyId("name")).thenReturn(Some(2))
+
+    val fingerprint = fingerprintOf("MATCH (n:Person) USING INDEX n:Person(name) RETURN n", tokens)
+
+    fingerprint.propertyKeyIds should equal(Set(2))
+  }
+
+  test("depends on all of the schema when referring to labels that did not exist") {
+    val tokens = mock[TokenContext]
+    when(tokens.getOptLabelId("Person")).thenReturn(None)
+
+    val fingerprint = fingerprintOf("MATCH (n:Person) RETURN n", tokens)
+
+    fingerprint.dependsOnSchema(3, 3) should equal(true)
+  }
+
+  test("does not depend on the schema without labels and property keys") {
+    fingerprintOf("RETURN 42", mock[TokenContext]).dependsOnSchema(3, 3) should equal(false)
+  }
+
+  test("is stale once a recorded statistic has drifted beyond the threshold") {
+    val statistics = mock[GraphStatistics]
+    when(statistics.nodesWithLabelCardinality(LabelId(1))).thenReturn(1000.0)
+    val instrumented = new InstrumentedGraphStatistics(statistics)
+    instrumented.nodesWithLabelCardinality(LabelId(1))
+    val fingerprint = PlanFingerprint(Set(1), Set.empty, resolvedAllTokens = true, instrumented.snapshot, 0.5)
+
+    when(statistics.nodesWithLabelCardinality(LabelId(1))).thenReturn(1500.0)
+    fingerprint.isStale(statistics) should equal(false)
+
+    when(statistics.nodesWithLabelCardinality(LabelId(1))).thenReturn(2500.0)
+    fingerprint.isStale(statistics) should equal(true)
+
+    when(statistics.nodesWithLabelCardinality(LabelId(1))).thenReturn(400.0)
+    fingerprint.isStale(statistics) should equal(true)
+  }
+
+  test("is never stale without recorded statistics") {
+    val fingerprint = PlanFingerprint(Set.empty, Set.empty, resolvedAllTokens = true, GraphStatisticsSnapshot(), 0.0)
+
+    fingerprint.isStale(mock[GraphStatistics]) should equal(false)
+  }
+
+  private def fingerprintOf(query: String, tokens: TokenContext) =
+    PlanFingerprint(parser.parse(query), tokens, GraphStatisticsSnapshot(), 0.5)
+}
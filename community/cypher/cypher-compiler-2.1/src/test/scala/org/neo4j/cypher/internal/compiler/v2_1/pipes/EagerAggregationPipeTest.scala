@@ -32,6 +32,10 @@ import collection.mutable.{Map => MutableMap}
 import java.lang.{Iterable => JIterable}
 import org.neo4j.cypher.internal.compiler.v2_1.commands.values.TokenType.PropertyKey
 import org.scalatest.mock.MockitoSugar
+import org.neo4j.cypher.internal.compiler.v2_1.TaskCloser
+import org.neo4j.cypher.internal.compiler.v2_1.spi.{Operations, QueryContext, CSVResources}
+import org.neo4j.graphdb.Node
+import org.mockito.Mockito._
 
 class EagerAggregationPipeTest extends JUnitSuite with MockitoSugar {
 
@@ -111,6 +115,80 @@ class EagerAggregationPipeTest extends JUnitSuite with MockitoSugar {
     assertEquals(List(Map("count(name)" -> 3)), aggregationPipe.createResults(QueryStateHelper.empty).toList)
   }
 
+  @Test def shouldGroupOnNodes() {
+    val (a, b) = (nodeWithId(1), nodeWithId(2))
+    val source = new FakePipe(List(
+      Map("n" -> a, "age" -> 36),
+      Map("n" -> b, "age" -> 38),
+      Map("n" -> null, "age" -> 31),
+      Map("n" -> a, "age" -> 12)), "n" -> CTNode, "age" -> CTInteger)
+
+    val grouping = Map("count(*)" -> CountStar(), "sum(age)" -> Sum(Identifier("age")))
+    val aggregationPipe = new EagerAggregationPipe(source, createReturnItemsFor("n"), grouping)
+
+    assertEquals(Set(
+      Map("n" -> a, "count(*)" -> 2, "sum(age)" -> 48),
+      Map("n" -> b, "count(*)" -> 1, "sum(age)" -> 38),
+      Map("n" -> null, "count(*)" -> 1, "sum(age)" -> 31)), getResults(aggregationPipe).asScala.toSet)
+  }
+
+  @Test def shouldAggregateGroupsSpilledToDisk() {
+    val rows = (0 until 500).map(i => Map("name" -> ("name" + i % 37), "age" -> i))
+    val grouping = Map("count(*)" -> CountStar(), "collect(age)" -> Collect(Identifier("age")))
+    def aggregationPipe = new EagerAggregationPipe(
+      new FakePipe(rows, "name" -> CTString, "age" -> CTInteger), createReturnItemsFor("name"), grouping)
+
+    val expected = getResults(aggregationPipe).asScala.toSet
+    val closer = new TaskCloser
+    val state = QueryStateHelper.emptyWith(resources = new CSVResources(closer)).copy(aggregationBufferSize = 4)
+    val result = aggregationPipe.createResults(state).map(_.m.toMap).toSet
+    closer.close(success = true)
+
+    assertEquals(37, result.size)
+    assertEquals(expected, result)
+  }
+
+  @Test def shouldAggregateNodeGroupsSpilledToDisk() {
+    val nodes = (0 until 10).map(i => nodeWithId(i))
+    val nodeOps = mock[Operations[Node]]
+    nodes.foreach(node => when(nodeOps.getById(node.getId)).thenReturn(node))
+    val query = mock[QueryContext]
+    when(query.nodeOps).thenReturn(nodeOps)
+
+    val rows = (0 until 100).map(i => Map("n" -> nodes(i % 10), "age" -> i))
+    val grouping = Map("count(*)" -> CountStar(), "max(age)" -> Max(Identifier("age")))
+    val aggregationPipe = new EagerAggregationPipe(
+      new FakePipe(rows, "n" -> CTNode, "age" -> CTInteger), createReturnItemsFor("n"), grouping)
+
+    val closer = new TaskCloser
+    val state = QueryStateHelper.emptyWith(query = query, resources = new CSVResources(closer))
+      .copy(aggregationBufferSize = 3)
+    val result = aggregationPipe.createResults(state).map(_.m.toMap).toSet
+    closer.close(success = true)
+
+    assertEquals(nodes.map(n => Map("n" -> n, "count(*)" -> 10, "max(age)" -> (90 + n.getId))).toSet, result)
+  }
+
+  @Test def shouldKeepGroupsInMemoryWhenRowsCannotBeSpilled() {
+    val rows = (0 until 20).map(i => Map("name" -> ("name" + i % 10), "bytes" -> Array[Byte](i.toByte)))
+    val grouping = Map("count(*)" -> CountStar())
+    val aggregationPipe = new EagerAggregationPipe(
+      new FakePipe(rows, "name" -> CTString, "bytes" -> CTAny), createReturnItemsFor("name"), grouping)
+
+    val closer = new TaskCloser
+    val state = QueryStateHelper.emptyWith(resources = new CSVResources(closer)).copy(aggregationBufferSize = 4)
+    val result = aggregationPipe.createResults(state).map(_.m.toMap).toSet
+    closer.close(success = true)
+
+    assertEquals((0 until 10).map(i => Map("name" -> ("name" + i), "count(*)" -> 2)).toSet, result)
+  }
+
+  private def nodeWithId(id: Long) = {
+    val node = mock[Node]
+    when(node.getId).thenReturn(id)
+    node
+  }
+
   private def createSymbolTableFor(name: String) = name -> CTNode
 
   private def getResults(p: Pipe): JIterable[Map[String, Any]] = p.createResults(QueryStateHelper.empty).map(_.m.toMap).toIterable.asJava
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.pipes
+
+import org.neo4j.cypher.internal.commons.CypherFunSuite
+import org.neo4j.cypher.internal.compiler.v2_1.spi.QueryContext
+import org.neo4j.cypher.internal.compiler.v2_1.commands.expressions.Literal
+import org.neo4j.cypher.internal.compiler.v2_1.{PropertyKeyId, LabelId}
+import org.neo4j.graphdb.Node
+import org.mockito.{Matchers, ArgumentCaptor, Mockito}
+import org.neo4j.kernel.api.index.{IndexSeek, IndexDescriptor}
+
+class NodeIndexRangeSeekPipeTest extends CypherFunSuite {
+
+  implicit val monitor = mock[PipeMonitor]
+
+  val descriptor = new IndexDescriptor(11, 10)
+
+  test("should seek number ranges") {
+    // given
+    val node = mock[Node]
+    val query = mock[QueryContext]
+    Mockito.when(query.rangeIndexSearch(Matchers.eq(descriptor), Matchers.any())).thenReturn(Iterator(node))
+    val queryState = QueryStateHelper.emptyWith(query = query)
+
+    // when
+    val range = ValueRange(Some(RangeSeekBound(Literal(10), inclusive = true)), Some(RangeSeekBound(Literal(20.5), inclusive = false)))
+    val pipe = NodeIndexRangeSeekPipe("n", Right(LabelId(11)), Right(PropertyKeyId(10)), range)
+    val result = pipe.createResults(queryState)
+
+    // then
+    result.map(_("n")).toList should equal(List(node))
+    val seek = seekUsed(query)
+    seek.covers(10) should equal(true)
+    seek.covers(20.4) should equal(true)
+    seek.covers(20.5) should equal(false)
+    seek.covers("15") should equal(false)
+  }
+
+  test("should seek open ended string ranges") {
+    // given
+    val query = mock[QueryContext]
+    Mockito.when(query.rangeIndexSearch(Matchers.eq(descriptor), Matchers.any())).thenReturn(Iterator.empty)
+    val queryState = QueryStateHelper.emptyWith(query = query)
+
+    // when
+    val pipe = NodeIndexRangeSeekPipe("n", Right(LabelId(11)), Right(PropertyKeyId(10)),
+      ValueRange(None, Some(RangeSeekBound(Literal("m"), inclusive = true))))
+    pipe.createResults(queryState).toList
+
+    // then
+    val seek = seekUsed(query)
+    seek.covers("a") should equal(true)
+    seek.covers("m") should equal(true)
+    seek.covers("ma") should equal(false)
+  }
+
+  test("should seek string prefixes") {
+    // given
+    val query = mock[QueryContext]
+    Mockito.when(query.rangeIndexSearch(Matchers.eq(descriptor), Matchers.any())).thenReturn(Iterator.empty)
+    val queryState = QueryStateHelper.emptyWith(query = query)
+
+    // when
+    val pipe = NodeIndexRangeSeekPipe("n", Right(LabelId(11)), Right(PropertyKeyId(10)), RegexPrefixRange(Literal("ab.*")))
+    pipe.createResults(queryState).toList
+
+    // then
+    val seek = seekUsed(query)
+    seek.covers("abc") should equal(true)
+    seek.covers("b") should equal(false)
+  }
+
+  test("should seek all strings when the regular expression has no literal prefix") {
+    // given
+    val query = mock[QueryContext]
+    Mockito.when(query.rangeIndexSearch(Matchers.eq(descriptor), Matchers.any())).thenReturn(Iterator.empty)
+    val queryState = QueryStateHelper.emptyWith(query = query)
+
+    // when
+    val pipe = NodeIndexRangeSeekPipe("n", Right(LabelId(11)), Right(PropertyKeyId(10)), RegexPrefixRange(Literal("a+b.*")))
+    pipe.createResults(queryState).toList
+
+    // then
+    val seek = seekUsed(query)
+    seek.covers("abc") should equal(true)
+    seek.covers("b") should equal(true)
+    seek.covers(42) should equal(false)
+  }
+
+  test("should return empty iterator when bounds can not be compared") {
+    // given
+    val query = mock[QueryContext]
+    val queryState = QueryStateHelper.emptyWith(query = query)
+
+    // when
+    val range = ValueRange(Some(RangeSeekBound(Literal(10), inclusive = true)), Some(RangeSeekBound(Literal("20"), inclusive = true)))
+    val pipe = NodeIndexRangeSeekPipe("n", Right(LabelId(11)), Right(PropertyKeyId(10)), range)
+    val result = pipe.createResults(queryState)
+
+    // then
+    result should be(empty)
+    Mockito.verify(query, Mockito.never()).rangeIndexSearch(Matchers.any(), Matchers.any())
+  }
+
+  test("should return empty iterator when a bound is null") {
+    // given
+    val query = mock[QueryContext]
+    val queryState = QueryStateHelper.emptyWith(query = query)
+
+    // when
+    val pipe = NodeIndexRangeSeekPipe("n", Right(LabelId(11)), Right(PropertyKeyId(10)),
+      ValueRange(Some(RangeSeekBound(Literal(null), inclusive = false)), None))
+    val result = pipe.createResults(queryState)
+
+    // then
+    result should be(empty)
+  }
+
+  private def seekUsed(query: QueryContext): IndexSeek = {
+    val captor = ArgumentCaptor.forClass(classOf[IndexSeek])
+    Mockito.verify(query).rangeIndexSearch(Matchers.eq(descriptor), captor.capture())
+    captor.getValue
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.pipes
+
+import org.neo4j.cypher.internal.commons.CypherFunSuite
+import org.neo4j.cypher.internal.compiler.v2_1.ExecutionContext
+import org.neo4j.cypher.internal.compiler.v2_1.commands.expressions.SlottedIdentifier
+import org.neo4j.cypher.internal.compiler.v2_1.symbols._
+import org.neo4j.graphdb.{NotFoundException, Node}
+import org.mockito.Mockito._
+
+class SlottedRowTest extends CypherFunSuite {
+
+  val slots = SlotLayout(SymbolTable(Map("a" -> CTNode, "x" -> CTInteger)))
+  val state = QueryStateHelper.empty.copy(rowSlots = Some(slots))
+  val node = newMockedNode(12)
+
+  test("keeps identifiers in the slots of the layout") {
+    val row = new SlottedRow(slots)
+    row += "a" -> node
+    row += "x" -> 42
+
+    row.valueAt(slots.slotIndex("a")) should equal(node)
+    row.valueAt(slots.slotIndex("x")) should equal(42)
+    row.get("a") should equal(Some(node))
+    row.get("x") should equal(Some(42))
+    row.toMap should equal(Map("a" -> node, "x" -> 42))
+  }
+
+  test("tells identifiers holding null from identifiers missing") {
+    val row = new SlottedRow(slots)
+    row += "a" -> null
+
+    row.get("a") should equal(Some(null))
+    row.get("x") should equal(None)
+    row.contains("x") should equal(false)
+
+    row -= "a"
+    row.get("a") should equal(None)
+  }
+
+  test("keeps identifiers without a slot on the side, and values of any kind in a slot") {
+    val row = new SlottedRow(slots)
+    row += "a" -> "not a node"
+    row += "y" -> 1
+
+    row.get("a") should equal(Some("not a node"))
+    row.toMap should equal(Map("a" -> "not a node", "y" -> 1))
+
+    row += "a" -> node
+    row.toMap should equal(Map("a" -> node, "y" -> 1))
+  }
+
+  test("execution contexts stay slotted when copied") {
+    val context = state.newExecutionContext("a" -> node)
+    val copy = context.newWith("x" -> 1)
+    val merged = context.newFrom(Seq("x" -> 2)) ++ copy
+
+    copy.m shouldBe a[SlottedRow]
+    merged.m shouldBe a[SlottedRow]
+    context.toMap should equal(Map("a" -> node))
+    copy.toMap should equal(Map("a" -> node, "x" -> 1))
+    merged.toMap should equal(Map("a" -> node, "x" -> 1))
+  }
+
+  test("slots write and read rows by index, and other rows by name") {
+    val slot = slots.slot("a")
+    val slotted = state.newExecutionContext(slot, node)
+    val unslotted = ExecutionContext.empty.newWithSlot(slot, node)
+
+    slotted.m shouldBe a[SlottedRow]
+    slot.get(slotted) should equal(Some(node))
+    slot.get(unslotted) should equal(Some(node))
+    slot.get(state.newExecutionContext()) should equal(None)
+    SlotLayout.empty.slot("a").get(slotted) should equal(Some(node))
+  }
+
+  test("slotted identifiers read slotted rows and other rows alike") {
+    val identifier = new SlottedIdentifier("a", slots)
+
+    identifier(state.newExecutionContext("a" -> node))(state) should equal(node)
+    identifier(ExecutionContext.from("a" -> node))(state) should equal(node)
+    intercept[NotFoundException](identifier(state.newExecutionContext())(state))
+  }
+
+  private def newMockedNode(id: Int) = {
+    val node = mock[Node]
+    when(node.getId).thenReturn(id)
+    node
+  }
+}
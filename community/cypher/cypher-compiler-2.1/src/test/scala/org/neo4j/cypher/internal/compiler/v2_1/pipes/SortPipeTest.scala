@@ -30,6 +30,8 @@ import org.scalatest.junit.JUnitSuite
 import collection.mutable.{Map=>MutableMap}
 import scala.util.Random
 import org.scalatest.mock.MockitoSugar
+import java.io.File
+import java.net.URL
 
 class SortPipeTest extends JUnitSuite with MockitoSugar {
 
@@ -125,4 +127,49 @@ class SortPipeTest extends JUnitSuite with MockitoSugar {
 
     sortPipe.createResults(QueryStateHelper.empty)
   }
+
+  @Test def shouldSpillSortedRunsWhenBufferIsFull() {
+    val list: Seq[MutableMap[String, Any]] = Random.shuffle(
+      for (v <- 1 to 100) yield MutableMap[String, Any]("x" -> v % 10, "y" -> v.toString, "z" -> List(v, null)))
+    val source = new FakePipe(list, "x" -> CTNumber, "y" -> CTString, "z" -> CTCollection(CTAny))
+    val resources = new TempFileResources
+    val sortPipe = new SortPipe(source, List(SortItem(Identifier("x"), true)))
+
+    val result = sortPipe.createResults(spillingState(resources, 7)).toList
+
+    assertEquals(list.sortBy(_("x").asInstanceOf[Int]), result)
+    assertEquals(14, resources.files.size)
+    assertTrue(resources.files.forall(!_.exists()))
+  }
+
+  @Test def shouldSortInMemoryWhenRowsCannotBeSpilled() {
+    val list: Seq[MutableMap[String, Any]] = List(
+      MutableMap("x" -> 3, "y" -> Array(1, 2)),
+      MutableMap("x" -> 1, "y" -> Array(3)),
+      MutableMap("x" -> 2, "y" -> Array(4)))
+    val source = new FakePipe(list, "x" -> CTNumber, "y" -> CTCollection(CTInteger))
+    val resources = new TempFileResources
+    val sortPipe = new SortPipe(source, List(SortItem(Identifier("x"), true)))
+
+    val result = sortPipe.createResults(spillingState(resources, 2)).toList
+
+    assertEquals(List(1, 2, 3), result.map(_("x")))
+    assertTrue(resources.files.forall(!_.exists()))
+  }
+
+  private def spillingState(resources: ExternalResource, sortBufferSize: Int) =
+    QueryStateHelper.emptyWith(resources = resources).copy(sortBufferSize = sortBufferSize)
+
+  private class TempFileResources extends ExternalResource {
+    var files = List.empty[File]
+
+    def getCsvIterator(url: URL, fieldTerminator: Option[String]) = Iterator.empty
+
+    def createTempFile(prefix: String) = {
+      val file = File.createTempFile(prefix, ".tmp")
+      file.deleteOnExit()
+      files = file :: files
+      file
+    }
+  }
 }
@@ -92,6 +92,16 @@ class TopPipeTest extends Assertions with MockitoSugar {
     assert(result === List(10,null))
   }
 
+  @Test def equalRowsComeOutInInputOrder() {
+    val in = (0 until 100).map(i => Map("a" -> i % 3, "b" -> i))
+    val input = new FakePipe(in, "a" -> CTInteger, "b" -> CTInteger)
+
+    val pipe = new TopPipe(input, List(SortItem(Identifier("a"), ascending = true)), Literal(4))
+    val result = pipe.createResults(QueryStateHelper.empty).map(ctx => ctx("b")).toList
+
+    assert(result === List(0, 3, 6, 9))
+  }
+
   private def createFakePipeWith(count: Int): FakePipe = {
 
     val r = new Random(1337)
@@ -28,6 +28,8 @@ import org.neo4j.cypher.internal.compiler.v2_1.symbols._
 import org.neo4j.cypher.internal.compiler.v2_1.spi.QueryContext
 import org.mockito.stubbing.Answer
 import org.mockito.invocation.InvocationOnMock
+import org.neo4j.cypher.internal.compiler.v2_1.commands.{Equals, Not}
+import org.neo4j.cypher.internal.compiler.v2_1.commands.expressions.{Identifier, Literal}
 
 class VarLengthExpandPipeTest extends CypherFunSuite {
 
@@ -250,6 +252,146 @@ class VarLengthExpandPipeTest extends CypherFunSuite {
     fourth("b") should equal(endNode)
   }
 
+  test("should not expand relationships failing the relationship predicate") {
+    // given
+    val startNode = newMockedNode(1)
+    val middleNode = newMockedNode(2)
+    val endNode = newMockedNode(3)
+    val leftRelationship = newMockedRealtionship(1, startNode, middleNode)
+    val rightRelationship = newMockedRealtionship(2, middleNode, endNode)
+
+    val query = mock[QueryContext]
+    replyWithMap(query, Map(
+        (startNode, Direction.OUTGOING) -> Seq(leftRelationship),
+        (middleNode, Direction.OUTGOING) -> Seq(rightRelationship)
+      ).withDefaultValue(Seq.empty)
+    )
+    val queryState = QueryStateHelper.emptyWith(query = query)
+
+    val left = newMockedPipe(SymbolTable(Map("a" -> CTNode)))
+    when(left.createResults(queryState)).thenReturn(Iterator(row("a" -> startNode)))
+    val notRight = "x" -> Not(Equals(Identifier("x"), Literal(rightRelationship)))
+
+    // when
+    val result = VarLengthExpandPipe(left, "a", "r", "b", Direction.OUTGOING, Seq.empty, 1, None, Seq(notRight)).createResults(queryState).toList
+
+    // then
+    val (single :: Nil) = result
+    single("r") should equal(List(leftRelationship))
+    single("b") should equal(middleNode)
+    verify(query, never()).getRelationshipsFor(endNode, Direction.OUTGOING, Seq.empty)
+  }
+
+  test("should not use the same relationship twice in a path") {
+    // given
+    val startNode = newMockedNode(1)
+    val endNode = newMockedNode(2)
+    val relationship = newMockedRealtionship(1, startNode, endNode)
+
+    val query = mock[QueryContext]
+    replyWithMap(query, Map(
+        (startNode, Direction.BOTH) -> Seq(relationship),
+        (endNode, Direction.BOTH) -> Seq(relationship)
+      ).withDefaultValue(Seq.empty)
+    )
+    val queryState = QueryStateHelper.emptyWith(query = query)
+
+    val left = newMockedPipe(SymbolTable(Map("a" -> CTNode)))
+    when(left.createResults(queryState)).thenReturn(Iterator(row("a" -> startNode)))
+
+    // when
+    val result = VarLengthExpandPipe(left, "a", "r", "b", Direction.BOTH, Seq.empty, 1, None).createResults(queryState).toList
+
+    // then
+    val (single :: Nil) = result
+    single("r") should equal(List(relationship))
+    single("b") should equal(endNode)
+  }
+
+  test("should produce every end node once when only distinct end nodes are needed") {
+    // given
+    val startNode = newMockedNode(1)
+    val leftNode = newMockedNode(2)
+    val rightNode = newMockedNode(3)
+    val endNode = newMockedNode(4)
+    val relationships = Seq(
+      newMockedRealtionship(1, startNode, leftNode),
+      newMockedRealtionship(2, startNode, rightNode),
+      newMockedRealtionship(3, leftNode, endNode),
+      newMockedRealtionship(4, rightNode, endNode))
+
+    val query = mock[QueryContext]
+    replyWithMap(query, outgoing(relationships))
+    val queryState = QueryStateHelper.emptyWith(query = query)
+
+    val left = newMockedPipe(SymbolTable(Map("a" -> CTNode)))
+    when(left.createResults(queryState)).thenReturn(Iterator(row("a" -> startNode)))
+
+    // when
+    val pipe = VarLengthExpandPipe(left, "a", "r", "b", Direction.OUTGOING, Seq.empty, 1, None, distinctEndpoints = true)
+    val result = pipe.createResults(queryState).toList
+
+    // then
+    result.map(_("b")) should equal(List(leftNode, rightNode, endNode))
+    result.foreach(_.contains("r") should equal(false))
+    pipe.symbols.hasIdentifierNamed("r") should equal(false)
+    verify(query, times(1)).getRelationshipsFor(endNode, Direction.OUTGOING, Seq.empty)
+  }
+
+  test("should only produce the start node as a distinct end node when it lies on a short enough cycle") {
+    // given
+    val startNode = newMockedNode(1)
+    val leftNode = newMockedNode(2)
+    val rightNode = newMockedNode(3)
+    val query = mock[QueryContext]
+    replyWithMap(query, undirected(Seq(
+      newMockedRealtionship(1, startNode, leftNode),
+      newMockedRealtionship(2, leftNode, rightNode),
+      newMockedRealtionship(3, rightNode, startNode))))
+    val queryState = QueryStateHelper.emptyWith(query = query)
+
+    val left = newMockedPipe(SymbolTable(Map("a" -> CTNode)))
+    when(left.createResults(any())).thenAnswer(new Answer[Iterator[ExecutionContext]] {
+      def answer(invocation: InvocationOnMock): Iterator[ExecutionContext] = Iterator(row("a" -> startNode))
+    })
+
+    // when
+    def endNodes(max: Int) = VarLengthExpandPipe(left, "a", "r", "b", Direction.BOTH, Seq.empty, 1, Some(max), distinctEndpoints = true)
+      .createResults(queryState).map(_("b")).toSet
+
+    // then
+    endNodes(1) should equal(Set(leftNode, rightNode))
+    endNodes(2) should equal(Set(leftNode, rightNode))
+    endNodes(3) should equal(Set(startNode, leftNode, rightNode))
+  }
+
+  test("should not treat walking back along the same relationship as a cycle for distinct end nodes") {
+    // given
+    val startNode = newMockedNode(1)
+    val endNode = newMockedNode(2)
+    val query = mock[QueryContext]
+    replyWithMap(query, undirected(Seq(newMockedRealtionship(1, startNode, endNode))))
+    val queryState = QueryStateHelper.emptyWith(query = query)
+
+    val left = newMockedPipe(SymbolTable(Map("a" -> CTNode)))
+    when(left.createResults(queryState)).thenReturn(Iterator(row("a" -> startNode)))
+
+    // when
+    val result = VarLengthExpandPipe(left, "a", "r", "b", Direction.BOTH, Seq.empty, 1, None, distinctEndpoints = true)
+      .createResults(queryState).toList
+
+    // then
+    result.map(_("b")) should equal(List(endNode))
+  }
+
+  private def outgoing(relationships: Seq[Relationship]): Map[(Node, Direction), Seq[Relationship]] =
+    relationships.groupBy(r => (r.getStartNode, Direction.OUTGOING)).withDefaultValue(Seq.empty)
+
+  private def undirected(relationships: Seq[Relationship]): Map[(Node, Direction), Seq[Relationship]] = {
+    val byNode = relationships.flatMap(r => Seq(r.getStartNode -> r, r.getEndNode -> r)).groupBy(_._1)
+    byNode.map { case (node, rels) => (node, Direction.BOTH) -> rels.map(_._2) }.withDefaultValue(Seq.empty)
+  }
+
   private def row(values: (String, Any)*) = ExecutionContext.from(values: _*)
 
   private def newMockedNode(id: Int) = {
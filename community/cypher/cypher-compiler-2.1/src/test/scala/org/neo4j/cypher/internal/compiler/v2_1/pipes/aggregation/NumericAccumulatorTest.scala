@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.pipes.aggregation
+
+import org.junit.Assert._
+import org.junit.Test
+import org.neo4j.cypher.internal.helpers.TypeSafeMathSupport
+import scala.util.Random
+
+class NumericAccumulatorTest extends TypeSafeMathSupport {
+
+  @Test def shouldSumLikePlusDoes() {
+    val random = new Random(42)
+    val values: Seq[() => Number] = Seq(
+      () => Int.box(random.nextInt()),
+      () => Long.box(random.nextLong()),
+      () => Short.box(random.nextInt().toShort),
+      () => Byte.box(random.nextInt().toByte),
+      () => Float.box(random.nextFloat() * 1000),
+      () => Double.box(random.nextDouble() * 1000))
+
+    for (round <- 0 until 1000) {
+      val accumulator = new NumericAccumulator
+      var expected: Any = 0
+      for (i <- 0 until random.nextInt(10)) {
+        // mostly values of one type, now and then a wider or narrower one
+        val number = values(if (random.nextInt(4) == 0) random.nextInt(values.size) else round % values.size)()
+        accumulator.add(number)
+        expected = plus(expected, number)
+      }
+
+      assertEquals(expected, accumulator.value)
+      assertEquals(expected.getClass, accumulator.value.getClass)
+    }
+  }
+
+  @Test def shouldOverflowIntsLikePlusDoes() {
+    val accumulator = new NumericAccumulator
+    accumulator.add(Int.MaxValue)
+    accumulator.add(1)
+
+    assertEquals(Int.MinValue, accumulator.value)
+  }
+}
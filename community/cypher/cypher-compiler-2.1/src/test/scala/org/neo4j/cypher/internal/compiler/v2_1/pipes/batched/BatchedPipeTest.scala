@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.pipes.batched
+
+import org.neo4j.cypher.internal.commons.CypherFunSuite
+import org.neo4j.cypher.internal.compiler.v2_1.pipes._
+import org.neo4j.cypher.internal.compiler.v2_1.spi.{Operations, QueryContext}
+import org.neo4j.cypher.internal.compiler.v2_1.commands.{Not, Equals}
+import org.neo4j.cypher.internal.compiler.v2_1.commands.expressions.{CountStar, Literal, Identifier}
+import org.neo4j.cypher.internal.compiler.v2_1.symbols._
+import org.neo4j.cypher.internal.compiler.v2_1.LabelId
+import org.neo4j.graphdb.{Direction, Relationship, Node}
+import org.mockito.Mockito._
+import org.mockito.Matchers._
+import org.mockito.stubbing.Answer
+import org.mockito.invocation.InvocationOnMock
+
+class BatchedPipeTest extends CypherFunSuite {
+
+  implicit val monitor = mock[PipeMonitor]
+  val nodes = (0 until 5).map(newMockedNode)
+  val outgoing: Map[Any, Seq[Relationship]] = nodes.map(from => from -> nodes.map(newMockedRelationship(from, _))).toMap
+  val query = mock[QueryContext]
+  val nodeOps = mock[Operations[Node]]
+  val rowState = QueryStateHelper.emptyWith(query = query)
+
+  when(query.nodeOps).thenReturn(nodeOps)
+  when(nodeOps.all).thenAnswer(new Answer[Iterator[Node]] {
+    def answer(invocation: InvocationOnMock) = nodes.iterator
+  })
+  when(query.getNodesByLabel(anyInt())).thenAnswer(new Answer[Iterator[Node]] {
+    def answer(invocation: InvocationOnMock) = nodes.take(3).iterator
+  })
+  when(query.getRelationshipsFor(any(), any(), any())).thenAnswer(new Answer[Iterator[Relationship]] {
+    def answer(invocation: InvocationOnMock) = outgoing(invocation.getArguments()(0)).iterator
+  })
+
+  test("expanding and filtering in batches gives the same rows as row by row") {
+    val pipe = FilterPipe(
+      ExpandPipe(AllNodesScanPipe("a"), "a", "r", "b", Direction.OUTGOING, Seq.empty),
+      Not(Equals(Identifier("a"), Identifier("b"))))
+
+    for (batchSize <- Seq(1, 2, 3, 7, 100))
+      rowsOf(pipe, batchSize) should equal(rowsOf(pipe, 0))
+
+    rowsOf(pipe, 3) should have size 20
+  }
+
+  test("projecting in batches gives the same rows as row by row") {
+    val pipe = ProjectionNewPipe(
+      ExpandPipe(NodeByLabelScanPipe("a", Right(LabelId(0))), "a", "r", "b", Direction.OUTGOING, Seq.empty),
+      Map("b" -> Identifier("b"), "x" -> Literal(42)))
+
+    rowsOf(pipe, 4) should equal(rowsOf(pipe, 0))
+    rowsOf(pipe, 4).head.keySet should equal(Set("b", "x"))
+  }
+
+  test("aggregating in batches gives the same rows as row by row") {
+    val expand = ExpandPipe(AllNodesScanPipe("a"), "a", "r", "b", Direction.OUTGOING, Seq.empty)
+    val pipe = new EagerAggregationPipe(expand, Map("b" -> Identifier("b")), Map("count(*)" -> CountStar()))
+
+    rowsOf(pipe, 2).toSet should equal(rowsOf(pipe, 0).toSet)
+    rowsOf(pipe, 2).map(_("count(*)").toString).toSet should equal(Set("5"))
+  }
+
+  test("aggregating nothing without grouping keys gives a single row") {
+    val filter = FilterPipe(AllNodesScanPipe("a"), Not(Equals(Identifier("a"), Identifier("a"))))
+    val pipe = new EagerAggregationPipe(filter, Map.empty, Map("count(*)" -> CountStar()))
+
+    rowsOf(pipe, 2) should equal(rowsOf(pipe, 0))
+    rowsOf(pipe, 2) should have size 1
+  }
+
+  test("falls back to rows when a source can't produce batches") {
+    val source = new FakePipe(nodes.map(n => Map("a" -> n)), "a" -> CTNode)
+    val pipe = FilterPipe(source, Not(Equals(Identifier("a"), Literal(nodes(0)))))
+
+    pipe.batchable should equal(false)
+    rowsOf(pipe, 2) should equal(nodes.tail.map(n => Map("a" -> n)).toList)
+  }
+
+  test("removing from a batched row hides the identifier until the map moves on, without touching the batch") {
+    val batch = new RowBatch(SlotLayout(SymbolTable(Map("a" -> CTNode, "x" -> CTInteger))), 2)
+    for (i <- 0 until 2) {
+      val added = batch.addRow()
+      batch.setValue(added, "a", nodes(i))
+      batch.setValue(added, "x", i + 1)
+    }
+    val row = new BatchRowMap(rowState)
+
+    val context = row.moveTo(batch, 0)
+    context -= "a"
+    context += "y" -> 3
+    context -= "y"
+    context.toMap should equal(Map("x" -> 1))
+    context += "a" -> nodes(4)
+    context("a") should equal(nodes(4))
+
+    row.moveTo(batch, 1).toMap should equal(Map("a" -> nodes(1), "x" -> 2))
+    row.moveTo(batch, 0).toMap should equal(Map("a" -> nodes(0), "x" -> 1))
+  }
+
+  test("batches keep ids next to the entities and copy rows into wider layouts") {
+    val narrow = SlotLayout(SymbolTable(Map("a" -> CTNode, "x" -> CTInteger)))
+    val wide = narrow.add("r", CTRelationship)
+    val source = new RowBatch(narrow, 2)
+    val row = source.addRow()
+    source.setValue(row, "a", nodes(3))
+    source.setValue(row, "x", 12)
+
+    val target = new RowBatch(wide, 2)
+    val copied = target.addRow(source, row)
+
+    wide.startsWith(narrow) should equal(true)
+    target.getId(copied, wide.longOffset("a")) should equal(3)
+    target.getId(copied, wide.longOffset("r")) should equal(RowBatch.NULL)
+    target.getValue(copied, "a", rowState) should equal(nodes(3))
+    target.getValue(copied, "r", rowState) should equal(null.asInstanceOf[AnyRef])
+    target.getValue(copied, "x", rowState) should equal(12)
+  }
+
+  private def rowsOf(pipe: Pipe, batchSize: Int): List[Map[String, Any]] =
+    pipe.createResults(rowState.copy(batchSize = batchSize)).map(_.m.toMap).toList
+
+  private def newMockedNode(id: Int) = {
+    val node = mock[Node]
+    when(node.getId).thenReturn(id)
+    node
+  }
+
+  private def newMockedRelationship(startNode: Node, endNode: Node): Relationship = {
+    val id = startNode.getId * 5 + endNode.getId
+    val relationship = mock[Relationship]
+    when(relationship.getId).thenReturn(id)
+    when(relationship.getStartNode).thenReturn(startNode)
+    when(relationship.getEndNode).thenReturn(endNode)
+    when(relationship.getOtherNode(startNode)).thenReturn(endNode)
+    relationship
+  }
+}
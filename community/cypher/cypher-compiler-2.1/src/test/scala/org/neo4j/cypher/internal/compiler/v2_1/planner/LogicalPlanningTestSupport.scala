@@ -97,8 +97,9 @@ trait LogicalPlanningTestSupport extends CypherTestSupport {
     plan
   }
 
-  def newPlanner(metricsFactory: MetricsFactory): Planner =
-    new Planner(monitors, metricsFactory, monitors.newMonitor[PlanningMonitor]())
+  def newPlanner(metricsFactory: MetricsFactory,
+                 config: PlanningStrategyConfiguration = PlanningStrategyConfiguration.default): Planner =
+    new Planner(monitors, metricsFactory, monitors.newMonitor[PlanningMonitor](), config)
 
   def produceLogicalPlan(queryText: String)
                         (implicit planner: Planner, planContext: PlanContext) = {
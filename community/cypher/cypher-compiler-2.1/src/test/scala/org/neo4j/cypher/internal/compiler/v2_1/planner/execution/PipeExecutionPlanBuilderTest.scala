@@ -20,12 +20,12 @@
 package org.neo4j.cypher.internal.compiler.v2_1.planner.execution
 
 import org.neo4j.cypher.internal.commons.CypherFunSuite
-import org.neo4j.cypher.internal.compiler.v2_1.commands.{expressions => legacy}
+import org.neo4j.cypher.internal.compiler.v2_1.commands.{expressions => legacy, AllInCollection}
 import org.neo4j.cypher.internal.compiler.v2_1.ast.convert.ExpressionConverters._
 import org.neo4j.cypher.internal.compiler.v2_1.planner._
 import org.neo4j.cypher.internal.compiler.v2_1.pipes._
 import org.neo4j.cypher.internal.compiler.v2_1.planner.logical.plans._
-import org.neo4j.cypher.internal.compiler.v2_1.ast.{Collection, SignedIntegerLiteral}
+import org.neo4j.cypher.internal.compiler.v2_1.ast.{AllIterablePredicate, Equals, Not, Identifier, Collection, SignedIntegerLiteral}
 import org.neo4j.cypher.internal.compiler.v2_1.LabelId
 import org.neo4j.graphdb.Direction
 
@@ -44,7 +44,7 @@ class PipeExecutionPlanBuilderTest extends CypherFunSuite with LogicalPlanningTe
 
     pipeInfo should not be 'updating
     pipeInfo.periodicCommit should equal(None)
-    pipeInfo.pipe should equal(ProjectionNewPipe(NullPipe(), Map("42" -> legacy.Literal(42))))
+    pipeInfo.pipe should equal(ProjectionNewPipe(NullPipe(), Map("42" -> legacy.Literal(42)), pipeInfo.rowSlots.get))
   }
 
   test("simple pattern query") {
@@ -53,7 +53,7 @@ class PipeExecutionPlanBuilderTest extends CypherFunSuite with LogicalPlanningTe
 
     pipeInfo should not be 'updating
     pipeInfo.periodicCommit should equal(None)
-    pipeInfo.pipe should equal(AllNodesScanPipe("n"))
+    pipeInfo.pipe should equal(AllNodesScanPipe("n", pipeInfo.rowSlots.get))
   }
 
   test("simple label scan query") {
@@ -62,7 +62,7 @@ class PipeExecutionPlanBuilderTest extends CypherFunSuite with LogicalPlanningTe
 
     pipeInfo should not be 'updating
     pipeInfo.periodicCommit should equal(None)
-    pipeInfo.pipe should equal(NodeByLabelScanPipe("n", Right(LabelId(12))))
+    pipeInfo.pipe should equal(NodeByLabelScanPipe("n", Right(LabelId(12)), pipeInfo.rowSlots.get))
   }
 
   test("simple node by id seek query") {
@@ -133,14 +133,16 @@ class PipeExecutionPlanBuilderTest extends CypherFunSuite with LogicalPlanningTe
     val logicalPlan = CartesianProduct(lhs, rhs)
     val pipeInfo = planBuilder.build(logicalPlan)
 
-    pipeInfo.pipe should equal(CartesianProductPipe(AllNodesScanPipe("n"), AllNodesScanPipe("m")))
+    val slots = pipeInfo.rowSlots.get
+    pipeInfo.pipe should equal(CartesianProductPipe(AllNodesScanPipe("n", slots), AllNodesScanPipe("m", slots)))
   }
 
   test("simple expand") {
     val logicalPlan = Expand( AllNodesScan("a"), "a", Direction.INCOMING, Seq(), "b", "r1", SimplePatternLength)(patternRel)
     val pipeInfo = planBuilder.build(logicalPlan)
 
-    pipeInfo.pipe should equal(ExpandPipe( AllNodesScanPipe("a"), "a", "r1", "b", Direction.INCOMING, Seq() ))
+    val slots = pipeInfo.rowSlots.get
+    pipeInfo.pipe should equal(ExpandPipe( AllNodesScanPipe("a", slots), "a", "r1", "b", Direction.INCOMING, Seq(), slots ))
   }
 
   test("simple hash join") {
@@ -152,10 +154,41 @@ class PipeExecutionPlanBuilderTest extends CypherFunSuite with LogicalPlanningTe
       )
     val pipeInfo = planBuilder.build(logicalPlan)
 
+    val slots = pipeInfo.rowSlots.get
     pipeInfo.pipe should equal(NodeHashJoinPipe(
       "b",
-      ExpandPipe( AllNodesScanPipe("a"), "a", "r1", "b", Direction.INCOMING, Seq() ),
-      ExpandPipe( AllNodesScanPipe("c"), "c", "r2", "b", Direction.INCOMING, Seq() )
+      ExpandPipe( AllNodesScanPipe("a", slots), "a", "r1", "b", Direction.INCOMING, Seq(), slots ),
+      ExpandPipe( AllNodesScanPipe("c", slots), "c", "r2", "b", Direction.INCOMING, Seq(), slots )
     ))
   }
+
+  test("gives every identifier of the plan a slot up front, and hands the same layout to every pipe") {
+    val logicalPlan = Projection(
+      Expand(AllNodesScan("a"), "a", Direction.INCOMING, Seq(), "b", "r1", SimplePatternLength)(patternRel),
+      Map("b" -> Identifier("b")_, "x" -> SignedIntegerLiteral("42")_))
+    val pipeInfo = planBuilder.build(logicalPlan)
+
+    val slots = pipeInfo.rowSlots.get
+    slots.longs.map(_._1).toSet should equal(Set("a", "b", "r1"))
+    slots.refs should equal(Seq("x"))
+
+    val ProjectionNewPipe(ExpandPipe(AllNodesScanPipe(_, scanSlots), _, _, _, _, _, expandSlots), expressions, projectionSlots) = pipeInfo.pipe
+    expressions("b").isInstanceOf[legacy.SlottedIdentifier] should equal(true)
+    expressions("x") should equal(legacy.Literal(42))
+    Seq(scanSlots, expandSlots, projectionSlots).foreach(_ should be theSameInstanceAs slots)
+  }
+
+  test("checks ALL predicates over the relationships of a var length expand on every hop") {
+    val varPatternRel = PatternRelationship("r", ("a", "b"), Direction.OUTGOING, Seq.empty, VarPatternLength.unlimited)
+    val perHop = AllIterablePredicate(Identifier("x")_, Identifier("r")_, Some(Not(Equals(Identifier("x")_, Identifier("a")_)_)_))_
+    val onEndNode = AllIterablePredicate(Identifier("y")_, Identifier("r")_, Some(Not(Equals(Identifier("y")_, Identifier("b")_)_)_))_
+    val logicalPlan = Selection(
+      Seq(perHop, onEndNode),
+      Expand(AllNodesScan("a"), "a", Direction.OUTGOING, Seq(), "b", "r", VarPatternLength.unlimited)(varPatternRel))
+    val pipeInfo = planBuilder.build(logicalPlan)
+
+    val FilterPipe(expand: VarLengthExpandPipe, remaining) = pipeInfo.pipe
+    expand.relationshipPredicates.map(_._1) should equal(Seq("x"))
+    remaining.isInstanceOf[AllInCollection] should equal(true)
+  }
 }
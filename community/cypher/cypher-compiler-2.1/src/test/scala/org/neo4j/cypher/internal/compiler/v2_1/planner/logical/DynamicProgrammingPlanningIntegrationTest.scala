@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1.planner.logical
+
+import org.neo4j.graphdb.Direction
+import org.neo4j.cypher.internal.commons.CypherFunSuite
+import org.neo4j.cypher.internal.compiler.v2_1.planner.LogicalPlanningTestSupport
+import org.neo4j.cypher.internal.compiler.v2_1.planner.logical.plans._
+import org.neo4j.cypher.internal.compiler.v2_1.ast.NotEquals
+import org.neo4j.cypher.internal.compiler.v2_1.ast.Identifier
+import org.mockito.Mockito._
+import org.mockito.Matchers._
+
+class DynamicProgrammingPlanningIntegrationTest extends CypherFunSuite with LogicalPlanningTestSupport {
+
+  private val query = "MATCH (a)-[r1]->(b)-[r2]->(c) RETURN b"
+
+  private def newFactory = {
+    val factory = newMockedMetricsFactory
+    when(factory.newCardinalityEstimator(any(), any())).thenReturn((plan: LogicalPlan) => plan match {
+      case _: AllNodesScan                                               => 10
+      case Expand(_, IdName("a"), _, _, IdName("b"), _, _)               => 1
+      case Expand(_: AllNodesScan, IdName("b"), _, _, IdName("c"), _, _) => 2
+      case Expand(_: Expand, IdName("b"), _, _, IdName("a"), _, _)       => 2
+      case _: Expand                                                     => 1000
+      case _: NodeHashJoin                                               => 1000
+      case _                                                             => Double.MaxValue
+    })
+    factory
+  }
+
+  test("should expand in the order that is cheapest for the whole pattern") {
+    implicit val planContext = newMockedPlanContext
+    implicit val planner = newPlanner(newFactory, PlanningStrategyConfiguration.dynamicProgramming)
+
+    produceLogicalPlan(query) should equal(
+      Projection(
+        Selection(
+          Seq(NotEquals(Identifier("r1")_,Identifier("r2")_)_),
+          Expand(
+            Expand(AllNodesScan("b"), "b", Direction.OUTGOING, Seq(), "c", "r2", SimplePatternLength)(mockRel),
+            "b", Direction.INCOMING, Seq(), "a", "r1", SimplePatternLength)(mockRel)
+        ),
+        expressions = Map("b" -> Identifier("b")_)
+      )
+    )
+  }
+
+  test("greedy ordering commits to the cheapest first step instead") {
+    implicit val planContext = newMockedPlanContext
+    implicit val planner = newPlanner(newFactory)
+
+    produceLogicalPlan(query) should equal(
+      Projection(
+        Selection(
+          Seq(NotEquals(Identifier("r1")_,Identifier("r2")_)_),
+          Expand(
+            Expand(AllNodesScan("c"), "c", Direction.INCOMING, Seq(), "b", "r2", SimplePatternLength)(mockRel),
+            "b", Direction.INCOMING, Seq(), "a", "r1", SimplePatternLength)(mockRel)
+        ),
+        expressions = Map("b" -> Identifier("b")_)
+      )
+    )
+  }
+
+  test("should order components with too many relationships greedily") {
+    implicit val planContext = newMockedPlanContext
+    val greedy = produceLogicalPlan(query)(newPlanner(newFactory), planContext)
+    val config = PlanningStrategyConfiguration.default.copy(joinOrdering = DynamicProgrammingJoinOrdering(maxRelationships = 1))
+
+    produceLogicalPlan(query)(newPlanner(newFactory, config), planContext) should equal(greedy)
+  }
+
+  test("should plan disconnected components separately") {
+    implicit val planContext = newMockedPlanContext
+    implicit val planner = newPlanner(newFactory, PlanningStrategyConfiguration.dynamicProgramming)
+
+    produceLogicalPlan("MATCH (a)-[r1]->(b), (c) RETURN b") should equal(
+      Projection(
+        CartesianProduct(
+          Expand(AllNodesScan("a"), "a", Direction.OUTGOING, Seq(), "b", "r1", SimplePatternLength)(mockRel),
+          AllNodesScan("c")
+        ),
+        expressions = Map("b" -> Identifier("b")_)
+      )
+    )
+  }
+}
@@ -28,7 +28,7 @@ import org.neo4j.cypher.internal.compiler.v2_1._
 import org.neo4j.cypher.internal.compiler.v2_1.planner._
 import org.neo4j.cypher.internal.compiler.v2_1.ast._
 import org.mockito.Matchers._
-import org.neo4j.cypher.internal.compiler.v2_1.planner.logical.steps.{indexSeekLeafPlanner, uniqueIndexSeekLeafPlanner}
+import org.neo4j.cypher.internal.compiler.v2_1.planner.logical.steps.{indexRangeSeekLeafPlanner, indexSeekLeafPlanner, uniqueIndexSeekLeafPlanner}
 
 class IndexLeafPlannerTest extends CypherFunSuite with LogicalPlanningTestSupport {
 
@@ -115,4 +115,80 @@ class IndexLeafPlannerTest extends CypherFunSuite with LogicalPlanningTestSuppor
     // then
     resultPlans should equal(Seq(NodeIndexUniqueSeek(idName, labelId, propertyKeyId, SignedIntegerLiteral("42")_)()))
   }
+
+  test("index range seek when there are comparisons on an indexed property") {
+    // given
+    val identifier = Identifier("n")_
+    val labelId = LabelId(12)
+    val propertyKeyId = PropertyKeyId(15)
+    val idName = IdName("n")
+    val hasLabels: Expression = HasLabels(identifier, Seq(LabelName("Awesome")(Some(labelId))_))_
+    val property: Expression = Property(identifier, PropertyKeyName("prop")(Some(propertyKeyId))_)_
+    val greaterThan: Expression = GreaterThan(property, SignedIntegerLiteral("10")_)_
+    val atMost: Expression = GreaterThanOrEqual(SignedIntegerLiteral("20")_, property)_
+    val qg = QueryGraph(
+      projections = Map("n" -> identifier),
+      selections = Selections(Set(
+        Predicate(Set(idName), greaterThan),
+        Predicate(Set(idName), atMost),
+        Predicate(Set(idName), hasLabels))),
+      patternNodes = Set(idName))
+
+    implicit val context = newMockedLogicalPlanContext(
+      planContext = newMockedPlanContext,
+      queryGraph = qg,
+      metrics = newMockedMetricsFactory.newMetrics(statistics))
+    when(context.planContext.indexesGetForLabel(12)).thenAnswer(new Answer[Iterator[IndexDescriptor]] {
+      override def answer(invocation: InvocationOnMock) = Iterator(new IndexDescriptor(12, 15))
+    })
+    when(context.planContext.uniqueIndexesGetForLabel(12)).thenAnswer(new Answer[Iterator[IndexDescriptor]] {
+      override def answer(invocation: InvocationOnMock) = Iterator()
+    })
+
+    // when
+    val resultPlans = indexRangeSeekLeafPlanner(qg).plans
+
+    // then
+    resultPlans should equal(Seq(NodeIndexRangeSeek(idName, labelId, propertyKeyId,
+      Some(RangeBound(SignedIntegerLiteral("10")_, inclusive = false)),
+      Some(RangeBound(SignedIntegerLiteral("20")_, inclusive = true)))()))
+    resultPlans.head.solved.selections.flatPredicates.toSet should equal(Set(greaterThan, atMost, hasLabels))
+  }
+
+  test("index prefix seek for regular expressions matching a literal prefix, keeping the regular expression") {
+    // given
+    val identifier = Identifier("n")_
+    val labelId = LabelId(12)
+    val propertyKeyId = PropertyKeyId(15)
+    val idName = IdName("n")
+    val hasLabels: Expression = HasLabels(identifier, Seq(LabelName("Awesome")(Some(labelId))_))_
+    val property: Expression = Property(identifier, PropertyKeyName("prop")(Some(propertyKeyId))_)_
+    val prefixMatch: Expression = RegexMatch(property, StringLiteral("ab.*")_)_
+    val otherMatch: Expression = RegexMatch(property, StringLiteral("a+b.*")_)_
+    val qg = QueryGraph(
+      projections = Map("n" -> identifier),
+      selections = Selections(Set(
+        Predicate(Set(idName), prefixMatch),
+        Predicate(Set(idName), otherMatch),
+        Predicate(Set(idName), hasLabels))),
+      patternNodes = Set(idName))
+
+    implicit val context = newMockedLogicalPlanContext(
+      planContext = newMockedPlanContext,
+      queryGraph = qg,
+      metrics = newMockedMetricsFactory.newMetrics(statistics))
+    when(context.planContext.indexesGetForLabel(12)).thenAnswer(new Answer[Iterator[IndexDescriptor]] {
+      override def answer(invocation: InvocationOnMock) = Iterator()
+    })
+    when(context.planContext.uniqueIndexesGetForLabel(12)).thenAnswer(new Answer[Iterator[IndexDescriptor]] {
+      override def answer(invocation: InvocationOnMock) = Iterator(new IndexDescriptor(12, 15))
+    })
+
+    // when
+    val resultPlans = indexRangeSeekLeafPlanner(qg).plans
+
+    // then
+    resultPlans should equal(Seq(NodeIndexPrefixSeek(idName, labelId, propertyKeyId, StringLiteral("ab.*")_)()))
+    resultPlans.head.solved.selections.flatPredicates should equal(Seq(hasLabels))
+  }
 }
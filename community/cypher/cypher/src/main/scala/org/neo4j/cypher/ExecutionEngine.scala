@@ -48,7 +48,7 @@ class ExecutionEngine(graph: GraphDatabaseService, logger: StringLogger = String
   protected val compiler = createCompiler()
 
   private val cacheMonitor = kernelMonitors.newMonitor(classOf[StringCacheMonitor])
-  private val cacheAccessor = new MonitoringCacheAccessor[String, (ExecutionPlan, Map[String, Any])](cacheMonitor)
+  private val cacheAccessor = new MonitoringCacheAccessor[String, (ExecutionPlan, LiteralBinding)](cacheMonitor)
 
   @throws(classOf[SyntaxException])
   def profile(query: String): ExecutionResult = profile(query, Map[String, Any]())
@@ -75,8 +75,15 @@ class ExecutionEngine(graph: GraphDatabaseService, logger: StringLogger = String
     plan.execute(graphAPI, txInfo, params ++ extractedParams)
   }
 
+  /**
+   * Plans are cached by the query text with its literals cut out, see [[org.neo4j.cypher.internal.LiftedQuery]], so
+   * that queries which only differ in literals that get lifted into parameters share the same plan. Schema changes
+   * only evict the plans that depend on the changed index or constraint, and plans costed with statistics that have
+   * drifted too far since are planned again.
+   */
   @throws(classOf[SyntaxException])
   private def prepare(query: String): (ExecutionPlan, Map[String, Any], TransactionInfo) = {
+    val liftedQuery = LiftedQuery(query)
     var n = 0
     while (n < ExecutionEngine.PLAN_BUILDING_TRIES) {
       // create transaction and query context
@@ -84,16 +91,29 @@ class ExecutionEngine(graph: GraphDatabaseService, logger: StringLogger = String
       val isTopLevelTx = !txBridge.hasTransaction
       val tx = graph.beginTx()
       val statement = txBridge.instance()
-      val (plan, extractedParameters) = try {
+      val (plan, parameters) = try {
         // fetch plan cache
-        val cache = getOrCreateFromSchemaState(statement, {
+        val cache: LRUCache[String, (ExecutionPlan, LiteralBinding)] = getOrCreateFromSchemaState(statement, {
           cacheMonitor.cacheFlushDetected(statement)
-          new LRUCache[String, (ExecutionPlan, Map[String, Any])](getPlanCacheSize)
+          new SchemaAwareLRUCache[String, (ExecutionPlan, LiteralBinding)](getPlanCacheSize, {
+            case ((plan, _), labelId, propertyKeyId) => plan.dependsOnSchema(labelId, propertyKeyId)
+          })
         })
-        cacheAccessor.getOrElseUpdate(cache)(query, {
+        // Should a query that lifts other literals be cached under the same key, cache this one by its full text
+        val key = cache.get(liftedQuery.key) match {
+          case Some((_, binding)) if !binding.fits(liftedQuery) => query
+          case _                                                 => liftedQuery.key
+        }
+        cache.get(key) match {
+          case Some(stale@(plan, _)) if plan.isStale(statement) => cache.remove(key, stale)
+          case _                                                 =>
+        }
+        val (plan, binding) = cacheAccessor.getOrElseUpdate(cache)(key, {
           touched = true
-          compiler.prepare(query, graph, statement)
+          val (plan, extractedParameters, extractedLiterals, fixedParameters) = compiler.prepare(query, graph, statement)
+          (plan, LiteralBinding(liftedQuery, extractedLiterals, extractedParameters, fixedParameters))
         })
+        (plan, binding.bind(liftedQuery))
       }
       catch {
         case (t: Throwable) =>
@@ -103,7 +123,8 @@ class ExecutionEngine(graph: GraphDatabaseService, logger: StringLogger = String
           throw t
       }
 
-      if (touched) {
+      if (touched || parameters.isEmpty) {
+        // either just planned, or raced with another query of the same key but not the same literals
         statement.close()
         tx.success()
         tx.close()
@@ -112,7 +133,7 @@ class ExecutionEngine(graph: GraphDatabaseService, logger: StringLogger = String
         // close the old statement reference after the statement has been "upgraded"
         // to either a schema data or a schema statement, so that the locks are "handed over".
         statement.close()
-        return (plan, extractedParameters, TransactionInfo(tx, isTopLevelTx, txBridge.instance()))
+        return (plan, parameters.get, TransactionInfo(tx, isTopLevelTx, txBridge.instance()))
       }
 
       n += 1
@@ -22,6 +22,7 @@ package org.neo4j.cypher.internal
 import org.neo4j.cypher._
 import org.neo4j.graphdb.GraphDatabaseService
 import org.neo4j.graphdb.factory.GraphDatabaseSettings
+import org.neo4j.graphdb.config.Setting
 import org.neo4j.kernel.{GraphDatabaseAPI, InternalAbstractGraphDatabase}
 import org.neo4j.cypher.internal.compiler.v2_1.{CypherCompilerFactory => CypherCompilerFactory2_1}
 import org.neo4j.cypher.internal.compiler.v2_0.{CypherCompiler => CypherCompiler2_0}
@@ -35,6 +36,7 @@ import org.neo4j.cypher.internal.spi.v1_9.{GDSBackedQueryContext => QueryContext
 import org.neo4j.cypher.internal.spi.v2_1.{TransactionBoundPlanContext => PlanContext_v2_1}
 import org.neo4j.cypher.internal.spi.v2_0.{TransactionBoundPlanContext => PlanContext_v2_0}
 import org.neo4j.cypher.internal.compiler.v2_1.spi.{ExceptionTranslatingQueryContext => ExceptionTranslatingQueryContext_v2_1}
+import org.neo4j.cypher.internal.compiler.v2_1.spi.{GraphStatistics => GraphStatistics_v2_1}
 import org.neo4j.cypher.internal.compiler.v2_0.spi.{ExceptionTranslatingQueryContext => ExceptionTranslatingQueryContext_v2_0}
 import org.neo4j.kernel.api.{KernelAPI, Statement}
 import org.neo4j.kernel.monitoring.{Monitors=>KernelMonitors}
@@ -51,30 +53,43 @@ class CypherCompiler(graph: GraphDatabaseService,
                      defaultVersion: CypherVersion = CypherVersion.vDefault) {
 
   private val queryCacheSize: Int = getQueryCacheSize
+  private val executionBatchSize: Int = getExecutionBatchSize
+  private val sortBufferSize: Int = getSortBufferSize
+  private val aggregationBufferSize: Int = getAggregationBufferSize
+  private val statisticsDivergenceThreshold: Double = getStatisticsDivergenceThreshold
 
   private val queryCache2_0 = new LRUCache[String, Object](queryCacheSize)
   private val queryCache1_9 = new LRUCache[String, Object](queryCacheSize)
 
-  val compiler2_1 = CypherCompilerFactory2_1.newInstance(graph, queryCacheSize, kernelMonitors)
+  val compiler2_1 = CypherCompilerFactory2_1.newInstance(graph, queryCacheSize, kernelMonitors, executionBatchSize,
+    sortBufferSize, aggregationBufferSize, statisticsDivergenceThreshold)
   val compiler2_0 = new CypherCompiler2_0(graph, (q, f) => queryCache2_0.getOrElseUpdate(q, f))
   val compiler1_9 = new CypherCompiler1_9(graph, (q, f) => queryCache1_9.getOrElseUpdate(q, f))
 
+  /**
+   * @return the plan, the parameters extracted from literals in the query, the offsets in the query of those
+   *         literals that can change without changing the plan, mapped to the names of the parameters they were
+   *         extracted into, and the names of the other extracted parameters.
+   */
   @throws(classOf[SyntaxException])
-  def prepare(query: String, context: GraphDatabaseService, statement: Statement): (ExecutionPlan, Map[String, Any]) = {
+  def prepare(query: String, context: GraphDatabaseService, statement: Statement): (ExecutionPlan, Map[String, Any], Map[Int, String], Set[String]) = {
     val (version, remainingQuery) = versionedQuery(query)
 
     version match {
       case CypherVersion.v2_1 =>
-        val (plan, extractedParameters) = compiler2_1.prepare(remainingQuery, new PlanContext_v2_1(statement, kernelAPI, context))
-        (new ExecutionPlanWrapperForV2_1(plan), extractedParameters)
+        val (plan, extractedParameters, extractedLiterals, fixedParameters) = compiler2_1.prepare(remainingQuery, new PlanContext_v2_1(statement, kernelAPI, context))
+        val versionPrefixLength = query.length - remainingQuery.length
+        val statistics = (current: Statement) => new PlanContext_v2_1(current, kernelAPI, context).statistics
+        (new ExecutionPlanWrapperForV2_1(plan, statistics), extractedParameters,
+          extractedLiterals.map { case (offset, name) => (offset + versionPrefixLength, name) }, fixedParameters)
 
       case CypherVersion.v2_0 =>
         val plan = compiler2_0.prepare(remainingQuery, new PlanContext_v2_0(statement, context))
-        (new ExecutionPlanWrapperForV2_0(plan), Map.empty)
+        (new ExecutionPlanWrapperForV2_0(plan), Map.empty, Map.empty, Set.empty)
 
       case CypherVersion.v1_9 =>
         val plan = compiler1_9.prepare(remainingQuery)
-        (new ExecutionPlanWrapperForV1_9(plan), Map.empty)
+        (new ExecutionPlanWrapperForV1_9(plan), Map.empty, Map.empty, Set.empty)
     }
   }
 
@@ -93,21 +108,34 @@ class CypherCompiler(graph: GraphDatabaseService,
       case _                                                   => (defaultVersion, query)
     }
 
-  private def getQueryCacheSize : Int =
+  private def getQueryCacheSize: Int =
+    optGraphSetting[java.lang.Integer](GraphDatabaseSettings.query_cache_size, CypherCompiler.DEFAULT_QUERY_CACHE_SIZE)
+
+  private def getExecutionBatchSize: Int =
+    optGraphSetting[java.lang.Integer](GraphDatabaseSettings.cypher_execution_batch_size, 0)
+
+  private def getSortBufferSize: Int =
+    optGraphSetting[java.lang.Integer](GraphDatabaseSettings.cypher_sort_buffer_size, 0)
+
+  private def getAggregationBufferSize: Int =
+    optGraphSetting[java.lang.Integer](GraphDatabaseSettings.cypher_aggregation_buffer_size, 0)
+
+  private def getStatisticsDivergenceThreshold: Double =
+    optGraphSetting[java.lang.Double](GraphDatabaseSettings.cypher_plan_statistics_divergence_threshold, 1.0)
+
+  private def optGraphSetting[V](setting: Setting[V], defaultValue: V): V =
     optGraphAs[InternalAbstractGraphDatabase]
-      .andThen(_.getConfig.get(GraphDatabaseSettings.query_cache_size))
-      .andThen({
-      case v: java.lang.Integer => v.intValue()
-      case _                    => CypherCompiler.DEFAULT_QUERY_CACHE_SIZE
-    })
-      .applyOrElse(graph, (_: GraphDatabaseService) => CypherCompiler.DEFAULT_QUERY_CACHE_SIZE)
+      .andThen(g => Option(g.getConfig.get(setting)))
+      .andThen(_.getOrElse(defaultValue))
+      .applyOrElse(graph, (_: GraphDatabaseService) => defaultValue)
 
   private def optGraphAs[T <: GraphDatabaseService : Manifest]: PartialFunction[GraphDatabaseService, T] = {
     case (db: T) => db
   }
 }
 
-class ExecutionPlanWrapperForV2_1(inner: ExecutionPlan_v2_1) extends ExecutionPlan {
+class ExecutionPlanWrapperForV2_1(inner: ExecutionPlan_v2_1, statistics: Statement => GraphStatistics_v2_1)
+  extends ExecutionPlan {
 
   private def queryContext(graph: GraphDatabaseAPI, txInfo: TransactionInfo) = {
     val ctx = new QueryContext_v2_1(graph, txInfo.tx, txInfo.isTopLevelTx, txInfo.statement)
@@ -119,6 +147,10 @@ class ExecutionPlanWrapperForV2_1(inner: ExecutionPlan_v2_1) extends ExecutionPl
 
   def execute(graph: GraphDatabaseAPI, txInfo: TransactionInfo, params: Map[String, Any]) =
     inner.execute(queryContext(graph, txInfo), params)
+
+  def dependsOnSchema(labelId: Int, propertyKeyId: Int) = inner.fingerprint.dependsOnSchema(labelId, propertyKeyId)
+
+  def isStale(statement: Statement) = inner.fingerprint.isStale(statistics(statement))
 }
 
 class ExecutionPlanWrapperForV2_0(inner: ExecutionPlan_v2_0) extends ExecutionPlan {
@@ -133,6 +165,10 @@ class ExecutionPlanWrapperForV2_0(inner: ExecutionPlan_v2_0) extends ExecutionPl
 
   def execute(graph: GraphDatabaseAPI, txInfo: TransactionInfo, params: Map[String, Any]) =
     inner.execute(queryContext(graph, txInfo), params)
+
+  def dependsOnSchema(labelId: Int, propertyKeyId: Int) = true
+
+  def isStale(statement: Statement) = false
 }
 
 class ExecutionPlanWrapperForV1_9(inner: ExecutionPlan_v1_9) extends ExecutionPlan {
@@ -145,5 +181,9 @@ class ExecutionPlanWrapperForV1_9(inner: ExecutionPlan_v1_9) extends ExecutionPl
 
   def execute(graph: GraphDatabaseAPI, txInfo: TransactionInfo, params: Map[String, Any]) =
     inner.execute(queryContext(graph), txInfo.tx, params)
+
+  def dependsOnSchema(labelId: Int, propertyKeyId: Int) = true
+
+  def isStale(statement: Statement) = false
 }
 
@@ -29,4 +29,15 @@ final case class TransactionInfo(tx: Transaction, isTopLevelTx: Boolean, stateme
 trait ExecutionPlan {
   def execute(graph: GraphDatabaseAPI, txInfo: TransactionInfo, params: Map[String, Any]): ExecutionResult
   def profile(graph: GraphDatabaseAPI, txInfo: TransactionInfo, params: Map[String, Any]): ExecutionResult
+
+  /**
+   * @return true if the plan has to be evicted from plan caches when the index or constraint on the given label and
+   *         property key changes.
+   */
+  def dependsOnSchema(labelId: Int, propertyKeyId: Int): Boolean
+
+  /**
+   * @return true if the statistics the plan was costed with have drifted so far that it should be planned again.
+   */
+  def isStale(statement: Statement): Boolean
 }
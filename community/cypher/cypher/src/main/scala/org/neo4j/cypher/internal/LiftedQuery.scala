@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal
+
+import java.lang.Character.{isDigit, isJavaIdentifierPart, isJavaIdentifierStart}
+
+/**
+ * A query text with the literals that could be lifted into parameters cut out of it. Queries which only differ in
+ * such literals get the same key, so that they can share a cached plan. Whether a literal really was lifted into a
+ * parameter is up to the compiler, see [[org.neo4j.cypher.internal.LiteralBinding]].
+ */
+case class LiftedQuery(text: String, key: String, literals: IndexedSeq[LiftedQuery.Literal])
+
+object LiftedQuery {
+
+  sealed abstract class Kind(val marker: Char) {
+    /**
+     * @return the value of the literal text, the way the parser would read it, or None if it can't be read.
+     */
+    def valueOf(text: String): Option[Any]
+  }
+
+  case object StringKind extends Kind('s') {
+    def valueOf(text: String) = Some(text.substring(1, text.length - 1))
+  }
+
+  case object IntegerKind extends Kind('i') {
+    def valueOf(text: String) =
+      try {
+        Some(java.lang.Long.valueOf(text))
+      } catch {
+        case _: NumberFormatException => None
+      }
+  }
+
+  case object DoubleKind extends Kind('d') {
+    def valueOf(text: String) = Some(java.lang.Double.valueOf(text))
+  }
+
+  case object BooleanKind extends Kind('b') {
+    def valueOf(text: String) = Some(java.lang.Boolean.valueOf(text.toLowerCase))
+  }
+
+  /**
+   * A literal starting at offset in the query text.
+   */
+  case class Literal(offset: Int, text: String, kind: Kind) {
+    def value: Option[Any] = kind.valueOf(text)
+
+    def negatedValue: Option[Any] = kind match {
+      case IntegerKind | DoubleKind => kind.valueOf("-" + text)
+      case _                        => None
+    }
+  }
+
+  private val MARKER = '\u0000'
+
+  /**
+   * Splits the query text into literals and the rest. Only literals whose values can be read without knowing more
+   * than their own text are cut out, i.e. no strings with escapes and no numbers with exponents or leading zeros.
+   * Anything else is left in the key as it is, which is always safe since it takes an identical key to share a plan.
+   */
+  def apply(text: String): LiftedQuery = {
+    val key = new java.lang.StringBuilder(text.length)
+    val literals = IndexedSeq.newBuilder[Literal]
+    val length = text.length
+
+    def literal(start: Int, end: Int, kind: Kind) {
+      literals += Literal(start, text.substring(start, end), kind)
+      key.append(MARKER).append(kind.marker)
+    }
+
+    def verbatim(start: Int, end: Int) {
+      key.append(text, start, end)
+    }
+
+    def charAt(i: Int) = if (i < length) text.charAt(i) else MARKER
+
+    var i = 0
+    while (i < length) {
+      val c = text.charAt(i)
+      val start = i
+      if (c == '/' && charAt(i + 1) == '/') {
+        i = text.indexOf('\n', i) match {
+          case -1  => length
+          case end => end
+        }
+        verbatim(start, i)
+      } else if (c == '/' && charAt(i + 1) == '*') {
+        i = text.indexOf("*/", i + 2) match {
+          case -1  => length
+          case end => end + 2
+        }
+        verbatim(start, i)
+      } else if (c == '\'' || c == '"') {
+        i += 1
+        var escaped = false
+        while (i < length && text.charAt(i) != c) {
+          if (text.charAt(i) == '\\') {
+            escaped = true
+            i += 1
+          }
+          i += 1
+        }
+        i = math.min(i + 1, length)
+        if (escaped || i - start < 2 || text.charAt(i - 1) != c)
+          verbatim(start, i)
+        else
+          literal(start, i, StringKind)
+      } else if (c == '`') {
+        i = text.indexOf('`', i + 1) match {
+          case -1  => length
+          case end => end + 1
+        }
+        verbatim(start, i)
+      } else if (isJavaIdentifierStart(c)) {
+        while (i < length && isJavaIdentifierPart(text.charAt(i))) i += 1
+        val word = text.substring(start, i)
+        if (word.equalsIgnoreCase("true") || word.equalsIgnoreCase("false"))
+          literal(start, i, BooleanKind)
+        else
+          verbatim(start, i)
+      } else if (isDigit(c)) {
+        while (isDigit(charAt(i))) i += 1
+        val decimal = charAt(i) == '.' && isDigit(charAt(i + 1))
+        if (decimal) {
+          i += 1
+          while (isDigit(charAt(i))) i += 1
+        }
+        val leadingZero = c == '0' && isDigit(charAt(start + 1))
+        if (leadingZero || isJavaIdentifierPart(charAt(i)) && charAt(i) != MARKER) {
+          // An exponent, or something else the parser will have to make sense of
+          while (i < length && isJavaIdentifierPart(text.charAt(i))) i += 1
+          verbatim(start, i)
+        } else {
+          literal(start, i, if (decimal) DoubleKind else IntegerKind)
+        }
+      } else {
+        i += 1
+        verbatim(start, i)
+      }
+    }
+    LiftedQuery(text, key.toString(), literals.result())
+  }
+}
+
+/**
+ * Tells how to get the parameters for a query from its [[org.neo4j.cypher.internal.LiftedQuery]], for all queries
+ * with the same key as the query the binding was created for. Literals that were lifted into parameters are read
+ * from the query, other literals have to be the same as in the original query.
+ */
+class LiteralBinding private(literals: IndexedSeq[LiteralBinding.Binding], constantParameters: Map[String, Any]) {
+  import LiteralBinding._
+
+  def fits(query: LiftedQuery): Boolean = bind(query).isDefined
+
+  /**
+   * @return the parameters of the query, or None if the query doesn't fit this binding.
+   */
+  def bind(query: LiftedQuery): Option[Map[String, Any]] = {
+    if (query.literals.size != literals.size)
+      return None
+
+    var parameters = constantParameters
+    var i = 0
+    while (i < literals.size) {
+      val literal = query.literals(i)
+      literals(i) match {
+        case Fixed(text) =>
+          if (literal.text != text)
+            return None
+        case Lifted(name, negated, kind) =>
+          val value = if (negated) literal.negatedValue else literal.value
+          if (literal.kind != kind || value.isEmpty)
+            return None
+          parameters += name -> value.get
+      }
+      i += 1
+    }
+    Some(parameters)
+  }
+}
+
+object LiteralBinding {
+  private sealed trait Binding
+  private case class Fixed(text: String) extends Binding
+  private case class Lifted(name: String, negated: Boolean, kind: LiftedQuery.Kind) extends Binding
+
+  /**
+   * Matches the literals the compiler extracted parameters from with the literals of the query text. Should any of
+   * the extracted parameters not match a literal, e.g. because the compiler folded it from an expression, the
+   * binding only fits the exact same query.
+   *
+   * @param extractedLiterals offsets of the literals in the query text that parameters were extracted from and that
+   *                          can change without changing the plan, mapped to the names of those parameters.
+   * @param extractedParameters the parameters extracted from the query, by name.
+   * @param fixedParameters the names of extracted parameters whose literals have to stay as they are, such as the
+   *                        ones that are part of a column name. These are bound to the values extracted from this
+   *                        query, and the literals they came from have to be the same in other queries.
+   */
+  def apply(query: LiftedQuery, extractedLiterals: Map[Int, String], extractedParameters: Map[String, Any],
+            fixedParameters: Set[String] = Set.empty): LiteralBinding = {
+    def same(value: Option[Any], extracted: Option[Any]) = (value, extracted) match {
+      case (Some(v), Some(e)) => v.getClass == e.getClass && v == e
+      case _                  => false
+    }
+
+    val literals: IndexedSeq[Binding] = query.literals.map {
+      literal =>
+        val name = extractedLiterals.get(literal.offset)
+        lazy val negatedName = extractedLiterals.get(literal.offset - 1)
+        if (name.isDefined && same(literal.value, extractedParameters.get(name.get)))
+          Lifted(name.get, negated = false, literal.kind)
+        else if (literal.offset > 0 && query.text.charAt(literal.offset - 1) == '-' && negatedName.isDefined &&
+                 same(literal.negatedValue, extractedParameters.get(negatedName.get)))
+          Lifted(negatedName.get, negated = true, literal.kind)
+        else
+          Fixed(literal.text)
+    }
+
+    val liftedNames = literals.collect { case Lifted(name, _, _) => name }.toSet
+    if (liftedNames ++ fixedParameters == extractedParameters.keySet && (liftedNames & fixedParameters).isEmpty)
+      new LiteralBinding(literals, extractedParameters.filterKeys(fixedParameters).toMap)
+    else
+      new LiteralBinding(query.literals.map(literal => Fixed(literal.text)), extractedParameters)
+  }
+}
@@ -22,6 +22,7 @@ package org.neo4j.cypher.internal.spi.v2_1
 import org.neo4j.cypher.internal.compiler.v2_1.spi.GraphStatistics
 import org.neo4j.cypher.internal.compiler.v2_1.{RelTypeId, LabelId}
 import org.neo4j.graphdb.Direction
+import org.neo4j.kernel.api.heuristics.DegreeDistribution
 
 class HardcodedGraphStatistics extends GraphStatistics
 {
@@ -31,6 +32,19 @@ class HardcodedGraphStatistics extends GraphStatistics
   val RELATIONSHIPS_WITH_TYPE_SELECTIVITY: Double = 0.2
   val DEGREE_BY_RELATIONSHIP_TYPE_AND_DIRECTION: Double = 5.0
   val DEGREE_BY_LABEL_RELATIONSHIP_TYPE_AND_DIRECTION: Double = 5.0
+  val DEGREE_DISTRIBUTION: DegreeDistribution = new DegreeDistribution {
+    def count(): Long = NODES_CARDINALITY.toLong
+    def mean(): Double = DEGREE_BY_RELATIONSHIP_TYPE_AND_DIRECTION
+    def max(): Long = DEGREE_BY_RELATIONSHIP_TYPE_AND_DIRECTION.toLong
+    def percentile(fraction: Double): Long = DEGREE_BY_RELATIONSHIP_TYPE_AND_DIRECTION.toLong
+  }
+
+  def degreeDistributionByLabelRelationshipTypeAndDirection(labelId: LabelId, relTypeId: RelTypeId,
+                                                            direction: Direction): DegreeDistribution =
+    DEGREE_DISTRIBUTION
+
+  def degreeDistributionByRelationshipTypeAndDirection(relTypeId: RelTypeId, direction: Direction): DegreeDistribution =
+    DEGREE_DISTRIBUTION
 
   def degreeByLabelRelationshipTypeAndDirection(labelId: LabelId, relTypeId: RelTypeId,
                                                          direction: Direction): Double =
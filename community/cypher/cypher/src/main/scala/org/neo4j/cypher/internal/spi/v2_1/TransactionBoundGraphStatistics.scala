@@ -22,7 +22,7 @@ package org.neo4j.cypher.internal.spi.v2_1
 import org.neo4j.cypher.internal.compiler.v2_1.spi.GraphStatistics
 import org.neo4j.cypher.internal.compiler.v2_1.{RelTypeId, LabelId}
 import org.neo4j.graphdb.Direction
-import org.neo4j.kernel.api.heuristics.StatisticsData
+import org.neo4j.kernel.api.heuristics.{DegreeDistribution, StatisticsData}
 
 class TransactionBoundGraphStatistics(statistics: StatisticsData) extends GraphStatistics {
 
@@ -35,11 +35,18 @@ class TransactionBoundGraphStatistics(statistics: StatisticsData) extends GraphS
   def nodesWithLabelSelectivity(labelId: LabelId): Double =
     statistics.labelDistribution( labelId.id )
 
-  def relationshipsWithTypeSelectivity(relTypeId: RelTypeId): Double = ???
+  def relationshipsWithTypeSelectivity(relTypeId: RelTypeId): Double =
+    statistics.relationshipTypeDistribution( relTypeId.id )
 
   def degreeByRelationshipTypeAndDirection(relTypeId: RelTypeId, direction: Direction): Double =
     statistics.degree( StatisticsData.RELATIONSHIP_DEGREE_FOR_NODE_WITHOUT_LABEL, relTypeId.id, direction )
 
   def degreeByLabelRelationshipTypeAndDirection(labelId: LabelId, relTypeId: RelTypeId, direction: Direction): Double =
     statistics.degree( labelId.id, relTypeId.id, direction )
+
+  def degreeDistributionByRelationshipTypeAndDirection(relTypeId: RelTypeId, direction: Direction): DegreeDistribution =
+    statistics.degreeDistribution( StatisticsData.RELATIONSHIP_DEGREE_FOR_NODE_WITHOUT_LABEL, relTypeId.id, direction )
+
+  def degreeDistributionByLabelRelationshipTypeAndDirection(labelId: LabelId, relTypeId: RelTypeId, direction: Direction): DegreeDistribution =
+    statistics.degreeDistribution( labelId.id, relTypeId.id, direction )
 }
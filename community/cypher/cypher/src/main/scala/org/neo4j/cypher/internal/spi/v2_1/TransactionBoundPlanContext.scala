@@ -28,6 +28,7 @@ import org.neo4j.kernel.api.{KernelAPI, Statement}
 import org.neo4j.kernel.api.exceptions.schema.SchemaRuleNotFoundException
 import org.neo4j.cypher.internal.compiler.v2_1.spi.{GraphStatistics, PlanContext}
 import org.neo4j.kernel.{GraphDatabaseAPI, InternalAbstractGraphDatabase}
+import org.neo4j.kernel.InternalAbstractGraphDatabase.Configuration
 import collection.JavaConverters._
 
 class TransactionBoundPlanContext(statement: Statement, kernelAPI: KernelAPI, gdb: GraphDatabaseService)
@@ -92,5 +93,10 @@ class TransactionBoundPlanContext(statement: Statement, kernelAPI: KernelAPI, gd
     statement.readOperations().schemaStateGetOrCreate(key, javaCreator)
   }
 
-  def statistics: GraphStatistics = new HardcodedGraphStatistics
+  def statistics: GraphStatistics = gdb match {
+    case db: InternalAbstractGraphDatabase if db.getConfig.get(Configuration.statistics_enabled) =>
+      new TransactionBoundGraphStatistics(kernelAPI.heuristics())
+    case _ =>
+      new HardcodedGraphStatistics
+  }
 }
@@ -32,7 +32,7 @@ import org.neo4j.cypher.{FailedIndexException, EntityNotFoundException}
 import org.neo4j.tooling.GlobalGraphOperations
 import org.neo4j.kernel.api.constraints.UniquenessConstraint
 import org.neo4j.kernel.api.exceptions.schema.{AlreadyConstrainedException, AlreadyIndexedException}
-import org.neo4j.kernel.api.index.{IndexDescriptor, InternalIndexState}
+import org.neo4j.kernel.api.index.{IndexOrder, IndexSeek, IndexDescriptor, InternalIndexState}
 import org.neo4j.helpers.collection.IteratorUtil
 import org.neo4j.cypher.internal.compiler.v2_1.spi._
 import org.neo4j.collection.primitive.PrimitiveLongIterator
@@ -113,9 +113,21 @@ class TransactionBoundQueryContext(graph: GraphDatabaseAPI,
     case _     => node.getRelationships(dir, types.map(withName): _*).iterator().asScala
   }
 
+  def getRelationshipIdsFor(node: Long, dir: Direction, types: Seq[Int]): PrimitiveLongIterator = types match {
+    case Seq() => statement.readOperations().nodeGetRelationships(node, dir)
+    case _     => statement.readOperations().nodeGetRelationships(node, dir, types: _*)
+  }
+
+  def relationshipVisit(relationshipId: Long, visitor: RelationshipVisitor) {
+    statement.readOperations().relationshipVisit(relationshipId, visitor)
+  }
+
   def exactIndexSearch(index: IndexDescriptor, value: Any) =
     mapToScala(statement.readOperations().nodesGetFromIndexLookup(index, value))(nodeOps.getById)
 
+  def rangeIndexSearch(index: IndexDescriptor, seek: IndexSeek) =
+    mapToScala(statement.readOperations().nodesGetFromIndexSeek(index, seek, IndexOrder.NONE))(nodeOps.getById)
+
   def exactUniqueIndexSearch(index: IndexDescriptor, value: Any): Option[Node] = {
     val nodeId: Long = statement.readOperations().nodeGetUniqueFromIndexLookup(index, value)
     if (StatementConstants.NO_SUCH_NODE == nodeId) None else Some(nodeOps.getById(nodeId))
@@ -64,18 +64,122 @@ class CypherCompilerStringCacheMonitoringAcceptanceTest extends ExecutionEngineF
     counter.counts should equal(CacheCounts(hits = 2, misses = 1, flushes = 1))
   }
 
-  test("should monitor cache flushes") {
+  test("should evict plans depending on a changed constraint") {
     // given
     val counter = new CacheCounter()
     kernelMonitors.addMonitorListener(counter)
 
     // when
-    execute("return 42").toList
+    execute("match (n:Person) where n.id = 42 return n").toList
     execute("create constraint on (n:Person) assert n.id is unique").toList
-    execute("return 42").toList
+    execute("match (n:Person) where n.id = 42 return n").toList
 
     // then
-    counter.counts should equal(CacheCounts(hits = 3, misses = 3, flushes = 2))
+    counter.counts should equal(CacheCounts(hits = 3, misses = 3, flushes = 1))
   }
-}
 
+  test("should keep plans not depending on a changed constraint") {
+    // given
+    createLabeledNode(Map("name" -> "Bob"), "Animal")
+    val counter = new CacheCounter()
+    kernelMonitors.addMonitorListener(counter)
+
+    // when
+    execute("match (n:Animal) where n.name = 'Bob' return n").toList
+    execute("create constraint on (n:Person) assert n.id is unique").toList
+    execute("match (n:Animal) where n.name = 'Bob' return n").toList
+
+    // then
+    counter.counts should equal(CacheCounts(hits = 3, misses = 2, flushes = 1))
+  }
+
+  test("should evict plans depending on a dropped index") {
+    // given
+    execute("create index on :Person(id)").toList
+    graph.inTx {
+      graph.schema().awaitIndexesOnline(10, java.util.concurrent.TimeUnit.SECONDS)
+    }
+    val counter = new CacheCounter()
+    kernelMonitors.addMonitorListener(counter)
+
+    // when
+    execute("match (n:Person) where n.id = 42 return n").toList
+    execute("drop index on :Person(id)").toList
+    execute("match (n:Person) where n.id = 42 return n").toList
+
+    // then
+    counter.counts should equal(CacheCounts(hits = 3, misses = 3, flushes = 0))
+  }
+
+  test("should share plans between queries differing only in literals") {
+    // given
+    val counter = new CacheCounter()
+    kernelMonitors.addMonitorListener(counter)
+
+    // when
+    val first = execute("match (n:User {id: 123}) return n.name").toList
+    val second = execute("match (n:User {id: 124}) return n.name").toList
+
+    // then
+    counter.counts should equal(CacheCounts(hits = 2, misses = 1, flushes = 1))
+    first should equal(List())
+    second should equal(List())
+  }
+
+  test("should give each query the values of its own literals") {
+    // given
+    createLabeledNode(Map("id" -> 123, "name" -> "Bob"), "User")
+    createLabeledNode(Map("id" -> 124, "name" -> "Alice"), "User")
+
+    // when
+    val first = execute("match (n:User {id: 123}) return n.name").toList
+    val second = execute("match (n:User {id: 124}) return n.name").toList
+
+    // then
+    first should equal(List(Map("n.name" -> "Bob")))
+    second should equal(List(Map("n.name" -> "Alice")))
+  }
+
+  test("should not share plans between queries differing in literals that are not lifted") {
+    // given
+    val counter = new CacheCounter()
+    kernelMonitors.addMonitorListener(counter)
+
+    // when
+    execute("match (n)-[*1..2]->(m) return count(*)").toList
+    execute("match (n)-[*1..3]->(m) return count(*)").toList
+
+    // then
+    counter.counts should equal(CacheCounts(hits = 2, misses = 2, flushes = 1))
+  }
+
+  test("should name columns after the literals of each query") {
+    // when
+    val first = execute("cypher 2.1 return 1")
+    val second = execute("cypher 2.1 return 2")
+    val third = execute("cypher 2.1 return 'foo' = 'foo'")
+    val fourth = execute("cypher 2.1 return 'bar' = 'foo'")
+
+    // then
+    first.columns should equal(List("1"))
+    second.columns should equal(List("2"))
+    second.toList should equal(List(Map("2" -> 2)))
+    third.columns should equal(List("'foo' = 'foo'"))
+    fourth.columns should equal(List("'bar' = 'foo'"))
+    fourth.toList should equal(List(Map("'bar' = 'foo'" -> false)))
+  }
+
+  test("should share plans between queries differing only in literals outside of column names") {
+    // given
+    val counter = new CacheCounter()
+    kernelMonitors.addMonitorListener(counter)
+
+    // when
+    val first = execute("cypher 2.1 match (n:User {id: 123}) return n.name, 1")
+    val second = execute("cypher 2.1 match (n:User {id: 124}) return n.name, 1")
+
+    // then
+    counter.counts should equal(CacheCounts(hits = 2, misses = 1, flushes = 1))
+    second.columns should equal(first.columns)
+  }
+}
@@ -373,6 +373,20 @@ class MatchAcceptanceTest extends ExecutionEngineFunSuite with QueryStatisticsTe
       )
   }
 
+  test("should only follow relationships matching an ALL predicate over a var length relationship") {
+    createNodes("A", "B", "C", "D")
+    relate(node("A"), node("B"), "KNOWS", Map("since" -> 2001))
+    relate(node("B"), node("C"), "KNOWS", Map("since" -> 1999))
+    relate(node("A"), node("D"), "KNOWS", Map("since" -> 2005))
+    relate(node("D"), node("C"), "KNOWS", Map("since" -> 2010))
+
+    val result = executeWithNewPlanner("match (a {name:'A'})-[r:KNOWS*]->x where all(k in r where k.since > 2000) return x")
+
+    val endNodes = result.toList.map(_("x"))
+    endNodes.toSet should equal(Set(node("B"), node("C"), node("D")))
+    endNodes.size should equal(3)
+  }
+
   test("should return a var length path without minimal length") {
     createNodes("A", "B", "C")
     val r1 = relate("A" -> "KNOWS" -> "B")
@@ -20,6 +20,9 @@
 package org.neo4j.cypher
 
 import org.neo4j.cypher.internal.commons.CustomMatchers
+import org.neo4j.graphdb.Node
+import org.neo4j.graphdb.factory.GraphDatabaseSettings
+import org.neo4j.test.TestGraphDatabaseFactory
 
 class OrderByAcceptanceTest extends ExecutionEngineFunSuite with CustomMatchers with NewPlannerTestSupport {
   test("should support ORDER BY") {
@@ -45,4 +48,25 @@ class OrderByAcceptanceTest extends ExecutionEngineFunSuite with CustomMatchers
       Map("prop" -> -5)
     ))
   }
+
+  test("should ORDER BY over more rows than fit in the sort buffer") {
+    val db = new TestGraphDatabaseFactory()
+      .newImpermanentDatabaseBuilder()
+      .setConfig(GraphDatabaseSettings.cypher_sort_buffer_size, "3")
+      .newGraphDatabase()
+    try {
+      val engine = new ExecutionEngine(db)
+      engine.execute("FOREACH (x IN [4, 2, 7, 1, 9, 3, 8] | CREATE ({prop: x}))")
+
+      val ids = engine.execute("MATCH (n) RETURN n.prop AS prop, id(n) AS id").toList
+        .map(row => row("prop") -> row("id")).toMap
+
+      val result = engine.execute("MATCH (n) RETURN n, n.prop AS prop ORDER BY n.prop DESC")
+
+      result.toList.map(row => (row("prop"), row("n").asInstanceOf[Node].getId)) should
+        equal(List(9, 8, 7, 4, 3, 2, 1).map(x => (x, ids(x))))
+    } finally {
+      db.shutdown()
+    }
+  }
 }
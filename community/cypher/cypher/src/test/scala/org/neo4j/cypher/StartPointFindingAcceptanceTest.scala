@@ -150,5 +150,27 @@ class StartPointFindingAcceptanceTest extends ExecutionEngineFunSuite with NewPl
     val node = createLabeledNode(Map("prop" -> 42), "Person")
     executeScalarWithNewPlanner[Node](s"match (n:Person {prop: 42}) return n") should equal(node)
   }
-}
 
+  test("Seek index range with comparisons given in where") {
+    graph.createIndex("Person", "prop")
+    createLabeledNode(Map("prop" -> 10), "Person")
+    val node = createLabeledNode(Map("prop" -> 42), "Person")
+    createLabeledNode(Map("prop" -> 50), "Person")
+    createLabeledNode(Map("prop" -> "45"), "Person")
+
+    val result = executeWithNewPlanner(s"match (n:Person) where n.prop > 10 and 50 > n.prop return n")
+    result.columnAs[Node]("n").toList should equal(List(node))
+    result.executionPlanDescription().toString should include("NodeIndexRangeSeek")
+  }
+
+  test("Seek index prefix with regular expression given in where") {
+    graph.createIndex("Person", "name")
+    createLabeledNode(Map("name" -> "Bob"), "Person")
+    val node = createLabeledNode(Map("name" -> "Andres"), "Person")
+    createLabeledNode(Map("name" -> "And\nres"), "Person")
+
+    val result = executeWithNewPlanner(s"match (n:Person) where n.name =~ 'And.*' return n")
+    result.columnAs[Node]("n").toList should equal(List(node))
+    result.executionPlanDescription().toString should include("NodeIndexRangeSeek")
+  }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal
+
+import org.neo4j.cypher.internal.commons.CypherFunSuite
+
+class LiftedQueryTest extends CypherFunSuite {
+
+  test("queries differing only in literals have the same key") {
+    val first = LiftedQuery("MATCH (n:User {id: 123, name: 'Bob'}) RETURN n")
+    val second = LiftedQuery("MATCH (n:User {id: 124, name: \"Alice\"}) RETURN n")
+
+    first.key should equal(second.key)
+    first.literals.map(_.value.get) should equal(Seq(123L, "Bob"))
+    second.literals.map(_.value.get) should equal(Seq(124L, "Alice"))
+  }
+
+  test("queries differing in literals of different kinds have different keys") {
+    LiftedQuery("RETURN 1").key should not equal LiftedQuery("RETURN 1.0").key
+    LiftedQuery("RETURN 1").key should not equal LiftedQuery("RETURN '1'").key
+    LiftedQuery("RETURN true").key should equal(LiftedQuery("RETURN FALSE").key)
+  }
+
+  test("leaves out what isn't a literal") {
+    val query = LiftedQuery("MATCH (n1)-[:`KNOWS 2`*1..3]->(m) /* 'a' 5 */ WHERE n1.x = {0} // 7\nRETURN m")
+
+    query.literals.map(_.text) should equal(Seq("1", "3", "0"))
+  }
+
+  test("leaves strings with escapes and numbers with exponents or leading zeros in the key") {
+    val query = LiftedQuery("RETURN 'it\\'s', 1E3, 007, 2")
+
+    query.literals.map(_.text) should equal(Seq("2"))
+    query.key should include("'it\\'s', 1E3, 007")
+  }
+
+  test("binds lifted literals and requires other literals to be the same") {
+    val query = LiftedQuery("MATCH (n {id: 123})-[*1..2]->(m) RETURN m LIMIT 10")
+    val binding = LiteralBinding(query, Map(14 -> "  AUTOINT0", 48 -> "  AUTOINT1"),
+      Map("  AUTOINT0" -> 123L, "  AUTOINT1" -> 10L))
+
+    binding.bind(LiftedQuery("MATCH (n {id: 7})-[*1..2]->(m) RETURN m LIMIT 5")) should equal(
+      Some(Map("  AUTOINT0" -> 7L, "  AUTOINT1" -> 5L)))
+    binding.bind(LiftedQuery("MATCH (n {id: 7})-[*1..5]->(m) RETURN m LIMIT 5")) should equal(None)
+  }
+
+  test("binds negative numbers read together with their sign") {
+    val query = LiftedQuery("RETURN -5")
+    val binding = LiteralBinding(query, Map(7 -> "  AUTOINT0"), Map("  AUTOINT0" -> -5L))
+
+    binding.bind(LiftedQuery("RETURN -42")) should equal(Some(Map("  AUTOINT0" -> -42L)))
+  }
+
+  test("only fits the same query if not all extracted parameters can be found in the text") {
+    val query = LiftedQuery("RETURN 1 + 2")
+    val binding = LiteralBinding(query, Map(7 -> "  AUTOINT0"), Map("  AUTOINT0" -> 3L))
+
+    binding.bind(query) should equal(Some(Map("  AUTOINT0" -> 3L)))
+    binding.bind(LiftedQuery("RETURN 2 + 2")) should equal(None)
+  }
+
+  test("binds fixed parameters to their extracted values and requires their literals to be the same") {
+    val query = LiftedQuery("MATCH (n {id: 1}) RETURN n.x + 2")
+    val binding = LiteralBinding(query, Map(14 -> "  AUTOINT0"), Map("  AUTOINT0" -> 1L, "  AUTOINT1" -> 2L),
+      Set("  AUTOINT1"))
+
+    binding.bind(LiftedQuery("MATCH (n {id: 7}) RETURN n.x + 2")) should equal(
+      Some(Map("  AUTOINT0" -> 7L, "  AUTOINT1" -> 2L)))
+    binding.bind(LiftedQuery("MATCH (n {id: 7}) RETURN n.x + 3")) should equal(None)
+  }
+}
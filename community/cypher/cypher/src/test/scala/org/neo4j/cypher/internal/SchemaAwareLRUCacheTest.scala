@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal
+
+import org.scalatest.Assertions
+import org.junit.Test
+import org.junit.Assert._
+
+class SchemaAwareLRUCacheTest extends Assertions {
+  // values are the label ids they depend on
+  def newCache = new SchemaAwareLRUCache[String, Int](5, (label, labelId, _) => label == labelId)
+
+  @Test def shouldOnlyEvictValuesDependingOnChangedSchema() {
+    val cache = newCache
+    cache.getOrElseUpdate("a", 1)
+    cache.getOrElseUpdate("b", 2)
+
+    cache.schemaChanged(1, 7)
+
+    assertFalse(cache.containsKey("a"))
+    assert(cache.get("b") === Some(2))
+  }
+
+  @Test def shouldNotCacheValueCreatedWhileSchemaChanged() {
+    val cache = newCache
+
+    val value = cache.getOrElseUpdate("a", {
+      // the schema changes after the value has started being created against the old schema
+      cache.schemaChanged(1, 7)
+      1
+    })
+
+    assert(value === 1)
+    assertFalse(cache.containsKey("a"))
+    assert(cache.getOrElseUpdate("a", 1) === 1)
+    assert(cache.get("a") === Some(1))
+  }
+}
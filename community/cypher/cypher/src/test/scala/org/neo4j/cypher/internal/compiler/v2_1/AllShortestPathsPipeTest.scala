@@ -23,7 +23,7 @@ import commands.{SingleNode, ShortestPath}
 import org.neo4j.cypher.internal.compiler.v2_1.pipes.{PipeMonitor, ShortestPathPipe, FakePipe}
 import symbols._
 import org.neo4j.graphdb.{Direction, Node, Path}
-import org.junit.Test
+import org.junit.{After, Test}
 import org.scalatest.Assertions
 import collection.mutable.Map
 import org.neo4j.cypher.GraphDatabaseJUnitSuite
@@ -37,7 +37,20 @@ class AllShortestPathsPipeTest extends GraphDatabaseJUnitSuite {
 
     val pipe = new ShortestPathPipe(source, ShortestPath("p", SingleNode("a"), SingleNode("b"), Seq(), Direction.BOTH,
       Some(15), single = false, relIterator = None))
-    graph.inTx(pipe.createResults(QueryStateHelper.empty).toList.map(m => m("p").asInstanceOf[Path]))
+    pipe.createResults(queryState).toList.map(m => m("p").asInstanceOf[Path])
+  }
+
+  var tx : org.neo4j.graphdb.Transaction = null
+
+  private def queryState = {
+    if(tx == null) tx = graph.beginTx()
+    QueryStateHelper.queryStateFrom(graph, tx)
+  }
+
+  @After
+  def cleanup()
+  {
+    if(tx != null) tx.close()
   }
 
   @Test def shouldReturnTheShortestPathBetweenTwoNodes() {
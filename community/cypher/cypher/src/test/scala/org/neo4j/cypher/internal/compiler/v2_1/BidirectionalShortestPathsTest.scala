@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.internal.compiler.v2_1
+
+import org.neo4j.cypher.GraphDatabaseJUnitSuite
+import org.neo4j.cypher.internal.compiler.v2_1.pipes.BidirectionalShortestPaths
+import org.neo4j.graphdb.{DynamicRelationshipType, Direction, Node, Path}
+import org.junit.{After, Test}
+import scala.collection.JavaConverters._
+
+class BidirectionalShortestPathsTest extends GraphDatabaseJUnitSuite {
+
+  @Test def shouldFindAllShortestPaths() {
+    val (a, _, _, d) = createDiamond()
+    relate(a, createNode("e"), createNode("f"), d)
+
+    val paths = find(a, d, Direction.OUTGOING, findAll = true)
+
+    assert(paths.size === 2)
+    paths.foreach { path =>
+      assert(path.length() === 2)
+      assert(path.startNode() === a)
+      assert(path.endNode() === d)
+    }
+    assert(paths.map(_.nodes().asScala.toList(1)).toSet.size === 2)
+  }
+
+  @Test def shouldFindASingleShortestPath() {
+    val (a, _, _, d) = createDiamond()
+
+    val paths = find(a, d, Direction.OUTGOING, findAll = false)
+
+    assert(paths.size === 1)
+    assert(paths.head.length() === 2)
+  }
+
+  @Test def shouldOnlyFollowRelationshipsInTheGivenDirection() {
+    val (a, _, _, d) = createDiamond()
+
+    assert(find(d, a, Direction.OUTGOING, findAll = true) === Seq.empty)
+    assert(find(d, a, Direction.INCOMING, findAll = true).size === 2)
+    assert(find(d, a, Direction.BOTH, findAll = true).size === 2)
+  }
+
+  @Test def shouldOnlyFollowRelationshipsOfTheGivenTypes() {
+    val a = createNode("a")
+    val b = createNode("b")
+    val c = createNode("c")
+    relate(a, b, "X")
+    relate(b, c, "X")
+    relate(a, c, "Y")
+
+    assert(find(a, c, Direction.OUTGOING, findAll = true).map(_.length()) === Seq(1))
+    assert(find(a, c, Direction.OUTGOING, findAll = true, types = Seq("X")).map(_.length()) === Seq(2))
+    assert(find(a, c, Direction.OUTGOING, findAll = true, types = Seq("X", "Y")).map(_.length()) === Seq(1))
+  }
+
+  @Test def shouldNotFindPathsLongerThanTheMaximumDepth() {
+    val a = createNode("a")
+    val d = createNode("d")
+    relate(a, createNode("b"), createNode("c"), d)
+
+    assert(find(a, d, Direction.BOTH, findAll = false, maxDepth = 2) === Seq.empty)
+    assert(find(a, d, Direction.BOTH, findAll = false, maxDepth = 3).map(_.length()) === Seq(3))
+  }
+
+  @Test def shouldReturnASingleNodePathBetweenANodeAndItself() {
+    val a = createNode("a")
+    relate(a, a)
+
+    val paths = find(a, a, Direction.BOTH, findAll = true)
+
+    assert(paths.map(_.length()) === Seq(0))
+    assert(paths.head.startNode() === a)
+  }
+
+  @Test def shouldSeeRelationshipsCreatedInTheCurrentTransaction() {
+    val a = createNode("a")
+    val b = createNode("b")
+    val state = queryState
+
+    val relationship = a.createRelationshipTo(b, DynamicRelationshipType.withName("REL"))
+
+    val paths = new BidirectionalShortestPaths(state.query, Direction.OUTGOING, Seq.empty, 15, findAll = false)
+      .find(a.getId, b.getId)
+    assert(paths.map(_.lastRelationship()) === Seq(relationship))
+  }
+
+  private def find(start: Node, end: Node, dir: Direction, findAll: Boolean,
+                   types: Seq[String] = Seq.empty, maxDepth: Int = 15): Seq[Path] = {
+    val state = queryState
+    val typeIds = types.map(state.query.getRelTypeId)
+    new BidirectionalShortestPaths(state.query, dir, typeIds, maxDepth, findAll).find(start.getId, end.getId)
+  }
+
+  var tx : org.neo4j.graphdb.Transaction = null
+
+  private def queryState = {
+    if(tx == null) tx = graph.beginTx()
+    QueryStateHelper.queryStateFrom(graph, tx)
+  }
+
+  @After
+  def cleanup()
+  {
+    if(tx != null) tx.close()
+  }
+}
@@ -23,6 +23,8 @@ import org.neo4j.cypher.internal.commons.CypherFunSuite
 import org.neo4j.cypher.internal.compiler.v2_1.ast.Statement
 import org.neo4j.cypher.internal.compiler.v2_1.executionplan.ExecutionPlan
 import org.neo4j.cypher.GraphDatabaseTestSupport
+import org.neo4j.cypher.internal.compiler.v2_1.spi.{DelegatingPlanContext, GraphStatistics}
+import org.neo4j.cypher.internal.spi.v2_1.HardcodedGraphStatistics
 
 class CypherCompilerAstCacheAcceptanceTest extends CypherFunSuite with GraphDatabaseTestSupport {
 
@@ -63,7 +65,19 @@ class CypherCompilerAstCacheAcceptanceTest extends CypherFunSuite with GraphData
     counter.counts should equal(CacheCounts(hits = 1, misses = 1, flushes = 1))
   }
 
-  test("should monitor cache flushes") {
+  test("should evict plans depending on a changed constraint") {
+    val compiler = newCurrentCompiler.compiler2_1
+    val counter = new CacheCounter()
+    compiler.monitors.addMonitorListener(counter)
+
+    graph.inTx { compiler.prepare("match (n:Person) where n.id = 42 return n", planContext) }
+    graph.createConstraint("Person", "id")
+    graph.inTx { compiler.prepare("match (n:Person) where n.id = 42 return n", planContext) }
+
+    counter.counts should equal(CacheCounts(hits = 0, misses = 2, flushes = 1))
+  }
+
+  test("should keep plans not depending on a changed constraint") {
     val compiler = newCurrentCompiler.compiler2_1
     val counter = new CacheCounter()
     compiler.monitors.addMonitorListener(counter)
@@ -72,6 +86,30 @@ class CypherCompilerAstCacheAcceptanceTest extends CypherFunSuite with GraphData
     graph.createConstraint("Person", "id")
     graph.inTx { compiler.prepare("return 42", planContext) }
 
-    counter.counts should equal(CacheCounts(hits = 0, misses = 2, flushes = 2))
+    counter.counts should equal(CacheCounts(hits = 1, misses = 1, flushes = 1))
+  }
+
+  test("should plan again when the statistics have drifted") {
+    val compiler = newCurrentCompiler.compiler2_1
+    val counter = new CacheCounter()
+    compiler.monitors.addMonitorListener(counter)
+    val statistics = new HardcodedGraphStatistics
+    createLabeledNode("Person")
+
+    graph.inTx { compiler.prepare("match (n:Person) return n", contextWith(statistics)) }
+    graph.inTx { compiler.prepare("match (n:Person) return n", contextWith(new HardcodedGraphStatistics {
+      override val NODES_WITH_LABEL_SELECTIVITY = statistics.NODES_WITH_LABEL_SELECTIVITY * 1.1
+      override val NODES_WITH_LABEL_CARDINALITY = statistics.NODES_WITH_LABEL_CARDINALITY * 1.1
+    })) }
+    graph.inTx { compiler.prepare("match (n:Person) return n", contextWith(new HardcodedGraphStatistics {
+      override val NODES_WITH_LABEL_SELECTIVITY = statistics.NODES_WITH_LABEL_SELECTIVITY * 10
+      override val NODES_WITH_LABEL_CARDINALITY = statistics.NODES_WITH_LABEL_CARDINALITY * 10
+    })) }
+
+    counter.counts should equal(CacheCounts(hits = 1, misses = 2, flushes = 1))
+  }
+
+  private def contextWith(graphStatistics: GraphStatistics) = new DelegatingPlanContext(planContext) {
+    override def statistics = graphStatistics
   }
 }
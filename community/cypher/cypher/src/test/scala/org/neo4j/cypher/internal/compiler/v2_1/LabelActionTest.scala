@@ -27,7 +27,8 @@ import org.neo4j.cypher.GraphDatabaseJUnitSuite
 import org.neo4j.cypher.internal.compiler.v2_1.commands.{LabelSetOp, LabelAction}
 import org.neo4j.cypher.internal.compiler.v2_1.commands.expressions.Literal
 import org.neo4j.cypher.internal.compiler.v2_1.commands.values.{TokenType, KeyToken}
-import org.neo4j.kernel.api.index.IndexDescriptor
+import org.neo4j.kernel.api.index.{IndexSeek, IndexDescriptor}
+import org.neo4j.kernel.api.RelationshipVisitor
 
 class LabelActionTest extends GraphDatabaseJUnitSuite {
   val queryContext = new SnitchingQueryContext
@@ -101,6 +102,10 @@ class SnitchingQueryContext extends QueryContext {
 
   def getRelationshipsFor(node: Node, dir: Direction, types: Seq[String]) = ???
 
+  def getRelationshipIdsFor(node: Long, dir: Direction, types: Seq[Int]) = ???
+
+  def relationshipVisit(relationshipId: Long, visitor: RelationshipVisitor) = ???
+
   def nodeOps = ???
 
   def relationshipOps = ???
@@ -121,6 +126,8 @@ class SnitchingQueryContext extends QueryContext {
 
   def exactIndexSearch(index: IndexDescriptor, value: Any): Iterator[Node] = ???
 
+  def rangeIndexSearch(index: IndexDescriptor, seek: IndexSeek): Iterator[Node] = ???
+
   def getNodesByLabel(id: Int): Iterator[Node] = ???
 
   def upgrade(context: QueryContext): LockingQueryContext = ???
@@ -24,7 +24,7 @@ import org.neo4j.cypher.internal.compiler.v2_1.pipes.{PipeMonitor, ShortestPathP
 import symbols._
 import org.neo4j.cypher.GraphDatabaseJUnitSuite
 import org.neo4j.graphdb.{Direction, Node, Path}
-import org.junit.Test
+import org.junit.{After, Test}
 import collection.mutable.Map
 
 class SingleShortestPathPipeTest extends GraphDatabaseJUnitSuite {
@@ -35,7 +35,20 @@ class SingleShortestPathPipeTest extends GraphDatabaseJUnitSuite {
     val source = new FakePipe(List(Map("a" -> a, "b" -> b)), "a"->CTNode, "b"->CTNode)
 
     val pipe = new ShortestPathPipe(source, path)
-    graph.inTx(pipe.createResults(QueryStateHelper.empty).next()("p").asInstanceOf[Path])
+    pipe.createResults(queryState).next()("p").asInstanceOf[Path]
+  }
+
+  var tx : org.neo4j.graphdb.Transaction = null
+
+  private def queryState = {
+    if(tx == null) tx = graph.beginTx()
+    QueryStateHelper.queryStateFrom(graph, tx)
+  }
+
+  @After
+  def cleanup()
+  {
+    if(tx != null) tx.close()
   }
 
   @Test def shouldReturnTheShortestPathBetweenTwoNodes() {
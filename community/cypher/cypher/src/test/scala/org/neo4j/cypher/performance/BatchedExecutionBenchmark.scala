@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.performance
+
+import java.io.File
+import scala.util.Random
+import org.neo4j.cypher.ExecutionEngine
+import org.neo4j.graphdb.{DynamicLabel, DynamicRelationshipType, GraphDatabaseService}
+import org.neo4j.graphdb.factory.{GraphDatabaseSettings, GraphDatabaseFactory}
+import org.neo4j.kernel.impl.util.FileUtils
+
+/**
+ * Measures how many rows per second Cypher 2.1 produces for queries going through the new planner, passing rows
+ * one at a time and passing batches of rows of different sizes between pipes.
+ *
+ * Run with -Dnodes, -Ddegree, -Druns and -DbatchSizes (comma separated) to tweak.
+ */
+object BatchedExecutionBenchmark {
+  val queries = Seq(
+    "CYPHER 2.1 MATCH (a:Person) RETURN a",
+    "CYPHER 2.1 MATCH (a:Person)-->(b) WHERE a <> b RETURN b",
+    "CYPHER 2.1 MATCH (a)-[r]->(b:Person) WHERE b.age > 50 RETURN a, r, b.age")
+
+  def main(args: Array[String]) {
+    val nodes = Integer.getInteger("nodes", 100000).intValue()
+    val degree = Integer.getInteger("degree", 10).intValue()
+    val runs = Integer.getInteger("runs", 10).intValue()
+    val batchSizes = System.getProperty("batchSizes", "0,64,1024").split(",").map(_.trim.toInt)
+
+    val storeDir = new File("target/batched-execution-benchmark")
+    FileUtils.deleteRecursively(storeDir)
+    try {
+      createGraph(storeDir, nodes, degree)
+      for (batchSize <- batchSizes) {
+        val db = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder(storeDir.getPath)
+          .setConfig(GraphDatabaseSettings.cypher_execution_batch_size, batchSize.toString)
+          .newGraphDatabase()
+        try {
+          val engine = new ExecutionEngine(db)
+          for (query <- queries) {
+            // warm up
+            execute(engine, query, runs)
+            val time = System.nanoTime()
+            val rows = execute(engine, query, runs)
+            val rowsPerSecond = rows / ((System.nanoTime() - time) / 1000000000.0)
+            println(f"batch size $batchSize%5d - $query: $rowsPerSecond%.0f rows/s")
+          }
+        } finally {
+          db.shutdown()
+        }
+      }
+    } finally {
+      FileUtils.deleteRecursively(storeDir)
+    }
+  }
+
+  private def execute(engine: ExecutionEngine, query: String, runs: Int): Long =
+    (0 until runs).map(_ => engine.execute(query).size.toLong).sum
+
+  private def createGraph(storeDir: File, nodes: Int, degree: Int) {
+    val db = new GraphDatabaseFactory().newEmbeddedDatabase(storeDir.getPath)
+    try {
+      val random = new Random(42)
+      val person = DynamicLabel.label("Person")
+      val knows = DynamicRelationshipType.withName("KNOWS")
+      for (batch <- (0 until nodes).grouped(10000)) {
+        inTx(db) {
+          batch.foreach {
+            i =>
+              val node = if (i % 2 == 0) db.createNode(person) else db.createNode()
+              node.setProperty("age", i % 100)
+          }
+        }
+      }
+      for (batch <- (0 until nodes).grouped(10000 / degree)) {
+        inTx(db) {
+          batch.foreach {
+            i =>
+              val node = db.getNodeById(i)
+              (0 until degree).foreach(_ => node.createRelationshipTo(db.getNodeById(random.nextInt(nodes)), knows))
+          }
+        }
+      }
+    } finally {
+      db.shutdown()
+    }
+  }
+
+  private def inTx(db: GraphDatabaseService)(work: => Unit) {
+    val tx = db.beginTx()
+    try {
+      work
+      tx.success()
+    } finally {
+      tx.close()
+    }
+  }
+}
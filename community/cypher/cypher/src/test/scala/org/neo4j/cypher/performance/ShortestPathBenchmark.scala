@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.performance
+
+import java.io.File
+import scala.util.Random
+import scala.collection.JavaConverters._
+import org.neo4j.cypher.internal.compiler.v2_1.pipes.BidirectionalShortestPaths
+import org.neo4j.cypher.internal.spi.v2_1.TransactionBoundQueryContext
+import org.neo4j.graphalgo.GraphAlgoFactory
+import org.neo4j.graphdb.{Direction, DynamicRelationshipType, GraphDatabaseService}
+import org.neo4j.graphdb.factory.GraphDatabaseFactory
+import org.neo4j.kernel.{GraphDatabaseAPI, Traversal}
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge
+import org.neo4j.kernel.impl.util.FileUtils
+
+/**
+ * Compares the graph-algo shortest path finder Cypher used to delegate to with the primitive
+ * bidirectional search it uses now, for both shortestPath and allShortestPaths on a random graph.
+ *
+ * Run with -Dnodes, -Ddegree, -Dpairs and -DmaxDepth to tweak.
+ */
+object ShortestPathBenchmark {
+  val knows = DynamicRelationshipType.withName("KNOWS")
+
+  def main(args: Array[String]) {
+    val nodes = Integer.getInteger("nodes", 100000).intValue()
+    val degree = Integer.getInteger("degree", 5).intValue()
+    val pairs = Integer.getInteger("pairs", 1000).intValue()
+    val maxDepth = Integer.getInteger("maxDepth", 15).intValue()
+
+    val storeDir = new File("target/shortest-path-benchmark")
+    FileUtils.deleteRecursively(storeDir)
+    val db = new GraphDatabaseFactory().newEmbeddedDatabase(storeDir.getPath).asInstanceOf[GraphDatabaseAPI]
+    try {
+      createGraph(db, nodes, degree)
+      val random = new Random(1337)
+      val endPoints = Seq.fill(pairs)((random.nextInt(nodes).toLong, random.nextInt(nodes).toLong))
+
+      for (findAll <- Seq(false, true)) {
+        val name = if (findAll) "allShortestPaths" else "shortestPath"
+        // warm up both before measuring either
+        traversal(db, endPoints, maxDepth, findAll)
+        primitive(db, endPoints, maxDepth, findAll)
+        report(s"$name, traversal framework", pairs)(traversal(db, endPoints, maxDepth, findAll))
+        report(s"$name, primitive bidirectional", pairs)(primitive(db, endPoints, maxDepth, findAll))
+      }
+    } finally {
+      db.shutdown()
+      FileUtils.deleteRecursively(storeDir)
+    }
+  }
+
+  private def report(name: String, pairs: Int)(run: => Long) {
+    val time = System.nanoTime()
+    val paths = run
+    val millis = (System.nanoTime() - time) / 1000000.0
+    println(f"$name%-45s: $pairs%d pairs, $paths%d paths in $millis%.0f ms (${millis / pairs}%.3f ms/pair)")
+  }
+
+  private def traversal(db: GraphDatabaseService, endPoints: Seq[(Long, Long)], maxDepth: Int, findAll: Boolean): Long =
+    inTx(db) {
+      val expander = Traversal.expanderForTypes(knows, Direction.BOTH)
+      val finder = GraphAlgoFactory.shortestPath(expander, maxDepth)
+      endPoints.map {
+        case (start, end) =>
+          if (findAll) finder.findAllPaths(db.getNodeById(start), db.getNodeById(end)).asScala.size.toLong
+          else if (finder.findSinglePath(db.getNodeById(start), db.getNodeById(end)) == null) 0L
+          else 1L
+      }.sum
+    }
+
+  private def primitive(db: GraphDatabaseAPI, endPoints: Seq[(Long, Long)], maxDepth: Int, findAll: Boolean): Long = {
+    val tx = db.beginTx()
+    try {
+      val statement = db.getDependencyResolver.resolveDependency(classOf[ThreadToStatementContextBridge]).instance()
+      val query = new TransactionBoundQueryContext(db, tx, isTopLevelTx = true, statement)
+      val finder = new BidirectionalShortestPaths(query, Direction.BOTH, Seq(query.getRelTypeId(knows.name())), maxDepth, findAll)
+      val paths = endPoints.map { case (start, end) => finder.find(start, end).size.toLong }.sum
+      tx.success()
+      paths
+    } finally {
+      tx.close()
+    }
+  }
+
+  private def createGraph(db: GraphDatabaseService, nodes: Int, degree: Int) {
+    val random = new Random(42)
+    for (batch <- (0 until nodes).grouped(10000)) {
+      inTx(db) {
+        batch.foreach(_ => db.createNode())
+      }
+    }
+    for (batch <- (0 until nodes).grouped(10000 / degree)) {
+      inTx(db) {
+        batch.foreach {
+          i =>
+            val node = db.getNodeById(i)
+            (0 until degree).foreach(_ => node.createRelationshipTo(db.getNodeById(random.nextInt(nodes)), knows))
+        }
+      }
+    }
+  }
+
+  private def inTx[T](db: GraphDatabaseService)(work: => T): T = {
+    val tx = db.beginTx()
+    try {
+      val result = work
+      tx.success()
+      result
+    } finally {
+      tx.close()
+    }
+  }
+}
@@ -23,6 +23,7 @@ import org.neo4j.graphalgo.impl.util.DoubleEvaluator;
 import org.neo4j.graphalgo.impl.util.DoubleEvaluatorWithDefault;
 import org.neo4j.graphalgo.impl.util.GeoEstimateEvaluator;
 import org.neo4j.graphalgo.impl.util.IntegerEvaluator;
+import org.neo4j.graphalgo.impl.util.PrimitiveDoubleEvaluator;
 
 /**
  * Factory for common evaluators used by some graph algos, f.ex
@@ -42,6 +43,11 @@ public abstract class CommonEvaluators
         return new DoubleEvaluatorWithDefault( relationshipCostPropertyKey, defaultCost );
     }
     
+    public static PrimitiveCostEvaluator primitiveCostEvaluator( String relationshipCostPropertyKey )
+    {
+        return new PrimitiveDoubleEvaluator( relationshipCostPropertyKey );
+    }
+
     public static CostEvaluator<Integer> intCostEvaluator( String relationshipCostPropertyKey )
     {
         return new IntegerEvaluator( relationshipCostPropertyKey );
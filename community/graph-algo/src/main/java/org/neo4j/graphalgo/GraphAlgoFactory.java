@@ -23,8 +23,11 @@ import org.neo4j.graphalgo.impl.path.AStar;
 import org.neo4j.graphalgo.impl.path.AllPaths;
 import org.neo4j.graphalgo.impl.path.AllSimplePaths;
 import org.neo4j.graphalgo.impl.path.Dijkstra;
+import org.neo4j.graphalgo.impl.path.PrimitiveAStar;
+import org.neo4j.graphalgo.impl.path.PrimitiveDijkstra;
 import org.neo4j.graphalgo.impl.path.ShortestPath;
 import org.neo4j.graphalgo.impl.util.DoubleEvaluator;
+import org.neo4j.graphalgo.impl.util.PrimitiveDoubleEvaluator;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.PathExpander;
@@ -439,4 +442,79 @@ public abstract class GraphAlgoFactory
     {
         return dijkstra( expander, stateFactory, new DoubleEvaluator( relationshipPropertyRepresentingCost ) );
     }
+
+    /**
+     * Returns an {@link PathFinder} which uses the A* algorithm to find the
+     * cheapest path between two nodes, like
+     * {@link #aStar(PathExpander, CostEvaluator, EstimateEvaluator)}, but
+     * keeps its state in primitive arrays, indexed by a slot that each visited
+     * node is given, and never boxes costs or estimates. Meant for running many searches on big graphs, where
+     * the garbage produced by the other implementations adds up.
+     * 
+     * @see PrimitiveAStar
+     * @param expander the {@link PathExpander} to use for expanding
+     * {@link Relationship}s for each {@link Node}. It only gets to see the
+     * start node and end node of the {@link Path} it's given.
+     * @param lengthEvaluator evaluator that can return the cost represented
+     * by each relationship the algorithm traverses.
+     * @param estimateEvaluator evaluator that returns an (optimistic)
+     * estimation of the cost to get from the current node (in the traversal)
+     * to the end node.
+     * @return an algorithm which finds the cheapest path between two nodes
+     * using the A* algorithm.
+     */
+    public static PathFinder<WeightedPath> primitiveAStar( PathExpander expander,
+            PrimitiveCostEvaluator lengthEvaluator, PrimitiveEstimateEvaluator estimateEvaluator )
+    {
+        return new PrimitiveAStar( expander, lengthEvaluator, estimateEvaluator );
+    }
+
+    /**
+     * Returns an {@link PathFinder} which uses the Dijkstra algorithm to find
+     * the cheapest path between two nodes, like
+     * {@link #dijkstra(PathExpander, CostEvaluator)}, but keeps its state in
+     * primitive arrays, indexed by a slot that each visited node is given,
+     * and never boxes costs. Only one
+     * path is returned from {@link PathFinder#findAllPaths(Node, Node)}.
+     * 
+     * If {@code bidirectional} the search is done from both ends at once,
+     * using {@link PathExpander#reverse()} from the end node, which usually
+     * visits far fewer nodes on big graphs.
+     * 
+     * @see PrimitiveDijkstra
+     * @param expander the {@link PathExpander} to use for expanding
+     * {@link Relationship}s for each {@link Node}. It only gets to see the
+     * start node and end node of the {@link Path} it's given.
+     * @param costEvaluator evaluator that can return the cost represented
+     * by each relationship the algorithm traverses.
+     * @param bidirectional whether or not to search from both ends at once.
+     * @return an algorithm which finds the cheapest path between two nodes
+     * using the Dijkstra algorithm.
+     */
+    public static PathFinder<WeightedPath> primitiveDijkstra( PathExpander expander,
+            PrimitiveCostEvaluator costEvaluator, boolean bidirectional )
+    {
+        return new PrimitiveDijkstra( expander, costEvaluator, bidirectional );
+    }
+
+    /**
+     * See {@link #primitiveDijkstra(PathExpander, PrimitiveCostEvaluator, boolean)}.
+     * 
+     * Uses a cost evaluator which uses the supplied property key to
+     * represent the cost (values of any {@link Number} type).
+     * 
+     * @param expander the {@link PathExpander} to use for expanding
+     * {@link Relationship}s for each {@link Node}.
+     * @param relationshipPropertyRepresentingCost the property to represent cost
+     * on each relationship the algorithm traverses.
+     * @param bidirectional whether or not to search from both ends at once.
+     * @return an algorithm which finds the cheapest path between two nodes
+     * using the Dijkstra algorithm.
+     */
+    public static PathFinder<WeightedPath> primitiveDijkstra( PathExpander expander,
+            String relationshipPropertyRepresentingCost, boolean bidirectional )
+    {
+        return primitiveDijkstra( expander, new PrimitiveDoubleEvaluator( relationshipPropertyRepresentingCost ),
+                bidirectional );
+    }
 }
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Relationship;
+
+/**
+ * Like a {@link CostEvaluator CostEvaluator&lt;Double&gt;}, but returns plain
+ * doubles. Used by the path finders that keep their costs in primitive arrays
+ * and would otherwise box and unbox a {@link Double} for every relationship
+ * they look at. It doesn't extend {@link CostEvaluator}.
+ */
+public interface PrimitiveCostEvaluator
+{
+    /**
+     * @param relationship the relationship to get the cost for.
+     * @param direction The direction in which the relationship is being
+     *            evaluated, either {@link Direction#INCOMING} or
+     *            {@link Direction#OUTGOING}.
+     * @return The cost for this edge/relationship
+     */
+    double getCost( Relationship relationship, Direction direction );
+}
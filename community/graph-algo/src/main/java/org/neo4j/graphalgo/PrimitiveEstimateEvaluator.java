@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo;
+
+import org.neo4j.graphdb.Node;
+
+/**
+ * Like an {@link EstimateEvaluator EstimateEvaluator&lt;Double&gt;}, but returns plain doubles, see
+ * {@link PrimitiveCostEvaluator}.
+ */
+public interface PrimitiveEstimateEvaluator
+{
+    /**
+     * Estimate the weight of the remaining path from one node to another.
+     *
+     * @param node the node to estimate the weight from.
+     * @param goal the node to estimate the weight to.
+     * @return an estimation of the weight of the path from the first node to
+     *         the second.
+     */
+    double getCost( Node node, Node goal );
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.path;
+
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.PrimitiveCostEvaluator;
+import org.neo4j.graphalgo.PrimitiveEstimateEvaluator;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.TraversalMetadata;
+
+import static org.neo4j.helpers.collection.Iterables.option;
+
+/**
+ * The A* algorithm over node ids and primitive costs, see {@link SearchFrontier}. Like {@link AStar}
+ * it finds one cheapest path and doesn't revisit a node once it has been expanded, so the estimates
+ * should never be more than the actual cost to the goal.
+ */
+public class PrimitiveAStar implements PathFinder<WeightedPath>
+{
+    private final PathExpander<?> expander;
+    private final PrimitiveCostEvaluator lengthEvaluator;
+    private final PrimitiveEstimateEvaluator estimateEvaluator;
+    private SearchFrontier.Metadata lastMetadata;
+
+    public PrimitiveAStar( PathExpander<?> expander,
+            PrimitiveCostEvaluator lengthEvaluator, PrimitiveEstimateEvaluator estimateEvaluator )
+    {
+        this.expander = expander;
+        this.lengthEvaluator = lengthEvaluator;
+        this.estimateEvaluator = estimateEvaluator;
+    }
+
+    @Override
+    public WeightedPath findSinglePath( Node start, Node end )
+    {
+        lastMetadata = new SearchFrontier.Metadata();
+        SearchFrontier frontier = new SearchFrontier( start, expander, estimateEvaluator.getCost( start, end ) );
+        long endId = end.getId();
+        while ( !frontier.isExhausted() )
+        {
+            int slot = frontier.settleNext();
+            Node node = frontier.node( slot );
+            if ( node.getId() == endId )
+            {
+                lastMetadata.paths++;
+                return SearchFrontier.toPath( start, frontier.cost( slot ), frontier.relationshipsTo( slot ), null );
+            }
+
+            double cost = frontier.cost( slot );
+            for ( Relationship rel : frontier.expand( slot ) )
+            {
+                lastMetadata.rels++;
+                Node otherNode = rel.getOtherNode( node );
+                int otherSlot = frontier.slotOf( otherNode.getId() );
+                if ( otherSlot == SearchFrontier.UNSEEN )
+                {
+                    otherSlot = frontier.add( otherNode, estimateEvaluator.getCost( otherNode, end ) );
+                }
+                else if ( frontier.isSettled( otherSlot ) )
+                {
+                    continue;
+                }
+                frontier.improve( otherSlot, slot, rel.getId(),
+                        cost + lengthEvaluator.getCost( rel, Direction.OUTGOING ) );
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Iterable<WeightedPath> findAllPaths( Node start, Node end )
+    {
+        return option( findSinglePath( start, end ) );
+    }
+
+    @Override
+    public TraversalMetadata metadata()
+    {
+        return lastMetadata;
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.path;
+
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.PrimitiveCostEvaluator;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.TraversalMetadata;
+
+import static org.neo4j.helpers.collection.Iterables.option;
+
+/**
+ * Dijkstra's algorithm over node ids and primitive costs, see {@link SearchFrontier}. Unlike
+ * {@link Dijkstra} it only finds one cheapest path, so {@link #findAllPaths(Node, Node)} returns
+ * at most one path.
+ *
+ * If created as bidirectional it searches from both ends at once, expanding from the end
+ * using the {@link PathExpander#reverse() reverse} of the expander, and stops when the two
+ * searches can no longer improve on the cheapest path found where they meet.
+ */
+public class PrimitiveDijkstra implements PathFinder<WeightedPath>
+{
+    private final PathExpander<?> expander;
+    private final PrimitiveCostEvaluator costEvaluator;
+    private final boolean bidirectional;
+    private SearchFrontier.Metadata lastMetadata;
+
+    public PrimitiveDijkstra( PathExpander<?> expander, PrimitiveCostEvaluator costEvaluator, boolean bidirectional )
+    {
+        this.expander = expander;
+        this.costEvaluator = costEvaluator;
+        this.bidirectional = bidirectional;
+    }
+
+    @Override
+    public WeightedPath findSinglePath( Node start, Node end )
+    {
+        lastMetadata = new SearchFrontier.Metadata();
+        WeightedPath path = bidirectional ? findBidirectional( start, end ) : findUnidirectional( start, end );
+        if ( path != null )
+        {
+            lastMetadata.paths++;
+        }
+        return path;
+    }
+
+    @Override
+    public Iterable<WeightedPath> findAllPaths( Node start, Node end )
+    {
+        return option( findSinglePath( start, end ) );
+    }
+
+    @Override
+    public TraversalMetadata metadata()
+    {
+        return lastMetadata;
+    }
+
+    private WeightedPath findUnidirectional( Node start, Node end )
+    {
+        SearchFrontier frontier = new SearchFrontier( start, expander, 0 );
+        long endId = end.getId();
+        while ( !frontier.isExhausted() )
+        {
+            int slot = frontier.settleNext();
+            if ( frontier.node( slot ).getId() == endId )
+            {
+                return SearchFrontier.toPath( start, frontier.cost( slot ), frontier.relationshipsTo( slot ), null );
+            }
+            relax( frontier, slot, null, null );
+        }
+        return null;
+    }
+
+    private WeightedPath findBidirectional( Node start, Node end )
+    {
+        SearchFrontier forward = new SearchFrontier( start, expander, 0 );
+        SearchFrontier backward = new SearchFrontier( end, expander.reverse(), 0 );
+        if ( start.equals( end ) )
+        {
+            return SearchFrontier.toPath( start, 0, forward.relationshipsTo( 0 ), null );
+        }
+
+        Meeting meeting = new Meeting();
+        while ( !forward.isExhausted() && !backward.isExhausted() &&
+                forward.lowestPriority() + backward.lowestPriority() < meeting.cost )
+        {
+            boolean fromStart = forward.queued() <= backward.queued();
+            SearchFrontier frontier = fromStart ? forward : backward;
+            relax( frontier, frontier.settleNext(), fromStart ? backward : forward, meeting );
+        }
+
+        if ( meeting.nodeId == -1 )
+        {
+            return null;
+        }
+        return SearchFrontier.toPath( start, meeting.cost, forward.relationshipsTo( forward.slotOf( meeting.nodeId ) ),
+                backward.relationshipsTo( backward.slotOf( meeting.nodeId ) ) );
+    }
+
+    /**
+     * Expands the node in {@code slot}, lowering the costs of its neighbours where it's a cheaper way to them.
+     * If searching from both ends, neighbours that the {@code other} side has also reached are where the
+     * two searches meet, and the cheapest such meeting is kept in {@code meeting}.
+     */
+    private void relax( SearchFrontier frontier, int slot, SearchFrontier other, Meeting meeting )
+    {
+        Node node = frontier.node( slot );
+        double cost = frontier.cost( slot );
+        for ( Relationship rel : frontier.expand( slot ) )
+        {
+            lastMetadata.rels++;
+            Node otherNode = rel.getOtherNode( node );
+            long otherNodeId = otherNode.getId();
+            int otherSlot = frontier.slotOf( otherNodeId );
+            if ( otherSlot == SearchFrontier.UNSEEN )
+            {
+                otherSlot = frontier.add( otherNode, 0 );
+            }
+            else if ( frontier.isSettled( otherSlot ) )
+            {
+                continue;
+            }
+
+            double otherCost = cost + costEvaluator.getCost( rel, Direction.OUTGOING );
+            if ( frontier.improve( otherSlot, slot, rel.getId(), otherCost ) && other != null )
+            {
+                int meetingSlot = other.slotOf( otherNodeId );
+                if ( meetingSlot != SearchFrontier.UNSEEN && otherCost + other.cost( meetingSlot ) < meeting.cost )
+                {
+                    meeting.cost = otherCost + other.cost( meetingSlot );
+                    meeting.nodeId = otherNodeId;
+                }
+            }
+        }
+    }
+
+    private static class Meeting
+    {
+        private double cost = Double.POSITIVE_INFINITY;
+        private long nodeId = -1;
+    }
+}
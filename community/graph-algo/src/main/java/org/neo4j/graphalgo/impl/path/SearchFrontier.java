@@ -0,0 +1,306 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.path;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongIntMap;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphalgo.impl.util.IndexedDoubleHeap;
+import org.neo4j.graphalgo.impl.util.PathImpl;
+import org.neo4j.graphalgo.impl.util.WeightedPathImpl;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.PropertyContainer;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.traversal.BranchState;
+import org.neo4j.graphdb.traversal.TraversalMetadata;
+
+/**
+ * One side of a best-first search, as used by {@link PrimitiveDijkstra} and {@link PrimitiveAStar}.
+ * Every node the search has seen gets a slot, looked up by node id in an open addressing table, and
+ * its cost, estimate and the way it was reached are kept in primitive arrays indexed by that slot.
+ * Nodes waiting to be expanded are in an {@link IndexedDoubleHeap} of slots, prioritized by cost
+ * plus estimate, so a node found by a cheaper way has its priority lowered in place.
+ */
+class SearchFrontier
+{
+    static final int UNSEEN = -1;
+    private static final int NO_SLOT = -1;
+    private static final long NO_RELATIONSHIP = -1;
+
+    private final PathExpander<?> expander;
+    private final Cursor cursor;
+    private final PrimitiveLongIntMap slots = Primitive.longIntMap();
+    private final IndexedDoubleHeap queue = new IndexedDoubleHeap();
+    private Node[] nodes = new Node[16];
+    private int[] previous = new int[16];
+    private long[] cameFrom = new long[16];
+    private double[] costs = new double[16];
+    private double[] estimates = new double[16];
+    private boolean[] settled = new boolean[16];
+    private int size;
+
+    SearchFrontier( Node start, PathExpander<?> expander, double startEstimate )
+    {
+        this.expander = expander;
+        this.cursor = new Cursor( start );
+        improve( add( start, startEstimate ), NO_SLOT, NO_RELATIONSHIP, 0 );
+    }
+
+    /**
+     * @return the slot of the node with the given id, or {@link #UNSEEN} if this side hasn't seen it.
+     */
+    int slotOf( long nodeId )
+    {
+        return slots.get( nodeId );
+    }
+
+    /**
+     * Gives {@code node} a slot, with an infinite cost until a way to it is found.
+     */
+    int add( Node node, double estimate )
+    {
+        if ( size == nodes.length )
+        {
+            grow();
+        }
+        int slot = size++;
+        slots.put( node.getId(), slot );
+        nodes[slot] = node;
+        previous[slot] = NO_SLOT;
+        cameFrom[slot] = NO_RELATIONSHIP;
+        costs[slot] = Double.POSITIVE_INFINITY;
+        estimates[slot] = estimate;
+        return slot;
+    }
+
+    /**
+     * Records that the node in {@code slot} can be reached at {@code cost}, from the node in slot
+     * {@code from} over the relationship with id {@code relationshipId}, if that's cheaper than any
+     * way found so far.
+     *
+     * @return {@code true} if it was cheaper.
+     */
+    boolean improve( int slot, int from, long relationshipId, double cost )
+    {
+        if ( cost >= costs[slot] )
+        {
+            return false;
+        }
+        costs[slot] = cost;
+        previous[slot] = from;
+        cameFrom[slot] = relationshipId;
+        queue.insertOrDecrease( slot, cost + estimates[slot] );
+        return true;
+    }
+
+    boolean isExhausted()
+    {
+        return queue.isEmpty();
+    }
+
+    int queued()
+    {
+        return queue.size();
+    }
+
+    /**
+     * @return the priority of the node that {@link #settleNext()} would return. There must be one.
+     */
+    double lowestPriority()
+    {
+        return queue.peekKey();
+    }
+
+    /**
+     * Removes the node with the lowest priority from the queue and marks its cost as final.
+     *
+     * @return the slot of that node.
+     */
+    int settleNext()
+    {
+        int slot = queue.pop();
+        settled[slot] = true;
+        return slot;
+    }
+
+    boolean isSettled( int slot )
+    {
+        return settled[slot];
+    }
+
+    Node node( int slot )
+    {
+        return nodes[slot];
+    }
+
+    double cost( int slot )
+    {
+        return costs[slot];
+    }
+
+    @SuppressWarnings( "unchecked" )
+    Iterable<Relationship> expand( int slot )
+    {
+        cursor.endNode = nodes[slot];
+        return expander.expand( cursor, BranchState.NO_STATE );
+    }
+
+    /**
+     * @return the relationships of the cheapest known way from the start of this side to the node
+     * in {@code slot}, in the order they were traversed.
+     */
+    LinkedList<Relationship> relationshipsTo( int slot )
+    {
+        LinkedList<Relationship> relationships = new LinkedList<Relationship>();
+        GraphDatabaseService graphDb = nodes[slot].getGraphDatabase();
+        while ( cameFrom[slot] != NO_RELATIONSHIP )
+        {
+            relationships.addFirst( graphDb.getRelationshipById( cameFrom[slot] ) );
+            slot = previous[slot];
+        }
+        return relationships;
+    }
+
+    /**
+     * @param fromEnd relationships from the end node back to where the two searches met, or {@code null}.
+     */
+    static WeightedPath toPath( Node start, double weight, LinkedList<Relationship> toMeeting,
+            LinkedList<Relationship> fromEnd )
+    {
+        PathImpl.Builder builder = new PathImpl.Builder( start );
+        for ( Relationship rel : toMeeting )
+        {
+            builder = builder.push( rel );
+        }
+        if ( fromEnd != null )
+        {
+            for ( Iterator<Relationship> rels = fromEnd.descendingIterator(); rels.hasNext(); )
+            {
+                builder = builder.push( rels.next() );
+            }
+        }
+        return new WeightedPathImpl( weight, builder.build() );
+    }
+
+    private void grow()
+    {
+        int length = nodes.length * 2;
+        nodes = Arrays.copyOf( nodes, length );
+        previous = Arrays.copyOf( previous, length );
+        cameFrom = Arrays.copyOf( cameFrom, length );
+        costs = Arrays.copyOf( costs, length );
+        estimates = Arrays.copyOf( estimates, length );
+        settled = Arrays.copyOf( settled, length );
+    }
+
+    /**
+     * What the {@link PathExpander} gets to see of the search: where it started and which node is
+     * being expanded. Expanders that need the whole path to the node can't be used.
+     */
+    private static class Cursor implements Path
+    {
+        private final Node start;
+        private Node endNode;
+
+        Cursor( Node start )
+        {
+            this.start = start;
+        }
+
+        @Override
+        public Node startNode()
+        {
+            return start;
+        }
+
+        @Override
+        public Node endNode()
+        {
+            return endNode;
+        }
+
+        @Override
+        public Relationship lastRelationship()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Iterable<Relationship> relationships()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Iterable<Relationship> reverseRelationships()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Iterable<Node> nodes()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Iterable<Node> reverseNodes()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int length()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Iterator<PropertyContainer> iterator()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    static class Metadata implements TraversalMetadata
+    {
+        int rels;
+        int paths;
+
+        @Override
+        public int getNumberOfPathsReturned()
+        {
+            return paths;
+        }
+
+        @Override
+        public int getNumberOfRelationshipsTraversed()
+        {
+            return rels;
+        }
+    }
+}
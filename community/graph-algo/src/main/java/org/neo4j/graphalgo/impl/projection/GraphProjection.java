@@ -0,0 +1,239 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.projection;
+
+import java.util.Arrays;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongIntMap;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+/**
+ * A read only copy of a part of the graph, kept as a compressed sparse row adjacency structure of int arrays.
+ * Nodes are numbered from 0 to {@link #nodeCount()} - 1 in the order they were loaded, and the neighbours of
+ * node {@code i} are {@code targets[offsets[i]]} up to, but not including, {@code targets[offsets[i + 1]]}.
+ * <p>
+ * Only relationships between two nodes of the projection are part of it. A relationship is followed in the
+ * direction the projection was loaded with, so with {@link Direction#BOTH} every relationship between two
+ * different nodes is a neighbour entry of each of them.
+ */
+public class GraphProjection
+{
+    private final Direction direction;
+    private final long[] nodeIds;
+    private final PrimitiveLongIntMap indexes;
+    private final int[] offsets;
+    private final int[] targets;
+
+    GraphProjection( Direction direction, long[] nodeIds, PrimitiveLongIntMap indexes, int[] offsets,
+                     int[] targets )
+    {
+        this.direction = direction;
+        this.nodeIds = nodeIds;
+        this.indexes = indexes;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+     * Loads the nodes with the given label, or all nodes if the label is null, and the relationships of the
+     * given types between them.
+     * @param graphDb the database to load from, in an open transaction.
+     * @param label only nodes with this label are loaded, or all nodes if null.
+     * @param direction the direction relationships are followed in.
+     * @param types the relationship types to load, or all types if none are given.
+     * @return the projection.
+     */
+    public static GraphProjection load( GraphDatabaseService graphDb, Label label, Direction direction,
+                                        RelationshipType... types )
+    {
+        GlobalGraphOperations operations = GlobalGraphOperations.at( graphDb );
+        return of( label == null ? operations.getAllNodes() : operations.getAllNodesWithLabel( label ),
+                direction, types );
+    }
+
+    /**
+     * Loads the given nodes, and the relationships of the given types between them.
+     * @param nodes the nodes to load, each one once.
+     * @param direction the direction relationships are followed in.
+     * @param types the relationship types to load, or all types if none are given.
+     * @return the projection.
+     */
+    public static GraphProjection of( Iterable<Node> nodes, Direction direction, RelationshipType... types )
+    {
+        // Nodes are read once, in the order they come, and the neighbours of a node are appended right after
+        // those of the node before it. Neighbours are kept as node ids until every node has an index.
+        long[] nodeIds = new long[1024];
+        PrimitiveLongIntMap indexes = Primitive.longIntMap();
+        int[] offsets = new int[nodeIds.length + 1];
+        long[] neighbourIds = new long[1024];
+        int nodeCount = 0, neighbourCount = 0;
+        for ( Node node : nodes )
+        {
+            if ( nodeCount == nodeIds.length )
+            {
+                nodeIds = Arrays.copyOf( nodeIds, nodeCount * 2 );
+                offsets = Arrays.copyOf( offsets, nodeCount * 2 + 1 );
+            }
+            indexes.put( node.getId(), nodeCount );
+            nodeIds[nodeCount] = node.getId();
+            offsets[nodeCount++] = neighbourCount;
+            for ( Relationship relationship : relationships( node, direction, types ) )
+            {
+                if ( neighbourCount == neighbourIds.length )
+                {
+                    neighbourIds = Arrays.copyOf( neighbourIds, neighbourCount * 2 );
+                }
+                neighbourIds[neighbourCount++] = relationship.getOtherNode( node ).getId();
+            }
+        }
+        offsets[nodeCount] = neighbourCount;
+
+        // Drop the relationships to nodes outside of the projection
+        int[] targets = new int[neighbourCount];
+        int relationshipCount = 0;
+        for ( int index = 0; index < nodeCount; index++ )
+        {
+            int from = offsets[index], to = offsets[index + 1];
+            offsets[index] = relationshipCount;
+            for ( int i = from; i < to; i++ )
+            {
+                int target = indexes.get( neighbourIds[i] );
+                if ( target != -1 )
+                {
+                    targets[relationshipCount++] = target;
+                }
+            }
+        }
+        offsets[nodeCount] = relationshipCount;
+        return new GraphProjection( direction, Arrays.copyOf( nodeIds, nodeCount ), indexes,
+                Arrays.copyOf( offsets, nodeCount + 1 ), Arrays.copyOf( targets, relationshipCount ) );
+    }
+
+    private static Iterable<Relationship> relationships( Node node, Direction direction, RelationshipType[] types )
+    {
+        return types.length == 0 ? node.getRelationships( direction ) : node.getRelationships( direction, types );
+    }
+
+    /**
+     * @return the direction relationships are followed in.
+     */
+    public Direction direction()
+    {
+        return direction;
+    }
+
+    /**
+     * @return the number of nodes in the projection.
+     */
+    public int nodeCount()
+    {
+        return nodeIds.length;
+    }
+
+    /**
+     * @return the number of neighbour entries, which with {@link Direction#BOTH} is twice the number of
+     *         relationships between different nodes.
+     */
+    public int relationshipCount()
+    {
+        return targets.length;
+    }
+
+    /**
+     * @return the id of the node at the given index.
+     */
+    public long nodeId( int index )
+    {
+        return nodeIds[index];
+    }
+
+    /**
+     * @return the index of the node with the given id, or -1 if it isn't part of the projection.
+     */
+    public int indexOf( long nodeId )
+    {
+        return indexes.get( nodeId );
+    }
+
+    /**
+     * @return the number of neighbour entries of the node at the given index.
+     */
+    public int degree( int index )
+    {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    /**
+     * @return the position in {@link #targets()} of the first neighbour of every node, followed by the
+     *         number of neighbour entries.
+     */
+    public int[] offsets()
+    {
+        return offsets;
+    }
+
+    /**
+     * @return the indexes of the neighbours of all nodes, node after node.
+     */
+    public int[] targets()
+    {
+        return targets;
+    }
+
+    /**
+     * The same nodes with every relationship followed the other way. A projection loaded with
+     * {@link Direction#BOTH} is its own reverse.
+     * @return the reversed projection.
+     */
+    public GraphProjection reverse()
+    {
+        if ( direction == Direction.BOTH )
+        {
+            return this;
+        }
+        int nodeCount = nodeCount();
+        int[] reversedOffsets = new int[nodeCount + 1];
+        for ( int target : targets )
+        {
+            reversedOffsets[target + 1]++;
+        }
+        for ( int index = 0; index < nodeCount; index++ )
+        {
+            reversedOffsets[index + 1] += reversedOffsets[index];
+        }
+        int[] positions = Arrays.copyOf( reversedOffsets, nodeCount );
+        int[] reversedTargets = new int[targets.length];
+        for ( int source = 0; source < nodeCount; source++ )
+        {
+            for ( int i = offsets[source]; i < offsets[source + 1]; i++ )
+            {
+                reversedTargets[positions[targets[i]]++] = source;
+            }
+        }
+        return new GraphProjection( direction.reverse(), nodeIds, indexes, reversedOffsets, reversedTargets );
+    }
+}
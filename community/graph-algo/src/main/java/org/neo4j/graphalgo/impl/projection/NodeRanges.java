@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.projection;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs work over all node indexes of a projection in a fork join pool, split into ranges small enough for every
+ * thread of the pool to get a few of them.
+ */
+final class NodeRanges
+{
+    interface Work
+    {
+        /**
+         * Does the work for the nodes from {@code from}, inclusive, to {@code to}, exclusive.
+         * @return a value to add up over all ranges, for work that computes a sum.
+         */
+        double apply( int from, int to );
+    }
+
+    private NodeRanges()
+    {
+    }
+
+    /**
+     * @return the sum of what the work returned for all ranges.
+     */
+    static double sum( ForkJoinPool pool, int nodeCount, Work work )
+    {
+        int grain = Math.max( 1, nodeCount / (pool.getParallelism() * 4) );
+        return pool.invoke( new Range( work, 0, nodeCount, grain ) );
+    }
+
+    private static class Range extends RecursiveTask<Double>
+    {
+        private final Work work;
+        private final int from, to, grain;
+
+        Range( Work work, int from, int to, int grain )
+        {
+            this.work = work;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected Double compute()
+        {
+            if ( to - from <= grain )
+            {
+                return work.apply( from, to );
+            }
+            int middle = (from + to) >>> 1;
+            Range left = new Range( work, from, middle, grain );
+            left.fork();
+            double right = new Range( work, middle, to, grain ).compute();
+            return left.join() + right;
+        }
+    }
+}
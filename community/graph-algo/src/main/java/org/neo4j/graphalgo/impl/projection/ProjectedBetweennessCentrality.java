@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.projection;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.neo4j.graphalgo.impl.centrality.BetweennessCentrality;
+import org.neo4j.graphdb.Direction;
+
+/**
+ * Betweenness centrality by the algorithm of Ulrik Brandes (2001), like {@link BetweennessCentrality} with a
+ * breadth first single source shortest path, over a {@link GraphProjection}. Ranges of start nodes are handled
+ * in parallel, each range with its own arrays for the search and its own sums, which are added to the result
+ * when the range is done. Every relationship has length one. As with {@link BetweennessCentrality}, the
+ * centrality over a projection loaded with {@link Direction#BOTH} is halved, since every path is then found
+ * from both of its ends.
+ * @complexity O(n * m), spread over the threads of the pool.
+ */
+public class ProjectedBetweennessCentrality
+{
+    private final GraphProjection projection;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param projection the graph to compute the centrality of, where paths follow the relationships in the
+     *            direction of the projection.
+     * @param pool the pool to compute in.
+     */
+    public ProjectedBetweennessCentrality( GraphProjection projection, ForkJoinPool pool )
+    {
+        this.projection = projection;
+        this.pool = pool;
+    }
+
+    /**
+     * @return the centrality of every node of the projection, by node index.
+     */
+    public double[] calculate()
+    {
+        final int nodeCount = projection.nodeCount();
+        final double[] centrality = new double[nodeCount];
+        final double factor = projection.direction() == Direction.BOTH ? 0.5 : 1.0;
+        NodeRanges.sum( pool, nodeCount, new NodeRanges.Work()
+        {
+            @Override
+            public double apply( int from, int to )
+            {
+                double[] dependencies = new double[nodeCount];
+                Search search = new Search( projection );
+                for ( int start = from; start < to; start++ )
+                {
+                    search.addDependencies( start, dependencies );
+                }
+                synchronized ( centrality )
+                {
+                    for ( int node = 0; node < nodeCount; node++ )
+                    {
+                        centrality[node] += dependencies[node] * factor;
+                    }
+                }
+                return 0;
+            }
+        } );
+        return centrality;
+    }
+
+    private static class Search
+    {
+        private final int[] offsets, targets;
+        private final int[] distance, order;
+        private final double[] paths, dependency;
+
+        Search( GraphProjection projection )
+        {
+            int nodeCount = projection.nodeCount();
+            this.offsets = projection.offsets();
+            this.targets = projection.targets();
+            this.distance = new int[nodeCount];
+            this.order = new int[nodeCount];
+            this.paths = new double[nodeCount];
+            this.dependency = new double[nodeCount];
+            Arrays.fill( distance, -1 );
+        }
+
+        /**
+         * Finds the shortest paths from the start node breadth first, then adds the dependency of the start node
+         * on every other node, deepest nodes first.
+         */
+        void addDependencies( int start, double[] dependencies )
+        {
+            // the nodes in the order they were reached, which doubles as the queue of the search
+            int reached = 0, next = 0;
+            order[reached++] = start;
+            distance[start] = 0;
+            paths[start] = 1;
+            while ( next < reached )
+            {
+                int node = order[next++];
+                for ( int i = offsets[node]; i < offsets[node + 1]; i++ )
+                {
+                    int target = targets[i];
+                    if ( distance[target] == -1 )
+                    {
+                        distance[target] = distance[node] + 1;
+                        order[reached++] = target;
+                    }
+                    if ( distance[target] == distance[node] + 1 )
+                    {
+                        paths[target] += paths[node];
+                    }
+                }
+            }
+
+            for ( int j = reached - 1; j >= 0; j-- )
+            {
+                int node = order[j];
+                for ( int i = offsets[node]; i < offsets[node + 1]; i++ )
+                {
+                    int target = targets[i];
+                    if ( distance[target] == distance[node] + 1 )
+                    {
+                        dependency[node] += paths[node] / paths[target] * (1 + dependency[target]);
+                    }
+                }
+                if ( node != start )
+                {
+                    dependencies[node] += dependency[node];
+                }
+            }
+
+            for ( int j = 0; j < reached; j++ )
+            {
+                int node = order[j];
+                distance[node] = -1;
+                paths[node] = 0;
+                dependency[node] = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.projection;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.neo4j.graphalgo.impl.centrality.ClosenessCentrality;
+
+/**
+ * Closeness centrality, like {@link ClosenessCentrality} with a breadth first single source shortest path, over
+ * a {@link GraphProjection}: one divided by the sum of the distances from a node to every node it can reach.
+ * A node that can't reach any other node gets zero. Ranges of nodes are handled in parallel, each with its own
+ * arrays for the search. Every relationship has length one.
+ * @complexity O(n * (n + m)), spread over the threads of the pool.
+ */
+public class ProjectedClosenessCentrality
+{
+    private final GraphProjection projection;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param projection the graph to compute the centrality of, where paths follow the relationships in the
+     *            direction of the projection.
+     * @param pool the pool to compute in.
+     */
+    public ProjectedClosenessCentrality( GraphProjection projection, ForkJoinPool pool )
+    {
+        this.projection = projection;
+        this.pool = pool;
+    }
+
+    /**
+     * @return the centrality of every node of the projection, by node index.
+     */
+    public double[] calculate()
+    {
+        final int nodeCount = projection.nodeCount();
+        final int[] offsets = projection.offsets();
+        final int[] targets = projection.targets();
+        final double[] centrality = new double[nodeCount];
+        NodeRanges.sum( pool, nodeCount, new NodeRanges.Work()
+        {
+            @Override
+            public double apply( int from, int to )
+            {
+                int[] distance = new int[nodeCount];
+                int[] queue = new int[nodeCount];
+                Arrays.fill( distance, -1 );
+                for ( int start = from; start < to; start++ )
+                {
+                    long distances = 0;
+                    int reached = 0, next = 0;
+                    queue[reached++] = start;
+                    distance[start] = 0;
+                    while ( next < reached )
+                    {
+                        int node = queue[next++];
+                        distances += distance[node];
+                        for ( int i = offsets[node]; i < offsets[node + 1]; i++ )
+                        {
+                            if ( distance[targets[i]] == -1 )
+                            {
+                                distance[targets[i]] = distance[node] + 1;
+                                queue[reached++] = targets[i];
+                            }
+                        }
+                    }
+                    centrality[start] = distances == 0 ? 0 : 1.0 / distances;
+                    for ( int j = 0; j < reached; j++ )
+                    {
+                        distance[queue[j]] = -1;
+                    }
+                }
+                return 0;
+            }
+        } );
+        return centrality;
+    }
+}
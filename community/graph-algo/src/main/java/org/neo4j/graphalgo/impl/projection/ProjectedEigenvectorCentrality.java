@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.projection;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.neo4j.graphalgo.impl.centrality.EigenvectorCentralityPower;
+
+/**
+ * Eigenvector centrality by the power method, like {@link EigenvectorCentralityPower}, over a
+ * {@link GraphProjection} instead of sets of nodes and relationships. Every iteration computes the new value of
+ * each node from the values of the nodes with a relationship to it, in parallel over ranges of nodes, and
+ * normalizes the result to unit length. Every relationship has weight one.
+ * @complexity O(i(n + m)) when i iterations are done, spread over the threads of the pool.
+ */
+public class ProjectedEigenvectorCentrality
+{
+    private final GraphProjection projection;
+    private final ForkJoinPool pool;
+    private final double precision;
+    private final int maxIterations;
+    private int iterations;
+
+    /**
+     * @param projection the graph to compute the centrality of, where the value of a node flows along the
+     *            relationships in the direction of the projection.
+     * @param pool the pool to compute in.
+     * @param precision the largest change, relative to its previous value, of the value of any node between the
+     *            last two iterations (ex. 0.01 for 1%).
+     * @param maxIterations the number of iterations to stop after even if the precision hasn't been reached.
+     */
+    public ProjectedEigenvectorCentrality( GraphProjection projection, ForkJoinPool pool, double precision,
+                                           int maxIterations )
+    {
+        this.projection = projection;
+        this.pool = pool;
+        this.precision = precision;
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * @return the centrality of every node of the projection, by node index.
+     */
+    public double[] calculate()
+    {
+        final GraphProjection incoming = projection.reverse();
+        final int[] offsets = incoming.offsets();
+        final int[] sources = incoming.targets();
+        int nodeCount = projection.nodeCount();
+
+        double[] values = new double[nodeCount];
+        Arrays.fill( values, 1 / Math.sqrt( nodeCount ) );
+        double[] next = new double[nodeCount];
+        iterations = 0;
+        while ( iterations < maxIterations )
+        {
+            iterations++;
+            final double[] current = values, updated = next;
+            double length = Math.sqrt( NodeRanges.sum( pool, nodeCount, new NodeRanges.Work()
+            {
+                @Override
+                public double apply( int from, int to )
+                {
+                    double squares = 0;
+                    for ( int node = from; node < to; node++ )
+                    {
+                        double value = 0;
+                        for ( int i = offsets[node]; i < offsets[node + 1]; i++ )
+                        {
+                            value += current[sources[i]];
+                        }
+                        updated[node] = value;
+                        squares += value * value;
+                    }
+                    return squares;
+                }
+            } ) );
+            if ( length == 0 )
+            {
+                // no relationships, so no node is more central than any other
+                return updated;
+            }
+            final double factor = 1 / length;
+            double changed = NodeRanges.sum( pool, nodeCount, new NodeRanges.Work()
+            {
+                @Override
+                public double apply( int from, int to )
+                {
+                    int changed = 0;
+                    for ( int node = from; node < to; node++ )
+                    {
+                        updated[node] *= factor;
+                        if ( !withinPrecision( current[node], updated[node] ) )
+                        {
+                            changed++;
+                        }
+                    }
+                    return changed;
+                }
+            } );
+            values = updated;
+            next = current;
+            if ( changed == 0 )
+            {
+                break;
+            }
+        }
+        return values;
+    }
+
+    private boolean withinPrecision( double previous, double value )
+    {
+        if ( previous == 0.0 )
+        {
+            return Math.abs( value ) <= precision;
+        }
+        double factor = Math.abs( value / previous );
+        return factor - precision <= 1.0 && factor + precision >= 1.0;
+    }
+
+    /**
+     * @return the number of iterations the last calculation did.
+     */
+    public int iterations()
+    {
+        return iterations;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.projection;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Writes values computed over a {@link GraphProjection} back to the graph, as a property on every node of the
+ * projection, a batch of nodes per transaction so that the transaction state of writing millions of values
+ * doesn't have to fit in memory at once.
+ */
+public class ProjectionWriter
+{
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    private final GraphDatabaseService graphDb;
+    private final int batchSize;
+
+    public ProjectionWriter( GraphDatabaseService graphDb )
+    {
+        this( graphDb, DEFAULT_BATCH_SIZE );
+    }
+
+    public ProjectionWriter( GraphDatabaseService graphDb, int batchSize )
+    {
+        this.graphDb = graphDb;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @param projection the projection the values were computed over.
+     * @param propertyKey the key to set the values as.
+     * @param values the value of every node of the projection, by node index.
+     */
+    public void write( GraphProjection projection, String propertyKey, double[] values )
+    {
+        int nodeCount = projection.nodeCount();
+        for ( int batchStart = 0; batchStart < nodeCount; batchStart += batchSize )
+        {
+            int batchEnd = Math.min( nodeCount, batchStart + batchSize );
+            try ( Transaction tx = graphDb.beginTx() )
+            {
+                for ( int index = batchStart; index < batchEnd; index++ )
+                {
+                    graphDb.getNodeById( projection.nodeId( index ) ).setProperty( propertyKey, values[index] );
+                }
+                tx.success();
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of int items, prioritized by double keys, that knows where in the heap every item is
+ * and so can lower the key of an item already in it instead of adding it again. Items are small,
+ * dense, non-negative ints, typically indexes into arrays kept by the caller. All state is kept in
+ * primitive arrays, so neither pushing nor popping allocates anything once the arrays have grown to size.
+ */
+public class IndexedDoubleHeap
+{
+    private static final int NOT_IN_HEAP = -1;
+
+    private int[] items;
+    private double[] keys;
+    private int[] positions;
+    private int size;
+
+    public IndexedDoubleHeap()
+    {
+        this( 16 );
+    }
+
+    public IndexedDoubleHeap( int initialCapacity )
+    {
+        initialCapacity = Math.max( initialCapacity, 1 );
+        items = new int[initialCapacity];
+        keys = new double[initialCapacity];
+        positions = new int[initialCapacity];
+        Arrays.fill( positions, NOT_IN_HEAP );
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public boolean contains( int item )
+    {
+        return item < positions.length && positions[item] != NOT_IN_HEAP;
+    }
+
+    /**
+     * @return the key of {@code item}, which must be in the heap.
+     */
+    public double key( int item )
+    {
+        return keys[positions[item]];
+    }
+
+    /**
+     * Adds {@code item} with the given key, or lowers its key if it's already in the heap with a higher one.
+     *
+     * @return {@code true} if the item was added or its key lowered, {@code false} if it was already in
+     * the heap with an equal or lower key.
+     */
+    public boolean insertOrDecrease( int item, double key )
+    {
+        if ( contains( item ) )
+        {
+            int position = positions[item];
+            if ( keys[position] <= key )
+            {
+                return false;
+            }
+            keys[position] = key;
+            siftUp( position );
+            return true;
+        }
+
+        ensureCapacity( item );
+        items[size] = item;
+        keys[size] = key;
+        positions[item] = size;
+        siftUp( size++ );
+        return true;
+    }
+
+    /**
+     * @return the item with the lowest key, without removing it. The heap must not be empty.
+     */
+    public int peek()
+    {
+        return items[0];
+    }
+
+    /**
+     * @return the lowest key in the heap. The heap must not be empty.
+     */
+    public double peekKey()
+    {
+        return keys[0];
+    }
+
+    /**
+     * Removes and returns the item with the lowest key. The heap must not be empty.
+     */
+    public int pop()
+    {
+        int top = items[0];
+        positions[top] = NOT_IN_HEAP;
+        if ( --size > 0 )
+        {
+            move( size, 0 );
+            siftDown( 0 );
+        }
+        return top;
+    }
+
+    public void clear()
+    {
+        for ( int i = 0; i < size; i++ )
+        {
+            positions[items[i]] = NOT_IN_HEAP;
+        }
+        size = 0;
+    }
+
+    private void siftUp( int position )
+    {
+        int item = items[position];
+        double key = keys[position];
+        while ( position > 0 )
+        {
+            int parent = (position - 1) >>> 1;
+            if ( keys[parent] <= key )
+            {
+                break;
+            }
+            move( parent, position );
+            position = parent;
+        }
+        place( item, key, position );
+    }
+
+    private void siftDown( int position )
+    {
+        int item = items[position];
+        double key = keys[position];
+        int half = size >>> 1;
+        while ( position < half )
+        {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if ( right < size && keys[right] < keys[child] )
+            {
+                child = right;
+            }
+            if ( key <= keys[child] )
+            {
+                break;
+            }
+            move( child, position );
+            position = child;
+        }
+        place( item, key, position );
+    }
+
+    private void move( int from, int to )
+    {
+        place( items[from], keys[from], to );
+    }
+
+    private void place( int item, double key, int position )
+    {
+        items[position] = item;
+        keys[position] = key;
+        positions[item] = position;
+    }
+
+    private void ensureCapacity( int item )
+    {
+        if ( size == items.length )
+        {
+            items = Arrays.copyOf( items, size * 2 );
+            keys = Arrays.copyOf( keys, size * 2 );
+        }
+        if ( item >= positions.length )
+        {
+            int oldLength = positions.length;
+            positions = Arrays.copyOf( positions, Math.max( oldLength * 2, item + 1 ) );
+            Arrays.fill( positions, oldLength, positions.length, NOT_IN_HEAP );
+        }
+    }
+}
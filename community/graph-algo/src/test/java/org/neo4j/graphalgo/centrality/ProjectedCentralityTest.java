@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.centrality;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.neo4j.graphalgo.impl.projection.GraphProjection;
+import org.neo4j.graphalgo.impl.projection.ProjectedBetweennessCentrality;
+import org.neo4j.graphalgo.impl.projection.ProjectedClosenessCentrality;
+import org.neo4j.graphalgo.impl.projection.ProjectedEigenvectorCentrality;
+import org.neo4j.graphalgo.impl.projection.ProjectionWriter;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.Label;
+
+import common.Neo4jAlgoTestCase;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProjectedCentralityTest extends Neo4jAlgoTestCase
+{
+    private final ForkJoinPool pool = new ForkJoinPool( 4 );
+
+    @After
+    public void shutdownPool()
+    {
+        pool.shutdown();
+    }
+
+    @Test
+    public void shouldComputeEigenvectorCentralityAlongTheRelationships()
+    {
+        graph.makeEdgeChain( "a,b,c,d" );
+        graph.makeEdges( "b,a,c,a" );
+        GraphProjection projection = GraphProjection.of( graph.getAllNodes(), Direction.OUTGOING );
+
+        double[] centrality = new ProjectedEigenvectorCentrality( projection, pool, 0.001, 1000 ).calculate();
+
+        assertCentrality( projection, centrality, "a", 0.693, 0.01 );
+        assertCentrality( projection, centrality, "b", 0.523, 0.01 );
+        assertCentrality( projection, centrality, "c", 0.395, 0.01 );
+        assertCentrality( projection, centrality, "d", 0.298, 0.01 );
+    }
+
+    @Test
+    public void shouldComputeEigenvectorCentralityAgainstTheRelationships()
+    {
+        graph.makeEdgeChain( "d,c,b,a" );
+        graph.makeEdges( "a,b,a,c" );
+        GraphProjection projection = GraphProjection.of( graph.getAllNodes(), Direction.INCOMING );
+
+        double[] centrality = new ProjectedEigenvectorCentrality( projection, pool, 0.001, 1000 ).calculate();
+
+        assertCentrality( projection, centrality, "a", 0.693, 0.01 );
+        assertCentrality( projection, centrality, "b", 0.523, 0.01 );
+        assertCentrality( projection, centrality, "c", 0.395, 0.01 );
+        assertCentrality( projection, centrality, "d", 0.298, 0.01 );
+    }
+
+    @Test
+    public void shouldComputeBetweennessCentralityOfAChain()
+    {
+        graph.makeEdgeChain( "a,b,c,d,e" );
+        GraphProjection projection = GraphProjection.of( graph.getAllNodes(), Direction.BOTH );
+
+        double[] centrality = new ProjectedBetweennessCentrality( projection, pool ).calculate();
+
+        assertCentrality( projection, centrality, "a", 0.0, 0.0 );
+        assertCentrality( projection, centrality, "b", 3.0, 0.0 );
+        assertCentrality( projection, centrality, "c", 4.0, 0.0 );
+        assertCentrality( projection, centrality, "d", 3.0, 0.0 );
+        assertCentrality( projection, centrality, "e", 0.0, 0.0 );
+    }
+
+    @Test
+    public void shouldSplitBetweennessCentralityOverPathsOfTheSameLength()
+    {
+        graph.makeEdgeChain( "a,b,c,d,a" );
+        GraphProjection projection = GraphProjection.of( graph.getAllNodes(), Direction.BOTH );
+
+        double[] centrality = new ProjectedBetweennessCentrality( projection, pool ).calculate();
+
+        assertCentrality( projection, centrality, "a", 0.5, 0.0 );
+        assertCentrality( projection, centrality, "b", 0.5, 0.0 );
+        assertCentrality( projection, centrality, "c", 0.5, 0.0 );
+        assertCentrality( projection, centrality, "d", 0.5, 0.0 );
+    }
+
+    @Test
+    public void shouldComputeBetweennessCentralityAlongTheRelationships()
+    {
+        graph.makeEdgeChain( "a,b,c" );
+        graph.makeEdgeChain( "d,b" );
+        GraphProjection projection = GraphProjection.of( graph.getAllNodes(), Direction.OUTGOING );
+
+        double[] centrality = new ProjectedBetweennessCentrality( projection, pool ).calculate();
+
+        // only a->b->c and d->b->c pass through b
+        assertCentrality( projection, centrality, "b", 2.0, 0.0 );
+        assertCentrality( projection, centrality, "c", 0.0, 0.0 );
+    }
+
+    @Test
+    public void shouldComputeClosenessCentrality()
+    {
+        graph.makeEdgeChain( "a,b,c,d,e" );
+        GraphProjection projection = GraphProjection.of( graph.getAllNodes(), Direction.BOTH );
+
+        double[] centrality = new ProjectedClosenessCentrality( projection, pool ).calculate();
+
+        assertCentrality( projection, centrality, "a", 1.0 / 10, 0.0 );
+        assertCentrality( projection, centrality, "b", 1.0 / 7, 0.0 );
+        assertCentrality( projection, centrality, "c", 1.0 / 6, 0.0 );
+        assertCentrality( projection, centrality, "d", 1.0 / 7, 0.0 );
+        assertCentrality( projection, centrality, "e", 1.0 / 10, 0.0 );
+    }
+
+    @Test
+    public void shouldOnlyProjectNodesWithTheLabelAndRelationshipsOfTheTypes()
+    {
+        Label label = DynamicLabel.label( "Projected" );
+        graph.makeEdgeChain( "a,b,c" );
+        graph.setCurrentRelType( MyRelTypes.R2 );
+        graph.makeEdgeChain( "a,c" );
+        graph.setCurrentRelType( MyRelTypes.R1 );
+        graph.makeEdgeChain( "c,outside" );
+        for ( String name : new String[]{"a", "b", "c"} )
+        {
+            graph.getNode( name ).addLabel( label );
+        }
+
+        GraphProjection projection = GraphProjection.load( graphDb, label, Direction.OUTGOING, MyRelTypes.R1 );
+
+        assertEquals( 3, projection.nodeCount() );
+        assertEquals( -1, projection.indexOf( graph.getNode( "outside" ).getId() ) );
+        assertEquals( 2, projection.relationshipCount() );
+        assertEquals( 1, projection.degree( indexOf( projection, "a" ) ) );
+        assertEquals( 0, projection.degree( indexOf( projection, "c" ) ) );
+        assertEquals( 1, projection.reverse().degree( indexOf( projection, "c" ) ) );
+    }
+
+    @Test
+    public void shouldWriteValuesBackInBatches()
+    {
+        graph.makeEdgeChain( "a,b,c,d,e" );
+        GraphProjection projection = GraphProjection.of( graph.getAllNodes(), Direction.BOTH );
+        double[] centrality = new ProjectedBetweennessCentrality( projection, pool ).calculate();
+
+        new ProjectionWriter( graphDb, 2 ).write( projection, "betweenness", centrality );
+
+        assertEquals( 4.0, graph.getNode( "c" ).getProperty( "betweenness" ) );
+        assertEquals( 0.0, graph.getNode( "e" ).getProperty( "betweenness" ) );
+    }
+
+    private void assertCentrality( GraphProjection projection, double[] centrality, String name, double expected,
+                                   double precision )
+    {
+        assertEquals( name, expected, centrality[indexOf( projection, name )], precision );
+    }
+
+    private int indexOf( GraphProjection projection, String name )
+    {
+        return projection.indexOf( graph.getNode( name ).getId() );
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.impl.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IndexedDoubleHeapTest
+{
+    @Test
+    public void shouldPopItemsInOrderOfKey() throws Exception
+    {
+        // GIVEN
+        IndexedDoubleHeap heap = new IndexedDoubleHeap( 2 );
+        heap.insertOrDecrease( 3, 5d );
+        heap.insertOrDecrease( 0, 1d );
+        heap.insertOrDecrease( 7, 3d );
+        heap.insertOrDecrease( 1, 4d );
+
+        // THEN
+        assertEquals( 4, heap.size() );
+        assertEquals( 0, heap.pop() );
+        assertEquals( 7, heap.pop() );
+        assertEquals( 1, heap.pop() );
+        assertEquals( 3, heap.pop() );
+        assertTrue( heap.isEmpty() );
+    }
+
+    @Test
+    public void shouldOnlyDecreaseKeyOfItemAlreadyInHeap() throws Exception
+    {
+        // GIVEN
+        IndexedDoubleHeap heap = new IndexedDoubleHeap();
+        heap.insertOrDecrease( 1, 2d );
+        heap.insertOrDecrease( 2, 3d );
+
+        // WHEN
+        boolean increased = heap.insertOrDecrease( 1, 4d );
+        boolean decreased = heap.insertOrDecrease( 2, 1d );
+
+        // THEN
+        assertFalse( increased );
+        assertTrue( decreased );
+        assertEquals( 2, heap.size() );
+        assertEquals( 2, heap.peek() );
+        assertEquals( 1d, heap.peekKey(), 0d );
+        assertEquals( 2d, heap.key( 1 ), 0d );
+        assertEquals( 2, heap.pop() );
+        assertFalse( heap.contains( 2 ) );
+        assertEquals( 1, heap.pop() );
+    }
+
+    @Test
+    public void shouldAllowItemToBeAddedAgainAfterPopOrClear() throws Exception
+    {
+        // GIVEN
+        IndexedDoubleHeap heap = new IndexedDoubleHeap();
+        heap.insertOrDecrease( 1, 2d );
+        heap.insertOrDecrease( 2, 3d );
+        heap.pop();
+        heap.clear();
+
+        // WHEN
+        heap.insertOrDecrease( 1, 5d );
+
+        // THEN
+        assertFalse( heap.contains( 2 ) );
+        assertEquals( 1, heap.size() );
+        assertEquals( 5d, heap.key( 1 ), 0d );
+    }
+
+    @Test
+    public void shouldKeepOrderUnderRandomInsertsAndDecreases() throws Exception
+    {
+        // GIVEN
+        Random random = new Random( 1234 );
+        int items = 1000;
+        IndexedDoubleHeap heap = new IndexedDoubleHeap();
+        double[] keys = new double[items];
+        Arrays.fill( keys, Double.POSITIVE_INFINITY );
+
+        // WHEN
+        for ( int i = 0; i < items * 5; i++ )
+        {
+            int item = random.nextInt( items );
+            double key = random.nextDouble() * 100;
+            heap.insertOrDecrease( item, key );
+            keys[item] = Math.min( keys[item], key );
+        }
+
+        // THEN
+        double previous = Double.NEGATIVE_INFINITY;
+        while ( !heap.isEmpty() )
+        {
+            double key = heap.peekKey();
+            int item = heap.pop();
+            assertEquals( keys[item], key, 0d );
+            assertTrue( key >= previous );
+            previous = key;
+        }
+    }
+}
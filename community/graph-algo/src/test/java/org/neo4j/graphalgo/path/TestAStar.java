@@ -36,6 +36,7 @@ import org.junit.runners.Parameterized.Parameters;
 import org.neo4j.graphalgo.EstimateEvaluator;
 import org.neo4j.graphalgo.GraphAlgoFactory;
 import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.PrimitiveEstimateEvaluator;
 import org.neo4j.graphalgo.WeightedPath;
 import org.neo4j.graphalgo.impl.path.TraversalAStar;
 import org.neo4j.graphdb.Node;
@@ -54,6 +55,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import static org.neo4j.graphalgo.CommonEvaluators.doubleCostEvaluator;
+import static org.neo4j.graphalgo.CommonEvaluators.primitiveCostEvaluator;
 import static org.neo4j.graphalgo.GraphAlgoFactory.aStar;
 import static org.neo4j.graphdb.Direction.OUTGOING;
 
@@ -241,7 +243,7 @@ public class TestAStar extends Neo4jAlgoTestCase
     public void canUseBranchState() throws Exception
     {
         // This test doesn't use the predefined finder, which only means an unnecessary instantiation
-        // if such an object. And this test will be run twice (once for each finder type in data()).
+        // if such an object. And this test will be run once for each finder type in data().
 
         Node nodeA = graph.makeNode( "A", "x", 0d, "y", 0d );
         Node nodeB = graph.makeNode( "B", "x", 2d, "y", 1d );
@@ -319,6 +321,15 @@ public class TestAStar extends Neo4jAlgoTestCase
         assertPath( best1_4, node1, node2, node3, node4 );
     }
 
+    static PrimitiveEstimateEvaluator PRIMITIVE_ESTIMATE_EVALUATOR = new PrimitiveEstimateEvaluator()
+    {
+        @Override
+        public double getCost( Node node, Node goal )
+        {
+            return ESTIMATE_EVALUATOR.getCost( node, goal );
+        }
+    };
+
     static EstimateEvaluator<Double> ESTIMATE_EVALUATOR = new EstimateEvaluator<Double>()
     {
         @Override
@@ -343,6 +354,10 @@ public class TestAStar extends Neo4jAlgoTestCase
             },
             {
                 new TraversalAStar( PathExpanders.allTypesAndDirections(), doubleCostEvaluator( "length" ), ESTIMATE_EVALUATOR )
+            },
+            {
+                GraphAlgoFactory.primitiveAStar( PathExpanders.allTypesAndDirections(), primitiveCostEvaluator( "length" ),
+                        PRIMITIVE_ESTIMATE_EVALUATOR )
             }
         } );
     }
@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.graphalgo.path;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import org.neo4j.graphalgo.GraphAlgoFactory;
+import org.neo4j.graphalgo.PathFinder;
+import org.neo4j.graphalgo.WeightedPath;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.PathExpanders;
+import org.neo4j.graphdb.Relationship;
+
+import common.Neo4jAlgoTestCase;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import static org.neo4j.graphalgo.CommonEvaluators.doubleCostEvaluator;
+
+@RunWith( Parameterized.class )
+public class TestPrimitiveDijkstra extends Neo4jAlgoTestCase
+{
+    @Parameters
+    public static Collection<Object[]> data()
+    {
+        return Arrays.asList( new Object[][] { { false }, { true } } );
+    }
+
+    private final boolean bidirectional;
+
+    public TestPrimitiveDijkstra( boolean bidirectional )
+    {
+        this.bidirectional = bidirectional;
+    }
+
+    @Test
+    public void shouldFindCheapestPathInSmallGraph() throws Exception
+    {
+        /* Layout:
+         *                       (y)
+         *                        ^
+         *                        [2]  _____[1]___
+         *                          \ v           |
+         * (start)--[1]->(a)--[9]-->(x)<-        (e)--[2]->(f)
+         *                |         ^ ^^  \       ^
+         *               [1]  ---[7][5][3] -[3]  [1]
+         *                v  /       | /      \  /
+         *               (b)--[1]-->(c)--[1]->(d)
+         */
+        graph.makeEdge( "start", "a", "cost", 1d );
+        graph.makeEdge( "a", "x", "cost", 9d );
+        graph.makeEdge( "a", "b", "cost", 1d );
+        graph.makeEdge( "b", "x", "cost", 7d );
+        graph.makeEdge( "b", "c", "cost", 1d );
+        graph.makeEdge( "c", "x", "cost", 5d );
+        Relationship shortCTOXRelationship = graph.makeEdge( "c", "x", "cost", 3 );
+        graph.makeEdge( "c", "d", "cost", 1d );
+        graph.makeEdge( "d", "x", "cost", 4d );
+        graph.makeEdge( "d", "e", "cost", 1d );
+        graph.makeEdge( "e", "x", "cost", 1.5d );
+        graph.makeEdge( "e", "f", "cost", 2d );
+        graph.makeEdge( "x", "y", "cost", 2d );
+
+        // WHEN
+        WeightedPath path = finder( Direction.OUTGOING ).findSinglePath( graph.getNode( "start" ), graph.getNode( "y" ) );
+
+        // THEN
+        assertPathDef( path, "start", "a", "b", "c", "x", "y" );
+        assertEquals( 8d, path.weight(), 0d );
+        assertTrue( path + " should've contained " + shortCTOXRelationship, contains( path, shortCTOXRelationship ) );
+    }
+
+    @Test
+    public void shouldRespectDirectionOfExpander() throws Exception
+    {
+        graph.makeEdge( "a", "b", "cost", 1d );
+        graph.makeEdge( "c", "b", "cost", 1d );
+        graph.makeEdge( "a", "c", "cost", 5d );
+
+        assertPathDef( finder( Direction.OUTGOING ).findSinglePath( graph.getNode( "a" ), graph.getNode( "c" ) ),
+                "a", "c" );
+        assertPathDef( finder( Direction.BOTH ).findSinglePath( graph.getNode( "a" ), graph.getNode( "c" ) ),
+                "a", "b", "c" );
+        assertNull( finder( Direction.OUTGOING ).findSinglePath( graph.getNode( "c" ), graph.getNode( "a" ) ) );
+    }
+
+    @Test
+    public void shouldFindPathOfLengthZeroFromNodeToItself() throws Exception
+    {
+        graph.makeEdge( "a", "b", "cost", 1d );
+
+        WeightedPath path = finder( Direction.BOTH ).findSinglePath( graph.getNode( "a" ), graph.getNode( "a" ) );
+
+        assertPathDef( path, "a" );
+        assertEquals( 0d, path.weight(), 0d );
+    }
+
+    @Test
+    public void shouldReturnAtMostOnePathFromFindAllPaths() throws Exception
+    {
+        graph.makeEdge( "a", "b", "cost", 1d );
+        graph.makeEdge( "a", "b", "cost", 1d );
+
+        PathFinder<WeightedPath> finder = finder( Direction.BOTH );
+        int count = 0;
+        for ( WeightedPath path : finder.findAllPaths( graph.getNode( "a" ), graph.getNode( "b" ) ) )
+        {
+            assertPathDef( path, "a", "b" );
+            count++;
+        }
+        assertEquals( 1, count );
+        assertEquals( 1, finder.metadata().getNumberOfPathsReturned() );
+    }
+
+    @Test
+    public void shouldFindAsCheapPathsAsDijkstraInRandomGraph() throws Exception
+    {
+        // GIVEN
+        Random random = new Random( 42 );
+        int nodeCount = 200;
+        for ( int i = 0; i < nodeCount * 3; i++ )
+        {
+            graph.makeEdge( String.valueOf( random.nextInt( nodeCount ) ), String.valueOf( random.nextInt( nodeCount ) ),
+                    "cost", 1 + random.nextInt( 20 ) );
+        }
+        PathFinder<WeightedPath> reference = GraphAlgoFactory.dijkstra(
+                PathExpanders.forTypeAndDirection( MyRelTypes.R1, Direction.OUTGOING ), doubleCostEvaluator( "cost" ) );
+        PathFinder<WeightedPath> finder = finder( Direction.OUTGOING );
+
+        for ( int i = 0; i < 50; i++ )
+        {
+            Node start = graph.getNode( String.valueOf( random.nextInt( nodeCount ) ) );
+            Node end = graph.getNode( String.valueOf( random.nextInt( nodeCount ) ) );
+            if ( start == null || end == null )
+            {
+                continue;
+            }
+
+            // WHEN
+            WeightedPath expected = reference.findSinglePath( start, end );
+            WeightedPath actual = finder.findSinglePath( start, end );
+
+            // THEN
+            if ( expected == null )
+            {
+                assertNull( actual );
+            }
+            else
+            {
+                assertEquals( expected.weight(), actual.weight(), 0.00001 );
+                assertEquals( start, actual.startNode() );
+                assertEquals( end, actual.endNode() );
+                double weight = 0;
+                for ( Relationship relationship : actual.relationships() )
+                {
+                    weight += ((Number) relationship.getProperty( "cost" )).doubleValue();
+                }
+                assertEquals( actual.weight(), weight, 0.00001 );
+            }
+        }
+    }
+
+    private PathFinder<WeightedPath> finder( Direction direction )
+    {
+        return GraphAlgoFactory.primitiveDijkstra(
+                PathExpanders.forTypeAndDirection( MyRelTypes.R1, direction ), "cost", bidirectional );
+    }
+
+    private boolean contains( WeightedPath path, Relationship relationship )
+    {
+        for ( Relationship rel : path.relationships() )
+        {
+            if ( rel.equals( relationship ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
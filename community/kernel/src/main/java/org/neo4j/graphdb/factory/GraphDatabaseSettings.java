@@ -36,6 +36,7 @@ import org.neo4j.kernel.impl.cache.MonitorGc;
 import static org.neo4j.helpers.Settings.ANY;
 import static org.neo4j.helpers.Settings.BOOLEAN;
 import static org.neo4j.helpers.Settings.BYTES;
+import static org.neo4j.helpers.Settings.DOUBLE;
 import static org.neo4j.helpers.Settings.FALSE;
 import static org.neo4j.helpers.Settings.INTEGER;
 import static org.neo4j.helpers.Settings.NO_DEFAULT;
@@ -48,6 +49,7 @@ import static org.neo4j.helpers.Settings.matches;
 import static org.neo4j.helpers.Settings.min;
 import static org.neo4j.helpers.Settings.options;
 import static org.neo4j.helpers.Settings.port;
+import static org.neo4j.helpers.Settings.range;
 import static org.neo4j.helpers.Settings.setting;
 
 /**
@@ -97,6 +99,27 @@ public abstract class GraphDatabaseSettings
     @Description("Used to set the number of Cypher query execution plans that are cached.")
     public static Setting<Integer> query_cache_size = setting( "query_cache_size", INTEGER, "100", min( 0 ) );
 
+    @Description("Number of rows Cypher 2.1 passes between pipes at a time, for the parts of a query that can " +
+            "work on batches of rows. Set to 0 to pass rows one at a time.")
+    public static Setting<Integer> cypher_execution_batch_size = setting( "cypher_execution_batch_size", INTEGER,
+            "0", min( 0 ) );
+
+    @Description("Number of rows a Cypher 2.1 ORDER BY keeps in memory. Past that, sorted runs of rows are written " +
+            "to temporary files and merged when the result is read. Set to 0 to always sort in memory.")
+    public static Setting<Integer> cypher_sort_buffer_size = setting( "cypher_sort_buffer_size", INTEGER,
+            "1000000", min( 0 ) );
+
+    @Description("Number of groups a Cypher 2.1 aggregation keeps in memory. Past that, rows of new groups are " +
+            "written to temporary files and aggregated separately. Set to 0 to always aggregate in memory.")
+    public static Setting<Integer> cypher_aggregation_buffer_size = setting( "cypher_aggregation_buffer_size",
+            INTEGER, "1000000", min( 0 ) );
+
+    @Description("How far the statistics a cached Cypher 2.1 plan was costed with may drift before the plan is " +
+            "planned again, as the difference relative to the larger of the old and the new value. Only has an " +
+            "effect when statistics are enabled.")
+    public static final Setting<Double> cypher_plan_statistics_divergence_threshold = setting(
+            "cypher_plan_statistics_divergence_threshold", DOUBLE, "0.5", range( 0.0, 1.0 ) );
+
     @Description("Determines if Cypher will allow using file URL when importing data using LOAD CSV. Setting this " +
             "value to false will cause Neo4j to fail LOAD CSV queries that import data from the file system")
     public static Setting<Boolean> allow_file_urls = setting( "allow_file_urls", BOOLEAN, TRUE );
@@ -168,6 +191,11 @@ public abstract class GraphDatabaseSettings
                   "Default is 25M" )
     public static final Setting<Long> logical_log_rotation_threshold = setting( "logical_log_rotation_threshold", BYTES, "25M" );
 
+    @Description( "Let transactions committing concurrently share a single force of the logical log, instead of " +
+                  "forcing it once per transaction. Raises write throughput when many threads commit at the same " +
+                  "time, without weakening durability." )
+    public static final Setting<Boolean> logical_log_group_commit = setting( "logical_log_group_commit", BOOLEAN, FALSE );
+
     @Description("Use a quick approach for rebuilding the ID generators. This give quicker recovery time, " +
             "but will limit the ability to reuse the space of deleted entities.")
     public static final Setting<Boolean> rebuild_idgenerators_fast = setting("rebuild_idgenerators_fast", BOOLEAN, TRUE );
@@ -179,6 +207,18 @@ public abstract class GraphDatabaseSettings
     @Description("Target size for pages of mapped memory.")
     public static final Setting<Long> mapped_memory_page_size = setting("mapped_memory_page_size", BYTES, "1M" );
 
+    @Description("Use a window pool with fixed size pages, a concurrent page table and lock-free page pinning " +
+            "for accessing the store files, instead of the default one. Scales better with many concurrent " +
+            "readers. Pages are at most mapped_memory_page_size big. Stores without any mapped memory keep " +
+            "using the default window pool.")
+    public static final Setting<Boolean> use_paged_window_pool = setting( "use_paged_window_pool", BOOLEAN, FALSE );
+
+    @Description("Hand out new node, relationship, relationship group and property ids from per thread id ranges " +
+            "instead of synchronizing on every id allocation. Ids left unused in those ranges are reused after a " +
+            "restart. Other ids, such as those of tokens and dynamic records, are allocated as usual.")
+    public static final Setting<Boolean> use_concurrent_id_generator = setting( "use_concurrent_id_generator",
+            BOOLEAN, FALSE );
+
     @Description("The size to allocate for a memory mapping pool to be shared between all stores.")
     public static final Setting<Long> all_stores_total_mapped_memory_size = setting("all_stores_total_mapped_memory_size", BYTES, "500M" );
 
@@ -20,9 +20,12 @@
 package org.neo4j.kernel;
 
 import java.io.File;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
+import org.neo4j.kernel.impl.nioneo.store.ConcurrentIdGenerator;
 import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
 import org.neo4j.kernel.impl.nioneo.store.IdGenerator;
 import org.neo4j.kernel.impl.nioneo.store.IdGeneratorImpl;
@@ -34,12 +37,34 @@ import org.neo4j.kernel.impl.nioneo.store.IdGeneratorImpl;
 public class DefaultIdGeneratorFactory
     implements IdGeneratorFactory
 {
+    // The ids allocated by many transactions at the same time, others are allocated rarely enough not to contend
+    private static final Set<IdType> CONCURRENT_ID_TYPES =
+            EnumSet.of( IdType.NODE, IdType.RELATIONSHIP, IdType.RELATIONSHIP_GROUP, IdType.PROPERTY );
+
     private final Map<IdType, IdGenerator> generators = new HashMap<IdType, IdGenerator>();
+    private final boolean concurrent;
+
+    public DefaultIdGeneratorFactory()
+    {
+        this( false );
+    }
+
+    /**
+     * @param concurrent whether to open {@link ConcurrentIdGenerator}s instead of {@link IdGeneratorImpl}s for
+     * node, relationship, relationship group and property ids.
+     */
+    public DefaultIdGeneratorFactory( boolean concurrent )
+    {
+        this.concurrent = concurrent;
+    }
 
     public IdGenerator open( FileSystemAbstraction fs, File fileName, int grabSize, IdType idType, long highId )
     {
-        IdGenerator generator = new IdGeneratorImpl( fs, fileName, grabSize, idType.getMaxValue(),
-                idType.allowAggressiveReuse(), highId );
+        IdGenerator generator = concurrent && CONCURRENT_ID_TYPES.contains( idType ) ?
+                new ConcurrentIdGenerator( fs, fileName, grabSize, ConcurrentIdGenerator.DEFAULT_BATCH_SIZE,
+                        idType.getMaxValue(), idType.allowAggressiveReuse(), highId ) :
+                new IdGeneratorImpl( fs, fileName, grabSize, idType.getMaxValue(),
+                        idType.allowAggressiveReuse(), highId );
         generators.put( idType, generator );
         return generator;
     }
@@ -122,6 +122,7 @@ import org.neo4j.kernel.impl.locking.LockService;
 import org.neo4j.kernel.impl.locking.Locks;
 import org.neo4j.kernel.impl.locking.ResourceTypes;
 import org.neo4j.kernel.impl.locking.community.CommunityLockManger;
+import org.neo4j.kernel.impl.locking.striped.StripedLockManager;
 import org.neo4j.kernel.impl.nioneo.store.DefaultWindowPoolFactory;
 import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
 import org.neo4j.kernel.impl.nioneo.store.StoreFactory;
@@ -219,6 +220,8 @@ public abstract class InternalAbstractGraphDatabase
         public static final Setting<String> lock_manager = setting( "lock_manager", STRING, "" );
         public static final Setting<Boolean> statistics_enabled =
                 setting("statistics_enabled", Settings.BOOLEAN, Settings.FALSE);
+        public static final Setting<Integer> statistics_sweep_rate =
+                setting("statistics_sweep_rate", Settings.INTEGER, "10000", Settings.min( 1 ) );
     }
 
     private static final long MAX_NODE_ID = IdType.NODE.getMaxValue();
@@ -910,7 +913,7 @@ public abstract class InternalAbstractGraphDatabase
 
     protected IdGeneratorFactory createIdGeneratorFactory()
     {
-        return new DefaultIdGeneratorFactory();
+        return new DefaultIdGeneratorFactory( config.get( GraphDatabaseSettings.use_concurrent_id_generator ) );
     }
 
     protected Locks createLockManager()
@@ -935,11 +938,15 @@ public abstract class InternalAbstractGraphDatabase
         {
             return new CommunityLockManger();
         }
+        else if( key.equals( "striped" ) )
+        {
+            return new StripedLockManager( ResourceTypes.values() );
+        }
         else if(key.equals( "" ))
         {
             logging.getMessagesLog( InternalAbstractGraphDatabase.class )
-                    .info( "No locking implementation specified, defaulting to 'community'" );
-            return new CommunityLockManger();
+                    .info( "No locking implementation specified, defaulting to 'striped'" );
+            return new StripedLockManager( ResourceTypes.values() );
         }
 
         throw new IllegalArgumentException( "No lock manager found with the name '" + key + "'." );
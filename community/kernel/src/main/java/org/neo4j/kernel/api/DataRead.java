@@ -28,6 +28,8 @@ import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
 import org.neo4j.kernel.api.exceptions.index.IndexNotFoundKernelException;
 import org.neo4j.kernel.api.exceptions.schema.IndexBrokenKernelException;
 import org.neo4j.kernel.api.index.IndexDescriptor;
+import org.neo4j.kernel.api.index.IndexOrder;
+import org.neo4j.kernel.api.index.IndexSeek;
 import org.neo4j.kernel.api.properties.DefinedProperty;
 import org.neo4j.kernel.api.properties.Property;
 
@@ -48,10 +50,24 @@ interface DataRead
     PrimitiveLongIterator nodesGetFromIndexLookup( IndexDescriptor index, Object value )
             throws IndexNotFoundKernelException;
 
+    /**
+     * Returns the nodes whose indexed value is covered by the given seek, in the requested order.
+     *
+     * @throws org.neo4j.kernel.api.exceptions.index.IndexNotFoundKernelException
+     *          if no such index found.
+     */
+    PrimitiveLongIterator nodesGetFromIndexSeek( IndexDescriptor index, IndexSeek seek, IndexOrder order )
+            throws IndexNotFoundKernelException;
+
     PrimitiveLongIterator nodeGetRelationships( long nodeId, Direction direction, int... relTypes ) throws EntityNotFoundException;
 
     PrimitiveLongIterator nodeGetRelationships( long nodeId, Direction direction ) throws EntityNotFoundException;
 
+    /**
+     * Visits the end points and type of the given relationship, including relationships created in this transaction.
+     */
+    void relationshipVisit( long relationshipId, RelationshipVisitor visitor ) throws EntityNotFoundException;
+
     /**
      * Returns node id of unique node found in the given unique index for value or
      * {@link StatementConstants#NO_SUCH_NODE} if the index does not contain a
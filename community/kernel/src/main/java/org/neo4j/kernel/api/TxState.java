@@ -25,6 +25,7 @@ import java.util.Set;
 import org.neo4j.collection.primitive.PrimitiveIntIterator;
 import org.neo4j.collection.primitive.PrimitiveLongIterator;
 import org.neo4j.graphdb.Direction;
+import org.neo4j.helpers.Predicate;
 import org.neo4j.kernel.api.constraints.UniquenessConstraint;
 import org.neo4j.kernel.api.index.IndexDescriptor;
 import org.neo4j.kernel.api.properties.DefinedProperty;
@@ -185,10 +186,19 @@ public interface TxState
 
     DiffSets<Long> nodesWithChangedProperty( int propertyKeyId, Object value );
 
+    DiffSets<Long> nodesWithChangedPropertyValues( int propertyKeyId, Predicate<Object> valueFilter );
+
     boolean relationshipIsAddedInThisTx( long relationshipId );
 
     boolean relationshipIsDeletedInThisTx( long relationshipId );
 
+    /**
+     * Visits the given relationship if it was created in this transaction.
+     *
+     * @return {@code true} if the relationship was created in this transaction and has been visited.
+     */
+    boolean relationshipVisit( long relationshipId, RelationshipVisitor visitor );
+
     UpdateTriState labelState( long nodeId, int labelId );
 
     void relationshipDoDelete( long relationshipId, long startNode, long endNode, int type );
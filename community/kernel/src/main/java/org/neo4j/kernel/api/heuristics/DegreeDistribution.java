@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.api.heuristics;
+
+/**
+ * The distribution of relationship degrees over a set of nodes, for instance all nodes with a certain label
+ * having relationships of a certain type.
+ */
+public interface DegreeDistribution
+{
+    /** Number of nodes the distribution was built from. */
+    long count();
+
+    /** Average degree, 0 if no nodes have been seen. */
+    double mean();
+
+    /** Highest degree seen. */
+    long max();
+
+    /**
+     * The degree that the given fraction of the nodes are at or below, e.g. 0.99 for the 99th percentile.
+     * The result is approximate, but never higher than {@link #max()}.
+     */
+    long percentile( double fraction );
+
+    DegreeDistribution EMPTY = new DegreeDistribution()
+    {
+        @Override
+        public long count()
+        {
+            return 0;
+        }
+
+        @Override
+        public double mean()
+        {
+            return 0;
+        }
+
+        @Override
+        public long max()
+        {
+            return 0;
+        }
+
+        @Override
+        public long percentile( double fraction )
+        {
+            return 0;
+        }
+    };
+}
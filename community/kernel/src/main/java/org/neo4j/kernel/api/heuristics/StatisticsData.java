@@ -31,9 +31,12 @@ public interface StatisticsData
     /** Relationship type id -> relative occurrence, value between 0 and 1. The total adds up to 1 */
     double relationshipTypeDistribution(int relType);
 
-    /** Relationship degree distribution for a label/rel type/direction triplet. */
+    /** Average relationship degree for a label/rel type/direction triplet. */
     double degree( int labelId, int relType, Direction direction );
 
+    /** Relationship degree distribution for a label/rel type/direction triplet. */
+    DegreeDistribution degreeDistribution( int labelId, int relType, Direction direction );
+
     /** Ratio of live nodes (i.e. nodes that are not deleted or corrupted) of all addressable nodes */
     double liveNodesRatio();
 
@@ -27,11 +27,33 @@ import org.neo4j.graphdb.Resource;
  * Reader for an {@link IndexAccessor}.
  * Must honor repeatable reads, which means that if a lookup is executed multiple times the same result set
  * must be returned.
+ * <p>
+ * Besides exact lookups a reader can seek over ranges of numbers or strings, and over strings sharing a prefix.
+ * Seeks can return their nodes ordered by the indexed value, see {@link IndexOrder}.
  */
 public interface IndexReader extends Resource
 {
     PrimitiveLongIterator lookup( Object value );
 
+    /**
+     * Nodes with a number value between {@code lower} and {@code upper}. A {@code null} bound leaves
+     * that end of the range open.
+     */
+    PrimitiveLongIterator rangeSeekByNumber( Number lower, boolean includeLower, Number upper, boolean includeUpper,
+                                             IndexOrder order );
+
+    /**
+     * Nodes with a string value between {@code lower} and {@code upper}. A {@code null} bound leaves
+     * that end of the range open.
+     */
+    PrimitiveLongIterator rangeSeekByString( String lower, boolean includeLower, String upper, boolean includeUpper,
+                                             IndexOrder order );
+
+    /**
+     * Nodes with a string value starting with {@code prefix}.
+     */
+    PrimitiveLongIterator rangeSeekByPrefix( String prefix, IndexOrder order );
+
     IndexReader EMPTY = new IndexReader()
     {
         @Override
@@ -40,6 +62,26 @@ public interface IndexReader extends Resource
             return PrimitiveLongCollections.emptyIterator();
         }
 
+        @Override
+        public PrimitiveLongIterator rangeSeekByNumber( Number lower, boolean includeLower, Number upper,
+                                                        boolean includeUpper, IndexOrder order )
+        {
+            return PrimitiveLongCollections.emptyIterator();
+        }
+
+        @Override
+        public PrimitiveLongIterator rangeSeekByString( String lower, boolean includeLower, String upper,
+                                                        boolean includeUpper, IndexOrder order )
+        {
+            return PrimitiveLongCollections.emptyIterator();
+        }
+
+        @Override
+        public PrimitiveLongIterator rangeSeekByPrefix( String prefix, IndexOrder order )
+        {
+            return PrimitiveLongCollections.emptyIterator();
+        }
+
         @Override
         public void close()
         {
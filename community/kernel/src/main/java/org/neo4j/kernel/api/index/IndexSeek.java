@@ -0,0 +1,256 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.api.index;
+
+import org.neo4j.collection.primitive.PrimitiveLongIterator;
+
+import static java.lang.String.format;
+
+/**
+ * A seek over a range of values in a schema index, as opposed to an exact {@link IndexReader#lookup(Object) lookup}.
+ * <p>
+ * Besides running itself against an {@link IndexReader}, a seek knows which property values it covers and how
+ * they are ordered, which is what is needed to apply transaction state on top of the committed index entries.
+ */
+public abstract class IndexSeek
+{
+    /**
+     * Indexes only have to keep strings of up to this many characters whole. Seeks for longer strings may get
+     * nodes with values which aren't {@link #covers(Object) covered} from an index, see {@link #isExact()}.
+     */
+    public static final int MAX_EXACT_STRING_LENGTH = 500;
+
+    public static IndexSeek numberRange( Number lower, boolean includeLower, Number upper, boolean includeUpper )
+    {
+        return new NumberRange( lower, includeLower, upper, includeUpper );
+    }
+
+    public static IndexSeek stringRange( String lower, boolean includeLower, String upper, boolean includeUpper )
+    {
+        return new StringRange( lower, includeLower, upper, includeUpper );
+    }
+
+    public static IndexSeek stringPrefix( String prefix )
+    {
+        return new StringPrefix( prefix );
+    }
+
+    public abstract PrimitiveLongIterator seek( IndexReader reader, IndexOrder order );
+
+    /**
+     * @return whether or not an index gives exactly the nodes covered by this seek. If not, the nodes it gives
+     * have to be checked against their actual values.
+     */
+    public abstract boolean isExact();
+
+    /**
+     * @return whether or not a node with the given property value should be part of the result of this seek.
+     */
+    public abstract boolean covers( Object value );
+
+    /**
+     * Compares two values {@link #covers(Object) covered} by this seek, in the order the index would return them.
+     */
+    public abstract int compare( Object left, Object right );
+
+    private static class NumberRange extends IndexSeek
+    {
+        private final Number lower;
+        private final boolean includeLower;
+        private final Number upper;
+        private final boolean includeUpper;
+
+        NumberRange( Number lower, boolean includeLower, Number upper, boolean includeUpper )
+        {
+            this.lower = lower;
+            this.includeLower = includeLower;
+            this.upper = upper;
+            this.includeUpper = includeUpper;
+        }
+
+        @Override
+        public PrimitiveLongIterator seek( IndexReader reader, IndexOrder order )
+        {
+            return reader.rangeSeekByNumber( lower, includeLower, upper, includeUpper, order );
+        }
+
+        @Override
+        public boolean isExact()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean covers( Object value )
+        {
+            if ( !(value instanceof Number) )
+            {
+                return false;
+            }
+            double number = ((Number) value).doubleValue();
+            if ( lower != null )
+            {
+                int comparison = Double.compare( number, lower.doubleValue() );
+                if ( comparison < 0 || (comparison == 0 && !includeLower) )
+                {
+                    return false;
+                }
+            }
+            if ( upper != null )
+            {
+                int comparison = Double.compare( number, upper.doubleValue() );
+                if ( comparison > 0 || (comparison == 0 && !includeUpper) )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int compare( Object left, Object right )
+        {
+            return Double.compare( ((Number) left).doubleValue(), ((Number) right).doubleValue() );
+        }
+
+        @Override
+        public String toString()
+        {
+            return format( "%s%s..%s%s", includeLower ? "[" : "(", lower, upper, includeUpper ? "]" : ")" );
+        }
+    }
+
+    private static class StringRange extends IndexSeek
+    {
+        private final String lower;
+        private final boolean includeLower;
+        private final String upper;
+        private final boolean includeUpper;
+
+        StringRange( String lower, boolean includeLower, String upper, boolean includeUpper )
+        {
+            this.lower = lower;
+            this.includeLower = includeLower;
+            this.upper = upper;
+            this.includeUpper = includeUpper;
+        }
+
+        @Override
+        public PrimitiveLongIterator seek( IndexReader reader, IndexOrder order )
+        {
+            return reader.rangeSeekByString( lower, includeLower, upper, includeUpper, order );
+        }
+
+        @Override
+        public boolean isExact()
+        {
+            return isShort( lower ) && isShort( upper );
+        }
+
+        @Override
+        public boolean covers( Object value )
+        {
+            if ( !isString( value ) )
+            {
+                return false;
+            }
+            String string = value.toString();
+            if ( lower != null )
+            {
+                int comparison = string.compareTo( lower );
+                if ( comparison < 0 || (comparison == 0 && !includeLower) )
+                {
+                    return false;
+                }
+            }
+            if ( upper != null )
+            {
+                int comparison = string.compareTo( upper );
+                if ( comparison > 0 || (comparison == 0 && !includeUpper) )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int compare( Object left, Object right )
+        {
+            return left.toString().compareTo( right.toString() );
+        }
+
+        @Override
+        public String toString()
+        {
+            return format( "%s'%s'..'%s'%s", includeLower ? "[" : "(", lower, upper, includeUpper ? "]" : ")" );
+        }
+    }
+
+    private static class StringPrefix extends IndexSeek
+    {
+        private final String prefix;
+
+        StringPrefix( String prefix )
+        {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public PrimitiveLongIterator seek( IndexReader reader, IndexOrder order )
+        {
+            return reader.rangeSeekByPrefix( prefix, order );
+        }
+
+        @Override
+        public boolean isExact()
+        {
+            return isShort( prefix );
+        }
+
+        @Override
+        public boolean covers( Object value )
+        {
+            return isString( value ) && value.toString().startsWith( prefix );
+        }
+
+        @Override
+        public int compare( Object left, Object right )
+        {
+            return left.toString().compareTo( right.toString() );
+        }
+
+        @Override
+        public String toString()
+        {
+            return format( "'%s'*", prefix );
+        }
+    }
+
+    private static boolean isShort( String bound )
+    {
+        return bound == null || bound.length() <= MAX_EXACT_STRING_LENGTH;
+    }
+
+    private static boolean isString( Object value )
+    {
+        return value instanceof String || value instanceof Character;
+    }
+}
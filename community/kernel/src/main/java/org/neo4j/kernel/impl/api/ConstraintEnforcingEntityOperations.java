@@ -24,6 +24,7 @@ import java.util.Iterator;
 import org.neo4j.collection.primitive.PrimitiveIntIterator;
 import org.neo4j.collection.primitive.PrimitiveLongIterator;
 import org.neo4j.graphdb.Direction;
+import org.neo4j.kernel.api.RelationshipVisitor;
 import org.neo4j.kernel.api.constraints.UniquenessConstraint;
 import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
 import org.neo4j.kernel.api.exceptions.index.IndexNotFoundKernelException;
@@ -32,6 +33,8 @@ import org.neo4j.kernel.api.exceptions.schema.IndexBrokenKernelException;
 import org.neo4j.kernel.api.exceptions.schema.UnableToValidateConstraintKernelException;
 import org.neo4j.kernel.api.exceptions.schema.UniqueConstraintViolationKernelException;
 import org.neo4j.kernel.api.index.IndexDescriptor;
+import org.neo4j.kernel.api.index.IndexOrder;
+import org.neo4j.kernel.api.index.IndexSeek;
 import org.neo4j.kernel.api.properties.DefinedProperty;
 import org.neo4j.kernel.api.properties.Property;
 import org.neo4j.kernel.impl.api.operations.EntityOperations;
@@ -211,6 +214,13 @@ public class ConstraintEnforcingEntityOperations implements EntityOperations
         return entityReadOperations.nodesGetFromIndexLookup( state, index, value );
     }
 
+    @Override
+    public PrimitiveLongIterator nodesGetFromIndexSeek( KernelStatement state, IndexDescriptor index, IndexSeek seek,
+                                                        IndexOrder order ) throws IndexNotFoundKernelException
+    {
+        return entityReadOperations.nodesGetFromIndexSeek( state, index, seek, order );
+    }
+
     @Override
     public long nodeGetUniqueFromIndexLookup(
             KernelStatement state,
@@ -377,6 +387,13 @@ public class ConstraintEnforcingEntityOperations implements EntityOperations
         return entityReadOperations.nodeGetDegree( statement, nodeId, direction );
     }
 
+    @Override
+    public void relationshipVisit( KernelStatement statement, long relationshipId, RelationshipVisitor visitor )
+            throws EntityNotFoundException
+    {
+        entityReadOperations.relationshipVisit( statement, relationshipId, visitor );
+    }
+
     @Override
     public PrimitiveIntIterator nodeGetRelationshipTypes( KernelStatement statement, long nodeId )
             throws EntityNotFoundException
@@ -192,8 +192,8 @@ public class Kernel extends LifecycleAdapter implements KernelAPI
     public void stop() throws Throwable
     {
         isShutdown = true;
-        new StatisticsServiceRepository( fs, config, storeLayer, scheduler );
         statisticsService.stop();
+        new StatisticsServiceRepository( fs, config, storeLayer, scheduler ).storeStatistics( statisticsService );
     }
 
     @Override
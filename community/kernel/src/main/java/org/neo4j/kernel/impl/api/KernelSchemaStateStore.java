@@ -20,16 +20,20 @@
 package org.neo4j.kernel.impl.api;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.neo4j.helpers.Function;
+import org.neo4j.kernel.api.SchemaChangeAware;
 
 /**
  * Used for the actual storage of "schema state".
  * Schema state is transient state that should be invalidated when the schema changes.
  * Examples of things stored in schema state is execution plans for cypher.
+ * Values implementing {@link SchemaChangeAware} survive {@link #invalidate(int, int) invalidation} and are left to
+ * drop what depends on the changed part of the schema themselves.
  */
 public class KernelSchemaStateStore implements UpdateableSchemaState
 {
@@ -116,4 +120,28 @@ public class KernelSchemaStateStore implements UpdateableSchemaState
             lock.writeLock().unlock();
         }
     }
+
+    @Override
+    public void invalidate( int labelId, int propertyKeyId )
+    {
+        lock.writeLock().lock();
+        try {
+            Iterator<Object> values = state.values().iterator();
+            while ( values.hasNext() )
+            {
+                Object value = values.next();
+                if ( value instanceof SchemaChangeAware )
+                {
+                    ((SchemaChangeAware) value).schemaChanged( labelId, propertyKeyId );
+                }
+                else
+                {
+                    values.remove();
+                }
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
 }
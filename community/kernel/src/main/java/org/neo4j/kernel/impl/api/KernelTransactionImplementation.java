@@ -19,8 +19,9 @@
  */
 package org.neo4j.kernel.impl.api;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.transaction.RollbackException;
 
@@ -328,7 +329,8 @@ public class KernelTransactionImplementation implements KernelTransaction, TxSta
     {
         if ( hasTxStateWithChanges() )
         {
-            final AtomicBoolean clearState = new AtomicBoolean( false );
+            // Schema state depending on indexes that come online is invalidated when their population completes
+            final Collection<IndexDescriptor> invalidatedSchema = new ArrayList<>();
             txState().accept( new TxState.Visitor()
             {
                 @Override
@@ -416,6 +418,7 @@ public class KernelTransactionImplementation implements KernelTransaction, TxSta
                 @Override
                 public void visitRemovedIndex( IndexDescriptor element, boolean isConstraintIndex )
                 {
+                    invalidatedSchema.add( element );
                     try
                     {
                         SchemaStorage.IndexRuleKind kind = isConstraintIndex?
@@ -435,7 +438,7 @@ public class KernelTransactionImplementation implements KernelTransaction, TxSta
                 @Override
                 public void visitAddedConstraint( UniquenessConstraint element )
                 {
-                    clearState.set( true );
+                    invalidatedSchema.add( new IndexDescriptor( element.label(), element.propertyKeyId() ) );
                     long constraintId = schemaStorage.newRuleId();
                     IndexRule indexRule;
                     try
@@ -461,7 +464,6 @@ public class KernelTransactionImplementation implements KernelTransaction, TxSta
                 {
                     try
                     {
-                        clearState.set( true );
                         UniquenessConstraintRule rule = schemaStorage
                                 .uniquenessConstraint( element.label(), element.propertyKeyId() );
                         persistenceManager.dropSchemaRule( rule );
@@ -477,9 +479,9 @@ public class KernelTransactionImplementation implements KernelTransaction, TxSta
                     visitRemovedIndex( new IndexDescriptor( element.label(), element.propertyKeyId() ), true );
                 }
             } );
-            if ( clearState.get() )
+            for ( IndexDescriptor descriptor : invalidatedSchema )
             {
-                schemaState.clear();
+                schemaState.invalidate( descriptor.getLabelId(), descriptor.getPropertyKeyId() );
             }
         }
     }
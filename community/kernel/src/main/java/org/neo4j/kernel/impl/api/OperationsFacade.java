@@ -28,6 +28,7 @@ import org.neo4j.graphdb.Direction;
 import org.neo4j.helpers.Function;
 import org.neo4j.kernel.api.DataWriteOperations;
 import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.RelationshipVisitor;
 import org.neo4j.kernel.api.SchemaWriteOperations;
 import org.neo4j.kernel.api.StatementConstants;
 import org.neo4j.kernel.api.constraints.UniquenessConstraint;
@@ -48,6 +49,8 @@ import org.neo4j.kernel.api.exceptions.schema.IndexBrokenKernelException;
 import org.neo4j.kernel.api.exceptions.schema.SchemaRuleNotFoundException;
 import org.neo4j.kernel.api.exceptions.schema.TooManyLabelsException;
 import org.neo4j.kernel.api.index.IndexDescriptor;
+import org.neo4j.kernel.api.index.IndexOrder;
+import org.neo4j.kernel.api.index.IndexSeek;
 import org.neo4j.kernel.api.index.InternalIndexState;
 import org.neo4j.kernel.api.properties.DefinedProperty;
 import org.neo4j.kernel.api.properties.Property;
@@ -133,6 +136,14 @@ public class OperationsFacade implements ReadOperations, DataWriteOperations, Sc
         return dataRead().nodesGetFromIndexLookup( statement, index, value );
     }
 
+    @Override
+    public PrimitiveLongIterator nodesGetFromIndexSeek( IndexDescriptor index, IndexSeek seek, IndexOrder order )
+            throws IndexNotFoundKernelException
+    {
+        statement.assertOpen();
+        return dataRead().nodesGetFromIndexSeek( statement, index, seek, order );
+    }
+
     @Override
     public long nodeGetUniqueFromIndexLookup( IndexDescriptor index, Object value )
             throws IndexNotFoundKernelException, IndexBrokenKernelException
@@ -182,6 +193,13 @@ public class OperationsFacade implements ReadOperations, DataWriteOperations, Sc
         return dataRead().nodeGetRelationships( statement, nodeId, direction );
     }
 
+    @Override
+    public void relationshipVisit( long relationshipId, RelationshipVisitor visitor ) throws EntityNotFoundException
+    {
+        statement.assertOpen();
+        dataRead().relationshipVisit( statement, relationshipId, visitor );
+    }
+
     @Override
     public int nodeGetDegree( long nodeId, Direction direction, int relType ) throws EntityNotFoundException
     {
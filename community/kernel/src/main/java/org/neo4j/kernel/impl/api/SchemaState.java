@@ -28,4 +28,9 @@ public interface SchemaState {
     <K, V> V getOrCreate( K key, Function<K, V> creator );
 
     void clear();
+
+    /**
+     * Drops the state that depends on the index or constraint on the given label and property key.
+     */
+    void invalidate( int labelId, int propertyKeyId );
 }
@@ -19,10 +19,13 @@
  */
 package org.neo4j.kernel.impl.api;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import org.neo4j.collection.primitive.PrimitiveIntCollections;
@@ -33,6 +36,8 @@ import org.neo4j.function.primitive.PrimitiveLongPredicate;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.helpers.Predicate;
 import org.neo4j.helpers.ThisShouldNotHappenError;
+import org.neo4j.kernel.api.EntityType;
+import org.neo4j.kernel.api.RelationshipVisitor;
 import org.neo4j.kernel.api.Statement;
 import org.neo4j.kernel.api.TxState;
 import org.neo4j.kernel.api.constraints.UniquenessConstraint;
@@ -50,6 +55,8 @@ import org.neo4j.kernel.api.exceptions.schema.IndexBrokenKernelException;
 import org.neo4j.kernel.api.exceptions.schema.SchemaRuleNotFoundException;
 import org.neo4j.kernel.api.exceptions.schema.TooManyLabelsException;
 import org.neo4j.kernel.api.index.IndexDescriptor;
+import org.neo4j.kernel.api.index.IndexOrder;
+import org.neo4j.kernel.api.index.IndexSeek;
 import org.neo4j.kernel.api.index.InternalIndexState;
 import org.neo4j.kernel.api.properties.DefinedProperty;
 import org.neo4j.kernel.api.properties.Property;
@@ -130,7 +137,7 @@ public class StateHandlingStatementOperations implements
         {
             try
             {
-                storeLayer.visit( relationshipId, new StoreReadLayer.RelationshipVisitor()
+                storeLayer.visit( relationshipId, new RelationshipVisitor()
                 {
                     @Override
                     public void visit( long relId, long startNode, long endNode, int type )
@@ -515,6 +522,78 @@ public class StateHandlingStatementOperations implements
         return changeFilteredMatches;
     }
 
+    @Override
+    public PrimitiveLongIterator nodesGetFromIndexSeek( KernelStatement state, IndexDescriptor index, IndexSeek seek,
+                                                        IndexOrder order ) throws IndexNotFoundKernelException
+    {
+        PrimitiveLongIterator committed = filterExactIndexMatches( state, index, seek,
+                storeLayer.nodesGetFromIndexSeek( state, index, seek, order ) );
+        if ( !state.hasTxStateWithChanges() )
+        {
+            return committed;
+        }
+
+        DiffSets<Long> labelPropertyChanges = nodesWithLabelAndPropertyDiffSet( state, index, seek );
+        DiffSets<Long> nodes = state.txState().addedAndRemovedNodes();
+        PrimitiveLongIterator changeFilteredMatches =
+                nodes.augmentWithRemovals( labelPropertyChanges.augment( committed ) );
+
+        // Nodes added in this transaction come after the committed ones, so put them back in order
+        if ( order == IndexOrder.NONE || labelPropertyChanges.getAdded().isEmpty() )
+        {
+            return changeFilteredMatches;
+        }
+        return sortByValue( state, index.getPropertyKeyId(), seek, order, changeFilteredMatches );
+    }
+
+    private PrimitiveLongIterator sortByValue( KernelStatement state, int propertyKeyId, final IndexSeek seek,
+                                               IndexOrder order, PrimitiveLongIterator nodeIds )
+    {
+        List<NodeValue> nodes = new ArrayList<>();
+        while ( nodeIds.hasNext() )
+        {
+            long nodeId = nodeIds.next();
+            try
+            {
+                nodes.add( new NodeValue( nodeId, nodeGetProperty( state, nodeId, propertyKeyId ).value( null ) ) );
+            }
+            catch ( EntityNotFoundException e )
+            {
+                throw new ThisShouldNotHappenError( "Mattias", "An index claims a node by id " + nodeId +
+                        " has a value in range. However, it looks like that node does not exist.", e );
+            }
+        }
+
+        Comparator<NodeValue> byValue = new Comparator<NodeValue>()
+        {
+            @Override
+            public int compare( NodeValue left, NodeValue right )
+            {
+                return seek.compare( left.value, right.value );
+            }
+        };
+        Collections.sort( nodes, order == IndexOrder.DESCENDING ? Collections.reverseOrder( byValue ) : byValue );
+
+        long[] sorted = new long[nodes.size()];
+        for ( int i = 0; i < sorted.length; i++ )
+        {
+            sorted[i] = nodes.get( i ).nodeId;
+        }
+        return PrimitiveLongCollections.iterator( sorted );
+    }
+
+    private static class NodeValue
+    {
+        private final long nodeId;
+        private final Object value;
+
+        NodeValue( long nodeId, Object value )
+        {
+            this.nodeId = nodeId;
+            this.value = value;
+        }
+    }
+
     private PrimitiveLongIterator filterExactIndexMatches(
             KernelStatement state,
             IndexDescriptor index,
@@ -528,6 +607,32 @@ public class StateHandlingStatementOperations implements
         return committed;
     }
 
+    private PrimitiveLongIterator filterExactIndexMatches( final KernelStatement state, IndexDescriptor index,
+                                                           final IndexSeek seek, PrimitiveLongIterator committed )
+    {
+        if ( seek.isExact() )
+        {
+            return committed;
+        }
+        final int propertyKeyId = index.getPropertyKeyId();
+        return PrimitiveLongCollections.filter( committed, new PrimitiveLongPredicate()
+        {
+            @Override
+            public boolean accept( long nodeId )
+            {
+                try
+                {
+                    return seek.covers( nodeGetProperty( state, nodeId, propertyKeyId ).value( null ) );
+                }
+                catch ( EntityNotFoundException e )
+                {
+                    throw new ThisShouldNotHappenError( "Mattias", "An index claims a node by id " + nodeId +
+                            " has a value in range. However, it looks like that node does not exist.", e );
+                }
+            }
+        } );
+    }
+
     private boolean isNumberOrArray( Object value )
     {
         return value instanceof Number || value.getClass().isArray();
@@ -850,20 +955,41 @@ public class StateHandlingStatementOperations implements
     }
 
     private DiffSets<Long> nodesWithLabelAndPropertyDiffSet( KernelStatement state, IndexDescriptor index, Object value )
+    {
+        // Start with nodes where the given property has changed
+        DiffSets<Long> diff = state.txState().nodesWithChangedProperty( index.getPropertyKeyId(), value );
+        return nodesWithLabelAndPropertyDiffSet( state, index, diff,
+                new HasPropertyFilter( state, index.getPropertyKeyId(), value ) );
+    }
+
+    private DiffSets<Long> nodesWithLabelAndPropertyDiffSet( KernelStatement state, IndexDescriptor index,
+                                                             final IndexSeek seek )
+    {
+        // Start with nodes where the given property has changed to or from a value covered by the seek
+        DiffSets<Long> diff = state.txState().nodesWithChangedPropertyValues( index.getPropertyKeyId(),
+                new Predicate<Object>()
+                {
+                    @Override
+                    public boolean accept( Object value )
+                    {
+                        return seek.covers( value );
+                    }
+                } );
+        return nodesWithLabelAndPropertyDiffSet( state, index, diff,
+                new HasPropertyCoveredBySeekFilter( state, index.getPropertyKeyId(), seek ) );
+    }
+
+    private DiffSets<Long> nodesWithLabelAndPropertyDiffSet( KernelStatement state, IndexDescriptor index,
+                                                             DiffSets<Long> diff, Predicate<Long> hasPropertyFilter )
     {
         TxState txState = state.txState();
         int labelId = index.getLabelId();
-        int propertyKeyId = index.getPropertyKeyId();
-
-        // Start with nodes where the given property has changed
-        DiffSets<Long> diff = txState.nodesWithChangedProperty( propertyKeyId, value );
 
         // Ensure remaining nodes have the correct label
         HasLabelFilter hasLabel = new HasLabelFilter( state, labelId );
         diff = diff.filter( hasLabel );
 
         // Include newly labeled nodes that already had the correct property
-        HasPropertyFilter hasPropertyFilter = new HasPropertyFilter( state, propertyKeyId, value );
         Iterator<Long> addedNodesWithLabel = txState.nodesWithLabelAdded( labelId ).iterator();
         diff.addAll( filter( hasPropertyFilter, addedNodesWithLabel ) );
 
@@ -873,16 +999,14 @@ public class StateHandlingStatementOperations implements
         return diff;
     }
 
-    private class HasPropertyFilter implements Predicate<Long>
+    private abstract class PropertyFilter implements Predicate<Long>
     {
-        private final Object value;
         private final int propertyKeyId;
         private final KernelStatement state;
 
-        public HasPropertyFilter( KernelStatement state, int propertyKeyId, Object value )
+        PropertyFilter( KernelStatement state, int propertyKeyId )
         {
             this.state = state;
-            this.value = value;
             this.propertyKeyId = propertyKeyId;
         }
 
@@ -896,13 +1020,49 @@ public class StateHandlingStatementOperations implements
                     return false;
                 }
                 Property property = nodeGetProperty( state, nodeId, propertyKeyId );
-                return property.isDefined() && property.valueEquals( value );
+                return property.isDefined() && accept( property );
             }
             catch ( EntityNotFoundException e )
             {
                 return false;
             }
         }
+
+        protected abstract boolean accept( Property property );
+    }
+
+    private class HasPropertyFilter extends PropertyFilter
+    {
+        private final Object value;
+
+        public HasPropertyFilter( KernelStatement state, int propertyKeyId, Object value )
+        {
+            super( state, propertyKeyId );
+            this.value = value;
+        }
+
+        @Override
+        protected boolean accept( Property property )
+        {
+            return property.valueEquals( value );
+        }
+    }
+
+    private class HasPropertyCoveredBySeekFilter extends PropertyFilter
+    {
+        private final IndexSeek seek;
+
+        public HasPropertyCoveredBySeekFilter( KernelStatement state, int propertyKeyId, IndexSeek seek )
+        {
+            super( state, propertyKeyId );
+            this.seek = seek;
+        }
+
+        @Override
+        protected boolean accept( Property property )
+        {
+            return seek.covers( property.value( null ) );
+        }
     }
 
     private class HasLabelFilter implements Predicate<Long>
@@ -973,6 +1133,25 @@ public class StateHandlingStatementOperations implements
         return storeLayer.nodeListRelationships( state, nodeId, direction );
     }
 
+    @Override
+    public void relationshipVisit( KernelStatement state, long relationshipId, RelationshipVisitor visitor )
+            throws EntityNotFoundException
+    {
+        if ( state.hasTxStateWithChanges() )
+        {
+            TxState txState = state.txState();
+            if ( txState.relationshipVisit( relationshipId, visitor ) )
+            {
+                return;
+            }
+            if ( txState.relationshipIsDeletedInThisTx( relationshipId ) )
+            {
+                throw new EntityNotFoundException( EntityType.RELATIONSHIP, relationshipId );
+            }
+        }
+        storeLayer.visit( relationshipId, visitor );
+    }
+
     @Override
     public int nodeGetDegree( KernelStatement state, long nodeId, Direction direction, int relType ) throws EntityNotFoundException
 
@@ -20,11 +20,14 @@
 package org.neo4j.kernel.impl.api.index;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.neo4j.helpers.collection.Visitor;
 import org.neo4j.kernel.api.exceptions.index.IndexPopulationFailedKernelException;
@@ -35,79 +38,536 @@ import org.neo4j.kernel.api.index.IndexUpdater;
 import org.neo4j.kernel.api.index.NodePropertyUpdate;
 import org.neo4j.kernel.api.index.SchemaIndexProvider;
 import org.neo4j.kernel.impl.api.UpdateableSchemaState;
+import org.neo4j.kernel.impl.util.JobScheduler;
 import org.neo4j.kernel.impl.util.StringLogger;
 import org.neo4j.kernel.logging.Logging;
 
 import static java.lang.String.format;
+import static java.lang.System.currentTimeMillis;
 import static java.lang.Thread.currentThread;
 
 import static org.neo4j.helpers.FutureAdapter.latchGuardedValue;
 import static org.neo4j.helpers.ValueGetter.NO_VALUE;
 import static org.neo4j.kernel.impl.api.index.IndexPopulationFailure.failure;
+import static org.neo4j.kernel.impl.util.JobScheduler.Group.indexPopulation;
 
 /**
- * Represents one job of initially populating an index over existing data in the database.
- * Scans the store directly.
+ * Represents one job of initially populating one or more indexes over existing data in the database.
+ * Scans the store directly, once, feeding all the indexes added through
+ * {@link #addPopulation(IndexDescriptor, SchemaIndexProvider.Descriptor, String, FailedIndexProxyFactory,
+ * IndexPopulator, FlippableIndexProxy) addPopulation} from the same scan.
+ * <p>
+ * The node store is split into node id ranges, partitions, which are scanned in parallel. Updates are
+ * collected per index and handed to its {@link IndexPopulator} in batches.
  *
  * @author Mattias Persson
  */
 public class IndexPopulationJob implements Runnable
 {
-    private final IndexStoreView storeView;
-    private final String indexUserDescription;
-
-    // NOTE: unbounded queue expected here
-    private final Queue<NodePropertyUpdate> queue = new ConcurrentLinkedQueue<>();
+    static final int BATCH_SIZE = 1_000;
+    static final long MIN_NODES_PER_PARTITION = 100_000;
+    private static final long PROGRESS_REPORT_INTERVAL = 10_000;
 
-    private final IndexDescriptor descriptor;
-    private final FailedIndexProxyFactory failureDelegate;
-    private final IndexPopulator populator;
-    private final FlippableIndexProxy flipper;
+    private final IndexStoreView storeView;
     private final UpdateableSchemaState updateableSchemaState;
+    private final JobScheduler scheduler;
+    private final IndexingService.Monitor monitor;
     private final StringLogger log;
+    private final int maxPartitions;
+    private final long minNodesPerPartition;
+    private final List<IndexPopulation> populations = new ArrayList<>();
     private final CountDownLatch doneSignal = new CountDownLatch( 1 );
+    private final AtomicLong lastProgressReport = new AtomicLong();
 
-    private volatile StoreScan<IndexPopulationFailedKernelException> storeScan;
-    private volatile boolean cancelled;
-    private final SchemaIndexProvider.Descriptor providerDescriptor;
+    private volatile Partition[] partitions = new Partition[0];
+    private volatile boolean started;
+    private volatile long totalNodes;
+    private volatile long startTime;
+
+    public IndexPopulationJob( IndexStoreView storeView, UpdateableSchemaState updateableSchemaState,
+                               JobScheduler scheduler, Logging logging, IndexingService.Monitor monitor )
+    {
+        this( storeView, updateableSchemaState, scheduler, logging, monitor,
+                Runtime.getRuntime().availableProcessors(), MIN_NODES_PER_PARTITION );
+    }
 
-    public IndexPopulationJob(IndexDescriptor descriptor, SchemaIndexProvider.Descriptor providerDescriptor,
-                              String indexUserDescription,
-                              FailedIndexProxyFactory failureDelegateFactory,
-                              IndexPopulator populator, FlippableIndexProxy flipper,
-                              IndexStoreView storeView, UpdateableSchemaState updateableSchemaState,
-                              Logging logging)
+    IndexPopulationJob( IndexStoreView storeView, UpdateableSchemaState updateableSchemaState,
+                        JobScheduler scheduler, Logging logging, IndexingService.Monitor monitor,
+                        int maxPartitions, long minNodesPerPartition )
     {
-        this.descriptor = descriptor;
-        this.providerDescriptor = providerDescriptor;
-        this.populator = populator;
-        this.flipper = flipper;
         this.storeView = storeView;
         this.updateableSchemaState = updateableSchemaState;
-        this.indexUserDescription = indexUserDescription;
-        this.failureDelegate = failureDelegateFactory;
+        this.scheduler = scheduler;
+        this.monitor = monitor;
+        this.maxPartitions = Math.max( 1, maxPartitions );
+        this.minNodesPerPartition = Math.max( 1, minNodesPerPartition );
         this.log = logging.getMessagesLog( getClass() );
     }
 
+    public IndexPopulationJob( IndexDescriptor descriptor, SchemaIndexProvider.Descriptor providerDescriptor,
+                               String indexUserDescription,
+                               FailedIndexProxyFactory failureDelegateFactory,
+                               IndexPopulator populator, FlippableIndexProxy flipper,
+                               IndexStoreView storeView, UpdateableSchemaState updateableSchemaState,
+                               JobScheduler scheduler, Logging logging )
+    {
+        this( storeView, updateableSchemaState, scheduler, logging, IndexingService.NO_MONITOR );
+        addPopulation( descriptor, providerDescriptor, indexUserDescription, failureDelegateFactory,
+                populator, flipper );
+    }
+
+    /**
+     * Adds an index to be populated by this job. Must be called before the job is {@link #run() run}.
+     */
+    public IndexPopulation addPopulation( IndexDescriptor descriptor,
+                                          SchemaIndexProvider.Descriptor providerDescriptor,
+                                          String indexUserDescription,
+                                          FailedIndexProxyFactory failureDelegateFactory,
+                                          IndexPopulator populator, FlippableIndexProxy flipper )
+    {
+        if ( started )
+        {
+            throw new IllegalStateException( "Cannot add an index to a population job that has already started" );
+        }
+        IndexPopulation population = new IndexPopulation( descriptor, providerDescriptor,
+                indexUserDescription, failureDelegateFactory, populator, flipper );
+        populations.add( population );
+        return population;
+    }
+
+    public boolean hasPopulations()
+    {
+        return !populations.isEmpty();
+    }
+
     @Override
     public void run()
     {
+        started = true;
         String oldThreadName = currentThread().getName();
-        currentThread().setName( format( "Index populator on %s [runs on: %s]", indexUserDescription, oldThreadName ) );
-        boolean success = false;
-        Throwable failureCause = null;
+        currentThread().setName( format( "Index populator on %s [runs on: %s]", describe(), oldThreadName ) );
         try
         {
+            startTime = currentTimeMillis();
+            lastProgressReport.set( startTime );
+            for ( IndexPopulation population : populations )
+            {
+                population.create();
+            }
+
+            Throwable scanFailure = null;
+            try
+            {
+                indexAllNodes();
+            }
+            catch ( Throwable t )
+            {
+                scanFailure = t;
+            }
+
+            for ( IndexPopulation population : populations )
+            {
+                if ( scanFailure != null )
+                {
+                    population.fail( scanFailure );
+                }
+                else
+                {
+                    population.complete();
+                }
+            }
+        }
+        finally
+        {
+            doneSignal.countDown();
+            currentThread().setName( oldThreadName );
+        }
+    }
+
+    private void indexAllNodes() throws Throwable
+    {
+        if ( !anyActive() )
+        {
+            return;
+        }
+
+        int[] labelIds = new int[populations.size()];
+        int[] propertyKeyIds = new int[populations.size()];
+        for ( int i = 0; i < populations.size(); i++ )
+        {
+            labelIds[i] = populations.get( i ).descriptor.getLabelId();
+            propertyKeyIds[i] = populations.get( i ).descriptor.getPropertyKeyId();
+        }
+
+        // The last partition is open ended, so that nodes created while scanning are also seen
+        long highId = storeView.nodeHighId();
+        totalNodes = highId;
+        int count = (int) Math.min( maxPartitions, Math.max( 1, highId / minNodesPerPartition ) );
+        long partitionSize = highId / count;
+        Partition[] partitions = new Partition[count];
+        for ( int i = 0; i < count; i++ )
+        {
+            long from = i * partitionSize;
+            long to = i == count - 1 ? Long.MAX_VALUE : from + partitionSize;
+            partitions[i] = new Partition( from, to, labelIds, propertyKeyIds );
+        }
+        this.partitions = partitions;
+        if ( !anyActive() )
+        {
+            // Cancelled while setting up the partitions
+            return;
+        }
+
+        // Partition 0 is scanned by this thread, the rest are scheduled as jobs of their own
+        String name = currentThread().getName();
+        CountDownLatch workersDone = new CountDownLatch( count - 1 );
+        for ( int i = 1; i < count; i++ )
+        {
+            Runnable worker = partitions[i].named( format( "%s [partition %d/%d]", name, i + 1, count ),
+                    workersDone );
             try
             {
-                log.info( format("Index population started: [%s]", indexUserDescription) );
+                scheduler.schedule( indexPopulation, worker );
+            }
+            catch ( RuntimeException e )
+            {
+                // The scheduler is shutting down, which fails the populations below
+                partitions[i].failure = e;
+                workersDone.countDown();
+            }
+        }
+        partitions[0].run();
+        workersDone.await();
+
+        for ( Partition partition : partitions )
+        {
+            if ( partition.failure != null )
+            {
+                throw partition.failure;
+            }
+        }
+    }
+
+    /**
+     * Cancels the population of all indexes in this job.
+     *
+     * @return a {@link Future} that completes when this job has completed.
+     */
+    public Future<Void> cancel()
+    {
+        for ( IndexPopulation population : populations )
+        {
+            population.cancelled = true;
+        }
+        stopScanIfNoneActive();
+        return latchGuardedValue( NO_VALUE, doneSignal );
+    }
+
+    /**
+     * A transaction happened that produced the given update. Let this job incorporate its data,
+     * feeding it to the {@link IndexPopulator} of each index it applies to.
+     */
+    public void update( NodePropertyUpdate update )
+    {
+        for ( IndexPopulation population : populations )
+        {
+            if ( population.accepts( update ) )
+            {
+                population.update( update );
+            }
+        }
+    }
+
+    public void awaitCompletion() throws InterruptedException
+    {
+        doneSignal.await();
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + "[" + populations + "]";
+    }
+
+    private String describe()
+    {
+        StringBuilder builder = new StringBuilder();
+        for ( IndexPopulation population : populations )
+        {
+            builder.append( builder.length() == 0 ? "" : ", " ).append( population.indexUserDescription );
+        }
+        return builder.toString();
+    }
+
+    private boolean anyActive()
+    {
+        for ( IndexPopulation population : populations )
+        {
+            if ( population.isActive() )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void stopScanIfNoneActive()
+    {
+        if ( !anyActive() )
+        {
+            for ( Partition partition : partitions )
+            {
+                partition.scan.stop();
+            }
+        }
+    }
+
+    /**
+     * @return whether or not the scan has handed the given node over to the populators.
+     */
+    private boolean isScanned( long nodeId )
+    {
+        for ( Partition partition : partitions )
+        {
+            if ( nodeId >= partition.fromNodeId && nodeId < partition.toNodeId )
+            {
+                return nodeId <= partition.progress;
+            }
+        }
+        return false;
+    }
+
+    private long scannedNodes()
+    {
+        long scanned = 0;
+        for ( Partition partition : partitions )
+        {
+            long end = Math.min( partition.toNodeId, totalNodes );
+            end = partition.completed ? end : Math.min( partition.progress + 1, end );
+            scanned += Math.max( 0, end - partition.fromNodeId );
+        }
+        return scanned;
+    }
+
+    private void reportProgressIfDue()
+    {
+        long now = currentTimeMillis();
+        long last = lastProgressReport.get();
+        if ( now - last >= PROGRESS_REPORT_INTERVAL && lastProgressReport.compareAndSet( last, now ) )
+        {
+            for ( IndexPopulation population : populations )
+            {
+                if ( population.isActive() )
+                {
+                    monitor.populationProgress( population.descriptor, population.progress() );
+                }
+            }
+        }
+    }
+
+    /**
+     * The population of one of the indexes of this job. All interaction with the {@link IndexPopulator} happens
+     * while holding the monitor of this object, since partitions deliver batches concurrently.
+     */
+    public class IndexPopulation
+    {
+        // NOTE: unbounded queue expected here
+        private final Queue<NodePropertyUpdate> queue = new ConcurrentLinkedQueue<>();
+
+        private final IndexDescriptor descriptor;
+        private final SchemaIndexProvider.Descriptor providerDescriptor;
+        private final String indexUserDescription;
+        private final FailedIndexProxyFactory failureDelegate;
+        private final IndexPopulator populator;
+        private final FlippableIndexProxy flipper;
+        private final CountDownLatch doneSignal = new CountDownLatch( 1 );
+
+        private volatile boolean cancelled;
+        private volatile boolean created;
+        private volatile boolean done;
+        private volatile long entries;
+
+        private IndexPopulation( IndexDescriptor descriptor, SchemaIndexProvider.Descriptor providerDescriptor,
+                                 String indexUserDescription, FailedIndexProxyFactory failureDelegate,
+                                 IndexPopulator populator, FlippableIndexProxy flipper )
+        {
+            this.descriptor = descriptor;
+            this.providerDescriptor = providerDescriptor;
+            this.indexUserDescription = indexUserDescription;
+            this.failureDelegate = failureDelegate;
+            this.populator = populator;
+            this.flipper = flipper;
+        }
+
+        /**
+         * A transaction happened that produced the given update. Let this population incorporate its data,
+         * feeding it to the {@link IndexPopulator}.
+         */
+        public void update( NodePropertyUpdate update )
+        {
+            queue.add( update );
+        }
+
+        /**
+         * Cancels the population of this index only. The store scan is stopped if no other index in the
+         * job is still populating.
+         *
+         * @return a {@link Future} that completes when this population has been closed.
+         */
+        public Future<Void> cancel()
+        {
+            cancelled = true;
+            stopScanIfNoneActive();
+            return latchGuardedValue( NO_VALUE, doneSignal );
+        }
+
+        public PopulationProgress progress()
+        {
+            long elapsed = startTime == 0 ? 0 : currentTimeMillis() - startTime;
+            long scanned = done ? totalNodes : Math.min( scannedNodes(), totalNodes );
+            return new PopulationProgress( scanned, totalNodes, entries, elapsed );
+        }
+
+        public void awaitCompletion() throws InterruptedException
+        {
+            doneSignal.await();
+        }
+
+        private boolean isActive()
+        {
+            return !cancelled && !done;
+        }
+
+        private boolean accepts( NodePropertyUpdate update )
+        {
+            return update.getPropertyKeyId() == descriptor.getPropertyKeyId() &&
+                    update.forLabel( descriptor.getLabelId() );
+        }
+
+        private synchronized void create()
+        {
+            if ( cancelled )
+            {
+                // Cancelled before it even started, there's nothing to close
+                markDone();
+                return;
+            }
+            try
+            {
+                log.info( format( "Index population started: [%s]", indexUserDescription ) );
                 log.flush();
                 populator.create();
+                created = true;
+            }
+            catch ( Throwable t )
+            {
+                fail( t );
+            }
+        }
 
-                indexAllNodes();
+        /**
+         * Hands a batch of scanned updates to the populator, followed by the queued transaction updates
+         * for nodes the scan has passed.
+         */
+        private synchronized void add( List<NodePropertyUpdate> batch )
+        {
+            if ( done )
+            {
+                return;
+            }
+            if ( cancelled )
+            {
+                closeCancelled();
+                return;
+            }
+            try
+            {
+                for ( NodePropertyUpdate update : batch )
+                {
+                    populator.add( update.getNodeId(), update.getValueAfter() );
+                }
+                entries += batch.size();
+            }
+            catch ( IndexEntryConflictException | IOException conflict )
+            {
+                fail( new IndexPopulationFailedKernelException( descriptor, indexUserDescription, conflict ) );
+            }
+            catch ( Throwable t )
+            {
+                fail( t );
+            }
+        }
+
+        private synchronized void populateFromQueueIfAvailable()
+        {
+            if ( !isActive() )
+            {
+                return;
+            }
+            try
+            {
+                populateFromQueue( false );
+            }
+            catch ( IndexEntryConflictException | IOException conflict )
+            {
+                fail( new IndexPopulationFailedKernelException( descriptor, indexUserDescription, conflict ) );
+            }
+            catch ( Throwable t )
+            {
+                fail( t );
+            }
+        }
+
+        private void populateFromQueue( boolean all ) throws IndexEntryConflictException, IOException
+        {
+            if ( !queue.isEmpty() )
+            {
+                try ( IndexUpdater updater = populator.newPopulatingUpdater( storeView ) )
+                {
+                    for ( NodePropertyUpdate update : queue )
+                    {
+                        if ( all || isScanned( update.getNodeId() ) )
+                        {
+                            updater.process( update );
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Called by the job when the store scan has completed. The flip happens without holding the monitor
+         * of this population since dropping the index may be waiting for the flipper at the same time.
+         */
+        private void complete()
+        {
+            synchronized ( this )
+            {
+                if ( done )
+                {
+                    return;
+                }
                 if ( cancelled )
                 {
                     // We remain in POPULATING state
+                    closeCancelled();
+                    return;
+                }
+            }
+
+            try
+            {
+                try
+                {
+                    populator.verifyDeferredConstraints( storeView );
+                }
+                catch ( Exception conflict )
+                {
+                    throw new IndexPopulationFailedKernelException( descriptor, indexUserDescription, conflict );
+                }
+                if ( cancelled )
+                {
+                    closeCancelled();
                     return;
                 }
 
@@ -116,41 +576,80 @@ public class IndexPopulationJob implements Runnable
                     @Override
                     public Void call() throws Exception
                     {
-                        populateFromQueueIfAvailable( Long.MAX_VALUE );
+                        populateFromQueue( true );
                         populator.close( true );
-                        updateableSchemaState.clear();
+                        updateableSchemaState.invalidate( descriptor.getLabelId(), descriptor.getPropertyKeyId() );
                         return null;
                     }
                 };
 
                 flipper.flip( duringFlip, failureDelegate );
-                success = true;
-                log.info( format("Index population completed. Index is now online: [%s]", indexUserDescription) );
+                markDone();
+                log.info( format( "Index population completed. Index is now online: [%s]", indexUserDescription ) );
                 log.flush();
+                monitor.populationProgress( descriptor, progress() );
             }
             catch ( Throwable t )
             {
-                // If the cause of index population failure is a conflict in a (unique) index, the conflict is the
-                // failure
-                if ( t instanceof IndexPopulationFailedKernelException )
+                fail( t );
+            }
+        }
+
+        private synchronized void closeCancelled()
+        {
+            if ( done )
+            {
+                return;
+            }
+            try
+            {
+                if ( created )
                 {
-                    Throwable cause = t.getCause();
-                    if ( cause instanceof IndexEntryConflictException )
-                    {
-                        t = cause;
-                    }
+                    populator.close( false );
+                }
+            }
+            catch ( Throwable e )
+            {
+                log.error( format( "Unable to close failed populator for index: [%s]", indexUserDescription ), e );
+                log.flush();
+            }
+            finally
+            {
+                markDone();
+            }
+        }
+
+        private void fail( Throwable t )
+        {
+            synchronized ( this )
+            {
+                if ( done )
+                {
+                    return;
                 }
+                markDone();
+            }
 
-                // Index conflicts are expected (for unique indexes) so we don't need to log them.
-                if ( !(t instanceof IndexEntryConflictException) /*TODO: && this is a unique index...*/ )
+            // If the cause of index population failure is a conflict in a (unique) index, the conflict is the
+            // failure
+            if ( t instanceof IndexPopulationFailedKernelException )
+            {
+                Throwable cause = t.getCause();
+                if ( cause instanceof IndexEntryConflictException )
                 {
-                    log.error( format("Failed to populate index: [%s]", indexUserDescription), t );
-                    log.flush();
+                    t = cause;
                 }
+            }
 
-                // Set failure cause to be stored persistently
-                failureCause = t;
+            // Index conflicts are expected (for unique indexes) so we don't need to log them.
+            if ( !(t instanceof IndexEntryConflictException) /*TODO: && this is a unique index...*/ )
+            {
+                log.error( format( "Failed to populate index: [%s]", indexUserDescription ), t );
+                log.flush();
+            }
 
+            try
+            {
                 // The flipper will have already flipped to a failed index context here, but
                 // it will not include the cause of failure, so we do another flip to a failed
                 // context that does.
@@ -160,113 +659,141 @@ public class IndexPopulationJob implements Runnable
                 // in to the old context, if something failed in the job we send to the flipper.
                 flipper.flipTo( new FailedIndexProxy( descriptor, providerDescriptor, indexUserDescription,
                                                       populator, failure( t ) ) );
+                populator.markAsFailed( failure( t ).asString() );
+                populator.close( false );
+            }
+            catch ( Throwable e )
+            {
+                log.error( format( "Unable to close failed populator for index: [%s]", indexUserDescription ), e );
+                log.flush();
             }
             finally
             {
-                try
-                {
-                    if ( !success )
-                    {
-                        if ( failureCause != null )
-                        {
-                            populator.markAsFailed( failure( failureCause ).asString() );
-                        }
-
-                        populator.close( false );
-                    }
-                }
-                catch ( Throwable e )
-                {
-                    log.error( format("Unable to close failed populator for index: [%s]", indexUserDescription), e );
-                    log.flush();
-                }
+                stopScanIfNoneActive();
             }
         }
-        finally
+
+        private void markDone()
         {
+            done = true;
             doneSignal.countDown();
-            currentThread().setName( oldThreadName );
+        }
+
+        @Override
+        public String toString()
+        {
+            return "populator:" + populator + ", descriptor:" + indexUserDescription;
         }
     }
 
-    private void indexAllNodes() throws IndexPopulationFailedKernelException
+    /**
+     * Scans a range of node ids, collecting updates into one batch per index and handing the batches over
+     * to the populators every {@link #BATCH_SIZE} updates.
+     */
+    private class Partition implements Runnable, Visitor<NodePropertyUpdate, RuntimeException>
     {
-        storeScan = storeView.visitNodesWithPropertyAndLabel( descriptor, new Visitor<NodePropertyUpdate,
-                IndexPopulationFailedKernelException>()
+        private final long fromNodeId;
+        private final long toNodeId;
+        private final StoreScan<RuntimeException> scan;
+        private final List<List<NodePropertyUpdate>> batches = new ArrayList<>();
+        private int batchedUpdates;
+        private long lastNodeId = -1;
+        private volatile long progress;
+        private volatile boolean completed;
+        private volatile Throwable failure;
+
+        Partition( long fromNodeId, long toNodeId, int[] labelIds, int[] propertyKeyIds )
         {
-            @Override
-            public boolean visit( NodePropertyUpdate update ) throws IndexPopulationFailedKernelException
+            this.fromNodeId = fromNodeId;
+            this.toNodeId = toNodeId;
+            this.progress = fromNodeId - 1;
+            for ( int i = 0; i < populations.size(); i++ )
             {
-                try
+                batches.add( new ArrayList<NodePropertyUpdate>() );
+            }
+            this.scan = storeView.visitNodes( labelIds, propertyKeyIds, fromNodeId, toNodeId, this );
+        }
+
+        /**
+         * @return this partition as a job that runs in a thread with the given name and then counts down the latch.
+         */
+        Runnable named( final String name, final CountDownLatch done )
+        {
+            return new Runnable()
+            {
+                @Override
+                public void run()
                 {
-                    populator.add( update.getNodeId(), update.getValueAfter() );
-                    populateFromQueueIfAvailable( update.getNodeId() );
+                    String oldThreadName = currentThread().getName();
+                    currentThread().setName( name );
+                    try
+                    {
+                        Partition.this.run();
+                    }
+                    finally
+                    {
+                        currentThread().setName( oldThreadName );
+                        done.countDown();
+                    }
                 }
-                catch ( IndexEntryConflictException | IOException conflict )
+            };
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                if ( anyActive() )
                 {
-                    throw new IndexPopulationFailedKernelException( descriptor, indexUserDescription, conflict );
+                    scan.run();
                 }
-                return false;
+                flush( lastNodeId );
+                completed = true;
+            }
+            catch ( Throwable t )
+            {
+                failure = t;
             }
-        });
-        storeScan.run();
-        try
-        {
-            populator.verifyDeferredConstraints( storeView );
-        }
-        catch ( Exception conflict )
-        {
-            throw new IndexPopulationFailedKernelException( descriptor, indexUserDescription, conflict );
         }
-    }
 
-    private void populateFromQueueIfAvailable( final long highestIndexedNodeId )
-            throws IndexEntryConflictException, IOException
-    {
-        if ( !queue.isEmpty() )
+        @Override
+        public boolean visit( NodePropertyUpdate update )
         {
-            try ( IndexUpdater updater = populator.newPopulatingUpdater( storeView ) )
+            long nodeId = update.getNodeId();
+            // Only flush between nodes, so that a node is either fully handed over or not at all
+            if ( batchedUpdates >= BATCH_SIZE && nodeId != lastNodeId )
+            {
+                flush( lastNodeId );
+            }
+            for ( int i = 0; i < populations.size(); i++ )
             {
-                for ( NodePropertyUpdate update : queue )
+                IndexPopulation population = populations.get( i );
+                if ( population.isActive() && population.accepts( update ) )
                 {
-                    if ( update.getNodeId() <= highestIndexedNodeId )
-                    {
-                        updater.process( update );
-                    }
+                    batches.get( i ).add( update );
+                    batchedUpdates++;
                 }
             }
+            lastNodeId = nodeId;
+            return false;
         }
-    }
 
-    public Future<Void> cancel()
-    {
-        // Stop the population
-        if ( storeScan != null )
+        private void flush( long highestNodeId )
         {
-            cancelled = true;
-            storeScan.stop();
+            for ( int i = 0; i < populations.size(); i++ )
+            {
+                List<NodePropertyUpdate> batch = batches.get( i );
+                populations.get( i ).add( batch );
+                batch.clear();
+            }
+            batchedUpdates = 0;
+            progress = Math.max( progress, highestNodeId );
+            for ( IndexPopulation population : populations )
+            {
+                population.populateFromQueueIfAvailable();
+            }
+            reportProgressIfDue();
         }
-
-        return latchGuardedValue( NO_VALUE, doneSignal );
-    }
-
-    /**
-     * A transaction happened that produced the given updates. Let this job incorporate its data,
-     * feeding it to the {@link IndexPopulator}.
-     */
-    public void update( NodePropertyUpdate update )
-    {
-        queue.add( update );
-    }
-
-    @Override
-    public String toString()
-    {
-        return getClass().getSimpleName() + "[populator:" + populator + ", descriptor:" + indexUserDescription + "]";
-    }
-
-    public void awaitCompletion() throws InterruptedException
-    {
-        doneSignal.await();
     }
 }
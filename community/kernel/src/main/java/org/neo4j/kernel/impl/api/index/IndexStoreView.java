@@ -49,6 +49,24 @@ public interface IndexStoreView extends PropertyAccessor
             Visitor<NodePropertyUpdate, FAILURE> propertyUpdateVisitor,
             Visitor<NodeLabelUpdate, FAILURE> labelUpdateVisitor );
 
+    /**
+     * Retrieve the nodes within the given range of node ids, which has got one or more of the given labels AND
+     * one or more of the given property key ids, as pairs of node id and property value.
+     * Nodes are visited in ascending node id order.
+     *
+     * @param fromNodeId the first node id to visit.
+     * @param toNodeId the node id to stop at (exclusive), {@link Long#MAX_VALUE} meaning all nodes from
+     * {@code fromNodeId}, including nodes created while scanning.
+     * @return a {@link StoreScan} to start and to stop the scan.
+     */
+    <FAILURE extends Exception> StoreScan<FAILURE> visitNodes( int[] labelIds, int[] propertyKeyIds,
+            long fromNodeId, long toNodeId, Visitor<NodePropertyUpdate, FAILURE> propertyUpdateVisitor );
+
+    /**
+     * @return the highest node id in use, plus one.
+     */
+    long nodeHighId();
+
     Iterable<NodePropertyUpdate> nodeAsUpdates( long nodeId );
 
     @Override
@@ -28,6 +28,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 
 import org.neo4j.graphdb.ResourceIterator;
@@ -62,6 +63,7 @@ import static org.neo4j.helpers.Exceptions.launderedException;
 import static org.neo4j.helpers.collection.Iterables.concatResourceIterators;
 import static org.neo4j.helpers.collection.IteratorUtil.loop;
 import static org.neo4j.kernel.impl.api.index.IndexPopulationFailure.failure;
+import static org.neo4j.kernel.impl.util.JobScheduler.Group.indexPopulation;
 
 /**
  * Manages the indexes that were introduced in 2.0. These indexes depend on the normal neo4j logical log for
@@ -91,6 +93,7 @@ public class IndexingService extends LifecycleAdapter
     private final UpdateableSchemaState updateableSchemaState;
     private final Set<Long> recoveredNodeIds = new HashSet<>();
     private final Monitor monitor;
+    private final Map<Long, IndexPopulationJob.IndexPopulation> populations = new ConcurrentHashMap<>();
 
     enum State
     {
@@ -105,6 +108,11 @@ public class IndexingService extends LifecycleAdapter
         void applyingRecoveredData( Collection<Long> nodeIds );
 
         void appliedRecoveredData( Iterable<NodePropertyUpdate> updates );
+
+        /**
+         * Reported periodically while an index is being populated, and once more when it has come online.
+         */
+        void populationProgress( IndexDescriptor descriptor, PopulationProgress progress );
     }
 
     public static abstract class MonitorAdapter implements Monitor
@@ -118,6 +126,11 @@ public class IndexingService extends LifecycleAdapter
         public void applyingRecoveredData( Collection<Long> nodeIds )
         {   // Do nothing
         }
+
+        @Override
+        public void populationProgress( IndexDescriptor descriptor, PopulationProgress progress )
+        {   // Do nothing
+        }
     }
 
     public static final Monitor NO_MONITOR = new MonitorAdapter()
@@ -238,7 +251,8 @@ public class IndexingService extends LifecycleAdapter
         // Drop placeholder proxies for indexes that need to be rebuilt
         dropRecoveringIndexes( indexMap, rebuildingDescriptors );
 
-        // Rebuild indexes by recreating and repopulating them
+        // Rebuild indexes by recreating and repopulating them, all in one store scan
+        IndexPopulationJob populationJob = newIndexPopulationJob();
         for ( Map.Entry<Long, Pair<IndexDescriptor, SchemaIndexProvider.Descriptor>> entry :
                 rebuildingDescriptors.entrySet() )
         {
@@ -253,12 +267,13 @@ public class IndexingService extends LifecycleAdapter
              * be in a state where they didn't finish populating, and despite the fact that we re-create them here,
              * they will get dropped as soon as recovery is completed by the constraint system.
              */
-            IndexProxy indexProxy =
-                createAndStartPopulatingIndexProxy( indexId, indexDescriptor, providerDescriptor, false );
+            IndexProxy indexProxy = createAndStartPopulatingIndexProxy( populationJob,
+                    indexId, indexDescriptor, providerDescriptor, false );
             indexMap.putIndexProxy( indexId, indexProxy );
         }
 
         indexMapReference.setIndexMap( indexMap );
+        startIndexPopulation( populationJob );
         state = State.RUNNING;
     }
 
@@ -287,37 +302,77 @@ public class IndexingService extends LifecycleAdapter
      * will shut down.
      */
     public void createIndex( IndexRule rule )
+    {
+        createIndexes( rule );
+    }
+
+    /*
+     * Creates indexes, populating all of them in one single scan over the store.
+     *
+     * Same as for createIndex, this is called from the transaction infrastructure during transaction commits.
+     */
+    public void createIndexes( IndexRule... rules )
     {
         IndexMap indexMap = indexMapReference.getIndexMapCopy();
+        IndexPopulationJob populationJob = newIndexPopulationJob();
 
-        long ruleId = rule.getId();
-        IndexProxy index = indexMap.getIndexProxy( ruleId );
-        if (index != null)
+        for ( IndexRule rule : rules )
         {
-            // We already have this index
-            return;
-        }
-        final IndexDescriptor descriptor = createDescriptor( rule );
-        SchemaIndexProvider.Descriptor providerDescriptor = rule.getProviderDescriptor();
-        boolean constraint = rule.isConstraintIndex();
-        if ( state == State.RUNNING )
-        {
-            try
+            long ruleId = rule.getId();
+            IndexProxy index = indexMap.getIndexProxy( ruleId );
+            if (index != null)
             {
-                index = createAndStartPopulatingIndexProxy( ruleId, descriptor, providerDescriptor, constraint );
+                // We already have this index
+                continue;
             }
-            catch ( IOException e )
+            final IndexDescriptor descriptor = createDescriptor( rule );
+            SchemaIndexProvider.Descriptor providerDescriptor = rule.getProviderDescriptor();
+            boolean constraint = rule.isConstraintIndex();
+            if ( state == State.RUNNING )
+            {
+                try
+                {
+                    index = createAndStartPopulatingIndexProxy( populationJob,
+                            ruleId, descriptor, providerDescriptor, constraint );
+                }
+                catch ( IOException e )
+                {
+                    throw new RuntimeException( e );
+                }
+            }
+            else
             {
-                throw new RuntimeException( e );
+                index = createAndStartRecoveringIndexProxy( descriptor, providerDescriptor );
             }
-        }
-        else
-        {
-            index = createAndStartRecoveringIndexProxy( descriptor, providerDescriptor );
+
+            indexMap.putIndexProxy( rule.getId(), index );
         }
 
-        indexMap.putIndexProxy( rule.getId(), index );
         indexMapReference.setIndexMap( indexMap );
+        startIndexPopulation( populationJob );
+    }
+
+    /**
+     * @return the progress of populating the given index, or {@link PopulationProgress#NONE} if this index
+     * hasn't been populated since the database started.
+     */
+    public PopulationProgress getIndexPopulationProgress( long indexId )
+    {
+        IndexPopulationJob.IndexPopulation population = populations.get( indexId );
+        return population != null ? population.progress() : PopulationProgress.NONE;
+    }
+
+    private IndexPopulationJob newIndexPopulationJob()
+    {
+        return new IndexPopulationJob( storeView, updateableSchemaState, scheduler, logging, monitor );
+    }
+
+    private void startIndexPopulation( IndexPopulationJob populationJob )
+    {
+        if ( populationJob.hasPopulations() )
+        {
+            scheduler.schedule( indexPopulation, populationJob );
+        }
     }
 
     private String indexUserDescription( final IndexDescriptor descriptor,
@@ -451,6 +506,7 @@ public class IndexingService extends LifecycleAdapter
     {
         long indexId = rule.getId();
         IndexProxy index = indexMapReference.removeIndexProxy( indexId );
+        populations.remove( indexId );
         if ( state == State.RUNNING )
         {
             assert index != null : "Index " + rule + " doesn't exists";
@@ -466,7 +522,8 @@ public class IndexingService extends LifecycleAdapter
         }
     }
 
-    private IndexProxy createAndStartPopulatingIndexProxy( final long ruleId,
+    private IndexProxy createAndStartPopulatingIndexProxy( IndexPopulationJob populationJob,
+                                                           final long ruleId,
                                                            final IndexDescriptor descriptor,
                                                            final SchemaIndexProvider.Descriptor providerDescriptor,
                                                            final boolean constraint ) throws IOException
@@ -481,10 +538,10 @@ public class IndexingService extends LifecycleAdapter
         FailedIndexProxyFactory failureDelegateFactory =
             new FailedPopulatingIndexProxyFactory( descriptor, providerDescriptor, populator, indexUserDescription );
 
-        PopulatingIndexProxy populatingIndex =
-            new PopulatingIndexProxy( scheduler, descriptor, providerDescriptor,
-                    failureDelegateFactory, populator, flipper, storeView,
-                indexUserDescription, updateableSchemaState, logging );
+        IndexPopulationJob.IndexPopulation population = populationJob.addPopulation( descriptor,
+                providerDescriptor, indexUserDescription, failureDelegateFactory, populator, flipper );
+        populations.put( ruleId, population );
+        PopulatingIndexProxy populatingIndex = new PopulatingIndexProxy( descriptor, providerDescriptor, population );
         flipper.flipTo( populatingIndex );
 
         // Prepare for flipping to online mode
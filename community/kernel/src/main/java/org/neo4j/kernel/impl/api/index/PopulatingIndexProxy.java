@@ -30,48 +30,38 @@ import org.neo4j.kernel.api.exceptions.index.IndexNotFoundKernelException;
 import org.neo4j.kernel.api.exceptions.index.IndexPopulationFailedKernelException;
 import org.neo4j.kernel.api.index.IndexDescriptor;
 import org.neo4j.kernel.api.index.IndexEntryConflictException;
-import org.neo4j.kernel.api.index.IndexPopulator;
 import org.neo4j.kernel.api.index.IndexReader;
 import org.neo4j.kernel.api.index.IndexUpdater;
 import org.neo4j.kernel.api.index.InternalIndexState;
 import org.neo4j.kernel.api.index.NodePropertyUpdate;
 import org.neo4j.kernel.api.index.SchemaIndexProvider;
-import org.neo4j.kernel.impl.api.UpdateableSchemaState;
-import org.neo4j.kernel.impl.util.JobScheduler;
-import org.neo4j.kernel.logging.Logging;
 
 import static org.neo4j.helpers.collection.IteratorUtil.emptyIterator;
-import static org.neo4j.kernel.impl.util.JobScheduler.Group.indexPopulation;
 
 
 public class PopulatingIndexProxy implements IndexProxy
 {
-    private final JobScheduler scheduler;
     private final IndexDescriptor descriptor;
     private final SchemaIndexProvider.Descriptor providerDescriptor;
-    private final IndexPopulationJob job;
-
-    public PopulatingIndexProxy( JobScheduler scheduler,
-                                 final IndexDescriptor descriptor,
-                                 final SchemaIndexProvider.Descriptor providerDescriptor,
-                                 final FailedIndexProxyFactory failureDelegateFactory,
-                                 final IndexPopulator writer,
-                                 FlippableIndexProxy flipper,
-                                 IndexStoreView storeView, final String indexUserDescription,
-                                 UpdateableSchemaState updateableSchemaState, Logging logging )
-    {
-        this.scheduler  = scheduler;
+    private final IndexPopulationJob.IndexPopulation population;
+
+    /**
+     * @param population the population of this index, part of an {@link IndexPopulationJob} that is
+     * scheduled by whoever created it, possibly together with other indexes.
+     */
+    public PopulatingIndexProxy( IndexDescriptor descriptor,
+                                 SchemaIndexProvider.Descriptor providerDescriptor,
+                                 IndexPopulationJob.IndexPopulation population )
+    {
         this.descriptor = descriptor;
         this.providerDescriptor = providerDescriptor;
-        this.job  = new IndexPopulationJob( descriptor, providerDescriptor,
-                indexUserDescription, failureDelegateFactory, writer, flipper, storeView,
-                updateableSchemaState, logging );
+        this.population = population;
     }
 
     @Override
     public void start()
     {
-        scheduler.schedule( indexPopulation, job );
+        // The population job is scheduled when all the indexes it populates have been added to it
     }
 
     @Override
@@ -85,7 +75,7 @@ public class PopulatingIndexProxy implements IndexProxy
                 switch( mode )
                 {
                     case ONLINE:
-                        job.update( update );
+                        population.update( update );
                         break;
 
                     case RECOVERY:
@@ -112,7 +102,7 @@ public class PopulatingIndexProxy implements IndexProxy
     @Override
     public Future<Void> drop()
     {
-        return job.cancel();
+        return population.cancel();
     }
 
     @Override
@@ -142,32 +132,32 @@ public class PopulatingIndexProxy implements IndexProxy
     @Override
     public Future<Void> close()
     {
-        return job.cancel();
+        return population.cancel();
     }
     
     @Override
     public IndexReader newReader() throws IndexNotFoundKernelException
     {
-        throw new IndexNotFoundKernelException( "Index is still populating: " + job );
+        throw new IndexNotFoundKernelException( "Index is still populating: " + population );
     }
 
     @Override
     public boolean awaitStoreScanCompleted() throws IndexPopulationFailedKernelException, InterruptedException
     {
-        job.awaitCompletion();
+        population.awaitCompletion();
         return true;
     }
 
     @Override
     public void activate() throws IndexActivationFailedKernelException
     {
-        throw new IllegalStateException( "Cannot activate index while it is still populating: " + job );
+        throw new IllegalStateException( "Cannot activate index while it is still populating: " + population );
     }
 
     @Override
     public void validate()
     {
-        throw new IllegalStateException( "Cannot validate index while it is still populating: " + job );
+        throw new IllegalStateException( "Cannot validate index while it is still populating: " + population );
     }
 
     @Override
@@ -185,6 +175,6 @@ public class PopulatingIndexProxy implements IndexProxy
     @Override
     public String toString()
     {
-        return getClass().getSimpleName() + "[job:" + job + "]";
+        return getClass().getSimpleName() + "[population:" + population + "]";
     }
 }
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.index;
+
+import static java.lang.String.format;
+
+/**
+ * A snapshot of how far an {@link IndexPopulationJob} has come in populating one index.
+ */
+public class PopulationProgress
+{
+    public static final PopulationProgress NONE = new PopulationProgress( 0, 0, 0, 0 );
+
+    private final long scannedNodes;
+    private final long totalNodes;
+    private final long entries;
+    private final long elapsedMillis;
+
+    public PopulationProgress( long scannedNodes, long totalNodes, long entries, long elapsedMillis )
+    {
+        this.scannedNodes = scannedNodes;
+        this.totalNodes = totalNodes;
+        this.entries = entries;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return number of node ids scanned so far.
+     */
+    public long getScannedNodes()
+    {
+        return scannedNodes;
+    }
+
+    /**
+     * @return number of node ids to scan, as of when the population started.
+     */
+    public long getTotalNodes()
+    {
+        return totalNodes;
+    }
+
+    /**
+     * @return number of entries added to the index so far.
+     */
+    public long getEntries()
+    {
+        return entries;
+    }
+
+    public long getElapsedMillis()
+    {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return the fraction of the store scanned, between 0 and 1.
+     */
+    public float getCompleted()
+    {
+        return totalNodes == 0 ? 1f : Math.min( 1f, (float) scannedNodes / totalNodes );
+    }
+
+    /**
+     * @return index entries added per second.
+     */
+    public long getThroughput()
+    {
+        return elapsedMillis == 0 ? entries : entries * 1000 / elapsedMillis;
+    }
+
+    @Override
+    public String toString()
+    {
+        return format( "%d/%d nodes scanned (%.1f%%), %d entries, %d entries/s",
+                scannedNodes, totalNodes, getCompleted() * 100, entries, getThroughput() );
+    }
+}
@@ -0,0 +1,1241 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.index.btree;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.neo4j.collection.primitive.PrimitiveLongSet;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.helpers.collection.PrefetchingResourceIterator;
+import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
+import org.neo4j.kernel.impl.nioneo.store.OperationType;
+import org.neo4j.kernel.impl.nioneo.store.PagedWindowPool;
+import org.neo4j.kernel.impl.nioneo.store.PersistenceWindow;
+import org.neo4j.kernel.impl.nioneo.store.StoreChannel;
+import org.neo4j.kernel.impl.nioneo.store.windowpool.WindowPool;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+/**
+ * A B+tree of (key, node id) entries in the fixed size pages of a file, accessed through a {@link PagedWindowPool}.
+ * Keys are compared byte by byte, see {@link BTreeKeys}, and then by node id.
+ * <p>
+ * Pages reachable from the last checkpoint are never written to. The first time such a page is changed after a
+ * checkpoint it's copied to a free page, and so is the path up to the root. A {@link #checkpoint(boolean)
+ * checkpoint} forces all pages and then writes the new root to the one of the two header slots not holding the
+ * previous checkpoint. A crash at any point therefore leaves an intact tree in the file, and on open the tree of
+ * the latest intact header is used while all pages it doesn't reach are free. What happened after that checkpoint
+ * is redone by the recovery of the logical log, which removes and re-adds the entries of all nodes changed since
+ * the index was last forced.
+ * <p>
+ * Writers are serialized, and readers collect their whole result under a shared lock. That keeps seeks consistent
+ * without sibling pointers between leaves, which copy-on-write would otherwise have to keep up to date.
+ */
+class BTree
+{
+    static final int PAGE_SIZE = 8192;
+
+    private static final long MAGIC = 0x4E454F4254524545L;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SLOTS = 2;
+    private static final int MAX_DEPTH = 32;
+    private static final long TARGET_WINDOW_SIZE = 1024 * 1024;
+
+    // Header page layout
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 8;
+    private static final int HEADER_GENERATION = 12;
+    private static final int HEADER_ROOT = 20;
+    private static final int HEADER_LAST_PAGE = 28;
+    private static final int HEADER_ENTRY_COUNT = 36;
+    private static final int HEADER_ONLINE = 44;
+    private static final int HEADER_CHECKSUM = 45;
+    private static final int HEADER_SIZE = 53;
+
+    // Tree page layout. Keys are stored from the end of the page, as [length:short][key][node id:long], and
+    // referenced from slots after the page header. Internal pages have a child after each key in the slots.
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+    private static final int TYPE = 0;
+    private static final int GENERATION = 1;
+    private static final int KEY_COUNT = 9;
+    private static final int DATA_START = 11;
+    private static final int DEAD_SPACE = 13;
+    private static final int LEFTMOST_CHILD = 15;
+    private static final int SLOTS = 23;
+    private static final int LEAF_SLOT = 2;
+    private static final int INTERNAL_SLOT = 10;
+    private static final long NO_CHILD = -1;
+
+    private final File file;
+    private final StoreChannel channel;
+    private final WindowPool pages;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Condition snapshotsClosed = lock.writeLock().newCondition();
+    private final byte[] scratch = new byte[PAGE_SIZE];
+    private final Deque<Long> freePages = new ArrayDeque<>();
+    private final List<Long> freedSinceCheckpoint = new ArrayList<>();
+
+    private long stableGeneration;
+    private long unstableGeneration;
+    private long root;
+    private long lastPageId;
+    private long entryCount;
+    private boolean online;
+    private int openSnapshots;
+    private boolean closed;
+
+    BTree( FileSystemAbstraction fileSystem, File file, long mappedMemory, boolean memoryMapped, StringLogger log )
+            throws IOException
+    {
+        this.file = file;
+        this.channel = fileSystem.open( file, "rw" );
+        try
+        {
+            Header header = channel.size() == 0 ? null : Header.latest( channel, file );
+            this.pages = new PagedWindowPool( file, PAGE_SIZE, channel, Math.max( mappedMemory, PAGE_SIZE ),
+                    TARGET_WINDOW_SIZE, memoryMapped, false, log );
+            if ( header == null )
+            {
+                create();
+            }
+            else
+            {
+                load( header );
+            }
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return whether or not the tree in {@code file} was online when last checkpointed.
+     * @throws IOException if the file has no intact header.
+     */
+    static boolean isOnline( FileSystemAbstraction fileSystem, File file ) throws IOException
+    {
+        if ( !fileSystem.fileExists( file ) )
+        {
+            return false;
+        }
+        try ( StoreChannel channel = fileSystem.open( file, "r" ) )
+        {
+            return channel.size() > 0 && Header.latest( channel, file ).online;
+        }
+    }
+
+    private void create()
+    {
+        stableGeneration = 1;
+        unstableGeneration = stableGeneration;
+        lastPageId = HEADER_SLOTS;
+        root = allocate();
+        writeNode( root, new Node( true ) );
+        writeHeader( stableGeneration );
+        pages.flushAll();
+        unstableGeneration = stableGeneration + 1;
+    }
+
+    private void load( Header header )
+    {
+        stableGeneration = header.generation;
+        unstableGeneration = stableGeneration + 1;
+        root = header.root;
+        lastPageId = header.lastPageId;
+        entryCount = header.entryCount;
+        online = header.online;
+
+        // Pages not reachable from the checkpointed root are either free or were written after the checkpoint
+        BitSet reachable = new BitSet();
+        markReachable( root, reachable );
+        for ( long pageId = HEADER_SLOTS; pageId < lastPageId; pageId++ )
+        {
+            if ( !reachable.get( (int) pageId ) )
+            {
+                freePages.push( pageId );
+            }
+        }
+    }
+
+    private void markReachable( long pageId, BitSet reachable )
+    {
+        reachable.set( (int) pageId );
+        Node node = readNode( pageId );
+        if ( !node.leaf )
+        {
+            for ( int i = 0; i <= node.keyCount; i++ )
+            {
+                markReachable( node.children[i], reachable );
+            }
+        }
+    }
+
+    /**
+     * Adds an entry, unless already there.
+     *
+     * @return whether or not the entry was added.
+     */
+    boolean insert( byte[] key, long nodeId )
+    {
+        lock.writeLock().lock();
+        try
+        {
+            assertOpen();
+            if ( contains( key, nodeId ) )
+            {
+                return false;
+            }
+            Path path = new Path();
+            long leaf = descendForUpdate( key, nodeId, path );
+            Split split = insertAt( leaf, -search( leaf, key, nodeId ) - 1, key, nodeId, NO_CHILD );
+            while ( split != null && path.depth > 0 )
+            {
+                path.depth--;
+                split = insertAt( path.pages[path.depth], path.childIndexes[path.depth],
+                        split.key, split.nodeId, split.rightPage );
+            }
+            if ( split != null )
+            {
+                Node newRoot = new Node( false );
+                newRoot.add( 0, split.key, split.nodeId, split.rightPage );
+                newRoot.children[0] = root;
+                root = allocate();
+                writeNode( root, newRoot );
+            }
+            entryCount++;
+            return true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an entry, if there.
+     *
+     * @return whether or not the entry was removed.
+     */
+    boolean remove( byte[] key, long nodeId )
+    {
+        lock.writeLock().lock();
+        try
+        {
+            assertOpen();
+            if ( !contains( key, nodeId ) )
+            {
+                return false;
+            }
+            Path path = new Path();
+            long page = descendForUpdate( key, nodeId, path );
+            boolean empty = removeSlot( page, search( page, key, nodeId ) );
+
+            // Unlink emptied pages, underfull pages are left as they are
+            while ( empty && path.depth > 0 )
+            {
+                freedSinceCheckpoint.add( page );
+                path.depth--;
+                page = path.pages[path.depth];
+                empty = removeChild( page, path.childIndexes[path.depth] );
+            }
+            if ( empty && !isLeaf( page ) )
+            {
+                freedSinceCheckpoint.add( root );
+                root = allocate();
+                writeNode( root, new Node( true ) );
+            }
+            while ( !isLeaf( root ) && keyCount( root ) == 0 )
+            {
+                freedSinceCheckpoint.add( root );
+                root = childAt( root, 0 );
+            }
+            entryCount--;
+            return true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all entries of the given nodes, by scanning the whole tree.
+     */
+    void removeAll( final PrimitiveLongSet nodeIds )
+    {
+        final List<byte[]> keys = new ArrayList<>();
+        final List<Long> keyNodeIds = new ArrayList<>();
+        lock.writeLock().lock();
+        try
+        {
+            visitAll( new EntryVisitor<RuntimeException>()
+            {
+                @Override
+                public void visit( byte[] key, long nodeId )
+                {
+                    if ( nodeIds.contains( nodeId ) )
+                    {
+                        keys.add( key );
+                        keyNodeIds.add( nodeId );
+                    }
+                }
+            } );
+            for ( int i = 0; i < keys.size(); i++ )
+            {
+                remove( keys.get( i ), keyNodeIds.get( i ) );
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return node ids of all entries between ({@code fromKey}, {@code fromNodeId}) and ({@code toKey},
+     * {@code toNodeId}), both inclusive, in key order.
+     */
+    long[] seek( byte[] fromKey, long fromNodeId, byte[] toKey, long toNodeId )
+    {
+        lock.readLock().lock();
+        try
+        {
+            assertOpen();
+            NodeIds result = new NodeIds();
+            collect( root, fromKey, fromNodeId, toKey, toNodeId, result );
+            return result.toArray();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visits all entries in key order.
+     */
+    <FAILURE extends Exception> void visitAll( EntryVisitor<FAILURE> visitor ) throws FAILURE
+    {
+        lock.readLock().lock();
+        try
+        {
+            assertOpen();
+            visit( root, visitor );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    long entryCount()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return entryCount;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Makes all changes so far durable, along with whether or not the tree is online. Waits for open
+     * {@link #snapshot() snapshots} to be closed first.
+     */
+    void checkpoint( boolean online )
+    {
+        lock.writeLock().lock();
+        try
+        {
+            assertOpen();
+            while ( openSnapshots > 0 )
+            {
+                snapshotsClosed.awaitUninterruptibly();
+            }
+            pages.flushAll();
+            this.online = online;
+            writeHeader( unstableGeneration );
+            pages.flushAll();
+            stableGeneration = unstableGeneration;
+            unstableGeneration = stableGeneration + 1;
+            freePages.addAll( freedSinceCheckpoint );
+            freedSinceCheckpoint.clear();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean isOnline()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return online;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checkpoints and then keeps the file as it is on disk, apart from pages not reachable from that checkpoint,
+     * until the returned iterator is closed.
+     */
+    ResourceIterator<File> snapshot()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            checkpoint( online );
+            openSnapshots++;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+        return new SnapshotIterator();
+    }
+
+    void close() throws IOException
+    {
+        lock.writeLock().lock();
+        try
+        {
+            if ( closed )
+            {
+                return;
+            }
+            checkpoint( online );
+            closed = true;
+            pages.close();
+            channel.close();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    interface EntryVisitor<FAILURE extends Exception>
+    {
+        void visit( byte[] key, long nodeId ) throws FAILURE;
+    }
+
+    private void assertOpen()
+    {
+        if ( closed )
+        {
+            throw new IllegalStateException( "Index file " + file + " has been closed" );
+        }
+    }
+
+    private boolean contains( byte[] key, long nodeId )
+    {
+        long page = root;
+        int childIndex;
+        while ( (childIndex = childIndexOrLeaf( page, key, nodeId )) != -1 )
+        {
+            page = childAt( page, childIndex );
+        }
+        return search( page, key, nodeId ) >= 0;
+    }
+
+    /**
+     * Goes down to the leaf where the entry belongs, making all pages on the way writable.
+     */
+    private long descendForUpdate( byte[] key, long nodeId, Path path )
+    {
+        root = writable( root );
+        long page = root;
+        int childIndex;
+        while ( (childIndex = childIndexOrLeaf( page, key, nodeId )) != -1 )
+        {
+            long child = childAt( page, childIndex );
+            long writableChild = writable( child );
+            if ( writableChild != child )
+            {
+                setChildAt( page, childIndex, writableChild );
+            }
+            path.pages[path.depth] = page;
+            path.childIndexes[path.depth] = childIndex;
+            path.depth++;
+            page = writableChild;
+        }
+        return page;
+    }
+
+    /**
+     * @return the page itself if written after the last checkpoint, otherwise a copy of it in a free page.
+     */
+    private long writable( long pageId )
+    {
+        PersistenceWindow window = pages.acquire( pageId, OperationType.READ );
+        try
+        {
+            ByteBuffer page = buffer( window, pageId );
+            if ( page.getLong( page.position() + GENERATION ) == unstableGeneration )
+            {
+                return pageId;
+            }
+            copy( page, page.position(), scratch, 0 );
+        }
+        finally
+        {
+            pages.release( window );
+        }
+        long copy = allocate();
+        window = pages.acquire( copy, OperationType.WRITE );
+        try
+        {
+            ByteBuffer page = buffer( window, copy );
+            int base = page.position();
+            for ( int i = 0; i < PAGE_SIZE; i++ )
+            {
+                page.put( base + i, scratch[i] );
+            }
+            page.putLong( base + GENERATION, unstableGeneration );
+        }
+        finally
+        {
+            pages.release( window );
+        }
+        freedSinceCheckpoint.add( pageId );
+        return copy;
+    }
+
+    private long allocate()
+    {
+        return freePages.isEmpty() ? lastPageId++ : freePages.pop();
+    }
+
+    /**
+     * Inserts a key, and for internal pages the child to the right of it, at the given position. Splits the page
+     * if it's full.
+     *
+     * @return the split, or {@code null} if the page didn't have to be split.
+     */
+    private Split insertAt( long pageId, int position, byte[] key, long nodeId, long rightChild )
+    {
+        if ( insertInPlace( pageId, position, key, nodeId, rightChild ) )
+        {
+            return null;
+        }
+        Node node = readNode( pageId );
+        node.add( position, key, nodeId, rightChild );
+        int splitAt = node.splitPoint();
+        Node right = new Node( node.leaf );
+        Split split;
+        if ( node.leaf )
+        {
+            split = new Split( node.keys[splitAt], node.nodeIds[splitAt] );
+            for ( int i = splitAt; i < node.keyCount; i++ )
+            {
+                right.add( i - splitAt, node.keys[i], node.nodeIds[i], NO_CHILD );
+            }
+        }
+        else
+        {
+            // The middle key moves up to the parent, and its child becomes the leftmost child of the right page
+            split = new Split( node.keys[splitAt], node.nodeIds[splitAt] );
+            right.children[0] = node.children[splitAt + 1];
+            for ( int i = splitAt + 1; i < node.keyCount; i++ )
+            {
+                right.add( i - splitAt - 1, node.keys[i], node.nodeIds[i], node.children[i + 1] );
+            }
+        }
+        node.keyCount = splitAt;
+        split.rightPage = allocate();
+        writeNode( pageId, node );
+        writeNode( split.rightPage, right );
+        return split;
+    }
+
+    private boolean insertInPlace( long pageId, int position, byte[] key, long nodeId, long rightChild )
+    {
+        PersistenceWindow window = pages.acquire( pageId, OperationType.WRITE );
+        try
+        {
+            ByteBuffer page = buffer( window, pageId );
+            int base = page.position();
+            boolean leaf = page.get( base + TYPE ) == LEAF;
+            int slotSize = leaf ? LEAF_SLOT : INTERNAL_SLOT;
+            int count = page.getShort( base + KEY_COUNT );
+            int keySize = keySize( key.length );
+            int dataStart = page.getShort( base + DATA_START );
+            int free = dataStart - (SLOTS + (count + 1) * slotSize);
+            if ( free < keySize )
+            {
+                if ( free + page.getShort( base + DEAD_SPACE ) < keySize )
+                {
+                    return false;
+                }
+                dataStart = compact( page, base, slotSize, count );
+            }
+            dataStart -= keySize;
+            writeKey( page, base + dataStart, key, nodeId );
+            for ( int i = count; i > position; i-- )
+            {
+                copySlot( page, base, slotSize, i - 1, i );
+            }
+            int slot = base + SLOTS + position * slotSize;
+            page.putShort( slot, (short) dataStart );
+            if ( !leaf )
+            {
+                page.putLong( slot + 2, rightChild );
+            }
+            page.putShort( base + KEY_COUNT, (short) (count + 1) );
+            page.putShort( base + DATA_START, (short) dataStart );
+            return true;
+        }
+        finally
+        {
+            pages.release( window );
+        }
+    }
+
+    /**
+     * Moves all keys in use to the end of the page, getting rid of the dead space between them.
+     *
+     * @return the new start of the key data.
+     */
+    private int compact( ByteBuffer page, int base, int slotSize, int count )
+    {
+        int end = PAGE_SIZE;
+        for ( int i = 0; i < count; i++ )
+        {
+            int slot = base + SLOTS + i * slotSize;
+            int offset = page.getShort( slot );
+            int size = keySize( page.getShort( base + offset ) );
+            end -= size;
+            for ( int j = 0; j < size; j++ )
+            {
+                scratch[end + j] = page.get( base + offset + j );
+            }
+            page.putShort( slot, (short) end );
+        }
+        for ( int i = end; i < PAGE_SIZE; i++ )
+        {
+            page.put( base + i, scratch[i] );
+        }
+        page.putShort( base + DEAD_SPACE, (short) 0 );
+        return end;
+    }
+
+    /**
+     * @return whether or not the page has no keys left.
+     */
+    private boolean removeSlot( long pageId, int position )
+    {
+        PersistenceWindow window = pages.acquire( pageId, OperationType.WRITE );
+        try
+        {
+            ByteBuffer page = buffer( window, pageId );
+            int base = page.position();
+            int slotSize = page.get( base + TYPE ) == LEAF ? LEAF_SLOT : INTERNAL_SLOT;
+            int count = page.getShort( base + KEY_COUNT );
+            int offset = page.getShort( base + SLOTS + position * slotSize );
+            int deadSpace = page.getShort( base + DEAD_SPACE ) + keySize( page.getShort( base + offset ) );
+            for ( int i = position; i < count - 1; i++ )
+            {
+                copySlot( page, base, slotSize, i + 1, i );
+            }
+            page.putShort( base + KEY_COUNT, (short) (count - 1) );
+            page.putShort( base + DEAD_SPACE, (short) deadSpace );
+            return count == 1;
+        }
+        finally
+        {
+            pages.release( window );
+        }
+    }
+
+    /**
+     * Unlinks a child from an internal page, along with the key separating it from its neighbour.
+     *
+     * @return whether or not the page has no children left.
+     */
+    private boolean removeChild( long pageId, int childIndex )
+    {
+        if ( keyCount( pageId ) == 0 )
+        {
+            return true;
+        }
+        if ( childIndex == 0 )
+        {
+            setChildAt( pageId, 0, childAt( pageId, 1 ) );
+            removeSlot( pageId, 0 );
+        }
+        else
+        {
+            removeSlot( pageId, childIndex - 1 );
+        }
+        return false;
+    }
+
+    private void collect( long pageId, byte[] fromKey, long fromNodeId, byte[] toKey, long toNodeId,
+                          NodeIds result )
+    {
+        long[] children;
+        PersistenceWindow window = pages.acquire( pageId, OperationType.READ );
+        try
+        {
+            ByteBuffer page = buffer( window, pageId );
+            int base = page.position();
+            if ( page.get( base + TYPE ) == LEAF )
+            {
+                int count = page.getShort( base + KEY_COUNT );
+                int position = search( page, base, LEAF_SLOT, fromKey, fromNodeId );
+                for ( int i = position < 0 ? -position - 1 : position; i < count; i++ )
+                {
+                    int offset = page.getShort( base + SLOTS + i * LEAF_SLOT );
+                    if ( compare( page, base + offset, toKey, toNodeId ) > 0 )
+                    {
+                        break;
+                    }
+                    result.add( page.getLong( base + offset + 2 + page.getShort( base + offset ) ) );
+                }
+                return;
+            }
+            int first = childIndex( page, base, fromKey, fromNodeId );
+            int last = childIndex( page, base, toKey, toNodeId );
+            children = new long[Math.max( 0, last - first + 1 )];
+            for ( int i = first; i <= last; i++ )
+            {
+                children[i - first] = child( page, base, i );
+            }
+        }
+        finally
+        {
+            pages.release( window );
+        }
+        for ( long child : children )
+        {
+            collect( child, fromKey, fromNodeId, toKey, toNodeId, result );
+        }
+    }
+
+    private <FAILURE extends Exception> void visit( long pageId, EntryVisitor<FAILURE> visitor ) throws FAILURE
+    {
+        Node node = readNode( pageId );
+        for ( int i = 0; i < node.keyCount; i++ )
+        {
+            if ( node.leaf )
+            {
+                visitor.visit( node.keys[i], node.nodeIds[i] );
+            }
+            else
+            {
+                visit( node.children[i], visitor );
+            }
+        }
+        if ( !node.leaf )
+        {
+            visit( node.children[node.keyCount], visitor );
+        }
+    }
+
+    private boolean isLeaf( long pageId )
+    {
+        PersistenceWindow window = pages.acquire( pageId, OperationType.READ );
+        try
+        {
+            ByteBuffer page = buffer( window, pageId );
+            return page.get( page.position() + TYPE ) == LEAF;
+        }
+        finally
+        {
+            pages.release( window );
+        }
+    }
+
+    private int keyCount( long pageId )
+    {
+        PersistenceWindow window = pages.acquire( pageId, OperationType.READ );
+        try
+        {
+            ByteBuffer page = buffer( window, pageId );
+            return page.getShort( page.position() + KEY_COUNT );
+        }
+        finally
+        {
+            pages.release( window );
+        }
+    }
+
+    /**
+     * @return index of the child to go down to for the given entry, or -1 if the page is a leaf.
+     */
+    private int childIndexOrLeaf( long pageId, byte[] key, long nodeId )
+    {
+        PersistenceWindow window = pages.acquire( pageId, OperationType.READ );
+        try
+        {
+            ByteBuffer page = buffer( window, pageId );
+            int base = page.position();
+            return page.get( base + TYPE ) == LEAF ? -1 : childIndex( page, base, key, nodeId );
+        }
+        finally
+        {
+            pages.release( window );
+        }
+    }
+
+    private long childAt( long pageId, int childIndex )
+    {
+        PersistenceWindow window = pages.acquire( pageId, OperationType.READ );
+        try
+        {
+            ByteBuffer page = buffer( window, pageId );
+            return child( page, page.position(), childIndex );
+        }
+        finally
+        {
+            pages.release( window );
+        }
+    }
+
+    private void setChildAt( long pageId, int childIndex, long child )
+    {
+        PersistenceWindow window = pages.acquire( pageId, OperationType.WRITE );
+        try
+        {
+            ByteBuffer page = buffer( window, pageId );
+            page.putLong( childOffset( page.position(), childIndex ), child );
+        }
+        finally
+        {
+            pages.release( window );
+        }
+    }
+
+    private int search( long pageId, byte[] key, long nodeId )
+    {
+        PersistenceWindow window = pages.acquire( pageId, OperationType.READ );
+        try
+        {
+            ByteBuffer page = buffer( window, pageId );
+            int base = page.position();
+            return search( page, base, page.get( base + TYPE ) == LEAF ? LEAF_SLOT : INTERNAL_SLOT, key, nodeId );
+        }
+        finally
+        {
+            pages.release( window );
+        }
+    }
+
+    private Node readNode( long pageId )
+    {
+        PersistenceWindow window = pages.acquire( pageId, OperationType.READ );
+        try
+        {
+            ByteBuffer page = buffer( window, pageId );
+            int base = page.position();
+            Node node = new Node( page.get( base + TYPE ) == LEAF );
+            int count = page.getShort( base + KEY_COUNT );
+            int slotSize = node.leaf ? LEAF_SLOT : INTERNAL_SLOT;
+            node.children[0] = page.getLong( base + LEFTMOST_CHILD );
+            for ( int i = 0; i < count; i++ )
+            {
+                int slot = base + SLOTS + i * slotSize;
+                int offset = base + page.getShort( slot );
+                byte[] key = new byte[page.getShort( offset )];
+                for ( int j = 0; j < key.length; j++ )
+                {
+                    key[j] = page.get( offset + 2 + j );
+                }
+                node.add( i, key, page.getLong( offset + 2 + key.length ),
+                        node.leaf ? NO_CHILD : page.getLong( slot + 2 ) );
+            }
+            return node;
+        }
+        finally
+        {
+            pages.release( window );
+        }
+    }
+
+    private void writeNode( long pageId, Node node )
+    {
+        PersistenceWindow window = pages.acquire( pageId, OperationType.WRITE );
+        try
+        {
+            ByteBuffer page = buffer( window, pageId );
+            int base = page.position();
+            int slotSize = node.leaf ? LEAF_SLOT : INTERNAL_SLOT;
+            int dataStart = PAGE_SIZE;
+            for ( int i = 0; i < node.keyCount; i++ )
+            {
+                dataStart -= keySize( node.keys[i].length );
+                writeKey( page, base + dataStart, node.keys[i], node.nodeIds[i] );
+                int slot = base + SLOTS + i * slotSize;
+                page.putShort( slot, (short) dataStart );
+                if ( !node.leaf )
+                {
+                    page.putLong( slot + 2, node.children[i + 1] );
+                }
+            }
+            page.put( base + TYPE, node.leaf ? LEAF : INTERNAL );
+            page.putLong( base + GENERATION, unstableGeneration );
+            page.putShort( base + KEY_COUNT, (short) node.keyCount );
+            page.putShort( base + DATA_START, (short) dataStart );
+            page.putShort( base + DEAD_SPACE, (short) 0 );
+            page.putLong( base + LEFTMOST_CHILD, node.leaf ? NO_CHILD : node.children[0] );
+        }
+        finally
+        {
+            pages.release( window );
+        }
+    }
+
+    private void writeHeader( long generation )
+    {
+        long slot = generation % HEADER_SLOTS;
+        PersistenceWindow window = pages.acquire( slot, OperationType.WRITE );
+        try
+        {
+            ByteBuffer page = buffer( window, slot );
+            int base = page.position();
+            ByteBuffer header = ByteBuffer.wrap( scratch, 0, HEADER_SIZE );
+            header.putLong( HEADER_MAGIC, MAGIC );
+            header.putInt( HEADER_VERSION, FORMAT_VERSION );
+            header.putLong( HEADER_GENERATION, generation );
+            header.putLong( HEADER_ROOT, root );
+            header.putLong( HEADER_LAST_PAGE, lastPageId );
+            header.putLong( HEADER_ENTRY_COUNT, entryCount );
+            header.put( HEADER_ONLINE, (byte) (online ? 1 : 0) );
+            header.putLong( HEADER_CHECKSUM, Header.checksum( scratch ) );
+            for ( int i = 0; i < HEADER_SIZE; i++ )
+            {
+                page.put( base + i, scratch[i] );
+            }
+        }
+        finally
+        {
+            pages.release( window );
+        }
+    }
+
+    private static ByteBuffer buffer( PersistenceWindow window, long pageId )
+    {
+        return window.getOffsettedBuffer( pageId ).getBuffer();
+    }
+
+    private static void copy( ByteBuffer page, int base, byte[] target, int offset )
+    {
+        for ( int i = 0; i < PAGE_SIZE; i++ )
+        {
+            target[offset + i] = page.get( base + i );
+        }
+    }
+
+    private static void copySlot( ByteBuffer page, int base, int slotSize, int from, int to )
+    {
+        int source = base + SLOTS + from * slotSize;
+        int target = base + SLOTS + to * slotSize;
+        page.putShort( target, page.getShort( source ) );
+        if ( slotSize == INTERNAL_SLOT )
+        {
+            page.putLong( target + 2, page.getLong( source + 2 ) );
+        }
+    }
+
+    private static void writeKey( ByteBuffer page, int offset, byte[] key, long nodeId )
+    {
+        page.putShort( offset, (short) key.length );
+        for ( int i = 0; i < key.length; i++ )
+        {
+            page.put( offset + 2 + i, key[i] );
+        }
+        page.putLong( offset + 2 + key.length, nodeId );
+    }
+
+    private static int keySize( int keyLength )
+    {
+        return 2 + keyLength + 8;
+    }
+
+    private static long child( ByteBuffer page, int base, int childIndex )
+    {
+        return page.getLong( childOffset( base, childIndex ) );
+    }
+
+    private static int childOffset( int base, int childIndex )
+    {
+        return childIndex == 0 ? base + LEFTMOST_CHILD : base + SLOTS + (childIndex - 1) * INTERNAL_SLOT + 2;
+    }
+
+    /**
+     * Keys equal to a key of an internal page are found in the child to the right of it.
+     */
+    private static int childIndex( ByteBuffer page, int base, byte[] key, long nodeId )
+    {
+        int position = search( page, base, INTERNAL_SLOT, key, nodeId );
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    /**
+     * @return the position of the entry, or {@code -(insertion point) - 1} if not found.
+     */
+    private static int search( ByteBuffer page, int base, int slotSize, byte[] key, long nodeId )
+    {
+        int low = 0;
+        int high = page.getShort( base + KEY_COUNT ) - 1;
+        while ( low <= high )
+        {
+            int middle = (low + high) >>> 1;
+            int comparison = compare( page, base + page.getShort( base + SLOTS + middle * slotSize ), key, nodeId );
+            if ( comparison < 0 )
+            {
+                low = middle + 1;
+            }
+            else if ( comparison > 0 )
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static int compare( ByteBuffer page, int offset, byte[] key, long nodeId )
+    {
+        int length = page.getShort( offset );
+        int common = Math.min( length, key.length );
+        for ( int i = 0; i < common; i++ )
+        {
+            int difference = (page.get( offset + 2 + i ) & 0xFF) - (key[i] & 0xFF);
+            if ( difference != 0 )
+            {
+                return difference;
+            }
+        }
+        if ( length != key.length )
+        {
+            return length - key.length;
+        }
+        return Long.compare( page.getLong( offset + 2 + length ), nodeId );
+    }
+
+    private static class Node
+    {
+        final boolean leaf;
+        int keyCount;
+        byte[][] keys = new byte[16][];
+        long[] nodeIds = new long[16];
+        long[] children = new long[17];
+
+        Node( boolean leaf )
+        {
+            this.leaf = leaf;
+            children[0] = NO_CHILD;
+        }
+
+        void add( int position, byte[] key, long nodeId, long rightChild )
+        {
+            if ( keyCount == keys.length )
+            {
+                keys = Arrays.copyOf( keys, keyCount * 2 );
+                nodeIds = Arrays.copyOf( nodeIds, keyCount * 2 );
+                children = Arrays.copyOf( children, keyCount * 2 + 1 );
+            }
+            System.arraycopy( keys, position, keys, position + 1, keyCount - position );
+            System.arraycopy( nodeIds, position, nodeIds, position + 1, keyCount - position );
+            System.arraycopy( children, position + 1, children, position + 2, keyCount - position );
+            keys[position] = key;
+            nodeIds[position] = nodeId;
+            children[position + 1] = rightChild;
+            keyCount++;
+        }
+
+        /**
+         * @return the position where the key bytes are split in about two halves.
+         */
+        int splitPoint()
+        {
+            int total = 0;
+            for ( int i = 0; i < keyCount; i++ )
+            {
+                total += keys[i].length;
+            }
+            int half = 0;
+            int position = 0;
+            while ( position < keyCount - 1 && half + keys[position].length <= total / 2 )
+            {
+                half += keys[position++].length;
+            }
+            return Math.max( position, 1 );
+        }
+    }
+
+    private static class Path
+    {
+        final long[] pages = new long[MAX_DEPTH];
+        final int[] childIndexes = new int[MAX_DEPTH];
+        int depth;
+    }
+
+    private static class Split
+    {
+        final byte[] key;
+        final long nodeId;
+        long rightPage;
+
+        Split( byte[] key, long nodeId )
+        {
+            this.key = key;
+            this.nodeId = nodeId;
+        }
+    }
+
+    private static class NodeIds
+    {
+        private long[] nodeIds = new long[16];
+        private int size;
+
+        void add( long nodeId )
+        {
+            if ( size == nodeIds.length )
+            {
+                nodeIds = Arrays.copyOf( nodeIds, size * 2 );
+            }
+            nodeIds[size++] = nodeId;
+        }
+
+        long[] toArray()
+        {
+            return Arrays.copyOf( nodeIds, size );
+        }
+    }
+
+    private static class Header
+    {
+        final long generation;
+        final long root;
+        final long lastPageId;
+        final long entryCount;
+        final boolean online;
+
+        private Header( ByteBuffer header )
+        {
+            this.generation = header.getLong( HEADER_GENERATION );
+            this.root = header.getLong( HEADER_ROOT );
+            this.lastPageId = header.getLong( HEADER_LAST_PAGE );
+            this.entryCount = header.getLong( HEADER_ENTRY_COUNT );
+            this.online = header.get( HEADER_ONLINE ) == 1;
+        }
+
+        /**
+         * @return the header of the latest checkpoint that was completely written.
+         */
+        static Header latest( StoreChannel channel, File file ) throws IOException
+        {
+            Header latest = null;
+            for ( int slot = 0; slot < HEADER_SLOTS; slot++ )
+            {
+                ByteBuffer buffer = ByteBuffer.allocate( HEADER_SIZE );
+                long position = (long) slot * PAGE_SIZE;
+                while ( buffer.hasRemaining() && channel.read( buffer, position + buffer.position() ) > 0 )
+                {
+                    // keep reading
+                }
+                if ( !buffer.hasRemaining() && buffer.getLong( HEADER_MAGIC ) == MAGIC &&
+                     buffer.getInt( HEADER_VERSION ) == FORMAT_VERSION &&
+                     buffer.getLong( HEADER_CHECKSUM ) == checksum( buffer.array() ) )
+                {
+                    Header header = new Header( buffer );
+                    if ( latest == null || header.generation > latest.generation )
+                    {
+                        latest = header;
+                    }
+                }
+            }
+            if ( latest == null )
+            {
+                throw new IOException( "No intact header found in index file " + file );
+            }
+            return latest;
+        }
+
+        static long checksum( byte[] header )
+        {
+            CRC32 crc = new CRC32();
+            crc.update( header, 0, HEADER_CHECKSUM );
+            return crc.getValue();
+        }
+    }
+
+    private class SnapshotIterator extends PrefetchingResourceIterator<File>
+    {
+        private boolean returned;
+        private boolean closed;
+
+        @Override
+        protected File fetchNextOrNull()
+        {
+            if ( returned )
+            {
+                return null;
+            }
+            returned = true;
+            return file;
+        }
+
+        @Override
+        public void close()
+        {
+            lock.writeLock().lock();
+            try
+            {
+                if ( !closed )
+                {
+                    closed = true;
+                    openSnapshots--;
+                    snapshotsClosed.signalAll();
+                }
+            }
+            finally
+            {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.index.btree;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.neo4j.kernel.api.index.util.FolderLayout;
+import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+/**
+ * Where the {@link BTree} of each index lives, one folder per index.
+ */
+class BTreeFiles
+{
+    static final String TREE_FILE_NAME = "index.btree";
+
+    private final FileSystemAbstraction fileSystem;
+    private final FolderLayout folderLayout;
+    private final long mappedMemory;
+    private final boolean memoryMapped;
+    private final StringLogger log;
+
+    BTreeFiles( FileSystemAbstraction fileSystem, FolderLayout folderLayout, long mappedMemory,
+                boolean memoryMapped, StringLogger log )
+    {
+        this.fileSystem = fileSystem;
+        this.folderLayout = folderLayout;
+        this.mappedMemory = mappedMemory;
+        this.memoryMapped = memoryMapped;
+        this.log = log;
+    }
+
+    File treeFile( long indexId )
+    {
+        return new File( folderLayout.getFolder( indexId ), TREE_FILE_NAME );
+    }
+
+    BTree open( long indexId ) throws IOException
+    {
+        fileSystem.mkdirs( folderLayout.getFolder( indexId ) );
+        return new BTree( fileSystem, treeFile( indexId ), mappedMemory, memoryMapped, log );
+    }
+
+    boolean isOnline( long indexId ) throws IOException
+    {
+        return BTree.isOnline( fileSystem, treeFile( indexId ) );
+    }
+
+    void delete( long indexId ) throws IOException
+    {
+        File folder = folderLayout.getFolder( indexId );
+        if ( fileSystem.fileExists( folder ) )
+        {
+            fileSystem.deleteRecursively( folder );
+        }
+    }
+}
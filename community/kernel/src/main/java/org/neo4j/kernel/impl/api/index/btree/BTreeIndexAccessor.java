@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.index.btree;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.kernel.api.direct.BoundedIterable;
+import org.neo4j.kernel.api.index.IndexAccessor;
+import org.neo4j.kernel.api.index.IndexReader;
+import org.neo4j.kernel.api.index.IndexUpdater;
+import org.neo4j.kernel.impl.api.index.IndexUpdateMode;
+
+/**
+ * An online index backed by a {@link BTree}. Unique indexes use this as well, since uniqueness of online updates
+ * is verified by the kernel before they get here, the same way as for the Lucene index.
+ */
+class BTreeIndexAccessor implements IndexAccessor
+{
+    private final BTreeFiles files;
+    private final long indexId;
+    private final BTree tree;
+
+    BTreeIndexAccessor( BTreeFiles files, long indexId ) throws IOException
+    {
+        this.files = files;
+        this.indexId = indexId;
+        this.tree = files.open( indexId );
+    }
+
+    @Override
+    public void drop() throws IOException
+    {
+        tree.close();
+        files.delete( indexId );
+    }
+
+    @Override
+    public IndexUpdater newUpdater( IndexUpdateMode mode )
+    {
+        return new BTreeIndexUpdater( tree );
+    }
+
+    @Override
+    public void force()
+    {
+        tree.checkpoint( true );
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        tree.close();
+    }
+
+    @Override
+    public IndexReader newReader()
+    {
+        return new BTreeIndexReader( tree );
+    }
+
+    @Override
+    public BoundedIterable<Long> newAllEntriesReader()
+    {
+        return new BoundedIterable<Long>()
+        {
+            @Override
+            public long maxCount()
+            {
+                return tree.entryCount();
+            }
+
+            @Override
+            public Iterator<Long> iterator()
+            {
+                final List<Long> nodeIds = new ArrayList<>();
+                tree.visitAll( new BTree.EntryVisitor<RuntimeException>()
+                {
+                    @Override
+                    public void visit( byte[] key, long nodeId )
+                    {
+                        nodeIds.add( nodeId );
+                    }
+                } );
+                return nodeIds.iterator();
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+    }
+
+    @Override
+    public ResourceIterator<File> snapshotFiles()
+    {
+        return tree.snapshot();
+    }
+}
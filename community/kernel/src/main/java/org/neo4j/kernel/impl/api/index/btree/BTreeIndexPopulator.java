@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.index.btree;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.neo4j.helpers.ThisShouldNotHappenError;
+import org.neo4j.kernel.api.exceptions.KernelException;
+import org.neo4j.kernel.api.index.IndexDescriptor;
+import org.neo4j.kernel.api.index.IndexEntryConflictException;
+import org.neo4j.kernel.api.index.IndexPopulator;
+import org.neo4j.kernel.api.index.IndexUpdater;
+import org.neo4j.kernel.api.index.NodePropertyUpdate;
+import org.neo4j.kernel.api.index.PreexistingIndexEntryConflictException;
+import org.neo4j.kernel.api.index.PropertyAccessor;
+import org.neo4j.kernel.api.index.util.FailureStorage;
+import org.neo4j.kernel.api.properties.Property;
+
+/**
+ * Populates a {@link BTree}, which isn't marked as online until population completes successfully.
+ * <p>
+ * For unique indexes, entries with equal keys are verified to have different property values after population,
+ * and for values touched by concurrent updates during population. Keys are compared first since different values
+ * can share a key, like numbers too large to be told apart as doubles, or values too long to fit a whole key.
+ */
+class BTreeIndexPopulator implements IndexPopulator
+{
+    private final BTreeFiles files;
+    private final FailureStorage failureStorage;
+    private final long indexId;
+    private final IndexDescriptor descriptor;
+    private final boolean unique;
+    private BTree tree;
+
+    BTreeIndexPopulator( BTreeFiles files, FailureStorage failureStorage, long indexId,
+                         IndexDescriptor descriptor, boolean unique )
+    {
+        this.files = files;
+        this.failureStorage = failureStorage;
+        this.indexId = indexId;
+        this.descriptor = descriptor;
+        this.unique = unique;
+    }
+
+    @Override
+    public void create() throws IOException
+    {
+        files.delete( indexId );
+        failureStorage.reserveForIndex( indexId );
+        tree = files.open( indexId );
+    }
+
+    @Override
+    public void drop() throws IOException
+    {
+        if ( tree != null )
+        {
+            tree.close();
+            tree = null;
+        }
+        files.delete( indexId );
+        failureStorage.clearForIndex( indexId );
+    }
+
+    @Override
+    public void add( long nodeId, Object propertyValue )
+    {
+        tree.insert( BTreeKeys.encode( propertyValue ), nodeId );
+    }
+
+    @Override
+    public void verifyDeferredConstraints( final PropertyAccessor accessor ) throws Exception
+    {
+        if ( !unique )
+        {
+            return;
+        }
+        final List<Long> nodeIds = new ArrayList<>();
+        tree.visitAll( new BTree.EntryVisitor<IndexEntryConflictException>()
+        {
+            private byte[] previousKey;
+
+            @Override
+            public void visit( byte[] key, long nodeId ) throws IndexEntryConflictException
+            {
+                if ( !Arrays.equals( key, previousKey ) )
+                {
+                    verifyUnique( nodeIds, accessor );
+                    nodeIds.clear();
+                    previousKey = key;
+                }
+                nodeIds.add( nodeId );
+            }
+        } );
+        verifyUnique( nodeIds, accessor );
+    }
+
+    @Override
+    public IndexUpdater newPopulatingUpdater( final PropertyAccessor accessor )
+    {
+        final IndexUpdater updater = new BTreeIndexUpdater( tree );
+        if ( !unique )
+        {
+            return updater;
+        }
+        return new IndexUpdater()
+        {
+            private final List<Object> updatedValues = new ArrayList<>();
+
+            @Override
+            public void process( NodePropertyUpdate update ) throws IOException, IndexEntryConflictException
+            {
+                updater.process( update );
+                switch ( update.getUpdateMode() )
+                {
+                    case ADDED:
+                    case CHANGED:
+                        updatedValues.add( update.getValueAfter() );
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            @Override
+            public void close() throws IndexEntryConflictException
+            {
+                for ( Object value : updatedValues )
+                {
+                    byte[] key = BTreeKeys.encode( value );
+                    List<Long> nodeIds = new ArrayList<>();
+                    for ( long nodeId : tree.seek( key, Long.MIN_VALUE, key, Long.MAX_VALUE ) )
+                    {
+                        nodeIds.add( nodeId );
+                    }
+                    verifyUnique( nodeIds, accessor );
+                }
+            }
+
+            @Override
+            public void remove( Iterable<Long> nodeIds )
+            {
+                throw new UnsupportedOperationException( "should not remove() from populating index" );
+            }
+        };
+    }
+
+    private void verifyUnique( List<Long> nodeIds, PropertyAccessor accessor )
+            throws PreexistingIndexEntryConflictException
+    {
+        if ( nodeIds.size() < 2 )
+        {
+            return;
+        }
+        int propertyKeyId = descriptor.getPropertyKeyId();
+        try
+        {
+            List<Property> properties = new ArrayList<>( nodeIds.size() );
+            for ( int i = 0; i < nodeIds.size(); i++ )
+            {
+                Property property = accessor.getProperty( nodeIds.get( i ), propertyKeyId );
+                Object value = property.value();
+                for ( int j = 0; j < i; j++ )
+                {
+                    if ( properties.get( j ).valueEquals( value ) )
+                    {
+                        throw new PreexistingIndexEntryConflictException( value, nodeIds.get( j ), nodeIds.get( i ) );
+                    }
+                }
+                properties.add( property );
+            }
+        }
+        catch ( KernelException e )
+        {
+            throw new ThisShouldNotHappenError(
+                    "Mattias", "Indexed node should exist and have the indexed property.", e );
+        }
+    }
+
+    @Override
+    public void close( boolean populationCompletedSuccessfully ) throws IOException
+    {
+        if ( tree == null )
+        {
+            return;
+        }
+        if ( populationCompletedSuccessfully )
+        {
+            tree.checkpoint( true );
+        }
+        tree.close();
+    }
+
+    @Override
+    public void markAsFailed( String failure ) throws IOException
+    {
+        failureStorage.storeIndexFailure( indexId, failure );
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.index.btree;
+
+import org.neo4j.collection.primitive.PrimitiveLongCollections;
+import org.neo4j.collection.primitive.PrimitiveLongIterator;
+import org.neo4j.kernel.api.index.IndexOrder;
+import org.neo4j.kernel.api.index.IndexReader;
+
+import static org.neo4j.kernel.impl.api.index.btree.BTreeKeys.NUMBER;
+import static org.neo4j.kernel.impl.api.index.btree.BTreeKeys.STRING;
+
+/**
+ * Seeks in a {@link BTree}. Entries are sorted by value, so ordered seeks come for free.
+ */
+class BTreeIndexReader implements IndexReader
+{
+    private final BTree tree;
+
+    BTreeIndexReader( BTree tree )
+    {
+        this.tree = tree;
+    }
+
+    @Override
+    public PrimitiveLongIterator lookup( Object value )
+    {
+        byte[] key;
+        try
+        {
+            key = BTreeKeys.encode( value );
+        }
+        catch ( IllegalArgumentException e )
+        {   // Not a value that can be indexed, so not in the index
+            return PrimitiveLongCollections.emptyIterator();
+        }
+        return PrimitiveLongCollections.iterator( tree.seek( key, Long.MIN_VALUE, key, Long.MAX_VALUE ) );
+    }
+
+    @Override
+    public PrimitiveLongIterator rangeSeekByNumber( Number lower, boolean includeLower, Number upper,
+                                                    boolean includeUpper, IndexOrder order )
+    {
+        return seek( lower == null ? null : BTreeKeys.number( lower.doubleValue() ), includeLower,
+                upper == null ? null : BTreeKeys.number( upper.doubleValue() ), includeUpper, NUMBER, order );
+    }
+
+    @Override
+    public PrimitiveLongIterator rangeSeekByString( String lower, boolean includeLower, String upper,
+                                                    boolean includeUpper, IndexOrder order )
+    {
+        // Bounds cut short widen the seek to all strings sharing what is left of them
+        boolean cutLower = lower != null && BTreeKeys.isCut( lower );
+        boolean cutUpper = upper != null && BTreeKeys.isCut( upper );
+        byte[] from = lower == null ? null : cutLower ? BTreeKeys.stringPrefix( lower ) : BTreeKeys.string( lower );
+        byte[] to = upper == null ? null :
+                cutUpper ? BTreeKeys.afterPrefix( BTreeKeys.stringPrefix( upper ) ) : BTreeKeys.string( upper );
+        return seek( from, includeLower || cutLower, to, includeUpper && !cutUpper, STRING, order );
+    }
+
+    @Override
+    public PrimitiveLongIterator rangeSeekByPrefix( String prefix, IndexOrder order )
+    {
+        byte[] from = BTreeKeys.stringPrefix( prefix );
+        return ordered( tree.seek( from, Long.MIN_VALUE, BTreeKeys.afterPrefix( from ), Long.MIN_VALUE ), order );
+    }
+
+    /**
+     * Entries of a key are ordered by node id, so an inclusive bound includes all node ids of its key and an
+     * exclusive bound none of them. No node has the id {@link Long#MIN_VALUE} or {@link Long#MAX_VALUE}.
+     */
+    private PrimitiveLongIterator seek( byte[] lower, boolean includeLower, byte[] upper, boolean includeUpper,
+                                        byte type, IndexOrder order )
+    {
+        byte[] from = lower == null ? BTreeKeys.lowest( type ) : lower;
+        long fromNodeId = lower == null || includeLower ? Long.MIN_VALUE : Long.MAX_VALUE;
+        byte[] to = upper == null ? BTreeKeys.highest( type ) : upper;
+        long toNodeId = upper != null && includeUpper ? Long.MAX_VALUE : Long.MIN_VALUE;
+        return ordered( tree.seek( from, fromNodeId, to, toNodeId ), order );
+    }
+
+    private static PrimitiveLongIterator ordered( long[] nodeIds, IndexOrder order )
+    {
+        return order == IndexOrder.DESCENDING ?
+                PrimitiveLongCollections.reversed( nodeIds ) : PrimitiveLongCollections.iterator( nodeIds );
+    }
+
+    @Override
+    public void close()
+    {   // Results are collected up front
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.index.btree;
+
+import java.io.IOException;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongSet;
+import org.neo4j.kernel.api.index.IndexUpdater;
+import org.neo4j.kernel.api.index.NodePropertyUpdate;
+
+/**
+ * Applies updates straight to a {@link BTree}. Inserts and removals of entries are idempotent, so this works
+ * the same during recovery as when online.
+ */
+class BTreeIndexUpdater implements IndexUpdater
+{
+    private final BTree tree;
+
+    BTreeIndexUpdater( BTree tree )
+    {
+        this.tree = tree;
+    }
+
+    @Override
+    public void process( NodePropertyUpdate update )
+    {
+        long nodeId = update.getNodeId();
+        switch ( update.getUpdateMode() )
+        {
+            case ADDED:
+                tree.insert( BTreeKeys.encode( update.getValueAfter() ), nodeId );
+                break;
+            case CHANGED:
+                tree.remove( BTreeKeys.encode( update.getValueBefore() ), nodeId );
+                tree.insert( BTreeKeys.encode( update.getValueAfter() ), nodeId );
+                break;
+            case REMOVED:
+                tree.remove( BTreeKeys.encode( update.getValueBefore() ), nodeId );
+                break;
+            default:
+                throw new IllegalStateException( "Unknown update mode " + update.getUpdateMode() );
+        }
+    }
+
+    @Override
+    public void remove( Iterable<Long> nodeIds ) throws IOException
+    {
+        PrimitiveLongSet set = Primitive.longSet();
+        for ( long nodeId : nodeIds )
+        {
+            set.add( nodeId );
+        }
+        if ( !set.isEmpty() )
+        {
+            tree.removeAll( set );
+        }
+    }
+
+    @Override
+    public void close()
+    {   // Updates are applied as they come
+    }
+}
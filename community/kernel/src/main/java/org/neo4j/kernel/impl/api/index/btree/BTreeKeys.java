@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.index.btree;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes property values into {@link BTree} keys, so that comparing keys byte by byte orders numbers
+ * numerically and strings the way {@link String#compareTo(String)} does.
+ * <p>
+ * Every key starts with a type byte, so values of different types never compare equal. Numbers are encoded
+ * as doubles, like in the Lucene index, which leaves telling apart large {@code long}s to the exact matching
+ * the kernel does on top of index lookups. Keys longer than {@link #MAX_KEY_LENGTH} are cut short and get a
+ * hash of the whole key appended. That keeps exact lookups working, but such values are only ordered by
+ * their first {@link #MAX_KEY_LENGTH} bytes. Those bytes hold more than
+ * {@link org.neo4j.kernel.api.index.IndexSeek#MAX_EXACT_STRING_LENGTH} characters of a string, so seeks for longer
+ * strings are widened to all strings sharing their first bytes, see {@link #stringPrefix(String)}, and the
+ * kernel filters what they give by the actual values.
+ */
+final class BTreeKeys
+{
+    static final byte NUMBER = 1;
+    static final byte STRING = 2;
+    static final byte BOOLEAN = 3;
+    static final byte NUMBER_ARRAY = 4;
+    static final byte STRING_ARRAY = 5;
+    static final byte BOOLEAN_ARRAY = 6;
+
+    static final int MAX_KEY_LENGTH = 1024;
+    static final int MAX_ENCODED_LENGTH = MAX_KEY_LENGTH + 8;
+
+    private BTreeKeys()
+    {
+    }
+
+    static byte[] encode( Object value )
+    {
+        if ( value instanceof Number )
+        {
+            return number( ((Number) value).doubleValue() );
+        }
+        if ( value instanceof String || value instanceof Character )
+        {
+            return string( value.toString() );
+        }
+        if ( value instanceof Boolean )
+        {
+            return new byte[]{BOOLEAN, (byte) ((Boolean) value ? 1 : 0)};
+        }
+        if ( value != null && value.getClass().isArray() )
+        {
+            return limited( array( value ) );
+        }
+        throw new IllegalArgumentException( "Can not index value " + value );
+    }
+
+    static byte[] number( double value )
+    {
+        return ByteBuffer.allocate( 9 ).put( NUMBER ).putLong( sortable( value ) ).array();
+    }
+
+    static byte[] string( String value )
+    {
+        ByteBuffer key = ByteBuffer.allocate( 1 + value.length() * 2 ).put( STRING );
+        for ( int i = 0; i < value.length(); i++ )
+        {
+            key.putChar( value.charAt( i ) );
+        }
+        return limited( key.array() );
+    }
+
+    /**
+     * @return the key of a string to seek from, which for strings too long to be kept whole is cut short without
+     * a hash. That orders it before the keys of all strings sharing the bytes that are left, so seeking from it up
+     * to {@link #afterPrefix(byte[]) after} it finds all of them.
+     */
+    static byte[] stringPrefix( String value )
+    {
+        byte[] key = string( value );
+        return isCut( value ) ? Arrays.copyOf( key, MAX_KEY_LENGTH ) : key;
+    }
+
+    /**
+     * @return whether or not the key of the given string is cut short.
+     */
+    static boolean isCut( String value )
+    {
+        return 1 + value.length() * 2L > MAX_KEY_LENGTH;
+    }
+
+    /**
+     * @return a key that is smaller than all keys of the given type.
+     */
+    static byte[] lowest( byte type )
+    {
+        return new byte[]{type};
+    }
+
+    /**
+     * @return a key that is greater than all keys of the given type.
+     */
+    static byte[] highest( byte type )
+    {
+        return new byte[]{(byte) (type + 1)};
+    }
+
+    /**
+     * @return the smallest key greater than all keys starting with the given {@code prefix}.
+     */
+    static byte[] afterPrefix( byte[] prefix )
+    {
+        int last = prefix.length - 1;
+        while ( prefix[last] == (byte) 0xFF )
+        {
+            last--;
+        }
+        byte[] key = Arrays.copyOf( prefix, last + 1 );
+        key[last]++;
+        return key;
+    }
+
+    /*
+     * Flips all bits of negative numbers and only the sign bit of positive ones, which makes the raw bits
+     * compare like the numbers, the way Double.compare does.
+     */
+    private static long sortable( double value )
+    {
+        long bits = Double.doubleToLongBits( value == 0.0 ? 0.0 : value );
+        return bits ^ ((bits >> 63) | Long.MIN_VALUE);
+    }
+
+    private static byte[] array( Object array )
+    {
+        int length = Array.getLength( array );
+        Class<?> type = array.getClass().getComponentType();
+        if ( type == Boolean.TYPE || type == Boolean.class )
+        {
+            ByteBuffer key = ByteBuffer.allocate( 1 + length ).put( BOOLEAN_ARRAY );
+            for ( int i = 0; i < length; i++ )
+            {
+                key.put( (byte) ((Boolean) Array.get( array, i ) ? 1 : 0) );
+            }
+            return key.array();
+        }
+        if ( type == Character.TYPE || type == Character.class || type == String.class )
+        {
+            int size = 1;
+            for ( int i = 0; i < length; i++ )
+            {
+                size += 4 + Array.get( array, i ).toString().length() * 2;
+            }
+            ByteBuffer key = ByteBuffer.allocate( size ).put( STRING_ARRAY );
+            for ( int i = 0; i < length; i++ )
+            {
+                String element = Array.get( array, i ).toString();
+                key.putInt( element.length() );
+                for ( int j = 0; j < element.length(); j++ )
+                {
+                    key.putChar( element.charAt( j ) );
+                }
+            }
+            return key.array();
+        }
+        if ( type.isPrimitive() || Number.class.isAssignableFrom( type ) )
+        {
+            ByteBuffer key = ByteBuffer.allocate( 1 + length * 8 ).put( NUMBER_ARRAY );
+            for ( int i = 0; i < length; i++ )
+            {
+                key.putLong( sortable( ((Number) Array.get( array, i )).doubleValue() ) );
+            }
+            return key.array();
+        }
+        throw new IllegalArgumentException( "Can not index array of " + type );
+    }
+
+    private static byte[] limited( byte[] key )
+    {
+        if ( key.length <= MAX_KEY_LENGTH )
+        {
+            return key;
+        }
+        return ByteBuffer.allocate( MAX_ENCODED_LENGTH ).put( key, 0, MAX_KEY_LENGTH ).putLong( hash( key ) ).array();
+    }
+
+    // 64 bit FNV-1a
+    private static long hash( byte[] key )
+    {
+        long hash = 0xcbf29ce484222325L;
+        for ( byte b : key )
+        {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
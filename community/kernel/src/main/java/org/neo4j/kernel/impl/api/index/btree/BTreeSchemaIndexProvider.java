@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.index.btree;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.neo4j.kernel.api.index.IndexAccessor;
+import org.neo4j.kernel.api.index.IndexConfiguration;
+import org.neo4j.kernel.api.index.IndexDescriptor;
+import org.neo4j.kernel.api.index.IndexPopulator;
+import org.neo4j.kernel.api.index.InternalIndexState;
+import org.neo4j.kernel.api.index.SchemaIndexProvider;
+import org.neo4j.kernel.api.index.util.FailureStorage;
+import org.neo4j.kernel.api.index.util.FolderLayout;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.impl.nioneo.store.CommonAbstractStore;
+import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+import static org.neo4j.kernel.impl.api.index.btree.BTreeSchemaIndexSettings.native_schema_index;
+import static org.neo4j.kernel.impl.api.index.btree.BTreeSchemaIndexSettings.native_schema_index_mapped_memory;
+
+/**
+ * Schema indexes kept in B+trees of their own, paged through memory the same way as the store files. Only
+ * preferred over the Lucene index when {@link BTreeSchemaIndexSettings#native_schema_index enabled}, but indexes
+ * already created by this provider keep using it either way.
+ */
+public class BTreeSchemaIndexProvider extends SchemaIndexProvider
+{
+    private final BTreeFiles files;
+    private final FailureStorage failureStorage;
+    private final Map<Long, String> failures = new HashMap<>();
+
+    public BTreeSchemaIndexProvider( FileSystemAbstraction fileSystem, Config config, StringLogger log )
+    {
+        super( BTreeSchemaIndexProviderFactory.PROVIDER_DESCRIPTOR, config.get( native_schema_index ) ? 2 : -1 );
+        FolderLayout folderLayout = new FolderLayout(
+                getRootDirectory( config, BTreeSchemaIndexProviderFactory.KEY ) );
+        this.files = new BTreeFiles( fileSystem, folderLayout, config.get( native_schema_index_mapped_memory ),
+                config.get( CommonAbstractStore.Configuration.use_memory_mapped_buffers ), log );
+        this.failureStorage = new FailureStorage( folderLayout );
+    }
+
+    @Override
+    public IndexPopulator getPopulator( long indexId, IndexDescriptor descriptor, IndexConfiguration config )
+    {
+        return new BTreeIndexPopulator( files, failureStorage, indexId, descriptor, config.isUnique() );
+    }
+
+    @Override
+    public IndexAccessor getOnlineAccessor( long indexId, IndexConfiguration config ) throws IOException
+    {
+        return new BTreeIndexAccessor( files, indexId );
+    }
+
+    @Override
+    public InternalIndexState getInitialState( long indexId )
+    {
+        String failure = failureStorage.loadIndexFailure( indexId );
+        if ( failure != null )
+        {
+            failures.put( indexId, failure );
+            return InternalIndexState.FAILED;
+        }
+        try
+        {
+            return files.isOnline( indexId ) ? InternalIndexState.ONLINE : InternalIndexState.POPULATING;
+        }
+        catch ( IOException e )
+        {
+            failures.put( indexId, e.getMessage() );
+            return InternalIndexState.FAILED;
+        }
+    }
+
+    @Override
+    public String getPopulationFailure( long indexId ) throws IllegalStateException
+    {
+        String failure = failureStorage.loadIndexFailure( indexId );
+        if ( failure == null )
+        {
+            failure = failures.get( indexId );
+        }
+        if ( failure == null )
+        {
+            throw new IllegalStateException( "Index " + indexId + " isn't failed" );
+        }
+        return failure;
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.index.btree;
+
+import org.neo4j.helpers.Service;
+import org.neo4j.kernel.api.index.SchemaIndexProvider;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.extension.KernelExtensionFactory;
+import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
+import org.neo4j.kernel.logging.Logging;
+
+@Service.Implementation(KernelExtensionFactory.class)
+public class BTreeSchemaIndexProviderFactory extends
+        KernelExtensionFactory<BTreeSchemaIndexProviderFactory.Dependencies>
+{
+    static final String KEY = "native-btree";
+
+    public static final SchemaIndexProvider.Descriptor PROVIDER_DESCRIPTOR =
+            new SchemaIndexProvider.Descriptor( KEY, "1.0" );
+
+    public interface Dependencies
+    {
+        Config getConfig();
+
+        FileSystemAbstraction getFileSystem();
+
+        Logging getLogging();
+    }
+
+    public BTreeSchemaIndexProviderFactory()
+    {
+        super( KEY );
+    }
+
+    @Override
+    public Class getSettingsClass()
+    {
+        return BTreeSchemaIndexSettings.class;
+    }
+
+    @Override
+    public BTreeSchemaIndexProvider newKernelExtension( Dependencies dependencies ) throws Throwable
+    {
+        return new BTreeSchemaIndexProvider( dependencies.getFileSystem(), dependencies.getConfig(),
+                dependencies.getLogging().getMessagesLog( BTree.class ) );
+    }
+}
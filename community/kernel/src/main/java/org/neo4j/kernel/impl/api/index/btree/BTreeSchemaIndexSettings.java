@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.index.btree;
+
+import org.neo4j.graphdb.config.Setting;
+import org.neo4j.graphdb.factory.Description;
+
+import static org.neo4j.helpers.Settings.BOOLEAN;
+import static org.neo4j.helpers.Settings.BYTES;
+import static org.neo4j.helpers.Settings.FALSE;
+import static org.neo4j.helpers.Settings.setting;
+
+/**
+ * Settings for the native B+tree schema index.
+ */
+public class BTreeSchemaIndexSettings
+{
+    @Description("Create new schema indexes as native B+trees rather than Lucene indexes.")
+    public static final Setting<Boolean> native_schema_index = setting( "native_schema_index", BOOLEAN, FALSE );
+
+    @Description("The amount of memory to use for mapping the pages of each native schema index.")
+    public static final Setting<Long> native_schema_index_mapped_memory =
+            setting( "native_schema_index_mapped_memory", BYTES, "8M" );
+}
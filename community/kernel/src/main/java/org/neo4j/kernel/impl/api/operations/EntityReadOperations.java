@@ -24,10 +24,13 @@ import java.util.Iterator;
 import org.neo4j.collection.primitive.PrimitiveIntIterator;
 import org.neo4j.collection.primitive.PrimitiveLongIterator;
 import org.neo4j.graphdb.Direction;
+import org.neo4j.kernel.api.RelationshipVisitor;
 import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
 import org.neo4j.kernel.api.exceptions.index.IndexNotFoundKernelException;
 import org.neo4j.kernel.api.exceptions.schema.IndexBrokenKernelException;
 import org.neo4j.kernel.api.index.IndexDescriptor;
+import org.neo4j.kernel.api.index.IndexOrder;
+import org.neo4j.kernel.api.index.IndexSeek;
 import org.neo4j.kernel.api.properties.DefinedProperty;
 import org.neo4j.kernel.api.properties.Property;
 import org.neo4j.kernel.impl.api.KernelStatement;
@@ -50,6 +53,14 @@ public interface EntityReadOperations
     PrimitiveLongIterator nodesGetFromIndexLookup( KernelStatement state, IndexDescriptor index, Object value )
             throws IndexNotFoundKernelException;
 
+    /**
+     * Returns an iterable with the nodes covered by the given seek, in the requested order.
+     *
+     * @throws IndexNotFoundKernelException if no such index found.
+     */
+    PrimitiveLongIterator nodesGetFromIndexSeek( KernelStatement state, IndexDescriptor index, IndexSeek seek,
+                                                 IndexOrder order ) throws IndexNotFoundKernelException;
+
     /**
      * Returns an iterable with the matched node.
      *
@@ -115,6 +126,9 @@ public interface EntityReadOperations
 
     PrimitiveLongIterator nodeGetRelationships( KernelStatement statement, long nodeId, Direction direction ) throws EntityNotFoundException;
 
+    void relationshipVisit( KernelStatement statement, long relationshipId, RelationshipVisitor visitor )
+            throws EntityNotFoundException;
+
     int nodeGetDegree( KernelStatement statement, long nodeId, Direction direction, int relType ) throws EntityNotFoundException;
 
     int nodeGetDegree( KernelStatement statement, long nodeId, Direction direction ) throws EntityNotFoundException;
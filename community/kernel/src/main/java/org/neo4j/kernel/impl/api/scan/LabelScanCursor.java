@@ -0,0 +1,37 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.scan;
+
+/**
+ * Goes through entries of a {@link NativeLabelScanStore} in key order, where keys are made up of label id and
+ * node range, see {@link NativeLabelScanStore#key(long, long)}, and each entry holds the bitmap of which nodes
+ * in the range that have the label.
+ */
+interface LabelScanCursor
+{
+    /**
+     * @return whether or not there was another entry, then available from {@link #key()} and {@link #bits()}.
+     */
+    boolean next();
+
+    long key();
+
+    long bits();
+}
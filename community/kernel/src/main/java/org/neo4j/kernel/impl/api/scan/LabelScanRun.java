@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.scan;
+
+import java.util.Arrays;
+
+import static org.neo4j.kernel.impl.api.scan.NativeLabelScanStore.key;
+import static org.neo4j.kernel.impl.api.scan.NativeLabelScanStore.labelOf;
+
+/**
+ * Entries written since the last {@link LabelScanSegment segment}, sorted by key and kept in memory. Runs are
+ * never changed once created. Entries with an empty bitmap mark that the entry has been removed.
+ */
+class LabelScanRun
+{
+    static final LabelScanRun[] NO_RUNS = new LabelScanRun[0];
+    static final LabelScanRun EMPTY = new LabelScanRun( new long[0], new long[0], 0 );
+
+    private final long[] keys;
+    private final long[] bits;
+    private final int size;
+    private final int[] labels;
+
+    LabelScanRun( long[] keys, long[] bits, int size )
+    {
+        this.keys = keys;
+        this.bits = bits;
+        this.size = size;
+        this.labels = distinctLabels( keys, size );
+    }
+
+    /**
+     * Merges runs into one, where later runs take precedence over earlier ones. Removed entries are kept, since
+     * they may hide entries of the segment below.
+     */
+    static LabelScanRun merge( LabelScanRun[] runs )
+    {
+        int maxSize = 0;
+        LabelScanCursor[] cursors = new LabelScanCursor[runs.length];
+        for ( int i = 0; i < runs.length; i++ )
+        {
+            maxSize += runs[i].size;
+            cursors[i] = runs[i].cursor( Long.MIN_VALUE, Long.MAX_VALUE );
+        }
+        long[] keys = new long[maxSize];
+        long[] bits = new long[maxSize];
+        int size = 0;
+        for ( LabelScanCursor cursor = new MergingLabelScanCursor( false, cursors ); cursor.next(); size++ )
+        {
+            keys[size] = cursor.key();
+            bits[size] = cursor.bits();
+        }
+        return new LabelScanRun( keys, bits, size );
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return ids of all labels with entries in this run, in ascending order.
+     */
+    int[] labels()
+    {
+        return labels;
+    }
+
+    /**
+     * @return whether or not this run has an entry for the key, then the bitmap is stored in {@code bitsOut[0]}.
+     */
+    boolean find( long key, long[] bitsOut )
+    {
+        int index = Arrays.binarySearch( keys, 0, size, key );
+        if ( index < 0 )
+        {
+            return false;
+        }
+        bitsOut[0] = bits[index];
+        return true;
+    }
+
+    LabelScanCursor cursor( int labelId )
+    {
+        return cursor( key( labelId, 0 ), key( labelId + 1L, 0 ) );
+    }
+
+    /**
+     * @return cursor over entries from {@code fromKey}, inclusive, to {@code toKey}, exclusive.
+     */
+    LabelScanCursor cursor( long fromKey, long toKey )
+    {
+        final int from = insertionPoint( fromKey );
+        final int to = toKey == Long.MAX_VALUE ? size : insertionPoint( toKey );
+        return new LabelScanCursor()
+        {
+            private int index = from - 1;
+
+            @Override
+            public boolean next()
+            {
+                return ++index < to;
+            }
+
+            @Override
+            public long key()
+            {
+                return keys[index];
+            }
+
+            @Override
+            public long bits()
+            {
+                return bits[index];
+            }
+        };
+    }
+
+    private int insertionPoint( long key )
+    {
+        int index = Arrays.binarySearch( keys, 0, size, key );
+        return index < 0 ? -index - 1 : index;
+    }
+
+    private static int[] distinctLabels( long[] keys, int size )
+    {
+        int[] labels = new int[16];
+        int count = 0;
+        for ( int i = 0; i < size; i++ )
+        {
+            int label = labelOf( keys[i] );
+            if ( count == 0 || labels[count - 1] != label )
+            {
+                if ( count == labels.length )
+                {
+                    labels = Arrays.copyOf( labels, count * 2 );
+                }
+                labels[count++] = label;
+            }
+        }
+        return Arrays.copyOf( labels, count );
+    }
+}
@@ -0,0 +1,477 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
+import org.neo4j.kernel.impl.nioneo.store.OperationType;
+import org.neo4j.kernel.impl.nioneo.store.PagedWindowPool;
+import org.neo4j.kernel.impl.nioneo.store.PersistenceWindow;
+import org.neo4j.kernel.impl.nioneo.store.StoreChannel;
+import org.neo4j.kernel.impl.nioneo.store.windowpool.WindowPool;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+import static org.neo4j.kernel.impl.api.scan.NativeLabelScanStore.key;
+import static org.neo4j.kernel.impl.api.scan.NativeLabelScanStore.labelOf;
+
+/**
+ * One generation of a {@link NativeLabelScanStore}, a file of entries sorted by key which is written once,
+ * sequentially, and never changed after that. Reads go through a {@link PagedWindowPool}.
+ * <p>
+ * The file has 16 byte records. First comes a header, then the entries as [key][bitmap] and last a directory of
+ * where the entries of each label start, as [label id][entry index]. The header is written and forced only after
+ * everything else has been forced, so a segment with an intact header is complete.
+ * <p>
+ * Segments are reference counted, so that readers can keep using a segment after a newer one has replaced it.
+ */
+class LabelScanSegment
+{
+    static final String FILE_NAME_PREFIX = "labels.";
+
+    private static final int RECORD_SIZE = 16;
+    private static final int HEADER_RECORDS = 4;
+    private static final long MAGIC = 0x4E454F4C53434E31L;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 48;
+    private static final int CHECKSUMMED_HEADER_SIZE = 40;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long TARGET_WINDOW_SIZE = 1024 * 1024;
+
+    private final FileSystemAbstraction fileSystem;
+    private final File file;
+    private final StoreChannel channel;
+    private final WindowPool records;
+    private final long generation;
+    private final long entryCount;
+    private final int[] labels;
+    private final long[] labelStarts;
+    private int references = 1;
+    private boolean retired;
+
+    private LabelScanSegment( FileSystemAbstraction fileSystem, File file, StoreChannel channel, WindowPool records,
+                              long generation, long entryCount, int[] labels, long[] labelStarts )
+    {
+        this.fileSystem = fileSystem;
+        this.file = file;
+        this.channel = channel;
+        this.records = records;
+        this.generation = generation;
+        this.entryCount = entryCount;
+        this.labels = labels;
+        this.labelStarts = labelStarts;
+    }
+
+    static File file( File directory, long generation )
+    {
+        return new File( directory, FILE_NAME_PREFIX + generation );
+    }
+
+    /**
+     * @return the generation of a segment file, or -1 if not a segment file.
+     */
+    static long generationOf( File file )
+    {
+        String name = file.getName();
+        if ( !name.startsWith( FILE_NAME_PREFIX ) )
+        {
+            return -1;
+        }
+        try
+        {
+            return Long.parseLong( name.substring( FILE_NAME_PREFIX.length() ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Opens a complete segment file.
+     *
+     * @throws IOException if the file isn't a complete segment.
+     */
+    static LabelScanSegment open( FileSystemAbstraction fileSystem, File file, long mappedMemory,
+                                  boolean memoryMapped, StringLogger log ) throws IOException
+    {
+        StoreChannel channel = fileSystem.open( file, "r" );
+        try
+        {
+            ByteBuffer header = read( channel, 0, HEADER_SIZE );
+            if ( header.getLong( 0 ) != MAGIC || header.getInt( 8 ) != FORMAT_VERSION ||
+                 header.getLong( CHECKSUMMED_HEADER_SIZE ) != checksum( header ) )
+            {
+                throw new IOException( "No intact header found in label scan store file " + file );
+            }
+            long generation = header.getLong( 16 );
+            long entryCount = header.getLong( 24 );
+            int labelCount = (int) header.getLong( 32 );
+            long directoryRecord = HEADER_RECORDS + entryCount;
+            if ( channel.size() < (directoryRecord + labelCount) * RECORD_SIZE )
+            {
+                throw new IOException( "Label scan store file " + file + " is shorter than its header says" );
+            }
+
+            ByteBuffer directory = read( channel, directoryRecord * RECORD_SIZE, labelCount * RECORD_SIZE );
+            int[] labels = new int[labelCount];
+            long[] labelStarts = new long[labelCount];
+            for ( int i = 0; i < labelCount; i++ )
+            {
+                labels[i] = (int) directory.getLong( i * RECORD_SIZE );
+                labelStarts[i] = directory.getLong( i * RECORD_SIZE + 8 );
+            }
+            WindowPool records = new PagedWindowPool( file, RECORD_SIZE, channel,
+                    Math.max( mappedMemory, RECORD_SIZE ), TARGET_WINDOW_SIZE, memoryMapped, true, log );
+            return new LabelScanSegment( fileSystem, file, channel, records, generation, entryCount, labels,
+                    labelStarts );
+        }
+        catch ( IOException | RuntimeException e )
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes all entries of the cursor to a new segment file, then opens it.
+     */
+    static LabelScanSegment write( FileSystemAbstraction fileSystem, File file, long generation,
+                                   LabelScanCursor entries, long mappedMemory, boolean memoryMapped,
+                                   StringLogger log ) throws IOException
+    {
+        if ( fileSystem.fileExists( file ) )
+        {   // Left over from a crash while writing it
+            fileSystem.deleteFile( file );
+        }
+        try ( StoreChannel channel = fileSystem.create( file ) )
+        {
+            ByteBuffer buffer = ByteBuffer.allocate( WRITE_BUFFER_SIZE );
+            long position = HEADER_RECORDS * RECORD_SIZE;
+            long entryCount = 0;
+            int[] labels = new int[16];
+            long[] labelStarts = new long[16];
+            int labelCount = 0;
+            while ( entries.next() )
+            {
+                int label = labelOf( entries.key() );
+                if ( labelCount == 0 || labels[labelCount - 1] != label )
+                {
+                    if ( labelCount == labels.length )
+                    {
+                        labels = Arrays.copyOf( labels, labelCount * 2 );
+                        labelStarts = Arrays.copyOf( labelStarts, labelCount * 2 );
+                    }
+                    labels[labelCount] = label;
+                    labelStarts[labelCount++] = entryCount;
+                }
+                position = put( channel, buffer, position, entries.key(), entries.bits() );
+                entryCount++;
+            }
+            for ( int i = 0; i < labelCount; i++ )
+            {
+                position = put( channel, buffer, position, labels[i], labelStarts[i] );
+            }
+            flush( channel, buffer, position );
+            channel.force( false );
+
+            ByteBuffer header = ByteBuffer.allocate( HEADER_RECORDS * RECORD_SIZE );
+            header.putLong( 0, MAGIC );
+            header.putInt( 8, FORMAT_VERSION );
+            header.putLong( 16, generation );
+            header.putLong( 24, entryCount );
+            header.putLong( 32, labelCount );
+            header.putLong( CHECKSUMMED_HEADER_SIZE, checksum( header ) );
+            while ( header.hasRemaining() )
+            {
+                channel.write( header, header.position() );
+            }
+            channel.force( false );
+        }
+        return open( fileSystem, file, mappedMemory, memoryMapped, log );
+    }
+
+    File file()
+    {
+        return file;
+    }
+
+    long generation()
+    {
+        return generation;
+    }
+
+    long entryCount()
+    {
+        return entryCount;
+    }
+
+    /**
+     * @return ids of all labels with entries in this segment, in ascending order.
+     */
+    int[] labels()
+    {
+        return labels;
+    }
+
+    /**
+     * @return the bitmap of the given label and node range, which is empty if there's no such entry.
+     */
+    long find( int labelId, long range )
+    {
+        int label = Arrays.binarySearch( labels, labelId );
+        if ( label < 0 )
+        {
+            return 0;
+        }
+        long key = key( labelId, range );
+        long low = labelStarts[label];
+        long high = end( label ) - 1;
+        while ( low <= high )
+        {   // Narrow down to the part of the label that one window covers, then search within that window
+            long record = HEADER_RECORDS + ((low + high) >>> 1);
+            PersistenceWindow window = records.acquire( record, OperationType.READ );
+            try
+            {
+                long first = Math.max( low, window.position() - HEADER_RECORDS );
+                long last = Math.min( high, window.position() + window.size() - 1 - HEADER_RECORDS );
+                ByteBuffer buffer = window.getOffsettedBuffer( HEADER_RECORDS + first ).getBuffer();
+                int base = buffer.position();
+                if ( key < buffer.getLong( base ) )
+                {
+                    high = first - 1;
+                    continue;
+                }
+                if ( key > buffer.getLong( base + (int) (last - first) * RECORD_SIZE ) )
+                {
+                    low = last + 1;
+                    continue;
+                }
+                int windowLow = 0, windowHigh = (int) (last - first);
+                while ( windowLow <= windowHigh )
+                {
+                    int middle = (windowLow + windowHigh) >>> 1;
+                    long middleKey = buffer.getLong( base + middle * RECORD_SIZE );
+                    if ( middleKey < key )
+                    {
+                        windowLow = middle + 1;
+                    }
+                    else if ( middleKey > key )
+                    {
+                        windowHigh = middle - 1;
+                    }
+                    else
+                    {
+                        return buffer.getLong( base + middle * RECORD_SIZE + 8 );
+                    }
+                }
+                return 0;
+            }
+            finally
+            {
+                records.release( window );
+            }
+        }
+        return 0;
+    }
+
+    LabelScanCursor cursor( int labelId )
+    {
+        int label = Arrays.binarySearch( labels, labelId );
+        return label < 0 ? cursor( 0, 0 ) : cursor( labelStarts[label], end( label ) );
+    }
+
+    LabelScanCursor cursor()
+    {
+        return cursor( 0, entryCount );
+    }
+
+    /**
+     * Reads entries a page at a time, to not have to acquire a window for each entry.
+     */
+    private LabelScanCursor cursor( final long from, final long to )
+    {
+        return new LabelScanCursor()
+        {
+            private long[] keys = new long[0];
+            private long[] bits = new long[0];
+            private int index;
+            private int count;
+            private long nextEntry = from;
+
+            @Override
+            public boolean next()
+            {
+                if ( ++index < count )
+                {
+                    return true;
+                }
+                if ( nextEntry >= to )
+                {
+                    return false;
+                }
+                long record = HEADER_RECORDS + nextEntry;
+                PersistenceWindow window = records.acquire( record, OperationType.READ );
+                try
+                {
+                    count = (int) Math.min( to - nextEntry, window.position() + window.size() - record );
+                    if ( keys.length < count )
+                    {
+                        keys = new long[count];
+                        bits = new long[count];
+                    }
+                    ByteBuffer buffer = window.getOffsettedBuffer( record ).getBuffer();
+                    int base = buffer.position();
+                    for ( int i = 0; i < count; i++ )
+                    {
+                        keys[i] = buffer.getLong( base + i * RECORD_SIZE );
+                        bits[i] = buffer.getLong( base + i * RECORD_SIZE + 8 );
+                    }
+                }
+                finally
+                {
+                    records.release( window );
+                }
+                nextEntry += count;
+                index = 0;
+                return true;
+            }
+
+            @Override
+            public long key()
+            {
+                return keys[index];
+            }
+
+            @Override
+            public long bits()
+            {
+                return bits[index];
+            }
+        };
+    }
+
+    /**
+     * @return whether or not the segment could be acquired, which it can't after being closed.
+     */
+    synchronized boolean acquire()
+    {
+        if ( references == 0 )
+        {
+            return false;
+        }
+        references++;
+        return true;
+    }
+
+    /**
+     * Releases a reference, and closes the segment when there are no references left. A
+     * {@link #retire() retired} segment is deleted as well.
+     */
+    synchronized void release() throws IOException
+    {
+        if ( --references > 0 )
+        {
+            return;
+        }
+        try
+        {
+            records.close();
+        }
+        finally
+        {
+            channel.close();
+        }
+        if ( retired )
+        {
+            fileSystem.deleteFile( file );
+        }
+    }
+
+    /**
+     * Marks that a newer segment has replaced this one, and releases the reference of the store.
+     */
+    synchronized void retire() throws IOException
+    {
+        retired = true;
+        release();
+    }
+
+    private long end( int label )
+    {
+        return label + 1 < labelStarts.length ? labelStarts[label + 1] : entryCount;
+    }
+
+    private static long put( StoreChannel channel, ByteBuffer buffer, long position, long first, long second )
+            throws IOException
+    {
+        if ( buffer.remaining() < RECORD_SIZE )
+        {
+            position = flush( channel, buffer, position );
+        }
+        buffer.putLong( first );
+        buffer.putLong( second );
+        return position;
+    }
+
+    /**
+     * @return the file position after the written buffer.
+     */
+    private static long flush( StoreChannel channel, ByteBuffer buffer, long position ) throws IOException
+    {
+        buffer.flip();
+        while ( buffer.hasRemaining() )
+        {
+            position += channel.write( buffer, position );
+        }
+        buffer.clear();
+        return position;
+    }
+
+    private static ByteBuffer read( StoreChannel channel, long position, int length ) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( length );
+        while ( buffer.hasRemaining() )
+        {
+            if ( channel.read( buffer, position + buffer.position() ) <= 0 )
+            {
+                throw new IOException( "Unexpected end of label scan store file" );
+            }
+        }
+        return buffer;
+    }
+
+    private static long checksum( ByteBuffer header )
+    {
+        CRC32 crc = new CRC32();
+        crc.update( header.array(), 0, CHECKSUMMED_HEADER_SIZE );
+        return crc.getValue();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LabelScanSegment[" + file + ", entries:" + entryCount + "]";
+    }
+}
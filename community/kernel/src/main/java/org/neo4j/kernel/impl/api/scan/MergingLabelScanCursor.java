@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.scan;
+
+/**
+ * Merges cursors over the same key space, where cursors later in the array take precedence over earlier ones
+ * for equal keys. An empty bitmap in a later cursor therefore hides the entry of an earlier one.
+ */
+class MergingLabelScanCursor implements LabelScanCursor
+{
+    private final LabelScanCursor[] sources;
+    private final boolean[] hasEntry;
+    private final boolean skipEmpty;
+    private long key;
+    private long bits;
+
+    /**
+     * @param skipEmpty whether or not to leave out entries with empty bitmaps.
+     * @param sources cursors ordered from oldest to newest.
+     */
+    MergingLabelScanCursor( boolean skipEmpty, LabelScanCursor... sources )
+    {
+        this.sources = sources;
+        this.skipEmpty = skipEmpty;
+        this.hasEntry = new boolean[sources.length];
+        for ( int i = 0; i < sources.length; i++ )
+        {
+            hasEntry[i] = sources[i].next();
+        }
+    }
+
+    @Override
+    public boolean next()
+    {
+        while ( true )
+        {
+            boolean found = false;
+            long lowest = Long.MAX_VALUE;
+            for ( int i = 0; i < sources.length; i++ )
+            {
+                if ( hasEntry[i] && (!found || sources[i].key() < lowest) )
+                {
+                    lowest = sources[i].key();
+                    found = true;
+                }
+            }
+            if ( !found )
+            {
+                return false;
+            }
+
+            for ( int i = 0; i < sources.length; i++ )
+            {
+                if ( hasEntry[i] && sources[i].key() == lowest )
+                {
+                    bits = sources[i].bits();
+                    hasEntry[i] = sources[i].next();
+                }
+            }
+            key = lowest;
+            if ( !skipEmpty || bits != 0 )
+            {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public long key()
+    {
+        return key;
+    }
+
+    @Override
+    public long bits()
+    {
+        return bits;
+    }
+}
@@ -0,0 +1,715 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.neo4j.collection.primitive.PrimitiveLongCollections.PrimitiveLongBaseIterator;
+import org.neo4j.collection.primitive.PrimitiveLongIterator;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.helpers.collection.PrefetchingIterator;
+import org.neo4j.kernel.api.direct.AllEntriesLabelScanReader;
+import org.neo4j.kernel.api.direct.NodeLabelRange;
+import org.neo4j.kernel.api.labelscan.LabelScanReader;
+import org.neo4j.kernel.api.labelscan.LabelScanStore;
+import org.neo4j.kernel.api.labelscan.NodeLabelUpdate;
+import org.neo4j.kernel.impl.api.scan.LabelScanStoreProvider.FullStoreChangeStream;
+import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
+import org.neo4j.kernel.impl.nioneo.store.UnderlyingStorageException;
+import org.neo4j.kernel.impl.util.StringLogger;
+import org.neo4j.kernel.logging.Logging;
+import org.neo4j.unsafe.batchinsert.LabelScanWriter;
+
+/**
+ * {@link LabelScanStore} which keeps one 64 bit bitmap of nodes per label and range of 64 node ids, keyed by
+ * label id and node range so that all nodes of a label are next to each other.
+ * <p>
+ * Writes are log structured: each closed {@link NativeLabelScanWriter writer} publishes its changes as a sorted,
+ * immutable, in-memory {@link LabelScanRun run}. Runs are merged with each other as they accumulate and, when
+ * they grow too big or the store is {@link #force() forced}, merged with the current {@link LabelScanSegment
+ * segment} file into a new segment file, written sequentially. Readers see the segment and runs that were
+ * current when they were created, which gives them repeatable reads without blocking writers.
+ * <p>
+ * Changes are durable first when written to a segment. Whatever hasn't been forced is replayed from the
+ * logical log by {@link #recover(Iterator) recovery}.
+ */
+public class NativeLabelScanStore implements LabelScanStore
+{
+    static final int RANGE_SHIFT = 6;
+    static final long RANGE_MASK = (1 << RANGE_SHIFT) - 1;
+
+    private static final int MIN_SEGMENT_WRITE_THRESHOLD = 1 << 16;
+
+    public interface Monitor
+    {
+        void init();
+
+        void noIndex();
+
+        void corruptIndex( IOException e );
+
+        void rebuilding();
+
+        void rebuilt( long roughNodeCount );
+    }
+
+    public static Monitor loggerMonitor( Logging logging )
+    {
+        final StringLogger logger = logging.getMessagesLog( NativeLabelScanStore.class );
+        return new Monitor()
+        {
+            @Override
+            public void init()
+            {   // Don't log anything here
+            }
+
+            @Override
+            public void noIndex()
+            {
+                logger.info( "No native label scan store found, this might just be first use. " +
+                             "Preparing to rebuild." );
+            }
+
+            @Override
+            public void corruptIndex( IOException corruptionException )
+            {
+                logger.warn( "Corrupt native label scan store found.", corruptionException );
+            }
+
+            @Override
+            public void rebuilding()
+            {
+                logger.info( "Rebuilding native label scan store, this may take a while" );
+            }
+
+            @Override
+            public void rebuilt( long highNodeId )
+            {
+                logger.info( "Native label scan store rebuilt (roughly " + highNodeId + " nodes)" );
+            }
+        };
+    }
+
+    static class State
+    {
+        final LabelScanSegment segment;
+        final LabelScanRun[] runs;
+
+        State( LabelScanSegment segment, LabelScanRun[] runs )
+        {
+            this.segment = segment;
+            this.runs = runs;
+        }
+    }
+
+    private final File directory;
+    private final FileSystemAbstraction fs;
+    private final FullStoreChangeStream fullStoreStream;
+    private final Monitor monitor;
+    private final long mappedMemory;
+    private final boolean memoryMapped;
+    private final StringLogger log;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile State state;
+    private boolean needsRebuild;
+
+    public NativeLabelScanStore( File directory, FileSystemAbstraction fs, FullStoreChangeStream fullStoreStream,
+                                 Monitor monitor, long mappedMemory, boolean memoryMapped, StringLogger log )
+    {
+        this.directory = directory;
+        this.fs = fs;
+        this.fullStoreStream = fullStoreStream;
+        this.monitor = monitor;
+        this.mappedMemory = mappedMemory;
+        this.memoryMapped = memoryMapped;
+        this.log = log;
+    }
+
+    static long key( long labelId, long range )
+    {
+        return (labelId << 32) | range;
+    }
+
+    static int labelOf( long key )
+    {
+        return (int) (key >>> 32);
+    }
+
+    static long rangeOf( long key )
+    {
+        return key & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void init() throws IOException
+    {
+        monitor.init();
+        fs.mkdirs( directory );
+        File[] files = fs.listFiles( directory );
+        List<File> segments = new ArrayList<>();
+        for ( File file : files == null ? new File[0] : files )
+        {
+            if ( LabelScanSegment.generationOf( file ) >= 0 )
+            {
+                segments.add( file );
+            }
+        }
+        if ( segments.isEmpty() )
+        {   // This is the first time we start up this scan store, prepare to rebuild from scratch later.
+            monitor.noIndex();
+            needsRebuild = true;
+            state = new State( LabelScanSegment.write( fs, LabelScanSegment.file( directory, 0 ), 0,
+                    new MergingLabelScanCursor( true ), mappedMemory, memoryMapped, log ), LabelScanRun.NO_RUNS );
+            return;
+        }
+
+        // Newest first, the newest complete segment is the current one
+        File[] candidates = segments.toArray( new File[segments.size()] );
+        Arrays.sort( candidates, new Comparator<File>()
+        {
+            @Override
+            public int compare( File o1, File o2 )
+            {
+                return Long.compare( LabelScanSegment.generationOf( o2 ), LabelScanSegment.generationOf( o1 ) );
+            }
+        } );
+        LabelScanSegment segment = null;
+        IOException corruption = null;
+        for ( File candidate : candidates )
+        {
+            if ( segment != null )
+            {   // Replaced by the current segment, but not deleted before shutdown
+                fs.deleteFile( candidate );
+                continue;
+            }
+            try
+            {
+                segment = LabelScanSegment.open( fs, candidate, mappedMemory, memoryMapped, log );
+            }
+            catch ( IOException e )
+            {   // Incomplete, probably from a crash while it was written
+                corruption = e;
+                fs.deleteFile( candidate );
+            }
+        }
+        if ( segment == null )
+        {
+            monitor.corruptIndex( corruption );
+            throw new IOException( "Label scan store is corrupted, and needs to be rebuilt. " +
+                    "To trigger a rebuild, ensure the database is stopped, delete the files in '" +
+                    directory.getAbsolutePath() + "', and then start the database again." );
+        }
+        state = new State( segment, LabelScanRun.NO_RUNS );
+    }
+
+    @Override
+    public void start() throws IOException
+    {
+        if ( needsRebuild )
+        {   // we saw in init() that we need to rebuild the store, so do it here after the
+            // neostore has been properly started.
+            monitor.rebuilding();
+            write( fullStoreStream.iterator() );
+            force();
+            monitor.rebuilt( fullStoreStream.highestNodeId() );
+            needsRebuild = false;
+        }
+    }
+
+    @Override
+    public void recover( Iterator<NodeLabelUpdate> updates ) throws IOException
+    {
+        // The writer sets the bits of each update from scratch, given the labels before and after,
+        // so applying an update which is already in the store doesn't change anything.
+        write( updates );
+    }
+
+    private void write( Iterator<NodeLabelUpdate> updates ) throws IOException
+    {
+        try ( LabelScanWriter writer = newWriter() )
+        {
+            while ( updates.hasNext() )
+            {
+                writer.write( updates.next() );
+            }
+        }
+    }
+
+    @Override
+    public LabelScanWriter newWriter()
+    {
+        writeLock.lock();
+        return new NativeLabelScanWriter( this, state );
+    }
+
+    /**
+     * Called by a {@link NativeLabelScanWriter} when closed, with the entries it has written. Releases the
+     * write lock, which the writer has held since it was created.
+     */
+    void publish( LabelScanRun run ) throws IOException
+    {
+        try
+        {
+            if ( run.size() == 0 )
+            {
+                return;
+            }
+            State current = state;
+            LabelScanRun[] runs = Arrays.copyOf( current.runs, current.runs.length + 1 );
+            runs[runs.length - 1] = run;
+            if ( totalSize( runs ) > segmentWriteThreshold( current.segment ) )
+            {
+                writeSegment( current.segment, runs );
+                return;
+            }
+            runs = mergeSimilarlySized( runs );
+            synchronized ( this )
+            {
+                state = new State( current.segment, runs );
+            }
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void force() throws UnderlyingStorageException
+    {
+        writeLock.lock();
+        try
+        {
+            State current = state;
+            if ( current.runs.length > 0 )
+            {
+                writeSegment( current.segment, current.runs );
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( e );
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the segment and the runs into a new segment, which replaces them. Must hold the write lock.
+     */
+    private void writeSegment( LabelScanSegment segment, LabelScanRun... runs ) throws IOException
+    {
+        LabelScanCursor[] sources = new LabelScanCursor[runs.length + 1];
+        sources[0] = segment.cursor();
+        for ( int i = 0; i < runs.length; i++ )
+        {
+            sources[i + 1] = runs[i].cursor( Long.MIN_VALUE, Long.MAX_VALUE );
+        }
+        long generation = segment.generation() + 1;
+        LabelScanSegment written = LabelScanSegment.write( fs, LabelScanSegment.file( directory, generation ),
+                generation, new MergingLabelScanCursor( true, sources ), mappedMemory, memoryMapped, log );
+        synchronized ( this )
+        {
+            state = new State( written, LabelScanRun.NO_RUNS );
+        }
+        segment.retire();
+    }
+
+    /**
+     * Merges the newest runs with each other for as long as the newest is at least half the size of the one
+     * before it. Runs then grow geometrically from newest to oldest, so there are only logarithmically many of
+     * them and each entry gets copied a logarithmic number of times.
+     */
+    private static LabelScanRun[] mergeSimilarlySized( LabelScanRun[] runs )
+    {
+        int count = runs.length;
+        while ( count > 1 && runs[count - 2].size() <= runs[count - 1].size() * 2 )
+        {
+            runs[count - 2] = LabelScanRun.merge( new LabelScanRun[] {runs[count - 2], runs[count - 1]} );
+            count--;
+        }
+        return count == runs.length ? runs : Arrays.copyOf( runs, count );
+    }
+
+    /**
+     * Runs are kept in memory until they are about an eighth of the size of the segment, so that the cost of
+     * rewriting the segment is spread over a number of changes proportional to its size.
+     */
+    private static long segmentWriteThreshold( LabelScanSegment segment )
+    {
+        return Math.max( MIN_SEGMENT_WRITE_THRESHOLD, segment.entryCount() >> 3 );
+    }
+
+    private static long totalSize( LabelScanRun[] runs )
+    {
+        long size = 0;
+        for ( LabelScanRun run : runs )
+        {
+            size += run.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the current state, with a reference acquired to its segment.
+     */
+    private synchronized State acquireState()
+    {
+        State current = state;
+        if ( !current.segment.acquire() )
+        {
+            throw new IllegalStateException( "Label scan store has been shut down" );
+        }
+        return current;
+    }
+
+    private static void release( LabelScanSegment segment )
+    {
+        try
+        {
+            segment.release();
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( e );
+        }
+    }
+
+    /**
+     * @return the bitmap for the key, looking in the newest run first and the segment last.
+     */
+    static long bits( State state, long key, long[] scratch )
+    {
+        for ( int i = state.runs.length - 1; i >= 0; i-- )
+        {
+            if ( state.runs[i].find( key, scratch ) )
+            {
+                return scratch[0];
+            }
+        }
+        return state.segment.find( labelOf( key ), rangeOf( key ) );
+    }
+
+    /**
+     * @return ids of all labels with entries in the state, some of which may only have removed entries.
+     */
+    private static int[] labels( State state )
+    {
+        int[] labels = state.segment.labels();
+        for ( LabelScanRun run : state.runs )
+        {
+            labels = union( labels, run.labels() );
+        }
+        return labels;
+    }
+
+    private static int[] union( int[] left, int[] right )
+    {
+        int[] result = new int[left.length + right.length];
+        int l = 0, r = 0, size = 0;
+        while ( l < left.length || r < right.length )
+        {
+            if ( r == right.length || (l < left.length && left[l] < right[r]) )
+            {
+                result[size++] = left[l++];
+            }
+            else if ( l == left.length || right[r] < left[l] )
+            {
+                result[size++] = right[r++];
+            }
+            else
+            {
+                result[size++] = left[l++];
+                r++;
+            }
+        }
+        return Arrays.copyOf( result, size );
+    }
+
+    private static LabelScanCursor cursor( State state, int labelId )
+    {
+        LabelScanCursor[] sources = new LabelScanCursor[state.runs.length + 1];
+        sources[0] = state.segment.cursor( labelId );
+        for ( int i = 0; i < state.runs.length; i++ )
+        {
+            sources[i + 1] = state.runs[i].cursor( labelId );
+        }
+        return new MergingLabelScanCursor( true, sources );
+    }
+
+    @Override
+    public LabelScanReader newReader()
+    {
+        final State snapshot = acquireState();
+        return new LabelScanReader()
+        {
+            private boolean closed;
+
+            @Override
+            public PrimitiveLongIterator nodesWithLabel( int labelId )
+            {
+                final LabelScanCursor cursor = cursor( snapshot, labelId );
+                return new PrimitiveLongBaseIterator()
+                {
+                    private long base;
+                    private long bits;
+
+                    @Override
+                    protected boolean fetchNext()
+                    {
+                        while ( bits == 0 )
+                        {
+                            if ( !cursor.next() )
+                            {
+                                return false;
+                            }
+                            base = rangeOf( cursor.key() ) << RANGE_SHIFT;
+                            bits = cursor.bits();
+                        }
+                        long node = base + Long.numberOfTrailingZeros( bits );
+                        bits &= bits - 1;
+                        return next( node );
+                    }
+                };
+            }
+
+            @Override
+            public Iterator<Long> labelsForNode( long nodeId )
+            {
+                long range = nodeId >>> RANGE_SHIFT;
+                long bit = 1L << (nodeId & RANGE_MASK);
+                long[] scratch = new long[1];
+                List<Long> labels = new ArrayList<>();
+                for ( int labelId : labels( snapshot ) )
+                {
+                    if ( (bits( snapshot, key( labelId, range ), scratch ) & bit) != 0 )
+                    {
+                        labels.add( (long) labelId );
+                    }
+                }
+                return labels.iterator();
+            }
+
+            @Override
+            public void close()
+            {
+                if ( !closed )
+                {
+                    closed = true;
+                    release( snapshot.segment );
+                }
+            }
+        };
+    }
+
+    @Override
+    public AllEntriesLabelScanReader newAllEntriesReader()
+    {
+        final State snapshot = acquireState();
+        return new AllEntriesLabelScanReader()
+        {
+            @Override
+            public long maxCount()
+            {
+                return snapshot.segment.entryCount() + totalSize( snapshot.runs );
+            }
+
+            @Override
+            public Iterator<NodeLabelRange> iterator()
+            {
+                final int[] labels = labels( snapshot );
+                final LabelScanCursor[] cursors = new LabelScanCursor[labels.length];
+                final boolean[] hasEntry = new boolean[labels.length];
+                for ( int i = 0; i < labels.length; i++ )
+                {
+                    cursors[i] = cursor( snapshot, labels[i] );
+                    hasEntry[i] = cursors[i].next();
+                }
+                return new PrefetchingIterator<NodeLabelRange>()
+                {
+                    @Override
+                    protected NodeLabelRange fetchNextOrNull()
+                    {
+                        long range = Long.MAX_VALUE;
+                        for ( int i = 0; i < cursors.length; i++ )
+                        {
+                            if ( hasEntry[i] )
+                            {
+                                range = Math.min( range, rangeOf( cursors[i].key() ) );
+                            }
+                        }
+                        if ( range == Long.MAX_VALUE )
+                        {
+                            return null;
+                        }
+                        long[] rangeLabels = new long[cursors.length];
+                        long[] rangeBits = new long[cursors.length];
+                        int count = 0;
+                        for ( int i = 0; i < cursors.length; i++ )
+                        {
+                            if ( hasEntry[i] && rangeOf( cursors[i].key() ) == range )
+                            {
+                                rangeLabels[count] = labels[i];
+                                rangeBits[count++] = cursors[i].bits();
+                                hasEntry[i] = cursors[i].next();
+                            }
+                        }
+                        return new NativeNodeLabelRange( range, Arrays.copyOf( rangeLabels, count ),
+                                Arrays.copyOf( rangeBits, count ) );
+                    }
+                };
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                snapshot.segment.release();
+            }
+        };
+    }
+
+    private static class NativeNodeLabelRange implements NodeLabelRange
+    {
+        private final long range;
+        private final long[] labels;
+        private final long[] bits;
+
+        NativeNodeLabelRange( long range, long[] labels, long[] bits )
+        {
+            this.range = range;
+            this.labels = labels;
+            this.bits = bits;
+        }
+
+        @Override
+        public int id()
+        {
+            return (int) range;
+        }
+
+        @Override
+        public long[] nodes()
+        {
+            long union = 0;
+            for ( long labelBits : bits )
+            {
+                union |= labelBits;
+            }
+            long[] nodes = new long[Long.bitCount( union )];
+            for ( int i = 0; i < nodes.length; i++ )
+            {
+                nodes[i] = (range << RANGE_SHIFT) + Long.numberOfTrailingZeros( union );
+                union &= union - 1;
+            }
+            return nodes;
+        }
+
+        @Override
+        public long[] labels( long nodeId )
+        {
+            long bit = 1L << (nodeId & RANGE_MASK);
+            long[] result = new long[labels.length];
+            int count = 0;
+            for ( int i = 0; i < labels.length; i++ )
+            {
+                if ( (bits[i] & bit) != 0 )
+                {
+                    result[count++] = labels[i];
+                }
+            }
+            return Arrays.copyOf( result, count );
+        }
+
+        @Override
+        public String toString()
+        {
+            return "NodeLabelRange[range=" + range + "; labels=" + Arrays.toString( labels ) + "]";
+        }
+    }
+
+    @Override
+    public ResourceIterator<File> snapshotStoreFiles() throws IOException
+    {
+        force();
+        final LabelScanSegment segment = acquireState().segment;
+        return new PrefetchingResourceIteratorOfOne( segment );
+    }
+
+    private static class PrefetchingResourceIteratorOfOne extends PrefetchingIterator<File>
+            implements ResourceIterator<File>
+    {
+        private final LabelScanSegment segment;
+        private boolean returned;
+        private boolean closed;
+
+        PrefetchingResourceIteratorOfOne( LabelScanSegment segment )
+        {
+            this.segment = segment;
+        }
+
+        @Override
+        protected File fetchNextOrNull()
+        {
+            if ( returned )
+            {
+                return null;
+            }
+            returned = true;
+            return segment.file();
+        }
+
+        @Override
+        public void close()
+        {
+            if ( !closed )
+            {
+                closed = true;
+                release( segment );
+            }
+        }
+    }
+
+    @Override
+    public void stop()
+    {   // Not needed
+    }
+
+    @Override
+    public void shutdown() throws IOException
+    {
+        force();
+        state.segment.release();
+    }
+
+    @Override
+    public String toString()
+    {
+        return getClass().getSimpleName() + "[" + directory + "]";
+    }
+}
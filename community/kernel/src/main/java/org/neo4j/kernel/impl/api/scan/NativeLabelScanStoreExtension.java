@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.scan;
+
+import java.io.File;
+
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.helpers.Service;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.extension.KernelExtensionFactory;
+import org.neo4j.kernel.impl.nioneo.store.CommonAbstractStore;
+import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
+import org.neo4j.kernel.impl.nioneo.xa.NeoStoreProvider;
+import org.neo4j.kernel.logging.Logging;
+
+import static org.neo4j.kernel.impl.api.scan.LabelScanStoreProvider.fullStoreLabelUpdateStream;
+import static org.neo4j.kernel.impl.api.scan.NativeLabelScanStore.loggerMonitor;
+import static org.neo4j.kernel.impl.api.scan.NativeLabelScanStoreSettings.native_label_scan_store;
+import static org.neo4j.kernel.impl.api.scan.NativeLabelScanStoreSettings.native_label_scan_store_mapped_memory;
+
+@Service.Implementation(KernelExtensionFactory.class)
+public class NativeLabelScanStoreExtension extends KernelExtensionFactory<NativeLabelScanStoreExtension.Dependencies>
+{
+    public interface Dependencies
+    {
+        Config getConfig();
+
+        FileSystemAbstraction getFileSystem();
+
+        NeoStoreProvider getNeoStoreProvider();
+
+        Logging getLogging();
+    }
+
+    public NativeLabelScanStoreExtension()
+    {
+        super( "native" );
+    }
+
+    @Override
+    public Class getSettingsClass()
+    {
+        return NativeLabelScanStoreSettings.class;
+    }
+
+    @Override
+    public LabelScanStoreProvider newKernelExtension( Dependencies dependencies ) throws Throwable
+    {
+        Config config = dependencies.getConfig();
+        File storeDir = config.get( GraphDatabaseSettings.store_dir );
+        NativeLabelScanStore scanStore = new NativeLabelScanStore(
+
+                // <db>/schema/label/native
+                new File( new File( new File( storeDir, "schema" ), "label" ), "native" ),
+
+                dependencies.getFileSystem(), fullStoreLabelUpdateStream( dependencies.getNeoStoreProvider() ),
+                loggerMonitor( dependencies.getLogging() ),
+                config.get( native_label_scan_store_mapped_memory ),
+                config.get( CommonAbstractStore.Configuration.use_memory_mapped_buffers ),
+                dependencies.getLogging().getMessagesLog( NativeLabelScanStore.class ) );
+
+        // Above the lucene store when enabled, otherwise below everything else
+        return new LabelScanStoreProvider( scanStore, config.get( native_label_scan_store ) ? 20 : 1 );
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.scan;
+
+import org.neo4j.graphdb.config.Setting;
+import org.neo4j.graphdb.factory.Description;
+
+import static org.neo4j.helpers.Settings.BOOLEAN;
+import static org.neo4j.helpers.Settings.BYTES;
+import static org.neo4j.helpers.Settings.FALSE;
+import static org.neo4j.helpers.Settings.setting;
+
+/**
+ * Settings for the native label scan store.
+ */
+public class NativeLabelScanStoreSettings
+{
+    @Description("Use the native bitmap label scan store rather than the Lucene one. The store is rebuilt " +
+            "from the node store the first time the database starts with it.")
+    public static final Setting<Boolean> native_label_scan_store =
+            setting( "native_label_scan_store", BOOLEAN, FALSE );
+
+    @Description("The amount of memory to use for mapping the native label scan store.")
+    public static final Setting<Long> native_label_scan_store_mapped_memory =
+            setting( "native_label_scan_store_mapped_memory", BYTES, "16M" );
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.scan;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.neo4j.kernel.api.labelscan.NodeLabelUpdate;
+import org.neo4j.unsafe.batchinsert.LabelScanWriter;
+
+import static org.neo4j.kernel.impl.api.scan.NativeLabelScanStore.RANGE_MASK;
+import static org.neo4j.kernel.impl.api.scan.NativeLabelScanStore.RANGE_SHIFT;
+import static org.neo4j.kernel.impl.api.scan.NativeLabelScanStore.bits;
+import static org.neo4j.kernel.impl.api.scan.NativeLabelScanStore.key;
+
+/**
+ * Collects the changed bitmaps of one node range at a time, since updates come in order of node id, and
+ * publishes them all as one {@link LabelScanRun} when closed.
+ * <p>
+ * The bit of a node is cleared for all labels it had before or has after the update, and then set for the labels
+ * it has after. That makes it fine to apply an update more than once, which recovery may do.
+ */
+class NativeLabelScanWriter implements LabelScanWriter
+{
+    private final NativeLabelScanStore store;
+    private final NativeLabelScanStore.State state;
+    private final Map<Integer, Entries> entriesByLabel = new TreeMap<>();
+    private final Map<Integer, long[]> rangeBits = new TreeMap<>();
+    private final List<NodeLabelUpdate> pendingUpdates = new ArrayList<>();
+    private final long[] scratch = new long[1];
+    private long currentRange = -1;
+    private int entryCount;
+
+    NativeLabelScanWriter( NativeLabelScanStore store, NativeLabelScanStore.State state )
+    {
+        this.store = store;
+        this.state = state;
+    }
+
+    @Override
+    public void write( NodeLabelUpdate update ) throws IOException
+    {
+        long range = update.getNodeId() >>> RANGE_SHIFT;
+        if ( range != currentRange )
+        {
+            if ( range < currentRange )
+            {
+                throw new IllegalArgumentException( "NodeLabelUpdates must be supplied in order of ascending node id" );
+            }
+
+            flush();
+            currentRange = range;
+        }
+        pendingUpdates.add( update );
+    }
+
+    private void flush()
+    {
+        if ( pendingUpdates.isEmpty() )
+        {
+            return;
+        }
+        for ( NodeLabelUpdate update : pendingUpdates )
+        {
+            long bit = 1L << (update.getNodeId() & RANGE_MASK);
+            for ( long labelId : update.getLabelsBefore() )
+            {
+                bitsOf( (int) labelId )[0] &= ~bit;
+            }
+            for ( long labelId : update.getLabelsAfter() )
+            {
+                bitsOf( (int) labelId )[0] &= ~bit;
+            }
+            for ( long labelId : update.getLabelsAfter() )
+            {
+                bitsOf( (int) labelId )[0] |= bit;
+            }
+        }
+        for ( Map.Entry<Integer, long[]> changed : rangeBits.entrySet() )
+        {
+            Entries entries = entriesByLabel.get( changed.getKey() );
+            if ( entries == null )
+            {
+                entriesByLabel.put( changed.getKey(), entries = new Entries() );
+            }
+            entries.add( key( changed.getKey(), currentRange ), changed.getValue()[0] );
+            entryCount++;
+        }
+        rangeBits.clear();
+        pendingUpdates.clear();
+    }
+
+    private long[] bitsOf( int labelId )
+    {
+        long[] bits = rangeBits.get( labelId );
+        if ( bits == null )
+        {
+            rangeBits.put( labelId, bits = new long[] {bits( state, key( labelId, currentRange ), scratch )} );
+        }
+        return bits;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        LabelScanRun run = LabelScanRun.EMPTY;
+        try
+        {
+            flush();
+            long[] keys = new long[entryCount];
+            long[] bits = new long[entryCount];
+            int size = 0;
+            for ( Entries entries : entriesByLabel.values() )
+            {
+                System.arraycopy( entries.keys, 0, keys, size, entries.size );
+                System.arraycopy( entries.bits, 0, bits, size, entries.size );
+                size += entries.size;
+            }
+            run = new LabelScanRun( keys, bits, size );
+        }
+        finally
+        {   // Also releases the write lock
+            store.publish( run );
+        }
+    }
+
+    /**
+     * Entries of one label, in order of node range.
+     */
+    private static class Entries
+    {
+        private long[] keys = new long[4];
+        private long[] bits = new long[4];
+        private int size;
+
+        void add( long key, long bits )
+        {
+            if ( size == keys.length )
+            {
+                this.keys = Arrays.copyOf( keys, size * 2 );
+                this.bits = Arrays.copyOf( this.bits, size * 2 );
+            }
+            keys[size] = key;
+            this.bits[size++] = bits;
+        }
+    }
+}
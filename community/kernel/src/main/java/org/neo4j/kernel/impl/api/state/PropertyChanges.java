@@ -19,8 +19,11 @@
  */
 package org.neo4j.kernel.impl.api.state;
 
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
+import org.neo4j.helpers.Predicate;
 import org.neo4j.kernel.impl.util.DiffSets;
 import org.neo4j.kernel.impl.util.VersionedHashMap;
 
@@ -48,6 +51,34 @@ public class PropertyChanges
         return DiffSets.emptyDiffSets();
     }
 
+    /**
+     * Changes for all values of the given property that are accepted by the filter, merged into one set of changes.
+     * An entity that moved between two accepted values is considered added.
+     */
+    public DiffSets<Long> changesForPropertyValues( int propertyKeyId, Predicate<Object> valueFilter )
+    {
+        if(changes != null)
+        {
+            Map<Object, DiffSets<Long>> keyChanges = changes.get( propertyKeyId );
+            if(keyChanges != null)
+            {
+                Set<Long> added = new HashSet<>();
+                Set<Long> removed = new HashSet<>();
+                for ( Map.Entry<Object, DiffSets<Long>> valueChanges : keyChanges.entrySet() )
+                {
+                    if ( valueFilter.accept( valueChanges.getKey() ) )
+                    {
+                        added.addAll( valueChanges.getValue().getAdded() );
+                        removed.addAll( valueChanges.getValue().getRemoved() );
+                    }
+                }
+                removed.removeAll( added );
+                return new DiffSets<>( added, removed );
+            }
+        }
+        return DiffSets.emptyDiffSets();
+    }
+
     public void changeProperty( long entityId, int propertyKeyId, Object oldValue, Object newValue )
     {
         Map<Object, DiffSets<Long>> keyChanges = keyChanges( propertyKeyId );
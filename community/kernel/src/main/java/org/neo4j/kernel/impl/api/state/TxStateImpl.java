@@ -34,6 +34,7 @@ import org.neo4j.helpers.Function;
 import org.neo4j.helpers.Predicate;
 import org.neo4j.helpers.collection.Iterables;
 import org.neo4j.helpers.collection.IteratorUtil;
+import org.neo4j.kernel.api.RelationshipVisitor;
 import org.neo4j.kernel.api.TxState;
 import org.neo4j.kernel.api.constraints.UniquenessConstraint;
 import org.neo4j.kernel.api.index.IndexDescriptor;
@@ -356,6 +357,18 @@ public final class TxStateImpl implements TxState
         return hasRelsAddedOrRemoved() && relationships.isAdded( relationshipId );
     }
 
+    @Override
+    public boolean relationshipVisit( long relationshipId, RelationshipVisitor visitor )
+    {
+        if ( relationshipIsAddedInThisTx( relationshipId ) )
+        {
+            RelationshipState state = getOrCreateRelationshipState( relationshipId );
+            visitor.visit( relationshipId, state.startNode(), state.endNode(), state.type() );
+            return true;
+        }
+        return false;
+    }
+
     @Override
     public long nodeDoCreate()
     {
@@ -719,6 +732,14 @@ public final class TxStateImpl implements TxState
                 DiffSets.<Long>emptyDiffSets();
     }
 
+    @Override
+    public DiffSets<Long> nodesWithChangedPropertyValues( int propertyKeyId, Predicate<Object> valueFilter )
+    {
+        return propertyChangesForNodes != null ?
+                propertyChangesForNodes.changesForPropertyValues( propertyKeyId, valueFilter ) :
+                DiffSets.<Long>emptyDiffSets();
+    }
+
     @Override
     public DiffSets<Long> addedAndRemovedNodes()
     {
@@ -21,6 +21,9 @@ package org.neo4j.kernel.impl.api.statistics;
 
 import org.neo4j.kernel.impl.util.statistics.RollingAverage;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 
 /**
@@ -39,8 +42,27 @@ public final class NodeLivenessData implements Serializable {
 
     public NodeLivenessData(RollingAverage.Parameters parameters)
     {
-        this.liveEntities = new RollingAverage( parameters );
-        this.deadEntities = new RollingAverage( parameters );
+        this( new RollingAverage( parameters ), new RollingAverage( parameters ) );
+    }
+
+    private NodeLivenessData( RollingAverage liveEntities, RollingAverage deadEntities )
+    {
+        this.liveEntities = liveEntities;
+        this.deadEntities = deadEntities;
+    }
+
+    public void writeTo( DataOutput out ) throws IOException
+    {
+        liveEntities.writeTo( out );
+        deadEntities.writeTo( out );
+        out.writeLong( highestNodeId );
+    }
+
+    public static NodeLivenessData read( DataInput in ) throws IOException
+    {
+        NodeLivenessData data = new NodeLivenessData( RollingAverage.read( in ), RollingAverage.read( in ) );
+        data.highestNodeId = in.readLong();
+        return data;
     }
 
     /**
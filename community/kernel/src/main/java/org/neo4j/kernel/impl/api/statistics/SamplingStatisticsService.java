@@ -19,11 +19,12 @@
  */
 package org.neo4j.kernel.impl.api.statistics;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.util.concurrent.TimeUnit;
 
 import org.neo4j.kernel.api.heuristics.StatisticsData;
@@ -40,21 +41,31 @@ public class SamplingStatisticsService extends LifecycleAdapter implements Stati
 
     public static SamplingStatisticsService load( FileSystemAbstraction fs, File path, StoreReadLayer store,
                                                  JobScheduler scheduler )
+    {
+        return load( fs, path, store, scheduler, StatisticsCollector.DEFAULT_NODES_PER_RUN );
+    }
+
+    /**
+     * @param nodesPerSecond the number of nodes the sweep visits per second.
+     */
+    public static SamplingStatisticsService load( FileSystemAbstraction fs, File path, StoreReadLayer store,
+                                                 JobScheduler scheduler, int nodesPerSecond )
     {
         if ( fs.fileExists( path ) )
         {
-            try
+            try ( DataInputStream in = new DataInputStream( new BufferedInputStream( fs.openAsInputStream( path ) ) ) )
             {
-                ObjectInputStream in = new ObjectInputStream( fs.openAsInputStream( path ) );
-                return new SamplingStatisticsService( (StatisticsCollectedData) in.readObject(), store, scheduler );
+                return new SamplingStatisticsService( StatisticsCollectedData.read( in ), store, scheduler,
+                        nodesPerSecond );
             }
             catch ( Exception e )
             {
-                // Ignore. This would indicate the file is somehow corrupt, so just start over with new statistics.
+                // Ignore. This would indicate the file is somehow corrupt, or written in a format we don't know,
+                // so just start over with new statistics.
             }
         }
 
-        return new SamplingStatisticsService( store, scheduler );
+        return new SamplingStatisticsService( new StatisticsCollectedData(), store, scheduler, nodesPerSecond );
     }
 
     public SamplingStatisticsService( StoreReadLayer store, JobScheduler scheduler )
@@ -64,15 +75,21 @@ public class SamplingStatisticsService extends LifecycleAdapter implements Stati
 
     public SamplingStatisticsService( StatisticsCollectedData collectedData, StoreReadLayer store,
                                       JobScheduler scheduler )
+    {
+        this( collectedData, store, scheduler, StatisticsCollector.DEFAULT_NODES_PER_RUN );
+    }
+
+    public SamplingStatisticsService( StatisticsCollectedData collectedData, StoreReadLayer store,
+                                      JobScheduler scheduler, int nodesPerSecond )
     {
         this.scheduler = scheduler;
-        this.collector = new StatisticsCollector( store, collectedData );
+        this.collector = new StatisticsCollector( store, collectedData, nodesPerSecond );
     }
 
     @Override
     public void start() throws Throwable
     {
-        scheduler.scheduleRecurring( JobScheduler.Group.heuristics, collector, 30, TimeUnit.SECONDS );
+        scheduler.scheduleRecurring( JobScheduler.Group.heuristics, collector, 1, TimeUnit.SECONDS );
     }
 
     @Override
@@ -90,12 +107,10 @@ public class SamplingStatisticsService extends LifecycleAdapter implements Stati
     public void save( FileSystemAbstraction fs, File path ) throws IOException
     {
         fs.create( path );
-        try ( OutputStream out = fs.openAsOutputStream( path, false ) )
+        try ( DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream( fs.openAsOutputStream( path, false ) ) ) )
         {
-            ObjectOutputStream objStream = new ObjectOutputStream( out );
-            objStream.writeObject( this.collector.collectedData() );
-            objStream.close();
-            out.flush();
+            ((StatisticsCollectedData) this.collector.collectedData()).writeTo( out );
         }
     }
 }
@@ -19,30 +19,65 @@
  */
 package org.neo4j.kernel.impl.api.statistics;
 
-import java.io.Serializable;
-import java.util.HashMap;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.List;
-import java.util.Map;
 
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongObjectMap;
+import org.neo4j.collection.primitive.PrimitiveLongObjectVisitor;
 import org.neo4j.graphdb.Direction;
+import org.neo4j.kernel.api.heuristics.DegreeDistribution;
 import org.neo4j.kernel.api.heuristics.StatisticsData;
+import org.neo4j.kernel.impl.util.statistics.DegreeHistogram;
 import org.neo4j.kernel.impl.util.statistics.LabelledDistribution;
 import org.neo4j.kernel.impl.util.statistics.RollingAverage;
 
-public class StatisticsCollectedData implements StatisticsData, Serializable
+/**
+ * Statistics gathered by the {@link StatisticsCollector}. Degree distributions are kept per label, relationship
+ * type and direction, as histograms built by sweeping the whole node store. The histograms being built by the
+ * sweep in progress are kept apart from the ones exposed, which are those of the last completed sweep, or a
+ * snapshot of the first sweep until that has completed.
+ */
+public class StatisticsCollectedData implements StatisticsData
 {
+    private static final int MAGIC = 0x4E535441; // "NSTA"
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final LabelledDistribution.LabelWriter<Integer> INT_WRITER =
+            new LabelledDistribution.LabelWriter<Integer>()
+    {
+        @Override
+        public void write( Integer label, DataOutput out ) throws IOException
+        {
+            out.writeInt( label );
+        }
+    };
 
-    private static final long serialVersionUID = 5430534253089297623L;
+    private static final LabelledDistribution.LabelReader<Integer> INT_READER =
+            new LabelledDistribution.LabelReader<Integer>()
+    {
+        @Override
+        public Integer read( DataInput in ) throws IOException
+        {
+            return in.readInt();
+        }
+    };
 
     private final NodeLivenessData nodeLivenessData;
     private final LabelledDistribution<Integer> labels;
     private final LabelledDistribution<Integer> relationships;
-
-    private final Map</*label*/Integer, Map</*rel*/Integer, RollingAverage>> outgoingDegrees = new HashMap<>();
-    private final Map</*label*/Integer, Map</*rel*/Integer, RollingAverage>> incomingDegrees = new HashMap<>();
-    private final Map</*label*/Integer, Map</*rel*/Integer, RollingAverage>> bothDegrees = new HashMap<>();
     private final RollingAverage.Parameters parameters;
 
+    // Only accessed by the collector
+    private PrimitiveLongObjectMap<DegreeHistogram> sweepingDegrees = Primitive.longObjectMap();
+    private long sweepPosition;
+    private long completedSweeps;
+
+    // Never modified once published
+    private volatile PrimitiveLongObjectMap<DegreeHistogram> degrees = Primitive.longObjectMap();
+
     public StatisticsCollectedData()
     {
         this( new RollingAverage.Parameters() );
@@ -50,14 +85,19 @@ public class StatisticsCollectedData implements StatisticsData, Serializable
 
     public StatisticsCollectedData( RollingAverage.Parameters parameters )
     {
-        this.parameters = parameters;
-        this.nodeLivenessData = new NodeLivenessData( parameters );
-        this.labels = new LabelledDistribution<>( parameters.equalityTolerance );
-        this.relationships = new LabelledDistribution<>( parameters.equalityTolerance );
+        this( parameters, new NodeLivenessData( parameters ),
+                new LabelledDistribution<Integer>( parameters.equalityTolerance ),
+                new LabelledDistribution<Integer>( parameters.equalityTolerance ) );
+    }
 
-        outgoingDegrees.put( RELATIONSHIP_DEGREE_FOR_NODE_WITHOUT_LABEL, new HashMap<Integer, RollingAverage>() );
-        incomingDegrees.put( RELATIONSHIP_DEGREE_FOR_NODE_WITHOUT_LABEL, new HashMap<Integer, RollingAverage>() );
-        bothDegrees.put( RELATIONSHIP_DEGREE_FOR_NODE_WITHOUT_LABEL, new HashMap<Integer, RollingAverage>() );
+    private StatisticsCollectedData( RollingAverage.Parameters parameters, NodeLivenessData nodeLivenessData,
+                                     LabelledDistribution<Integer> labels,
+                                     LabelledDistribution<Integer> relationships )
+    {
+        this.parameters = parameters;
+        this.nodeLivenessData = nodeLivenessData;
+        this.labels = labels;
+        this.relationships = relationships;
     }
 
     @Override
@@ -75,29 +115,14 @@ public class StatisticsCollectedData implements StatisticsData, Serializable
     @Override
     public double degree( int labelId, int relType, Direction direction )
     {
-        Map<Integer, Map<Integer, RollingAverage>> labelMap;
-        switch ( direction )
-        {
-            case INCOMING:
-                labelMap = incomingDegrees;
-                break;
-            case OUTGOING:
-                labelMap = outgoingDegrees;
-                break;
-            default:
-                labelMap = bothDegrees;
-        }
-
-        if ( labelMap.containsKey( labelId ) )
-        {
-            Map<Integer, RollingAverage> relTypeMap = labelMap.get( labelId );
-            if ( relTypeMap.containsKey( relType ) )
-            {
-                return relTypeMap.get( relType ).average();
-            }
-        }
+        return degreeDistribution( labelId, relType, direction ).mean();
+    }
 
-        return 0.0;
+    @Override
+    public DegreeDistribution degreeDistribution( int labelId, int relType, Direction direction )
+    {
+        DegreeHistogram histogram = degrees.get( degreeKey( labelId, relType, direction ) );
+        return histogram == null ? DegreeDistribution.EMPTY : histogram;
     }
 
     @Override
@@ -122,6 +147,18 @@ public class StatisticsCollectedData implements StatisticsData, Serializable
         relationships.record( nodeRelTypes );
     }
 
+    public void recordDegree( int labelId, int relType, Direction direction, long degree )
+    {
+        long key = degreeKey( labelId, relType, direction );
+        DegreeHistogram histogram = sweepingDegrees.get( key );
+        if ( histogram == null )
+        {
+            histogram = new DegreeHistogram();
+            sweepingDegrees.put( key, histogram );
+        }
+        histogram.record( degree );
+    }
+
     public void recordNodeLiveEntity()
     {
         nodeLivenessData.recordLiveEntity();
@@ -137,19 +174,33 @@ public class StatisticsCollectedData implements StatisticsData, Serializable
         nodeLivenessData.recordHighestId( nodeId );
     }
 
-    public Map<Integer, Map<Integer, RollingAverage>> getBothDegree()
+    /**
+     * @return the node id the sweep in progress should continue from.
+     */
+    public long sweepPosition()
     {
-        return bothDegrees;
+        return sweepPosition;
     }
 
-    public Map<Integer, Map<Integer, RollingAverage>> getIncomingDegree()
+    public void sweptTo( long nodeId )
     {
-        return incomingDegrees;
+        sweepPosition = nodeId;
     }
 
-    public Map<Integer, Map<Integer, RollingAverage>> getOutcomingDegree()
+    /**
+     * The sweep has visited all nodes, so its degree histograms replace the ones exposed and a new sweep starts.
+     */
+    public void completeSweep()
     {
-        return outgoingDegrees;
+        degrees = sweepingDegrees;
+        sweepingDegrees = Primitive.longObjectMap();
+        sweepPosition = 0;
+        completedSweeps++;
+    }
+
+    public long completedSweeps()
+    {
+        return completedSweeps;
     }
 
     public void recalculate()
@@ -157,6 +208,11 @@ public class StatisticsCollectedData implements StatisticsData, Serializable
         labels.recalculate();
         relationships.recalculate();
         nodeLivenessData.recalculate();
+        if ( completedSweeps == 0 )
+        {
+            // Better some statistics than none at all while the first sweep is in progress
+            degrees = copy( sweepingDegrees );
+        }
     }
 
     public RollingAverage.Parameters getParameters()
@@ -164,6 +220,129 @@ public class StatisticsCollectedData implements StatisticsData, Serializable
         return parameters;
     }
 
+    /**
+     * Writes these statistics in a compact binary format, readable by {@link #read(DataInput)}.
+     */
+    public void writeTo( DataOutput out ) throws IOException
+    {
+        out.writeInt( MAGIC );
+        out.writeByte( FORMAT_VERSION );
+        out.writeLong( parameters.windowSize );
+        out.writeDouble( parameters.equalityTolerance );
+        nodeLivenessData.writeTo( out );
+        labels.writeTo( out, INT_WRITER );
+        relationships.writeTo( out, INT_WRITER );
+        out.writeLong( sweepPosition );
+        out.writeLong( completedSweeps );
+        writeDegrees( degrees, out );
+        writeDegrees( sweepingDegrees, out );
+    }
+
+    /**
+     * @throws IOException if the data isn't statistics written by {@link #writeTo(DataOutput)}, or is written
+     * in a format version not known to this version.
+     */
+    public static StatisticsCollectedData read( DataInput in ) throws IOException
+    {
+        if ( in.readInt() != MAGIC )
+        {
+            throw new IOException( "Not a statistics file" );
+        }
+        byte version = in.readByte();
+        if ( version != FORMAT_VERSION )
+        {
+            throw new IOException( "Unknown statistics format version " + version );
+        }
+        RollingAverage.Parameters parameters = new RollingAverage.Parameters( in.readLong(), in.readDouble() );
+        StatisticsCollectedData data = new StatisticsCollectedData( parameters, NodeLivenessData.read( in ),
+                LabelledDistribution.read( in, INT_READER ), LabelledDistribution.read( in, INT_READER ) );
+        data.sweepPosition = in.readLong();
+        data.completedSweeps = in.readLong();
+        data.degrees = readDegrees( in );
+        data.sweepingDegrees = readDegrees( in );
+        return data;
+    }
+
+    private static void writeDegrees( PrimitiveLongObjectMap<DegreeHistogram> degrees, final DataOutput out )
+            throws IOException
+    {
+        out.writeInt( degrees.size() );
+        final IOException[] failure = new IOException[1];
+        degrees.visitEntries( new PrimitiveLongObjectVisitor<DegreeHistogram>()
+        {
+            @Override
+            public void visited( long key, DegreeHistogram histogram )
+            {
+                try
+                {
+                    if ( failure[0] == null )
+                    {
+                        out.writeLong( key );
+                        histogram.writeTo( out );
+                    }
+                }
+                catch ( IOException e )
+                {
+                    failure[0] = e;
+                }
+            }
+        } );
+        if ( failure[0] != null )
+        {
+            throw failure[0];
+        }
+    }
+
+    private static PrimitiveLongObjectMap<DegreeHistogram> readDegrees( DataInput in ) throws IOException
+    {
+        int size = in.readInt();
+        PrimitiveLongObjectMap<DegreeHistogram> degrees = Primitive.longObjectMap( Math.max( size, 1 ) );
+        for ( int i = 0; i < size; i++ )
+        {
+            degrees.put( in.readLong(), DegreeHistogram.read( in ) );
+        }
+        return degrees;
+    }
+
+    private static PrimitiveLongObjectMap<DegreeHistogram> copy( PrimitiveLongObjectMap<DegreeHistogram> source )
+    {
+        final PrimitiveLongObjectMap<DegreeHistogram> copy = Primitive.longObjectMap( Math.max( source.size(), 1 ) );
+        source.visitEntries( new PrimitiveLongObjectVisitor<DegreeHistogram>()
+        {
+            @Override
+            public void visited( long key, DegreeHistogram histogram )
+            {
+                copy.put( key, histogram.copy() );
+            }
+        } );
+        return copy;
+    }
+
+    private static long degreeKey( int labelId, int relType, Direction direction )
+    {
+        // labelId may be RELATIONSHIP_DEGREE_FOR_NODE_WITHOUT_LABEL, i.e. -1
+        return ((labelId + 1L) << 32) | ((relType & 0x3FFFFFFFL) << 2) | direction.ordinal();
+    }
+
+    private static boolean degreesEqual( PrimitiveLongObjectMap<DegreeHistogram> a,
+                                         final PrimitiveLongObjectMap<DegreeHistogram> b )
+    {
+        if ( a.size() != b.size() )
+        {
+            return false;
+        }
+        final boolean[] equal = {true};
+        a.visitEntries( new PrimitiveLongObjectVisitor<DegreeHistogram>()
+        {
+            @Override
+            public void visited( long key, DegreeHistogram histogram )
+            {
+                equal[0] &= histogram.equals( b.get( key ) );
+            }
+        } );
+        return equal[0];
+    }
+
     @Override
     public boolean equals( Object o )
     {
@@ -178,9 +357,10 @@ public class StatisticsCollectedData implements StatisticsData, Serializable
 
         StatisticsCollectedData that = (StatisticsCollectedData) o;
 
-        return bothDegrees.equals( that.bothDegrees )
-                && incomingDegrees.equals( that.incomingDegrees )
-                && outgoingDegrees.equals( that.outgoingDegrees )
+        return sweepPosition == that.sweepPosition
+                && completedSweeps == that.completedSweeps
+                && degreesEqual( degrees, that.degrees )
+                && degreesEqual( sweepingDegrees, that.sweepingDegrees )
                 && nodeLivenessData.equals( that.nodeLivenessData )
                 && labels.equals( that.labels )
                 && relationships.equals( that.relationships );
@@ -191,9 +371,8 @@ public class StatisticsCollectedData implements StatisticsData, Serializable
     {
         int result = labels.hashCode();
         result = 31 * result + relationships.hashCode();
-        result = 31 * result + outgoingDegrees.hashCode();
-        result = 31 * result + incomingDegrees.hashCode();
-        result = 31 * result + bothDegrees.hashCode();
+        result = 31 * result + degrees.size();
+        result = 31 * result + (int) (sweepPosition ^ (sweepPosition >>> 32));
         result = 31 * result + nodeLivenessData.hashCode();
         return result;
     }
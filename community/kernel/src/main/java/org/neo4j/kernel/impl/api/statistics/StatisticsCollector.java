@@ -19,78 +19,66 @@
  */
 package org.neo4j.kernel.impl.api.statistics;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Random;
 
 import org.neo4j.graphdb.Direction;
-import org.neo4j.helpers.collection.Iterables;
 import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
 import org.neo4j.kernel.api.heuristics.StatisticsData;
 import org.neo4j.kernel.impl.api.store.StoreReadLayer;
-import org.neo4j.kernel.impl.util.statistics.RollingAverage;
 
 import static org.neo4j.helpers.collection.IteratorUtil.asList;
 
+/**
+ * Sweeps the node store in node id order, a limited number of nodes per {@link #run() run}, picking up where
+ * the previous run left off. When the sweep reaches the end of the store it starts over, so that over time all
+ * nodes get visited again and again.
+ */
 public class StatisticsCollector implements Runnable
 {
+    public static final int DEFAULT_NODES_PER_RUN = 10_000;
 
     private final StatisticsCollectedData collectedData;
     private final StoreReadLayer store;
-    private final Random random = new Random();
+    private final int nodesPerRun;
 
     public StatisticsCollector( StoreReadLayer store, StatisticsCollectedData collectedData )
+    {
+        this( store, collectedData, DEFAULT_NODES_PER_RUN );
+    }
+
+    public StatisticsCollector( StoreReadLayer store, StatisticsCollectedData collectedData, int nodesPerRun )
     {
         this.collectedData = collectedData;
         this.store = store;
+        this.nodesPerRun = nodesPerRun;
     }
 
     private void addNodeObservation( List<Integer> nodeLabels, List<Integer> nodeRelTypes,
-                                     Map<Integer, Integer> nodeIncoming, Map<Integer, Integer> nodeOutgoing )
+                                     int[] nodeIncoming, int[] nodeOutgoing )
     {
         collectedData.recordLabels( nodeLabels );
         collectedData.recordRelationshipTypes( nodeRelTypes );
 
-        recordNodeDegree( nodeLabels, nodeIncoming, collectedData.getIncomingDegree() );
-        recordNodeDegree( nodeLabels, nodeOutgoing, collectedData.getOutcomingDegree() );
-
-        recordNodeDegree( nodeLabels, nodeIncoming, collectedData.getBothDegree() );
-        recordNodeDegree( nodeLabels, nodeOutgoing, collectedData.getBothDegree() );
+        for ( int i = 0; i < nodeRelTypes.size(); i++ )
+        {
+            int relType = nodeRelTypes.get( i );
+            /* Include for looking up without label */
+            recordNodeDegree( StatisticsData.RELATIONSHIP_DEGREE_FOR_NODE_WITHOUT_LABEL, relType,
+                    nodeIncoming[i], nodeOutgoing[i] );
+            for ( Integer nodeLabel : nodeLabels )
+            {
+                recordNodeDegree( nodeLabel, relType, nodeIncoming[i], nodeOutgoing[i] );
+            }
+        }
 
         collectedData.recordNodeLiveEntity();
     }
 
-    private void recordNodeDegree( List<Integer> nodeLabels,
-                                   Map<Integer, Integer> source,
-                                   Map<Integer, Map<Integer, RollingAverage>> degreeMap )
+    private void recordNodeDegree( int labelId, int relType, int incoming, int outgoing )
     {
-        for ( Map.Entry<Integer, Integer> entry : source.entrySet() )
-        {
-            for ( Integer nodeLabel :
-                    Iterables.append( /* Include for looking up without label */
-                            StatisticsData.RELATIONSHIP_DEGREE_FOR_NODE_WITHOUT_LABEL,
-                            nodeLabels
-                    )
-                    )
-            {
-                Map<Integer, RollingAverage> reltypeMap = degreeMap.get( nodeLabel );
-                if ( reltypeMap == null )
-                {
-                    reltypeMap = new HashMap<>();
-                    degreeMap.put( nodeLabel, reltypeMap );
-                }
-
-                RollingAverage histogram = reltypeMap.get( entry.getKey() );
-                if ( histogram == null )
-                {
-                    histogram = new RollingAverage( collectedData.getParameters() );
-                    reltypeMap.put( entry.getKey(), histogram );
-                }
-
-                histogram.record( entry.getValue() );
-            }
-        }
+        collectedData.recordDegree( labelId, relType, Direction.INCOMING, incoming );
+        collectedData.recordDegree( labelId, relType, Direction.OUTGOING, outgoing );
+        collectedData.recordDegree( labelId, relType, Direction.BOTH, incoming + outgoing );
     }
 
     public StatisticsData collectedData()
@@ -99,14 +87,22 @@ public class StatisticsCollector implements Runnable
     }
 
     /**
-     * Perform one sampling run.
+     * Perform one sweep step, visiting at most the configured number of nodes.
      */
     @Override
     public void run()
     {
-        for ( int i = 0; i < 100; i++ )
+        long highestNodeId = store.highestNodeIdInUse();
+        long id = collectedData.sweepPosition();
+        for ( int visited = 0; visited < nodesPerRun; visited++, id++ )
         {
-            long id = random.nextLong() % store.highestNodeIdInUse();
+            if ( id > highestNodeId )
+            {
+                collectedData.completeSweep();
+                id = 0;
+                break;
+            }
+
             if ( store.nodeExists( id ) )
             {
                 try
@@ -114,13 +110,12 @@ public class StatisticsCollector implements Runnable
                     List<Integer> relTypes = asList( store.nodeGetRelationshipTypes( id ) );
                     List<Integer> labels = asList( store.nodeGetLabels( id ) );
 
-                    Map<Integer, Integer> incomingDegrees = new HashMap<>();
-                    Map<Integer, Integer> outgoingDegrees = new HashMap<>();
-
-                    for ( Integer relType : relTypes )
+                    int[] incomingDegrees = new int[relTypes.size()];
+                    int[] outgoingDegrees = new int[relTypes.size()];
+                    for ( int i = 0; i < relTypes.size(); i++ )
                     {
-                        incomingDegrees.put( relType, store.nodeGetDegree( id, Direction.INCOMING, relType ) );
-                        outgoingDegrees.put( relType, store.nodeGetDegree( id, Direction.OUTGOING, relType ) );
+                        incomingDegrees[i] = store.nodeGetDegree( id, Direction.INCOMING, relTypes.get( i ) );
+                        outgoingDegrees[i] = store.nodeGetDegree( id, Direction.OUTGOING, relTypes.get( i ) );
                     }
 
                     addNodeObservation( labels, relTypes, incomingDegrees, outgoingDegrees );
@@ -137,9 +132,9 @@ public class StatisticsCollector implements Runnable
             }
         }
 
-        collectedData.recordHighestNodeId( store.highestNodeIdInUse() );
+        collectedData.sweptTo( id );
+        collectedData.recordHighestNodeId( highestNodeId );
 
         collectedData.recalculate();
     }
 }
-
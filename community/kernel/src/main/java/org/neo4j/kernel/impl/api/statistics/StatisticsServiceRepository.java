@@ -29,6 +29,7 @@ import org.neo4j.kernel.impl.util.JobScheduler;
 
 import static org.neo4j.graphdb.factory.GraphDatabaseSettings.store_dir;
 import static org.neo4j.kernel.InternalAbstractGraphDatabase.Configuration.statistics_enabled;
+import static org.neo4j.kernel.InternalAbstractGraphDatabase.Configuration.statistics_sweep_rate;
 
 public class StatisticsServiceRepository
 {
@@ -49,7 +50,7 @@ public class StatisticsServiceRepository
     public StatisticsService loadStatistics()
     {
         SamplingStatisticsService runtime = SamplingStatisticsService.load( this.fs, statisticsFile(), store,
-                scheduler );
+                scheduler, config.get( statistics_sweep_rate ) );
         if(config.get( statistics_enabled ))
         {
             return runtime;
@@ -44,7 +44,9 @@ import org.neo4j.kernel.api.exceptions.index.IndexNotFoundKernelException;
 import org.neo4j.kernel.api.exceptions.schema.SchemaRuleNotFoundException;
 import org.neo4j.kernel.api.exceptions.schema.TooManyLabelsException;
 import org.neo4j.kernel.api.index.IndexDescriptor;
+import org.neo4j.kernel.api.index.IndexOrder;
 import org.neo4j.kernel.api.index.IndexReader;
+import org.neo4j.kernel.api.index.IndexSeek;
 import org.neo4j.kernel.api.index.InternalIndexState;
 import org.neo4j.kernel.api.properties.DefinedProperty;
 import org.neo4j.kernel.impl.api.KernelStatement;
@@ -453,6 +455,12 @@ public class DiskLayer
         return state.getIndexReader( index ).lookup( value );
     }
 
+    public PrimitiveLongIterator nodesGetFromIndexSeek( KernelStatement state, long index, IndexSeek seek,
+                                                        IndexOrder order ) throws IndexNotFoundKernelException
+    {
+        return seek.seek( state.getIndexReader( index ), order );
+    }
+
     private Iterator<DefinedProperty> loadAllPropertiesOf( PrimitiveRecord primitiveRecord )
     {
         Collection<PropertyRecord> records = propertyStore.getPropertyRecordChain( primitiveRecord.getNextProp() );
@@ -179,12 +179,15 @@ public class SchemaCache
         }
     }
 
-    public void removeSchemaRule( long id )
+    /**
+     * @return the removed rule, or {@code null} if there was no rule with the given id.
+     */
+    public SchemaRule removeSchemaRule( long id )
     {
         SchemaRule rule = ruleByIdMap.remove( id );
         if ( rule == null )
         {
-            return;
+            return null;
         }
 
         int labelId = rule.getLabel();
@@ -208,6 +211,7 @@ public class SchemaCache
                 indexDescriptors.remove( indexRule.getLabel() );
             }
         }
+        return rule;
     }
 
     public long indexId( IndexDescriptor index )
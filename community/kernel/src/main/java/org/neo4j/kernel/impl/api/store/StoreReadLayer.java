@@ -24,6 +24,7 @@ import java.util.Iterator;
 import org.neo4j.collection.primitive.PrimitiveIntIterator;
 import org.neo4j.collection.primitive.PrimitiveLongIterator;
 import org.neo4j.graphdb.Direction;
+import org.neo4j.kernel.api.RelationshipVisitor;
 import org.neo4j.kernel.api.constraints.UniquenessConstraint;
 import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
 import org.neo4j.kernel.api.exceptions.LabelNotFoundKernelException;
@@ -34,6 +35,8 @@ import org.neo4j.kernel.api.exceptions.schema.IndexBrokenKernelException;
 import org.neo4j.kernel.api.exceptions.schema.SchemaRuleNotFoundException;
 import org.neo4j.kernel.api.exceptions.schema.TooManyLabelsException;
 import org.neo4j.kernel.api.index.IndexDescriptor;
+import org.neo4j.kernel.api.index.IndexOrder;
+import org.neo4j.kernel.api.index.IndexSeek;
 import org.neo4j.kernel.api.index.InternalIndexState;
 import org.neo4j.kernel.api.properties.DefinedProperty;
 import org.neo4j.kernel.api.properties.Property;
@@ -114,6 +117,9 @@ public interface StoreReadLayer
     PrimitiveLongIterator nodesGetFromIndexLookup( KernelStatement state, IndexDescriptor index, Object value )
                                                             throws IndexNotFoundKernelException;
 
+    PrimitiveLongIterator nodesGetFromIndexSeek( KernelStatement state, IndexDescriptor index, IndexSeek seek,
+                                                 IndexOrder order ) throws IndexNotFoundKernelException;
+
     IndexDescriptor indexesGetForLabelAndPropertyKey( int labelId, int propertyKey )
                                                                     throws SchemaRuleNotFoundException;
 
@@ -147,9 +153,4 @@ public interface StoreReadLayer
     void visit( long relationshipId, RelationshipVisitor relationshipVisitor ) throws EntityNotFoundException;
 
     long highestNodeIdInUse();
-
-    public interface RelationshipVisitor
-    {
-        void visit( long relId, long startNode, long endNode, int type );
-    }
 }
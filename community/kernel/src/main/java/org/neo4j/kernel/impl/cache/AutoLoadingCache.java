@@ -133,6 +133,12 @@ public class AutoLoadingCache<E extends EntityWithSizeObject> implements Cache<E
         return actual.missCount();
     }
 
+    @Override
+    public long evictionCount()
+    {
+        return actual.evictionCount();
+    }
+
     @Override
     public void updateSize( E entity, int newSize )
     {
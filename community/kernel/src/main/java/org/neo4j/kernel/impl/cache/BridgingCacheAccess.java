@@ -28,7 +28,9 @@ import org.neo4j.kernel.impl.api.SchemaState;
 import org.neo4j.kernel.impl.core.CacheAccessBackDoor;
 import org.neo4j.kernel.impl.core.NodeManager;
 import org.neo4j.kernel.impl.core.Token;
+import org.neo4j.kernel.impl.nioneo.store.IndexRule;
 import org.neo4j.kernel.impl.nioneo.store.SchemaRule;
+import org.neo4j.kernel.impl.nioneo.store.UniquenessConstraintRule;
 
 public class BridgingCacheAccess implements CacheAccessBackDoor
 {
@@ -80,8 +82,19 @@ public class BridgingCacheAccess implements CacheAccessBackDoor
     @Override
     public void removeSchemaRuleFromCache( long id )
     {
-        schemaCache.removeSchemaRule( id );
-        schemaState.clear();
+        SchemaRule rule = schemaCache.removeSchemaRule( id );
+        if ( rule instanceof IndexRule )
+        {
+            schemaState.invalidate( rule.getLabel(), ((IndexRule) rule).getPropertyKey() );
+        }
+        else if ( rule instanceof UniquenessConstraintRule )
+        {
+            schemaState.invalidate( rule.getLabel(), ((UniquenessConstraintRule) rule).getPropertyKey() );
+        }
+        else
+        {
+            schemaState.clear();
+        }
     }
 
     @Override
@@ -79,6 +79,14 @@ public interface Cache<E extends EntityWithSizeObject>
 
     long missCount();
 
+    /**
+     * Returns the number of elements that has been evicted from this cache to make room for others, as opposed
+     * to elements that has been explicitly {@link #remove(long) removed}.
+     *
+     * @return number of evicted elements
+     */
+    long evictionCount();
+
     void updateSize( E entity, int newSize );
 
     void printStatistics();
@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts cached entities to and from a compact binary form, so that they can be kept outside of the
+ * Java heap by an {@link OffHeapCache}.
+ *
+ * @param <E> type of entity to marshal.
+ */
+public interface EntityMarshaller<E extends EntityWithSizeObject>
+{
+    /**
+     * Writes the state of {@code entity}, except its id, to {@code target}. State which hasn't been loaded
+     * into the entity yet can be left out, it will be loaded again on demand after the entity has been read.
+     *
+     * @param entity the entity to write.
+     * @param target the buffer to write to.
+     * @throws java.nio.BufferOverflowException if {@code target} is too small. The write will then
+     * be retried with a bigger buffer.
+     */
+    void write( E entity, ByteBuffer target );
+
+    /**
+     * Reads back an entity, previously written with {@link #write(EntityWithSizeObject, ByteBuffer)}.
+     *
+     * @param id the id of the entity.
+     * @param source the buffer, positioned at the start of the entity state.
+     * @return a new instance of the entity.
+     */
+    E read( long id, ByteBuffer source );
+}
@@ -23,12 +23,13 @@ import org.neo4j.helpers.Counter;
 
 final class HitCounter
 {
-    private final Counter hits, miss;
+    private final Counter hits, miss, evictions;
 
     public HitCounter( )
     {
         this.hits = new Counter();
         this.miss = new Counter();
+        this.evictions = new Counter();
     }
 
     public <T> T count( T item )
@@ -46,4 +47,14 @@ final class HitCounter
     {
         return miss.count();
     }
+
+    public void evicted()
+    {
+        evictions.inc();
+    }
+
+    public long getEvictionCount()
+    {
+        return evictions.count();
+    }
 }
@@ -69,6 +69,12 @@ public class NoCache<E extends EntityWithSizeObject> implements Cache<E>
         return 0;
     }
 
+    @Override
+    public long evictionCount()
+    {
+        return 0;
+    }
+
     @Override
     public long size()
     {
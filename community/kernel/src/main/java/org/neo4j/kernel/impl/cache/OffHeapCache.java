@@ -0,0 +1,391 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongIntMap;
+
+/**
+ * A cache which keeps most of its entities serialized in memory outside of the Java heap, so that
+ * a big cache doesn't lead to long garbage collection pauses.
+ * <p>
+ * Only a bounded number of the most recently used entities are kept as objects on the heap. Entities
+ * falling out of that set are written, using an {@link EntityMarshaller}, to off-heap segments and are read
+ * back, and moved to the heap again, the next time they are requested. An entity is therefore held by at most
+ * one of the two tiers at any time, which means that changes made to an entity which is handed out by
+ * {@link #get(long)} aren't lost. Should an entity be changed after it has been moved off-heap, the off-heap copy,
+ * or the copy read back from it, is dropped in {@link #updateSize(EntityWithSizeObject, int)}. That copy may have
+ * been serialized while the change was being made to the entity, since that happens without holding any lock of
+ * this cache.
+ * <p>
+ * Off-heap memory is split into a number of segments, which are written to in a round-robin fashion. When
+ * all segments are full, the oldest segment is reused and the entities still in it are evicted. Removed and
+ * promoted entities leave holes in their segments until then.
+ * <p>
+ * The cache is divided into stripes, by entity id, each with its own lock, heap tier and segments.
+ */
+public class OffHeapCache<E extends EntityWithSizeObject> implements Cache<E>
+{
+    private static final int STRIPES = 16;
+    private static final int SEGMENTS_PER_STRIPE = 8;
+    // Addresses are ints, keeping the segment in the high 3 bits and the record offset, in 8 byte units, in the rest
+    private static final int OFFSET_BITS = 29;
+    private static final int OFFSET_MASK = (1 << OFFSET_BITS) - 1;
+    private static final int ALIGNMENT = 8;
+    private static final int MAX_SEGMENT_SIZE = Integer.MAX_VALUE & ~(ALIGNMENT - 1);
+    // id (long) and length of serialized entity (int)
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final int INITIAL_SCRATCH_SIZE = 1024;
+
+    private final String name;
+    private final EntityMarshaller<E> marshaller;
+    private final int segmentSize;
+    private final Stripe[] stripes;
+    private final HitCounter counter = new HitCounter();
+
+    /**
+     * @param name name of this cache.
+     * @param marshaller for moving entities to and from off-heap memory.
+     * @param maxOffHeapBytes the maximum number of bytes of off-heap memory to use. Memory is allocated as needed.
+     * @param maxHeapEntities the maximum number of entities to keep as objects on the heap.
+     */
+    public OffHeapCache( String name, EntityMarshaller<E> marshaller, long maxOffHeapBytes, int maxHeapEntities )
+    {
+        this.name = name;
+        this.marshaller = marshaller;
+        long segmentSize = maxOffHeapBytes / (STRIPES * SEGMENTS_PER_STRIPE);
+        this.segmentSize = (int) Math.min( segmentSize - segmentSize % ALIGNMENT, MAX_SEGMENT_SIZE );
+        this.stripes = newStripes( Math.max( 1, maxHeapEntities / STRIPES ) );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private Stripe[] newStripes( int maxHeapEntitiesPerStripe )
+    {
+        Stripe[] result = new OffHeapCache.Stripe[STRIPES];
+        for ( int i = 0; i < result.length; i++ )
+        {
+            result[i] = new Stripe( maxHeapEntitiesPerStripe );
+        }
+        return result;
+    }
+
+    private Stripe stripe( long id )
+    {
+        return stripes[(int) (id & (STRIPES - 1))];
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public E put( E value )
+    {
+        return stripe( value.getId() ).put( value );
+    }
+
+    @Override
+    public void putAll( Collection<E> values )
+    {
+        for ( E value : values )
+        {
+            put( value );
+        }
+    }
+
+    @Override
+    public E remove( long key )
+    {
+        return stripe( key ).remove( key );
+    }
+
+    @Override
+    public E get( long key )
+    {
+        return counter.count( stripe( key ).get( key ) );
+    }
+
+    @Override
+    public void clear()
+    {
+        for ( Stripe stripe : stripes )
+        {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * @return the number of entities in this cache, on and off the heap.
+     */
+    @Override
+    public long size()
+    {
+        long size = 0;
+        for ( Stripe stripe : stripes )
+        {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long hitCount()
+    {
+        return counter.getHitsCount();
+    }
+
+    @Override
+    public long missCount()
+    {
+        return counter.getMissCount();
+    }
+
+    @Override
+    public long evictionCount()
+    {
+        return counter.getEvictionCount();
+    }
+
+    @Override
+    public void updateSize( E entity, int newSize )
+    {
+        stripe( entity.getId() ).changed( entity );
+    }
+
+    @Override
+    public void printStatistics()
+    {
+        // do nothing
+    }
+
+    private static int address( int segment, int offset )
+    {
+        return (segment << OFFSET_BITS) | (offset / ALIGNMENT);
+    }
+
+    private static int segmentOf( int address )
+    {
+        return address >>> OFFSET_BITS;
+    }
+
+    private static int offsetOf( int address )
+    {
+        return (address & OFFSET_MASK) * ALIGNMENT;
+    }
+
+    private static int recordSize( int entityLength )
+    {
+        int size = RECORD_HEADER_SIZE + entityLength;
+        return (size + ALIGNMENT - 1) & ~(ALIGNMENT - 1);
+    }
+
+    private class Stripe
+    {
+        private final LinkedHashMap<Long,E> heap;
+        private final PrimitiveLongIntMap offHeap = Primitive.longIntMap();
+        private final ByteBuffer[] segments = new ByteBuffer[SEGMENTS_PER_STRIPE];
+        private final int[] segmentUsage = new int[SEGMENTS_PER_STRIPE];
+        private int currentSegment;
+        private ByteBuffer scratch = ByteBuffer.allocate( INITIAL_SCRATCH_SIZE );
+
+        Stripe( final int maxHeapEntities )
+        {
+            this.heap = new LinkedHashMap<Long,E>( 16, 0.75f, true )
+            {
+                @Override
+                protected boolean removeEldestEntry( Map.Entry<Long,E> eldest )
+                {
+                    if ( size() > maxHeapEntities )
+                    {
+                        moveOffHeap( eldest.getValue() );
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized E get( long id )
+        {
+            E entity = heap.get( id );
+            if ( entity == null )
+            {
+                entity = takeOffHeap( id );
+                if ( entity != null )
+                {
+                    heap.put( id, entity );
+                }
+            }
+            return entity;
+        }
+
+        synchronized E put( E entity )
+        {
+            E existing = get( entity.getId() );
+            if ( existing != null )
+            {
+                return existing;
+            }
+            heap.put( entity.getId(), entity );
+            return entity;
+        }
+
+        synchronized E remove( long id )
+        {
+            E entity = heap.remove( id );
+            return entity != null ? entity : takeOffHeap( id );
+        }
+
+        synchronized void changed( E entity )
+        {
+            E cached = heap.get( entity.getId() );
+            if ( cached != entity )
+            {
+                // This instance has been moved off-heap before, or while, this change was made to it. Neither the
+                // off-heap copy nor a copy already read back from it can be trusted to have the change.
+                offHeap.remove( entity.getId() );
+                if ( cached != null )
+                {
+                    heap.remove( entity.getId() );
+                }
+            }
+        }
+
+        synchronized void clear()
+        {
+            heap.clear();
+            offHeap.clear();
+            for ( int i = 0; i < SEGMENTS_PER_STRIPE; i++ )
+            {
+                segmentUsage[i] = 0;
+            }
+            currentSegment = 0;
+        }
+
+        synchronized long size()
+        {
+            return heap.size() + offHeap.size();
+        }
+
+        private void moveOffHeap( E entity )
+        {
+            ByteBuffer serialized = serialize( entity );
+            if ( serialized == null )
+            {
+                counter.evicted();
+                return;
+            }
+            int length = serialized.remaining();
+            int recordSize = recordSize( length );
+            if ( segmentUsage[currentSegment] + recordSize > segmentSize )
+            {
+                nextSegment();
+            }
+            int offset = segmentUsage[currentSegment];
+            ByteBuffer segment = segment( currentSegment );
+            segment.putLong( offset, entity.getId() );
+            segment.putInt( offset + 8, length );
+            ByteBuffer target = segment.duplicate();
+            target.position( offset + RECORD_HEADER_SIZE );
+            target.put( serialized );
+            offHeap.put( entity.getId(), address( currentSegment, offset ) );
+            segmentUsage[currentSegment] = offset + recordSize;
+        }
+
+        /**
+         * @return the entity serialized into the scratch buffer, or {@code null} if it wouldn't fit in a segment.
+         */
+        private ByteBuffer serialize( E entity )
+        {
+            int maxLength = segmentSize - RECORD_HEADER_SIZE;
+            while ( maxLength > 0 )
+            {
+                scratch.clear();
+                try
+                {
+                    marshaller.write( entity, scratch );
+                    scratch.flip();
+                    return scratch;
+                }
+                catch ( BufferOverflowException e )
+                {
+                    if ( scratch.capacity() >= maxLength )
+                    {
+                        break;
+                    }
+                    scratch = ByteBuffer.allocate( (int) Math.min( scratch.capacity() * 2L, maxLength ) );
+                }
+            }
+            scratch = ByteBuffer.allocate( INITIAL_SCRATCH_SIZE );
+            return null;
+        }
+
+        private E takeOffHeap( long id )
+        {
+            int address = offHeap.remove( id );
+            if ( address == -1 )
+            {
+                return null;
+            }
+            ByteBuffer source = segments[segmentOf( address )].duplicate();
+            int offset = offsetOf( address );
+            int length = source.getInt( offset + 8 );
+            source.limit( offset + RECORD_HEADER_SIZE + length );
+            source.position( offset + RECORD_HEADER_SIZE );
+            return marshaller.read( id, source );
+        }
+
+        private void nextSegment()
+        {
+            currentSegment = (currentSegment + 1) % SEGMENTS_PER_STRIPE;
+            ByteBuffer segment = segments[currentSegment];
+            int used = segmentUsage[currentSegment];
+            for ( int offset = 0; offset < used; )
+            {
+                long id = segment.getLong( offset );
+                int length = segment.getInt( offset + 8 );
+                if ( offHeap.get( id ) == address( currentSegment, offset ) )
+                {
+                    offHeap.remove( id );
+                    counter.evicted();
+                }
+                offset += recordSize( length );
+            }
+            segmentUsage[currentSegment] = 0;
+        }
+
+        private ByteBuffer segment( int index )
+        {
+            if ( segments[index] == null )
+            {
+                segments[index] = ByteBuffer.allocateDirect( segmentSize );
+            }
+            return segments[index];
+        }
+    }
+}
@@ -93,9 +93,9 @@ public class ReferenceCache<E extends EntityWithSizeObject> implements Cache<E>
         if ( ref != null )
         {
             E value = ref.get();
-            if ( value == null )
+            if ( value == null && cache.remove( key, ref ) )
             {
-                cache.remove( key );
+                counter.evicted();
             }
             return counter.count( value );
         }
@@ -137,6 +137,12 @@ public class ReferenceCache<E extends EntityWithSizeObject> implements Cache<E>
         return counter.getMissCount();
     }
 
+    @Override
+    public long evictionCount()
+    {
+        return counter.getEvictionCount();
+    }
+
     @Override
     public String getName()
     {
@@ -160,7 +166,10 @@ public class ReferenceCache<E extends EntityWithSizeObject> implements Cache<E>
         ReferenceWithKey<Long,E> clearedValue = refQueue.safePoll();
         while ( clearedValue != null )
         {
-            cache.remove( clearedValue.key() );
+            if ( cache.remove( clearedValue.key(), clearedValue ) )
+            {
+                counter.evicted();
+            }
             clearedValue = refQueue.safePoll();
         }
     }
@@ -90,6 +90,12 @@ public class StrongReferenceCache<E extends EntityWithSizeObject> implements Cac
         return counter.getMissCount();
     }
 
+    @Override
+    public long evictionCount()
+    {
+        return 0;
+    }
+
     @Override
     public long size()
     {
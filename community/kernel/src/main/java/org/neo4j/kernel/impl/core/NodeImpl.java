@@ -590,6 +590,26 @@ public class NodeImpl extends ArrayBasedPrimitive
         }
     }
 
+    /**
+     * Sets all relationships of this node at once, i.e. there will be no more relationships to load.
+     * Used when recreating a node which has been cached in serialized form.
+     */
+    synchronized void setAllRelationships( RelIdArray[] relationships )
+    {
+        this.relationships = relationships;
+        this.relChainPosition = RelationshipLoadingPosition.EMPTY;
+    }
+
+    /**
+     * @return all relationships of this node, or {@code null} if not all of them have been loaded yet.
+     */
+    RelIdArray[] getAllLoadedRelationships()
+    {
+        // relationships is assigned after the chain position has been initialized, so read it first
+        RelIdArray[] loaded = relationships;
+        return loaded != null && !hasMoreRelationshipsToLoad() ? loaded : null;
+    }
+
     RelIdArray getRelationshipIds( int type )
     {
         return getRelIdArray( type );
@@ -633,6 +653,14 @@ public class NodeImpl extends ArrayBasedPrimitive
         return binarySearch( labels, labelId ) >= 0;
     }
 
+    /**
+     * @return the labels of this node, or {@code null} if they haven't been loaded.
+     */
+    int[] getCachedLabels()
+    {
+        return labels;
+    }
+
     public synchronized void commitLabels( int[] labels )
     {
         this.labels = labels;
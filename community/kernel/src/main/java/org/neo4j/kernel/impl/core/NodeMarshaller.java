@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import java.nio.ByteBuffer;
+
+import org.neo4j.kernel.impl.util.RelIdArray;
+import org.neo4j.kernel.impl.util.RelIdArray.DirectionWrapper;
+import org.neo4j.kernel.impl.util.RelIdArrayWithLoops;
+
+/**
+ * Marshals the labels, properties and relationships of {@link NodeImpl nodes}. Relationships are only
+ * included if all of them have been loaded, since the position in the relationship chain can't be kept.
+ */
+public class NodeMarshaller extends PrimitiveMarshaller<NodeImpl>
+{
+    @Override
+    public void write( NodeImpl node, ByteBuffer target )
+    {
+        int[] labels = node.getCachedLabels();
+        if ( labels == null )
+        {
+            target.putInt( NOT_LOADED );
+        }
+        else
+        {
+            writeIntArray( labels, target );
+        }
+
+        writeProperties( node, target );
+
+        RelIdArray[] relationships = node.getAllLoadedRelationships();
+        if ( relationships == null )
+        {
+            target.putInt( NOT_LOADED );
+        }
+        else
+        {
+            target.putInt( relationships.length );
+            for ( RelIdArray ids : relationships )
+            {
+                target.putInt( ids.getType() );
+                writeLongArray( ids.ids( DirectionWrapper.OUTGOING ), target );
+                writeLongArray( ids.ids( DirectionWrapper.INCOMING ), target );
+                writeLongArray( ids.ids( DirectionWrapper.BOTH ), target );
+            }
+        }
+    }
+
+    @Override
+    public NodeImpl read( long id, ByteBuffer source )
+    {
+        NodeImpl node = new NodeImpl( id );
+        if ( source.getInt( source.position() ) == NOT_LOADED )
+        {
+            source.getInt();
+        }
+        else
+        {
+            node.commitLabels( readIntArray( source ) );
+        }
+
+        readProperties( node, source );
+
+        int relationshipTypes = source.getInt();
+        if ( relationshipTypes != NOT_LOADED )
+        {
+            RelIdArray[] relationships = new RelIdArray[relationshipTypes];
+            for ( int i = 0; i < relationshipTypes; i++ )
+            {
+                relationships[i] = readRelIdArray( source );
+            }
+            node.setAllRelationships( relationships );
+        }
+        return node;
+    }
+
+    private RelIdArray readRelIdArray( ByteBuffer source )
+    {
+        int type = source.getInt();
+        long[] outgoing = readLongArray( source );
+        long[] incoming = readLongArray( source );
+        long[] loops = readLongArray( source );
+        RelIdArray ids = loops.length > 0 ? new RelIdArrayWithLoops( type ) : new RelIdArray( type );
+        add( ids, outgoing, DirectionWrapper.OUTGOING );
+        add( ids, incoming, DirectionWrapper.INCOMING );
+        add( ids, loops, DirectionWrapper.BOTH );
+        ids.shrink();
+        return ids;
+    }
+
+    private void add( RelIdArray ids, long[] relationships, DirectionWrapper direction )
+    {
+        for ( long relationship : relationships )
+        {
+            ids.add( relationship, direction );
+        }
+    }
+}
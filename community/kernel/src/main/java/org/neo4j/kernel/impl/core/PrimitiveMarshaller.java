@@ -0,0 +1,375 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.neo4j.kernel.api.properties.DefinedProperty;
+import org.neo4j.kernel.api.properties.Property;
+import org.neo4j.kernel.impl.cache.EntityMarshaller;
+
+/**
+ * Base class for {@link EntityMarshaller marshalling} {@link ArrayBasedPrimitive primitives}, with support for
+ * writing and reading their cached properties.
+ */
+abstract class PrimitiveMarshaller<E extends ArrayBasedPrimitive> implements EntityMarshaller<E>
+{
+    protected static final int NOT_LOADED = -1;
+
+    private static final byte STRING = 0;
+    private static final byte LONG = 1;
+    private static final byte INT = 2;
+    private static final byte SHORT = 3;
+    private static final byte BYTE = 4;
+    private static final byte BOOLEAN = 5;
+    private static final byte CHAR = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte FLOAT = 8;
+    private static final byte STRING_ARRAY = 9;
+    private static final byte LONG_ARRAY = 10;
+    private static final byte INT_ARRAY = 11;
+    private static final byte SHORT_ARRAY = 12;
+    private static final byte BYTE_ARRAY = 13;
+    private static final byte BOOLEAN_ARRAY = 14;
+    private static final byte CHAR_ARRAY = 15;
+    private static final byte DOUBLE_ARRAY = 16;
+    private static final byte FLOAT_ARRAY = 17;
+
+    protected void writeProperties( E entity, ByteBuffer target )
+    {
+        if ( !entity.hasLoadedProperties() )
+        {
+            target.putInt( NOT_LOADED );
+            return;
+        }
+
+        // Lazy property values are loaded here, if that fails the properties are left to be loaded again later
+        List<DefinedProperty> properties = new ArrayList<>();
+        try
+        {
+            for ( Iterator<DefinedProperty> iterator = entity.getCachedProperties(); iterator.hasNext(); )
+            {
+                DefinedProperty property = iterator.next();
+                property.value();
+                properties.add( property );
+            }
+        }
+        catch ( RuntimeException e )
+        {
+            target.putInt( NOT_LOADED );
+            return;
+        }
+
+        target.putInt( properties.size() );
+        for ( DefinedProperty property : properties )
+        {
+            target.putInt( property.propertyKeyId() );
+            writeValue( property.value(), target );
+        }
+    }
+
+    protected void readProperties( E entity, ByteBuffer source )
+    {
+        int count = source.getInt();
+        if ( count == NOT_LOADED )
+        {
+            return;
+        }
+        List<DefinedProperty> properties = new ArrayList<>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            int key = source.getInt();
+            properties.add( Property.property( key, readValue( source ) ) );
+        }
+        entity.setProperties( properties.iterator() );
+    }
+
+    protected static void writeIntArray( int[] array, ByteBuffer target )
+    {
+        target.putInt( array.length );
+        for ( int value : array )
+        {
+            target.putInt( value );
+        }
+    }
+
+    protected static int[] readIntArray( ByteBuffer source )
+    {
+        int[] array = new int[source.getInt()];
+        for ( int i = 0; i < array.length; i++ )
+        {
+            array[i] = source.getInt();
+        }
+        return array;
+    }
+
+    protected static void writeLongArray( long[] array, ByteBuffer target )
+    {
+        target.putInt( array.length );
+        for ( long value : array )
+        {
+            target.putLong( value );
+        }
+    }
+
+    protected static long[] readLongArray( ByteBuffer source )
+    {
+        long[] array = new long[source.getInt()];
+        for ( int i = 0; i < array.length; i++ )
+        {
+            array[i] = source.getLong();
+        }
+        return array;
+    }
+
+    private static void writeString( String value, ByteBuffer target )
+    {
+        int length = value.length();
+        target.putInt( length );
+        if ( target.remaining() < length * 2 )
+        {
+            throw new BufferOverflowException();
+        }
+        for ( int i = 0; i < length; i++ )
+        {
+            target.putChar( value.charAt( i ) );
+        }
+    }
+
+    private static String readString( ByteBuffer source )
+    {
+        char[] chars = new char[source.getInt()];
+        for ( int i = 0; i < chars.length; i++ )
+        {
+            chars[i] = source.getChar();
+        }
+        return new String( chars );
+    }
+
+    private static void writeValue( Object value, ByteBuffer target )
+    {
+        if ( value instanceof String )
+        {
+            target.put( STRING );
+            writeString( (String) value, target );
+        }
+        else if ( value instanceof Long )
+        {
+            target.put( LONG ).putLong( (Long) value );
+        }
+        else if ( value instanceof Integer )
+        {
+            target.put( INT ).putInt( (Integer) value );
+        }
+        else if ( value instanceof Short )
+        {
+            target.put( SHORT ).putShort( (Short) value );
+        }
+        else if ( value instanceof Byte )
+        {
+            target.put( BYTE ).put( (Byte) value );
+        }
+        else if ( value instanceof Boolean )
+        {
+            target.put( BOOLEAN ).put( (byte) ((Boolean) value ? 1 : 0) );
+        }
+        else if ( value instanceof Character )
+        {
+            target.put( CHAR ).putChar( (Character) value );
+        }
+        else if ( value instanceof Double )
+        {
+            target.put( DOUBLE ).putDouble( (Double) value );
+        }
+        else if ( value instanceof Float )
+        {
+            target.put( FLOAT ).putFloat( (Float) value );
+        }
+        else if ( value instanceof String[] )
+        {
+            String[] array = (String[]) value;
+            target.put( STRING_ARRAY ).putInt( array.length );
+            for ( String item : array )
+            {
+                writeString( item, target );
+            }
+        }
+        else if ( value instanceof long[] )
+        {
+            target.put( LONG_ARRAY );
+            writeLongArray( (long[]) value, target );
+        }
+        else if ( value instanceof int[] )
+        {
+            target.put( INT_ARRAY );
+            writeIntArray( (int[]) value, target );
+        }
+        else if ( value instanceof short[] )
+        {
+            short[] array = (short[]) value;
+            target.put( SHORT_ARRAY ).putInt( array.length );
+            for ( short item : array )
+            {
+                target.putShort( item );
+            }
+        }
+        else if ( value instanceof byte[] )
+        {
+            byte[] array = (byte[]) value;
+            target.put( BYTE_ARRAY ).putInt( array.length ).put( array );
+        }
+        else if ( value instanceof boolean[] )
+        {
+            boolean[] array = (boolean[]) value;
+            target.put( BOOLEAN_ARRAY ).putInt( array.length );
+            for ( boolean item : array )
+            {
+                target.put( (byte) (item ? 1 : 0) );
+            }
+        }
+        else if ( value instanceof char[] )
+        {
+            char[] array = (char[]) value;
+            target.put( CHAR_ARRAY ).putInt( array.length );
+            for ( char item : array )
+            {
+                target.putChar( item );
+            }
+        }
+        else if ( value instanceof double[] )
+        {
+            double[] array = (double[]) value;
+            target.put( DOUBLE_ARRAY ).putInt( array.length );
+            for ( double item : array )
+            {
+                target.putDouble( item );
+            }
+        }
+        else if ( value instanceof float[] )
+        {
+            float[] array = (float[]) value;
+            target.put( FLOAT_ARRAY ).putInt( array.length );
+            for ( float item : array )
+            {
+                target.putFloat( item );
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException( "Unsupported property value " + value );
+        }
+    }
+
+    private static Object readValue( ByteBuffer source )
+    {
+        byte type = source.get();
+        switch ( type )
+        {
+        case STRING:
+            return readString( source );
+        case LONG:
+            return source.getLong();
+        case INT:
+            return source.getInt();
+        case SHORT:
+            return source.getShort();
+        case BYTE:
+            return source.get();
+        case BOOLEAN:
+            return source.get() != 0;
+        case CHAR:
+            return source.getChar();
+        case DOUBLE:
+            return source.getDouble();
+        case FLOAT:
+            return source.getFloat();
+        case STRING_ARRAY:
+        {
+            String[] array = new String[source.getInt()];
+            for ( int i = 0; i < array.length; i++ )
+            {
+                array[i] = readString( source );
+            }
+            return array;
+        }
+        case LONG_ARRAY:
+            return readLongArray( source );
+        case INT_ARRAY:
+            return readIntArray( source );
+        case SHORT_ARRAY:
+        {
+            short[] array = new short[source.getInt()];
+            for ( int i = 0; i < array.length; i++ )
+            {
+                array[i] = source.getShort();
+            }
+            return array;
+        }
+        case BYTE_ARRAY:
+        {
+            byte[] array = new byte[source.getInt()];
+            source.get( array );
+            return array;
+        }
+        case BOOLEAN_ARRAY:
+        {
+            boolean[] array = new boolean[source.getInt()];
+            for ( int i = 0; i < array.length; i++ )
+            {
+                array[i] = source.get() != 0;
+            }
+            return array;
+        }
+        case CHAR_ARRAY:
+        {
+            char[] array = new char[source.getInt()];
+            for ( int i = 0; i < array.length; i++ )
+            {
+                array[i] = source.getChar();
+            }
+            return array;
+        }
+        case DOUBLE_ARRAY:
+        {
+            double[] array = new double[source.getInt()];
+            for ( int i = 0; i < array.length; i++ )
+            {
+                array[i] = source.getDouble();
+            }
+            return array;
+        }
+        case FLOAT_ARRAY:
+        {
+            float[] array = new float[source.getInt()];
+            for ( int i = 0; i < array.length; i++ )
+            {
+                array[i] = source.getFloat();
+            }
+            return array;
+        }
+        default:
+            throw new IllegalStateException( "Unknown property value type " + type );
+        }
+    }
+}
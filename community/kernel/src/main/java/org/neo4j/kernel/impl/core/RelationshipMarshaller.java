@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Marshals the start and end nodes, type and properties of {@link RelationshipImpl relationships}.
+ */
+public class RelationshipMarshaller extends PrimitiveMarshaller<RelationshipImpl>
+{
+    @Override
+    public void write( RelationshipImpl relationship, ByteBuffer target )
+    {
+        target.putLong( relationship.getStartNodeId() );
+        target.putLong( relationship.getEndNodeId() );
+        target.putInt( relationship.getTypeId() );
+        writeProperties( relationship, target );
+    }
+
+    @Override
+    public RelationshipImpl read( long id, ByteBuffer source )
+    {
+        long startNode = source.getLong();
+        long endNode = source.getLong();
+        int type = source.getInt();
+        RelationshipImpl relationship = new RelationshipImpl( id, startNode, endNode, type, false );
+        readProperties( relationship, source );
+        return relationship;
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.locking.striped;
+
+import java.util.Arrays;
+
+import org.neo4j.collection.primitive.PrimitiveIntIterator;
+import org.neo4j.kernel.impl.util.collection.SimpleBitSet;
+
+/**
+ * The lock on a single resource. All fields are guarded by the monitor of the {@link LockTable} stripe the entry
+ * lives in, which is also what {@link #stripe} points to.
+ *
+ * An exclusive owner is set as soon as a client asks for the exclusive lock, even while other clients still hold the
+ * lock shared. That stops new shared holders from coming in, and the exclusive lock is granted once the owner is the
+ * only remaining shared holder, if it holds it shared at all.
+ */
+class LockEntry
+{
+    static final int NO_CLIENT = -1;
+
+    final Object stripe;
+    final long resourceId;
+
+    int exclusiveOwner = NO_CLIENT;
+    private final SimpleBitSet sharedHolders = new SimpleBitSet( 64 );
+    private int sharedCount;
+
+    LockEntry( Object stripe, long resourceId )
+    {
+        this.stripe = stripe;
+        this.resourceId = resourceId;
+    }
+
+    boolean isSharedBy( int client )
+    {
+        return sharedHolders.contains( client );
+    }
+
+    void addSharedHolder( int client )
+    {
+        if ( !sharedHolders.contains( client ) )
+        {
+            sharedHolders.put( client );
+            sharedCount++;
+        }
+    }
+
+    void removeSharedHolder( int client )
+    {
+        if ( sharedHolders.contains( client ) )
+        {
+            sharedHolders.remove( client );
+            sharedCount--;
+        }
+    }
+
+    /** Whether the given client would get the exclusive lock, were it the exclusive owner. */
+    boolean onlySharedBy( int client )
+    {
+        return sharedCount == 0 || (sharedCount == 1 && sharedHolders.contains( client ));
+    }
+
+    boolean isFree()
+    {
+        return exclusiveOwner == NO_CLIENT && sharedCount == 0;
+    }
+
+    /**
+     * The clients the given client waits for when it waits for this lock, as a snapshot. A client waiting for the
+     * shared lock only waits for the exclusive owner, a client waiting for the exclusive lock waits for every holder.
+     */
+    int[] blockersOf( int client, boolean exclusive )
+    {
+        synchronized ( stripe )
+        {
+            int[] blockers = new int[sharedCount + 1];
+            int count = 0;
+            if ( exclusiveOwner != NO_CLIENT && exclusiveOwner != client )
+            {
+                blockers[count++] = exclusiveOwner;
+            }
+            if ( exclusive )
+            {
+                for ( int holder : sharedHolderArray() )
+                {
+                    if ( holder != client && holder != exclusiveOwner )
+                    {
+                        blockers[count++] = holder;
+                    }
+                }
+            }
+            return Arrays.copyOf( blockers, count );
+        }
+    }
+
+    String describe()
+    {
+        synchronized ( stripe )
+        {
+            StringBuilder description = new StringBuilder();
+            if ( exclusiveOwner != NO_CLIENT )
+            {
+                description.append( "ExclusiveLock[owner=" ).append( exclusiveOwner ).append( "]" );
+            }
+            if ( sharedCount > 0 )
+            {
+                description.append( "SharedLock[holders=" )
+                           .append( Arrays.toString( sharedHolderArray() ) ).append( "]" );
+            }
+            return description.toString();
+        }
+    }
+
+    private int[] sharedHolderArray()
+    {
+        int[] holders = new int[sharedCount];
+        int i = 0;
+        for ( PrimitiveIntIterator iterator = sharedHolders.iterator();
+              iterator.hasNext() && i < holders.length; )
+        {
+            holders[i++] = iterator.next();
+        }
+        return holders;
+    }
+}
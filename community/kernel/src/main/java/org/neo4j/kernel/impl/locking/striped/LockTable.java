@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.locking.striped;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongObjectMap;
+import org.neo4j.collection.primitive.PrimitiveLongObjectVisitor;
+import org.neo4j.kernel.impl.locking.Locks;
+
+import static org.neo4j.kernel.impl.locking.striped.LockEntry.NO_CLIENT;
+
+/**
+ * The locks of one resource type, spread over a fixed number of stripes by resource id. Every stripe is a primitive
+ * map from resource id to {@link LockEntry}, guarded by its own monitor, and entries only exist while the resource is
+ * locked or asked for exclusively.
+ *
+ * The acquire methods return null when the lock was granted, and otherwise the entry that has to change before it can
+ * be, for the caller to wait on.
+ */
+class LockTable
+{
+    private final PrimitiveLongObjectMap<LockEntry>[] stripes;
+    private final int mask;
+
+    @SuppressWarnings( "unchecked" )
+    LockTable( int numberOfStripes )
+    {
+        int size = Integer.highestOneBit( Math.max( numberOfStripes - 1, 1 ) ) << 1;
+        this.stripes = new PrimitiveLongObjectMap[size];
+        this.mask = size - 1;
+        for ( int i = 0; i < size; i++ )
+        {
+            stripes[i] = Primitive.longObjectMap( 16 );
+        }
+    }
+
+    LockEntry acquireShared( long resourceId, int client )
+    {
+        PrimitiveLongObjectMap<LockEntry> stripe = stripe( resourceId );
+        synchronized ( stripe )
+        {
+            LockEntry entry = entry( stripe, resourceId );
+            if ( entry.exclusiveOwner == NO_CLIENT || entry.exclusiveOwner == client )
+            {
+                entry.addSharedHolder( client );
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    boolean tryShared( long resourceId, int client )
+    {
+        return acquireShared( resourceId, client ) == null;
+    }
+
+    LockEntry acquireExclusive( long resourceId, int client )
+    {
+        PrimitiveLongObjectMap<LockEntry> stripe = stripe( resourceId );
+        synchronized ( stripe )
+        {
+            LockEntry entry = entry( stripe, resourceId );
+            if ( entry.exclusiveOwner == NO_CLIENT )
+            {
+                entry.exclusiveOwner = client;
+            }
+            return entry.exclusiveOwner == client && entry.onlySharedBy( client ) ? null : entry;
+        }
+    }
+
+    boolean tryExclusive( long resourceId, int client )
+    {
+        PrimitiveLongObjectMap<LockEntry> stripe = stripe( resourceId );
+        synchronized ( stripe )
+        {
+            LockEntry entry = entry( stripe, resourceId );
+            if ( entry.exclusiveOwner == NO_CLIENT && entry.onlySharedBy( client ) )
+            {
+                entry.exclusiveOwner = client;
+                return true;
+            }
+            removeIfFree( stripe, entry );
+            return false;
+        }
+    }
+
+    void releaseShared( long resourceId, int client )
+    {
+        PrimitiveLongObjectMap<LockEntry> stripe = stripe( resourceId );
+        synchronized ( stripe )
+        {
+            LockEntry entry = stripe.get( resourceId );
+            if ( entry != null )
+            {
+                entry.removeSharedHolder( client );
+                removeIfFree( stripe, entry );
+            }
+        }
+    }
+
+    /** Releases an exclusive lock, or gives up on an exclusive lock that was asked for but never granted. */
+    void releaseExclusive( long resourceId, int client )
+    {
+        PrimitiveLongObjectMap<LockEntry> stripe = stripe( resourceId );
+        synchronized ( stripe )
+        {
+            LockEntry entry = stripe.get( resourceId );
+            if ( entry != null && entry.exclusiveOwner == client )
+            {
+                entry.exclusiveOwner = NO_CLIENT;
+                removeIfFree( stripe, entry );
+            }
+        }
+    }
+
+    void accept( final Locks.ResourceType resourceType, final Locks.Visitor visitor )
+    {
+        for ( PrimitiveLongObjectMap<LockEntry> stripe : stripes )
+        {
+            synchronized ( stripe )
+            {
+                stripe.visitEntries( new PrimitiveLongObjectVisitor<LockEntry>()
+                {
+                    @Override
+                    public void visited( long resourceId, LockEntry entry )
+                    {
+                        visitor.visit( resourceType, resourceId, entry.describe(), 0 );
+                    }
+                } );
+            }
+        }
+    }
+
+    private PrimitiveLongObjectMap<LockEntry> stripe( long resourceId )
+    {
+        // Spread the bits, since resource ids that are close tend to be locked together
+        long hash = resourceId * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (hash >>> 32) & mask];
+    }
+
+    private static LockEntry entry( PrimitiveLongObjectMap<LockEntry> stripe, long resourceId )
+    {
+        LockEntry entry = stripe.get( resourceId );
+        if ( entry == null )
+        {
+            entry = new LockEntry( stripe, resourceId );
+            stripe.put( resourceId, entry );
+        }
+        return entry;
+    }
+
+    private static void removeIfFree( PrimitiveLongObjectMap<LockEntry> stripe, LockEntry entry )
+    {
+        if ( entry.isFree() )
+        {
+            stripe.remove( entry.resourceId );
+        }
+    }
+}
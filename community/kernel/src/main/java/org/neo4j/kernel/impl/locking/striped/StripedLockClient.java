@@ -0,0 +1,306 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.locking.striped;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongIntMap;
+import org.neo4j.collection.primitive.PrimitiveLongVisitor;
+import org.neo4j.kernel.impl.locking.AcquireLockTimeoutException;
+import org.neo4j.kernel.impl.locking.Locks;
+
+public class StripedLockClient implements Locks.Client
+{
+    private static final int NOT_HELD = -1;
+
+    private final int id;
+    private final StripedLockManager manager;
+
+    /** resourceType -> ( resourceId -> number of times this client acquired the lock ), created on first use. */
+    private final PrimitiveLongIntMap[] sharedLockCounts;
+    private final PrimitiveLongIntMap[] exclusiveLockCounts;
+
+    /** The lock this client is blocked on, if any, read by other clients looking for deadlocks. */
+    volatile LockEntry waitingFor;
+    volatile boolean waitingForExclusive;
+
+    StripedLockClient( int id, StripedLockManager manager, int numberOfResourceTypes )
+    {
+        this.id = id;
+        this.manager = manager;
+        this.sharedLockCounts = new PrimitiveLongIntMap[numberOfResourceTypes];
+        this.exclusiveLockCounts = new PrimitiveLongIntMap[numberOfResourceTypes];
+    }
+
+    @Override
+    public void acquireShared( Locks.ResourceType resourceType, long... resourceIds ) throws AcquireLockTimeoutException
+    {
+        PrimitiveLongIntMap heldLocks = lockCounts( sharedLockCounts, resourceType );
+        LockTable table = manager.table( resourceType );
+        for ( long resourceId : resourceIds )
+        {
+            if ( reacquire( heldLocks, resourceId ) )
+            {
+                continue;
+            }
+
+            LockEntry blocker = table.acquireShared( resourceId, id );
+            if ( blocker != null )
+            {
+                int tries = 0;
+                try
+                {
+                    do
+                    {
+                        waitFor( resourceType, resourceId, blocker, false, tries++ );
+                    }
+                    while ( (blocker = table.acquireShared( resourceId, id )) != null );
+                }
+                finally
+                {
+                    waitingFor = null;
+                }
+            }
+            heldLocks.put( resourceId, 1 );
+        }
+    }
+
+    @Override
+    public void acquireExclusive( Locks.ResourceType resourceType, long... resourceIds ) throws AcquireLockTimeoutException
+    {
+        PrimitiveLongIntMap heldLocks = lockCounts( exclusiveLockCounts, resourceType );
+        LockTable table = manager.table( resourceType );
+        for ( long resourceId : resourceIds )
+        {
+            if ( reacquire( heldLocks, resourceId ) )
+            {
+                continue;
+            }
+
+            LockEntry blocker = table.acquireExclusive( resourceId, id );
+            if ( blocker != null )
+            {
+                int tries = 0;
+                boolean acquired = false;
+                try
+                {
+                    do
+                    {
+                        waitFor( resourceType, resourceId, blocker, true, tries++ );
+                    }
+                    while ( (blocker = table.acquireExclusive( resourceId, id )) != null );
+                    acquired = true;
+                }
+                finally
+                {
+                    waitingFor = null;
+                    if ( !acquired )
+                    {
+                        // We may have been the one asking for the exclusive lock, keeping other clients out
+                        table.releaseExclusive( resourceId, id );
+                    }
+                }
+            }
+            heldLocks.put( resourceId, 1 );
+        }
+    }
+
+    @Override
+    public boolean tryExclusiveLock( Locks.ResourceType resourceType, long... resourceIds )
+    {
+        PrimitiveLongIntMap heldLocks = lockCounts( exclusiveLockCounts, resourceType );
+        LockTable table = manager.table( resourceType );
+        for ( long resourceId : resourceIds )
+        {
+            if ( reacquire( heldLocks, resourceId ) )
+            {
+                continue;
+            }
+            if ( !table.tryExclusive( resourceId, id ) )
+            {
+                return false;
+            }
+            heldLocks.put( resourceId, 1 );
+        }
+        return true;
+    }
+
+    @Override
+    public boolean trySharedLock( Locks.ResourceType resourceType, long... resourceIds )
+    {
+        PrimitiveLongIntMap heldLocks = lockCounts( sharedLockCounts, resourceType );
+        LockTable table = manager.table( resourceType );
+        for ( long resourceId : resourceIds )
+        {
+            if ( reacquire( heldLocks, resourceId ) )
+            {
+                continue;
+            }
+            if ( !table.tryShared( resourceId, id ) )
+            {
+                return false;
+            }
+            heldLocks.put( resourceId, 1 );
+        }
+        return true;
+    }
+
+    @Override
+    public void releaseShared( Locks.ResourceType resourceType, long... resourceIds )
+    {
+        PrimitiveLongIntMap heldLocks = lockCounts( sharedLockCounts, resourceType );
+        LockTable table = manager.table( resourceType );
+        for ( long resourceId : resourceIds )
+        {
+            if ( releaseLocally( heldLocks, resourceType, resourceId ) )
+            {
+                table.releaseShared( resourceId, id );
+            }
+        }
+    }
+
+    @Override
+    public void releaseExclusive( Locks.ResourceType resourceType, long... resourceIds )
+    {
+        PrimitiveLongIntMap heldLocks = lockCounts( exclusiveLockCounts, resourceType );
+        LockTable table = manager.table( resourceType );
+        for ( long resourceId : resourceIds )
+        {
+            // Any shared lock we hold on the resource is kept, which downgrades the lock
+            if ( releaseLocally( heldLocks, resourceType, resourceId ) )
+            {
+                table.releaseExclusive( resourceId, id );
+            }
+        }
+    }
+
+    @Override
+    public void releaseAllShared()
+    {
+        releaseAll( sharedLockCounts, false );
+    }
+
+    @Override
+    public void releaseAllExclusive()
+    {
+        releaseAll( exclusiveLockCounts, true );
+    }
+
+    @Override
+    public void releaseAll()
+    {
+        releaseAllExclusive();
+        releaseAllShared();
+    }
+
+    @Override
+    public void close()
+    {
+        releaseAll();
+        manager.closed( this );
+    }
+
+    int id()
+    {
+        return id;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "StripedLockClient[%d]", id );
+    }
+
+    private void waitFor( Locks.ResourceType resourceType, long resourceId, LockEntry blocker, boolean exclusive,
+                          int tries ) throws AcquireLockTimeoutException
+    {
+        waitingForExclusive = exclusive;
+        waitingFor = blocker;
+        manager.assertNoDeadlock( this, blocker, exclusive, resourceType, resourceId );
+        manager.waitStrategy( resourceType ).apply( tries );
+    }
+
+    private void releaseAll( PrimitiveLongIntMap[] lockCounts, final boolean exclusive )
+    {
+        for ( int typeId = 0; typeId < lockCounts.length; typeId++ )
+        {
+            PrimitiveLongIntMap heldLocks = lockCounts[typeId];
+            if ( heldLocks == null || heldLocks.isEmpty() )
+            {
+                continue;
+            }
+            final LockTable table = manager.table( typeId );
+            heldLocks.visitKeys( new PrimitiveLongVisitor()
+            {
+                @Override
+                public void visited( long resourceId )
+                {
+                    if ( exclusive )
+                    {
+                        table.releaseExclusive( resourceId, id );
+                    }
+                    else
+                    {
+                        table.releaseShared( resourceId, id );
+                    }
+                }
+            } );
+            heldLocks.clear();
+        }
+    }
+
+    private static boolean reacquire( PrimitiveLongIntMap heldLocks, long resourceId )
+    {
+        int count = heldLocks.get( resourceId );
+        if ( count == NOT_HELD )
+        {
+            return false;
+        }
+        heldLocks.put( resourceId, count + 1 );
+        return true;
+    }
+
+    /** Returns true if this was the last reference this client held to the lock. */
+    private boolean releaseLocally( PrimitiveLongIntMap heldLocks, Locks.ResourceType resourceType, long resourceId )
+    {
+        int count = heldLocks.get( resourceId );
+        if ( count == NOT_HELD )
+        {
+            throw new IllegalStateException( this + " cannot release lock that it does not hold: " +
+                    resourceType + "[" + resourceId + "]." );
+        }
+        if ( count > 1 )
+        {
+            heldLocks.put( resourceId, count - 1 );
+            return false;
+        }
+        heldLocks.remove( resourceId );
+        return true;
+    }
+
+    private static PrimitiveLongIntMap lockCounts( PrimitiveLongIntMap[] lockCounts, Locks.ResourceType resourceType )
+    {
+        PrimitiveLongIntMap counts = lockCounts[resourceType.typeId()];
+        if ( counts == null )
+        {
+            counts = lockCounts[resourceType.typeId()] = Primitive.longIntMap( 16 );
+        }
+        return counts;
+    }
+}
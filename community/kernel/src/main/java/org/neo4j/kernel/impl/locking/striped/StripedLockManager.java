@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.locking.striped;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.neo4j.kernel.DeadlockDetectedException;
+import org.neo4j.kernel.impl.locking.AcquireLockTimeoutException;
+import org.neo4j.kernel.impl.locking.Locks;
+import org.neo4j.kernel.impl.util.collection.SimpleBitSet;
+import org.neo4j.kernel.impl.util.concurrent.WaitStrategy;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+
+/**
+ * A lock manager without any global monitor. Locks are kept in one {@link LockTable} per resource type, each split
+ * into stripes keyed by primitive resource id, so clients only ever synchronize on the stripe of the resource they
+ * lock. Taking or releasing a lock nobody else is touching is a single uncontended monitor enter on its stripe, which
+ * the JVM does with one CAS, and locks a client already holds are counted in primitive maps in the client itself
+ * without touching the tables at all.
+ *
+ * A client that cannot get a lock waits according to the {@link WaitStrategy} of the resource type, and only then
+ * looks for deadlocks: it follows the clients holding the lock, the locks those clients are waiting for and the
+ * holders of those, and fails with a {@link DeadlockDetectedException} if that leads back to itself.
+ */
+public class StripedLockManager extends LifecycleAdapter implements Locks
+{
+    static final int DEFAULT_STRIPES = 128;
+
+    /** resourceType -> lock table */
+    private final LockTable[] tables;
+
+    /** resourceType -> wait strategy */
+    private final WaitStrategy<AcquireLockTimeoutException>[] waitStrategies;
+
+    /** Reverse lookup resource types by id, used for introspection */
+    private final ResourceType[] resourceTypes;
+
+    /** Open clients by id, for following who waits for whom. Ids are re-used, to keep this small. */
+    private volatile AtomicReferenceArray<StripedLockClient> clients = new AtomicReferenceArray<>( 64 );
+    private int[] freeIds = new int[16];
+    private int freeIdCount;
+    private int nextId;
+
+    public StripedLockManager( ResourceType... resourceTypes )
+    {
+        this( DEFAULT_STRIPES, resourceTypes );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    public StripedLockManager( int stripesPerResourceType, ResourceType... resourceTypes )
+    {
+        int size = 0;
+        for ( ResourceType type : resourceTypes )
+        {
+            size = Math.max( size, type.typeId() + 1 );
+        }
+        this.tables = new LockTable[size];
+        this.waitStrategies = new WaitStrategy[size];
+        this.resourceTypes = new ResourceType[size];
+        for ( ResourceType type : resourceTypes )
+        {
+            tables[type.typeId()] = new LockTable( stripesPerResourceType );
+            waitStrategies[type.typeId()] = type.waitStrategy();
+            this.resourceTypes[type.typeId()] = type;
+        }
+    }
+
+    @Override
+    public synchronized Client newClient()
+    {
+        int id = freeIdCount > 0 ? freeIds[--freeIdCount] : nextId++;
+        if ( id >= clients.length() )
+        {
+            AtomicReferenceArray<StripedLockClient> grown = new AtomicReferenceArray<>( clients.length() * 2 );
+            for ( int i = 0; i < clients.length(); i++ )
+            {
+                grown.set( i, clients.get( i ) );
+            }
+            clients = grown;
+        }
+        StripedLockClient client = new StripedLockClient( id, this, tables.length );
+        clients.set( id, client );
+        return client;
+    }
+
+    @Override
+    public void accept( Visitor visitor )
+    {
+        for ( int typeId = 0; typeId < tables.length; typeId++ )
+        {
+            if ( tables[typeId] != null )
+            {
+                tables[typeId].accept( resourceTypes[typeId], visitor );
+            }
+        }
+    }
+
+    synchronized void closed( StripedLockClient client )
+    {
+        if ( clients.get( client.id() ) != client )
+        {
+            return;
+        }
+        clients.set( client.id(), null );
+        if ( freeIdCount == freeIds.length )
+        {
+            freeIds = Arrays.copyOf( freeIds, freeIds.length * 2 );
+        }
+        freeIds[freeIdCount++] = client.id();
+    }
+
+    LockTable table( ResourceType resourceType )
+    {
+        return tables[resourceType.typeId()];
+    }
+
+    LockTable table( int typeId )
+    {
+        return tables[typeId];
+    }
+
+    WaitStrategy<AcquireLockTimeoutException> waitStrategy( ResourceType resourceType )
+    {
+        return waitStrategies[resourceType.typeId()];
+    }
+
+    /**
+     * Walks the wait-for graph from the lock the given client is blocked on. The graph is read without stopping
+     * anyone, which is fine since clients in a deadlock cannot move on and so are always seen as they are.
+     */
+    void assertNoDeadlock( StripedLockClient waiter, LockEntry blocker, boolean exclusive,
+                           ResourceType resourceType, long resourceId )
+    {
+        AtomicReferenceArray<StripedLockClient> clients = this.clients;
+        SimpleBitSet seen = new SimpleBitSet( clients.length() );
+        int[] toVisit = blocker.blockersOf( waiter.id(), exclusive );
+        int toVisitCount = toVisit.length;
+        while ( toVisitCount > 0 )
+        {
+            int clientId = toVisit[--toVisitCount];
+            if ( seen.contains( clientId ) )
+            {
+                continue;
+            }
+            seen.put( clientId );
+
+            StripedLockClient client = clientId < clients.length() ? clients.get( clientId ) : null;
+            LockEntry waitingFor = client == null ? null : client.waitingFor;
+            if ( waitingFor == null )
+            {
+                continue;
+            }
+            for ( int holder : waitingFor.blockersOf( clientId, client.waitingForExclusive ) )
+            {
+                if ( holder == waiter.id() )
+                {
+                    throw new DeadlockDetectedException( waiter + " can't acquire " +
+                            (exclusive ? "exclusive" : "shared") + " lock on " + resourceType + "(" + resourceId +
+                            "), because holders of that lock are waiting for " + waiter + ".\n " + client +
+                            " waits for " + waitingFor.describe() );
+                }
+                if ( toVisitCount == toVisit.length )
+                {
+                    toVisit = Arrays.copyOf( toVisit, toVisit.length * 2 + 1 );
+                }
+                toVisit[toVisitCount++] = holder;
+            }
+        }
+    }
+}
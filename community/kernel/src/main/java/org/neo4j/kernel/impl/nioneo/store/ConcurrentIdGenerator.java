@@ -0,0 +1,620 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import static org.neo4j.kernel.impl.nioneo.store.IdGeneratorImpl.CLEAN_GENERATOR;
+import static org.neo4j.kernel.impl.nioneo.store.IdGeneratorImpl.HEADER_SIZE;
+import static org.neo4j.kernel.impl.nioneo.store.IdGeneratorImpl.INTEGER_MINUS_ONE;
+import static org.neo4j.kernel.impl.nioneo.store.IdGeneratorImpl.STICKY_GENERATOR;
+
+/**
+ * An {@link IdGenerator} for concurrent use, reading and writing the same id file format as
+ * {@link IdGeneratorImpl}.
+ * <p>
+ * New ids are handed out from small per thread id ranges, carved from the high id with a single
+ * compare-and-set, so that threads allocating ids never contend on a lock. Freed ids are kept in concurrent
+ * queues holding at most about {@code grabSize} ids each, the rest live in the id file. Reading and writing
+ * batches of freed ids from and to the id file is the only part done under a lock.
+ * <p>
+ * Ids left in the ranges of each thread are freed when the generator is closed, so they will be reused in
+ * the next session. Until then they will make {@link #getHighId()} somewhat higher than the highest id
+ * actually handed out.
+ * <p>
+ * {@link #close()} leaves writing the freed ids and the header, and forcing the id file, to a separate
+ * thread. The file stays marked as sticky until that has completed, so a generator which didn't get to
+ * finish is rebuilt like one that wasn't closed at all. Opening a new generator for the same file, or
+ * deleting it, waits for a pending flush to complete first.
+ */
+public class ConcurrentIdGenerator implements IdGenerator
+{
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    private static final ConcurrentMap<File, Thread> pendingFlushes = new ConcurrentHashMap<>();
+
+    private final FileSystemAbstraction fs;
+    private final File fileName;
+    private final int grabSize;
+    private final int batchSize;
+    private final long max;
+    private final boolean aggressiveReuse;
+
+    private final AtomicLong highId = new AtomicLong( -1 );
+    private final AtomicLong defraggedIdCount = new AtomicLong();
+    // bumped by setHighId, making ranges handed out before that stale
+    private final AtomicInteger generation = new AtomicInteger();
+    private final ThreadLocal<IdBatch> batches = new ThreadLocal<>();
+    private final Set<IdBatch> activeBatches = Collections.newSetFromMap( new ConcurrentHashMap<IdBatch,Boolean>() );
+
+    // ids which can be handed out again right away
+    private final ConcurrentLinkedQueue<Long> freeIds = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger freeIdCount = new AtomicInteger();
+    // ids freed in this session not yet written to the id file
+    private final ConcurrentLinkedQueue<Long> releasedIds = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger releasedIdCount = new AtomicInteger();
+
+    private final Object fileLock = new Object();
+    // guarded by fileLock
+    private StoreChannel fileChannel;
+    private long readPosition;
+    private long maxReadPosition = HEADER_SIZE;
+    private volatile boolean moreIdsInFile;
+    private volatile boolean closed;
+    private Thread flusher;
+
+    /**
+     * Opens the id generator for {@code fileName}, see
+     * {@link IdGeneratorImpl#IdGeneratorImpl(FileSystemAbstraction, File, int, long, boolean, long)} for the
+     * meaning of the parameters. {@code batchSize} is the number of new ids each thread grabs at a time.
+     */
+    public ConcurrentIdGenerator( FileSystemAbstraction fs, File fileName, int grabSize, int batchSize, long max,
+            boolean aggressiveReuse, long highId )
+    {
+        if ( grabSize < 1 )
+        {
+            throw new IllegalArgumentException( "Illegal grabSize: " + grabSize );
+        }
+        if ( batchSize < 1 )
+        {
+            throw new IllegalArgumentException( "Illegal batchSize: " + batchSize );
+        }
+        this.fs = fs;
+        this.fileName = fileName;
+        this.grabSize = grabSize;
+        this.batchSize = batchSize;
+        this.max = max;
+        this.aggressiveReuse = aggressiveReuse;
+        awaitPendingFlush( fileName );
+        initGenerator();
+        this.highId.set( max( this.highId.get(), highId ) );
+    }
+
+    @Override
+    public long nextId()
+    {
+        assertStillOpen();
+        long id = nextIdFromDefragList();
+        if ( id != -1 )
+        {
+            return id;
+        }
+
+        IdBatch batch = batches.get();
+        while ( batch == null || batch.generation != generation.get() || (id = batch.next()) == -1 )
+        {
+            batch = newBatch( batch );
+        }
+        return id;
+    }
+
+    private IdBatch newBatch( IdBatch previous )
+    {
+        if ( previous != null )
+        {
+            activeBatches.remove( previous );
+        }
+        int batchGeneration = generation.get();
+        long start;
+        long end;
+        do
+        {
+            start = highId.get();
+            assertIdWithinCapacity( start );
+            end = min( start + batchSize, max + 1 );
+        }
+        while ( !highId.compareAndSet( start, end ) );
+
+        IdBatch batch = new IdBatch( batchGeneration, start, end );
+        batches.set( batch );
+        activeBatches.add( batch );
+        return batch;
+    }
+
+    private long nextIdFromDefragList()
+    {
+        Long id = freeIds.poll();
+        if ( id == null && moreIdsInFile )
+        {
+            synchronized ( fileLock )
+            {
+                if ( freeIds.isEmpty() )
+                {
+                    readIdBatch();
+                }
+            }
+            id = freeIds.poll();
+        }
+        if ( id == null )
+        {
+            return -1;
+        }
+        freeIdCount.decrementAndGet();
+        defraggedIdCount.decrementAndGet();
+        return id;
+    }
+
+    @Override
+    public IdRange nextIdBatch( int size )
+    {
+        assertStillOpen();
+
+        int count = 0;
+        long[] defragIds = new long[size];
+        while ( count < size )
+        {
+            long id = nextIdFromDefragList();
+            if ( id == -1 )
+            {
+                break;
+            }
+            defragIds[count++] = id;
+        }
+        long[] tmpArray = defragIds;
+        defragIds = new long[count];
+        System.arraycopy( tmpArray, 0, defragIds, 0, count );
+
+        int sizeLeftForRange = size - count;
+        long start = highId.getAndAdd( sizeLeftForRange );
+        assertIdWithinCapacity( start + sizeLeftForRange );
+        return new IdRange( defragIds, start, sizeLeftForRange );
+    }
+
+    @Override
+    public void setHighId( long id )
+    {
+        assertIdWithinCapacity( id );
+        highId.set( id );
+        generation.incrementAndGet();
+    }
+
+    @Override
+    public long getHighId()
+    {
+        return highId.get();
+    }
+
+    @Override
+    public void freeId( long id )
+    {
+        if ( id == INTEGER_MINUS_ONE )
+        {
+            return;
+        }
+        if ( closed )
+        {
+            throw new IllegalStateException( "Generator closed " + fileName );
+        }
+        if ( id < 0 || id >= highId.get() )
+        {
+            throw new IllegalArgumentException( "Illegal id[" + id + "]" );
+        }
+
+        defraggedIdCount.incrementAndGet();
+        if ( aggressiveReuse && freeIdCount.get() < grabSize )
+        {
+            freeIdCount.incrementAndGet();
+            freeIds.offer( id );
+            return;
+        }
+        releasedIds.offer( id );
+        if ( releasedIdCount.incrementAndGet() >= grabSize )
+        {
+            synchronized ( fileLock )
+            {
+                if ( !closed )
+                {
+                    writeIdBatch( ByteBuffer.allocate( grabSize * 8 ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks this generator as closed and flushes freed ids, including those left in the id ranges of each
+     * thread, and the high id to the id file in a separate thread.
+     */
+    @Override
+    public void close()
+    {
+        synchronized ( fileLock )
+        {
+            if ( closed )
+            {
+                return;
+            }
+            closed = true;
+
+            int currentGeneration = generation.get();
+            for ( IdBatch batch : activeBatches )
+            {
+                if ( batch.generation == currentGeneration )
+                {
+                    batch.releaseRemainingTo( this );
+                }
+            }
+            activeBatches.clear();
+            Long id;
+            while ( (id = freeIds.poll()) != null )
+            {
+                releasedIds.offer( id );
+            }
+
+            final long highIdToWrite = highId.get();
+            flusher = new Thread( "IdGenerator flush " + fileName.getName() )
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        flush( highIdToWrite );
+                    }
+                    finally
+                    {
+                        pendingFlushes.remove( fileName.getAbsoluteFile(), this );
+                    }
+                }
+            };
+            pendingFlushes.put( fileName.getAbsoluteFile(), flusher );
+            flusher.start();
+        }
+    }
+
+    private void flush( long highIdToWrite )
+    {
+        synchronized ( fileLock )
+        {
+            ByteBuffer writeBuffer = ByteBuffer.allocate( grabSize * 8 );
+            writeIdBatch( writeBuffer );
+            try
+            {
+                ByteBuffer buffer = ByteBuffer.allocate( HEADER_SIZE );
+                fileChannel.position( 0 );
+                buffer.put( STICKY_GENERATOR ).putLong( highIdToWrite ).flip();
+                fileChannel.write( buffer );
+                defragReusableIdsInFile( writeBuffer );
+                fileChannel.force( false );
+
+                buffer.clear();
+                buffer.put( CLEAN_GENERATOR ).limit( 1 ).flip();
+                fileChannel.position( 0 );
+                fileChannel.write( buffer );
+                fileChannel.force( false );
+                fileChannel.close();
+                fileChannel = null;
+            }
+            catch ( IOException e )
+            {
+                throw new UnderlyingStorageException( "Unable to close id generator " + fileName, e );
+            }
+        }
+    }
+
+    /**
+     * Waits for the flush started by {@link #close()}, if any, to complete.
+     */
+    public void awaitClosed()
+    {
+        Thread thread;
+        synchronized ( fileLock )
+        {
+            thread = flusher;
+        }
+        if ( thread != null )
+        {
+            join( thread );
+        }
+    }
+
+    private static void awaitPendingFlush( File fileName )
+    {
+        Thread thread = pendingFlushes.get( fileName.getAbsoluteFile() );
+        if ( thread != null )
+        {
+            join( thread );
+        }
+    }
+
+    private static void join( Thread thread )
+    {
+        try
+        {
+            thread.join();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new UnderlyingStorageException( "Interrupted waiting for id generator flush", e );
+        }
+    }
+
+    // ids freed while closing, these must all end up in the id file
+    private void releaseOnClose( long id )
+    {
+        releasedIds.offer( id );
+        defraggedIdCount.incrementAndGet();
+    }
+
+    private void assertIdWithinCapacity( long id )
+    {
+        if ( id > max || id < 0 )
+        {
+            throw new UnderlyingStorageException( "Id capacity exceeded" );
+        }
+    }
+
+    private void assertStillOpen()
+    {
+        if ( closed )
+        {
+            throw new IllegalStateException( "Closed id generator " + fileName );
+        }
+    }
+
+    private void initGenerator()
+    {
+        synchronized ( fileLock )
+        {
+            try
+            {
+                fileChannel = fs.open( fileName, "rw" );
+                ByteBuffer buffer = ByteBuffer.allocate( HEADER_SIZE );
+                readPosition = fileChannel.read( buffer );
+                if ( readPosition != HEADER_SIZE )
+                {
+                    fileChannel.close();
+                    throw new InvalidIdGeneratorException( "Unable to read header, bytes read: " + readPosition );
+                }
+                buffer.flip();
+                if ( buffer.get() != CLEAN_GENERATOR )
+                {
+                    fileChannel.close();
+                    throw new InvalidIdGeneratorException( "Sticky generator[ " +
+                            fileName + "] delete this id file and build a new one" );
+                }
+                highId.set( buffer.getLong() );
+
+                buffer.clear();
+                buffer.put( STICKY_GENERATOR ).limit( 1 ).flip();
+                fileChannel.position( 0 );
+                fileChannel.write( buffer );
+
+                maxReadPosition = fileChannel.size();
+                defraggedIdCount.set( (maxReadPosition - HEADER_SIZE) / 8 );
+                readIdBatch();
+            }
+            catch ( IOException e )
+            {
+                throw new UnderlyingStorageException( "Unable to init id generator " + fileName, e );
+            }
+        }
+    }
+
+    // must hold fileLock
+    private void readIdBatch()
+    {
+        if ( readPosition >= maxReadPosition )
+        {
+            moreIdsInFile = false;
+            return;
+        }
+
+        try
+        {
+            int howMuchToRead = (int) min( grabSize * 8, maxReadPosition - readPosition );
+            ByteBuffer readBuffer = ByteBuffer.allocate( howMuchToRead );
+            fileChannel.position( readPosition );
+            int bytesRead = fileChannel.read( readBuffer );
+            readPosition += bytesRead;
+            readBuffer.flip();
+            for ( int i = 0; i < bytesRead / 8; i++ )
+            {
+                long id = readBuffer.getLong();
+                if ( id != INTEGER_MINUS_ONE )
+                {
+                    freeIdCount.incrementAndGet();
+                    freeIds.offer( id );
+                }
+            }
+            moreIdsInFile = readPosition < maxReadPosition;
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( "Failed reading defragged id batch", e );
+        }
+    }
+
+    // must hold fileLock
+    private void writeIdBatch( ByteBuffer writeBuffer )
+    {
+        try
+        {
+            fileChannel.position( fileChannel.size() );
+            writeBuffer.clear();
+            Long id;
+            while ( (id = releasedIds.poll()) != null )
+            {
+                releasedIdCount.decrementAndGet();
+                writeBuffer.putLong( id );
+                if ( !writeBuffer.hasRemaining() )
+                {
+                    writeFully( writeBuffer );
+                }
+            }
+            writeFully( writeBuffer );
+            if ( aggressiveReuse )
+            {
+                maxReadPosition = fileChannel.size();
+                moreIdsInFile = readPosition < maxReadPosition;
+            }
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( "Unable to write defragged id batch", e );
+        }
+    }
+
+    private void writeFully( ByteBuffer writeBuffer ) throws IOException
+    {
+        writeBuffer.flip();
+        while ( writeBuffer.hasRemaining() )
+        {
+            fileChannel.write( writeBuffer );
+        }
+        writeBuffer.clear();
+    }
+
+    // moves the ids not yet read from the file to right after the header
+    private void defragReusableIdsInFile( ByteBuffer writeBuffer ) throws IOException
+    {
+        if ( readPosition > HEADER_SIZE )
+        {
+            long writePosition = HEADER_SIZE;
+            long position = readPosition;
+            int bytesRead;
+            do
+            {
+                writeBuffer.clear();
+                fileChannel.position( position );
+                bytesRead = fileChannel.read( writeBuffer );
+                position += max( bytesRead, 0 );
+                writeBuffer.flip();
+                fileChannel.position( writePosition );
+                writePosition += fileChannel.write( writeBuffer );
+            }
+            while ( bytesRead > 0 );
+            fileChannel.truncate( writePosition );
+        }
+    }
+
+    @Override
+    public long getNumberOfIdsInUse()
+    {
+        return highId.get() - defraggedIdCount.get();
+    }
+
+    @Override
+    public long getDefragCount()
+    {
+        return defraggedIdCount.get();
+    }
+
+    @Override
+    public void delete()
+    {
+        if ( !closed )
+        {
+            throw new RuntimeException( "Must be closed to delete" );
+        }
+        awaitClosed();
+        if ( !fs.deleteFile( fileName ) )
+        {
+            throw new UnderlyingStorageException( "Unable to delete id generator " + fileName );
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ConcurrentIdGenerator " + hashCode() + " [highId=" + highId + ", defragged=" + defraggedIdCount +
+                ", fileName=" + fileName + ", max=" + max + ", aggressive=" + aggressiveReuse + "]";
+    }
+
+    /**
+     * A range of new ids owned by a single thread. {@link #next} is only written by that thread, and read by
+     * {@link #close()} once the store is no longer used.
+     */
+    private static class IdBatch
+    {
+        private static final AtomicLongFieldUpdater<IdBatch> NEXT =
+                AtomicLongFieldUpdater.newUpdater( IdBatch.class, "next" );
+
+        private final int generation;
+        private final long end;
+        private volatile long next;
+
+        IdBatch( int generation, long start, long end )
+        {
+            this.generation = generation;
+            this.end = end;
+            this.next = start;
+        }
+
+        long next()
+        {
+            long id = next;
+            while ( id < end )
+            {
+                NEXT.lazySet( this, id + 1 );
+                if ( id != INTEGER_MINUS_ONE )
+                {
+                    return id;
+                }
+                id++;
+            }
+            return -1;
+        }
+
+        void releaseRemainingTo( ConcurrentIdGenerator generator )
+        {
+            for ( long id = next; id < end; id++ )
+            {
+                if ( id != INTEGER_MINUS_ONE )
+                {
+                    generator.releaseOnClose( id );
+                }
+            }
+        }
+    }
+}
@@ -37,9 +37,17 @@ public class DefaultWindowPoolFactory implements WindowPoolFactory
     public WindowPool create( File storageFileName, int recordSize, StoreChannel fileChannel, Config configuration,
                               StringLogger log )
     {
+        long mappedMemory = calculateMappedMemory( configuration, storageFileName );
+        if ( configuration.get( CommonAbstractStore.Configuration.use_paged_window_pool ) && mappedMemory > 0 )
+        {
+            return new PagedWindowPool( storageFileName, recordSize, fileChannel, mappedMemory,
+                    configuration.get( CommonAbstractStore.Configuration.mapped_memory_page_size ),
+                    configuration.get( CommonAbstractStore.Configuration.use_memory_mapped_buffers ),
+                    isReadOnly( configuration ) && !isBackupSlave( configuration ), log );
+        }
 
         return new PersistenceWindowPool( storageFileName, recordSize, fileChannel,
-                calculateMappedMemory( configuration, storageFileName ),
+                mappedMemory,
                 configuration.get( CommonAbstractStore.Configuration.use_memory_mapped_buffers ),
                 isReadOnly( configuration ) && !isBackupSlave( configuration ),
                 new ConcurrentHashMap<Long, PersistenceRow>(), BrickElementFactory.DEFAULT, log );
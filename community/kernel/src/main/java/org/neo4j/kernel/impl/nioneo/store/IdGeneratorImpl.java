@@ -62,12 +62,12 @@ import static org.neo4j.kernel.impl.util.FileUtils.truncateFile;
 public class IdGeneratorImpl implements IdGenerator
 {
     // sticky(byte), nextFreeId(long)
-    private static final int HEADER_SIZE = 9;
+    static final int HEADER_SIZE = 9;
 
     // if sticky the id generator wasn't closed properly so it has to be
     // rebuilt (go through the node, relationship, property, rel type etc files)
-    private static final byte CLEAN_GENERATOR = (byte) 0;
-    private static final byte STICKY_GENERATOR = (byte) 1;
+    static final byte CLEAN_GENERATOR = (byte) 0;
+    static final byte STICKY_GENERATOR = (byte) 1;
 
     public static final long INTEGER_MINUS_ONE = 0xFFFFFFFFL;  // 4294967295L;
 
@@ -0,0 +1,615 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.neo4j.kernel.impl.nioneo.store.windowpool.WindowPool;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+/**
+ * A {@link WindowPool} dividing the store file into fixed size pages, kept in a concurrent page table and
+ * evicted using the CLOCK algorithm when the mapped memory for the store runs out.
+ * <p>
+ * Compared to {@link PersistenceWindowPool} there's no global monitor on the acquire/release path. A page is
+ * pinned by atomically incrementing its pin count, which also keeps it from being evicted, and then locked
+ * for the requested {@link OperationType}. Readers share the page, writers get it exclusively. Every
+ * acquisition gets its own {@link PersistenceWindow} with a private view of the page buffer, so concurrent
+ * readers don't step on each others buffer offsets.
+ * <p>
+ * Eviction is only done by threads loading a page when the memory is used up, and only pages with a pin
+ * count of zero can be evicted. If all pages are pinned the memory is temporarily overcommitted rather than
+ * blocking the loading thread.
+ * <p>
+ * Only pages lying entirely within the file are memory mapped, since mapping beyond the end of the file would
+ * grow it. Other pages are read into heap buffers, which only write back the records written to, so that the
+ * file grows record by record, like with the {@link PersistenceRow rows} of {@link PersistenceWindowPool}.
+ */
+public class PagedWindowPool implements WindowPool
+{
+    private static final int EVICTED = -1;
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private final File storeName;
+    private final int recordSize;
+    private final int recordsPerPage;
+    private final int pageSize;
+    private final long availableMem;
+    private final boolean useMemoryMapped;
+    private final boolean readOnly;
+    private final MapMode mapMode;
+    private final StringLogger log;
+    private volatile StoreChannel fileChannel;
+
+    /*
+     * The page table, in chunks of CHUNK_SIZE slots. Chunks never move once created, only the array referencing
+     * them is replaced, copy-on-write, when it needs to grow. That way no concurrently loaded or evicted page
+     * can get lost in a resize.
+     */
+    private volatile AtomicReferenceArray<Page>[] pageTable;
+    private final Object pageTableGrowLock = new Object();
+    private final AtomicLong memUsed = new AtomicLong();
+    private final Lock evictionLock = new ReentrantLock();
+    private int clockHand;
+
+    // Racy on purpose, missing some updates to these statistics is fine
+    private int hit;
+    private int miss;
+    private int evictions;
+    private int ooe;
+
+    public PagedWindowPool( File storeName, int recordSize, StoreChannel fileChannel, long mappedMem,
+                            long targetPageSize, boolean useMemoryMappedBuffers, boolean readOnly,
+                            StringLogger log )
+    {
+        if ( recordSize <= 0 )
+        {
+            throw new IllegalArgumentException( "Record size must be positive, was " + recordSize );
+        }
+        this.storeName = storeName;
+        this.recordSize = recordSize;
+        this.fileChannel = fileChannel;
+        this.availableMem = mappedMem;
+        this.useMemoryMapped = useMemoryMappedBuffers;
+        this.readOnly = readOnly;
+        this.mapMode = readOnly ? MapMode.READ_ONLY : MapMode.READ_WRITE;
+        this.log = log;
+        this.recordsPerPage = calculateRecordsPerPage( recordSize, mappedMem, targetPageSize );
+        this.pageSize = recordsPerPage * recordSize;
+        this.pageTable = newPageTable( 0 );
+        chunk( Math.max( 0, pageCountForFileSize() - 1 ) );
+        log.info( "[" + storeName + "] pageSize=" + pageSize + "b recordsPerPage=" + recordsPerPage +
+                " mappedMem=" + availableMem + "b" );
+    }
+
+    /**
+     * Pages are at most {@code targetPageSize}, but small enough for the available memory to fit a handful
+     * of them, and always hold a whole number of records.
+     */
+    static int calculateRecordsPerPage( int recordSize, long mappedMem, long targetPageSize )
+    {
+        long pageSize = Math.min( targetPageSize, mappedMem / 16 );
+        pageSize = Math.min( pageSize, Integer.MAX_VALUE );
+        return (int) Math.max( 1, pageSize / recordSize );
+    }
+
+    private int pageCountForFileSize()
+    {
+        try
+        {
+            return (int) ((fileChannel.size() + pageSize - 1) / pageSize);
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( "Unable to get file size for " + storeName, e );
+        }
+    }
+
+    @Override
+    public PersistenceWindow acquire( long position, OperationType operationType )
+    {
+        int pageId = pageId( position );
+        Page page;
+        do
+        {
+            page = chunk( pageId ).get( slot( pageId ) );
+            if ( page == null )
+            {
+                page = loadPage( pageId );
+                miss++;
+            }
+            else
+            {
+                hit++;
+            }
+        }
+        while ( !page.pin() );
+        // else it was evicted right before we managed to pin it, go again
+
+        if ( !page.referenced )
+        {
+            page.referenced = true;
+        }
+        try
+        {
+            page.lock( operationType );
+        }
+        catch ( RuntimeException e )
+        {
+            page.unpin();
+            throw e;
+        }
+        if ( operationType == OperationType.WRITE )
+        {
+            page.written( position );
+        }
+        return new PageWindow( page, operationType );
+    }
+
+    @Override
+    public void release( PersistenceWindow window )
+    {
+        PageWindow pageWindow = (PageWindow) window;
+        Page page = pageWindow.page;
+        try
+        {
+            page.unlock( pageWindow.operationType );
+        }
+        finally
+        {
+            page.unpin();
+        }
+    }
+
+    private int pageId( long position )
+    {
+        long pageId = position / recordsPerPage;
+        if ( pageId >= Integer.MAX_VALUE )
+        {
+            throw new IllegalArgumentException( "Position " + position + " is beyond what pages of " +
+                    recordsPerPage + " records can address" );
+        }
+        return (int) pageId;
+    }
+
+    private static int slot( int pageId )
+    {
+        return pageId & (CHUNK_SIZE - 1);
+    }
+
+    private AtomicReferenceArray<Page> chunk( int pageId )
+    {
+        int chunkId = pageId >>> CHUNK_SHIFT;
+        AtomicReferenceArray<Page>[] table = pageTable;
+        if ( chunkId < table.length )
+        {
+            return table[chunkId];
+        }
+        synchronized ( pageTableGrowLock )
+        {
+            table = pageTable;
+            if ( chunkId >= table.length )
+            {
+                AtomicReferenceArray<Page>[] grown = newPageTable( Math.max( chunkId + 1, table.length * 2 ) );
+                System.arraycopy( table, 0, grown, 0, table.length );
+                for ( int i = table.length; i < grown.length; i++ )
+                {
+                    grown[i] = new AtomicReferenceArray<>( CHUNK_SIZE );
+                }
+                pageTable = table = grown;
+            }
+            return table[chunkId];
+        }
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static AtomicReferenceArray<Page>[] newPageTable( int chunks )
+    {
+        return new AtomicReferenceArray[chunks];
+    }
+
+    private Page loadPage( int pageId )
+    {
+        if ( memUsed.addAndGet( pageSize ) > availableMem )
+        {
+            evictPages();
+        }
+
+        Page page;
+        try
+        {
+            page = new Page( pageId * (long) recordsPerPage, mapPage( pageId ) );
+        }
+        catch ( RuntimeException | OutOfMemoryError e )
+        {
+            memUsed.addAndGet( -pageSize );
+            ooe++;
+            throw e;
+        }
+
+        AtomicReferenceArray<Page> chunk = chunk( pageId );
+        if ( chunk.compareAndSet( slot( pageId ), null, page ) )
+        {
+            return page;
+        }
+        // Someone else loaded this page before us, go with theirs
+        memUsed.addAndGet( -pageSize );
+        Page existing = chunk.get( slot( pageId ) );
+        return existing != null ? existing : loadPage( pageId );
+    }
+
+    private ByteBuffer mapPage( int pageId )
+    {
+        long filePosition = pageId * (long) pageSize;
+        try
+        {
+            if ( useMemoryMapped && filePosition + pageSize <= fileChannel.size() )
+            {
+                return fileChannel.map( mapMode, filePosition, pageSize );
+            }
+            // Read into a heap buffer, which zero-fills anything beyond the end of the file. Mapping that part
+            // would grow the file to the end of the page.
+            ByteBuffer buffer = ByteBuffer.allocate( pageSize );
+            while ( buffer.hasRemaining() )
+            {
+                if ( fileChannel.read( buffer, filePosition + buffer.position() ) <= 0 )
+                {
+                    break;
+                }
+            }
+            buffer.clear();
+            return buffer;
+        }
+        catch ( IOException e )
+        {
+            throw new MappedMemException( "Unable to load page " + pageId + " of " + storeName, e );
+        }
+    }
+
+    /**
+     * Sweeps the CLOCK hand over the page table, clearing reference bits and evicting unpinned pages that
+     * haven't been referenced since last time the hand passed, until memory usage is within limits again.
+     * Gives up after two full turns, since then all pages are pinned.
+     */
+    private void evictPages()
+    {
+        evictionLock.lock();
+        try
+        {
+            AtomicReferenceArray<Page>[] table = pageTable;
+            int pageCount = table.length * CHUNK_SIZE;
+            int steps = pageCount * 2;
+            while ( memUsed.get() > availableMem && steps-- > 0 )
+            {
+                if ( clockHand >= pageCount )
+                {
+                    clockHand = 0;
+                }
+                int pageId = clockHand++;
+                AtomicReferenceArray<Page> chunk = table[pageId >>> CHUNK_SHIFT];
+                Page page = chunk.get( slot( pageId ) );
+                if ( page == null )
+                {
+                    continue;
+                }
+                if ( page.referenced )
+                {
+                    page.referenced = false;
+                    continue;
+                }
+                if ( page.tryEvict() )
+                {
+                    try
+                    {
+                        page.writeOut();
+                    }
+                    finally
+                    {
+                        chunk.compareAndSet( slot( pageId ), page, null );
+                        memUsed.addAndGet( -pageSize );
+                        evictions++;
+                    }
+                }
+            }
+        }
+        finally
+        {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void flushAll()
+    {
+        if ( readOnly )
+        {
+            return;
+        }
+
+        for ( AtomicReferenceArray<Page> chunk : pageTable )
+        {
+            for ( int i = 0; i < CHUNK_SIZE; i++ )
+            {
+                flush( chunk.get( i ) );
+            }
+        }
+        try
+        {
+            fileChannel.force( false );
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( "Failed to flush file channel " + storeName, e );
+        }
+    }
+
+    private void flush( Page page )
+    {
+        if ( page == null || !page.pin() )
+        {   // Not loaded, or being evicted which writes it out
+            return;
+        }
+        try
+        {
+            page.lock( OperationType.READ );
+            try
+            {
+                page.writeOut();
+            }
+            finally
+            {
+                page.unlock( OperationType.READ );
+            }
+        }
+        finally
+        {
+            page.unpin();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        flushAll();
+        pageTable = newPageTable( 0 );
+        memUsed.set( 0 );
+        fileChannel = null;
+        log.info( storeName + " hit=" + hit + " miss=" + miss + " evictions=" + evictions + " ooe=" + ooe );
+    }
+
+    @Override
+    public WindowPoolStats getStats()
+    {
+        return new WindowPoolStats( storeName, availableMem, memUsed.get(), pageTable.length * CHUNK_SIZE, pageSize,
+                hit, miss, ooe, evictions, 0, 0, 0 );
+    }
+
+    private class Page
+    {
+        private final long firstRecord;
+        private final ByteBuffer buffer;
+        private final AtomicInteger pins = new AtomicInteger();
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        // Held while writing out, since any number of readers may flush the page at the same time
+        private final Lock flushLock = new ReentrantLock();
+        private volatile boolean referenced = true;
+        private volatile boolean dirty;
+        // The records written to since the page was last written out, for pages not memory mapped
+        // Only changed by writers, or by the one writing out while no one writes to the page, see writeOut
+        private long firstDirtyRecord = Long.MAX_VALUE;
+        private long lastDirtyRecord = -1;
+
+        Page( long firstRecord, ByteBuffer buffer )
+        {
+            this.firstRecord = firstRecord;
+            this.buffer = buffer;
+        }
+
+        boolean pin()
+        {
+            for ( int pinCount; (pinCount = pins.get()) != EVICTED; )
+            {
+                if ( pins.compareAndSet( pinCount, pinCount + 1 ) )
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void unpin()
+        {
+            pins.decrementAndGet();
+        }
+
+        boolean tryEvict()
+        {
+            return pins.compareAndSet( 0, EVICTED );
+        }
+
+        void lock( OperationType operationType )
+        {
+            if ( operationType == OperationType.WRITE )
+            {
+                lock.writeLock().lock();
+            }
+            else
+            {
+                lock.readLock().lock();
+            }
+        }
+
+        /**
+         * Marks a record as written to. Callers must hold the write lock.
+         */
+        void written( long record )
+        {
+            dirty = true;
+            firstDirtyRecord = Math.min( firstDirtyRecord, record );
+            lastDirtyRecord = Math.max( lastDirtyRecord, record );
+        }
+
+        void unlock( OperationType operationType )
+        {
+            if ( operationType == OperationType.WRITE )
+            {
+                lock.writeLock().unlock();
+            }
+            else
+            {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Writes changes made to this page out to the file. Callers must make sure no one writes to the page
+         * meanwhile, either by holding a read lock or by having evicted it.
+         */
+        void writeOut()
+        {
+            if ( readOnly || !dirty )
+            {
+                return;
+            }
+            flushLock.lock();
+            try
+            {
+                if ( !dirty )
+                {   // Written out by someone else while we waited
+                    return;
+                }
+                if ( buffer instanceof MappedByteBuffer )
+                {
+                    ((MappedByteBuffer) buffer).force();
+                }
+                else
+                {
+                    writeRecords( firstDirtyRecord, lastDirtyRecord );
+                    firstDirtyRecord = Long.MAX_VALUE;
+                    lastDirtyRecord = -1;
+                }
+                // Not before the changes are written, or concurrent flushers could return before they are
+                dirty = false;
+            }
+            catch ( IOException e )
+            {
+                throw new UnderlyingStorageException( "Unable to write page at record " + firstRecord +
+                        " of " + storeName, e );
+            }
+            finally
+            {
+                flushLock.unlock();
+            }
+        }
+
+        // Only the records written to, so that the file doesn't grow past the last of them
+        private void writeRecords( long first, long last ) throws IOException
+        {
+            ByteBuffer source = buffer.duplicate();
+            source.limit( (int) (last - firstRecord + 1) * recordSize );
+            source.position( (int) (first - firstRecord) * recordSize );
+            long filePosition = firstRecord * recordSize;
+            while ( source.hasRemaining() )
+            {
+                fileChannel.write( source, filePosition + source.position() );
+            }
+        }
+    }
+
+    /**
+     * The window handed out for one acquisition of a page.
+     */
+    private class PageWindow implements PersistenceWindow
+    {
+        private final Page page;
+        private final OperationType operationType;
+        private final Buffer buffer;
+
+        PageWindow( Page page, OperationType operationType )
+        {
+            this.page = page;
+            this.operationType = operationType;
+            this.buffer = new Buffer( this, page.buffer.duplicate() );
+        }
+
+        @Override
+        public Buffer getBuffer()
+        {
+            return buffer;
+        }
+
+        @Override
+        public Buffer getOffsettedBuffer( long id )
+        {
+            if ( operationType == OperationType.WRITE )
+            {
+                page.written( id );
+            }
+            buffer.setOffset( (int) (id - page.firstRecord) * recordSize );
+            return buffer;
+        }
+
+        @Override
+        public int getRecordSize()
+        {
+            return recordSize;
+        }
+
+        @Override
+        public long position()
+        {
+            return page.firstRecord;
+        }
+
+        @Override
+        public int size()
+        {
+            return recordsPerPage;
+        }
+
+        @Override
+        public void force()
+        {
+            page.writeOut();
+        }
+
+        @Override
+        public void close()
+        {   // The page belongs to the pool, which decides when to let go of it
+        }
+
+        @Override
+        public String toString()
+        {
+            return "PageWindow[p=" + page.firstRecord + ",rs=" + recordSize + ",ws=" + recordsPerPage + "]";
+        }
+    }
+}
@@ -1397,6 +1397,20 @@ public abstract class Command extends XaCommand
 
         @Override
         public void execute()
+        {
+            execute( true );
+        }
+
+        /**
+         * Executes this command, except for creating the index of an index rule being created, which is then left
+         * to the caller to do after the command has been executed.
+         */
+        void executeWithoutCreatingIndex()
+        {
+            execute( false );
+        }
+
+        private void execute( boolean createIndex )
         {
             for ( DynamicRecord record : recordsAfter )
             {
@@ -1424,7 +1438,10 @@ public abstract class Command extends XaCommand
                     }
                     break;
                 case CREATE:
-                    indexes.createIndex( (IndexRule) schemaRule );
+                    if ( createIndex )
+                    {
+                        indexes.createIndex( (IndexRule) schemaRule );
+                    }
                     break;
                 case DELETE:
                     indexes.dropIndex( (IndexRule)schemaRule );
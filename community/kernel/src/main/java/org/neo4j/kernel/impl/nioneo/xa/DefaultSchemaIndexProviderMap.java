@@ -19,32 +19,49 @@
  */
 package org.neo4j.kernel.impl.nioneo.xa;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.neo4j.kernel.api.index.SchemaIndexProvider;
 import org.neo4j.kernel.impl.api.index.SchemaIndexProviderMap;
 
 public class DefaultSchemaIndexProviderMap implements SchemaIndexProviderMap
 {
-    private final SchemaIndexProvider indexProvider;
+    private final SchemaIndexProvider defaultIndexProvider;
+    private final SchemaIndexProvider[] additionalIndexProviders;
 
-    public DefaultSchemaIndexProviderMap( SchemaIndexProvider indexProvider )
+    public DefaultSchemaIndexProviderMap( SchemaIndexProvider defaultIndexProvider,
+                                          SchemaIndexProvider... additionalIndexProviders )
     {
-        this.indexProvider = indexProvider;
+        this.defaultIndexProvider = defaultIndexProvider;
+        this.additionalIndexProviders = additionalIndexProviders;
     }
 
     @Override
     public SchemaIndexProvider getDefaultProvider()
     {
-        return indexProvider;
+        return defaultIndexProvider;
     }
 
     @Override
     public SchemaIndexProvider apply( SchemaIndexProvider.Descriptor descriptor )
     {
-        if ( indexProvider.getProviderDescriptor().getKey().equals( descriptor.getKey() ) )
-            return indexProvider;
+        if ( defaultIndexProvider.getProviderDescriptor().getKey().equals( descriptor.getKey() ) )
+        {
+            return defaultIndexProvider;
+        }
+        List<SchemaIndexProvider.Descriptor> supported = new ArrayList<>();
+        supported.add( defaultIndexProvider.getProviderDescriptor() );
+        for ( SchemaIndexProvider provider : additionalIndexProviders )
+        {
+            if ( provider.getProviderDescriptor().getKey().equals( descriptor.getKey() ) )
+            {
+                return provider;
+            }
+            supported.add( provider.getProviderDescriptor() );
+        }
 
         throw new IllegalArgumentException( "Tried to get index provider for an existing index with provider " +
-                descriptor + " whereas the default and only supported provider in this session is " +
-                indexProvider.getProviderDescriptor() );
+                descriptor + " whereas the supported providers in this session are " + supported );
     }
 }
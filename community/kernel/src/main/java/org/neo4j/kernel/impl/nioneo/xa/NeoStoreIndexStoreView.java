@@ -145,6 +145,55 @@ public class NeoStoreIndexStoreView implements IndexStoreView
         };
     }
 
+    @Override
+    public <FAILURE extends Exception> StoreScan<FAILURE> visitNodes(
+            final int[] labelIds, final int[] propertyKeyIds, long fromNodeId, long toNodeId,
+            final Visitor<NodePropertyUpdate, FAILURE> propertyUpdateVisitor )
+    {
+        return new NodeStoreScan<Update, FAILURE>( fromNodeId, toNodeId )
+        {
+            @Override
+            protected Update read( NodeRecord node )
+            {
+                long[] labels = parseLabelsField( node ).get( nodeStore );
+                if ( !containsAnyLabel( labelIds, labels ) )
+                {
+                    return null;
+                }
+                Update update = new Update( node.getId(), labels );
+                properties: for ( PropertyBlock property : properties( node ) )
+                {
+                    int propertyKeyId = property.getKeyIndexId();
+                    for ( int sought : propertyKeyIds )
+                    {
+                        if ( propertyKeyId == sought )
+                        {
+                            update.add( NodePropertyUpdate
+                                                .add( node.getId(), propertyKeyId, valueOf( property ), labels ) );
+                            continue properties;
+                        }
+                    }
+                }
+                return update;
+            }
+
+            @Override
+            protected void process( Update update ) throws FAILURE
+            {
+                for ( NodePropertyUpdate propertyUpdate : update )
+                {
+                    propertyUpdateVisitor.visit( propertyUpdate );
+                }
+            }
+        };
+    }
+
+    @Override
+    public long nodeHighId()
+    {
+        return nodeStore.getHighId();
+    }
+
     @Override
     public Iterable<NodePropertyUpdate> nodeAsUpdates( long nodeId )
     {
@@ -302,8 +351,21 @@ public class NeoStoreIndexStoreView implements IndexStoreView
 
     private abstract class NodeStoreScan<RESULT, FAILURE extends Exception> implements StoreScan<FAILURE>
     {
+        private final long fromNodeId;
+        private final long toNodeId;
         private volatile boolean continueScanning;
 
+        NodeStoreScan()
+        {
+            this( 0, Long.MAX_VALUE );
+        }
+
+        NodeStoreScan( long fromNodeId, long toNodeId )
+        {
+            this.fromNodeId = fromNodeId;
+            this.toNodeId = toNodeId;
+        }
+
         protected abstract RESULT read( NodeRecord node );
 
         protected abstract void process( RESULT result ) throws FAILURE;
@@ -311,7 +373,7 @@ public class NeoStoreIndexStoreView implements IndexStoreView
         @Override
         public void run() throws FAILURE
         {
-            PrimitiveLongIterator nodeIds = new StoreIdIterator( nodeStore );
+            PrimitiveLongIterator nodeIds = new StoreIdIterator( nodeStore, fromNodeId, toNodeId );
             continueScanning = true;
             while ( continueScanning && nodeIds.hasNext() )
             {
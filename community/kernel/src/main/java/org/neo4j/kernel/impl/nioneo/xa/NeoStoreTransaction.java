@@ -711,10 +711,28 @@ public class NeoStoreTransaction extends XaTransaction
             //    job might get those as updates
             // 4) the population job will apply those updates as added properties, and might end up with duplicate
             //    entries for the same property
-            for ( SchemaRuleCommand command : context.getSchemaRuleCommands() )
+            Collection<SchemaRuleCommand> schemaRuleCommands = context.getSchemaRuleCommands();
+            IndexRule[] createdIndexes = createdIndexes( schemaRuleCommands );
+            boolean createIndexesTogether = createdIndexes.length > 1;
+            for ( SchemaRuleCommand command : schemaRuleCommands )
             {
                 command.setTxId( getCommitTxId() );
-                command.execute();
+                if ( createIndexesTogether )
+                {
+                    command.executeWithoutCreatingIndex();
+                }
+                else
+                {
+                    command.execute();
+                }
+            }
+            if ( createIndexesTogether )
+            {
+                // After all the schema rules are in the schema store, so that they are there for the population
+                indexes.createIndexes( createdIndexes );
+            }
+            for ( SchemaRuleCommand command : schemaRuleCommands )
+            {
                 switch ( command.getMode() )
                 {
                 case DELETE:
@@ -796,6 +814,23 @@ public class NeoStoreTransaction extends XaTransaction
         return labelUpdates;
     }
 
+    /**
+     * The indexes introduced by this transaction, which if more than one are created together after the schema
+     * rule commands have been executed, so that they get populated in one single scan over the store.
+     */
+    private IndexRule[] createdIndexes( Collection<SchemaRuleCommand> commands )
+    {
+        List<IndexRule> rules = new ArrayList<>();
+        for ( SchemaRuleCommand command : commands )
+        {
+            if ( command.getMode() == CREATE && command.getSchemaRule() instanceof IndexRule )
+            {
+                rules.add( (IndexRule) command.getSchemaRule() );
+            }
+        }
+        return rules.toArray( new IndexRule[rules.size()] );
+    }
+
     private void updateLabelScanStore( Iterable<NodeLabelUpdate> labelUpdates )
     {
         try ( LabelScanWriter writer = labelScanStore.newWriter() )
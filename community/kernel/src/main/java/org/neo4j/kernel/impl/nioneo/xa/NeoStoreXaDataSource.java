@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -357,11 +358,24 @@ public class NeoStoreXaDataSource extends LogBackedXaDataSource implements NeoSt
 
         try
         {
+            final List<SchemaIndexProvider> indexProviders = new ArrayList<>();
             indexProvider = dependencyResolver.resolveDependency( SchemaIndexProvider.class,
-                    SchemaIndexProvider.HIGHEST_PRIORITIZED_OR_NONE );
-
-            // TODO: Build a real provider map
-            DefaultSchemaIndexProviderMap providerMap = new DefaultSchemaIndexProviderMap( indexProvider );
+                    new DependencyResolver.SelectionStrategy()
+                    {
+                        @Override
+                        public <T> T select( Class<T> type, Iterable<T> candidates )
+                        {
+                            for ( T candidate : candidates )
+                            {
+                                indexProviders.add( (SchemaIndexProvider) candidate );
+                            }
+                            return SchemaIndexProvider.HIGHEST_PRIORITIZED_OR_NONE.select( type, candidates );
+                        }
+                    } );
+
+            // Existing indexes keep using the provider that created them, new ones get the default provider
+            DefaultSchemaIndexProviderMap providerMap = new DefaultSchemaIndexProviderMap( indexProvider,
+                    indexProviders.toArray( new SchemaIndexProvider[indexProviders.size()] ) );
 
             indexingService = life.add(
                     new IndexingService(
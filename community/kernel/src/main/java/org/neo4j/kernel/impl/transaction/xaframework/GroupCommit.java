@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.xaframework;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+
+import org.neo4j.kernel.impl.nioneo.store.StoreChannel;
+
+/**
+ * Lets concurrent committers share one force of the logical log.
+ * <p>
+ * A committer writes its commit entry out to the log channel, draws a ticket with {@link #ticket()} and
+ * then calls {@link #awaitForced(long, ChannelSource)}. The first committer to find no force in progress
+ * becomes the leader and forces the channel, which makes every ticket drawn before the force started durable.
+ * The others park until a force covering their ticket has completed. Tickets must only be drawn after the
+ * corresponding data has been written out to the channel.
+ */
+public class GroupCommit
+{
+    /**
+     * Gives the leader the channel to force. Called without holding any group commit lock.
+     */
+    public interface ChannelSource
+    {
+        StoreChannel currentChannel();
+    }
+
+    private final GroupCommitMonitor monitor;
+    private long issuedTicket;
+    private long forcedTicket;
+    private boolean forcing;
+
+    public GroupCommit( GroupCommitMonitor monitor )
+    {
+        this.monitor = monitor;
+    }
+
+    public synchronized long ticket()
+    {
+        return ++issuedTicket;
+    }
+
+    /**
+     * Blocks until a force that started after {@code ticket} was drawn has completed, possibly doing that
+     * force in the calling thread.
+     *
+     * @throws IOException if this thread ended up doing the force and it failed.
+     */
+    public void awaitForced( long ticket, ChannelSource channels ) throws IOException
+    {
+        long forcedBefore;
+        long target;
+        synchronized ( this )
+        {
+            boolean interrupted = false;
+            try
+            {
+                while ( forcing && forcedTicket < ticket )
+                {
+                    try
+                    {
+                        wait();
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        // The commit entry is already written, so the committer must see it through
+                        interrupted = true;
+                    }
+                }
+            }
+            finally
+            {
+                if ( interrupted )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if ( forcedTicket >= ticket )
+            {
+                return;
+            }
+            forcing = true;
+            forcedBefore = forcedTicket;
+            target = issuedTicket;
+        }
+
+        boolean success = false;
+        long startTime = System.nanoTime();
+        try
+        {
+            force( channels.currentChannel() );
+            success = true;
+        }
+        finally
+        {
+            long forceTime = System.nanoTime() - startTime;
+            synchronized ( this )
+            {
+                forcing = false;
+                if ( success )
+                {
+                    forcedTicket = Math.max( forcedTicket, target );
+                }
+                notifyAll();
+            }
+            if ( success )
+            {
+                monitor.groupForced( (int) (target - forcedBefore), forceTime );
+            }
+        }
+    }
+
+    /**
+     * Marks all tickets drawn so far as forced. Used when the log forces its channel by other means,
+     * for example when rotating or closing.
+     */
+    public synchronized void allForced()
+    {
+        forcedTicket = issuedTicket;
+        notifyAll();
+    }
+
+    private static void force( StoreChannel channel ) throws IOException
+    {
+        if ( channel == null )
+        {   // The log has been closed, which forced it
+            return;
+        }
+        try
+        {
+            channel.force( false );
+        }
+        catch ( ClosedChannelException e )
+        {
+            // The log was rotated or closed under us, both of which force the channel before closing it
+            if ( channel.isOpen() )
+            {
+                throw e;
+            }
+        }
+    }
+}
@@ -80,6 +80,12 @@ public class NoOpLogicalLog extends XaLogicalLog
 
     }
 
+    @Override
+    public void forceGrouped() throws XAException
+    {
+
+    }
+
     @Override
     public synchronized void done( int identifier ) throws XAException
     {
@@ -30,6 +30,7 @@ import org.neo4j.kernel.impl.transaction.TransactionStateFactory;
 import org.neo4j.kernel.logging.Logging;
 import org.neo4j.kernel.monitoring.Monitors;
 
+import static org.neo4j.graphdb.factory.GraphDatabaseSettings.logical_log_group_commit;
 import static org.neo4j.graphdb.factory.GraphDatabaseSettings.logical_log_rotation_threshold;
 
 /**
@@ -77,7 +78,7 @@ public class XaFactory
 
         // TODO The dependencies between XaRM, LogicalLog and XaTF should be resolved to avoid the setter
         XaResourceManager rm = new XaResourceManager( xaDataSource, tf, txIdGenerator, txManager, recoveryVerifier,
-                logicalLog.getName(), monitors );
+                logicalLog.getName(), monitors, config.get( logical_log_group_commit ) );
 
         long rotateAtSize = config.get( logical_log_rotation_threshold );
         XaLogicalLog log;
@@ -124,6 +124,8 @@ public class XaLogicalLog implements LogLoader
     protected final ByteCounterMonitor logDeserializerMonitor;
     private final KernelHealth kernelHealth;
 
+    private final GroupCommit groupCommit;
+
     public XaLogicalLog( File fileName, XaResourceManager xaRm, XaCommandFactory cf,
                          XaTransactionFactory xaTf, FileSystemAbstraction fileSystem, Monitors monitors,
                          Logging logging, LogPruneStrategy pruneStrategy, TransactionStateFactory stateFactory,
@@ -137,6 +139,7 @@ public class XaLogicalLog implements LogLoader
         this.kernelHealth = kernelHealth;
         this.bufferMonitor = monitors.newMonitor( ByteCounterMonitor.class, XaLogicalLog.class );
         this.logDeserializerMonitor = monitors.newMonitor( ByteCounterMonitor.class, "logdeserializer" );
+        this.groupCommit = new GroupCommit( monitors.newMonitor( GroupCommitMonitor.class, XaLogicalLog.class ) );
         this.pruneStrategy = pruneStrategy;
         this.stateFactory = stateFactory;
         this.rotateAtSize = rotateAtSize;
@@ -432,6 +435,35 @@ public class XaLogicalLog implements LogLoader
         }
     }
 
+    /**
+     * Forces everything written out to this log so far, sharing the force with other threads calling
+     * this method concurrently. Meant to follow a call to {@link #commitOnePhase(int, long, ForceMode)} or
+     * {@link #commitTwoPhase(int, long, ForceMode)} with {@link ForceMode#unforced}, which writes out
+     * the commit entry but leaves forcing it to the caller. Must not be called while holding a lock that
+     * other committers need to get their commit entries written, or there will be no group to share with.
+     */
+    public void forceGrouped() throws XAException
+    {
+        try
+        {
+            groupCommit.awaitForced( groupCommit.ticket(), new GroupCommit.ChannelSource()
+            {
+                @Override
+                public StoreChannel currentChannel()
+                {
+                    synchronized ( XaLogicalLog.this )
+                    {
+                        return fileChannel;
+                    }
+                }
+            } );
+        }
+        catch ( IOException e )
+        {
+            throw Exceptions.withCause( new XAException( "Logical log unable to force committed transactions" ), e );
+        }
+    }
+
     // [COMMAND][identifier][COMMAND_DATA]
     public synchronized void writeCommand( XaCommand command, int identifier )
             throws IOException
@@ -702,6 +734,7 @@ public class XaLogicalLog implements LogLoader
         {
             writeBuffer.force();
         }
+        groupCommit.allForced();
         fileChannel.close();
         fileChannel = null;
     }
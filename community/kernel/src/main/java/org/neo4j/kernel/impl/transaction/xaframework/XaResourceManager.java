@@ -20,7 +20,9 @@
 package org.neo4j.kernel.impl.transaction.xaframework;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -38,6 +40,7 @@ import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
 import javax.transaction.xa.Xid;
 
+import org.neo4j.helpers.Exceptions;
 import org.neo4j.kernel.api.exceptions.TransactionFailureException;
 import org.neo4j.kernel.impl.nioneo.xa.NeoStoreTransaction;
 import org.neo4j.kernel.impl.transaction.AbstractTransactionManager;
@@ -75,10 +78,23 @@ public class XaResourceManager
     private StringLogger msgLog;
     private final AbstractTransactionManager transactionManager;
     private final RecoveryVerifier recoveryVerifier;
+    private final boolean groupCommit;
+    /*
+     * Transactions with commit entries written to the log, waiting for a group force or for their turn before
+     * being applied, in commit tx id order. Guarded by this.
+     */
+    private final ArrayDeque<XaTransaction> awaitingApply = new ArrayDeque<>();
+    /*
+     * Why a group force failed, after which no more transactions are group committed. The transaction that failed
+     * and those after it stay in awaitingApply with their commit entries in the log, so that their tx ids aren't
+     * handed out again and nothing is applied with a gap. Recovery takes it from there. Guarded by this.
+     */
+    private XAException groupCommitFailure;
+    private long groupCommitFailedTxId = -1;
 
     public XaResourceManager( XaDataSource dataSource, XaTransactionFactory tf,
                               TxIdGenerator txIdGenerator, AbstractTransactionManager transactionManager,
-                              RecoveryVerifier recoveryVerifier, String name, Monitors monitors )
+                              RecoveryVerifier recoveryVerifier, String name, Monitors monitors, boolean groupCommit )
     {
         this.dataSource = dataSource;
         this.tf = tf;
@@ -87,6 +103,9 @@ public class XaResourceManager
         this.recoveryVerifier = recoveryVerifier;
         this.name = name;
         this.transactionMonitor = monitors.newMonitor( TransactionMonitor.class, getClass(), dataSource.getName() );
+        // Transactions get their ids before being applied when group committing, which only works
+        // if the ids are assigned locally and not by for example a master in a cluster
+        this.groupCommit = groupCommit && txIdGenerator == TxIdGenerator.DEFAULT;
     }
 
     public synchronized void setLogicalLog( XaLogicalLog log )
@@ -510,17 +529,26 @@ public class XaResourceManager
             prepareKernelTx( xaTransaction );
         }
 
-        synchronized ( this )
+        if ( !isReadOnly && !xaTransaction.isRecovered() && groupCommit )
         {
-            if(isReadOnly)
-            {
-                // called for one-phase read-only transactions since they skip prepare
-                // cf. TransactionImpl.doCommit() and prepare()
-                commitReadTx( xid, onePhase, xaTransaction, txStatus );
-            }
-            else
+            // Unforced transactions go through here too, to get their tx ids and be applied in the same
+            // order as the transactions waiting for a force
+            groupCommitWriteTx( xid, onePhase, xaTransaction, txStatus, getForceMode() == ForceMode.forced );
+        }
+        else
+        {
+            synchronized ( this )
             {
-                commitWriteTx( xid, onePhase, xaTransaction, txStatus, txIdGenerator );
+                if(isReadOnly)
+                {
+                    // called for one-phase read-only transactions since they skip prepare
+                    // cf. TransactionImpl.doCommit() and prepare()
+                    commitReadTx( xid, onePhase, xaTransaction, txStatus );
+                }
+                else
+                {
+                    commitWriteTx( xid, onePhase, xaTransaction, txStatus, txIdGenerator );
+                }
             }
         }
 
@@ -568,6 +596,99 @@ public class XaResourceManager
     private void commitWriteTx( Xid xid, boolean onePhase, XaTransaction xaTransaction,
                                 TransactionStatus txStatus, TxIdGenerator txIdGenerator ) throws XAException
     {
+        writeCommitEntry( onePhase, xaTransaction, txStatus, txIdGenerator, false );
+        applyWriteTx( xid, onePhase, xaTransaction, txStatus );
+    }
+
+    /*
+     * Writes the commit entry without forcing it, then, if forced, waits for a force shared with other committers
+     * before applying. Transactions are applied in the order their commit entries were written, which is commit
+     * tx id order, even if their waits for the force end in a different order.
+     */
+    private void groupCommitWriteTx( Xid xid, boolean onePhase, XaTransaction xaTransaction,
+                                     TransactionStatus txStatus, boolean force ) throws XAException
+    {
+        synchronized ( this )
+        {
+            assertGroupCommitNotFailed();
+            writeCommitEntry( onePhase, xaTransaction, txStatus, txIdGenerator, true );
+            awaitingApply.add( xaTransaction );
+        }
+
+        if ( force )
+        {
+            try
+            {
+                log.forceGrouped();
+            }
+            catch ( XAException | RuntimeException | Error e )
+            {
+                synchronized ( this )
+                {
+                    if ( groupCommitFailure == null )
+                    {
+                        groupCommitFailedTxId = xaTransaction.getCommitTxId();
+                        groupCommitFailure = Exceptions.withCause( new XAException(
+                                "Unable to force transaction with tx id " + xaTransaction.getCommitTxId() +
+                                " committed in the logical log, it will be applied by recovery" ), e );
+                        msgLog.error( "Group commit failed", e );
+                    }
+                    notifyAll();
+                }
+                throw e;
+            }
+        }
+
+        synchronized ( this )
+        {
+            boolean interrupted = false;
+            boolean turn = false;
+            try
+            {
+                while ( awaitingApply.peek() != xaTransaction )
+                {
+                    if ( groupCommitFailedTxId != -1 && groupCommitFailedTxId < xaTransaction.getCommitTxId() )
+                    {
+                        assertGroupCommitNotFailed();
+                    }
+                    try
+                    {
+                        wait();
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        // Already committed in the log, so it has to be applied regardless
+                        interrupted = true;
+                    }
+                }
+                turn = true;
+                applyWriteTx( xid, onePhase, xaTransaction, txStatus );
+            }
+            finally
+            {
+                if ( turn )
+                {
+                    awaitingApply.remove( xaTransaction );
+                }
+                notifyAll();
+                if ( interrupted )
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /*
+     * When group committing the commit entry is only written out, not forced, and tx ids are assigned
+     * after those of transactions still awaiting to be applied.
+     */
+    private void writeCommitEntry( boolean onePhase, XaTransaction xaTransaction, TransactionStatus txStatus,
+                                   TxIdGenerator txIdGenerator, boolean grouped ) throws XAException
+    {
+        // The call to getForceMode() is critical for correctness.
+        // See TxManager.getTransaction() for details.
+        ForceMode forceMode = grouped ? ForceMode.unforced : getForceMode();
         checkStartWritten( txStatus, xaTransaction );
 
         if ( onePhase )
@@ -577,13 +698,11 @@ public class XaResourceManager
             {
                 xaTransaction.prepare();
 
-                long txId = txIdGenerator.generate( dataSource,
+                long txId = grouped ? nextGroupCommitTxId() : txIdGenerator.generate( dataSource,
                         xaTransaction.getIdentifier() );
                 xaTransaction.setCommitTxId( txId );
-                // The call to getForceMode() is critical for correctness.
-                // See TxManager.getTransaction() for details.
                 log.commitOnePhase( xaTransaction.getIdentifier(),
-                        xaTransaction.getCommitTxId(), getForceMode() );
+                        xaTransaction.getCommitTxId(), forceMode );
             }
         }
 
@@ -595,15 +714,31 @@ public class XaResourceManager
 
         if ( !onePhase && !xaTransaction.isRecovered() )
         {
-            long txId = txIdGenerator.generate( dataSource,
+            long txId = grouped ? nextGroupCommitTxId() : txIdGenerator.generate( dataSource,
                     xaTransaction.getIdentifier() );
             xaTransaction.setCommitTxId( txId );
-            // The call to getForceMode() is critical for correctness.
-            // See TxManager.getTransaction() for details.
             log.commitTwoPhase( xaTransaction.getIdentifier(),
-                    xaTransaction.getCommitTxId(), getForceMode() );
+                    xaTransaction.getCommitTxId(), forceMode );
         }
+    }
 
+    private void assertGroupCommitNotFailed() throws XAException
+    {
+        if ( groupCommitFailure != null )
+        {
+            throw Exceptions.withCause( new XAException( "Group commit failed earlier" ), groupCommitFailure );
+        }
+    }
+
+    private long nextGroupCommitTxId()
+    {
+        XaTransaction last = awaitingApply.peekLast();
+        return last == null ? dataSource.getLastCommittedTxId() + 1 : last.getCommitTxId() + 1;
+    }
+
+    private void applyWriteTx( Xid xid, boolean onePhase, XaTransaction xaTransaction,
+                               TransactionStatus txStatus ) throws XAException
+    {
         txStatus.markCommitStarted();
 
         if ( xaTransaction.isRecovered() && xaTransaction.getCommitTxId() == -1 )
@@ -850,6 +985,7 @@ public class XaResourceManager
     public synchronized void applyCommittedTransaction(
             ReadableByteChannel transaction, long txId ) throws IOException
     {
+        awaitGroupCommitsApplied();
         long lastCommittedTxId = dataSource.getLastCommittedTxId();
         if ( lastCommittedTxId + 1 == txId )
         {
@@ -865,6 +1001,7 @@ public class XaResourceManager
     public synchronized long applyPreparedTransaction(
             ReadableByteChannel transaction ) throws IOException
     {
+        awaitGroupCommitsApplied();
         try
         {
             long txId = TxIdGenerator.DEFAULT.generate( dataSource, 0 );
@@ -878,6 +1015,30 @@ public class XaResourceManager
         }
     }
 
+    /*
+     * Transactions applied from outside take the tx id after the last applied one, so they have to wait for the
+     * group committed transactions that already have theirs.
+     */
+    private void awaitGroupCommitsApplied() throws IOException
+    {
+        while ( !awaitingApply.isEmpty() )
+        {
+            if ( groupCommitFailure != null )
+            {
+                throw new IOException( "Group commit failed earlier", groupCommitFailure );
+            }
+            try
+            {
+                wait();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "Interrupted while waiting for group committed transactions" );
+            }
+        }
+    }
+
     public synchronized long rotateLogicalLog() throws IOException
     {
         return log.rotate();
@@ -41,6 +41,7 @@ public class RelIdArray implements SizeOfObject
             new DirectionWrapper[] { DirectionWrapper.INCOMING, DirectionWrapper.BOTH };
     private static final DirectionWrapper[] DIRECTIONS_FOR_BOTH =
             new DirectionWrapper[] { DirectionWrapper.OUTGOING, DirectionWrapper.INCOMING, DirectionWrapper.BOTH };
+    private static final long[] EMPTY_IDS = new long[0];
 
     public static class EmptyRelIdArray extends RelIdArray
     {
@@ -930,6 +931,26 @@ public class RelIdArray implements SizeOfObject
         }
     }
 
+    /**
+     * Returns the ids in the block for exactly the given direction, where {@link DirectionWrapper#BOTH}
+     * means the loops. This is unlike {@link #iterator(DirectionWrapper)} which also includes loops
+     * when iterating over {@link DirectionWrapper#OUTGOING} or {@link DirectionWrapper#INCOMING}.
+     */
+    public long[] ids( DirectionWrapper direction )
+    {
+        IdBlock block = direction.getBlock( this );
+        if ( block == null )
+        {
+            return EMPTY_IDS;
+        }
+        long[] result = new long[block.length()];
+        for ( int i = 0; i < result.length; i++ )
+        {
+            result[i] = block.get( i );
+        }
+        return result;
+    }
+
     public int length( DirectionWrapper dir )
     {
         int result = 0;
@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.util.statistics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.neo4j.kernel.api.heuristics.DegreeDistribution;
+
+/**
+ * Histogram of degrees, kept in log-linear buckets: degrees below {@value #EXACT_BUCKETS} get a bucket each,
+ * higher degrees share buckets that each cover 1/{@value #SUB_BUCKETS} of a power of two. This bounds the
+ * error of percentiles to 12.5% while needing at most a few hundred counters for any degree.
+ *
+ * Single writer. Readers should be handed a {@link #copy()}.
+ */
+public class DegreeHistogram implements DegreeDistribution
+{
+    private static final int EXACT_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int EXACT_BITS = 4;
+
+    private long[] counts;
+    private long count;
+    private long sum;
+    private long max;
+
+    public DegreeHistogram()
+    {
+        this( new long[EXACT_BUCKETS], 0, 0, 0 );
+    }
+
+    private DegreeHistogram( long[] counts, long count, long sum, long max )
+    {
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    public void record( long degree )
+    {
+        int bucket = bucketOf( degree );
+        if ( bucket >= counts.length )
+        {
+            counts = Arrays.copyOf( counts, bucket + SUB_BUCKETS );
+        }
+        counts[bucket]++;
+        count++;
+        sum += degree;
+        max = Math.max( max, degree );
+    }
+
+    @Override
+    public long count()
+    {
+        return count;
+    }
+
+    @Override
+    public double mean()
+    {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    @Override
+    public long max()
+    {
+        return max;
+    }
+
+    @Override
+    public long percentile( double fraction )
+    {
+        if ( count == 0 )
+        {
+            return 0;
+        }
+        long rank = Math.max( 1, (long) Math.ceil( Math.min( 1d, Math.max( 0d, fraction ) ) * count ) );
+        long seen = 0;
+        for ( int bucket = 0; bucket < counts.length; bucket++ )
+        {
+            seen += counts[bucket];
+            if ( seen >= rank )
+            {
+                return Math.min( highestDegreeIn( bucket ), max );
+            }
+        }
+        return max;
+    }
+
+    public DegreeHistogram copy()
+    {
+        return new DegreeHistogram( counts.clone(), count, sum, max );
+    }
+
+    /**
+     * Writes only the buckets that have counts, as (bucket, count) pairs.
+     */
+    public void writeTo( DataOutput out ) throws IOException
+    {
+        out.writeLong( count );
+        out.writeLong( sum );
+        out.writeLong( max );
+        int used = 0;
+        for ( long bucketCount : counts )
+        {
+            used += bucketCount == 0 ? 0 : 1;
+        }
+        out.writeShort( used );
+        for ( int bucket = 0; bucket < counts.length; bucket++ )
+        {
+            if ( counts[bucket] != 0 )
+            {
+                out.writeShort( bucket );
+                out.writeLong( counts[bucket] );
+            }
+        }
+    }
+
+    public static DegreeHistogram read( DataInput in ) throws IOException
+    {
+        long count = in.readLong();
+        long sum = in.readLong();
+        long max = in.readLong();
+        int used = in.readShort();
+        long[] counts = new long[Math.max( EXACT_BUCKETS, bucketOf( max ) + 1 )];
+        for ( int i = 0; i < used; i++ )
+        {
+            int bucket = in.readShort();
+            if ( bucket < 0 || bucket >= counts.length )
+            {
+                throw new IOException( "Bucket " + bucket + " out of range for max degree " + max );
+            }
+            counts[bucket] = in.readLong();
+        }
+        return new DegreeHistogram( counts, count, sum, max );
+    }
+
+    static int bucketOf( long degree )
+    {
+        if ( degree < EXACT_BUCKETS )
+        {
+            return (int) Math.max( 0, degree );
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros( degree );
+        int subBucket = (int) (degree >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return EXACT_BUCKETS + (highestBit - EXACT_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestDegreeIn( int bucket )
+    {
+        if ( bucket < EXACT_BUCKETS )
+        {
+            return bucket;
+        }
+        int highestBit = EXACT_BITS + (bucket - EXACT_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (bucket - EXACT_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (highestBit - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS + subBucket) * width) + width - 1;
+    }
+
+    @Override
+    public boolean equals( Object o )
+    {
+        if ( this == o )
+        {
+            return true;
+        }
+        if ( o == null || getClass() != o.getClass() )
+        {
+            return false;
+        }
+        DegreeHistogram that = (DegreeHistogram) o;
+        if ( count != that.count || sum != that.sum || max != that.max )
+        {
+            return false;
+        }
+        for ( int bucket = 0; bucket < Math.max( counts.length, that.counts.length ); bucket++ )
+        {
+            if ( countIn( bucket ) != that.countIn( bucket ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long countIn( int bucket )
+    {
+        return bucket < counts.length ? counts[bucket] : 0;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = (int) (count ^ (count >>> 32));
+        result = 31 * result + (int) (sum ^ (sum >>> 32));
+        result = 31 * result + (int) (max ^ (max >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format( "DegreeHistogram[count:%d, mean:%.2f, p50:%d, p99:%d, max:%d]",
+                count, mean(), percentile( 0.5 ), percentile( 0.99 ), max );
+    }
+}
@@ -21,6 +21,9 @@ package org.neo4j.kernel.impl.util.statistics;
 
 import org.neo4j.helpers.collection.MapUtil;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
@@ -88,6 +91,46 @@ public class LabelledDistribution<T> implements Serializable
         }
     }
 
+    /**
+     * Writes the recorded counts, from which the distribution can be recalculated when read back.
+     */
+    public void writeTo( DataOutput out, LabelWriter<T> labelWriter ) throws IOException
+    {
+        synchronized ( rawData )
+        {
+            out.writeDouble( equalityTolerance );
+            out.writeLong( total );
+            out.writeInt( rawData.size() );
+            for ( Map.Entry<T, Long> entry : rawData.entrySet() )
+            {
+                labelWriter.write( entry.getKey(), out );
+                out.writeLong( entry.getValue() );
+            }
+        }
+    }
+
+    public static <T> LabelledDistribution<T> read( DataInput in, LabelReader<T> labelReader ) throws IOException
+    {
+        LabelledDistribution<T> distribution = new LabelledDistribution<>( in.readDouble() );
+        distribution.total = in.readLong();
+        int size = in.readInt();
+        for ( int i = 0; i < size; i++ )
+        {
+            distribution.rawData.put( labelReader.read( in ), in.readLong() );
+        }
+        return distribution.recalculate();
+    }
+
+    public interface LabelWriter<T>
+    {
+        void write( T label, DataOutput out ) throws IOException;
+    }
+
+    public interface LabelReader<T>
+    {
+        T read( DataInput in ) throws IOException;
+    }
+
     @Override
     public String toString()
     {
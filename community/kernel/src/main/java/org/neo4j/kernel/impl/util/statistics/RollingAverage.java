@@ -21,6 +21,9 @@ package org.neo4j.kernel.impl.util.statistics;
 
 import org.neo4j.helpers.ArrayUtil;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 
 /** Takes a stream of inputs, tracks the average over time, giving more weight to more recent data. */
@@ -63,6 +66,30 @@ public class RollingAverage implements Serializable
         }
     }
 
+    public void writeTo( DataOutput out ) throws IOException
+    {
+        out.writeLong( parameters.windowSize );
+        out.writeDouble( parameters.equalityTolerance );
+        out.writeByte( populatedWindows );
+        for ( double average : averages )
+        {
+            out.writeDouble( average );
+        }
+        out.writeLong( samplesInCurrentWindow );
+    }
+
+    public static RollingAverage read( DataInput in ) throws IOException
+    {
+        RollingAverage average = new RollingAverage( new Parameters( in.readLong(), in.readDouble() ) );
+        average.populatedWindows = in.readByte();
+        for ( int i = 0; i < average.averages.length; i++ )
+        {
+            average.averages[i] = in.readDouble();
+        }
+        average.samplesInCurrentWindow = in.readLong();
+        return average;
+    }
+
     public double average()
     {
         double average = 0;
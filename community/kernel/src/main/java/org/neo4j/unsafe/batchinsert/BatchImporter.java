@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.batchinsert;
+
+/**
+ * Imports a whole graph into an empty store in one go, using all available processors. Unlike a
+ * {@link BatchInserter} it doesn't create one node or relationship at a time, but processes the input in stages
+ * writing each store file sequentially.
+ * <p>
+ * Like the {@link BatchInserter}, this is not thread safe, doesn't support transactions and
+ * {@link #shutdown()} must be called when done, or the store will be left in an unusable state.
+ */
+public interface BatchImporter
+{
+    /**
+     * Imports the given nodes and relationships. The relationships will be iterated over twice, so
+     * {@code relationships} must give a new iterator over the same relationships each time, for example a collection
+     * or something reading from a file, rather than something wrapping a single iterator.
+     *
+     * @param nodes nodes to import, each with a unique id.
+     * @param relationships relationships to import, between nodes from {@code nodes}.
+     * @throws IllegalStateException if the store isn't empty.
+     * @throws IllegalArgumentException if a node id appears twice, a relationship refers to a node not
+     * in {@code nodes}, or {@code relationships} gives different relationships the second time.
+     */
+    void doImport( Iterable<InputNode> nodes, Iterable<InputRelationship> relationships );
+
+    /**
+     * Shuts down this importer and the store.
+     */
+    void shutdown();
+}
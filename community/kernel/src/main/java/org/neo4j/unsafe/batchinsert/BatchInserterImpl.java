@@ -504,7 +504,7 @@ public class BatchInserterImpl implements BatchInserter
         recordAccess.commit();
     }
 
-    private int getOrCreatePropertyKeyId( String name )
+    int getOrCreatePropertyKeyId( String name )
     {
         int propertyKeyId = getPropertyKeyId( name );
         if ( propertyKeyId == -1 )
@@ -514,7 +514,7 @@ public class BatchInserterImpl implements BatchInserter
         return propertyKeyId;
     }
 
-    private int getOrCreateRelationshipTypeToken( RelationshipType type )
+    int getOrCreateRelationshipTypeToken( RelationshipType type )
     {
         int typeId = relationshipTypeTokens.idOf( type.name() );
         if ( typeId == -1 )
@@ -529,7 +529,7 @@ public class BatchInserterImpl implements BatchInserter
         return propertyKeyTokens.idOf( name );
     }
 
-    private int getOrCreateLabelId( String name )
+    int getOrCreateLabelId( String name )
     {
         int labelId = getLabelId( name );
         if ( labelId == -1 )
@@ -988,6 +988,17 @@ public class BatchInserterImpl implements BatchInserter
         return idGeneratorFactory;
     }
 
+    // needed by ParallelBatchImporter
+    NeoStore getNeoStore()
+    {
+        return neoStore;
+    }
+
+    LabelScanStore getLabelScanStore()
+    {
+        return labelScanStore;
+    }
+
     private void dumpConfiguration( Map<String, String> config )
     {
         for ( String key : config.keySet() )
@@ -21,14 +21,18 @@ package org.neo4j.unsafe.batchinsert;
 
 import static org.neo4j.helpers.collection.MapUtil.stringMap;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.neo4j.helpers.Service;
 import org.neo4j.kernel.DefaultFileSystemAbstraction;
 import org.neo4j.kernel.extension.KernelExtensionFactory;
 import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
 
+import static org.neo4j.helpers.Settings.TRUE;
+
 /**
  * Provides instances of batch inserters.
  * <p>
@@ -94,6 +98,55 @@ public final class BatchInserters
         return new BatchInserterImpl( storeDir, fileSystem, config, kernelExtensions );
     }
     
+    /**
+     * Get a {@link BatchImporter} given a store directory.
+     *
+     * @param storeDir the store directory, where the store must be empty
+     * @return a new {@link BatchImporter}
+     */
+    public static BatchImporter importer( String storeDir )
+    {
+        return importer( storeDir, stringMap() );
+    }
+
+    /**
+     * Get a {@link BatchImporter} given a store directory.
+     *
+     * @param storeDir the store directory, where the store must be empty
+     * @param config configuration settings to use
+     * @return a new {@link BatchImporter}
+     */
+    public static BatchImporter importer( String storeDir, Map<String,String> config )
+    {
+        return importer( storeDir, new DefaultFileSystemAbstraction(), config );
+    }
+
+    /**
+     * Get a {@link BatchImporter} given a store directory.
+     *
+     * @param storeDir the store directory, where the store must be empty
+     * @param config configuration settings to use
+     * @return a new {@link BatchImporter}
+     */
+    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    public static BatchImporter importer( String storeDir, FileSystemAbstraction fileSystem,
+            Map<String,String> config )
+    {
+        return importer( storeDir, fileSystem, config, (Iterable) Service.load( KernelExtensionFactory.class ) );
+    }
+
+    public static BatchImporter importer( String storeDir, FileSystemAbstraction fileSystem,
+            Map<String, String> config, Iterable<KernelExtensionFactory<?>> kernelExtensions )
+    {
+        // Stores are written sequentially, which memory mapped windows turn into large writes
+        Map<String,String> importerConfig = new HashMap<>();
+        importerConfig.put( GraphDatabaseSettings.use_memory_mapped_buffers.name(), TRUE );
+        importerConfig.putAll( config );
+        return new ParallelBatchImporter(
+                new BatchInserterImpl( storeDir, fileSystem, importerConfig, kernelExtensions ),
+                Runtime.getRuntime().availableProcessors(), ParallelBatchImporter.BATCH_SIZE );
+    }
+
     /**
      * Get a {@link GraphDatabaseService} that does not support deletions and
      * transactions.
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.batchinsert;
+
+import java.util.Arrays;
+
+/**
+ * Maps {@link InputNode} ids to the node ids assigned to them during import. Ids are {@link #put(long, long) put}
+ * in ascending node id order, then {@link #prepare() prepared} before being {@link #get(long) looked up}.
+ * <p>
+ * As long as input ids are equal to the node ids they get, which is the case when importing a graph which
+ * already has dense ids starting from zero, no mappings are kept. Otherwise mappings are kept in two arrays
+ * sorted by input id and looked up with binary search, which limits the number of nodes to what fits in an array.
+ */
+class IdMapper
+{
+    // some VMs reserve a few header words in arrays
+    private static final int MAX_MAPPINGS = Integer.MAX_VALUE - 8;
+
+    private long[] inputIds = new long[0];
+    private long[] nodeIds = new long[0];
+    private long size;
+    private boolean identity = true;
+
+    void put( long inputId, long nodeId )
+    {
+        if ( identity && inputId == nodeId )
+        {
+            size++;
+            return;
+        }
+        if ( size >= MAX_MAPPINGS )
+        {
+            throw new IllegalArgumentException( "Can only import more than " + MAX_MAPPINGS + " nodes if their " +
+                    "ids are the same as the node ids they get, starting from zero in input order" );
+        }
+        int index = (int) size;
+        if ( identity )
+        {
+            identity = false;
+            inputIds = new long[grow( 16, index )];
+            nodeIds = new long[inputIds.length];
+            for ( int i = 0; i < index; i++ )
+            {
+                inputIds[i] = nodeIds[i] = i;
+            }
+        }
+        if ( index == inputIds.length )
+        {
+            inputIds = Arrays.copyOf( inputIds, grow( 0, index ) );
+            nodeIds = Arrays.copyOf( nodeIds, inputIds.length );
+        }
+        inputIds[index] = inputId;
+        nodeIds[index] = nodeId;
+        size++;
+    }
+
+    void prepare()
+    {
+        if ( identity )
+        {
+            return;
+        }
+        int length = (int) size;
+        inputIds = Arrays.copyOf( inputIds, length );
+        nodeIds = Arrays.copyOf( nodeIds, length );
+        sort( 0, length - 1 );
+        for ( int i = 1; i < length; i++ )
+        {
+            if ( inputIds[i - 1] == inputIds[i] )
+            {
+                throw new IllegalArgumentException( "Node id " + inputIds[i] + " appears more than once in input" );
+            }
+        }
+    }
+
+    long get( long inputId )
+    {
+        if ( identity )
+        {
+            if ( inputId < 0 || inputId >= size )
+            {
+                throw nodeNotFound( inputId );
+            }
+            return inputId;
+        }
+        int index = Arrays.binarySearch( inputIds, inputId );
+        if ( index < 0 )
+        {
+            throw nodeNotFound( inputId );
+        }
+        return nodeIds[index];
+    }
+
+    private IllegalArgumentException nodeNotFound( long inputId )
+    {
+        return new IllegalArgumentException( "Node " + inputId + " not found in input" );
+    }
+
+    // one and a half times the size, at least the given minimum and at most MAX_MAPPINGS
+    private static int grow( int min, int size )
+    {
+        long grown = Math.min( (long) size + size / 2 + 1, MAX_MAPPINGS );
+        return (int) Math.max( min, grown );
+    }
+
+    // quick sort of both arrays by input id, recursing into the smaller part to keep recursion depth down
+    private void sort( int low, int high )
+    {
+        while ( low < high )
+        {
+            long pivot = inputIds[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while ( i <= j )
+            {
+                while ( inputIds[i] < pivot )
+                {
+                    i++;
+                }
+                while ( inputIds[j] > pivot )
+                {
+                    j--;
+                }
+                if ( i <= j )
+                {
+                    swap( i++, j-- );
+                }
+            }
+            if ( j - low < high - i )
+            {
+                sort( low, j );
+                low = i;
+            }
+            else
+            {
+                sort( i, high );
+                high = j;
+            }
+        }
+    }
+
+    private void swap( int a, int b )
+    {
+        long inputId = inputIds[a];
+        inputIds[a] = inputIds[b];
+        inputIds[b] = inputId;
+        long nodeId = nodeIds[a];
+        nodeIds[a] = nodeIds[b];
+        nodeIds[b] = nodeId;
+    }
+}
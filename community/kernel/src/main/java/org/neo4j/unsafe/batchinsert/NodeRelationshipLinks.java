@@ -0,0 +1,295 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.batchinsert;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveIntIterator;
+import org.neo4j.collection.primitive.PrimitiveIntObjectMap;
+import org.neo4j.collection.primitive.PrimitiveLongObjectMap;
+import org.neo4j.collection.primitive.PrimitiveLongObjectVisitor;
+import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipGroupRecord;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipGroupStore;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
+
+/**
+ * Keeps track of the relationship chains of all nodes while {@link ParallelBatchImporter importing} relationships,
+ * linking them in two passes over the relationship store:
+ * <ol>
+ * <li>{@link #linkForward(RelationshipRecord)}, in ascending relationship id order, makes each relationship the new
+ * head of its chains, pointing to the previous head. Afterwards {@link #firstRelationship(long)} and
+ * {@link #writeGroups(long, RelationshipGroupStore)} give what to point to from each node.</li>
+ * <li>{@link #linkBackward(RelationshipRecord)}, in descending relationship id order, sets the pointers back
+ * to the previous relationship in each chain, or the chain length for the first one.</li>
+ * </ol>
+ * Nodes with at least as many relationships as the dense node threshold, as {@link #incrementDegree(long, long)
+ * counted} before linking, get one chain per relationship type and direction, connected through relationship
+ * groups. Other nodes get one chain with all their relationships.
+ * <p>
+ * Degrees and chain heads are kept per node in chunks of {@link #CHUNK_SIZE} nodes, so that node ids aren't limited
+ * to what fits in an int. Chunks are allocated when the first relationship of a node in them is counted.
+ */
+class NodeRelationshipLinks
+{
+    private static final int OUT = 0, IN = 1, LOOP = 2;
+    private static final long NONE = Record.NO_NEXT_RELATIONSHIP.intValue();
+    private static final int CHUNK_SHIFT = 20;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final AtomicReferenceArray<AtomicIntegerArray> degrees;
+    private final long[][] heads;
+    private final PrimitiveLongObjectMap<DenseNode> denseNodes = Primitive.longObjectMap();
+
+    NodeRelationshipLinks( long nodeCount )
+    {
+        long chunks = (nodeCount + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+        if ( chunks > Integer.MAX_VALUE )
+        {
+            throw new IllegalArgumentException( "Too many nodes: " + nodeCount );
+        }
+        this.degrees = new AtomicReferenceArray<>( (int) chunks );
+        this.heads = new long[(int) chunks][];
+    }
+
+    /**
+     * Counts a relationship between {@code startNode} and {@code endNode}, safe to call concurrently.
+     */
+    void incrementDegree( long startNode, long endNode )
+    {
+        degreeChunk( startNode ).incrementAndGet( offset( startNode ) );
+        if ( startNode != endNode )
+        {
+            degreeChunk( endNode ).incrementAndGet( offset( endNode ) );
+        }
+    }
+
+    int degree( long node )
+    {
+        AtomicIntegerArray chunk = degrees.get( chunk( node ) );
+        return chunk == null ? 0 : chunk.get( offset( node ) );
+    }
+
+    void prepareForwardLinking( int denseNodeThreshold )
+    {
+        for ( int chunk = 0; chunk < heads.length; chunk++ )
+        {
+            AtomicIntegerArray chunkDegrees = degrees.get( chunk );
+            if ( chunkDegrees == null )
+            {
+                // no relationships in this chunk, so no heads to keep either
+                continue;
+            }
+            heads[chunk] = new long[CHUNK_SIZE];
+            Arrays.fill( heads[chunk], NONE );
+            for ( int offset = 0; offset < CHUNK_SIZE; offset++ )
+            {
+                if ( chunkDegrees.get( offset ) >= denseNodeThreshold )
+                {
+                    denseNodes.put( ((long) chunk << CHUNK_SHIFT) | offset, new DenseNode() );
+                }
+            }
+        }
+    }
+
+    void linkForward( RelationshipRecord rel )
+    {
+        long start = rel.getFirstNode();
+        long end = rel.getSecondNode();
+        if ( start == end )
+        {
+            long next = swapHead( start, rel.getType(), LOOP, rel.getId(), true );
+            rel.setFirstNextRel( next );
+            rel.setSecondNextRel( next );
+        }
+        else
+        {
+            rel.setFirstNextRel( swapHead( start, rel.getType(), OUT, rel.getId(), true ) );
+            rel.setSecondNextRel( swapHead( end, rel.getType(), IN, rel.getId(), true ) );
+        }
+    }
+
+    boolean isDense( long node )
+    {
+        return denseNodes.containsKey( node );
+    }
+
+    /**
+     * @return the first relationship in the chain of a node which isn't dense.
+     */
+    long firstRelationship( long node )
+    {
+        return heads[chunk( node )][offset( node )];
+    }
+
+    /**
+     * Writes the relationship groups of a dense node, sorted by type.
+     *
+     * @return the id of the first group.
+     */
+    long writeGroups( long node, RelationshipGroupStore groupStore )
+    {
+        PrimitiveIntObjectMap<long[]> chains = denseNodes.get( node ).chains;
+        int[] types = new int[chains.size()];
+        int i = 0;
+        for ( PrimitiveIntIterator type = chains.iterator(); type.hasNext(); )
+        {
+            types[i++] = type.next();
+        }
+        Arrays.sort( types );
+        long[] ids = new long[types.length];
+        for ( i = 0; i < ids.length; i++ )
+        {
+            ids[i] = groupStore.nextId();
+        }
+        for ( i = 0; i < types.length; i++ )
+        {
+            long[] chain = chains.get( types[i] );
+            RelationshipGroupRecord group = new RelationshipGroupRecord( ids[i], types[i] );
+            group.setInUse( true );
+            group.setCreated();
+            group.setOwningNode( node );
+            group.setFirstOut( chain[OUT] );
+            group.setFirstIn( chain[IN] );
+            group.setFirstLoop( chain[LOOP] );
+            group.setNext( i + 1 < ids.length ? ids[i + 1] : NONE );
+            groupStore.updateRecord( group );
+        }
+        return ids[0];
+    }
+
+    void prepareBackwardLinking()
+    {
+        for ( long[] chunk : heads )
+        {
+            if ( chunk != null )
+            {
+                Arrays.fill( chunk, NONE );
+            }
+        }
+        denseNodes.visitEntries( new PrimitiveLongObjectVisitor<DenseNode>()
+        {
+            @Override
+            public void visited( long node, DenseNode dense )
+            {
+                for ( PrimitiveIntIterator type = dense.chains.iterator(); type.hasNext(); )
+                {
+                    Arrays.fill( dense.chains.get( type.next() ), OUT, LOOP + 1, NONE );
+                }
+            }
+        } );
+    }
+
+    void linkBackward( RelationshipRecord rel )
+    {
+        long start = rel.getFirstNode();
+        long end = rel.getSecondNode();
+        if ( start == end )
+        {
+            long previous = swapHead( start, rel.getType(), LOOP, rel.getId(), false );
+            boolean first = previous == NONE;
+            long prevOrCount = first ? chainLength( start, rel.getType(), LOOP ) : previous;
+            rel.setFirstPrevRel( prevOrCount );
+            rel.setFirstInFirstChain( first );
+            rel.setSecondPrevRel( prevOrCount );
+            rel.setFirstInSecondChain( first );
+        }
+        else
+        {
+            long previous = swapHead( start, rel.getType(), OUT, rel.getId(), false );
+            rel.setFirstInFirstChain( previous == NONE );
+            rel.setFirstPrevRel( previous == NONE ? chainLength( start, rel.getType(), OUT ) : previous );
+            previous = swapHead( end, rel.getType(), IN, rel.getId(), false );
+            rel.setFirstInSecondChain( previous == NONE );
+            rel.setSecondPrevRel( previous == NONE ? chainLength( end, rel.getType(), IN ) : previous );
+        }
+    }
+
+    // sets the head of the chain the relationship goes into to the relationship and returns the previous head,
+    // counting the chain length of dense nodes while linking forward
+    private long swapHead( long node, int type, int direction, long relId, boolean forward )
+    {
+        DenseNode dense = denseNodes.get( node );
+        if ( dense == null )
+        {
+            long[] chunk = heads[chunk( node )];
+            long previous = chunk[offset( node )];
+            chunk[offset( node )] = relId;
+            return previous;
+        }
+        long[] chain = dense.chain( type );
+        long previous = chain[direction];
+        chain[direction] = relId;
+        if ( forward )
+        {
+            chain[LOOP + 1 + direction]++;
+        }
+        return previous;
+    }
+
+    private long chainLength( long node, int type, int direction )
+    {
+        DenseNode dense = denseNodes.get( node );
+        return dense == null ? degree( node ) : dense.chain( type )[LOOP + 1 + direction];
+    }
+
+    private AtomicIntegerArray degreeChunk( long node )
+    {
+        int index = chunk( node );
+        AtomicIntegerArray chunk = degrees.get( index );
+        if ( chunk == null )
+        {
+            degrees.compareAndSet( index, null, new AtomicIntegerArray( CHUNK_SIZE ) );
+            chunk = degrees.get( index );
+        }
+        return chunk;
+    }
+
+    private static int chunk( long node )
+    {
+        return (int) (node >>> CHUNK_SHIFT);
+    }
+
+    private static int offset( long node )
+    {
+        return (int) (node & CHUNK_MASK);
+    }
+
+    private static class DenseNode
+    {
+        // per type: head of the outgoing, incoming and loop chains followed by their lengths
+        private final PrimitiveIntObjectMap<long[]> chains = Primitive.intObjectMap();
+
+        long[] chain( int type )
+        {
+            long[] chain = chains.get( type );
+            if ( chain == null )
+            {
+                chain = new long[]{NONE, NONE, NONE, 0, 0, 0};
+                chains.put( type, chain );
+            }
+            return chain;
+        }
+    }
+}
@@ -0,0 +1,568 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.batchinsert;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.helpers.NamedThreadFactory;
+import org.neo4j.kernel.api.labelscan.NodeLabelUpdate;
+import org.neo4j.kernel.impl.nioneo.store.IdGeneratorImpl;
+import org.neo4j.kernel.impl.nioneo.store.NeoStore;
+import org.neo4j.kernel.impl.nioneo.store.NodeRecord;
+import org.neo4j.kernel.impl.nioneo.store.NodeStore;
+import org.neo4j.kernel.impl.nioneo.store.PropertyBlock;
+import org.neo4j.kernel.impl.nioneo.store.PropertyRecord;
+import org.neo4j.kernel.impl.nioneo.store.PropertyStore;
+import org.neo4j.kernel.impl.nioneo.store.PropertyType;
+import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipStore;
+import org.neo4j.kernel.impl.nioneo.store.UnderlyingStorageException;
+
+import static org.neo4j.helpers.Exceptions.launderedException;
+import static org.neo4j.kernel.impl.nioneo.store.labels.NodeLabelsField.parseLabelsField;
+
+/**
+ * A {@link BatchImporter} processing its input in batches, in these stages:
+ * <ol>
+ * <li>Nodes are assigned ids, in input order. Their labels and properties are encoded into records by a
+ * number of threads, after which they are written to the node, property and label scan stores in id order.</li>
+ * <li>Relationships are counted per node, by a number of threads, to find out which nodes are dense.</li>
+ * <li>Relationships are assigned ids and encoded, like nodes, and written in id order, linking them
+ * forward into the relationship chains of their nodes, see {@link NodeRelationshipLinks}.</li>
+ * <li>Nodes are updated to point to their first relationship, or relationship group which are written
+ * at the same time for dense nodes, in a pass over the node store.</li>
+ * <li>Relationships are linked back to their previous relationships in a pass backwards over the relationship
+ * store.</li>
+ * </ol>
+ * Each store file is written from a single thread in id order, so that writes are sequential.
+ */
+class ParallelBatchImporter implements BatchImporter
+{
+    static final int BATCH_SIZE = 10_000;
+    private static final PropertyBlock[] NO_PROPERTIES = new PropertyBlock[0];
+    private static final long[] NO_LABELS = new long[0];
+
+    private final BatchInserterImpl inserter;
+    private final NeoStore neoStore;
+    private final NodeStore nodeStore;
+    private final RelationshipStore relationshipStore;
+    private final PropertyStore propertyStore;
+    private final int processors;
+    private final int batchSize;
+
+    private final ConcurrentMap<String,Integer> propertyKeys = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String,Integer> labels = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String,Integer> relationshipTypes = new ConcurrentHashMap<>();
+
+    ParallelBatchImporter( BatchInserterImpl inserter, int processors, int batchSize )
+    {
+        this.inserter = inserter;
+        this.neoStore = inserter.getNeoStore();
+        this.nodeStore = neoStore.getNodeStore();
+        this.relationshipStore = neoStore.getRelationshipStore();
+        this.propertyStore = neoStore.getPropertyStore();
+        this.processors = processors;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void doImport( Iterable<InputNode> nodes, Iterable<InputRelationship> relationships )
+    {
+        if ( nodeStore.getHighId() != 0 || relationshipStore.getHighId() != 0 )
+        {
+            throw new IllegalStateException( "Can only import into an empty store" );
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( processors,
+                new NamedThreadFactory( getClass().getSimpleName() ) );
+        try
+        {
+            IdMapper idMapper = new IdMapper();
+            LabelScanWriter labelScanWriter = inserter.getLabelScanStore().newWriter();
+            try
+            {
+                new NodeStage( executor, idMapper, labelScanWriter ).run( nodes );
+            }
+            finally
+            {
+                labelScanWriter.close();
+            }
+            idMapper.prepare();
+
+            NodeRelationshipLinks links = new NodeRelationshipLinks( nodeStore.getHighId() );
+            long counted = new RelationshipCountStage( executor, idMapper, links ).run( relationships );
+            links.prepareForwardLinking( neoStore.getDenseNodeThreshold() );
+            long imported = new RelationshipStage( executor, idMapper, links ).run( relationships );
+            if ( imported != counted )
+            {
+                throw new IllegalArgumentException( "Got " + counted + " relationships the first time iterating " +
+                        "over them and " + imported + " the second time, relationships must be iterable more than " +
+                        "once, giving the same relationships each time" );
+            }
+            linkNodes( links );
+            links.prepareBackwardLinking();
+            linkRelationshipsBackward( links );
+        }
+        catch ( IOException e )
+        {
+            throw new UnderlyingStorageException( e );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private void linkNodes( NodeRelationshipLinks links )
+    {
+        long highId = nodeStore.getHighId();
+        for ( long id = 0; id < highId; id++ )
+        {
+            if ( links.degree( id ) == 0 )
+            {
+                continue;
+            }
+            NodeRecord node = nodeStore.getRecord( id );
+            if ( links.isDense( id ) )
+            {
+                node.setDense( true );
+                node.setNextRel( links.writeGroups( id, neoStore.getRelationshipGroupStore() ) );
+            }
+            else
+            {
+                node.setNextRel( links.firstRelationship( id ) );
+            }
+            nodeStore.updateRecord( node );
+        }
+    }
+
+    private void linkRelationshipsBackward( NodeRelationshipLinks links )
+    {
+        for ( long id = relationshipStore.getHighId() - 1; id >= 0; id-- )
+        {
+            if ( id == IdGeneratorImpl.INTEGER_MINUS_ONE )
+            {
+                continue;
+            }
+            RelationshipRecord relationship = relationshipStore.getRecord( id );
+            links.linkBackward( relationship );
+            relationshipStore.updateRecord( relationship );
+        }
+    }
+
+    @Override
+    public void shutdown()
+    {
+        inserter.shutdown();
+    }
+
+    /**
+     * Goes through the input in batches. A batch is {@link #prepare(List) prepared} in the calling thread,
+     * {@link #process(Object) processed} by one of the threads in the executor and then
+     * {@link #write(Object) written} in the calling thread, in the order the batches were prepared.
+     */
+    private abstract class Stage<INPUT,BATCH>
+    {
+        private final ExecutorService executor;
+        private final Deque<Future<BATCH>> pending = new ArrayDeque<>();
+
+        Stage( ExecutorService executor )
+        {
+            this.executor = executor;
+        }
+
+        /**
+         * @return the number of items in the input.
+         */
+        long run( Iterable<INPUT> input ) throws IOException
+        {
+            long count = 0;
+            List<INPUT> items = new ArrayList<>( batchSize );
+            for ( INPUT item : input )
+            {
+                count++;
+                items.add( item );
+                if ( items.size() == batchSize )
+                {
+                    submit( items );
+                    items = new ArrayList<>( batchSize );
+                }
+            }
+            if ( !items.isEmpty() )
+            {
+                submit( items );
+            }
+            while ( !pending.isEmpty() )
+            {
+                writeNext();
+            }
+            return count;
+        }
+
+        private void submit( List<INPUT> items ) throws IOException
+        {
+            final BATCH batch = prepare( items );
+            pending.add( executor.submit( new Callable<BATCH>()
+            {
+                @Override
+                public BATCH call() throws Exception
+                {
+                    process( batch );
+                    return batch;
+                }
+            } ) );
+            // bound the number of batches in memory
+            if ( pending.size() > processors * 2 )
+            {
+                writeNext();
+            }
+        }
+
+        private void writeNext() throws IOException
+        {
+            try
+            {
+                write( pending.poll().get() );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException( "Interrupted while importing", e );
+            }
+            catch ( ExecutionException e )
+            {
+                throw launderedException( e.getCause() );
+            }
+        }
+
+        protected abstract BATCH prepare( List<INPUT> items );
+
+        protected abstract void process( BATCH batch ) throws Exception;
+
+        protected abstract void write( BATCH batch ) throws IOException;
+    }
+
+    private static class NodeBatch
+    {
+        final List<InputNode> input;
+        final NodeRecord[] records;
+        final PropertyBlock[][] properties;
+        final long[][] labels;
+
+        NodeBatch( List<InputNode> input )
+        {
+            this.input = input;
+            this.records = new NodeRecord[input.size()];
+            this.properties = new PropertyBlock[input.size()][];
+            this.labels = new long[input.size()][];
+        }
+    }
+
+    private class NodeStage extends Stage<InputNode,NodeBatch>
+    {
+        private final IdMapper idMapper;
+        private final LabelScanWriter labelScanWriter;
+
+        NodeStage( ExecutorService executor, IdMapper idMapper, LabelScanWriter labelScanWriter )
+        {
+            super( executor );
+            this.idMapper = idMapper;
+            this.labelScanWriter = labelScanWriter;
+        }
+
+        @Override
+        protected NodeBatch prepare( List<InputNode> items )
+        {
+            NodeBatch batch = new NodeBatch( items );
+            for ( int i = 0; i < items.size(); i++ )
+            {
+                long id = nodeStore.nextId();
+                idMapper.put( items.get( i ).getId(), id );
+                batch.records[i] = new NodeRecord( id, false, Record.NO_NEXT_RELATIONSHIP.intValue(),
+                        Record.NO_NEXT_PROPERTY.intValue() );
+            }
+            return batch;
+        }
+
+        @Override
+        protected void process( NodeBatch batch )
+        {
+            for ( int i = 0; i < batch.records.length; i++ )
+            {
+                InputNode input = batch.input.get( i );
+                NodeRecord record = batch.records[i];
+                record.setInUse( true );
+                record.setCreated();
+                batch.labels[i] = labelIds( input.getLabels() );
+                if ( batch.labels[i].length > 0 )
+                {
+                    parseLabelsField( record ).put( batch.labels[i], nodeStore );
+                }
+                batch.properties[i] = encodeProperties( input.getProperties() );
+            }
+        }
+
+        @Override
+        protected void write( NodeBatch batch ) throws IOException
+        {
+            for ( int i = 0; i < batch.records.length; i++ )
+            {
+                NodeRecord record = batch.records[i];
+                record.setNextProp( writeProperties( batch.properties[i] ) );
+                nodeStore.updateDynamicLabelRecords( record.getDynamicLabelRecords() );
+                nodeStore.updateRecord( record );
+                if ( batch.labels[i].length > 0 )
+                {
+                    labelScanWriter.write( NodeLabelUpdate.labelChanges( record.getId(), NO_LABELS,
+                            batch.labels[i] ) );
+                }
+            }
+        }
+    }
+
+    private static class RelationshipBatch
+    {
+        final List<InputRelationship> input;
+        final RelationshipRecord[] records;
+        final PropertyBlock[][] properties;
+
+        RelationshipBatch( List<InputRelationship> input )
+        {
+            this.input = input;
+            this.records = new RelationshipRecord[input.size()];
+            this.properties = new PropertyBlock[input.size()][];
+        }
+    }
+
+    private class RelationshipCountStage extends Stage<InputRelationship,List<InputRelationship>>
+    {
+        private final IdMapper idMapper;
+        private final NodeRelationshipLinks links;
+
+        RelationshipCountStage( ExecutorService executor, IdMapper idMapper, NodeRelationshipLinks links )
+        {
+            super( executor );
+            this.idMapper = idMapper;
+            this.links = links;
+        }
+
+        @Override
+        protected List<InputRelationship> prepare( List<InputRelationship> items )
+        {
+            return items;
+        }
+
+        @Override
+        protected void process( List<InputRelationship> batch )
+        {
+            for ( InputRelationship input : batch )
+            {
+                links.incrementDegree( idMapper.get( input.getStartNode() ), idMapper.get( input.getEndNode() ) );
+            }
+        }
+
+        @Override
+        protected void write( List<InputRelationship> batch )
+        {   // nothing to write, the relationships have been counted
+        }
+    }
+
+    private class RelationshipStage extends Stage<InputRelationship,RelationshipBatch>
+    {
+        private final IdMapper idMapper;
+        private final NodeRelationshipLinks links;
+
+        RelationshipStage( ExecutorService executor, IdMapper idMapper, NodeRelationshipLinks links )
+        {
+            super( executor );
+            this.idMapper = idMapper;
+            this.links = links;
+        }
+
+        @Override
+        protected RelationshipBatch prepare( List<InputRelationship> items )
+        {
+            RelationshipBatch batch = new RelationshipBatch( items );
+            for ( int i = 0; i < items.size(); i++ )
+            {
+                batch.records[i] = new RelationshipRecord( relationshipStore.nextId() );
+            }
+            return batch;
+        }
+
+        @Override
+        protected void process( RelationshipBatch batch )
+        {
+            for ( int i = 0; i < batch.records.length; i++ )
+            {
+                InputRelationship input = batch.input.get( i );
+                RelationshipRecord record = batch.records[i];
+                record.setLinks( idMapper.get( input.getStartNode() ), idMapper.get( input.getEndNode() ),
+                        relationshipTypeId( input.getType() ) );
+                record.setInUse( true );
+                record.setCreated();
+                batch.properties[i] = encodeProperties( input.getProperties() );
+            }
+        }
+
+        @Override
+        protected void write( RelationshipBatch batch )
+        {
+            for ( int i = 0; i < batch.records.length; i++ )
+            {
+                RelationshipRecord record = batch.records[i];
+                links.linkForward( record );
+                record.setNextProp( writeProperties( batch.properties[i] ) );
+                relationshipStore.updateRecord( record );
+            }
+        }
+    }
+
+    private PropertyBlock[] encodeProperties( Map<String,Object> properties )
+    {
+        if ( properties == null || properties.isEmpty() )
+        {
+            return NO_PROPERTIES;
+        }
+        PropertyBlock[] blocks = new PropertyBlock[properties.size()];
+        int i = 0;
+        for ( Map.Entry<String,Object> property : properties.entrySet() )
+        {
+            PropertyBlock block = new PropertyBlock();
+            propertyStore.encodeValue( block, propertyKeyId( property.getKey() ), property.getValue() );
+            blocks[i++] = block;
+        }
+        return blocks;
+    }
+
+    // assigns ids to and writes the property records holding the blocks, returning the id of the first one
+    private long writeProperties( PropertyBlock[] blocks )
+    {
+        if ( blocks.length == 0 )
+        {
+            return Record.NO_NEXT_PROPERTY.intValue();
+        }
+        PropertyRecord current = newPropertyRecord();
+        long first = current.getId();
+        for ( PropertyBlock block : blocks )
+        {
+            if ( current.size() + block.getSize() > PropertyType.getPayloadSize() )
+            {
+                PropertyRecord next = newPropertyRecord();
+                current.setNextProp( next.getId() );
+                next.setPrevProp( current.getId() );
+                propertyStore.updateRecord( current );
+                current = next;
+            }
+            current.addPropertyBlock( block );
+        }
+        propertyStore.updateRecord( current );
+        return first;
+    }
+
+    private PropertyRecord newPropertyRecord()
+    {
+        PropertyRecord record = new PropertyRecord( propertyStore.nextId() );
+        record.setInUse( true );
+        record.setCreated();
+        return record;
+    }
+
+    private long[] labelIds( Label[] labels )
+    {
+        if ( labels == null || labels.length == 0 )
+        {
+            return NO_LABELS;
+        }
+        long[] ids = new long[labels.length];
+        for ( int i = 0; i < labels.length; i++ )
+        {
+            ids[i] = labelId( labels[i].name() );
+        }
+        Arrays.sort( ids );
+        int unique = 1;
+        for ( int i = 1; i < ids.length; i++ )
+        {
+            if ( ids[i] != ids[unique - 1] )
+            {
+                ids[unique++] = ids[i];
+            }
+        }
+        return unique == ids.length ? ids : Arrays.copyOf( ids, unique );
+    }
+
+    private int propertyKeyId( String name )
+    {
+        Integer id = propertyKeys.get( name );
+        if ( id == null )
+        {
+            synchronized ( inserter )
+            {
+                id = inserter.getOrCreatePropertyKeyId( name );
+            }
+            propertyKeys.put( name, id );
+        }
+        return id;
+    }
+
+    private int labelId( String name )
+    {
+        Integer id = labels.get( name );
+        if ( id == null )
+        {
+            synchronized ( inserter )
+            {
+                id = inserter.getOrCreateLabelId( name );
+            }
+            labels.put( name, id );
+        }
+        return id;
+    }
+
+    private int relationshipTypeId( RelationshipType type )
+    {
+        Integer id = relationshipTypes.get( type.name() );
+        if ( id == null )
+        {
+            synchronized ( inserter )
+            {
+                id = inserter.getOrCreateRelationshipTypeToken( type );
+            }
+            relationshipTypes.put( type.name(), id );
+        }
+        return id;
+    }
+}
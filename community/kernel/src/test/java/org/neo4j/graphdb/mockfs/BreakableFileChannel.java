@@ -107,6 +107,7 @@ public class BreakableFileChannel implements StoreChannel
     @Override
     public void force( boolean b ) throws IOException
     {
+        fs.checkOperation( BreakableFileSystemAbstraction.OperationType.FORCE, theFile, bytesWritten, 0, inner.position() );
         inner.force( b );
     }
 
@@ -31,7 +31,7 @@ public interface FileSystemGuard
 {
     public enum OperationType
     {
-        WRITE, READ;
+        WRITE, READ, FORCE;
     }
 
     /**
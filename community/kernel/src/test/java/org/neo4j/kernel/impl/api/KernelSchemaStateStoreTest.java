@@ -22,8 +22,11 @@ package org.neo4j.kernel.impl.api;
 import org.junit.Before;
 import org.junit.Test;
 import org.neo4j.helpers.collection.MapUtil;
+import org.neo4j.kernel.api.SchemaChangeAware;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 
 public class KernelSchemaStateStoreTest
 {
@@ -57,6 +60,23 @@ public class KernelSchemaStateStoreTest
         assertEquals( null, result );
     }
 
+    @Test
+    public void should_only_keep_schema_change_aware_values_on_invalidation()
+    {
+        // GIVEN
+        SchemaChangeAware aware = mock( SchemaChangeAware.class );
+        stateStore.apply( MapUtil.stringMap( "key", "created_value" ) );
+        stateStore.apply( MapUtil.<String, Object>genericMap( "aware", aware ) );
+
+        // WHEN
+        stateStore.invalidate( 1, 2 );
+
+        // THEN
+        assertEquals( null, stateStore.get( "key" ) );
+        assertSame( aware, stateStore.get( "aware" ) );
+        verify( aware ).schemaChanged( 1, 2 );
+    }
+
     @Before
     public void before()
     {
@@ -54,6 +54,7 @@ import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
 import org.neo4j.kernel.impl.locking.LockService;
 import org.neo4j.kernel.impl.nioneo.xa.NeoStoreIndexStoreView;
 import org.neo4j.kernel.impl.transaction.XaDataSourceManager;
+import org.neo4j.kernel.impl.util.JobScheduler;
 import org.neo4j.kernel.impl.util.StringLogger;
 import org.neo4j.kernel.impl.util.TestLogger;
 import org.neo4j.kernel.logging.SingleLoggingService;
@@ -72,7 +73,9 @@ import static org.mockito.Mockito.RETURNS_MOCKS;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -151,6 +154,65 @@ public class IndexPopulationJobTest
         verifyNoMoreInteractions( populator );
     }
 
+    @Test
+    public void shouldPopulateMultipleIndexesInOneStoreScan() throws Exception
+    {
+        // GIVEN
+        long node1 = createNode( map( name, "Mattias" ), FIRST );
+        long node2 = createNode( map( age, 35, name, "Jacob" ), FIRST );
+        long node3 = createNode( map( age, 31 ), SECOND );
+        IndexPopulator agePopulator = mock( IndexPopulator.class );
+        IndexStoreView storeView = spy( indexStoreView );
+        IndexPopulationJob job = new IndexPopulationJob( storeView, stateHolder, jobScheduler,
+                new SingleLoggingService( StringLogger.DEV_NULL ), IndexingService.NO_MONITOR );
+        addPopulation( job, FIRST, name, populator );
+        addPopulation( job, SECOND, age, agePopulator );
+
+        // WHEN
+        job.run();
+
+        // THEN
+        verify( populator ).add( node1, "Mattias" );
+        verify( populator ).add( node2, "Jacob" );
+        verify( populator ).close( true );
+        verify( agePopulator ).add( node3, 31 );
+        verify( agePopulator ).close( true );
+        verify( storeView, times( 1 ) ).visitNodes( any( int[].class ), any( int[].class ), anyLong(), anyLong(),
+                Matchers.<Visitor<NodePropertyUpdate, RuntimeException>>any() );
+    }
+
+    @Test
+    public void shouldPopulateIndexScanningMultiplePartitions() throws Exception
+    {
+        // GIVEN
+        Map<Long, Object> nodes = new HashMap<>();
+        for ( int i = 0; i < 20; i++ )
+        {
+            String value = "value" + i;
+            nodes.put( createNode( map( name, value ), FIRST ), value );
+        }
+        IndexingService.Monitor monitor = mock( IndexingService.Monitor.class );
+        JobScheduler scheduler = spy( jobScheduler );
+        IndexPopulationJob job = new IndexPopulationJob( indexStoreView, stateHolder, scheduler,
+                new SingleLoggingService( StringLogger.DEV_NULL ), monitor, 4, 5 );
+        IndexPopulationJob.IndexPopulation population = addPopulation( job, FIRST, name, populator );
+
+        // WHEN
+        job.run();
+
+        // THEN
+        for ( Map.Entry<Long, Object> node : nodes.entrySet() )
+        {
+            verify( populator ).add( node.getKey(), node.getValue() );
+        }
+        verify( populator ).close( true );
+        PopulationProgress progress = population.progress();
+        assertEquals( progress.getTotalNodes(), progress.getScannedNodes() );
+        assertEquals( nodes.size(), progress.getEntries() );
+        verify( monitor ).populationProgress( any( IndexDescriptor.class ), any( PopulationProgress.class ) );
+        verify( scheduler, times( 3 ) ).schedule( eq( JobScheduler.Group.indexPopulation ), any( Runnable.class ) );
+    }
+
     @Test
     public void shouldIndexUpdatesWhenDoingThePopulation() throws Exception
     {
@@ -230,7 +292,7 @@ public class IndexPopulationJobTest
         FlippableIndexProxy index = mock( FlippableIndexProxy.class );
         IndexStoreView storeView = mock( IndexStoreView.class );
         ControlledStoreScan storeScan = new ControlledStoreScan();
-        when( storeView.visitNodesWithPropertyAndLabel( any( IndexDescriptor.class ),
+        when( storeView.visitNodes( any( int[].class ), any( int[].class ), anyLong(), anyLong(),
                 Matchers.<Visitor<NodePropertyUpdate, RuntimeException>>any() ) ).thenReturn( storeScan );
 
 
@@ -526,6 +588,7 @@ public class IndexPopulationJobTest
     private NeoStoreIndexStoreView indexStoreView;
     private IndexPopulator populator;
     private KernelSchemaStateStore stateHolder;
+    private JobScheduler jobScheduler;
 
     private int labelId;
 
@@ -536,6 +599,7 @@ public class IndexPopulationJobTest
         ctxProvider = db.getDependencyResolver().resolveDependency( ThreadToStatementContextBridge.class );
         populator = mock( IndexPopulator.class );
         stateHolder = new KernelSchemaStateStore();
+        jobScheduler = db.getDependencyResolver().resolveDependency( JobScheduler.class );
         indexStoreView = newStoreView();
 
         try ( Transaction tx = db.beginTx() )
@@ -577,22 +641,36 @@ public class IndexPopulationJobTest
                                                       FlippableIndexProxy flipper, IndexStoreView storeView,
                                                       StringLogger logger )
     {
-        IndexDescriptor descriptor;
-        try ( Transaction tx = db.beginTx() )
-        {
-            ReadOperations statement = ctxProvider.instance().readOperations();
-            descriptor = new IndexDescriptor( statement.labelGetForName( label.name() ),
-                    statement.propertyKeyGetForName( propertyKey ) );
-            tx.success();
-        }
-
+        IndexDescriptor descriptor = indexDescriptor( label, propertyKey );
         flipper.setFlipTarget( mock( IndexProxyFactory.class ) );
         return new IndexPopulationJob(
                 descriptor, PROVIDER_DESCRIPTOR,
                 format( ":%s(%s)", label.name(), propertyKey ),
                 failureDelegateFactory,
                 populator, flipper, storeView,
-                stateHolder, new SingleLoggingService( logger ) );
+                stateHolder, jobScheduler, new SingleLoggingService( logger ) );
+    }
+
+    private IndexPopulationJob.IndexPopulation addPopulation( IndexPopulationJob job, Label label,
+                                                              String propertyKey, IndexPopulator populator )
+    {
+        FlippableIndexProxy flipper = new FlippableIndexProxy();
+        flipper.setFlipTarget( mock( IndexProxyFactory.class ) );
+        return job.addPopulation( indexDescriptor( label, propertyKey ), PROVIDER_DESCRIPTOR,
+                format( ":%s(%s)", label.name(), propertyKey ), mock( FailedIndexProxyFactory.class ),
+                populator, flipper );
+    }
+
+    private IndexDescriptor indexDescriptor( Label label, String propertyKey )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            ReadOperations statement = ctxProvider.instance().readOperations();
+            IndexDescriptor descriptor = new IndexDescriptor( statement.labelGetForName( label.name() ),
+                    statement.propertyKeyGetForName( propertyKey ) );
+            tx.success();
+            return descriptor;
+        }
     }
 
     private long createNode( Map<String, Object> properties, Label... labels )
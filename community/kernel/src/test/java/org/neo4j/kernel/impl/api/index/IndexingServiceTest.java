@@ -521,14 +521,14 @@ public class IndexingServiceTest
 
         void getsProcessedByStoreScanFrom( IndexStoreView mock )
         {
-            when( mock.visitNodesWithPropertyAndLabel( any( IndexDescriptor.class ), visitor( any( Visitor.class ) ) ) )
-                    .thenAnswer( this );
+            when( mock.visitNodes( any( int[].class ), any( int[].class ), anyLong(), anyLong(),
+                    visitor( any( Visitor.class ) ) ) ).thenAnswer( this );
         }
 
         @Override
         public StoreScan<RuntimeException> answer( InvocationOnMock invocation ) throws Throwable
         {
-            final Visitor<NodePropertyUpdate, RuntimeException> visitor = visitor( invocation.getArguments()[1] );
+            final Visitor<NodePropertyUpdate, RuntimeException> visitor = visitor( invocation.getArguments()[4] );
             return new StoreScan<RuntimeException>()
             {
                 @Override
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.index.btree;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.neo4j.collection.primitive.PrimitiveLongIterator;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.kernel.api.Statement;
+import org.neo4j.kernel.api.index.IndexDescriptor;
+import org.neo4j.kernel.api.index.IndexOrder;
+import org.neo4j.kernel.api.index.IndexSeek;
+import org.neo4j.kernel.impl.core.ThreadToStatementContextBridge;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import org.neo4j.test.impl.EphemeralFileSystemAbstraction;
+
+import static org.junit.Assert.assertEquals;
+import static org.neo4j.graphdb.DynamicLabel.label;
+import static org.neo4j.helpers.collection.IteratorUtil.asSet;
+
+public class BTreeLongStringSeekTest
+{
+    private static final Label PERSON = label( "Person" );
+    // longer than what index keys keep of a string, so these only differ after the cut
+    private static final String LONG = repeat( 'x', 600 );
+
+    @Test
+    public void shouldSeekByPrefixLongerThanKeys() throws Exception
+    {
+        // GIVEN
+        long a = createPerson( LONG + "a" );
+        long ab = createPerson( LONG + "ab" );
+        createPerson( LONG + "b" );
+        createPerson( "y" );
+
+        // WHEN/THEN
+        assertEquals( asSet( a, ab ), seek( IndexSeek.stringPrefix( LONG + "a" ) ) );
+        assertEquals( asSet( ab ), seek( IndexSeek.stringPrefix( LONG + "ab" ) ) );
+    }
+
+    @Test
+    public void shouldSeekByRangeWithBoundsLongerThanKeys() throws Exception
+    {
+        // GIVEN
+        createPerson( LONG + "a" );
+        long b = createPerson( LONG + "b" );
+        long c = createPerson( LONG + "c" );
+        createPerson( LONG + "d" );
+
+        // WHEN/THEN
+        assertEquals( asSet( b, c ), seek( IndexSeek.stringRange( LONG + "a", false, LONG + "d", false ) ) );
+        assertEquals( asSet( b ), seek( IndexSeek.stringRange( LONG + "b", true, LONG + "c", false ) ) );
+    }
+
+    private Set<Long> seek( IndexSeek seek ) throws Exception
+    {
+        try ( Transaction tx = database.beginTx();
+              Statement statement = database.getDependencyResolver()
+                      .resolveDependency( ThreadToStatementContextBridge.class ).instance() )
+        {
+            int labelId = statement.readOperations().labelGetForName( PERSON.name() );
+            int propertyKeyId = statement.readOperations().propertyKeyGetForName( "name" );
+            IndexDescriptor index = statement.readOperations().indexesGetForLabelAndPropertyKey( labelId,
+                    propertyKeyId );
+            Set<Long> nodeIds = new HashSet<>();
+            PrimitiveLongIterator nodes = statement.readOperations().nodesGetFromIndexSeek( index, seek,
+                    IndexOrder.NONE );
+            while ( nodes.hasNext() )
+            {
+                nodeIds.add( nodes.next() );
+            }
+            tx.success();
+            return nodeIds;
+        }
+    }
+
+    private long createPerson( String name )
+    {
+        try ( Transaction tx = database.beginTx() )
+        {
+            Node node = database.createNode( PERSON );
+            node.setProperty( "name", name );
+            tx.success();
+            return node.getId();
+        }
+    }
+
+    private static String repeat( char c, int times )
+    {
+        char[] chars = new char[times];
+        Arrays.fill( chars, c );
+        return new String( chars );
+    }
+
+    @Before
+    public void before()
+    {
+        database = (GraphDatabaseAPI) new TestGraphDatabaseFactory().setFileSystem( fs )
+                .newImpermanentDatabaseBuilder( "target/btree-long-strings" ).setConfig( BTreeSchemaIndexSettings.native_schema_index, "true" ).newGraphDatabase();
+        try ( Transaction tx = database.beginTx() )
+        {
+            database.schema().indexFor( PERSON ).on( "name" ).create();
+            tx.success();
+        }
+        try ( Transaction tx = database.beginTx() )
+        {
+            database.schema().awaitIndexesOnline( 1, TimeUnit.MINUTES );
+            tx.success();
+        }
+    }
+
+    @After
+    public void after()
+    {
+        database.shutdown();
+        fs.shutdown();
+    }
+
+    private final EphemeralFileSystemAbstraction fs = new EphemeralFileSystemAbstraction();
+    private GraphDatabaseAPI database;
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.index.btree;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import org.neo4j.test.impl.EphemeralFileSystemAbstraction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.neo4j.graphdb.DynamicLabel.label;
+import static org.neo4j.helpers.collection.IteratorUtil.asSet;
+
+public class BTreeSchemaIndexRecoveryTest
+{
+    private static final String STORE_DIR = "target/btree-recovery";
+    private static final Label PERSON = label( "Person" );
+
+    @Test
+    public void shouldRecoverIndexUpdatesFromLogicalLogAfterCrash() throws Exception
+    {
+        // GIVEN
+        database = newDatabase( fs );
+        try ( Transaction tx = database.beginTx() )
+        {
+            database.schema().indexFor( PERSON ).on( "name" ).create();
+            tx.success();
+        }
+        try ( Transaction tx = database.beginTx() )
+        {
+            database.schema().awaitIndexesOnline( 1, TimeUnit.MINUTES );
+            tx.success();
+        }
+        Node kept = createPerson( "Alice" );
+        Node changed = createPerson( "Bob" );
+        Node removed = createPerson( "Carol" );
+
+        // WHEN
+        try ( Transaction tx = database.beginTx() )
+        {
+            changed.setProperty( "name", "Robert" );
+            removed.delete();
+            tx.success();
+        }
+        EphemeralFileSystemAbstraction snapshot = fs.snapshot();
+        database.shutdown();
+        database = newDatabase( snapshot );
+
+        // THEN
+        assertTrue( snapshot.fileExists( new File( STORE_DIR, "schema/index/native-btree/1/index.btree" ) ) );
+        assertEquals( asSet( kept.getId() ), peopleNamed( "Alice" ) );
+        assertEquals( asSet( changed.getId() ), peopleNamed( "Robert" ) );
+        assertEquals( asSet(), peopleNamed( "Bob" ) );
+        assertEquals( asSet(), peopleNamed( "Carol" ) );
+    }
+
+    private GraphDatabaseService newDatabase( EphemeralFileSystemAbstraction fileSystem )
+    {
+        return new TestGraphDatabaseFactory().setFileSystem( fileSystem ).newImpermanentDatabaseBuilder( STORE_DIR )
+                .setConfig( BTreeSchemaIndexSettings.native_schema_index, "true" ).newGraphDatabase();
+    }
+
+    private Node createPerson( String name )
+    {
+        try ( Transaction tx = database.beginTx() )
+        {
+            Node node = database.createNode( PERSON );
+            node.setProperty( "name", name );
+            tx.success();
+            return node;
+        }
+    }
+
+    private Set<Long> peopleNamed( String name )
+    {
+        try ( Transaction tx = database.beginTx() )
+        {
+            Set<Long> nodeIds = new HashSet<>();
+            for ( Node node : database.findNodesByLabelAndProperty( PERSON, "name", name ) )
+            {
+                nodeIds.add( node.getId() );
+            }
+            tx.success();
+            return nodeIds;
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+        if ( database != null )
+        {
+            database.shutdown();
+        }
+        fs.shutdown();
+    }
+
+    public final EphemeralFileSystemAbstraction fs = new EphemeralFileSystemAbstraction();
+    private GraphDatabaseService database;
+}
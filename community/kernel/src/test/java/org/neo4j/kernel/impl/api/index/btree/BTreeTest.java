@@ -0,0 +1,375 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.index.btree;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.neo4j.collection.primitive.Primitive;
+import org.neo4j.collection.primitive.PrimitiveLongSet;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.kernel.impl.util.StringLogger;
+import org.neo4j.test.EphemeralFileSystemRule;
+import org.neo4j.test.impl.EphemeralFileSystemAbstraction;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BTreeTest
+{
+    @Rule
+    public final EphemeralFileSystemRule fsRule = new EphemeralFileSystemRule();
+
+    private final File file = new File( "index.btree" );
+    private final Random random = new Random( 42 );
+    private EphemeralFileSystemAbstraction fs;
+    private BTree tree;
+
+    @Before
+    public void openTree() throws Exception
+    {
+        fs = fsRule.get();
+        tree = open( fs );
+    }
+
+    @After
+    public void closeTree() throws Exception
+    {
+        tree.close();
+    }
+
+    @Test
+    public void shouldInsertAndRemoveIdempotently() throws Exception
+    {
+        byte[] key = BTreeKeys.string( "value" );
+
+        assertTrue( tree.insert( key, 1 ) );
+        assertFalse( tree.insert( key, 1 ) );
+        assertTrue( tree.insert( key, 2 ) );
+        assertEquals( 2, tree.entryCount() );
+
+        assertTrue( tree.remove( key, 1 ) );
+        assertFalse( tree.remove( key, 1 ) );
+        assertFalse( tree.remove( BTreeKeys.string( "other" ), 2 ) );
+
+        assertArrayEquals( new long[]{2}, tree.seek( key, Long.MIN_VALUE, key, Long.MAX_VALUE ) );
+        assertEquals( 1, tree.entryCount() );
+    }
+
+    @Test
+    public void shouldKeepEntriesSortedThroughSplitsAndRemovals() throws Exception
+    {
+        TreeSet<Entry> expected = new TreeSet<>( ENTRY_ORDER );
+        for ( int round = 0; round < 20_000; round++ )
+        {
+            Entry entry = randomEntry();
+            if ( random.nextInt( 3 ) == 0 )
+            {
+                assertEquals( expected.remove( entry ), tree.remove( entry.key, entry.nodeId ) );
+            }
+            else
+            {
+                assertEquals( expected.add( entry ), tree.insert( entry.key, entry.nodeId ) );
+            }
+        }
+
+        assertEquals( new ArrayList<>( expected ), allEntries() );
+        assertEquals( expected.size(), tree.entryCount() );
+        for ( int i = 0; i < 100; i++ )
+        {
+            Entry from = randomEntry();
+            Entry to = randomEntry();
+            if ( ENTRY_ORDER.compare( from, to ) > 0 )
+            {
+                Entry swap = from;
+                from = to;
+                to = swap;
+            }
+            assertArrayEquals( nodeIds( expected.subSet( from, true, to, true ) ),
+                    tree.seek( from.key, from.nodeId, to.key, to.nodeId ) );
+        }
+    }
+
+    @Test
+    public void shouldRemoveAllEntriesDownToAnEmptyTree() throws Exception
+    {
+        List<Entry> entries = new ArrayList<>();
+        for ( int i = 0; i < 5_000; i++ )
+        {
+            Entry entry = randomEntry();
+            if ( tree.insert( entry.key, entry.nodeId ) )
+            {
+                entries.add( entry );
+            }
+        }
+
+        for ( Entry entry : entries )
+        {
+            assertTrue( tree.remove( entry.key, entry.nodeId ) );
+        }
+
+        assertEquals( 0, tree.entryCount() );
+        assertEquals( new ArrayList<Entry>(), allEntries() );
+        Entry entry = randomEntry();
+        assertTrue( tree.insert( entry.key, entry.nodeId ) );
+        assertEquals( Arrays.asList( entry ), allEntries() );
+    }
+
+    @Test
+    public void shouldRemoveAllEntriesOfNodes() throws Exception
+    {
+        for ( int nodeId = 0; nodeId < 1_000; nodeId++ )
+        {
+            tree.insert( BTreeKeys.number( nodeId % 10 ), nodeId );
+        }
+        PrimitiveLongSet removed = Primitive.longSet();
+        for ( int nodeId = 0; nodeId < 1_000; nodeId += 2 )
+        {
+            removed.add( nodeId );
+        }
+
+        tree.removeAll( removed );
+
+        assertEquals( 500, tree.entryCount() );
+        for ( long nodeId : tree.seek( BTreeKeys.lowest( BTreeKeys.NUMBER ), Long.MIN_VALUE,
+                BTreeKeys.highest( BTreeKeys.NUMBER ), Long.MIN_VALUE ) )
+        {
+            assertEquals( 1, nodeId % 2 );
+        }
+    }
+
+    @Test
+    public void shouldKeepCheckpointedEntriesAcrossRestart() throws Exception
+    {
+        List<Entry> expected = insertRandomEntries( 5_000 );
+        tree.checkpoint( true );
+        tree.close();
+
+        tree = open( fs );
+
+        assertTrue( tree.isOnline() );
+        assertEquals( expected, allEntries() );
+        assertTrue( BTree.isOnline( fs, file ) );
+    }
+
+    @Test
+    public void shouldOpenLatestCheckpointAfterCrash() throws Exception
+    {
+        List<Entry> checkpointed = insertRandomEntries( 5_000 );
+        tree.checkpoint( false );
+        for ( int i = 0; i < 5_000; i++ )
+        {
+            Entry entry = randomEntry();
+            if ( random.nextBoolean() )
+            {
+                tree.insert( entry.key, entry.nodeId );
+            }
+            else if ( !checkpointed.isEmpty() )
+            {
+                Entry existing = checkpointed.get( random.nextInt( checkpointed.size() ) );
+                tree.remove( existing.key, existing.nodeId );
+            }
+        }
+
+        // Pages evicted since the checkpoint have been written, but no header pointing to them
+        EphemeralFileSystemAbstraction crashed = fs.snapshot();
+        try
+        {
+            BTree recovered = open( crashed );
+            try
+            {
+                List<Entry> entries = allEntries( recovered );
+                assertEquals( checkpointed, entries );
+                assertFalse( recovered.isOnline() );
+
+                // and pages not reachable from the checkpoint should be free for reuse
+                TreeSet<Entry> expected = new TreeSet<>( ENTRY_ORDER );
+                expected.addAll( entries );
+                for ( int i = 0; i < 5_000; i++ )
+                {
+                    Entry entry = randomEntry();
+                    assertEquals( expected.add( entry ), recovered.insert( entry.key, entry.nodeId ) );
+                }
+                assertEquals( new ArrayList<>( expected ), allEntries( recovered ) );
+            }
+            finally
+            {
+                recovered.close();
+            }
+        }
+        finally
+        {
+            crashed.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldKeepSnapshotUntilClosed() throws Exception
+    {
+        insertRandomEntries( 100 );
+
+        try ( ResourceIterator<File> files = tree.snapshot() )
+        {
+            assertEquals( file, files.next() );
+            assertFalse( files.hasNext() );
+        }
+
+        // and checkpoints should not be blocked after the snapshot is closed
+        tree.checkpoint( true );
+    }
+
+    private BTree open( EphemeralFileSystemAbstraction fs ) throws Exception
+    {
+        // Little memory, for pages to be evicted and written before checkpoints
+        return new BTree( fs, file, 16 * BTree.PAGE_SIZE, false, StringLogger.DEV_NULL );
+    }
+
+    private List<Entry> insertRandomEntries( int count )
+    {
+        TreeSet<Entry> entries = new TreeSet<>( ENTRY_ORDER );
+        for ( int i = 0; i < count; i++ )
+        {
+            Entry entry = randomEntry();
+            if ( tree.insert( entry.key, entry.nodeId ) )
+            {
+                entries.add( entry );
+            }
+        }
+        return new ArrayList<>( entries );
+    }
+
+    private Entry randomEntry()
+    {
+        byte[] key;
+        switch ( random.nextInt( 4 ) )
+        {
+            case 0:
+                char[] chars = new char[random.nextInt( 700 )];
+                Arrays.fill( chars, (char) ('a' + random.nextInt( 3 )) );
+                key = BTreeKeys.string( new String( chars ) );
+                break;
+            case 1:
+                key = BTreeKeys.number( random.nextInt( 1_000 ) - 500 );
+                break;
+            default:
+                key = BTreeKeys.string( "value-" + random.nextInt( 1_000 ) );
+                break;
+        }
+        return new Entry( key, random.nextInt( 100 ) );
+    }
+
+    private List<Entry> allEntries()
+    {
+        return allEntries( tree );
+    }
+
+    private static List<Entry> allEntries( BTree tree )
+    {
+        final List<Entry> entries = new ArrayList<>();
+        tree.visitAll( new BTree.EntryVisitor<RuntimeException>()
+        {
+            @Override
+            public void visit( byte[] key, long nodeId )
+            {
+                entries.add( new Entry( key, nodeId ) );
+            }
+        } );
+        return entries;
+    }
+
+    private static long[] nodeIds( Iterable<Entry> entries )
+    {
+        List<Long> nodeIds = new ArrayList<>();
+        for ( Entry entry : entries )
+        {
+            nodeIds.add( entry.nodeId );
+        }
+        long[] result = new long[nodeIds.size()];
+        for ( int i = 0; i < result.length; i++ )
+        {
+            result[i] = nodeIds.get( i );
+        }
+        return result;
+    }
+
+    private static final Comparator<Entry> ENTRY_ORDER = new Comparator<Entry>()
+    {
+        @Override
+        public int compare( Entry o1, Entry o2 )
+        {
+            int common = Math.min( o1.key.length, o2.key.length );
+            for ( int i = 0; i < common; i++ )
+            {
+                int difference = (o1.key[i] & 0xFF) - (o2.key[i] & 0xFF);
+                if ( difference != 0 )
+                {
+                    return difference;
+                }
+            }
+            if ( o1.key.length != o2.key.length )
+            {
+                return o1.key.length - o2.key.length;
+            }
+            return Long.compare( o1.nodeId, o2.nodeId );
+        }
+    };
+
+    private static class Entry
+    {
+        final byte[] key;
+        final long nodeId;
+
+        Entry( byte[] key, long nodeId )
+        {
+            this.key = key;
+            this.nodeId = nodeId;
+        }
+
+        @Override
+        public boolean equals( Object obj )
+        {
+            return obj instanceof Entry && ENTRY_ORDER.compare( this, (Entry) obj ) == 0;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * Arrays.hashCode( key ) + (int) nodeId;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Entry[" + Arrays.toString( key ) + "," + nodeId + "]";
+        }
+    }
+}
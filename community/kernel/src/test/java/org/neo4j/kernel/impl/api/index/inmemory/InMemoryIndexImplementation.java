@@ -19,12 +19,20 @@
  */
 package org.neo4j.kernel.impl.api.index.inmemory;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.neo4j.collection.primitive.PrimitiveLongIterator;
 import org.neo4j.kernel.api.direct.BoundedIterable;
 import org.neo4j.kernel.api.index.ArrayEncoder;
+import org.neo4j.kernel.api.index.IndexOrder;
 import org.neo4j.kernel.api.index.IndexReader;
+import org.neo4j.kernel.api.index.IndexSeek;
+
+import static org.neo4j.collection.primitive.PrimitiveLongCollections.toPrimitiveIterator;
 
 abstract class InMemoryIndexImplementation implements IndexReader, BoundedIterable<Long>
 {
@@ -36,6 +44,63 @@ abstract class InMemoryIndexImplementation implements IndexReader, BoundedIterab
         return doLookup( encode( value ) );
     }
 
+    @Override
+    public final PrimitiveLongIterator rangeSeekByNumber( Number lower, boolean includeLower, Number upper,
+                                                          boolean includeUpper, IndexOrder order )
+    {
+        return seek( IndexSeek.numberRange( lower, includeLower, upper, includeUpper ), order );
+    }
+
+    @Override
+    public final PrimitiveLongIterator rangeSeekByString( String lower, boolean includeLower, String upper,
+                                                          boolean includeUpper, IndexOrder order )
+    {
+        return seek( IndexSeek.stringRange( lower, includeLower, upper, includeUpper ), order );
+    }
+
+    @Override
+    public final PrimitiveLongIterator rangeSeekByPrefix( String prefix, IndexOrder order )
+    {
+        return seek( IndexSeek.stringPrefix( prefix ), order );
+    }
+
+    private PrimitiveLongIterator seek( final IndexSeek seek, IndexOrder order )
+    {
+        final TreeMap<Object, Set<Long>> matches = new TreeMap<>( new Comparator<Object>()
+        {
+            @Override
+            public int compare( Object left, Object right )
+            {
+                return seek.compare( left, right );
+            }
+        } );
+        try
+        {
+            iterateAll( new IndexEntryIterator()
+            {
+                @Override
+                public void visitEntry( Object key, Set<Long> nodeIds )
+                {
+                    if ( seek.covers( key ) )
+                    {
+                        matches.put( key, nodeIds );
+                    }
+                }
+            } );
+        }
+        catch ( Exception e )
+        {
+            throw new RuntimeException( e );
+        }
+
+        List<Long> nodeIds = new ArrayList<>();
+        for ( Set<Long> ids : (order == IndexOrder.DESCENDING ? matches.descendingMap() : matches).values() )
+        {
+            nodeIds.addAll( ids );
+        }
+        return toPrimitiveIterator( nodeIds.iterator() );
+    }
+
     final void add( long nodeId, Object propertyValue, boolean applyIdempotently )
     {
         doAdd( encode( propertyValue ), nodeId, applyIdempotently );
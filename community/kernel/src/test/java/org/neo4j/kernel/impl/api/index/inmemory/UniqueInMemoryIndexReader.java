@@ -19,12 +19,18 @@
  */
 package org.neo4j.kernel.impl.api.index.inmemory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.neo4j.collection.primitive.PrimitiveLongCollections;
 import org.neo4j.collection.primitive.PrimitiveLongIterator;
+import org.neo4j.kernel.api.index.IndexOrder;
 import org.neo4j.kernel.api.index.IndexReader;
+import org.neo4j.kernel.api.index.IndexSeek;
 
 import static org.neo4j.collection.primitive.PrimitiveLongCollections.singleton;
 
@@ -44,6 +50,54 @@ class UniqueInMemoryIndexReader implements IndexReader
         return result != null ? singleton( result ) : PrimitiveLongCollections.emptyIterator();
     }
 
+    @Override
+    public PrimitiveLongIterator rangeSeekByNumber( Number lower, boolean includeLower, Number upper,
+                                                    boolean includeUpper, IndexOrder order )
+    {
+        return seek( IndexSeek.numberRange( lower, includeLower, upper, includeUpper ), order );
+    }
+
+    @Override
+    public PrimitiveLongIterator rangeSeekByString( String lower, boolean includeLower, String upper,
+                                                    boolean includeUpper, IndexOrder order )
+    {
+        return seek( IndexSeek.stringRange( lower, includeLower, upper, includeUpper ), order );
+    }
+
+    @Override
+    public PrimitiveLongIterator rangeSeekByPrefix( String prefix, IndexOrder order )
+    {
+        return seek( IndexSeek.stringPrefix( prefix ), order );
+    }
+
+    private PrimitiveLongIterator seek( final IndexSeek seek, IndexOrder order )
+    {
+        List<Object> values = new ArrayList<>();
+        for ( Object value : indexData.keySet() )
+        {
+            if ( seek.covers( value ) )
+            {
+                values.add( value );
+            }
+        }
+        Comparator<Object> byValue = new Comparator<Object>()
+        {
+            @Override
+            public int compare( Object left, Object right )
+            {
+                return seek.compare( left, right );
+            }
+        };
+        Collections.sort( values, order == IndexOrder.DESCENDING ? Collections.reverseOrder( byValue ) : byValue );
+
+        long[] nodeIds = new long[values.size()];
+        for ( int i = 0; i < nodeIds.length; i++ )
+        {
+            nodeIds[i] = indexData.get( values.get( i ) );
+        }
+        return PrimitiveLongCollections.iterator( nodeIds );
+    }
+
     @Override
     public void close()
     {
@@ -34,6 +34,8 @@ import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.neo4j.kernel.api.DataWriteOperations;
 import org.neo4j.kernel.api.ReadOperations;
+import org.neo4j.kernel.api.RelationshipVisitor;
+import org.neo4j.kernel.api.exceptions.EntityNotFoundException;
 import org.neo4j.kernel.impl.core.NodeManager;
 import org.neo4j.test.OtherThreadExecutor;
 import org.neo4j.test.OtherThreadRule;
@@ -117,6 +119,45 @@ public class RelationshipIT extends KernelIntegrationTest
         }
     }
 
+    @Test
+    public void shouldVisitRelationshipsInCurrentAndSubsequentTx() throws Exception
+    {
+        // given
+        long start, end, relationship;
+        int relType;
+        {
+            DataWriteOperations statement = dataWriteOperationsInNewTransaction();
+            relType = statement.relationshipTypeGetOrCreateForName( "Type1" );
+            start = statement.nodeCreate();
+            end = statement.nodeCreate();
+            relationship = statement.relationshipCreate( relType, start, end );
+
+            // when & then
+            assertVisits( statement, relationship, start, end, relType );
+            commit();
+        }
+        {
+            DataWriteOperations statement = dataWriteOperationsInNewTransaction();
+
+            // when & then
+            assertVisits( statement, relationship, start, end, relType );
+
+            // when
+            statement.relationshipDelete( relationship );
+
+            // then
+            try
+            {
+                assertVisits( statement, relationship, start, end, relType );
+                fail( "Should not be able to visit a relationship deleted in this transaction" );
+            }
+            catch ( EntityNotFoundException e )
+            {
+                // expected
+            }
+        }
+    }
+
     @Test
     public void shouldInterleaveModifiedRelationshipsWithExistingOnes() throws Exception
     {
@@ -309,6 +350,25 @@ public class RelationshipIT extends KernelIntegrationTest
         } ).get( 10, TimeUnit.SECONDS ) );
     }
 
+    private void assertVisits( ReadOperations statement, long relationship, final long start, final long end,
+                               final int relType ) throws EntityNotFoundException
+    {
+        final List<Long> visited = new ArrayList<>();
+        statement.relationshipVisit( relationship, new RelationshipVisitor()
+        {
+            @Override
+            public void visit( long relId, long startNode, long endNode, int type )
+            {
+                visited.add( relId );
+                assertEquals( start, startNode );
+                assertEquals( end, endNode );
+                assertEquals( relType, type );
+            }
+        } );
+        assertEquals( 1, visited.size() );
+        assertEquals( Long.valueOf( relationship ), visited.get( 0 ) );
+    }
+
     private void assertRels( PrimitiveLongIterator it, long ... rels )
     {
         List<Matcher<? super Iterable<Long>>> all = new ArrayList<>(rels.length);
@@ -0,0 +1,644 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.api.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.neo4j.collection.primitive.PrimitiveLongCollections;
+import org.neo4j.collection.primitive.PrimitiveLongIterator;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.helpers.collection.PrefetchingIterator;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.kernel.api.direct.AllEntriesLabelScanReader;
+import org.neo4j.kernel.api.direct.NodeLabelRange;
+import org.neo4j.kernel.api.labelscan.LabelScanReader;
+import org.neo4j.kernel.api.labelscan.NodeLabelUpdate;
+import org.neo4j.kernel.impl.api.scan.LabelScanStoreProvider.FullStoreChangeStream;
+import org.neo4j.kernel.impl.nioneo.store.StoreChannel;
+import org.neo4j.kernel.impl.nioneo.xa.NeoStoreXaDataSource;
+import org.neo4j.kernel.impl.util.StringLogger;
+import org.neo4j.kernel.lifecycle.LifeSupport;
+import org.neo4j.kernel.lifecycle.LifecycleException;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import org.neo4j.test.impl.EphemeralFileSystemAbstraction;
+import org.neo4j.tooling.GlobalGraphOperations;
+import org.neo4j.unsafe.batchinsert.LabelScanWriter;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+
+import static org.hamcrest.core.IsCollectionContaining.hasItem;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import static org.neo4j.helpers.collection.IteratorUtil.asSet;
+import static org.neo4j.helpers.collection.IteratorUtil.iterator;
+import static org.neo4j.helpers.collection.IteratorUtil.single;
+import static org.neo4j.kernel.api.labelscan.NodeLabelUpdate.labelChanges;
+
+public class NativeLabelScanStoreTest
+{
+    private static final long[] NO_LABELS = new long[0];
+
+    @Test
+    public void shouldUpdateIndexOnLabelChange() throws Exception
+    {
+        // GIVEN
+        int labelId = 1;
+        long nodeId = 10;
+        start();
+
+        // WHEN
+        write( iterator( labelChanges( nodeId, NO_LABELS, new long[]{labelId} ) ) );
+
+        // THEN
+        assertNodesForLabel( labelId, nodeId );
+    }
+
+    @Test
+    public void shouldUpdateIndexOnAddedLabels() throws Exception
+    {
+        // GIVEN
+        int labelId1 = 1, labelId2 = 2;
+        long nodeId = 10;
+        start();
+        write( iterator( labelChanges( nodeId, NO_LABELS, new long[]{labelId1} ) ) );
+        assertNodesForLabel( labelId2 );
+
+        // WHEN
+        write( iterator( labelChanges( nodeId, new long[]{labelId1}, new long[]{labelId1, labelId2} ) ) );
+
+        // THEN
+        assertNodesForLabel( labelId1, nodeId );
+        assertNodesForLabel( labelId2, nodeId );
+    }
+
+    @Test
+    public void shouldUpdateIndexOnRemovedLabels() throws Exception
+    {
+        // GIVEN
+        int labelId1 = 1, labelId2 = 2;
+        long nodeId = 10;
+        start();
+        write( iterator( labelChanges( nodeId, NO_LABELS, new long[]{labelId1, labelId2} ) ) );
+        assertNodesForLabel( labelId1, nodeId );
+        assertNodesForLabel( labelId2, nodeId );
+
+        // WHEN
+        write( iterator( labelChanges( nodeId, new long[]{labelId1, labelId2}, new long[]{labelId2} ) ) );
+
+        // THEN
+        assertNodesForLabel( labelId1 );
+        assertNodesForLabel( labelId2, nodeId );
+    }
+
+    @Test
+    public void shouldDeleteFromIndexWhenDeletedNode() throws Exception
+    {
+        // GIVEN
+        int labelId = 1;
+        long nodeId = 10;
+        start();
+        write( iterator( labelChanges( nodeId, NO_LABELS, new long[]{labelId} ) ) );
+
+        // WHEN
+        write( iterator( labelChanges( nodeId, new long[]{labelId}, NO_LABELS ) ) );
+
+        // THEN
+        assertNodesForLabel( labelId );
+    }
+
+    @Test
+    public void shouldKeepOtherNodesInRangeWhenRemovingLabel() throws Exception
+    {
+        // GIVEN
+        int labelId = 1;
+        start( asList(
+                labelChanges( 1, NO_LABELS, new long[]{labelId} ),
+                labelChanges( 2, NO_LABELS, new long[]{labelId} ) ) );
+
+        // WHEN
+        write( iterator( labelChanges( 1, new long[]{labelId}, NO_LABELS ) ) );
+
+        // THEN
+        assertNodesForLabel( labelId, 2 );
+    }
+
+    @Test
+    public void shouldScanSingleRange() throws Exception
+    {
+        // GIVEN
+        int labelId1 = 1, labelId2 = 2;
+        long nodeId1 = 10, nodeId2 = 11;
+        start( asList(
+                labelChanges( nodeId1, NO_LABELS, new long[] { labelId1 } ),
+                labelChanges( nodeId2, NO_LABELS, new long[] { labelId1, labelId2 } )
+        ) );
+
+        // WHEN
+        AllEntriesLabelScanReader reader = store.newAllEntriesReader();
+        NodeLabelRange range = single( reader.iterator() );
+        reader.close();
+
+        // THEN
+        assertArrayEquals( new long[]{nodeId1, nodeId2}, sorted( range.nodes() ) );
+
+        assertArrayEquals( new long[]{labelId1}, sorted( range.labels( nodeId1 ) ) );
+        assertArrayEquals( new long[]{labelId1, labelId2}, sorted( range.labels( nodeId2 ) ) );
+    }
+
+    @Test
+    public void shouldScanMultipleRanges() throws Exception
+    {
+        // GIVEN
+        int labelId1 = 1, labelId2 = 2;
+        long nodeId1 = 10, nodeId2 = 1280;
+        start( asList(
+                labelChanges( nodeId1, NO_LABELS, new long[] { labelId1 } ),
+                labelChanges( nodeId2, NO_LABELS, new long[] { labelId1, labelId2 } )
+        ) );
+
+        // WHEN
+        AllEntriesLabelScanReader reader = store.newAllEntriesReader();
+        Iterator<NodeLabelRange> iterator = reader.iterator();
+        NodeLabelRange range1 = iterator.next();
+        NodeLabelRange range2 = iterator.next();
+        assertFalse( iterator.hasNext() );
+        reader.close();
+
+        // THEN
+        assertArrayEquals( new long[] { nodeId1 }, sorted( range1.nodes() ) );
+        assertArrayEquals( new long[] { nodeId2 }, sorted( range2.nodes() ) );
+
+        assertArrayEquals( new long[] { labelId1 }, sorted( range1.labels( nodeId1 ) ) );
+
+        assertArrayEquals( new long[] { labelId1, labelId2 }, sorted( range2.labels( nodeId2 ) ) );
+    }
+
+    @Test
+    public void shouldWorkWithAFullRange() throws Exception
+    {
+        // given
+        long labelId = 0;
+        List<NodeLabelUpdate> updates = new ArrayList<>();
+        for ( int i = 0; i < 64; i++ )
+        {
+            updates.add( labelChanges( i, NO_LABELS, new long[]{labelId} ) );
+        }
+
+        start( updates );
+
+        // when
+        LabelScanReader reader = store.newReader();
+        Set<Long> nodesWithLabel = asSet( reader.nodesWithLabel( (int) labelId ) );
+
+        // then
+        for ( long i = 0; i < 64; i++ )
+        {
+            assertThat( nodesWithLabel, hasItem( i ) );
+            Set<Long> labels = asSet( reader.labelsForNode( i ) );
+            assertThat( labels, hasItem( labelId ) );
+        }
+        reader.close();
+    }
+
+    @Test
+    public void shouldRebuildFromScratchIfIndexMissing() throws Exception
+    {
+        // GIVEN a start of the store with existing data in it
+        start( asList(
+                labelChanges( 1, NO_LABELS, new long[] {1} ),
+                labelChanges( 2, NO_LABELS, new long[] {1, 2} )
+        ) );
+
+        // THEN
+        assertTrue( "Didn't rebuild the store on startup",
+                monitor.noIndexCalled & monitor.rebuildingCalled & monitor.rebuiltCalled );
+        assertNodesForLabel( 1,
+                1, 2 );
+        assertNodesForLabel( 2,
+                2 );
+    }
+
+    @Test
+    public void shouldRefuseStartIfIndexCorrupted() throws Exception
+    {
+        // GIVEN a start of the store with existing data in it
+        List<NodeLabelUpdate> data = asList(
+                labelChanges( 1, NO_LABELS, new long[] {1} ),
+                labelChanges( 2, NO_LABELS, new long[] {1, 2} ) );
+        start( data );
+
+        // WHEN the index is corrupted and then started again
+        try
+        {
+            scrambleIndexFilesAndRestart( data );
+            fail( "Should not have been able to start." );
+        }
+        catch ( LifecycleException e )
+        {
+            assertThat( e.getCause(), instanceOf( IOException.class ) );
+            assertThat( e.getCause().getMessage(), equalTo(
+                    "Label scan store is corrupted, and needs to be rebuilt. To trigger a rebuild, ensure the " +
+                            "database is stopped, delete the files in '" + dir.getAbsolutePath() + "', and then " +
+                            "start the database again." ) );
+        }
+    }
+
+    @Test
+    public void shouldFindDecentAmountOfNodesForALabel() throws Exception
+    {
+        // GIVEN
+        final int labelId = 1, nodeCount = 64 * 16 + 10;
+        start();
+        write( new PrefetchingIterator<NodeLabelUpdate>()
+        {
+            private int i = -1;
+
+            @Override
+            protected NodeLabelUpdate fetchNextOrNull()
+            {
+                return ++i < nodeCount ? labelChanges( i, NO_LABELS, new long[]{labelId} ) : null;
+            }
+        } );
+
+        // WHEN
+        Set<Long> nodeSet = nodesWithLabel( labelId );
+
+        // THEN
+        assertEquals( "Found gaps in node id range: " + gaps( nodeSet, nodeCount ), nodeCount, nodeSet.size() );
+    }
+
+    @Test
+    public void shouldFindAllLabelsForGivenNode() throws Exception
+    {
+        // GIVEN
+        final long labelId1 = 1, labelId2 = 2, labelId3 = 87;
+        start();
+
+        int nodeId = 42;
+        write( iterator( labelChanges( nodeId, NO_LABELS, new long[]{labelId1, labelId2} ) ) );
+        write( iterator( labelChanges( 41, NO_LABELS, new long[]{labelId3, labelId2} ) ) );
+
+        // WHEN
+        LabelScanReader reader = store.newReader();
+
+        // THEN
+        assertEquals( asSet( labelId1, labelId2 ), asSet( reader.labelsForNode( nodeId ) ) );
+        reader.close();
+    }
+
+    @Test
+    public void shouldKeepSeeingWhatWasThereWhenReaderWasCreated() throws Exception
+    {
+        // GIVEN
+        int labelId = 1;
+        start( asList( labelChanges( 1, NO_LABELS, new long[]{labelId} ) ) );
+        LabelScanReader reader = store.newReader();
+
+        // WHEN
+        write( iterator( labelChanges( 1, new long[]{labelId}, NO_LABELS ) ) );
+        write( iterator( labelChanges( 2, NO_LABELS, new long[]{labelId} ) ) );
+        store.force();
+
+        // THEN
+        assertEquals( asSet( 1L ), asSet( reader.nodesWithLabel( labelId ) ) );
+        reader.close();
+        assertNodesForLabel( labelId, 2 );
+    }
+
+    @Test
+    public void shouldSeeSameNodesAfterManyWritesAsAfterForce() throws Exception
+    {
+        // GIVEN a number of small writes, enough for runs to be merged and segments to be written
+        int labelCount = 8, nodeCount = 2_000_000;
+        start();
+        Set<Long>[] expected = new Set[labelCount];
+        for ( int i = 0; i < labelCount; i++ )
+        {
+            expected[i] = new TreeSet<>();
+        }
+        for ( long nodeId = 0; nodeId < nodeCount; nodeId += 31 )
+        {
+            long[] labels = new long[4];
+            for ( int i = 0; i < labels.length; i++ )
+            {
+                labels[i] = (nodeId + i * 3) % labelCount;
+            }
+            Arrays.sort( labels );
+            write( iterator( labelChanges( nodeId, NO_LABELS, labels ) ) );
+            for ( long label : labels )
+            {
+                expected[(int) label].add( nodeId );
+            }
+            if ( nodeId % 3 == 0 )
+            {   // Remove it again
+                write( iterator( labelChanges( nodeId, labels, NO_LABELS ) ) );
+                for ( long label : labels )
+                {
+                    expected[(int) label].remove( nodeId );
+                }
+            }
+        }
+        assertTrue( "Expected segments to have been written", fs.listFiles( dir )[0].getName().compareTo(
+                LabelScanSegment.file( dir, 0 ).getName() ) != 0 );
+
+        // THEN
+        for ( int i = 0; i < labelCount; i++ )
+        {
+            assertEquals( expected[i], nodesWithLabel( i ) );
+        }
+        store.force();
+        for ( int i = 0; i < labelCount; i++ )
+        {
+            assertEquals( expected[i], nodesWithLabel( i ) );
+        }
+    }
+
+    @Test
+    public void shouldHaveForcedChangesAfterCrash() throws Exception
+    {
+        // GIVEN
+        int labelId = 1;
+        start();
+        write( iterator( labelChanges( 1, NO_LABELS, new long[]{labelId} ) ) );
+        store.force();
+        write( iterator( labelChanges( 2, NO_LABELS, new long[]{labelId} ) ) );
+
+        // WHEN
+        EphemeralFileSystemAbstraction crashed = fs.snapshot();
+        life.shutdown();
+        fs.shutdown();
+        fs = crashed;
+        start();
+
+        // THEN
+        assertFalse( monitor.noIndexCalled );
+        assertNodesForLabel( labelId, 1 );
+
+        // and WHEN recovering
+        store.recover( iterator(
+                labelChanges( 1, NO_LABELS, new long[]{labelId} ),
+                labelChanges( 2, NO_LABELS, new long[]{labelId} ) ) );
+
+        // THEN
+        assertNodesForLabel( labelId, 1, 2 );
+    }
+
+    @Test
+    public void shouldRejectUpdatesOutOfOrder() throws Exception
+    {
+        // GIVEN
+        start();
+        LabelScanWriter writer = store.newWriter();
+        writer.write( labelChanges( 1000, NO_LABELS, new long[]{1} ) );
+
+        // WHEN
+        try
+        {
+            writer.write( labelChanges( 10, NO_LABELS, new long[]{1} ) );
+            fail( "Should have rejected update out of order" );
+        }
+        catch ( IllegalArgumentException e )
+        {   // THEN good
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void shouldBeUsedByDatabaseWhenEnabled() throws Exception
+    {
+        // GIVEN
+        life = new LifeSupport();
+        GraphDatabaseAPI db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder()
+                .setConfig( NativeLabelScanStoreSettings.native_label_scan_store, "true" ).newGraphDatabase();
+        try
+        {
+            // WHEN
+            Node node;
+            try ( Transaction tx = db.beginTx() )
+            {
+                node = db.createNode( DynamicLabel.label( "First" ), DynamicLabel.label( "Second" ) );
+                tx.success();
+            }
+
+            // THEN
+            assertThat( db.getDependencyResolver().resolveDependency( NeoStoreXaDataSource.class )
+                    .getLabelScanStore(), instanceOf( NativeLabelScanStore.class ) );
+            try ( Transaction tx = db.beginTx() )
+            {
+                assertEquals( asSet( node ), asSet( GlobalGraphOperations.at( db ).getAllNodesWithLabel(
+                        DynamicLabel.label( "Second" ) ) ) );
+                tx.success();
+            }
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+
+    private void write( Iterator<NodeLabelUpdate> iterator ) throws IOException
+    {
+        try ( LabelScanWriter writer = store.newWriter() )
+        {
+            while ( iterator.hasNext() )
+            {
+                writer.write( iterator.next() );
+            }
+        }
+    }
+
+    private long[] sorted( long[] input )
+    {
+        Arrays.sort( input );
+        return input;
+    }
+
+    private Set<Long> nodesWithLabel( int labelId )
+    {
+        Set<Long> nodeSet = new TreeSet<>();
+        LabelScanReader reader = store.newReader();
+        PrimitiveLongIterator nodes = reader.nodesWithLabel( labelId );
+        while ( nodes.hasNext() )
+        {
+            nodeSet.add( nodes.next() );
+        }
+        reader.close();
+        return nodeSet;
+    }
+
+    private Set<Long> gaps( Set<Long> ids, int expectedCount )
+    {
+        Set<Long> gaps = new HashSet<>();
+        for ( long i = 0; i < expectedCount; i++ )
+        {
+            if ( !ids.contains( i ) )
+            {
+                gaps.add( i );
+            }
+        }
+        return gaps;
+    }
+
+    private void assertNodesForLabel( int labelId, long... expectedNodeIds )
+    {
+        Set<Long> nodeSet = new HashSet<>( nodesWithLabel( labelId ) );
+        for ( long expectedNodeId : expectedNodeIds )
+        {
+            assertTrue( "Expected node " + expectedNodeId + " not found in scan store",
+                    nodeSet.remove( expectedNodeId ) );
+        }
+        assertTrue( "Unexpected nodes in scan store " + nodeSet, nodeSet.isEmpty() );
+    }
+
+    private final File dir = new File( "native-label-scan-store" );
+    private EphemeralFileSystemAbstraction fs = new EphemeralFileSystemAbstraction();
+    private LifeSupport life;
+    private TrackingMonitor monitor;
+    private NativeLabelScanStore store;
+
+    private List<NodeLabelUpdate> noData()
+    {
+        return emptyList();
+    }
+
+    private void start()
+    {
+        start( noData() );
+    }
+
+    private void start( List<NodeLabelUpdate> existingData )
+    {
+        life = new LifeSupport();
+        monitor = new TrackingMonitor();
+        store = life.add( new NativeLabelScanStore( dir, fs, asStream( existingData ), monitor, 1024 * 1024,
+                false, StringLogger.DEV_NULL ) );
+        life.start();
+        assertTrue( monitor.initCalled );
+    }
+
+    private FullStoreChangeStream asStream( final List<NodeLabelUpdate> existingData )
+    {
+        return new FullStoreChangeStream()
+        {
+            @Override
+            public Iterator<NodeLabelUpdate> iterator()
+            {
+                return existingData.iterator();
+            }
+
+            @Override
+            public long highestNodeId()
+            {
+                return existingData.size(); // Well... not really
+            }
+
+            @Override
+            public PrimitiveLongIterator labelIds()
+            {
+                return PrimitiveLongCollections.emptyIterator();
+            }
+        };
+    }
+
+    private void scrambleIndexFilesAndRestart( List<NodeLabelUpdate> data ) throws IOException
+    {
+        life.shutdown();
+        for ( File indexFile : fs.listFiles( dir ) )
+        {
+            try ( StoreChannel channel = fs.open( indexFile, "rw" ) )
+            {
+                byte[] bytes = new byte[(int) channel.size()];
+                for ( int i = 0; i < bytes.length; i++ )
+                {
+                    bytes[i] = (byte) i;
+                }
+                channel.write( ByteBuffer.wrap( bytes ), 0 );
+            }
+        }
+        start( data );
+    }
+
+    @After
+    public void shutdown() throws IOException
+    {
+        life.shutdown();
+        fs.shutdown();
+    }
+
+    private static class TrackingMonitor implements NativeLabelScanStore.Monitor
+    {
+        boolean initCalled, rebuildingCalled, rebuiltCalled, noIndexCalled;
+
+        @Override
+        public void noIndex()
+        {
+            noIndexCalled = true;
+        }
+
+        @Override
+        public void corruptIndex( IOException corruptionException )
+        {
+        }
+
+        @Override
+        public void rebuilding()
+        {
+            rebuildingCalled = true;
+        }
+
+        @Override
+        public void rebuilt( long roughNodeCount )
+        {
+            rebuiltCalled = true;
+        }
+
+        @Override
+        public void init()
+        {
+            initCalled = true;
+        }
+    }
+}
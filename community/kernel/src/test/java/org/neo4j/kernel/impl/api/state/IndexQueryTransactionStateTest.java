@@ -30,6 +30,8 @@ import org.neo4j.helpers.collection.IteratorUtil;
 import org.neo4j.kernel.api.TxState;
 import org.neo4j.kernel.api.constraints.UniquenessConstraint;
 import org.neo4j.kernel.api.index.IndexDescriptor;
+import org.neo4j.kernel.api.index.IndexOrder;
+import org.neo4j.kernel.api.index.IndexSeek;
 import org.neo4j.kernel.api.index.InternalIndexState;
 import org.neo4j.kernel.api.properties.DefinedProperty;
 import org.neo4j.kernel.impl.api.ConstraintEnforcingEntityOperations;
@@ -56,6 +58,7 @@ import static org.neo4j.graphdb.Neo4jMockitoHelpers.answerAsPrimitiveLongIterato
 import static org.neo4j.helpers.collection.IteratorUtil.asSet;
 import static org.neo4j.helpers.collection.IteratorUtil.iterator;
 import static org.neo4j.kernel.api.StatementConstants.NO_SUCH_NODE;
+import static org.neo4j.kernel.api.properties.Property.intProperty;
 import static org.neo4j.kernel.api.properties.Property.noNodeProperty;
 import static org.neo4j.kernel.api.properties.Property.stringProperty;
 
@@ -309,6 +312,50 @@ public class IndexQueryTransactionStateTest
         assertNoSuchNode( result );
     }
 
+    @Test
+    public void shouldIncludeCreatedNodesInRangeSeekInValueOrder() throws Exception
+    {
+        // Given
+        IndexSeek seek = IndexSeek.numberRange( 10, true, 30, true );
+        when( store.nodesGetFromIndexSeek( state, indexDescriptor, seek, IndexOrder.ASCENDING ) )
+                .then( answerAsPrimitiveLongIteratorFrom( asList( 2l, 3l ) ) );
+        when( store.nodeGetAllProperties( anyLong() ) ).thenReturn( IteratorUtil
+                .<DefinedProperty>emptyIterator() );
+        when( store.nodeGetAllProperties( 2l ) ).thenReturn( iterator( intProperty( propertyKeyId, 10 ) ) );
+        when( store.nodeGetAllProperties( 3l ) ).thenReturn( iterator( intProperty( propertyKeyId, 30 ) ) );
+        when( store.nodeHasLabel( 1l, labelId ) ).thenReturn( false );
+
+        state.txState().nodeDoReplaceProperty( 1l, noNodeProperty( 1l, propertyKeyId ),
+                                                   intProperty( propertyKeyId, 20 ) );
+        txContext.nodeAddLabel( state, 1l, labelId );
+
+        // When
+        PrimitiveLongIterator result =
+                txContext.nodesGetFromIndexSeek( state, indexDescriptor, seek, IndexOrder.ASCENDING );
+
+        // Then
+        assertThat( PrimitiveLongCollections.asArray( result ), equalTo( new long[]{2l, 1l, 3l} ) );
+    }
+
+    @Test
+    public void shouldExcludeNodesWithPropertyChangedOutOfSeekRange() throws Exception
+    {
+        // Given
+        IndexSeek seek = IndexSeek.numberRange( 10, true, 30, false );
+        when( store.nodesGetFromIndexSeek( state, indexDescriptor, seek, IndexOrder.NONE ) )
+                .then( answerAsPrimitiveLongIteratorFrom( asList( 1l, 2l ) ) );
+        when( store.nodeHasLabel( 1l, labelId ) ).thenReturn( true );
+
+        state.txState().nodeDoReplaceProperty( 1l, intProperty( propertyKeyId, 20 ),
+                                                   intProperty( propertyKeyId, 30 ) );
+
+        // When
+        PrimitiveLongIterator result = txContext.nodesGetFromIndexSeek( state, indexDescriptor, seek, IndexOrder.NONE );
+
+        // Then
+        assertThat( asSet( result ), equalTo( asSet( 2l ) ) );
+    }
+
     // exists
     int labelId = 2;
     int propertyKeyId = 3;
@@ -21,11 +21,15 @@ package org.neo4j.kernel.impl.api.statistics;
 
 import org.junit.Test;
 import org.neo4j.graphdb.Direction;
+import org.neo4j.kernel.api.heuristics.DegreeDistribution;
 import org.neo4j.kernel.impl.util.statistics.RollingAverage;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.neo4j.kernel.api.heuristics.StatisticsData.RELATIONSHIP_DEGREE_FOR_NODE_WITHOUT_LABEL;
 import static org.neo4j.kernel.impl.api.statistics.HeuristicsTestSupport.generateStore;
 
 public class StatisticsCollectorTest
@@ -84,6 +88,55 @@ public class StatisticsCollectorTest
         assertThat( collector.collectedData().degree( 1, 0, Direction.OUTGOING ), closeTo( 4.4, 1.0 ) );
     }
 
+    @Test
+    public void shouldGatherRelationshipDegreeDistribution() throws Exception
+    {
+        // Given
+        StatisticsCollectedData data = new StatisticsCollectedData();
+        StatisticsCollector collector = new StatisticsCollector( generateStore(), data );
+
+        // When
+        collector.run();
+
+        // Then
+        DegreeDistribution incoming = collector.collectedData().degreeDistribution( 1, 0, Direction.INCOMING );
+        assertThat( incoming.max(), equalTo( 50L ) );
+        assertThat( incoming.percentile( 0.05 ), equalTo( 10L ) );
+        assertThat( incoming.percentile( 0.99 ), equalTo( 50L ) );
+        DegreeDistribution both = collector.collectedData().degreeDistribution( 1, 0, Direction.BOTH );
+        assertThat( both.max(), equalTo( 55L ) );
+    }
+
+    @Test
+    public void shouldSweepTheStoreInSteps() throws Exception
+    {
+        // Given
+        StatisticsCollectedData data = new StatisticsCollectedData();
+        StatisticsCollector collector = new StatisticsCollector( generateStore(), data, 400 );
+
+        // When
+        collector.run();
+        collector.run();
+
+        // Then the first sweep is still in progress, but its statistics so far are available
+        assertThat( data.sweepPosition(), equalTo( 800L ) );
+        assertThat( data.completedSweeps(), equalTo( 0L ) );
+        long seenSoFar = collector.collectedData().degreeDistribution(
+                RELATIONSHIP_DEGREE_FOR_NODE_WITHOUT_LABEL, 0, Direction.INCOMING ).count() +
+                collector.collectedData().degreeDistribution(
+                RELATIONSHIP_DEGREE_FOR_NODE_WITHOUT_LABEL, 1, Direction.INCOMING ).count();
+        // (the generated store has one relationship type per node, and about one percent dead nodes)
+        assertThat( seenSoFar, lessThanOrEqualTo( 800L ) );
+        assertThat( seenSoFar, greaterThan( 700L ) );
+
+        // When
+        collector.run();
+
+        // Then
+        assertThat( data.sweepPosition(), equalTo( 0L ) );
+        assertThat( data.completedSweeps(), equalTo( 1L ) );
+    }
+
     @Test
     public void shouldGatherLiveNodes() throws Throwable
     {
@@ -20,6 +20,12 @@
 package org.neo4j.kernel.impl.cache;
 
 import org.junit.Test;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicLabel;
+import org.neo4j.graphdb.DynamicRelationshipType;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.neo4j.kernel.GraphDatabaseAPI;
 import org.neo4j.kernel.impl.AbstractNeo4jTestCase;
@@ -27,6 +33,8 @@ import org.neo4j.kernel.impl.core.NodeManager;
 import org.neo4j.test.TestGraphDatabaseFactory;
 
 import static org.junit.Assert.*;
+import static org.neo4j.helpers.collection.IteratorUtil.count;
+import static org.neo4j.helpers.collection.IteratorUtil.first;
 
 public class CacheTypesIT extends AbstractNeo4jTestCase
 {
@@ -75,6 +83,71 @@ public class CacheTypesIT extends AbstractNeo4jTestCase
         db.shutdown();
     }
     
+    @Test
+    public void testOffHeapCache()
+    {
+        GraphDatabaseAPI db = newDb( OffHeapCacheProvider.NAME );
+        assertEquals( OffHeapCacheProvider.NAME, nodeManager( db ).getCacheType().getName() );
+        db.shutdown();
+    }
+
+    @Test
+    public void offHeapCacheShouldServeEntitiesMovedOffHeap()
+    {
+        // GIVEN
+        GraphDatabaseAPI db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder()
+                .setConfig( GraphDatabaseSettings.cache_type, OffHeapCacheProvider.NAME )
+                .setConfig( OffHeapCacheSettings.offheap_cache_heap_entries, "1" )
+                .newGraphDatabase();
+        long[] nodes = new long[100];
+        try ( Transaction tx = db.beginTx() )
+        {
+            Node previous = null;
+            for ( int i = 0; i < nodes.length; i++ )
+            {
+                Node node = db.createNode( DynamicLabel.label( "Label" + (i % 3) ) );
+                node.setProperty( "name", "node" + i );
+                node.setProperty( "values", new int[] {i, i + 1} );
+                if ( previous != null )
+                {
+                    previous.createRelationshipTo( node, DynamicRelationshipType.withName( "NEXT" ) )
+                            .setProperty( "weight", i * 0.5d );
+                }
+                node.createRelationshipTo( node, DynamicRelationshipType.withName( "SELF" ) );
+                nodes[i] = node.getId();
+                previous = node;
+            }
+            tx.success();
+        }
+
+        // WHEN reading everything twice, so that all entities have been cached and moved off-heap
+        for ( int round = 0; round < 2; round++ )
+        {
+            try ( Transaction tx = db.beginTx() )
+            {
+                // THEN
+                for ( int i = 0; i < nodes.length; i++ )
+                {
+                    Node node = db.getNodeById( nodes[i] );
+                    assertTrue( node.hasLabel( DynamicLabel.label( "Label" + (i % 3) ) ) );
+                    assertEquals( "node" + i, node.getProperty( "name" ) );
+                    assertArrayEquals( new int[] {i, i + 1}, (int[]) node.getProperty( "values" ) );
+                    assertEquals( i == 0 || i == nodes.length - 1 ? 2 : 3, count( node.getRelationships() ) );
+                    if ( i > 0 )
+                    {
+                        Relationship next = node.getSingleRelationship(
+                                DynamicRelationshipType.withName( "NEXT" ), Direction.INCOMING );
+                        assertEquals( nodes[i - 1], next.getStartNode().getId() );
+                        assertEquals( i * 0.5d, next.getProperty( "weight" ) );
+                    }
+                }
+                tx.success();
+            }
+        }
+        assertTrue( first( nodeManager( db ).caches() ).hitCount() > 0 );
+        db.shutdown();
+    }
+
     @Test
     public void testInvalidCache()
     {
@@ -0,0 +1,306 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapCacheTest
+{
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void shutdownExecutor()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldHonorPutSemantics() throws Exception
+    {
+        // GIVEN
+        OffHeapCache<ValueEntity> cache = newCache( 1024 * 1024, 10 );
+        ValueEntity version1 = new ValueEntity( 10, 1 );
+        assertSame( version1, cache.put( version1 ) );
+
+        // WHEN
+        ValueEntity version2 = new ValueEntity( 10, 2 );
+
+        // THEN
+        assertSame( version1, cache.put( version2 ) );
+    }
+
+    @Test
+    public void shouldReadBackEntitiesMovedOffHeap() throws Exception
+    {
+        // GIVEN
+        OffHeapCache<ValueEntity> cache = newCache( 1024 * 1024, 16 );
+        ValueEntity[] entities = new ValueEntity[1000];
+        for ( int i = 0; i < entities.length; i++ )
+        {
+            entities[i] = new ValueEntity( i, i * 3 );
+            cache.put( entities[i] );
+        }
+
+        // WHEN
+        ValueEntity first = cache.get( 0 );
+
+        // THEN
+        assertNotSame( entities[0], first );
+        assertEquals( 0, first.getId() );
+        assertEquals( 0, first.values[0] );
+        for ( int i = 0; i < entities.length; i++ )
+        {
+            assertEquals( i * 3, cache.get( i ).values[0] );
+        }
+        assertEquals( entities.length, cache.size() );
+        assertEquals( entities.length + 1, cache.hitCount() );
+        assertEquals( 0, cache.evictionCount() );
+    }
+
+    @Test
+    public void shouldReturnSameInstanceOnceMovedBackOnHeap() throws Exception
+    {
+        // GIVEN
+        OffHeapCache<ValueEntity> cache = newCache( 1024 * 1024, 16 );
+        for ( int i = 0; i < 100; i++ )
+        {
+            cache.put( new ValueEntity( i, i ) );
+        }
+
+        // WHEN
+        ValueEntity entity = cache.get( 0 );
+
+        // THEN
+        assertSame( entity, cache.get( 0 ) );
+        assertSame( entity, cache.put( new ValueEntity( 0, 5 ) ) );
+    }
+
+    @Test
+    public void shouldEvictOldestEntitiesWhenOffHeapMemoryIsFull() throws Exception
+    {
+        // GIVEN
+        OffHeapCache<ValueEntity> cache = newCache( 64 * 1024, 16 );
+
+        // WHEN
+        for ( int i = 0; i < 10000; i++ )
+        {
+            cache.put( new ValueEntity( i, new long[10] ) );
+        }
+
+        // THEN
+        assertTrue( cache.evictionCount() > 0 );
+        assertEquals( 10000, cache.size() + cache.evictionCount() );
+        assertNull( cache.get( 0 ) );
+        assertNotNull( cache.get( 9999 ) );
+    }
+
+    @Test
+    public void shouldEvictEntitiesTooBigForOffHeapMemory() throws Exception
+    {
+        // GIVEN
+        OffHeapCache<ValueEntity> cache = newCache( 64 * 1024, 16 );
+        cache.put( new ValueEntity( 0, new long[10000] ) );
+
+        // WHEN
+        for ( int i = 1; i < 100; i++ )
+        {
+            cache.put( new ValueEntity( i, 0 ) );
+        }
+
+        // THEN
+        assertNull( cache.get( 0 ) );
+        assertEquals( 1, cache.evictionCount() );
+    }
+
+    @Test
+    public void shouldDropOffHeapCopyOfEntityChangedAfterBeingMovedOffHeap() throws Exception
+    {
+        // GIVEN
+        OffHeapCache<ValueEntity> cache = newCache( 1024 * 1024, 16 );
+        ValueEntity entity = new ValueEntity( 0, 1 );
+        cache.put( entity );
+        for ( int i = 1; i < 100; i++ )
+        {
+            cache.put( new ValueEntity( i, i ) );
+        }
+
+        // WHEN
+        entity.values[0] = 2;
+        cache.updateSize( entity, entity.sizeOfObjectInBytesIncludingOverhead() );
+
+        // THEN
+        assertNull( cache.get( 0 ) );
+    }
+
+    @Test
+    public void shouldDropCopyReadBackFromEntityChangedWhileBeingMovedOffHeap() throws Exception
+    {
+        // GIVEN
+        PausingMarshaller marshaller = new PausingMarshaller( 0 );
+        final OffHeapCache<ValueEntity> cache = new OffHeapCache<>( "test", marshaller, 1024 * 1024, 16 );
+        ValueEntity entity = new ValueEntity( 0, 1, 1 );
+        cache.put( entity );
+
+        // WHEN
+        // evicting it from the heap, by putting another entity of the same stripe, while a transaction changes it
+        Future<ValueEntity> evictor = executor.submit( new Callable<ValueEntity>()
+        {
+            @Override
+            public ValueEntity call()
+            {
+                return cache.put( new ValueEntity( 16, 16 ) );
+            }
+        } );
+        assertTrue( marshaller.serializing.await( 10, TimeUnit.SECONDS ) );
+        entity.values[0] = 2;
+        entity.values[1] = 2;
+        marshaller.resume.countDown();
+        evictor.get( 10, TimeUnit.SECONDS );
+        ValueEntity torn = cache.get( 0 );
+        cache.updateSize( entity, entity.sizeOfObjectInBytesIncludingOverhead() );
+
+        // THEN
+        assertEquals( 1, torn.values[0] );
+        assertEquals( 2, torn.values[1] );
+        assertNull( cache.get( 0 ) );
+    }
+
+    @Test
+    public void shouldRemoveEntitiesBothOnAndOffHeap() throws Exception
+    {
+        // GIVEN
+        OffHeapCache<ValueEntity> cache = newCache( 1024 * 1024, 16 );
+        for ( int i = 0; i < 100; i++ )
+        {
+            cache.put( new ValueEntity( i, i ) );
+        }
+
+        // WHEN
+        ValueEntity offHeap = cache.remove( 0 );
+        ValueEntity onHeap = cache.remove( 99 );
+
+        // THEN
+        assertEquals( 0, offHeap.getId() );
+        assertEquals( 99, onHeap.getId() );
+        assertNull( cache.get( 0 ) );
+        assertNull( cache.get( 99 ) );
+        assertEquals( 98, cache.size() );
+    }
+
+    private OffHeapCache<ValueEntity> newCache( long offHeapBytes, int heapEntities )
+    {
+        return new OffHeapCache<>( "test", new ValueEntityMarshaller(), offHeapBytes, heapEntities );
+    }
+
+    private static class ValueEntity extends TestCacheTypes.Entity
+    {
+        private final long[] values;
+
+        ValueEntity( long id, long... values )
+        {
+            super( id );
+            this.values = values;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "ValueEntity[" + getId() + ":" + Arrays.toString( values ) + "]";
+        }
+    }
+
+    private static class ValueEntityMarshaller implements EntityMarshaller<ValueEntity>
+    {
+        protected void written( ValueEntity entity, int index )
+        {
+        }
+
+        @Override
+        public void write( ValueEntity entity, ByteBuffer target )
+        {
+            target.putInt( entity.values.length );
+            for ( int i = 0; i < entity.values.length; i++ )
+            {
+                target.putLong( entity.values[i] );
+                written( entity, i );
+            }
+        }
+
+        @Override
+        public ValueEntity read( long id, ByteBuffer source )
+        {
+            long[] values = new long[source.getInt()];
+            for ( int i = 0; i < values.length; i++ )
+            {
+                values[i] = source.getLong();
+            }
+            return new ValueEntity( id, values );
+        }
+    }
+
+    /**
+     * Pauses after writing the first value of one entity, for it to be changed while being serialized.
+     */
+    private static class PausingMarshaller extends ValueEntityMarshaller
+    {
+        private final long id;
+        final CountDownLatch serializing = new CountDownLatch( 1 );
+        final CountDownLatch resume = new CountDownLatch( 1 );
+
+        PausingMarshaller( long id )
+        {
+            this.id = id;
+        }
+
+        @Override
+        protected void written( ValueEntity entity, int index )
+        {
+            if ( entity.getId() == id && index == 0 && serializing.getCount() > 0 )
+            {
+                serializing.countDown();
+                try
+                {
+                    resume.await();
+                }
+                catch ( InterruptedException e )
+                {
+                    throw new RuntimeException( e );
+                }
+            }
+        }
+    }
+}
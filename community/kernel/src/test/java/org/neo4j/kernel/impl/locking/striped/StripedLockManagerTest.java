@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.locking.striped;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.neo4j.kernel.DeadlockDetectedException;
+import org.neo4j.kernel.impl.locking.Locks;
+import org.neo4j.kernel.impl.locking.ResourceTypes;
+import org.neo4j.test.OtherThreadExecutor;
+import org.neo4j.test.OtherThreadRule;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.neo4j.kernel.impl.locking.ResourceTypes.NODE;
+import static org.neo4j.kernel.impl.locking.ResourceTypes.RELATIONSHIP;
+import static org.neo4j.test.OtherThreadRule.isWaiting;
+
+public class StripedLockManagerTest
+{
+    @Rule
+    public OtherThreadRule<Void> otherThread = new OtherThreadRule<>();
+
+    @Test
+    public void shouldNotBlockOnOtherResourcesInTheSameStripe() throws Exception
+    {
+        // Given
+        StripedLockManager locks = new StripedLockManager( 1, ResourceTypes.values() );
+        Locks.Client clientA = locks.newClient();
+        Locks.Client clientB = locks.newClient();
+        clientA.acquireExclusive( NODE, 1 );
+
+        // Then
+        assertTrue( clientB.tryExclusiveLock( NODE, 2 ) );
+        assertTrue( clientB.tryExclusiveLock( RELATIONSHIP, 1 ) );
+        assertFalse( clientB.trySharedLock( NODE, 1 ) );
+    }
+
+    @Test
+    public void shouldDetectDeadlockBetweenClientsUpgradingTheSameSharedLock() throws Exception
+    {
+        // Given
+        StripedLockManager locks = new StripedLockManager( ResourceTypes.values() );
+        final Locks.Client clientA = locks.newClient();
+        Locks.Client clientB = locks.newClient();
+        clientA.acquireShared( NODE, 1 );
+        clientB.acquireShared( NODE, 1 );
+
+        Future<Void> upgradeA = otherThread.execute( new OtherThreadExecutor.WorkerCommand<Void, Void>()
+        {
+            @Override
+            public Void doWork( Void state ) throws Exception
+            {
+                clientA.acquireExclusive( NODE, 1 );
+                return null;
+            }
+        } );
+        assertThat( otherThread, isWaiting() );
+
+        // When
+        try
+        {
+            clientB.acquireExclusive( NODE, 1 );
+            fail( "Should have detected a deadlock" );
+        }
+        catch ( DeadlockDetectedException e )
+        {
+            // Then, once the client that detected it lets go, the other one gets its lock
+            clientB.releaseAll();
+        }
+        upgradeA.get( 10, TimeUnit.SECONDS );
+    }
+
+    @Test
+    public void shouldLetOtherClientsInWhileWaitingForAnExclusiveLockFails() throws Exception
+    {
+        // Given
+        StripedLockManager locks = new StripedLockManager( ResourceTypes.values() );
+        Locks.Client clientA = locks.newClient();
+        final Locks.Client clientB = locks.newClient();
+        Locks.Client clientC = locks.newClient();
+        clientA.acquireShared( NODE, 1 );
+
+        Future<Void> exclusive = otherThread.execute( new OtherThreadExecutor.WorkerCommand<Void, Void>()
+        {
+            @Override
+            public Void doWork( Void state ) throws Exception
+            {
+                clientB.acquireExclusive( NODE, 1 );
+                return null;
+            }
+        } );
+        assertThat( otherThread, isWaiting() );
+        assertFalse( clientC.trySharedLock( NODE, 1 ) );
+
+        // When
+        otherThread.interrupt();
+        try
+        {
+            exclusive.get( 10, TimeUnit.SECONDS );
+            fail( "Should have been interrupted" );
+        }
+        catch ( Exception e )
+        {
+            // Then
+            assertTrue( clientC.trySharedLock( NODE, 1 ) );
+        }
+    }
+
+    @Test
+    public void shouldOnlyKeepEntriesForHeldLocks() throws Exception
+    {
+        // Given
+        StripedLockManager locks = new StripedLockManager( ResourceTypes.values() );
+        Locks.Client client = locks.newClient();
+        client.acquireExclusive( NODE, 1 );
+        client.acquireShared( NODE, 1, 2 );
+        client.acquireShared( RELATIONSHIP, 3 );
+
+        // When
+        client.releaseAllExclusive();
+        client.releaseShared( NODE, 2 );
+
+        // Then
+        assertThat( heldLocks( locks ), equalTo( asList( "NODE(1)", "RELATIONSHIP(3)" ) ) );
+
+        // And when
+        client.close();
+
+        // Then
+        assertThat( heldLocks( locks ).size(), equalTo( 0 ) );
+    }
+
+    @Test
+    public void shouldReuseIdsOfClosedClients() throws Exception
+    {
+        // Given
+        StripedLockManager locks = new StripedLockManager( ResourceTypes.values() );
+        Locks.Client first = locks.newClient();
+        first.close();
+
+        // When
+        Locks.Client second = locks.newClient();
+
+        // Then
+        assertThat( second, instanceOf( StripedLockClient.class ) );
+        assertThat( ((StripedLockClient) second).id(), equalTo( ((StripedLockClient) first).id() ) );
+    }
+
+    private static List<String> heldLocks( Locks locks )
+    {
+        final List<String> held = new ArrayList<>();
+        locks.accept( new Locks.Visitor()
+        {
+            @Override
+            public void visit( Locks.ResourceType resourceType, long resourceId, String description,
+                               long estimatedWaitTime )
+            {
+                held.add( resourceType + "(" + resourceId + ")" );
+            }
+        } );
+        return held;
+    }
+
+    private static List<String> asList( String... values )
+    {
+        return Arrays.asList( values );
+    }
+}
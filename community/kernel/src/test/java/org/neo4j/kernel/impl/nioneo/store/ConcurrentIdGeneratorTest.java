@@ -0,0 +1,264 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.neo4j.kernel.DefaultIdGeneratorFactory;
+import org.neo4j.kernel.IdType;
+import org.neo4j.test.EphemeralFileSystemRule;
+import org.neo4j.test.impl.EphemeralFileSystemAbstraction;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import static org.neo4j.kernel.impl.nioneo.store.IdGeneratorImpl.INTEGER_MINUS_ONE;
+
+public class ConcurrentIdGeneratorTest
+{
+    @Rule public EphemeralFileSystemRule fsRule = new EphemeralFileSystemRule();
+    private EphemeralFileSystemAbstraction fs;
+    private final File file = new File( "concurrent.id" );
+
+    @Before
+    public void createGenerator()
+    {
+        fs = fsRule.get();
+        IdGeneratorImpl.createGenerator( fs, file );
+    }
+
+    @Test
+    public void shouldHandOutUniqueIdsToConcurrentThreads() throws Exception
+    {
+        // GIVEN
+        final ConcurrentIdGenerator generator = open( false );
+        int threads = 8;
+        final int idsPerThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+
+        // WHEN
+        List<Future<long[]>> results = new ArrayList<>();
+        for ( int i = 0; i < threads; i++ )
+        {
+            results.add( executor.submit( new Callable<long[]>()
+            {
+                @Override
+                public long[] call()
+                {
+                    long[] ids = new long[idsPerThread];
+                    for ( int i = 0; i < ids.length; i++ )
+                    {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                }
+            } ) );
+        }
+
+        // THEN
+        Set<Long> allIds = new HashSet<>();
+        for ( Future<long[]> result : results )
+        {
+            for ( long id : result.get() )
+            {
+                assertTrue( "Duplicate id " + id, allIds.add( id ) );
+                assertTrue( id < generator.getHighId() );
+            }
+        }
+        executor.shutdown();
+        assertEquals( threads * idsPerThread, allIds.size() );
+        close( generator );
+    }
+
+    @Test
+    public void shouldReuseIdsLeftInThreadRangesAfterRestart() throws Exception
+    {
+        // GIVEN
+        ConcurrentIdGenerator generator = open( false );
+        long first = generator.nextId();
+        long second = generator.nextId();
+        long highId = generator.getHighId();
+        assertEquals( ConcurrentIdGenerator.DEFAULT_BATCH_SIZE, highId );
+
+        // WHEN
+        close( generator );
+        generator = open( false );
+
+        // THEN
+        assertEquals( highId, generator.getHighId() );
+        assertEquals( highId - 2, generator.getDefragCount() );
+        Set<Long> reused = new HashSet<>();
+        for ( int i = 0; i < highId - 2; i++ )
+        {
+            reused.add( generator.nextId() );
+        }
+        assertFalse( reused.contains( first ) );
+        assertFalse( reused.contains( second ) );
+        assertEquals( highId, generator.nextId() );
+        close( generator );
+    }
+
+    @Test
+    public void shouldReuseFreedIdsInSameSessionIfAggressive() throws Exception
+    {
+        // GIVEN
+        ConcurrentIdGenerator aggressive = open( true );
+        long id = aggressive.nextId();
+
+        // WHEN
+        aggressive.freeId( id );
+
+        // THEN
+        assertEquals( id, aggressive.nextId() );
+        close( aggressive );
+    }
+
+    @Test
+    public void shouldReuseFreedIdsAfterRestartIfNotAggressive() throws Exception
+    {
+        // GIVEN
+        ConcurrentIdGenerator conservative = open( false );
+        long reusable = conservative.nextId();
+
+        // WHEN
+        conservative.freeId( reusable );
+
+        // THEN
+        assertTrue( reusable != conservative.nextId() );
+        close( conservative );
+        conservative = open( false );
+        assertEquals( reusable, conservative.nextId() );
+        close( conservative );
+    }
+
+    @Test
+    public void shouldSpillFreedIdsToFileBeyondGrabSize() throws Exception
+    {
+        // GIVEN
+        ConcurrentIdGenerator generator = open( true );
+        List<Long> ids = new ArrayList<>();
+        for ( int i = 0; i < 100; i++ )
+        {
+            ids.add( generator.nextId() );
+        }
+
+        // WHEN
+        for ( long id : ids )
+        {
+            generator.freeId( id );
+        }
+
+        // THEN
+        Set<Long> reused = new HashSet<>();
+        for ( int i = 0; i < ids.size(); i++ )
+        {
+            reused.add( generator.nextId() );
+        }
+        assertEquals( new HashSet<>( ids ), reused );
+        assertEquals( 0, generator.getDefragCount() );
+        close( generator );
+    }
+
+    @Test
+    public void shouldSkipIntegerMinusOne() throws Exception
+    {
+        // GIVEN
+        ConcurrentIdGenerator generator = open( false );
+        generator.setHighId( INTEGER_MINUS_ONE - 2 );
+
+        // WHEN
+        for ( int i = 0; i < 5; i++ )
+        {
+            // THEN
+            assertTrue( generator.nextId() != INTEGER_MINUS_ONE );
+        }
+        close( generator );
+    }
+
+    @Test
+    public void shouldNotHandOutIdsAfterClose() throws Exception
+    {
+        // GIVEN
+        ConcurrentIdGenerator generator = open( false );
+        generator.nextId();
+        generator.close();
+
+        // WHEN
+        try
+        {
+            generator.nextId();
+            fail( "Should have failed" );
+        }
+        catch ( IllegalStateException e )
+        {   // THEN good
+        }
+        generator.awaitClosed();
+        generator.delete();
+        assertFalse( fs.fileExists( file ) );
+    }
+
+    @SuppressWarnings( "deprecation" )
+    @Test
+    public void shouldOnlyBeUsedForIdsAllocatedConcurrently() throws Exception
+    {
+        // GIVEN
+        DefaultIdGeneratorFactory factory = new DefaultIdGeneratorFactory( true );
+        File tokenFile = new File( "token.id" );
+        IdGeneratorImpl.createGenerator( fs, tokenFile );
+
+        // WHEN
+        IdGenerator nodeIds = factory.open( fs, file, 10, IdType.NODE, 0 );
+        IdGenerator tokenIds = factory.open( fs, tokenFile, 10, IdType.LABEL_TOKEN, 0 );
+
+        // THEN
+        assertThat( nodeIds, instanceOf( ConcurrentIdGenerator.class ) );
+        assertThat( tokenIds, instanceOf( IdGeneratorImpl.class ) );
+        close( (ConcurrentIdGenerator) nodeIds );
+        tokenIds.close();
+    }
+
+    private void close( ConcurrentIdGenerator generator )
+    {
+        generator.close();
+        generator.awaitClosed();
+    }
+
+    private ConcurrentIdGenerator open( boolean aggressiveReuse )
+    {
+        return new ConcurrentIdGenerator( fs, file, 10, ConcurrentIdGenerator.DEFAULT_BATCH_SIZE,
+                IdGeneratorImpl.INTEGER_MINUS_ONE * 2, aggressiveReuse, 0 );
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.io.File;
+
+import org.neo4j.kernel.DefaultFileSystemAbstraction;
+import org.neo4j.kernel.IdType;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * Measures id allocation throughput of {@link IdGeneratorImpl} and {@link ConcurrentIdGenerator} over a
+ * growing number of threads. Each thread frees every {@code -DfreeEvery}:th id it gets, to also exercise
+ * reuse of freed ids.
+ * <p>
+ * Run with -DmaxThreads, -Dids (per thread) and -DfreeEvery to tweak.
+ */
+public class IdGeneratorScalingBenchmark
+{
+    public static void main( String... args ) throws Exception
+    {
+        int maxThreads = Integer.getInteger( "maxThreads", Runtime.getRuntime().availableProcessors() * 2 );
+        int ids = Integer.getInteger( "ids", 1_000_000 );
+        int freeEvery = Integer.getInteger( "freeEvery", 10 );
+
+        FileSystemAbstraction fs = new DefaultFileSystemAbstraction();
+        File file = new File( "target/id-generator-benchmark.id" );
+        for ( Implementation implementation : Implementation.values() )
+        {
+            for ( int threads = 1; threads <= maxThreads; threads *= 2 )
+            {
+                fs.deleteFile( file );
+                IdGeneratorImpl.createGenerator( fs, file );
+                IdGenerator generator = implementation.open( fs, file );
+                try
+                {
+                    double idsPerSecond = execute( generator, threads, ids, freeEvery );
+                    System.out.printf( "%s - %d threads: %.0f ids/s%n", implementation, threads, idsPerSecond );
+                }
+                finally
+                {
+                    generator.close();
+                    generator.delete();
+                }
+            }
+        }
+    }
+
+    private enum Implementation
+    {
+        SYNCHRONIZED
+        {
+            @Override
+            IdGenerator open( FileSystemAbstraction fs, File file )
+            {
+                return new IdGeneratorImpl( fs, file, IdType.RELATIONSHIP.getGrabSize(),
+                        IdType.RELATIONSHIP.getMaxValue(), IdType.RELATIONSHIP.allowAggressiveReuse(), 0 );
+            }
+        },
+        CONCURRENT
+        {
+            @Override
+            IdGenerator open( FileSystemAbstraction fs, File file )
+            {
+                return new ConcurrentIdGenerator( fs, file, IdType.RELATIONSHIP.getGrabSize(),
+                        ConcurrentIdGenerator.DEFAULT_BATCH_SIZE, IdType.RELATIONSHIP.getMaxValue(),
+                        IdType.RELATIONSHIP.allowAggressiveReuse(), 0 );
+            }
+        };
+
+        abstract IdGenerator open( FileSystemAbstraction fs, File file );
+    }
+
+    private static double execute( final IdGenerator generator, int threadCount, final int ids,
+            final int freeEvery ) throws InterruptedException
+    {
+        Thread[] threads = new Thread[threadCount];
+        for ( int i = 0; i < threadCount; i++ )
+        {
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for ( int i = 0; i < ids; i++ )
+                    {
+                        long id = generator.nextId();
+                        if ( i % freeEvery == 0 )
+                        {
+                            generator.freeId( id );
+                        }
+                    }
+                }
+            };
+        }
+        long time = nanoTime();
+        for ( Thread thread : threads )
+        {
+            thread.start();
+        }
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+        time = nanoTime() - time;
+        return (double) threadCount * ids / (time / 1_000_000_000.0);
+    }
+}
@@ -0,0 +1,347 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.kernel.impl.util.StringLogger;
+import org.neo4j.test.OtherThreadExecutor;
+import org.neo4j.test.OtherThreadExecutor.WorkerCommand;
+import org.neo4j.test.ResourceCollection;
+import org.neo4j.test.TargetDirectory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PagedWindowPoolTest
+{
+    private static final int RECORD_SIZE = 8;
+
+    @Rule
+    public final ResourceCollection resources = new ResourceCollection();
+    @Rule
+    public final TargetDirectory.TestDirectory directory =
+            TargetDirectory.forTest( PagedWindowPoolTest.class ).testDirectory();
+
+    @Test
+    public void shouldReadBackWhatWasWrittenThroughEvictionsWhenMemoryMapped() throws Exception
+    {
+        shouldReadBackWhatWasWrittenThroughEvictions( true );
+    }
+
+    @Test
+    public void shouldReadBackWhatWasWrittenThroughEvictionsWhenNotMemoryMapped() throws Exception
+    {
+        shouldReadBackWhatWasWrittenThroughEvictions( false );
+    }
+
+    private void shouldReadBackWhatWasWrittenThroughEvictions( boolean memoryMapped ) throws Exception
+    {
+        // GIVEN a pool with room for only a few pages of 16 records each
+        StoreChannel channel = channel( "store" );
+        PagedWindowPool pool = new PagedWindowPool( new File( "store" ), RECORD_SIZE, channel,
+                RECORD_SIZE * 16 * 4, RECORD_SIZE * 16, memoryMapped, false, StringLogger.DEV_NULL );
+        int records = 16 * 20;
+
+        // WHEN
+        for ( long id = 0; id < records; id++ )
+        {
+            write( pool, id, id * 3 );
+        }
+
+        // THEN
+        for ( long id = 0; id < records; id++ )
+        {
+            assertEquals( id * 3, read( pool, id ) );
+        }
+        assertTrue( pool.getStats().getSwitchCount() > 0 );
+        pool.close();
+        assertEquals( 42 * 3, readFromFile( channel, 42 ) );
+    }
+
+    @Test
+    public void shouldWriteChangesToFileOnFlush() throws Exception
+    {
+        // GIVEN
+        StoreChannel channel = channel( "store" );
+        PagedWindowPool pool = new PagedWindowPool( new File( "store" ), RECORD_SIZE, channel,
+                1024 * 1024, 1024, false, false, StringLogger.DEV_NULL );
+        write( pool, 5, 1234 );
+
+        // WHEN
+        pool.flushAll();
+
+        // THEN
+        assertEquals( 1234, readFromFile( channel, 5 ) );
+        pool.close();
+    }
+
+    @Test
+    public void shouldNotGrowFileWhenAccessingRecordsNearItsEndWhenMemoryMapped() throws Exception
+    {
+        shouldNotGrowFileWhenAccessingRecordsNearItsEnd( true );
+    }
+
+    @Test
+    public void shouldNotGrowFileWhenAccessingRecordsNearItsEndWhenNotMemoryMapped() throws Exception
+    {
+        shouldNotGrowFileWhenAccessingRecordsNearItsEnd( false );
+    }
+
+    private void shouldNotGrowFileWhenAccessingRecordsNearItsEnd( boolean memoryMapped ) throws Exception
+    {
+        // GIVEN a file of 10 records, ending in the middle of a page of 16 records
+        StoreChannel channel = channel( "store" );
+        channel.write( ByteBuffer.allocate( RECORD_SIZE * 10 ), 0 );
+        PagedWindowPool pool = new PagedWindowPool( new File( "store" ), RECORD_SIZE, channel,
+                1024 * 1024, RECORD_SIZE * 16, memoryMapped, false, StringLogger.DEV_NULL );
+
+        // WHEN
+        read( pool, 9 );
+        read( pool, 12 );
+        write( pool, 3, 33 );
+        pool.flushAll();
+
+        // THEN
+        assertEquals( RECORD_SIZE * 10, channel.size() );
+        assertEquals( 33, readFromFile( channel, 3 ) );
+
+        // and WHEN
+        write( pool, 10, 100 );
+        pool.close();
+
+        // THEN it only grows by the record written
+        assertEquals( RECORD_SIZE * 11, channel.size() );
+        assertEquals( 100, readFromFile( channel, 10 ) );
+    }
+
+    @Test
+    public void shouldLetReadersShareAPage() throws Exception
+    {
+        // GIVEN
+        final PagedWindowPool pool = new PagedWindowPool( new File( "store" ), RECORD_SIZE, channel( "store" ),
+                1024 * 1024, 1024, true, false, StringLogger.DEV_NULL );
+        write( pool, 1, 10 );
+        write( pool, 2, 20 );
+        PersistenceWindow first = pool.acquire( 1, OperationType.READ );
+
+        // WHEN
+        OtherThreadExecutor<Void> otherThread = resources.add( new OtherThreadExecutor<Void>( "reader", null ) );
+        long otherValue = otherThread.execute( new WorkerCommand<Void, Long>()
+        {
+            @Override
+            public Long doWork( Void state )
+            {
+                return read( pool, 2 );
+            }
+        } );
+
+        // THEN
+        assertEquals( 20, otherValue );
+        assertEquals( 10, first.getOffsettedBuffer( 1 ).getLong() );
+        pool.release( first );
+        pool.close();
+    }
+
+    @Test
+    public void shouldNotLetReadersSeeAPageWhileItIsBeingWritten() throws Exception
+    {
+        // GIVEN
+        final PagedWindowPool pool = new PagedWindowPool( new File( "store" ), RECORD_SIZE, channel( "store" ),
+                1024 * 1024, 1024, true, false, StringLogger.DEV_NULL );
+        PersistenceWindow writer = pool.acquire( 1, OperationType.WRITE );
+        final CountDownLatch readerStarted = new CountDownLatch( 1 );
+
+        // WHEN
+        OtherThreadExecutor<Void> otherThread = resources.add( new OtherThreadExecutor<Void>( "reader", null ) );
+        Future<Long> reader = otherThread.executeDontWait( new WorkerCommand<Void, Long>()
+        {
+            @Override
+            public Long doWork( Void state )
+            {
+                readerStarted.countDown();
+                return read( pool, 1 );
+            }
+        } );
+        readerStarted.await();
+        otherThread.waitUntilWaiting();
+        assertFalse( reader.isDone() );
+        writer.getOffsettedBuffer( 1 ).putLong( 99 );
+        pool.release( writer );
+
+        // THEN
+        assertEquals( 99, reader.get( 10, TimeUnit.SECONDS ).longValue() );
+        pool.close();
+    }
+
+    @Test
+    public void shouldNotLetFlushReturnWhileAnotherFlushIsWritingOutThePage() throws Exception
+    {
+        // GIVEN a file channel holding up writes until told otherwise
+        final CountDownLatch writing = new CountDownLatch( 1 );
+        final CountDownLatch letWritesThrough = new CountDownLatch( 1 );
+        RandomAccessFile file = resources.add( new RandomAccessFile( new File( directory.directory(), "store" ), "rw" ) );
+        StoreChannel channel = new StoreFileChannel( file.getChannel() )
+        {
+            @Override
+            public int write( ByteBuffer src, long position ) throws IOException
+            {
+                writing.countDown();
+                try
+                {
+                    letWritesThrough.await();
+                }
+                catch ( InterruptedException e )
+                {
+                    throw new IOException( e );
+                }
+                return super.write( src, position );
+            }
+        };
+        final PagedWindowPool pool = new PagedWindowPool( new File( "store" ), RECORD_SIZE, channel,
+                1024 * 1024, 1024, false, false, StringLogger.DEV_NULL );
+        write( pool, 5, 1234 );
+        OtherThreadExecutor<Void> first = resources.add( new OtherThreadExecutor<Void>( "first flusher", null ) );
+        Future<Void> firstFlush = first.executeDontWait( flushAll( pool ) );
+        writing.await();
+
+        // WHEN
+        OtherThreadExecutor<Void> second = resources.add( new OtherThreadExecutor<Void>( "second flusher", null ) );
+        Future<Void> secondFlush = second.executeDontWait( flushAll( pool ) );
+        second.waitUntilWaiting();
+
+        // THEN
+        assertFalse( secondFlush.isDone() );
+        letWritesThrough.countDown();
+        firstFlush.get( 10, TimeUnit.SECONDS );
+        secondFlush.get( 10, TimeUnit.SECONDS );
+        assertEquals( 1234, readFromFile( channel, 5 ) );
+        pool.close();
+    }
+
+    @Test
+    public void shouldUsePagedWindowPoolWhenConfigured() throws Exception
+    {
+        // GIVEN
+        String storeDir = directory.directory().getAbsolutePath();
+        GraphDatabaseService db = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder( storeDir )
+                .setConfig( GraphDatabaseSettings.use_paged_window_pool, "true" )
+                .setConfig( GraphDatabaseSettings.mapped_memory_page_size, "4k" )
+                .newGraphDatabase();
+        long nodeId;
+        try
+        {
+            // WHEN
+            try ( Transaction tx = db.beginTx() )
+            {
+                Node node = db.createNode();
+                node.setProperty( "name", "paged" );
+                nodeId = node.getId();
+                tx.success();
+            }
+        }
+        finally
+        {
+            db.shutdown();
+        }
+
+        // THEN
+        db = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder( storeDir )
+                .setConfig( GraphDatabaseSettings.use_paged_window_pool, "true" )
+                .newGraphDatabase();
+        try ( Transaction tx = db.beginTx() )
+        {
+            assertEquals( "paged", db.getNodeById( nodeId ).getProperty( "name" ) );
+            tx.success();
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+
+    private StoreChannel channel( String name ) throws Exception
+    {
+        RandomAccessFile file = resources.add( new RandomAccessFile( new File( directory.directory(), name ), "rw" ) );
+        return new StoreFileChannel( file.getChannel() );
+    }
+
+    private static void write( PagedWindowPool pool, long id, long value )
+    {
+        PersistenceWindow window = pool.acquire( id, OperationType.WRITE );
+        try
+        {
+            window.getOffsettedBuffer( id ).putLong( value );
+        }
+        finally
+        {
+            pool.release( window );
+        }
+    }
+
+    private static WorkerCommand<Void, Void> flushAll( final PagedWindowPool pool )
+    {
+        return new WorkerCommand<Void, Void>()
+        {
+            @Override
+            public Void doWork( Void state )
+            {
+                pool.flushAll();
+                return null;
+            }
+        };
+    }
+
+    private static long read( PagedWindowPool pool, long id )
+    {
+        PersistenceWindow window = pool.acquire( id, OperationType.READ );
+        try
+        {
+            return window.getOffsettedBuffer( id ).getLong();
+        }
+        finally
+        {
+            pool.release( window );
+        }
+    }
+
+    private static long readFromFile( StoreChannel channel, long id ) throws Exception
+    {
+        ByteBuffer buffer = ByteBuffer.allocate( RECORD_SIZE );
+        channel.read( buffer, id * RECORD_SIZE );
+        buffer.flip();
+        return buffer.getLong();
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.nioneo.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.neo4j.kernel.impl.nioneo.store.windowpool.WindowPool;
+import org.neo4j.kernel.impl.util.StringLogger;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * Measures random read throughput of {@link PersistenceWindowPool} and {@link PagedWindowPool} over a
+ * growing number of threads, with the whole store fitting in mapped memory.
+ * <p>
+ * Run with -DmaxThreads, -DfileSize (in MiB), -Dreads (per thread) and -DrecordSize to tweak.
+ */
+public class WindowPoolReadScalingBenchmark
+{
+    public static void main( String... args ) throws Exception
+    {
+        int maxThreads = Integer.getInteger( "maxThreads", Runtime.getRuntime().availableProcessors() * 2 );
+        int recordSize = Integer.getInteger( "recordSize", 33 );
+        long fileSize = Integer.getInteger( "fileSize", 256 ) * 1024L * 1024L;
+        int reads = Integer.getInteger( "reads", 1_000_000 );
+
+        File file = new File( "target/window-pool-benchmark" );
+        RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+        try
+        {
+            StoreChannel channel = new StoreFileChannel( raf.getChannel() );
+            channel.write( ByteBuffer.wrap( new byte[1] ), fileSize - 1 );
+            long records = fileSize / recordSize;
+            for ( Implementation implementation : Implementation.values() )
+            {
+                WindowPool pool = implementation.create( channel, recordSize, fileSize * 2 );
+                try
+                {
+                    for ( int threads = 1; threads <= maxThreads; threads *= 2 )
+                    {
+                        double readsPerSecond = execute( pool, threads, reads, records );
+                        System.out.printf( "%s - %d threads: %.0f reads/s%n", implementation, threads,
+                                readsPerSecond );
+                    }
+                }
+                finally
+                {
+                    pool.close();
+                }
+            }
+        }
+        finally
+        {
+            raf.close();
+            file.delete();
+        }
+    }
+
+    enum Implementation
+    {
+        PERSISTENCE_WINDOW_POOL
+        {
+            @Override
+            WindowPool create( StoreChannel channel, int recordSize, long mappedMem ) throws IOException
+            {
+                return new PersistenceWindowPool( new File( "benchmark" ), recordSize, channel, mappedMem, true,
+                        false, new ConcurrentHashMap<Long, PersistenceRow>(), BrickElementFactory.DEFAULT,
+                        StringLogger.DEV_NULL );
+            }
+        },
+        PAGED_WINDOW_POOL
+        {
+            @Override
+            WindowPool create( StoreChannel channel, int recordSize, long mappedMem ) throws IOException
+            {
+                return new PagedWindowPool( new File( "benchmark" ), recordSize, channel, mappedMem, 1024 * 1024,
+                        true, false, StringLogger.DEV_NULL );
+            }
+        };
+
+        abstract WindowPool create( StoreChannel channel, int recordSize, long mappedMem ) throws IOException;
+    }
+
+    private static double execute( final WindowPool pool, int threadCount, final int reads, final long records )
+            throws InterruptedException
+    {
+        Thread[] threads = new Thread[threadCount];
+        for ( int i = 0; i < threadCount; i++ )
+        {
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for ( int j = 0; j < reads; j++ )
+                    {
+                        long id = random.nextLong( records );
+                        PersistenceWindow window = pool.acquire( id, OperationType.READ );
+                        try
+                        {
+                            window.getOffsettedBuffer( id ).getLong();
+                        }
+                        finally
+                        {
+                            pool.release( window );
+                        }
+                    }
+                }
+            };
+        }
+        long time = nanoTime();
+        for ( Thread thread : threads )
+        {
+            thread.start();
+        }
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+        time = nanoTime() - time;
+        return (double) threadCount * reads / (time / 1_000_000_000.0);
+    }
+}
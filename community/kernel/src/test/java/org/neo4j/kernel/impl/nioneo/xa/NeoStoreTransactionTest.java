@@ -93,6 +93,7 @@ import static java.lang.Integer.parseInt;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.*;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyVararg;
 import static org.mockito.Mockito.*;
 
 import static org.neo4j.graphdb.Direction.INCOMING;
@@ -622,6 +623,40 @@ public class NeoStoreTransactionTest
         prepareAndCommit( tx );
     }
 
+    @Test
+    public void shouldCreateIndexesOfTransactionTogetherAfterTheirRulesAreInTheSchemaStore() throws Exception
+    {
+        // GIVEN
+        IndexingService indexing = mock( IndexingService.class );
+        final Set<Long> rulesInStoreWhenCreatingIndexes = new HashSet<>();
+        doAnswer( new Answer<Void>()
+        {
+            @Override
+            public Void answer( InvocationOnMock invocation ) throws Throwable
+            {
+                Iterator<SchemaRule> rules = neoStore.getSchemaStore().loadAllSchemaRules();
+                while ( rules.hasNext() )
+                {
+                    rulesInStoreWhenCreatingIndexes.add( rules.next().getId() );
+                }
+                return null;
+            }
+        } ).when( indexing ).createIndexes( (IndexRule[]) anyVararg() );
+        NeoStoreTransaction tx = newWriteTransaction( indexing ).first();
+        IndexRule first = indexRule( neoStore.getSchemaStore().nextId(), 5, 7, PROVIDER_DESCRIPTOR );
+        IndexRule second = indexRule( neoStore.getSchemaStore().nextId(), 5, 8, PROVIDER_DESCRIPTOR );
+
+        // WHEN
+        tx.createSchemaRule( first );
+        tx.createSchemaRule( second );
+        prepareAndCommit( tx );
+
+        // THEN
+        verify( indexing ).createIndexes( first, second );
+        verify( indexing, never() ).createIndex( any( IndexRule.class ) );
+        assertEquals( asSet( first.getId(), second.getId() ), rulesInStoreWhenCreatingIndexes );
+    }
+
     @Test
     public void shouldWriteProperPropertyRecordsWhenOnlyChangingLinkage() throws Exception
     {
@@ -0,0 +1,363 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.xaframework;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.TransactionFailureException;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.graphdb.mockfs.BreakableFileSystemAbstraction;
+import org.neo4j.graphdb.mockfs.FileSystemGuard;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.kernel.impl.nioneo.store.FileSystemAbstraction;
+import org.neo4j.kernel.impl.transaction.KernelHealth;
+import org.neo4j.kernel.impl.transaction.XaDataSourceManager;
+import org.neo4j.kernel.impl.nioneo.store.StoreChannel;
+import org.neo4j.kernel.monitoring.Monitors;
+import org.neo4j.test.ImpermanentGraphDatabase;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.neo4j.helpers.collection.MapUtil.stringMap;
+
+public class GroupCommitTest
+{
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void shutdownExecutor()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldForceOnceForSingleCommitter() throws Exception
+    {
+        // GIVEN
+        StoreChannel channel = mock( StoreChannel.class );
+        CountingMonitor monitor = new CountingMonitor();
+        GroupCommit groupCommit = new GroupCommit( monitor );
+
+        // WHEN
+        groupCommit.awaitForced( groupCommit.ticket(), source( channel ) );
+
+        // THEN
+        verify( channel, times( 1 ) ).force( false );
+        assertEquals( 1, monitor.forces.get() );
+        assertEquals( 1, monitor.committers.get() );
+    }
+
+    @Test
+    public void shouldNotForceTicketsAlreadyMarkedAsForced() throws Exception
+    {
+        // GIVEN
+        StoreChannel channel = mock( StoreChannel.class );
+        GroupCommit groupCommit = new GroupCommit( new CountingMonitor() );
+        long ticket = groupCommit.ticket();
+
+        // WHEN
+        groupCommit.allForced();
+        groupCommit.awaitForced( ticket, source( channel ) );
+
+        // THEN
+        verify( channel, never() ).force( false );
+    }
+
+    @Test
+    public void shouldLetCommittersWaitingDuringOneForceShareTheNext() throws Exception
+    {
+        // GIVEN
+        final CountDownLatch firstForceStarted = new CountDownLatch( 1 );
+        final CountDownLatch releaseFirstForce = new CountDownLatch( 1 );
+        final AtomicInteger forceCalls = new AtomicInteger();
+        StoreChannel channel = mock( StoreChannel.class );
+        doAnswer( new Answer<Void>()
+        {
+            @Override
+            public Void answer( InvocationOnMock invocation ) throws Throwable
+            {
+                if ( forceCalls.incrementAndGet() == 1 )
+                {
+                    firstForceStarted.countDown();
+                    releaseFirstForce.await();
+                }
+                return null;
+            }
+        } ).when( channel ).force( false );
+        CountingMonitor monitor = new CountingMonitor();
+        final GroupCommit groupCommit = new GroupCommit( monitor );
+        final GroupCommit.ChannelSource channels = source( channel );
+
+        // WHEN
+        Future<?> leader = executor.submit( committer( groupCommit, groupCommit.ticket(), channels ) );
+        assertTrue( firstForceStarted.await( 10, TimeUnit.SECONDS ) );
+        List<Future<?>> followers = new ArrayList<>();
+        for ( int i = 0; i < 10; i++ )
+        {
+            followers.add( executor.submit( committer( groupCommit, groupCommit.ticket(), channels ) ) );
+        }
+        releaseFirstForce.countDown();
+        leader.get( 10, TimeUnit.SECONDS );
+        for ( Future<?> follower : followers )
+        {
+            follower.get( 10, TimeUnit.SECONDS );
+        }
+
+        // THEN
+        assertEquals( 2, forceCalls.get() );
+        assertEquals( 2, monitor.forces.get() );
+        assertEquals( 11, monitor.committers.get() );
+    }
+
+    @Test
+    public void shouldCommitConcurrentTransactionsWithGroupCommitEnabled() throws Exception
+    {
+        // GIVEN
+        final GraphDatabaseService db = new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder()
+                .setConfig( GraphDatabaseSettings.logical_log_group_commit, "true" ).newGraphDatabase();
+        try
+        {
+            CountingMonitor monitor = new CountingMonitor();
+            ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency( Monitors.class )
+                    .addMonitorListener( monitor, XaLogicalLog.class.getName() );
+            int threads = 8;
+            final int transactionsPerThread = 50;
+
+            // WHEN
+            List<Future<?>> committers = new ArrayList<>();
+            for ( int i = 0; i < threads; i++ )
+            {
+                committers.add( executor.submit( new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        for ( int j = 0; j < transactionsPerThread; j++ )
+                        {
+                            try ( Transaction tx = db.beginTx() )
+                            {
+                                db.createNode();
+                                tx.success();
+                            }
+                        }
+                    }
+                } ) );
+            }
+            for ( Future<?> committer : committers )
+            {
+                committer.get( 60, TimeUnit.SECONDS );
+            }
+
+            // THEN
+            assertEquals( threads * transactionsPerThread, monitor.committers.get() );
+            assertTrue( monitor.forces.get() <= monitor.committers.get() );
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldApplyForcedAndUnforcedTransactionsInTxIdOrderWithGroupCommitEnabled() throws Exception
+    {
+        // GIVEN
+        final GraphDatabaseAPI db = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newImpermanentDatabaseBuilder()
+                .setConfig( GraphDatabaseSettings.logical_log_group_commit, "true" ).newGraphDatabase();
+        try
+        {
+            XaDataSource dataSource = db.getDependencyResolver().resolveDependency( XaDataSourceManager.class )
+                    .getNeoStoreDataSource();
+            long lastCommittedTxIdBefore = dataSource.getLastCommittedTxId();
+            int threads = 8;
+            final int transactionsPerThread = 50;
+
+            // WHEN
+            List<Future<?>> committers = new ArrayList<>();
+            for ( int i = 0; i < threads; i++ )
+            {
+                final boolean forced = i % 2 == 0;
+                committers.add( executor.submit( new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        for ( int j = 0; j < transactionsPerThread; j++ )
+                        {
+                            try ( Transaction tx = forced ? db.beginTx() : db.tx().unforced().begin() )
+                            {
+                                db.createNode();
+                                tx.success();
+                            }
+                        }
+                    }
+                } ) );
+            }
+            for ( Future<?> committer : committers )
+            {
+                // The neo store refuses to apply a tx id that doesn't follow the last applied one
+                committer.get( 60, TimeUnit.SECONDS );
+            }
+
+            // THEN
+            assertEquals( lastCommittedTxIdBefore + threads * transactionsPerThread,
+                    dataSource.getLastCommittedTxId() );
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void shouldNotHandOutTxIdOfTransactionWhoseGroupForceFailed() throws Exception
+    {
+        // GIVEN
+        final AtomicBoolean failNextForce = new AtomicBoolean();
+        final FileSystemGuard failingForce = new FileSystemGuard()
+        {
+            @Override
+            public void checkOperation( OperationType operationType, File onFile, int bytesWrittenTotal,
+                                        int bytesWrittenThisCall, long channelPosition ) throws IOException
+            {
+                if ( operationType == OperationType.FORCE && onFile.getName().startsWith( "nioneo_logical.log" ) &&
+                     failNextForce.compareAndSet( true, false ) )
+                {
+                    throw new IOException( "Simulated force failure" );
+                }
+            }
+        };
+        GraphDatabaseAPI db = new ImpermanentGraphDatabase(
+                stringMap( GraphDatabaseSettings.logical_log_group_commit.name(), "true" ) )
+        {
+            @Override
+            protected FileSystemAbstraction createFileSystemAbstraction()
+            {
+                return new BreakableFileSystemAbstraction( super.createFileSystemAbstraction(), failingForce );
+            }
+        };
+        try
+        {
+            XaDataSource dataSource = db.getDependencyResolver().resolveDependency( XaDataSourceManager.class )
+                    .getNeoStoreDataSource();
+            long lastCommittedTxIdBefore = dataSource.getLastCommittedTxId();
+            failNextForce.set( true );
+            assertFalse( createNode( db ) );
+            // Its commit entry is in the log with the next tx id, which must not be handed out again,
+            // not even if the kernel panic that followed is cleared
+            db.getDependencyResolver().resolveDependency( KernelHealth.class ).healed();
+
+            // WHEN
+            boolean committed = createNode( db );
+
+            // THEN
+            assertFalse( committed );
+            assertEquals( lastCommittedTxIdBefore, dataSource.getLastCommittedTxId() );
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+
+    private static boolean createNode( GraphDatabaseService db )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            db.createNode();
+            tx.success();
+        }
+        catch ( TransactionFailureException e )
+        {
+            return false;
+        }
+        return true;
+    }
+
+    private static Runnable committer( final GroupCommit groupCommit, final long ticket,
+                                       final GroupCommit.ChannelSource channels )
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    groupCommit.awaitForced( ticket, channels );
+                }
+                catch ( Exception e )
+                {
+                    throw new RuntimeException( e );
+                }
+            }
+        };
+    }
+
+    private static GroupCommit.ChannelSource source( final StoreChannel channel )
+    {
+        return new GroupCommit.ChannelSource()
+        {
+            @Override
+            public StoreChannel currentChannel()
+            {
+                return channel;
+            }
+        };
+    }
+
+    public static class CountingMonitor implements GroupCommitMonitor
+    {
+        final AtomicInteger forces = new AtomicInteger();
+        final AtomicInteger committers = new AtomicInteger();
+
+        @Override
+        public void groupForced( int batchSize, long forceTimeNanos )
+        {
+            forces.incrementAndGet();
+            committers.addAndGet( batchSize );
+        }
+    }
+}
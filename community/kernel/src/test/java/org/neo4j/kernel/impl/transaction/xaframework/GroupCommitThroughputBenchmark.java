@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.transaction.xaframework;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.kernel.impl.util.FileUtils;
+import org.neo4j.kernel.monitoring.Monitors;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * Measures commit throughput of small write transactions against a database on disk, for an increasing
+ * number of committing threads, with and without {@link GraphDatabaseSettings#logical_log_group_commit}.
+ * <p>
+ * Run with -DminThreads, -DmaxThreads and -Dtransactions (per thread) to tweak, and -DstoreDir to put the
+ * store on the disk to measure.
+ */
+public class GroupCommitThroughputBenchmark
+{
+    public static void main( String... args ) throws Exception
+    {
+        int minThreads = Integer.getInteger( "minThreads", 1 );
+        int maxThreads = Integer.getInteger( "maxThreads", 64 );
+        int transactions = Integer.getInteger( "transactions", 500 );
+        File storeDir = new File( System.getProperty( "storeDir", "target/group-commit-benchmark" ) );
+
+        for ( boolean groupCommit : new boolean[] {false, true} )
+        {
+            for ( int threads = minThreads; threads <= maxThreads; threads *= 2 )
+            {
+                System.out.printf( "=== group commit %s - %s threads ===%n", groupCommit ? "on" : "off", threads );
+                execute( storeDir, groupCommit, threads, transactions );
+            }
+        }
+    }
+
+    private static void execute( File storeDir, boolean groupCommit, int threadCount, final int transactions )
+            throws IOException, InterruptedException
+    {
+        FileUtils.deleteRecursively( storeDir );
+        final GraphDatabaseService db = new GraphDatabaseFactory().newEmbeddedDatabaseBuilder( storeDir.getPath() )
+                .setConfig( GraphDatabaseSettings.logical_log_group_commit, String.valueOf( groupCommit ) )
+                .newGraphDatabase();
+        try
+        {
+            final AtomicInteger forces = new AtomicInteger();
+            final AtomicLong forceTime = new AtomicLong();
+            ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency( Monitors.class ).addMonitorListener(
+                    new GroupCommitMonitor()
+                    {
+                        @Override
+                        public void groupForced( int batchSize, long forceTimeNanos )
+                        {
+                            forces.incrementAndGet();
+                            forceTime.addAndGet( forceTimeNanos );
+                        }
+                    }, XaLogicalLog.class.getName() );
+
+            final CountDownLatch start = new CountDownLatch( 1 );
+            Thread[] threads = new Thread[threadCount];
+            for ( int i = 0; i < threadCount; i++ )
+            {
+                threads[i] = new Thread()
+                {
+                    @Override
+                    public void run()
+                    {
+                        try
+                        {
+                            start.await();
+                        }
+                        catch ( InterruptedException e )
+                        {
+                            throw new RuntimeException( e );
+                        }
+                        for ( int j = 0; j < transactions; j++ )
+                        {
+                            try ( Transaction tx = db.beginTx() )
+                            {
+                                db.createNode().setProperty( "key", j );
+                                tx.success();
+                            }
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+
+            long time = nanoTime();
+            start.countDown();
+            for ( Thread thread : threads )
+            {
+                thread.join();
+            }
+            time = nanoTime() - time;
+
+            long committed = (long) threadCount * transactions;
+            System.out.printf( "tx/s=%.1f; avg batch=%s; avg force=%s%n",
+                               committed / (time / 1_000_000_000.0),
+                               forces.get() == 0 ? "n/a" : String.format( "%.2f", committed / (double) forces.get() ),
+                               forces.get() == 0 ? "n/a" :
+                               String.format( "%.3fms", forceTime.get() / (forces.get() * 1_000_000.0) ) );
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.impl.util.statistics;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class DegreeHistogramTest
+{
+    @Test
+    public void shouldKeepExactMeanAndMax() throws Exception
+    {
+        // Given
+        DegreeHistogram histogram = new DegreeHistogram();
+
+        // When
+        histogram.record( 1 );
+        histogram.record( 2 );
+        histogram.record( 3 );
+        histogram.record( 1_000_000 );
+
+        // Then
+        assertThat( histogram.count(), equalTo( 4L ) );
+        assertThat( histogram.mean(), closeTo( 250_001.5, 0.01 ) );
+        assertThat( histogram.max(), equalTo( 1_000_000L ) );
+    }
+
+    @Test
+    public void shouldGiveExactPercentilesForLowDegrees() throws Exception
+    {
+        // Given
+        DegreeHistogram histogram = new DegreeHistogram();
+        for ( int degree = 1; degree <= 10; degree++ )
+        {
+            histogram.record( degree );
+        }
+
+        // Then
+        assertThat( histogram.percentile( 0.5 ), equalTo( 5L ) );
+        assertThat( histogram.percentile( 0.9 ), equalTo( 9L ) );
+        assertThat( histogram.percentile( 1.0 ), equalTo( 10L ) );
+        assertThat( histogram.percentile( 0.0 ), equalTo( 1L ) );
+    }
+
+    @Test
+    public void shouldBoundPercentileErrorForSupernodes() throws Exception
+    {
+        // Given a power-law like distribution
+        DegreeHistogram histogram = new DegreeHistogram();
+        for ( int i = 0; i < 990; i++ )
+        {
+            histogram.record( 2 );
+        }
+        for ( int i = 0; i < 10; i++ )
+        {
+            histogram.record( 50_000 + i );
+        }
+
+        // Then
+        assertThat( histogram.percentile( 0.5 ), equalTo( 2L ) );
+        long p999 = histogram.percentile( 0.999 );
+        assertThat( p999, greaterThanOrEqualTo( 50_000L ) );
+        assertThat( p999, lessThanOrEqualTo( histogram.max() ) );
+    }
+
+    @Test
+    public void shouldPlaceEveryDegreeInABucketCoveringIt() throws Exception
+    {
+        for ( long degree = 0; degree < 100_000; degree += 7 )
+        {
+            int bucket = DegreeHistogram.bucketOf( degree );
+            assertThat( DegreeHistogram.highestDegreeIn( bucket ), greaterThanOrEqualTo( degree ) );
+            assertThat( (double) DegreeHistogram.highestDegreeIn( bucket ), lessThanOrEqualTo( degree * 1.125 + 1 ) );
+        }
+    }
+
+    @Test
+    public void shouldWriteAndReadBack() throws Exception
+    {
+        // Given
+        DegreeHistogram histogram = new DegreeHistogram();
+        for ( int degree = 0; degree < 5000; degree += 3 )
+        {
+            histogram.record( degree );
+        }
+
+        // When
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        histogram.writeTo( new DataOutputStream( bytes ) );
+        DegreeHistogram read = DegreeHistogram.read(
+                new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) );
+
+        // Then
+        assertThat( read, equalTo( histogram ) );
+        assertThat( read.percentile( 0.75 ), equalTo( histogram.percentile( 0.75 ) ) );
+    }
+}
@@ -643,7 +643,7 @@ public class EphemeralFileSystemAbstraction extends LifecycleAdapter implements
 
         int write( Positionable fc, ByteBuffer src )
         {
-            int wanted = src.limit();
+            int wanted = src.remaining();
             int pending = wanted;
             byte[] scratchPad = SCRATCH_PAD.get();
             while ( pending > 0 )
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.batchinsert;
+
+import org.junit.Test;
+
+import org.neo4j.kernel.impl.nioneo.store.Record;
+import org.neo4j.kernel.impl.nioneo.store.RelationshipRecord;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NodeRelationshipLinksTest
+{
+    private static final long NONE = Record.NO_NEXT_RELATIONSHIP.intValue();
+
+    @Test
+    public void shouldKeepNodesBeyondIntegerRangeApart() throws Exception
+    {
+        // GIVEN a node id which would alias node 10 if truncated to an int
+        long low = 10;
+        long high = (1L << 32) + low;
+        NodeRelationshipLinks links = new NodeRelationshipLinks( high + 1 );
+
+        // WHEN
+        links.incrementDegree( high, high );
+        links.incrementDegree( low, high );
+        links.prepareForwardLinking( 100 );
+        RelationshipRecord loop = relationship( 0, high, high, 0 );
+        RelationshipRecord between = relationship( 1, low, high, 0 );
+        links.linkForward( loop );
+        links.linkForward( between );
+
+        // THEN
+        assertEquals( 1, links.degree( low ) );
+        assertEquals( 2, links.degree( high ) );
+        assertEquals( 0, links.degree( NodeRelationshipLinks.CHUNK_SIZE ) );
+        assertEquals( 1, links.firstRelationship( low ) );
+        assertEquals( 1, links.firstRelationship( high ) );
+        assertEquals( NONE, between.getFirstNextRel() );
+        assertEquals( 0, between.getSecondNextRel() );
+    }
+
+    @Test
+    public void shouldGiveDenseNodesOneChainPerType() throws Exception
+    {
+        // GIVEN
+        long node = (1L << 31) + 1;
+        NodeRelationshipLinks links = new NodeRelationshipLinks( node + 2 );
+        links.incrementDegree( node, node + 1 );
+        links.incrementDegree( node + 1, node );
+        links.prepareForwardLinking( 2 );
+
+        // WHEN
+        RelationshipRecord out = relationship( 0, node, node + 1, 1 );
+        RelationshipRecord in = relationship( 1, node + 1, node, 0 );
+        links.linkForward( out );
+        links.linkForward( in );
+        links.prepareBackwardLinking();
+        links.linkBackward( in );
+        links.linkBackward( out );
+
+        // THEN
+        assertTrue( links.isDense( node ) );
+        assertTrue( links.isDense( node + 1 ) );
+        assertFalse( links.isDense( node - 1 ) );
+        assertEquals( NONE, out.getFirstNextRel() );
+        assertTrue( out.isFirstInFirstChain() );
+        assertEquals( 1, out.getFirstPrevRel() );
+        assertTrue( in.isFirstInSecondChain() );
+        assertEquals( 1, in.getSecondPrevRel() );
+    }
+
+    private RelationshipRecord relationship( long id, long start, long end, int type )
+    {
+        return new RelationshipRecord( id, start, end, type );
+    }
+}
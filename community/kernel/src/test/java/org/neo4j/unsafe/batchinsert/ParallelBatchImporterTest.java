@@ -0,0 +1,319 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.unsafe.batchinsert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseSettings;
+import org.neo4j.test.EphemeralFileSystemRule;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import static java.util.Arrays.asList;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import static org.neo4j.graphdb.DynamicLabel.label;
+import static org.neo4j.graphdb.DynamicRelationshipType.withName;
+import static org.neo4j.helpers.collection.IteratorUtil.count;
+import static org.neo4j.helpers.collection.MapUtil.map;
+import static org.neo4j.helpers.collection.MapUtil.stringMap;
+
+@RunWith( Parameterized.class )
+public class ParallelBatchImporterTest
+{
+    private final int denseNodeThreshold;
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> data()
+    {
+        return asList( new Object[]{5}, new Object[]{Integer.parseInt(
+                GraphDatabaseSettings.dense_node_threshold.getDefaultValue() )} );
+    }
+
+    public ParallelBatchImporterTest( int denseNodeThreshold )
+    {
+        this.denseNodeThreshold = denseNodeThreshold;
+    }
+
+    @Rule public EphemeralFileSystemRule fs = new EphemeralFileSystemRule();
+    private final String storeDir = "neo-import-db";
+    private final RelationshipType[] types = {withName( "A" ), withName( "B" ), withName( "C" )};
+
+    @Test
+    public void shouldImportNodesAndRelationships() throws Exception
+    {
+        // GIVEN
+        Random random = new Random( 1234 );
+        List<InputNode> nodes = new ArrayList<>();
+        for ( int i = 0; i < 100; i++ )
+        {
+            long inputId = 1_000_000 - i * 7;
+            nodes.add( new InputNode( inputId, map( "id", inputId, "name", "This is a rather long name " + i,
+                    "values", new long[]{i, i * 2L, Long.MAX_VALUE - i} ), labels( i ) ) );
+        }
+        List<InputRelationship> relationships = new ArrayList<>();
+        for ( int i = 0; i < 1_000; i++ )
+        {
+            // the first node gets lots of relationships, including loops
+            InputNode start = random.nextInt( 3 ) == 0 ? nodes.get( 0 ) : nodes.get( random.nextInt( nodes.size() ) );
+            InputNode end = nodes.get( random.nextInt( nodes.size() ) );
+            relationships.add( new InputRelationship( start.getId(), end.getId(), types[random.nextInt( 3 )],
+                    map( "index", i ) ) );
+        }
+        relationships.add( new InputRelationship( nodes.get( 0 ).getId(), nodes.get( 0 ).getId(), types[0], null ) );
+
+        // WHEN
+        BatchImporter importer = newImporter();
+        importer.doImport( nodes, relationships );
+        importer.shutdown();
+
+        // THEN
+        GraphDatabaseService db = newDatabase();
+        try ( Transaction tx = db.beginTx() )
+        {
+            for ( int i = 0; i < nodes.size(); i++ )
+            {
+                InputNode input = nodes.get( i );
+                Node node = db.getNodeById( i );
+                assertEquals( input.getId(), node.getProperty( "id" ) );
+                assertEquals( input.getProperties().get( "name" ), node.getProperty( "name" ) );
+                assertArrayEquals( (long[]) input.getProperties().get( "values" ), (long[]) node.getProperty( "values" ) );
+                assertEquals( input.getLabels().length, count( node.getLabels() ) );
+                for ( Label label : input.getLabels() )
+                {
+                    assertTrue( node.hasLabel( label ) );
+                }
+                assertRelationships( relationships, input.getId(), node );
+            }
+            tx.success();
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldImportNodesWithDenseIds() throws Exception
+    {
+        // GIVEN
+        List<InputNode> nodes = asList(
+                new InputNode( 0, null ),
+                new InputNode( 1, null, label( "Person" ) ),
+                new InputNode( 2, map( "name", "Emil" ) ) );
+        List<InputRelationship> relationships = asList(
+                new InputRelationship( 1, 2, types[0], null ),
+                new InputRelationship( 2, 1, types[1], map( "since", 2007 ) ) );
+
+        // WHEN
+        BatchImporter importer = newImporter();
+        importer.doImport( nodes, relationships );
+        importer.shutdown();
+
+        // THEN
+        GraphDatabaseService db = newDatabase();
+        try ( Transaction tx = db.beginTx() )
+        {
+            assertEquals( 0, db.getNodeById( 0 ).getDegree() );
+            assertEquals( 2, db.getNodeById( 1 ).getDegree() );
+            Relationship relationship = db.getNodeById( 2 ).getSingleRelationship( types[1], Direction.OUTGOING );
+            assertEquals( db.getNodeById( 1 ), relationship.getEndNode() );
+            assertEquals( 2007, relationship.getProperty( "since" ) );
+            tx.success();
+        }
+        finally
+        {
+            db.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldFailOnRelationshipToUnknownNode() throws Exception
+    {
+        // GIVEN
+        BatchImporter importer = newImporter();
+
+        // WHEN
+        try
+        {
+            importer.doImport( asList( new InputNode( 10, null ) ),
+                    asList( new InputRelationship( 10, 11, types[0], null ) ) );
+            fail( "Should have failed" );
+        }
+        catch ( IllegalArgumentException e )
+        {   // THEN good
+        }
+        finally
+        {
+            importer.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldFailOnDuplicateNodeIds() throws Exception
+    {
+        // GIVEN
+        BatchImporter importer = newImporter();
+
+        // WHEN
+        try
+        {
+            importer.doImport( asList( new InputNode( 10, null ), new InputNode( 5, null ), new InputNode( 10, null ) ),
+                    new ArrayList<InputRelationship>() );
+            fail( "Should have failed" );
+        }
+        catch ( IllegalArgumentException e )
+        {   // THEN good
+        }
+        finally
+        {
+            importer.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldFailOnRelationshipsWhichCanOnlyBeIteratedOnce() throws Exception
+    {
+        // GIVEN
+        BatchImporter importer = newImporter();
+        final Iterator<InputRelationship> iterator = asList(
+                new InputRelationship( 0, 1, types[0], null ),
+                new InputRelationship( 1, 0, types[1], null ) ).iterator();
+        Iterable<InputRelationship> relationships = new Iterable<InputRelationship>()
+        {
+            @Override
+            public Iterator<InputRelationship> iterator()
+            {
+                return iterator;
+            }
+        };
+
+        // WHEN
+        try
+        {
+            importer.doImport( asList( new InputNode( 0, null ), new InputNode( 1, null ) ), relationships );
+            fail( "Should have failed" );
+        }
+        catch ( IllegalArgumentException e )
+        {   // THEN good
+        }
+        finally
+        {
+            importer.shutdown();
+        }
+    }
+
+    private void assertRelationships( List<InputRelationship> input, long inputId, Node node )
+    {
+        Map<String,Integer> expected = new HashMap<>();
+        for ( InputRelationship relationship : input )
+        {
+            if ( relationship.getStartNode() == inputId )
+            {
+                increment( expected, relationship.getType().name() + Direction.OUTGOING + relationship.getEndNode() );
+            }
+            if ( relationship.getEndNode() == inputId )
+            {
+                increment( expected, relationship.getType().name() + Direction.INCOMING +
+                        relationship.getStartNode() );
+            }
+        }
+        Map<String,Integer> actual = new HashMap<>();
+        for ( Direction direction : Arrays.asList( Direction.OUTGOING, Direction.INCOMING ) )
+        {
+            for ( Relationship relationship : node.getRelationships( direction ) )
+            {
+                increment( actual, relationship.getType().name() + direction +
+                        relationship.getOtherNode( node ).getProperty( "id" ) );
+            }
+        }
+        assertEquals( expected, actual );
+        int loops = 0;
+        for ( Relationship relationship : node.getRelationships() )
+        {
+            loops += relationship.getStartNode().equals( relationship.getEndNode() ) ? 1 : 0;
+        }
+        assertEquals( count( node.getRelationships() ), node.getDegree() );
+        assertEquals( count( node.getRelationships( types[0] ) ), node.getDegree( types[0] ) );
+        assertEquals( count( node.getRelationships( Direction.OUTGOING ) ) +
+                count( node.getRelationships( Direction.INCOMING ) ) - loops, node.getDegree() );
+    }
+
+    private static void increment( Map<String,Integer> counts, String key )
+    {
+        Integer count = counts.get( key );
+        counts.put( key, count == null ? 1 : count + 1 );
+    }
+
+    private Label[] labels( int i )
+    {
+        List<Label> labels = new ArrayList<>();
+        for ( int bit = 0; bit < 10; bit++ )
+        {
+            if ( (i & (1 << bit)) != 0 )
+            {
+                labels.add( label( "Label" + bit ) );
+            }
+        }
+        return labels.toArray( new Label[labels.size()] );
+    }
+
+    private Map<String,String> configuration()
+    {
+        return stringMap( GraphDatabaseSettings.dense_node_threshold.name(), String.valueOf( denseNodeThreshold ) );
+    }
+
+    private BatchImporter newImporter()
+    {
+        BatchInserterImpl inserter = (BatchInserterImpl) BatchInserters.inserter( storeDir, fs.get(),
+                configuration() );
+        // small batches to have many of them in flight at the same time
+        return new ParallelBatchImporter( inserter, 4, 7 );
+    }
+
+    private GraphDatabaseService newDatabase()
+    {
+        TestGraphDatabaseFactory factory = new TestGraphDatabaseFactory();
+        factory.setFileSystem( fs.get() );
+        return factory.newImpermanentDatabaseBuilder( storeDir ).setConfig( configuration() ).newGraphDatabase();
+    }
+}
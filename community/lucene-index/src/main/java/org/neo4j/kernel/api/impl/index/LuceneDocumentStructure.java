@@ -24,11 +24,18 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Fieldable;
 import org.apache.lucene.index.FieldInfo.IndexOptions;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
 import org.apache.lucene.util.NumericUtils;
 
 import org.neo4j.kernel.api.index.ArrayEncoder;
+import org.neo4j.kernel.api.index.IndexOrder;
 
 import static java.lang.String.format;
 
@@ -39,6 +46,7 @@ import static org.apache.lucene.document.Field.Store.YES;
 public class LuceneDocumentStructure
 {
     static final String NODE_ID_KEY = "id";
+    private static final int FULL_PRECISION_STEP = Integer.MAX_VALUE;
 
     Document newDocument( long nodeId )
     {
@@ -205,6 +213,40 @@ public class LuceneDocumentStructure
         throw new IllegalArgumentException( format( "Unable to create newQuery for %s", value ) );
     }
 
+    /**
+     * Numbers are indexed as a single full precision term in {@link NumericUtils prefix coded} form, which sorts
+     * in numeric order. A numeric range query with a precision step wider than the value then only has to
+     * enumerate those terms.
+     */
+    public Query newRangeSeekByNumberQuery( Number lower, boolean includeLower, Number upper, boolean includeUpper )
+    {
+        return NumericRangeQuery.newDoubleRange( ValueEncoding.Number.key(), FULL_PRECISION_STEP,
+                lower == null ? null : lower.doubleValue(), upper == null ? null : upper.doubleValue(),
+                includeLower, includeUpper );
+    }
+
+    public Query newRangeSeekByStringQuery( String lower, boolean includeLower, String upper, boolean includeUpper )
+    {
+        return new TermRangeQuery( ValueEncoding.String.key(), lower, upper, includeLower, includeUpper );
+    }
+
+    public Query newRangeSeekByPrefixQuery( String prefix )
+    {
+        return new PrefixQuery( new Term( ValueEncoding.String.key(), prefix ) );
+    }
+
+    public Sort sortByNumber( IndexOrder order )
+    {
+        return order == IndexOrder.NONE ? null : new Sort( new SortField( ValueEncoding.Number.key(),
+                FieldCache.NUMERIC_UTILS_DOUBLE_PARSER, order == IndexOrder.DESCENDING ) );
+    }
+
+    public Sort sortByString( IndexOrder order )
+    {
+        return order == IndexOrder.NONE ? null : new Sort( new SortField( ValueEncoding.String.key(),
+                SortField.STRING, order == IndexOrder.DESCENDING ) );
+    }
+
     public Term newQueryForChangeOrRemove( long nodeId )
     {
         return new Term( NODE_ID_KEY, "" + nodeId );
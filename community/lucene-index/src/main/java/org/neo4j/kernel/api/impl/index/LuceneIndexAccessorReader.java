@@ -22,10 +22,13 @@ package org.neo4j.kernel.api.impl.index;
 import java.io.IOException;
 
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
 
 import org.neo4j.collection.primitive.PrimitiveLongIterator;
 import org.neo4j.index.impl.lucene.Hits;
+import org.neo4j.kernel.api.index.IndexOrder;
 import org.neo4j.kernel.api.index.IndexReader;
 
 class LuceneIndexAccessorReader implements IndexReader
@@ -42,11 +45,38 @@ class LuceneIndexAccessorReader implements IndexReader
     }
 
     @Override
-    public PrimitiveLongIterator lookup( final Object value )
+    public PrimitiveLongIterator lookup( Object value )
+    {
+        return query( documentLogic.newQuery( value ), null );
+    }
+
+    @Override
+    public PrimitiveLongIterator rangeSeekByNumber( Number lower, boolean includeLower, Number upper,
+                                                    boolean includeUpper, IndexOrder order )
+    {
+        return query( documentLogic.newRangeSeekByNumberQuery( lower, includeLower, upper, includeUpper ),
+                documentLogic.sortByNumber( order ) );
+    }
+
+    @Override
+    public PrimitiveLongIterator rangeSeekByString( String lower, boolean includeLower, String upper,
+                                                    boolean includeUpper, IndexOrder order )
+    {
+        return query( documentLogic.newRangeSeekByStringQuery( lower, includeLower, upper, includeUpper ),
+                documentLogic.sortByString( order ) );
+    }
+
+    @Override
+    public PrimitiveLongIterator rangeSeekByPrefix( String prefix, IndexOrder order )
+    {
+        return query( documentLogic.newRangeSeekByPrefixQuery( prefix ), documentLogic.sortByString( order ) );
+    }
+
+    private PrimitiveLongIterator query( Query query, Sort sort )
     {
         try
         {
-            Hits hits = new Hits( searcher, documentLogic.newQuery( value ), null );
+            Hits hits = new Hits( searcher, query, null, sort, false );
             return new HitsPrimitiveLongIterator( hits, documentLogic );
         }
         catch ( IOException e )
@@ -0,0 +1,186 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.kernel.api.impl.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.neo4j.collection.primitive.PrimitiveLongCollections;
+import org.neo4j.collection.primitive.PrimitiveLongIterator;
+import org.neo4j.kernel.DefaultFileSystemAbstraction;
+import org.neo4j.kernel.api.labelscan.LabelScanReader;
+import org.neo4j.kernel.api.labelscan.LabelScanStore;
+import org.neo4j.kernel.api.labelscan.NodeLabelUpdate;
+import org.neo4j.kernel.impl.api.scan.LabelScanStoreProvider.FullStoreChangeStream;
+import org.neo4j.kernel.impl.api.scan.NativeLabelScanStore;
+import org.neo4j.kernel.impl.util.StringLogger;
+import org.neo4j.kernel.lifecycle.LifeSupport;
+import org.neo4j.kernel.logging.DevNullLoggingService;
+import org.neo4j.unsafe.batchinsert.LabelScanWriter;
+
+import static java.lang.System.nanoTime;
+
+import static org.neo4j.helpers.collection.IteratorUtil.emptyIterator;
+import static org.neo4j.kernel.api.impl.index.IndexWriterFactories.standard;
+import static org.neo4j.kernel.api.labelscan.NodeLabelUpdate.labelChanges;
+import static org.neo4j.kernel.impl.util.FileUtils.deleteRecursively;
+
+/**
+ * Compares {@link LuceneLabelScanStore} with {@link NativeLabelScanStore} on writing label changes in small
+ * transactions, scanning all nodes of a label and looking up the labels of random nodes.
+ * <p>
+ * Run with -Dnodes, -Dlabels (per store), -DlabelsPerNode, -DtxSize and -Dlookups to tweak.
+ */
+public class LabelScanBenchmark
+{
+    public static void main( String... args ) throws Exception
+    {
+        int nodes = Integer.getInteger( "nodes", 1_000_000 );
+        int labels = Integer.getInteger( "labels", 20 );
+        int labelsPerNode = Integer.getInteger( "labelsPerNode", 2 );
+        int txSize = Integer.getInteger( "txSize", 100 );
+        int lookups = Integer.getInteger( "lookups", 100_000 );
+
+        for ( Implementation implementation : Implementation.values() )
+        {
+            File directory = new File( "target/label-scan-benchmark/" + implementation.name().toLowerCase() );
+            deleteRecursively( directory );
+            LifeSupport life = new LifeSupport();
+            LabelScanStore store = life.add( implementation.create( directory ) );
+            life.start();
+            try
+            {
+                long time = nanoTime();
+                write( store, nodes, labels, labelsPerNode, txSize );
+                store.force();
+                report( implementation, "writes", nodes, time );
+
+                time = nanoTime();
+                long found = 0;
+                LabelScanReader reader = store.newReader();
+                for ( int label = 0; label < labels; label++ )
+                {
+                    for ( PrimitiveLongIterator iterator = reader.nodesWithLabel( label ); iterator.hasNext(); )
+                    {
+                        iterator.next();
+                        found++;
+                    }
+                }
+                report( implementation, "nodesWithLabel", found, time );
+
+                time = nanoTime();
+                Random random = new Random( 42 );
+                for ( int i = 0; i < lookups; i++ )
+                {
+                    for ( Iterator<Long> iterator = reader.labelsForNode( random.nextInt( nodes ) );
+                          iterator.hasNext(); )
+                    {
+                        iterator.next();
+                    }
+                }
+                report( implementation, "labelsForNode", lookups, time );
+                reader.close();
+            }
+            finally
+            {
+                life.shutdown();
+                deleteRecursively( directory );
+            }
+        }
+    }
+
+    enum Implementation
+    {
+        LUCENE
+        {
+            @Override
+            LabelScanStore create( File directory )
+            {
+                return new LuceneLabelScanStore( new NodeRangeDocumentLabelScanStorageStrategy(),
+                        DirectoryFactory.PERSISTENT, directory, new DefaultFileSystemAbstraction(), standard(),
+                        NO_DATA, LuceneLabelScanStore.loggerMonitor( new DevNullLoggingService() ) );
+            }
+        },
+        NATIVE
+        {
+            @Override
+            LabelScanStore create( File directory )
+            {
+                return new NativeLabelScanStore( directory, new DefaultFileSystemAbstraction(), NO_DATA,
+                        NativeLabelScanStore.loggerMonitor( new DevNullLoggingService() ), 64 * 1024 * 1024,
+                        true, StringLogger.DEV_NULL );
+            }
+        };
+
+        abstract LabelScanStore create( File directory );
+    }
+
+    private static void write( LabelScanStore store, int nodes, int labels, int labelsPerNode, int txSize )
+            throws IOException
+    {
+        Random random = new Random( 42 );
+        for ( int first = 0; first < nodes; first += txSize )
+        {
+            try ( LabelScanWriter writer = store.newWriter() )
+            {
+                for ( int node = first; node < Math.min( nodes, first + txSize ); node++ )
+                {
+                    long[] nodeLabels = new long[labelsPerNode];
+                    int label = random.nextInt( labels );
+                    for ( int i = 0; i < labelsPerNode; i++ )
+                    {
+                        nodeLabels[i] = (label + i) % labels;
+                    }
+                    writer.write( labelChanges( node, new long[0], nodeLabels ) );
+                }
+            }
+        }
+    }
+
+    private static void report( Implementation implementation, String operation, long count, long startTime )
+    {
+        double seconds = (nanoTime() - startTime) / 1_000_000_000.0;
+        System.out.printf( "%s - %s: %d in %.2f s (%.0f/s)%n", implementation, operation, count, seconds,
+                count / seconds );
+    }
+
+    private static final FullStoreChangeStream NO_DATA = new FullStoreChangeStream()
+    {
+        @Override
+        public Iterator<NodeLabelUpdate> iterator()
+        {
+            return emptyIterator();
+        }
+
+        @Override
+        public PrimitiveLongIterator labelIds()
+        {
+            return PrimitiveLongCollections.emptyIterator();
+        }
+
+        @Override
+        public long highestNodeId()
+        {
+            return 0;
+        }
+    };
+}
@@ -34,10 +34,14 @@ import org.neo4j.kernel.impl.api.index.IndexUpdateMode;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.*;
+import static org.neo4j.collection.primitive.PrimitiveLongCollections.asArray;
 import static org.neo4j.helpers.collection.IteratorUtil.asSet;
 import static org.neo4j.helpers.collection.IteratorUtil.asUniqueSet;
 import static org.neo4j.helpers.collection.IteratorUtil.emptySetOf;
 import static org.neo4j.kernel.api.impl.index.IndexWriterFactories.standard;
+import static org.neo4j.kernel.api.index.IndexOrder.ASCENDING;
+import static org.neo4j.kernel.api.index.IndexOrder.DESCENDING;
+import static org.neo4j.kernel.api.index.IndexOrder.NONE;
 
 public class LuceneIndexAccessorTest
 {
@@ -120,6 +124,49 @@ public class LuceneIndexAccessorTest
         reader.close();
     }
 
+    @Test
+    public void canSeekNumberRanges() throws Exception
+    {
+        // GIVEN
+        updateAndCommit( asList(
+                add( 1, -5 ),
+                add( 2, 10L ),
+                add( 3, 12.5d ),
+                add( 4, 20 ),
+                add( 5, "15" ) ) );
+        IndexReader reader = accessor.newReader();
+
+        // THEN
+        assertEquals( asSet( 2L, 3L ), asUniqueSet( reader.rangeSeekByNumber( 10, true, 20, false, NONE ) ) );
+        assertEquals( asSet( 3L, 4L ), asUniqueSet( reader.rangeSeekByNumber( 10, false, null, false, NONE ) ) );
+        assertEquals( asSet( 1L ), asUniqueSet( reader.rangeSeekByNumber( null, false, 0, true, NONE ) ) );
+        assertArrayEquals( new long[]{4, 3, 2, 1},
+                asArray( reader.rangeSeekByNumber( null, false, null, false, DESCENDING ) ) );
+        reader.close();
+    }
+
+    @Test
+    public void canSeekStringRangesAndPrefixes() throws Exception
+    {
+        // GIVEN
+        updateAndCommit( asList(
+                add( 1, "banana" ),
+                add( 2, "apple" ),
+                add( 3, "apricot" ),
+                add( 4, "cherry" ),
+                add( 5, 'a' ),
+                add( 6, 42 ) ) );
+        IndexReader reader = accessor.newReader();
+
+        // THEN
+        assertArrayEquals( new long[]{5, 2, 3},
+                asArray( reader.rangeSeekByPrefix( "a", ASCENDING ) ) );
+        assertArrayEquals( new long[]{3, 1},
+                asArray( reader.rangeSeekByString( "apple", false, "banana", true, ASCENDING ) ) );
+        assertEquals( asSet( 1L, 4L ), asUniqueSet( reader.rangeSeekByString( "b", true, null, false, NONE ) ) );
+        reader.close();
+    }
+
     private final long nodeId = 1, nodeId2 = 2;
     private final Object value = "value", value2 = 40;
     private final LuceneDocumentStructure documentLogic = new LuceneDocumentStructure();
@@ -109,6 +109,9 @@ public interface Configurator
     String TRANSACTION_TIMEOUT = "org.neo4j.server.transaction.timeout";
     int DEFAULT_TRANSACTION_TIMEOUT = 60/*seconds*/;
 
+    String BATCH_NATIVE_EXECUTION_ENABLED = "org.neo4j.server.rest.batch.native_execution";
+    boolean DEFAULT_BATCH_NATIVE_EXECUTION_ENABLED = true;
+
     Configuration configuration();
 
     Map<String, String> getDatabaseTuningProperties();
@@ -50,11 +50,22 @@ public abstract class BatchOperations
     protected static final String TO_KEY = "to";
     protected static final JsonFactory jsonFactory = new JsonFactory();
     protected final WebServer webServer;
+    protected final NativeBatchOperations nativeOperations;
     protected final ObjectMapper mapper;
 
     public BatchOperations( WebServer webServer )
+    {
+        this( webServer, null );
+    }
+
+    /**
+     * @param nativeOperations performs what operations it can without going through the web server,
+     * or {@code null} to dispatch all operations through it.
+     */
+    public BatchOperations( WebServer webServer, NativeBatchOperations nativeOperations )
     {
         this.webServer = webServer;
+        this.nativeOperations = nativeOperations;
         mapper = new ObjectMapper();
     }
 
@@ -192,6 +203,16 @@ public abstract class BatchOperations
         body = replaceLocationPlaceholders(body, locations);
         URI targetUri = calculateTargetUri(uriInfo, path);
 
+        if ( nativeOperations != null )
+        {
+            NativeBatchOperations.Result result = nativeOperations.perform( method, targetUri, body );
+            if ( result != null )
+            {
+                invokeNatively( method, path, body, id, result );
+                return;
+            }
+        }
+
         InternalJettyServletResponse res = new InternalJettyServletResponse();
         InternalJettyServletRequest req = new InternalJettyServletRequest( method, targetUri.toString(), body, res);
         req.setScheme( targetUri.getScheme() );
@@ -202,4 +223,10 @@ public abstract class BatchOperations
     }
 
     protected abstract void invoke( String method, String path, String body, Integer id, URI targetUri, InternalJettyServletRequest req, InternalJettyServletResponse res ) throws IOException, ServletException;
+
+    /**
+     * Like {@link #invoke}, for an operation already performed by {@link #nativeOperations}, successfully or not.
+     */
+    protected abstract void invokeNatively( String method, String path, String body, Integer id,
+                                            NativeBatchOperations.Result result ) throws IOException;
 }
@@ -0,0 +1,384 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.batch;
+
+import java.net.URI;
+import java.util.Map;
+
+import org.neo4j.graphdb.ConstraintViolationException;
+import org.neo4j.server.rest.domain.EndNodeNotFoundException;
+import org.neo4j.server.rest.domain.StartNodeNotFoundException;
+import org.neo4j.server.rest.repr.BadInputException;
+import org.neo4j.server.rest.repr.EntityRepresentation;
+import org.neo4j.server.rest.repr.ExceptionRepresentation;
+import org.neo4j.server.rest.repr.OutputFormat;
+import org.neo4j.server.rest.repr.Representation;
+import org.neo4j.server.rest.repr.RepresentationFormat;
+import org.neo4j.server.rest.repr.formats.JsonFormat;
+import org.neo4j.server.rest.web.DatabaseActions;
+import org.neo4j.server.rest.web.NodeNotFoundException;
+import org.neo4j.server.rest.web.RelationshipNotFoundException;
+
+/**
+ * Performs the most common batch operations by calling {@link DatabaseActions} directly, instead of making
+ * them into requests and dispatching those through the web server: creating nodes and relationships, setting
+ * properties, adding to legacy indexes and getting relationships. They run in the transaction of the batch
+ * request, like dispatched operations do.
+ * <p>
+ * Operations on any other uri, with query parameters or with escaped characters in their path are left to be
+ * dispatched as before. So are operations with a body that doesn't parse into what they need, so that they fail
+ * the same way with the same error response as they always have. That is decided before an operation does
+ * anything. Once it has started, an operation that fails gets an error result with the status and exception the
+ * web server would have responded with, and is never dispatched on top of what it already did.
+ */
+public class NativeBatchOperations
+{
+    private static final int OK = 200;
+    private static final int CREATED = 201;
+    private static final int NO_CONTENT = 204;
+    private static final int BAD_REQUEST = 400;
+    private static final int NOT_FOUND = 404;
+    private static final int CONFLICT = 409;
+    private static final int SERVER_ERROR = 500;
+
+    private final DatabaseActions actions;
+    private final OutputFormat output;
+    private final String basePath;
+    private final JsonFormat json = new JsonFormat();
+
+    public NativeBatchOperations( DatabaseActions actions, OutputFormat output, URI baseUri )
+    {
+        this.actions = actions;
+        this.output = output;
+        String path = baseUri.getRawPath();
+        this.basePath = path.endsWith( "/" ) ? path : path + "/";
+    }
+
+    /**
+     * @return the result of the operation, failed or not, or {@code null} if it should be dispatched through the
+     * web server, in which case nothing has been done.
+     */
+    public Result perform( String method, URI targetUri, String body )
+    {
+        Operation operation = prepare( method, targetUri, body );
+        if ( operation == null )
+        {
+            return null;
+        }
+        try
+        {
+            return operation.perform();
+        }
+        catch ( Exception e )
+        {
+            return failed( e );
+        }
+    }
+
+    /**
+     * Serializes the body of a result as the JSON that the web server would have responded with.
+     */
+    public String serialize( Result result )
+    {
+        return serialize( result, json );
+    }
+
+    public String serialize( Result result, RepresentationFormat format )
+    {
+        return output.assemble( result.body, format );
+    }
+
+    /**
+     * Parses and validates an operation, without doing any of it.
+     *
+     * @return the operation, or {@code null} if it should be dispatched through the web server.
+     */
+    private Operation prepare( String method, URI targetUri, String body )
+    {
+        String[] path = relativePath( targetUri );
+        if ( path == null )
+        {
+            return null;
+        }
+        try
+        {
+            switch ( method )
+            {
+            case "POST":
+                return post( path, body );
+            case "PUT":
+                return put( path, body );
+            case "GET":
+                return get( path );
+            default:
+                return null;
+            }
+        }
+        catch ( BadInputException | ClassCastException | NullPointerException | NumberFormatException e )
+        {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Operation post( String[] path, String body ) throws BadInputException
+    {
+        if ( path.length == 1 && path[0].equals( "node" ) )
+        {
+            final Map<String, Object> properties = json.readMap( body );
+            final String mangledJsonMessage = "Invalid JSON array in POST body: " + body;
+            return new Operation()
+            {
+                @Override
+                Result perform() throws Exception
+                {
+                    try
+                    {
+                        return created( actions.createNode( properties ) );
+                    }
+                    catch ( ArrayStoreException e )
+                    {
+                        // the web server responds in plain text to this one
+                        return new Result( BAD_REQUEST, null, null, new BadInputException( mangledJsonMessage, e ) );
+                    }
+                }
+            };
+        }
+        if ( path.length == 3 && path[0].equals( "node" ) && path[2].equals( "relationships" ) )
+        {
+            final long startNodeId = Long.parseLong( path[1] );
+            Map<String, Object> data = json.readMap( body );
+            final long endNodeId = idOf( (String) data.get( "to" ) );
+            final String type = (String) data.get( "type" );
+            final Map<String, Object> properties = (Map<String, Object>) data.get( "data" );
+            return new Operation()
+            {
+                @Override
+                Result perform() throws Exception
+                {
+                    return created( actions.createRelationship( startNodeId, endNodeId, type, properties ) );
+                }
+            };
+        }
+        if ( path.length == 3 && path[0].equals( "index" ) )
+        {
+            final String indexName = path[2];
+            Map<String, Object> entry = json.readMap( body, "key", "value", "uri" );
+            final String key = String.valueOf( entry.get( "key" ) );
+            final String value = String.valueOf( entry.get( "value" ) );
+            final long id = idOf( entry.get( "uri" ).toString() );
+            switch ( path[1] )
+            {
+            case "node":
+                return new Operation()
+                {
+                    @Override
+                    Result perform() throws Exception
+                    {
+                        return created( actions.addToNodeIndex( indexName, key, value, id ) );
+                    }
+                };
+            case "relationship":
+                return new Operation()
+                {
+                    @Override
+                    Result perform() throws Exception
+                    {
+                        return created( actions.addToRelationshipIndex( indexName, key, value, id ) );
+                    }
+                };
+            default:
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private Operation put( String[] path, String body ) throws BadInputException
+    {
+        if ( path.length < 3 || !path[2].equals( "properties" ) || path.length > 4 )
+        {
+            return null;
+        }
+        final long id = Long.parseLong( path[1] );
+        final String key = path.length == 4 ? path[3] : null;
+        final Map<String, Object> properties = key == null ? json.readMap( body ) : null;
+        final Object value = key == null ? null : json.readValue( body );
+        switch ( path[0] )
+        {
+        case "node":
+            return new Operation()
+            {
+                @Override
+                Result perform() throws Exception
+                {
+                    if ( key == null )
+                    {
+                        actions.setAllNodeProperties( id, properties );
+                    }
+                    else
+                    {
+                        actions.setNodeProperty( id, key, value );
+                    }
+                    return new Result( NO_CONTENT, null, null );
+                }
+            };
+        case "relationship":
+            return new Operation()
+            {
+                @Override
+                Result perform() throws Exception
+                {
+                    if ( key == null )
+                    {
+                        actions.setAllRelationshipProperties( id, properties );
+                    }
+                    else
+                    {
+                        actions.setRelationshipProperty( id, key, value );
+                    }
+                    return new Result( NO_CONTENT, null, null );
+                }
+            };
+        default:
+            return null;
+        }
+    }
+
+    private Operation get( String[] path )
+    {
+        if ( path.length == 2 && path[0].equals( "relationship" ) )
+        {
+            final long id = Long.parseLong( path[1] );
+            return new Operation()
+            {
+                @Override
+                Result perform() throws Exception
+                {
+                    return new Result( OK, actions.getRelationship( id ), null );
+                }
+            };
+        }
+        return null;
+    }
+
+    private <REPR extends Representation & EntityRepresentation> Result created( REPR representation )
+            throws BadInputException
+    {
+        return new Result( CREATED, representation, output.location( representation ) );
+    }
+
+    /**
+     * The status is the one the web server responds with when the same exception is thrown there.
+     */
+    private static Result failed( Exception e )
+    {
+        int status;
+        if ( e instanceof NodeNotFoundException || e instanceof RelationshipNotFoundException ||
+             e instanceof StartNodeNotFoundException )
+        {
+            status = NOT_FOUND;
+        }
+        else if ( e instanceof EndNodeNotFoundException || e instanceof BadInputException ||
+                  e instanceof IllegalArgumentException || e instanceof ClassCastException ||
+                  e instanceof ArrayStoreException )
+        {
+            status = BAD_REQUEST;
+        }
+        else if ( e instanceof ConstraintViolationException )
+        {
+            status = CONFLICT;
+        }
+        else
+        {
+            status = SERVER_ERROR;
+        }
+        return new Result( status, new ExceptionRepresentation( e ), null, e );
+    }
+
+    private String[] relativePath( URI targetUri )
+    {
+        String path = targetUri.getRawPath();
+        if ( targetUri.getRawQuery() != null || path == null || !path.startsWith( basePath ) )
+        {
+            return null;
+        }
+        path = path.substring( basePath.length() );
+        if ( path.isEmpty() || path.endsWith( "/" ) || path.contains( "//" ) || path.indexOf( '%' ) != -1 )
+        {
+            return null;
+        }
+        return path.split( "/" );
+    }
+
+    private static long idOf( String uri )
+    {
+        return Long.parseLong( uri.substring( uri.lastIndexOf( '/' ) + 1 ) );
+    }
+
+    private abstract static class Operation
+    {
+        abstract Result perform() throws Exception;
+    }
+
+    public static final class Result
+    {
+        private final int status;
+        private final Representation body;
+        private final String location;
+        private final Exception failure;
+
+        Result( int status, Representation body, String location )
+        {
+            this( status, body, location, null );
+        }
+
+        Result( int status, Representation body, String location, Exception failure )
+        {
+            this.status = status;
+            this.body = body;
+            this.location = location;
+            this.failure = failure;
+        }
+
+        public int getStatus()
+        {
+            return status;
+        }
+
+        public boolean hasBody()
+        {
+            return body != null;
+        }
+
+        public String getLocation()
+        {
+            return location;
+        }
+
+        /**
+         * @return what made the operation fail, or {@code null} if it succeeded.
+         */
+        public Exception getFailure()
+        {
+            return failure;
+        }
+    }
+}
@@ -42,6 +42,11 @@ public class NonStreamingBatchOperations extends BatchOperations
         super( webServer );
     }
 
+    public NonStreamingBatchOperations( WebServer webServer, NativeBatchOperations nativeOperations )
+    {
+        super( webServer, nativeOperations );
+    }
+
     public BatchOperationResults performBatchJobs( UriInfo uriInfo, HttpHeaders httpHeaders, InputStream body ) throws IOException, ServletException
     {
         results = new BatchOperationResults();
@@ -64,4 +69,21 @@ public class NonStreamingBatchOperations extends BatchOperations
         }
     }
 
+    @Override
+    protected void invokeNatively( String method, String path, String body, Integer id,
+                                   NativeBatchOperations.Result result )
+    {
+        if ( is2XXStatusCode( result.getStatus() ) )
+        {
+            String resultBody = result.hasBody() ? nativeOperations.serialize( result ) : "";
+            results.addOperationResult( path, id, resultBody, result.getLocation() );
+        }
+        else
+        {
+            String resultBody = result.hasBody() ? nativeOperations.serialize( result ) :
+                    result.getFailure().getMessage();
+            throw new BatchOperationFailedException( result.getStatus(), resultBody, null );
+        }
+    }
+
 }
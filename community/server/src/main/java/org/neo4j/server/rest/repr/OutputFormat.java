@@ -219,6 +219,25 @@ public class OutputFormat
         return representation.serialize( format, baseUri, extensions );
     }
 
+    /**
+     * Serializes {@code representation} with another format than the one of this output, but with the same
+     * base uri and extensions, for representations that are written as part of something else.
+     * Streaming formats write to their stream and return {@code null}.
+     */
+    public String assemble( Representation representation, RepresentationFormat otherFormat )
+    {
+        return representation.serialize( otherFormat, baseUri, extensions );
+    }
+
+    /**
+     * @return the uri that a response for {@code representation} would have as its location.
+     */
+    public <REPR extends Representation & EntityRepresentation> String location( REPR representation )
+            throws BadInputException
+    {
+        return uri( representation ).toString();
+    }
+
     public Response noContent()
     {
         representationWriteHandler.onRepresentationStartWriting();
@@ -32,6 +32,7 @@ import org.codehaus.jackson.JsonGenerator;
 
 import org.neo4j.cypher.javacompat.ExecutionResult;
 import org.neo4j.cypher.javacompat.QueryStatistics;
+import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.kernel.impl.util.StringLogger;
 import org.neo4j.server.rest.repr.util.RFC1123;
 import org.neo4j.server.rest.transactional.error.Neo4jError;
@@ -48,6 +49,10 @@ import org.neo4j.server.rest.transactional.error.Neo4jError;
  * </ul>
  * <p/>
  * Where {@code ?} means invoke at most once, and {@code *} means invoke zero or more times.
+ * <p/>
+ * Rows are written to the generator as they are pulled from the result iterator, nothing is collected in between.
+ * The generator uses buffers recycled by the {@link JsonFactory}, and is flushed after every statement, so a slow
+ * client will block the writing thread rather than cause the response to be buffered up in memory.
  */
 public class ExecutionResultSerializer
 {
@@ -100,7 +105,15 @@ public class ExecutionResultSerializer
             {
                 Iterable<String> columns = result.columns();
                 writeColumns( columns );
-                writeRows( columns, result.iterator(), configureWriters( resultDataContents ) );
+                ResourceIterator<Map<String, Object>> rows = result.iterator();
+                try
+                {
+                    writeRows( columns, rows, configureWriters( resultDataContents ) );
+                }
+                finally
+                {
+                    rows.close();
+                }
                 if ( includeStats )
                 {
                     writeStats( result.getQueryStatistics() );
@@ -110,6 +123,7 @@ public class ExecutionResultSerializer
             {
                 out.writeEndObject(); // </result>
             }
+            out.flush();
         }
         catch ( IOException e )
         {
@@ -221,6 +235,22 @@ public class ExecutionResultSerializer
         {
             loggedIOException( e );
         }
+        finally
+        {
+            releaseBuffers();
+        }
+    }
+
+    private void releaseBuffers()
+    {
+        try
+        {
+            out.close(); // hands the generator buffers back for reuse, leaves the output stream open
+        }
+        catch ( IOException e )
+        {
+            // already reported when flushing, the client has most likely gone away
+        }
     }
 
     private ResultDataContentWriter configureWriters( ResultDataContent[] specifiers )
@@ -248,7 +278,8 @@ public class ExecutionResultSerializer
 
     private State currentState = State.EMPTY;
 
-    private static final JsonFactory JSON_FACTORY = new JsonFactory( new Neo4jJsonCodec() );
+    private static final JsonFactory JSON_FACTORY = new JsonFactory( new Neo4jJsonCodec() )
+            .disable( JsonGenerator.Feature.AUTO_CLOSE_TARGET );
     private final JsonGenerator out;
     private final URI baseUri;
     private final StringLogger log;
@@ -34,22 +34,32 @@ import org.neo4j.graphdb.Relationship;
 
 class GraphExtractionWriter implements ResultDataContentWriter
 {
+    // Only ever hold the entities of the row being written, and are reused for every row of the result
+    private final Set<Node> nodes = new HashSet<>();
+    private final Set<Relationship> relationships = new HashSet<>();
+
     @Override
     public void write( JsonGenerator out, Iterable<String> columns, Map<String, Object> row ) throws IOException
     {
-        Set<Node> nodes = new HashSet<>();
-        Set<Relationship> relationships = new HashSet<>();
-        extract( nodes, relationships, row.values() );
-
-        out.writeObjectFieldStart( "graph" );
         try
         {
-            writeNodes( out, nodes );
-            writeRelationships( out, relationships );
+            extract( nodes, relationships, row.values() );
+
+            out.writeObjectFieldStart( "graph" );
+            try
+            {
+                writeNodes( out, nodes );
+                writeRelationships( out, relationships );
+            }
+            finally
+            {
+                out.writeEndObject();
+            }
         }
         finally
         {
-            out.writeEndObject();
+            nodes.clear();
+            relationships.clear();
         }
     }
 
@@ -39,6 +39,8 @@ import org.neo4j.server.rest.repr.formats.StreamingJsonFormat;
 class RestRepresentationWriter implements ResultDataContentWriter
 {
     private final URI baseUri;
+    private JsonGenerator formatTarget;
+    private RepresentationFormat format;
 
     RestRepresentationWriter( URI baseUri )
     {
@@ -48,7 +50,7 @@ class RestRepresentationWriter implements ResultDataContentWriter
     @Override
     public void write( JsonGenerator out, Iterable<String> columns, Map<String, Object> row ) throws IOException
     {
-        RepresentationFormat format = new StreamingJsonFormat.StreamingRepresentationFormat( out, null );
+        RepresentationFormat format = format( out );
         out.writeArrayFieldStart( "rest" );
         try
         {
@@ -114,6 +116,16 @@ class RestRepresentationWriter implements ResultDataContentWriter
         }
     }
 
+    private RepresentationFormat format( JsonGenerator out )
+    {
+        if ( out != formatTarget )
+        {
+            format = new StreamingJsonFormat.StreamingRepresentationFormat( out, null );
+            formatTarget = out;
+        }
+        return format;
+    }
+
     private void write( RepresentationFormat format, Representation representation )
     {
         OutputFormat.write( representation, format, baseUri );
@@ -34,10 +34,13 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import org.apache.commons.configuration.Configuration;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 
+import org.neo4j.server.configuration.Configurator;
 import org.neo4j.server.rest.batch.BatchOperationResults;
+import org.neo4j.server.rest.batch.NativeBatchOperations;
 import org.neo4j.server.rest.batch.NonStreamingBatchOperations;
 import org.neo4j.server.rest.repr.OutputFormat;
 import org.neo4j.server.rest.repr.RepresentationWriteHandler;
@@ -49,15 +52,24 @@ import org.neo4j.server.web.WebServer;
 public class BatchOperationService {
 
     private static final Logger LOGGER = Log.getLogger(BatchOperationService.class);
+    private static final String TRANSACTION_HEADER = "Transaction";
 
     private final OutputFormat output;
     private final WebServer webServer;
+    private final DatabaseActions actions;
+    private final boolean nativeExecution;
     private RepresentationWriteHandler representationWriteHandler = RepresentationWriteHandler.DO_NOTHING;
 
-    public BatchOperationService( @Context WebServer webServer, @Context OutputFormat output )
+    public BatchOperationService( @Context WebServer webServer, @Context OutputFormat output,
+                                  @Context DatabaseActions actions, @Context Configuration config )
     {
         this.output = output;
         this.webServer = webServer;
+        this.actions = actions;
+        // Security rules are servlet filters that natively performed operations would not pass through
+        this.nativeExecution = config.getBoolean( Configurator.BATCH_NATIVE_EXECUTION_ENABLED,
+                Configurator.DEFAULT_BATCH_NATIVE_EXECUTION_ENABLED )
+                && config.getStringArray( Configurator.SECURITY_RULES_KEY ).length == 0;
     }
 
     public void setRepresentationWriteHandler( RepresentationWriteHandler representationWriteHandler )
@@ -95,7 +107,8 @@ public class BatchOperationService {
                                 output.write( i );
                             }
                         };
-                        new StreamingBatchOperations( webServer ).readAndExecuteOperations( uriInfo, httpHeaders, body,
+                        new StreamingBatchOperations( webServer, nativeOperations( uriInfo, httpHeaders ) )
+                                .readAndExecuteOperations( uriInfo, httpHeaders, body,
                                 servletOutputStream );
                         representationWriteHandler.onRepresentationWritten();
                     }
@@ -122,7 +135,8 @@ public class BatchOperationService {
     {
         try
         {
-            NonStreamingBatchOperations batchOperations = new NonStreamingBatchOperations( webServer );
+            NonStreamingBatchOperations batchOperations = new NonStreamingBatchOperations( webServer,
+                    nativeOperations( uriInfo, httpHeaders ) );
             BatchOperationResults results = batchOperations.performBatchJobs( uriInfo, httpHeaders, body );
 
             Response res = Response.ok().entity(results.toJSON())
@@ -140,6 +154,16 @@ public class BatchOperationService {
         }
     }
 
+    private NativeBatchOperations nativeOperations( UriInfo uriInfo, HttpHeaders httpHeaders )
+    {
+        // Operations with a forced transaction mode are left to the web server, which knows how to apply it
+        if ( !nativeExecution || httpHeaders.getRequestHeaders().containsKey( TRANSACTION_HEADER ) )
+        {
+            return null;
+        }
+        return new NativeBatchOperations( actions, output, uriInfo.getBaseUri() );
+    }
+
     private boolean isStreaming( HttpHeaders httpHeaders )
     {
         if ( "true".equalsIgnoreCase( httpHeaders.getRequestHeaders().getFirst( StreamingFormat.STREAM_HEADER ) ) )
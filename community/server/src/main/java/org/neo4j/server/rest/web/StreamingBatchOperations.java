@@ -35,9 +35,11 @@ import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 
 import org.neo4j.server.rest.batch.BatchOperations;
+import org.neo4j.server.rest.batch.NativeBatchOperations;
 import org.neo4j.server.rest.batch.StreamingBatchOperationResults;
 import org.neo4j.server.rest.domain.BatchOperationFailedException;
 import org.neo4j.server.rest.repr.formats.StreamingJsonFormat;
+import org.neo4j.server.rest.repr.formats.StreamingJsonFormat.StreamingRepresentationFormat;
 import org.neo4j.server.web.WebServer;
 
 public class StreamingBatchOperations extends BatchOperations
@@ -45,14 +47,22 @@ public class StreamingBatchOperations extends BatchOperations
 
     private static final Logger LOGGER = Log.getLogger(StreamingBatchOperations.class);
     private StreamingBatchOperationResults results;
+    private StreamingRepresentationFormat nativeFormat;
 
     public StreamingBatchOperations( WebServer webServer )
     {
         super( webServer );
     }
 
+    public StreamingBatchOperations( WebServer webServer, NativeBatchOperations nativeOperations )
+    {
+        super( webServer, nativeOperations );
+    }
+
     public void readAndExecuteOperations( UriInfo uriInfo, HttpHeaders httpHeaders, InputStream body, ServletOutputStream output ) throws IOException, ServletException {
         results = new StreamingBatchOperationResults(jsonFactory.createJsonGenerator(output),output);
+        // one generator for the bodies of all operations performed natively, rather than one per operation
+        nativeFormat = nativeOperations == null ? null : new StreamingJsonFormat().writeTo( results.getServletOutputStream() );
         Map<Integer, String> locations = results.getLocations();
         parseAndPerform( uriInfo, httpHeaders, body, locations );
         results.close();
@@ -86,6 +96,29 @@ public class StreamingBatchOperations extends BatchOperations
         }
     }
 
+    @Override
+    protected void invokeNatively( String method, String path, String body, Integer id,
+                                   NativeBatchOperations.Result result ) throws IOException
+    {
+        results.startOperation( path, id );
+        final int status = result.getStatus();
+        if ( is2XXStatusCode( status ) )
+        {
+            if ( result.hasBody() )
+            {
+                nativeOperations.serialize( result, nativeFormat );
+            }
+            results.addOperationResult( status, id, result.getLocation() );
+        }
+        else
+        {
+            final String message = "Error " + status + " executing batch operation: " + ((id!=null) ? id + ". ":"") + method + " " + path + " " + body;
+            String reason = result.getFailure().getMessage();
+            results.writeError( status, reason );
+            throw new BatchOperationFailedException( status, message, new OperationFailureException( reason ) );
+        }
+    }
+
     protected void addHeaders(final InternalJettyServletRequest res,
             final HttpHeaders httpHeaders)
     {
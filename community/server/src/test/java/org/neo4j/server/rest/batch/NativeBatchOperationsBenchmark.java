@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.batch;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.neo4j.server.CommunityNeoServer;
+import org.neo4j.server.configuration.Configurator;
+import org.neo4j.server.helpers.CommunityServerBuilder;
+import org.neo4j.server.rest.repr.StreamingFormat;
+
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Measures batch requests creating nodes and adding each of them to a legacy index, with the operations performed
+ * by {@link NativeBatchOperations} and dispatched through the web server, in both the streaming and the non
+ * streaming batch mode.
+ * <p>
+ * Run with -Dnodes (per batch), -Dwarmups and -Drounds to tweak.
+ */
+public class NativeBatchOperationsBenchmark
+{
+    public static void main( String... args ) throws Exception
+    {
+        int nodes = Integer.getInteger( "nodes", 10_000 );
+        int warmups = Integer.getInteger( "warmups", 5 );
+        int rounds = Integer.getInteger( "rounds", 10 );
+        String batch = batch( nodes );
+
+        for ( boolean streaming : new boolean[] {false, true} )
+        {
+            for ( boolean nativeExecution : new boolean[] {false, true} )
+            {
+                System.out.printf( "=== %s, %s ===%n", streaming ? "streaming" : "not streaming",
+                        nativeExecution ? "native" : "dispatched" );
+                execute( batch, nodes * 2, nativeExecution, streaming, warmups, rounds );
+            }
+        }
+    }
+
+    private static void execute( String batch, int operations, boolean nativeExecution, boolean streaming,
+                                 int warmups, int rounds ) throws Exception
+    {
+        CommunityNeoServer server = CommunityServerBuilder.server()
+                .withProperty( Configurator.BATCH_NATIVE_EXECUTION_ENABLED, String.valueOf( nativeExecution ) )
+                .build();
+        server.start();
+        try
+        {
+            URL url = new URL( server.baseUri().toURL(), "db/data/batch" );
+            for ( int i = 0; i < warmups; i++ )
+            {
+                post( url, batch, streaming );
+            }
+            long[] times = new long[rounds];
+            for ( int i = 0; i < rounds; i++ )
+            {
+                long start = nanoTime();
+                post( url, batch, streaming );
+                times[i] = nanoTime() - start;
+            }
+            Arrays.sort( times );
+            long median = times[rounds / 2];
+            System.out.printf( "median %d ms, best %d ms, %d operations/s%n", NANOSECONDS.toMillis( median ),
+                    NANOSECONDS.toMillis( times[0] ), operations * 1_000_000_000L / median );
+        }
+        finally
+        {
+            server.stop();
+        }
+    }
+
+    // creates the nodes and adds each one to an index, referring to it by the location of the node created
+    private static String batch( int nodes )
+    {
+        StringBuilder batch = new StringBuilder( "[" );
+        for ( int i = 0; i < nodes; i++ )
+        {
+            batch.append( i == 0 ? "" : "," )
+                 .append( "{\"method\":\"POST\",\"to\":\"/node\",\"body\":{\"i\":" ).append( i )
+                 .append( "},\"id\":" ).append( i * 2 ).append( "}," )
+                 .append( "{\"method\":\"POST\",\"to\":\"/index/node/benchmark\",\"body\":{\"key\":\"i\"," )
+                 .append( "\"value\":" ).append( i ).append( ",\"uri\":\"{" ).append( i * 2 ).append( "}\"}," )
+                 .append( "\"id\":" ).append( i * 2 + 1 ).append( "}" );
+        }
+        return batch.append( "]" ).toString();
+    }
+
+    private static void post( URL url, String batch, boolean streaming ) throws Exception
+    {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setDoOutput( true );
+        connection.setRequestMethod( "POST" );
+        connection.setRequestProperty( "Content-Type", "application/json" );
+        connection.setRequestProperty( "Accept", "application/json" );
+        if ( streaming )
+        {
+            connection.setRequestProperty( StreamingFormat.STREAM_HEADER, "true" );
+        }
+        try ( OutputStream out = connection.getOutputStream() )
+        {
+            out.write( batch.getBytes( StandardCharsets.UTF_8 ) );
+        }
+        if ( connection.getResponseCode() != 200 )
+        {
+            throw new IllegalStateException( "Batch failed with status " + connection.getResponseCode() );
+        }
+        byte[] buffer = new byte[8192];
+        try ( InputStream in = connection.getInputStream() )
+        {
+            while ( in.read( buffer ) != -1 )
+            {   // read the whole response, which the server produces while performing streaming batches
+            }
+        }
+        connection.disconnect();
+    }
+}
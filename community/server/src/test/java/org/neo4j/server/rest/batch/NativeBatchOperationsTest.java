@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.server.rest.batch;
+
+import java.net.URI;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.helpers.FakeClock;
+import org.neo4j.kernel.GraphDatabaseAPI;
+import org.neo4j.kernel.impl.transaction.xaframework.ForceMode;
+import org.neo4j.server.rest.domain.JsonHelper;
+import org.neo4j.server.rest.paging.LeaseManager;
+import org.neo4j.server.rest.repr.OutputFormat;
+import org.neo4j.server.rest.repr.formats.JsonFormat;
+import org.neo4j.server.rest.web.RelationshipNotFoundException;
+import org.neo4j.server.rest.web.TransactionWrappedDatabaseActions;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+public class NativeBatchOperationsTest
+{
+    private static final String BASE = "http://localhost:7474/db/data/";
+
+    private static GraphDatabaseAPI graph;
+    private NativeBatchOperations operations;
+
+    @BeforeClass
+    public static void createDb()
+    {
+        graph = (GraphDatabaseAPI) new TestGraphDatabaseFactory().newImpermanentDatabase();
+    }
+
+    @AfterClass
+    public static void shutdownDb()
+    {
+        graph.shutdown();
+    }
+
+    @Before
+    public void createOperations() throws Exception
+    {
+        URI baseUri = new URI( BASE );
+        operations = new NativeBatchOperations(
+                new TransactionWrappedDatabaseActions( new LeaseManager( new FakeClock() ), ForceMode.forced, graph ),
+                new OutputFormat( new JsonFormat(), baseUri, null ), baseUri );
+    }
+
+    @Test
+    public void shouldCreateNodesAndRelationshipsWithTheirLocations() throws Exception
+    {
+        NativeBatchOperations.Result start = perform( "POST", "node", "{\"name\":\"start\"}" );
+        NativeBatchOperations.Result end = perform( "POST", "node", "" );
+        NativeBatchOperations.Result relationship = perform( "POST", "node/" + idOf( start ) + "/relationships",
+                "{\"to\":\"" + end.getLocation() + "\",\"type\":\"KNOWS\",\"data\":{\"since\":2014}}" );
+
+        assertThat( start.getStatus(), is( 201 ) );
+        assertThat( relationship.getStatus(), is( 201 ) );
+        try ( Transaction tx = graph.beginTx() )
+        {
+            Map<String, Object> body = JsonHelper.jsonToMap( operations.serialize( relationship ) );
+            assertThat( (String) body.get( "self" ), is( relationship.getLocation() ) );
+            assertThat( (String) body.get( "end" ), is( end.getLocation() ) );
+
+            Relationship created = graph.getRelationshipById( idOf( relationship ) );
+            assertThat( created.getStartNode().getProperty( "name" ), is( (Object) "start" ) );
+            assertThat( created.getProperty( "since" ), is( (Object) 2014 ) );
+            tx.success();
+        }
+    }
+
+    @Test
+    public void shouldSetPropertiesAndAddToIndexes() throws Exception
+    {
+        NativeBatchOperations.Result node = perform( "POST", "node", "" );
+
+        NativeBatchOperations.Result setAll = perform( "PUT", "node/" + idOf( node ) + "/properties", "{\"a\":1}" );
+        NativeBatchOperations.Result setOne = perform( "PUT", "node/" + idOf( node ) + "/properties/b", "\"two\"" );
+        NativeBatchOperations.Result indexed = perform( "POST", "index/node/people",
+                "{\"key\":\"b\",\"value\":\"two\",\"uri\":\"" + node.getLocation() + "\"}" );
+
+        assertThat( setAll.getStatus(), is( 204 ) );
+        assertThat( setAll.hasBody(), is( false ) );
+        assertThat( setOne.getStatus(), is( 204 ) );
+        assertThat( indexed.getStatus(), is( 201 ) );
+        try ( Transaction tx = graph.beginTx() )
+        {
+            Node found = graph.index().forNodes( "people" ).get( "b", "two" ).getSingle();
+            assertThat( found.getId(), is( idOf( node ) ) );
+            assertThat( found.getProperty( "a" ), is( (Object) 1 ) );
+            tx.success();
+        }
+    }
+
+    @Test
+    public void shouldLeaveOperationsItCannotPerformToTheWebServer() throws Exception
+    {
+        assertThat( perform( "GET", "node/0", "" ), nullValue() );
+        assertThat( perform( "DELETE", "node/0", "" ), nullValue() );
+        assertThat( perform( "POST", "node?x=y", "" ), nullValue() );
+        assertThat( perform( "POST", "node/", "" ), nullValue() );
+        assertThat( perform( "PUT", "node/0/properties/a%2Fb", "1" ), nullValue() );
+        assertThat( perform( "GET", "relationship/not-an-id", "" ), nullValue() );
+        assertThat( perform( "POST", "node", "[1,2]" ), nullValue() );
+        assertThat( perform( "POST", "node/0/relationships", "{\"type\":\"KNOWS\"}" ), nullValue() );
+        assertThat( perform( "POST", "index/node/people", "{\"key\":\"a\",\"value\":1}" ), nullValue() );
+    }
+
+    @Test
+    public void shouldReportFailuresOfOperationsItHasStartedInsteadOfLeavingThemToTheWebServer() throws Exception
+    {
+        NativeBatchOperations.Result missingRelationship = perform( "GET", "relationship/" + Long.MAX_VALUE, "" );
+        NativeBatchOperations.Result missingNode = perform( "PUT", "node/" + Long.MAX_VALUE + "/properties", "{}" );
+        // creates the node before finding out that the property can't be set
+        NativeBatchOperations.Result invalidProperty = perform( "POST", "node", "{\"a\":{\"b\":1}}" );
+        NativeBatchOperations.Result mangledArray = perform( "POST", "node", "{\"age\":[true,\"hello\"]}" );
+
+        assertThat( missingRelationship.getStatus(), is( 404 ) );
+        assertThat( missingRelationship.getFailure(), instanceOf( RelationshipNotFoundException.class ) );
+        assertThat( missingNode.getStatus(), is( 404 ) );
+        assertThat( invalidProperty.getStatus(), is( 400 ) );
+        assertThat( invalidProperty.getLocation(), nullValue() );
+        Map<String, Object> body = JsonHelper.jsonToMap( operations.serialize( invalidProperty ) );
+        assertThat( body.containsKey( "message" ), is( true ) );
+        assertThat( mangledArray.getStatus(), is( 400 ) );
+        assertThat( mangledArray.getFailure().getMessage(), startsWith( "Invalid JSON array in POST body" ) );
+    }
+
+    private NativeBatchOperations.Result perform( String method, String path, String body ) throws Exception
+    {
+        return operations.perform( method, new URI( BASE + path ), body );
+    }
+
+    private static long idOf( NativeBatchOperations.Result result )
+    {
+        String location = result.getLocation();
+        return Long.parseLong( location.substring( location.lastIndexOf( '/' ) + 1 ) );
+    }
+}
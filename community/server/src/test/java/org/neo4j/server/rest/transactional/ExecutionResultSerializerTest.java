@@ -554,6 +554,53 @@ public class ExecutionResultSerializerTest
         assertEquals( "GO!", jsonMap.get( "one" ).get( "two" ).get( 1 ).get( "three" ).asText() );
     }
 
+    @Test
+    public void shouldCloseResultIteratorWhenClientGoesAway() throws Exception
+    {
+        // given
+        IOException failure = new IOException( "Broken pipe" );
+        OutputStream output = mock( OutputStream.class, new ThrowsException( failure ) );
+        ExecutionResultSerializer serializer = new ExecutionResultSerializer( output, null, StringLogger.DEV_NULL );
+
+        ExecutionResult executionResult = mock( ExecutionResult.class );
+        when( executionResult.columns() ).thenReturn( asList( "column" ) );
+        @SuppressWarnings("unchecked")
+        ResourceIterator<Map<String, Object>> iterator = mock( ResourceIterator.class );
+        when( iterator.hasNext() ).thenReturn( true );
+        when( iterator.next() ).thenReturn( map( "column", new char[8192] ) );
+        when( executionResult.iterator() ).thenReturn( iterator );
+
+        // when
+        try
+        {
+            serializer.statementResult( executionResult, false );
+            fail( "should have thrown exception" );
+        }
+        catch ( IOException e )
+        {
+            assertSame( failure, e );
+        }
+
+        // then
+        verify( iterator ).close();
+    }
+
+    @Test
+    public void shouldNotCloseOutputStreamOnFinish() throws Exception
+    {
+        // given
+        OutputStream output = spy( new ByteArrayOutputStream() );
+        ExecutionResultSerializer serializer = new ExecutionResultSerializer( output, null, StringLogger.DEV_NULL );
+        serializer.statementResult( mockExecutionResult( map( "column", "value" ) ), false );
+
+        // when
+        serializer.finish();
+
+        // then
+        verify( output, atLeastOnce() ).flush();
+        verify( output, never() ).close();
+    }
+
     @Test
     public void shouldLogIOErrors() throws Exception
     {
@@ -20,6 +20,7 @@
 package org.neo4j.consistency.checking.full;
 
 import java.lang.reflect.Array;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.neo4j.consistency.ConsistencyCheckSettings;
@@ -29,15 +30,18 @@ import org.neo4j.consistency.report.ConsistencyReporter;
 import org.neo4j.consistency.report.ConsistencySummaryStatistics;
 import org.neo4j.consistency.report.InconsistencyMessageLogger;
 import org.neo4j.consistency.report.InconsistencyReport;
+import org.neo4j.consistency.store.CacheNodesRecordAccess;
 import org.neo4j.consistency.store.CacheSmallStoresRecordAccess;
 import org.neo4j.consistency.store.DiffRecordAccess;
 import org.neo4j.consistency.store.DirectRecordAccess;
+import org.neo4j.consistency.store.NodeCache;
 import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.neo4j.helpers.progress.ProgressMonitorFactory;
 import org.neo4j.kernel.api.direct.DirectStoreAccess;
 import org.neo4j.kernel.configuration.Config;
 import org.neo4j.kernel.impl.nioneo.store.AbstractBaseRecord;
 import org.neo4j.kernel.impl.nioneo.store.LabelTokenRecord;
+import org.neo4j.kernel.impl.nioneo.store.NodeRecord;
 import org.neo4j.kernel.impl.nioneo.store.PropertyKeyTokenRecord;
 import org.neo4j.kernel.impl.nioneo.store.RecordStore;
 import org.neo4j.kernel.impl.nioneo.store.RelationshipTypeTokenRecord;
@@ -83,6 +87,20 @@ public class FullCheck
     void execute( final DirectStoreAccess directStoreAccess, CheckDecorator decorator, final DiffRecordAccess recordAccess,
                   final InconsistencyReport report )
             throws ConsistencyCheckIncompleteException
+    {
+        final StoreAccess nativeStores = directStoreAccess.nativeStores();
+        try ( NodeCache nodeCache = order == TaskExecutionOrder.SEQUENTIAL
+                ? new NodeCache( nativeStores.getNodeStore().getHighId() ) : null )
+        {
+            DiffRecordAccess records = nodeCache == null ? recordAccess
+                                                         : new CacheNodesRecordAccess( recordAccess, nodeCache );
+            execute( directStoreAccess, decorator, records, report, nodeCache );
+        }
+    }
+
+    private void execute( final DirectStoreAccess directStoreAccess, CheckDecorator decorator,
+                          final DiffRecordAccess recordAccess, final InconsistencyReport report, NodeCache nodeCache )
+            throws ConsistencyCheckIncompleteException
     {
         final ConsistencyReporter reporter = new ConsistencyReporter( recordAccess, report );
         StoreProcessor processEverything = new StoreProcessor( decorator, reporter );
@@ -94,7 +112,12 @@ public class FullCheck
         {
             MultiPassStore.Factory multiPass = new MultiPassStore.Factory(
                     decorator, totalMappedMemory, nativeStores, recordAccess, report );
-            List<StoppableRunnable> tasks = new ConsistencyCheckTasks( progress, order, processEverything ).createTasks(
+            List<StoppableRunnable> tasks = new ArrayList<>();
+            if ( nodeCache != null )
+            {
+                tasks.add( loadNodeCache( nativeStores.getNodeStore(), nodeCache, progress ) );
+            }
+            tasks.addAll( new ConsistencyCheckTasks( progress, order, processEverything ).createTasks(
                     nativeStores,
                     directStoreAccess.labelScanStore(),
                     indexes,
@@ -102,7 +125,7 @@ public class FullCheck
                     reporter,
                     checkLabelScanStore,
                     checkIndexes
-            );
+            ) );
 
             order.execute( tasks, progress.build() );
         }
@@ -113,6 +136,24 @@ public class FullCheck
 
     }
 
+    private static StoppableRunnable loadNodeCache( RecordStore<NodeRecord> nodeStore, final NodeCache nodeCache,
+                                                    ProgressMonitorFactory.MultiPartBuilder progress )
+    {
+        return new PartitionedRecordScan<>( nodeStore, new RecordProcessor<NodeRecord>()
+        {
+            @Override
+            public void process( NodeRecord node )
+            {
+                nodeCache.put( node );
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        }, progress.progressForPart( "NodeCache", nodeStore.getHighId() ) );
+    }
+
     static DiffRecordAccess recordAccess( StoreAccess store )
     {
         return new CacheSmallStoresRecordAccess(
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.consistency.checking.full;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.neo4j.collection.primitive.PrimitiveLongIterator;
+import org.neo4j.helpers.progress.ProgressListener;
+import org.neo4j.kernel.impl.nioneo.store.AbstractBaseRecord;
+import org.neo4j.kernel.impl.nioneo.store.RecordStore;
+import org.neo4j.kernel.impl.nioneo.store.StoreIdIterator;
+
+/**
+ * Reads a record store front to back in contiguous id ranges, one range per thread, so that every thread reads
+ * its own part of the store sequentially. Stores too small to be worth splitting are read by the calling thread.
+ * <p>
+ * The processor is called from all threads at once. Progress is added to the listener in batches, under its
+ * monitor, and the listener is marked as done once every range has been read.
+ */
+class PartitionedRecordScan<R extends AbstractBaseRecord> implements StoppableRunnable
+{
+    static final long MIN_PARTITION_SIZE = 100_000;
+    private static final int PROGRESS_BATCH = 10_000;
+
+    private final RecordStore<R> store;
+    private final RecordProcessor<? super R> processor;
+    private final ProgressListener progress;
+    private final int maxPartitions;
+    private final long minPartitionSize;
+
+    private volatile boolean continueScanning = true;
+
+    PartitionedRecordScan( RecordStore<R> store, RecordProcessor<? super R> processor, ProgressListener progress )
+    {
+        this( store, processor, progress, Runtime.getRuntime().availableProcessors(), MIN_PARTITION_SIZE );
+    }
+
+    PartitionedRecordScan( RecordStore<R> store, RecordProcessor<? super R> processor, ProgressListener progress,
+                           int maxPartitions, long minPartitionSize )
+    {
+        this.store = store;
+        this.processor = processor;
+        this.progress = progress;
+        this.maxPartitions = maxPartitions;
+        this.minPartitionSize = minPartitionSize;
+    }
+
+    static int partitions( long highId, int maxPartitions, long minPartitionSize )
+    {
+        return (int) Math.max( 1, Math.min( maxPartitions, highId / minPartitionSize ) );
+    }
+
+    @Override
+    public void run()
+    {
+        long highId = store.getHighId();
+        int partitions = partitions( highId, maxPartitions, minPartitionSize );
+        try
+        {
+            if ( partitions == 1 )
+            {
+                scan( 0, highId );
+            }
+            else
+            {
+                scanInParallel( highId, partitions );
+            }
+            progress.done();
+        }
+        catch ( Throwable e )
+        {
+            progress.failed( e );
+        }
+        finally
+        {
+            processor.close();
+        }
+    }
+
+    private void scanInParallel( long highId, int partitions ) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( partitions );
+        try
+        {
+            long partitionSize = (highId + partitions - 1) / partitions;
+            List<Future<Void>> ranges = new ArrayList<>( partitions );
+            for ( long fromId = 0; fromId < highId; fromId += partitionSize )
+            {
+                final long from = fromId, to = Math.min( highId, fromId + partitionSize );
+                ranges.add( executor.submit( new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                    {
+                        scan( from, to );
+                        return null;
+                    }
+                } ) );
+            }
+            for ( Future<Void> range : ranges )
+            {
+                range.get();
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private void scan( long fromId, long toId )
+    {
+        PrimitiveLongIterator ids = new StoreIdIterator( store, fromId, toId );
+        int unreported = 0;
+        while ( ids.hasNext() && continueScanning )
+        {
+            processor.process( store.forceGetRecord( ids.next() ) );
+            if ( ++unreported == PROGRESS_BATCH )
+            {
+                report( unreported );
+                unreported = 0;
+            }
+        }
+        report( unreported );
+    }
+
+    private void report( int processed )
+    {
+        synchronized ( progress )
+        {
+            progress.add( processed );
+        }
+    }
+
+    @Override
+    public void stopScanning()
+    {
+        continueScanning = false;
+    }
+}
@@ -39,6 +39,13 @@ public class SchemaStoreProcessorTask<R extends AbstractBaseRecord> extends Stor
         this.schemaRecordCheck = schemaRecordCheck;
     }
 
+    @Override
+    protected boolean partitioned()
+    {
+        // the schema check builds up its obligations in one pass, one record at a time
+        return false;
+    }
+
     @Override
     protected void beforeProcessing( StoreProcessor processor )
     {
@@ -29,8 +29,10 @@ import static java.lang.String.format;
 class StoreProcessorTask<R extends AbstractBaseRecord> implements StoppableRunnable
 {
     private final RecordStore<R> store;
+    private final TaskExecutionOrder order;
     private final StoreProcessor[] processors;
     private final ProgressListener[] progressListeners;
+    private volatile PartitionedRecordScan<R> partitionedScan;
 
 
     StoreProcessorTask( RecordStore<R> store,
@@ -47,6 +49,7 @@ class StoreProcessorTask<R extends AbstractBaseRecord> implements StoppableRunna
                         StoreProcessor... multiPassProcessors )
     {
         this.store = store;
+        this.order = order;
         String storeFileName = store.getStorageFileName().getName();
 
         String sanitizedBuilderPrefix = builderPrefix == null ? "" : builderPrefix;
@@ -88,6 +91,11 @@ class StoreProcessorTask<R extends AbstractBaseRecord> implements StoppableRunna
     @Override
     public void run()
     {
+        if ( order == TaskExecutionOrder.SEQUENTIAL && partitioned() )
+        {
+            runPartitioned( processors[0], progressListeners[0] );
+            return;
+        }
         for ( int i = 0; i < processors.length; i++ )
         {
             StoreProcessor processor = processors[i];
@@ -107,6 +115,41 @@ class StoreProcessorTask<R extends AbstractBaseRecord> implements StoppableRunna
         }
     }
 
+    private void runPartitioned( final StoreProcessor processor, ProgressListener progressListener )
+    {
+        beforeProcessing( processor );
+        try
+        {
+            partitionedScan = new PartitionedRecordScan<>( store, new RecordProcessor<R>()
+            {
+                @Override
+                public void process( R record )
+                {
+                    store.accept( processor, record );
+                }
+
+                @Override
+                public void close()
+                {
+                }
+            }, progressListener );
+            partitionedScan.run();
+        }
+        finally
+        {
+            afterProcessing( processor );
+        }
+    }
+
+    /**
+     * Whether the records of the store can be checked by several threads at once, with
+     * {@link TaskExecutionOrder#SEQUENTIAL}.
+     */
+    protected boolean partitioned()
+    {
+        return true;
+    }
+
     protected void beforeProcessing( StoreProcessor processor )
     {
         // intentionally empty
@@ -121,6 +164,11 @@ class StoreProcessorTask<R extends AbstractBaseRecord> implements StoppableRunna
     public void stopScanning()
     {
         processors[0].stopScanning();
+        PartitionedRecordScan<R> scan = partitionedScan;
+        if ( scan != null )
+        {
+            scan.stopScanning();
+        }
     }
 
 }
@@ -102,6 +102,21 @@ public enum TaskExecutionOrder
                 throw new ConsistencyCheckIncompleteException( e );
             }
         }
+    },
+    /**
+     * Checks one store at a time, each one read front to back by all cores in id ranges of their own, with the
+     * node store loaded into a {@link org.neo4j.consistency.store.NodeCache} up front. Every reference to a node
+     * is then checked against that cache rather than by reading the node store at random, which keeps the check
+     * of a store much larger than the page cache close to the speed of reading it.
+     */
+    SEQUENTIAL
+    {
+        @Override
+        void execute( List<StoppableRunnable> tasks, Completion completion )
+                throws ConsistencyCheckIncompleteException
+        {
+            SINGLE_THREADED.execute( tasks, completion );
+        }
     };
 
     abstract void execute( List<StoppableRunnable> tasks, Completion completion )
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.consistency.store;
+
+import org.neo4j.kernel.impl.nioneo.store.NodeRecord;
+
+/**
+ * Serves node records from a {@link NodeCache}, loaded by reading the node store front to back, instead of
+ * reading the node store at random for every relationship, group, label scan and index entry that refers to a node.
+ */
+public class CacheNodesRecordAccess extends DelegatingRecordAccess
+{
+    private final NodeCache nodes;
+
+    public CacheNodesRecordAccess( DiffRecordAccess delegate, NodeCache nodes )
+    {
+        super( delegate );
+        this.nodes = nodes;
+    }
+
+    @Override
+    public RecordReference<NodeRecord> node( long id )
+    {
+        if ( nodes.contains( id ) )
+        {
+            return new DirectRecordReference<>( nodes.get( id ), this );
+        }
+        else
+        {
+            return super.node( id );
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.consistency.store;
+
+import java.util.Collections;
+
+import sun.misc.Unsafe;
+
+import org.neo4j.kernel.impl.nioneo.store.DynamicRecord;
+import org.neo4j.kernel.impl.nioneo.store.NodeRecord;
+import org.neo4j.kernel.impl.util.UnsafeUtil;
+
+/**
+ * Everything a node record holds, packed into two longs per node in memory outside of the heap, so that
+ * checking a reference to a node doesn't mean reading the node store at a random position.
+ * <p>
+ * The first long holds the in use and dense flags, the next relationship (or group) id and the low bits of the
+ * label field, the second the next property id and the high bits of the label field. Ids are stored plus one,
+ * so that -1 ("no next") and the highest id a record can hold are told apart.
+ * <p>
+ * Each node is written by one thread only, so threads loading different id ranges need no coordination.
+ * The cache must be {@link #close() closed} to free its memory.
+ */
+public class NodeCache implements AutoCloseable
+{
+    private static final Unsafe unsafe = UnsafeUtil.getUnsafe();
+
+    private static final int BYTES_PER_NODE = 16;
+
+    private static final long IN_USE = 1L << 63;
+    private static final long DENSE = 1L << 62;
+    private static final int REL_BITS = 36;
+    private static final int PROP_BITS = 37;
+    private static final int LOW_LABEL_BITS = 26;
+    private static final int HIGH_LABEL_BITS = 14;
+
+    private final long size;
+    private long address;
+
+    public NodeCache( long size )
+    {
+        this.size = size;
+        this.address = unsafe.allocateMemory( Math.max( 1, size * BYTES_PER_NODE ) );
+        unsafe.setMemory( address, size * BYTES_PER_NODE, (byte) 0 );
+    }
+
+    public long size()
+    {
+        return size;
+    }
+
+    public boolean contains( long id )
+    {
+        return id >= 0 && id < size;
+    }
+
+    public void put( NodeRecord node )
+    {
+        long offset = offset( node.getId() );
+        long labels = node.getLabelField();
+
+        long first = (node.getNextRel() + 1) | ((labels & mask( LOW_LABEL_BITS )) << REL_BITS);
+        if ( node.inUse() )
+        {
+            first |= IN_USE;
+        }
+        if ( node.isDense() )
+        {
+            first |= DENSE;
+        }
+        long second = (node.getNextProp() + 1) | ((labels >>> LOW_LABEL_BITS) << PROP_BITS);
+
+        unsafe.putLong( offset, first );
+        unsafe.putLong( offset + 8, second );
+    }
+
+    public NodeRecord get( long id )
+    {
+        long offset = offset( id );
+        long first = unsafe.getLong( offset );
+        long second = unsafe.getLong( offset + 8 );
+
+        long nextRel = (first & mask( REL_BITS )) - 1;
+        long nextProp = (second & mask( PROP_BITS )) - 1;
+        long labels = ((first >>> REL_BITS) & mask( LOW_LABEL_BITS ))
+                | (((second >>> PROP_BITS) & mask( HIGH_LABEL_BITS )) << LOW_LABEL_BITS);
+
+        NodeRecord node = new NodeRecord( id, (first & DENSE) != 0, nextRel, nextProp );
+        node.setInUse( (first & IN_USE) != 0 );
+        node.setLabelField( labels, Collections.<DynamicRecord>emptyList() );
+        return node;
+    }
+
+    @Override
+    public void close()
+    {
+        if ( address != 0 )
+        {
+            unsafe.freeMemory( address );
+            address = 0;
+        }
+    }
+
+    private long offset( long id )
+    {
+        if ( !contains( id ) )
+        {
+            throw new IllegalArgumentException( "Node " + id + " is outside of the cache, of size " + size );
+        }
+        return address + id * BYTES_PER_NODE;
+    }
+
+    private static long mask( int bits )
+    {
+        return (1L << bits) - 1;
+    }
+}
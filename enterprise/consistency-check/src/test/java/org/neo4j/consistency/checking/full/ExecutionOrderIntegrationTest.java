@@ -137,6 +137,41 @@ public class ExecutionOrderIntegrationTest
         }
     }
 
+    @Test
+    public void shouldRunSameChecksSequentiallyAsInSingleThreadedPass() throws Exception
+    {
+        // given
+        StoreAccess store = fixture.directStoreAccess().nativeStores();
+        DiffRecordAccess access = FullCheck.recordAccess( store );
+
+        FullCheck singlePass = new FullCheck( config( TaskExecutionOrder.SINGLE_THREADED ),
+                ProgressMonitorFactory.NONE );
+        FullCheck sequential = new FullCheck( config( TaskExecutionOrder.SEQUENTIAL ),
+                ProgressMonitorFactory.NONE );
+
+        ConsistencySummaryStatistics sequentialSummary = new ConsistencySummaryStatistics();
+        ConsistencySummaryStatistics singlePassSummary = new ConsistencySummaryStatistics();
+        InconsistencyLogger logger = mock( InconsistencyLogger.class );
+        InvocationLog singlePassChecks = new InvocationLog();
+        InvocationLog sequentialChecks = new InvocationLog();
+
+        // when
+        singlePass.execute( fixture.directStoreAccess(), new LogDecorator( singlePassChecks ), access,
+                new InconsistencyReport( logger, singlePassSummary ) );
+
+        sequential.execute( fixture.directStoreAccess(), new LogDecorator( sequentialChecks ), access,
+                new InconsistencyReport( logger, sequentialSummary ) );
+
+        // then
+        verifyZeroInteractions( logger );
+        assertEquals( "Expected no inconsistencies in single pass.",
+                0, singlePassSummary.getTotalInconsistencyCount() );
+        assertEquals( "Expected no inconsistencies when checking sequentially.",
+                0, sequentialSummary.getTotalInconsistencyCount() );
+
+        assertSameChecks( singlePassChecks.data, sequentialChecks.data );
+    }
+
     static Config config( TaskExecutionOrder executionOrder )
     {
         return new Config( stringMap(
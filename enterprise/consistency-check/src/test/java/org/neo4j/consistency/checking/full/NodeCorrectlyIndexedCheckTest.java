@@ -35,6 +35,7 @@ import org.neo4j.consistency.report.ConsistencyReport;
 import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.kernel.api.direct.BoundedIterable;
 import org.neo4j.kernel.api.index.IndexAccessor;
+import org.neo4j.kernel.api.index.IndexOrder;
 import org.neo4j.kernel.api.index.IndexReader;
 import org.neo4j.kernel.api.index.IndexUpdater;
 import org.neo4j.kernel.api.index.SchemaIndexProvider.Descriptor;
@@ -195,6 +196,26 @@ public class NodeCorrectlyIndexedCheckTest
                     return emptyIterator();
                 }
 
+                @Override
+                public PrimitiveLongIterator rangeSeekByNumber( Number lower, boolean includeLower, Number upper,
+                                                                boolean includeUpper, IndexOrder order )
+                {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public PrimitiveLongIterator rangeSeekByString( String lower, boolean includeLower, String upper,
+                                                                boolean includeUpper, IndexOrder order )
+                {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public PrimitiveLongIterator rangeSeekByPrefix( String prefix, IndexOrder order )
+                {
+                    throw new UnsupportedOperationException();
+                }
+
                 @Override
                 public void close()
                 {
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.consistency.checking.full;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.neo4j.helpers.progress.ProgressListener;
+import org.neo4j.kernel.impl.nioneo.store.NodeRecord;
+import org.neo4j.kernel.impl.nioneo.store.NodeStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PartitionedRecordScanTest
+{
+    @Test
+    public void shouldProcessEveryRecordOnceAcrossPartitions() throws Exception
+    {
+        // given
+        NodeStore store = nodeStore( 1000 );
+        ProgressListener progress = mock( ProgressListener.class );
+        final ConcurrentMap<Long, Boolean> processedBy = new ConcurrentHashMap<>();
+        RecordProcessor<NodeRecord> processor = new RecordProcessor<NodeRecord>()
+        {
+            @Override
+            public void process( NodeRecord record )
+            {
+                Boolean previous = processedBy.putIfAbsent( record.getId(), true );
+                assertEquals( "Processed twice: " + record, null, previous );
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+
+        // when
+        new PartitionedRecordScan<>( store, processor, progress, 4, 100 ).run();
+
+        // then
+        assertEquals( 1000, processedBy.size() );
+        verify( progress ).done();
+    }
+
+    @Test
+    public void shouldReadSmallStoresInTheCallingThread() throws Exception
+    {
+        // given
+        NodeStore store = nodeStore( 99 );
+        ProgressListener progress = mock( ProgressListener.class );
+        final String caller = Thread.currentThread().getName();
+        RecordProcessor<NodeRecord> processor = new RecordProcessor<NodeRecord>()
+        {
+            @Override
+            public void process( NodeRecord record )
+            {
+                assertEquals( caller, Thread.currentThread().getName() );
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+
+        // when
+        new PartitionedRecordScan<>( store, processor, progress, 4, 100 ).run();
+
+        // then
+        verify( progress ).add( 99 );
+        verify( progress ).done();
+    }
+
+    @Test
+    public void shouldReportFailureOfAnyPartition() throws Exception
+    {
+        // given
+        NodeStore store = nodeStore( 1000 );
+        ProgressListener progress = mock( ProgressListener.class );
+        final RuntimeException failure = new RuntimeException( "broken record" );
+        RecordProcessor<NodeRecord> processor = new RecordProcessor<NodeRecord>()
+        {
+            @Override
+            public void process( NodeRecord record )
+            {
+                if ( record.getId() == 777 )
+                {
+                    throw failure;
+                }
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+
+        // when
+        new PartitionedRecordScan<>( store, processor, progress, 4, 100 ).run();
+
+        // then
+        verify( progress ).failed( any( Throwable.class ) );
+    }
+
+    private static NodeStore nodeStore( long highId )
+    {
+        NodeStore store = mock( NodeStore.class );
+        when( store.getHighId() ).thenReturn( highId );
+        when( store.forceGetRecord( anyLong() ) ).thenAnswer( new Answer<NodeRecord>()
+        {
+            @Override
+            public NodeRecord answer( InvocationOnMock invocation ) throws Throwable
+            {
+                return new NodeRecord( (Long) invocation.getArguments()[0], false, -1, -1 );
+            }
+        } );
+        return store;
+    }
+}
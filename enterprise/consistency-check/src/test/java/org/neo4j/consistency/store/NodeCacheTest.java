@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2002-2014 "Neo Technology,"
+ * Network Engine for Objects in Lund AB [http://neotechnology.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.consistency.store;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import org.neo4j.kernel.impl.nioneo.store.DynamicRecord;
+import org.neo4j.kernel.impl.nioneo.store.NodeRecord;
+import org.neo4j.kernel.impl.nioneo.store.Record;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class NodeCacheTest
+{
+    @Test
+    public void shouldReturnTheNodesThatWerePut() throws Exception
+    {
+        try ( NodeCache cache = new NodeCache( 4 ) )
+        {
+            // given
+            NodeRecord sparse = node( 0, true, false, 12, 34, 0x56_0000_0078L );
+            NodeRecord dense = node( 1, true, true, 99, Record.NO_NEXT_PROPERTY.intValue(), 0 );
+            NodeRecord empty = node( 2, true, false, Record.NO_NEXT_RELATIONSHIP.intValue(),
+                    Record.NO_NEXT_PROPERTY.intValue(), 0 );
+            NodeRecord notInUse = node( 3, false, false, 5, 6, 7 );
+
+            // when
+            cache.put( sparse );
+            cache.put( dense );
+            cache.put( empty );
+            cache.put( notInUse );
+
+            // then
+            assertSameNode( sparse, cache.get( 0 ) );
+            assertSameNode( dense, cache.get( 1 ) );
+            assertSameNode( empty, cache.get( 2 ) );
+            assertSameNode( notInUse, cache.get( 3 ) );
+        }
+    }
+
+    @Test
+    public void shouldKeepTheWidestValuesANodeRecordCanHold() throws Exception
+    {
+        try ( NodeCache cache = new NodeCache( 1 ) )
+        {
+            // given
+            NodeRecord node = node( 0, true, true, (1L << 35) - 1, (1L << 36) - 1, (1L << 40) - 1 );
+
+            // when
+            cache.put( node );
+
+            // then
+            assertSameNode( node, cache.get( 0 ) );
+        }
+    }
+
+    @Test
+    public void shouldServeCachedNodesAndDelegateTheRest() throws Exception
+    {
+        // given
+        DiffRecordAccess delegate = mock( DiffRecordAccess.class );
+        try ( NodeCache cache = new NodeCache( 10 ) )
+        {
+            NodeRecord node = node( 7, true, false, 1, 2, 3 );
+            cache.put( node );
+            CacheNodesRecordAccess recordAccess = new CacheNodesRecordAccess( delegate, cache );
+
+            // when
+            RecordReference<NodeRecord> cached = recordAccess.node( 7 );
+            recordAccess.node( 10 );
+            recordAccess.relationship( 7 );
+
+            // then
+            assertSameNode( node, ((DirectRecordReference<NodeRecord>) cached).record() );
+            verify( delegate ).node( 10 );
+            verify( delegate ).relationship( 7 );
+        }
+    }
+
+    @Test
+    public void shouldKnowWhichNodesItHolds() throws Exception
+    {
+        try ( NodeCache cache = new NodeCache( 3 ) )
+        {
+            assertTrue( cache.contains( 0 ) );
+            assertTrue( cache.contains( 2 ) );
+            assertFalse( cache.contains( 3 ) );
+            assertFalse( cache.contains( -1 ) );
+        }
+    }
+
+    private static NodeRecord node( long id, boolean inUse, boolean dense, long nextRel, long nextProp,
+                                    long labelField )
+    {
+        NodeRecord node = new NodeRecord( id, dense, nextRel, nextProp );
+        node.setInUse( inUse );
+        node.setLabelField( labelField, Collections.<DynamicRecord>emptyList() );
+        return node;
+    }
+
+    private static void assertSameNode( NodeRecord expected, NodeRecord actual )
+    {
+        assertEquals( expected.getId(), actual.getId() );
+        assertEquals( expected.inUse(), actual.inUse() );
+        assertEquals( expected.isDense(), actual.isDense() );
+        assertEquals( expected.getNextRel(), actual.getNextRel() );
+        assertEquals( expected.getNextProp(), actual.getNextProp() );
+        assertEquals( expected.getLabelField(), actual.getLabelField() );
+    }
+}
@@ -52,6 +52,7 @@ public class HighPerformanceCache<E extends EntityWithSizeObject> implements Cac
     private long totalPuts = 0;
     private long collisions = 0;
     private long purgeCount = 0;
+    private long evictionCount = 0;
 
     private final StringLogger logger;
 
@@ -339,6 +340,7 @@ public class HighPerformanceCache<E extends EntityWithSizeObject> implements Cac
                         ") " + missPercentage + " misses, " + colPercentage + " collisions (" + collisions + ").", true );
                 printAccurateStatistics();
             }
+            evictionCount += numberOfEntitiesPurged;
             monitor.purged( sizeBefore, currentSize.get(), numberOfEntitiesPurged );
         }
     }
@@ -472,6 +474,12 @@ public class HighPerformanceCache<E extends EntityWithSizeObject> implements Cac
         return missCount;
     }
 
+    @Override
+    public long evictionCount()
+    {
+        return evictionCount;
+    }
+
     @Override
     public void updateSize( E obj, int newSize )
     {